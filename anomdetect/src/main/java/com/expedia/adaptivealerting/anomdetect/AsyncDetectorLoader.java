@@ -0,0 +1,272 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.expedia.adaptivealerting.anomdetect.detect.DetectorContainer;
+import com.expedia.adaptivealerting.anomdetect.detect.MappedMetricData;
+import com.typesafe.config.Config;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.isTrue;
+import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.notNull;
+
+/**
+ * Loads detectors for {@link DetectorManager} off the calling thread, so that a slow detector lookup or data
+ * initialization doesn't hold up metrics for other detectors.
+ * <p>
+ * Metrics for a detector that isn't cached yet are parked while it loads. Concurrent misses for the same detector share
+ * a single load. Once the load completes, {@link #takeLoaded(long)} hands the detector back together with its parked
+ * metrics in arrival order, so that the caller can cache the detector and replay the metrics on its own thread.
+ * Loads that take longer than the timeout are abandoned along with their parked metrics.
+ */
+@Slf4j
+final class AsyncDetectorLoader {
+
+    /**
+     * Whether detectors are loaded asynchronously. Disabled by default.
+     */
+    private static final String CK_ENABLED = "detector-loading-async-enabled";
+
+    /**
+     * Number of detectors loaded at once.
+     */
+    private static final String CK_THREADS = "detector-loading-threads";
+
+    /**
+     * Maximum number of loads waiting for a thread. Misses beyond this are dropped.
+     */
+    private static final String CK_MAX_QUEUED_LOADS = "detector-loading-max-queued";
+
+    /**
+     * Maximum number of metrics parked per loading detector. Metrics beyond this are dropped.
+     */
+    private static final String CK_MAX_PARKED_METRICS = "detector-loading-max-parked-metrics";
+
+    /**
+     * Milliseconds after which a load is abandoned.
+     */
+    private static final String CK_TIMEOUT_MS = "detector-loading-timeout-ms";
+
+    private static final int DEFAULT_THREADS = 4;
+    private static final int DEFAULT_MAX_QUEUED_LOADS = 1000;
+    private static final int DEFAULT_MAX_PARKED_METRICS = 100;
+    private static final long DEFAULT_TIMEOUT_MS = 60_000;
+
+    private final Function<MappedMetricData, Optional<DetectorContainer>> loader;
+    private final int maxParkedMetrics;
+    private final long timeoutMs;
+    private final ThreadPoolExecutor executor;
+
+    // Guarded by this.
+    private final Map<UUID, PendingLoad> pendingLoads = new LinkedHashMap<>();
+    private volatile int pendingLoadCount;
+    private volatile int parkedMetricCount;
+
+    private final Timer loadTimer;
+    private final Meter failureMeter;
+    private final Meter timeoutMeter;
+    private final Meter rejectedMeter;
+    private final Meter droppedMeter;
+
+    /**
+     * @param config         detector manager config
+     * @param metricRegistry metric registry
+     * @param loader         finds and initializes a detector for the given metric, on a loader thread
+     */
+    AsyncDetectorLoader(Config config,
+                        MetricRegistry metricRegistry,
+                        Function<MappedMetricData, Optional<DetectorContainer>> loader) {
+        notNull(config, "config can't be null");
+        notNull(metricRegistry, "metricRegistry can't be null");
+        notNull(loader, "loader can't be null");
+
+        int threads = config.hasPath(CK_THREADS) ? config.getInt(CK_THREADS) : DEFAULT_THREADS;
+        int maxQueuedLoads = config.hasPath(CK_MAX_QUEUED_LOADS)
+                ? config.getInt(CK_MAX_QUEUED_LOADS)
+                : DEFAULT_MAX_QUEUED_LOADS;
+        this.maxParkedMetrics = config.hasPath(CK_MAX_PARKED_METRICS)
+                ? config.getInt(CK_MAX_PARKED_METRICS)
+                : DEFAULT_MAX_PARKED_METRICS;
+        this.timeoutMs = config.hasPath(CK_TIMEOUT_MS) ? config.getLong(CK_TIMEOUT_MS) : DEFAULT_TIMEOUT_MS;
+        isTrue(threads > 0, "Required: " + CK_THREADS + " > 0");
+        isTrue(maxQueuedLoads > 0, "Required: " + CK_MAX_QUEUED_LOADS + " > 0");
+        isTrue(maxParkedMetrics > 0, "Required: " + CK_MAX_PARKED_METRICS + " > 0");
+        isTrue(timeoutMs > 0, "Required: " + CK_TIMEOUT_MS + " > 0");
+
+        this.loader = loader;
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(maxQueuedLoads), runnable -> {
+            Thread thread = new Thread(runnable, "detector-loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.loadTimer = metricRegistry.timer("detector.load");
+        this.failureMeter = metricRegistry.meter("detector.load.failure");
+        this.timeoutMeter = metricRegistry.meter("detector.load.timeout");
+        this.rejectedMeter = metricRegistry.meter("detector.load.rejected");
+        this.droppedMeter = metricRegistry.meter("detector.load.dropped");
+        metricRegistry.remove("detector.load.pending");
+        metricRegistry.register("detector.load.pending", (Gauge<Integer>) () -> pendingLoadCount);
+        metricRegistry.remove("detector.load.parked");
+        metricRegistry.register("detector.load.parked", (Gauge<Integer>) () -> parkedMetricCount);
+    }
+
+    static boolean isEnabled(Config config) {
+        return config.hasPath(CK_ENABLED) && config.getBoolean(CK_ENABLED);
+    }
+
+    /**
+     * @param detectorUuid detector UUID
+     * @return whether the detector has metrics parked, which must be replayed before any newer metrics
+     */
+    synchronized boolean isParked(UUID detectorUuid) {
+        return pendingLoads.containsKey(detectorUuid);
+    }
+
+    /**
+     * @param mappedMetricData mapped metric data
+     * @return whether the given metric was the last one parked for its detector, i.e. it wasn't dropped
+     */
+    synchronized boolean isParked(MappedMetricData mappedMetricData) {
+        PendingLoad load = pendingLoads.get(mappedMetricData.getDetectorUuid());
+        if (load == null || load.parkedMetrics.isEmpty()) {
+            return false;
+        }
+        return load.parkedMetrics.get(load.parkedMetrics.size() - 1) == mappedMetricData;
+    }
+
+    /**
+     * Parks the given metric until its detector has loaded, starting the load if it isn't already under way.
+     *
+     * @param mappedMetricData mapped metric data
+     * @param currentTime      current time in milliseconds
+     */
+    synchronized void park(MappedMetricData mappedMetricData, long currentTime) {
+        UUID detectorUuid = mappedMetricData.getDetectorUuid();
+        PendingLoad load = pendingLoads.get(detectorUuid);
+        if (load == null) {
+            load = new PendingLoad(detectorUuid, mappedMetricData, currentTime);
+            try {
+                load.future = executor.submit(load::run);
+            } catch (RejectedExecutionException e) {
+                log.warn("Too many detectors loading, dropping metric for detector {}", detectorUuid);
+                rejectedMeter.mark();
+                return;
+            }
+            pendingLoads.put(detectorUuid, load);
+        }
+        if (load.parkedMetrics.size() >= maxParkedMetrics) {
+            droppedMeter.mark();
+            return;
+        }
+        load.parkedMetrics.add(mappedMetricData);
+        updateCounts(1);
+    }
+
+    /**
+     * Takes the completed loads along with their parked metrics, and abandons those that have timed out. A detector
+     * that couldn't be loaded comes back without a container.
+     *
+     * @param currentTime current time in milliseconds
+     * @return completed and abandoned loads
+     */
+    synchronized List<LoadedDetector> takeLoaded(long currentTime) {
+        if (pendingLoads.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<LoadedDetector> loaded = new ArrayList<>();
+        Iterator<PendingLoad> it = pendingLoads.values().iterator();
+        while (it.hasNext()) {
+            PendingLoad load = it.next();
+            if (load.done) {
+                loaded.add(new LoadedDetector(load.detectorUuid, load.container, load.parkedMetrics));
+            } else if (currentTime - load.startTime >= timeoutMs) {
+                log.warn("Timed out loading detector {}, dropping {} parked metrics",
+                        load.detectorUuid, load.parkedMetrics.size());
+                load.future.cancel(true);
+                timeoutMeter.mark();
+                loaded.add(new LoadedDetector(load.detectorUuid, null, load.parkedMetrics));
+            } else {
+                continue;
+            }
+            it.remove();
+            updateCounts(-load.parkedMetrics.size());
+        }
+        return loaded;
+    }
+
+    private void updateCounts(int parkedMetricDelta) {
+        this.pendingLoadCount = pendingLoads.size();
+        this.parkedMetricCount += parkedMetricDelta;
+    }
+
+    private final class PendingLoad {
+        private final UUID detectorUuid;
+        private final MappedMetricData firstMetric;
+        private final long startTime;
+        private final List<MappedMetricData> parkedMetrics = new ArrayList<>();
+        private Future<?> future;
+        private volatile DetectorContainer container;
+        private volatile boolean done;
+
+        PendingLoad(UUID detectorUuid, MappedMetricData firstMetric, long startTime) {
+            this.detectorUuid = detectorUuid;
+            this.firstMetric = firstMetric;
+            this.startTime = startTime;
+        }
+
+        void run() {
+            try (Timer.Context autoClosable = loadTimer.time()) {
+                this.container = loader.apply(firstMetric).orElse(null);
+            } catch (Exception e) {
+                log.error("Error loading detector {}", detectorUuid, e);
+                failureMeter.mark();
+            } finally {
+                this.done = true;
+            }
+        }
+    }
+
+    /**
+     * A completed load: the detector, or null if it couldn't be loaded, and the metrics parked while it loaded.
+     */
+    @Value
+    static class LoadedDetector {
+        UUID detectorUuid;
+        DetectorContainer container;
+        List<MappedMetricData> parkedMetrics;
+    }
+}
@@ -0,0 +1,297 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.isTrue;
+import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.notNull;
+
+/**
+ * Append-only file of detector snapshots, used by {@link DetectorCheckpointer}.
+ * <p>
+ * The file is a header followed by records, each holding a detector UUID, the time it was written, the snapshot (or a
+ * tombstone that discards earlier snapshots) and a CRC32 checksum. The last record for a detector wins. A truncated or
+ * corrupt tail, as left behind by a crash mid-write, is discarded on open. Once the file grows to twice its live size,
+ * it's compacted by rewriting the live records to a new file and moving that into place.
+ * <p>
+ * Not thread-safe.
+ */
+@Slf4j
+final class DetectorCheckpointStore implements Closeable {
+    private static final int MAGIC = 0x41414443;
+    private static final byte FORMAT_VERSION = 1;
+    private static final int HEADER_LENGTH = 5;
+    private static final int RECORD_OVERHEAD = 32;
+    private static final int TOMBSTONE = -1;
+    private static final int MAX_SNAPSHOT_LENGTH = 64 * 1024 * 1024;
+    private static final long MIN_COMPACTION_LENGTH = 1024 * 1024;
+
+    private final Path path;
+    private final long maxAgeMs;
+    private FileChannel channel;
+    private DataOutputStream out;
+
+    // Length of the file, of its complete records and of the latest record for each detector.
+    private long length;
+    private long validLength;
+    private final Map<UUID, Long> liveRecordLengths = new HashMap<>();
+    private long liveLength;
+
+    /**
+     * @param path     checkpoint file
+     * @param maxAgeMs age in milliseconds after which snapshots are discarded
+     */
+    DetectorCheckpointStore(Path path, long maxAgeMs) {
+        notNull(path, "path can't be null");
+        isTrue(maxAgeMs > 0, "Required: maxAgeMs > 0");
+        this.path = path;
+        this.maxAgeMs = maxAgeMs;
+    }
+
+    /**
+     * Reads the live snapshots and opens the file for appending, creating it if it doesn't exist.
+     *
+     * @param currentTime current time in milliseconds
+     * @return snapshots no older than the maximum age, by detector UUID
+     * @throws IOException if the file can't be read or opened
+     */
+    Map<UUID, byte[]> open(long currentTime) throws IOException {
+        isTrue(channel == null, "Checkpoint store is already open");
+        boolean exists = Files.exists(path);
+        Map<UUID, Record> records = exists ? read(currentTime) : new HashMap<>();
+        if (!exists || validLength < length || isCompactionDue()) {
+            rewrite(records);
+        }
+        openForAppend();
+
+        Map<UUID, byte[]> snapshots = new HashMap<>();
+        records.forEach((uuid, record) -> snapshots.put(uuid, record.snapshot));
+        return snapshots;
+    }
+
+    /**
+     * Appends a detector snapshot. Call {@link #flush(long)} to make it durable.
+     *
+     * @param detectorUuid detector UUID
+     * @param snapshot     snapshot, or null to discard the detector's earlier snapshots
+     * @param writeTime    time the snapshot was taken in milliseconds
+     * @throws IOException if the snapshot can't be written
+     */
+    void append(UUID detectorUuid, byte[] snapshot, long writeTime) throws IOException {
+        notNull(detectorUuid, "detectorUuid can't be null");
+        isTrue(channel != null, "Checkpoint store isn't open");
+        writeRecord(out, detectorUuid, snapshot, writeTime);
+        length += recordLength(snapshot);
+        updateLiveLength(detectorUuid, snapshot);
+    }
+
+    /**
+     * Forces appended snapshots to disk, compacting the file if it has grown to twice its live size.
+     *
+     * @param currentTime current time in milliseconds
+     * @throws IOException if the file can't be written
+     */
+    void flush(long currentTime) throws IOException {
+        isTrue(channel != null, "Checkpoint store isn't open");
+        out.flush();
+        channel.force(false);
+        if (isCompactionDue()) {
+            close();
+            rewrite(read(currentTime));
+            openForAppend();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            try {
+                out.close();
+            } finally {
+                channel = null;
+                out = null;
+            }
+        }
+    }
+
+    long length() {
+        return length;
+    }
+
+    private boolean isCompactionDue() {
+        return length >= MIN_COMPACTION_LENGTH && length >= 2 * (liveLength + HEADER_LENGTH);
+    }
+
+    private void updateLiveLength(UUID detectorUuid, byte[] snapshot) {
+        Long previous = snapshot == null
+                ? liveRecordLengths.remove(detectorUuid)
+                : liveRecordLengths.put(detectorUuid, recordLength(snapshot));
+        liveLength += (snapshot == null ? 0 : recordLength(snapshot)) - (previous == null ? 0 : previous);
+    }
+
+    private Map<UUID, Record> read(long currentTime) throws IOException {
+        Map<UUID, Record> records = new HashMap<>();
+        this.length = Files.size(path);
+        this.validLength = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC || in.readByte() != FORMAT_VERSION) {
+                log.warn("Ignoring detector checkpoint file {} in an unknown format", path);
+                return records;
+            }
+            validLength = HEADER_LENGTH;
+            Record record;
+            while ((record = readRecord(in)) != null) {
+                validLength += recordLength(record.snapshot);
+                if (record.snapshot == null || currentTime - record.writeTime > maxAgeMs) {
+                    records.remove(record.detectorUuid);
+                } else {
+                    records.put(record.detectorUuid, record);
+                }
+            }
+        } catch (EOFException e) {
+            // Truncated tail after the last complete record.
+        }
+        if (validLength < length) {
+            log.warn("Discarding {} bytes of incomplete or corrupt detector checkpoints from {}",
+                    length - validLength, path);
+        }
+        resetLiveLength(records);
+        return records;
+    }
+
+    private void resetLiveLength(Map<UUID, Record> records) {
+        liveRecordLengths.clear();
+        liveLength = 0;
+        records.values().forEach(record -> updateLiveLength(record.detectorUuid, record.snapshot));
+    }
+
+    /**
+     * Reads a record, returning null at a clean end of file or a corrupt record.
+     */
+    private Record readRecord(DataInputStream in) throws IOException {
+        in.mark(1);
+        if (in.read() < 0) {
+            return null;
+        }
+        in.reset();
+        UUID detectorUuid = new UUID(in.readLong(), in.readLong());
+        long writeTime = in.readLong();
+        int snapshotLength = in.readInt();
+        if (snapshotLength != TOMBSTONE && (snapshotLength < 0 || snapshotLength > MAX_SNAPSHOT_LENGTH)) {
+            return null;
+        }
+        byte[] snapshot = snapshotLength == TOMBSTONE ? null : new byte[snapshotLength];
+        if (snapshot != null) {
+            in.readFully(snapshot);
+        }
+        int checksum = in.readInt();
+        if (checksum != checksum(detectorUuid, snapshot, writeTime)) {
+            return null;
+        }
+        return new Record(detectorUuid, writeTime, snapshot);
+    }
+
+    private void rewrite(Map<UUID, Record> records) throws IOException {
+        Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(tempPath.toFile());
+             DataOutputStream tempOut = new DataOutputStream(new BufferedOutputStream(file))) {
+            tempOut.writeInt(MAGIC);
+            tempOut.writeByte(FORMAT_VERSION);
+            for (Record record : records.values()) {
+                writeRecord(tempOut, record.detectorUuid, record.snapshot, record.writeTime);
+            }
+            tempOut.flush();
+            file.getFD().sync();
+        }
+        Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        resetLiveLength(records);
+        this.length = liveLength + HEADER_LENGTH;
+        this.validLength = length;
+        log.info("Compacted detector checkpoints: path={}, detectors={}, bytes={}", path, records.size(), length);
+    }
+
+    private void openForAppend() throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+    }
+
+    private static void writeRecord(DataOutputStream out, UUID detectorUuid, byte[] snapshot, long writeTime)
+            throws IOException {
+        out.writeLong(detectorUuid.getMostSignificantBits());
+        out.writeLong(detectorUuid.getLeastSignificantBits());
+        out.writeLong(writeTime);
+        out.writeInt(snapshot == null ? TOMBSTONE : snapshot.length);
+        if (snapshot != null) {
+            out.write(snapshot);
+        }
+        out.writeInt(checksum(detectorUuid, snapshot, writeTime));
+    }
+
+    private static int checksum(UUID detectorUuid, byte[] snapshot, long writeTime) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(28);
+        try (DataOutputStream fields = new DataOutputStream(bytes)) {
+            fields.writeLong(detectorUuid.getMostSignificantBits());
+            fields.writeLong(detectorUuid.getLeastSignificantBits());
+            fields.writeLong(writeTime);
+            fields.writeInt(snapshot == null ? TOMBSTONE : snapshot.length);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        if (snapshot != null) {
+            crc.update(snapshot);
+        }
+        return (int) crc.getValue();
+    }
+
+    private static long recordLength(byte[] snapshot) {
+        return RECORD_OVERHEAD + (snapshot == null ? 0 : snapshot.length);
+    }
+
+    private static final class Record {
+        private final UUID detectorUuid;
+        private final long writeTime;
+        private final byte[] snapshot;
+
+        Record(UUID detectorUuid, long writeTime, byte[] snapshot) {
+            this.detectorUuid = detectorUuid;
+            this.writeTime = writeTime;
+            this.snapshot = snapshot;
+        }
+    }
+}
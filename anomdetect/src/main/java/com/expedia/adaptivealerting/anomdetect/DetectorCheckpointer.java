@@ -0,0 +1,270 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.expedia.adaptivealerting.anomdetect.detect.DetectorContainer;
+import com.expedia.adaptivealerting.anomdetect.snapshot.DetectorSnapshotCodec;
+import com.expedia.adaptivealerting.anomdetect.snapshot.DetectorSnapshotException;
+import com.typesafe.config.Config;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.isTrue;
+import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.notNull;
+
+/**
+ * {@link DetectorStateStore} that checkpoints detector state to a local file, so that a restarted instance picks up its detectors where it
+ * left off instead of warming them up again.
+ * <p>
+ * Detectors that have seen metrics since the last checkpoint are dirty. Every checkpoint interval, the dirty
+ * {@link com.expedia.adaptivealerting.anomdetect.snapshot.Snapshottable} detectors are snapshotted on the detection
+ * thread, since detectors aren't thread-safe, and the snapshots are appended to a {@link DetectorCheckpointStore} on a
+ * background thread. On startup the stored snapshots are read back, and each is restored into its detector when it's
+ * first loaded. Detectors updated in modelservice have their snapshots discarded, since their state may no longer fit.
+ * Closing the checkpointer checkpoints the dirty detectors one last time.
+ */
+@Slf4j
+final class DetectorCheckpointer implements DetectorStateStore {
+
+    /**
+     * Whether detector state is checkpointed. Disabled by default.
+     */
+    private static final String CK_ENABLED = "detector-checkpoint-enabled";
+
+    /**
+     * Checkpoint file.
+     */
+    private static final String CK_PATH = "detector-checkpoint-path";
+
+    /**
+     * Milliseconds between checkpoints.
+     */
+    private static final String CK_INTERVAL_MS = "detector-checkpoint-interval-ms";
+
+    /**
+     * Minutes after which a checkpoint is too stale to restore.
+     */
+    private static final String CK_MAX_AGE_MINUTES = "detector-checkpoint-max-age-minutes";
+
+    private static final String DEFAULT_PATH = "detector-checkpoints.bin";
+    private static final long DEFAULT_INTERVAL_MS = 60_000;
+    private static final long DEFAULT_MAX_AGE_MINUTES = 1440;
+
+    private final long intervalMs;
+    private final DetectorCheckpointStore store;
+    private final ExecutorService writer;
+    private final Map<UUID, DetectorContainer> detectors;
+
+    // Snapshots read on startup that haven't been restored yet.
+    private final Map<UUID, byte[]> snapshots;
+    private final Set<UUID> dirtyDetectors = ConcurrentHashMap.newKeySet();
+    private final Queue<UUID> discardedDetectors = new ConcurrentLinkedQueue<>();
+    private long lastCheckpointTime;
+
+    private final Timer checkpointTimer;
+    private final Meter restoredMeter;
+    private final Meter restoreFailureMeter;
+    private final Meter writtenMeter;
+    private final Meter writeFailureMeter;
+
+    /**
+     * Reads the stored snapshots.
+     *
+     * @param config         detector manager config
+     * @param metricRegistry metric registry
+     * @param detectors      cached detectors, checkpointed on close
+     * @throws UncheckedIOException if the checkpoint file can't be opened
+     */
+    DetectorCheckpointer(Config config, MetricRegistry metricRegistry, Map<UUID, DetectorContainer> detectors) {
+        notNull(config, "config can't be null");
+        notNull(metricRegistry, "metricRegistry can't be null");
+        notNull(detectors, "detectors can't be null");
+        this.detectors = detectors;
+
+        String path = config.hasPath(CK_PATH) ? config.getString(CK_PATH) : DEFAULT_PATH;
+        this.intervalMs = config.hasPath(CK_INTERVAL_MS) ? config.getLong(CK_INTERVAL_MS) : DEFAULT_INTERVAL_MS;
+        long maxAgeMinutes = config.hasPath(CK_MAX_AGE_MINUTES)
+                ? config.getLong(CK_MAX_AGE_MINUTES)
+                : DEFAULT_MAX_AGE_MINUTES;
+        isTrue(intervalMs > 0, "Required: " + CK_INTERVAL_MS + " > 0");
+        isTrue(maxAgeMinutes > 0, "Required: " + CK_MAX_AGE_MINUTES + " > 0");
+
+        this.checkpointTimer = metricRegistry.timer("detector.checkpoint");
+        this.restoredMeter = metricRegistry.meter("detector.checkpoint.restored");
+        this.restoreFailureMeter = metricRegistry.meter("detector.checkpoint.restoreFailure");
+        this.writtenMeter = metricRegistry.meter("detector.checkpoint.written");
+        this.writeFailureMeter = metricRegistry.meter("detector.checkpoint.writeFailure");
+
+        long now = System.currentTimeMillis();
+        this.store = new DetectorCheckpointStore(Paths.get(path), TimeUnit.MINUTES.toMillis(maxAgeMinutes));
+        try {
+            this.snapshots = new ConcurrentHashMap<>(store.open(now));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't open detector checkpoint file " + path, e);
+        }
+        this.lastCheckpointTime = now;
+        this.writer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "detector-checkpoint-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        log.info("Read {} detector checkpoints from {}", snapshots.size(), path);
+    }
+
+    static boolean isEnabled(Config config) {
+        return config.hasPath(CK_ENABLED) && config.getBoolean(CK_ENABLED);
+    }
+
+    @Override
+    public boolean hasState(UUID detectorUuid) {
+        return snapshots.containsKey(detectorUuid);
+    }
+
+    @Override
+    public Set<UUID> storedDetectorUuids() {
+        return new HashSet<>(snapshots.keySet());
+    }
+
+    /**
+     * {@inheritDoc} Each snapshot is restored at most once.
+     */
+    @Override
+    public boolean restore(DetectorContainer container) {
+        notNull(container, "container can't be null");
+        UUID detectorUuid = container.getDetector().getUuid();
+        byte[] snapshot = snapshots.remove(detectorUuid);
+        if (snapshot == null || !DetectorSnapshotCodec.isSupported(container.getDetector())) {
+            return false;
+        }
+        try {
+            DetectorSnapshotCodec.restore(container.getDetector(), snapshot);
+            restoredMeter.mark();
+            return true;
+        } catch (DetectorSnapshotException e) {
+            log.warn("Couldn't restore detector from its checkpoint, initializing it instead", e);
+            restoreFailureMeter.mark();
+            return false;
+        }
+    }
+
+    @Override
+    public void markDirty(UUID detectorUuid) {
+        dirtyDetectors.add(detectorUuid);
+    }
+
+    @Override
+    public void discard(UUID detectorUuid) {
+        snapshots.remove(detectorUuid);
+        dirtyDetectors.remove(detectorUuid);
+        discardedDetectors.add(detectorUuid);
+    }
+
+    /**
+     * Snapshots the dirty detectors if the checkpoint interval has passed, and hands them off to be written.
+     */
+    @Override
+    public void checkpointIfDue(Map<UUID, DetectorContainer> detectors, long currentTime) {
+        if (currentTime - lastCheckpointTime >= intervalMs) {
+            checkpoint(detectors, currentTime);
+        }
+    }
+
+    /**
+     * Snapshots the dirty detectors and hands them off to be written.
+     */
+    @Override
+    public void checkpoint(Map<UUID, DetectorContainer> detectors, long currentTime) {
+        lastCheckpointTime = currentTime;
+
+        Map<UUID, byte[]> checkpoint = new LinkedHashMap<>();
+        UUID discarded;
+        while ((discarded = discardedDetectors.poll()) != null) {
+            checkpoint.put(discarded, null);
+        }
+        try (Timer.Context autoClosable = checkpointTimer.time()) {
+            Iterator<UUID> it = dirtyDetectors.iterator();
+            while (it.hasNext()) {
+                UUID detectorUuid = it.next();
+                it.remove();
+                DetectorContainer container = detectors.get(detectorUuid);
+                if (container == null || !DetectorSnapshotCodec.isSupported(container.getDetector())) {
+                    continue;
+                }
+                try {
+                    checkpoint.put(detectorUuid, DetectorSnapshotCodec.snapshot(container.getDetector()));
+                } catch (DetectorSnapshotException e) {
+                    log.warn("Couldn't snapshot detector {}", detectorUuid, e);
+                    writeFailureMeter.mark();
+                }
+            }
+        }
+        if (!checkpoint.isEmpty()) {
+            writer.execute(() -> write(checkpoint, currentTime));
+        }
+    }
+
+    /**
+     * Checkpoints the dirty detectors, writes outstanding checkpoints and closes the checkpoint file. Must be called from
+     * the detection thread.
+     */
+    @Override
+    public void close() {
+        checkpoint(detectors, System.currentTimeMillis());
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(1, TimeUnit.MINUTES)) {
+                log.warn("Timed out writing detector checkpoints");
+            }
+            store.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            log.error("Error closing detector checkpoint file", e);
+        }
+    }
+
+    private void write(Map<UUID, byte[]> checkpoint, long writeTime) {
+        try {
+            for (Map.Entry<UUID, byte[]> entry : checkpoint.entrySet()) {
+                store.append(entry.getKey(), entry.getValue(), writeTime);
+            }
+            store.flush(writeTime);
+            writtenMeter.mark(checkpoint.size());
+            log.debug("Checkpointed {} detectors", checkpoint.size());
+        } catch (IOException e) {
+            log.error("Error writing {} detector checkpoints", checkpoint.size(), e);
+            writeFailureMeter.mark(checkpoint.size());
+        }
+    }
+}
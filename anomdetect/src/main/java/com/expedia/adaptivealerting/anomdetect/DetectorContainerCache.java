@@ -0,0 +1,109 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.expedia.adaptivealerting.anomdetect.detect.DetectorContainer;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalNotification;
+import com.typesafe.config.Config;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.isTrue;
+import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.notNull;
+
+/**
+ * Thread-safe, bounded cache of detectors for {@link DetectorManager}.
+ * <p>
+ * The cache is split into independently locked segments, so several stream threads can look up and load detectors at
+ * once. Its total size is capped by the estimated heap usage of the detectors ({@link DetectorContainerWeigher}), with
+ * the least recently used detectors evicted first, and detectors that haven't been used for a while are evicted too.
+ * Evicted detectors are simply reloaded from the detector source when their metrics next come in.
+ */
+public final class DetectorContainerCache {
+
+    /**
+     * Maximum estimated heap usage of the cached detectors, in megabytes.
+     */
+    private static final String CK_MAX_WEIGHT_MB = "detector-cache-max-weight-mb";
+
+    /**
+     * Minutes after which an unused detector is evicted.
+     */
+    private static final String CK_EXPIRE_AFTER_ACCESS_MINUTES = "detector-cache-expire-after-access-minutes";
+
+    /**
+     * Number of cache segments, i.e. the number of threads expected to update the cache at once.
+     */
+    private static final String CK_CONCURRENCY_LEVEL = "detector-cache-concurrency-level";
+
+    private static final long DEFAULT_MAX_WEIGHT_MB = 1024;
+    private static final long DEFAULT_EXPIRE_AFTER_ACCESS_MINUTES = 24 * 60;
+    private static final int DEFAULT_CONCURRENCY_LEVEL = 4;
+
+    private final Cache<UUID, DetectorContainer> cache;
+    private final Meter evictionMeter;
+
+    public DetectorContainerCache(Config config, MetricRegistry metricRegistry) {
+        notNull(config, "config can't be null");
+        notNull(metricRegistry, "metricRegistry can't be null");
+
+        long maxWeightMb = config.hasPath(CK_MAX_WEIGHT_MB) ? config.getLong(CK_MAX_WEIGHT_MB) : DEFAULT_MAX_WEIGHT_MB;
+        long expireAfterAccessMinutes = config.hasPath(CK_EXPIRE_AFTER_ACCESS_MINUTES)
+                ? config.getLong(CK_EXPIRE_AFTER_ACCESS_MINUTES)
+                : DEFAULT_EXPIRE_AFTER_ACCESS_MINUTES;
+        int concurrencyLevel = config.hasPath(CK_CONCURRENCY_LEVEL)
+                ? config.getInt(CK_CONCURRENCY_LEVEL)
+                : DEFAULT_CONCURRENCY_LEVEL;
+        isTrue(maxWeightMb > 0, "Required: " + CK_MAX_WEIGHT_MB + " > 0");
+        isTrue(expireAfterAccessMinutes > 0, "Required: " + CK_EXPIRE_AFTER_ACCESS_MINUTES + " > 0");
+        isTrue(concurrencyLevel > 0, "Required: " + CK_CONCURRENCY_LEVEL + " > 0");
+
+        this.evictionMeter = metricRegistry.meter("detector.cache.eviction");
+        this.cache = CacheBuilder.newBuilder()
+                .concurrencyLevel(concurrencyLevel)
+                .maximumWeight(maxWeightMb * 1024 * 1024)
+                .weigher(new DetectorContainerWeigher())
+                .expireAfterAccess(expireAfterAccessMinutes, TimeUnit.MINUTES)
+                .removalListener(this::onRemoval)
+                .build();
+
+        // Replace rather than register, so that a new manager (e.g. in tests) doesn't clash with an old one.
+        metricRegistry.remove("detector.cache.size");
+        metricRegistry.register("detector.cache.size", (Gauge<Long>) cache::size);
+    }
+
+    /**
+     * Returns a live, thread-safe map view of the cache.
+     *
+     * @return map view of the cache
+     */
+    public Map<UUID, DetectorContainer> asMap() {
+        return cache.asMap();
+    }
+
+    private void onRemoval(RemovalNotification<UUID, DetectorContainer> notification) {
+        if (notification.wasEvicted()) {
+            evictionMeter.mark();
+        }
+    }
+}
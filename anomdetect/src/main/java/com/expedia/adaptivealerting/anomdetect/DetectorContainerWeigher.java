@@ -0,0 +1,95 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect;
+
+import com.expedia.adaptivealerting.anomdetect.detect.Detector;
+import com.expedia.adaptivealerting.anomdetect.detect.DetectorContainer;
+import com.expedia.adaptivealerting.anomdetect.detect.breakout.algo.edmx.EdmxDetector;
+import com.expedia.adaptivealerting.anomdetect.detect.outlier.algo.forecasting.ForecastingDetector;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.PointForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.algo.holtwinters.HoltWintersPointForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.algo.seasonalnaive.SeasonalNaivePointForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.algo.sma.SmaPointForecaster;
+import com.google.common.cache.Weigher;
+
+import java.util.UUID;
+
+/**
+ * Estimates the heap usage of a cached detector in bytes. The estimates are deliberately rough: a fixed overhead for
+ * the detector, its parameters and filters, plus the per-point cost of whatever history the detector type keeps.
+ */
+public final class DetectorContainerWeigher implements Weigher<UUID, DetectorContainer> {
+
+    /**
+     * Detector, container, parameters, classifier and filters.
+     */
+    static final int BASE_WEIGHT = 2048;
+
+    /**
+     * A buffered {@link com.expedia.metrics.MetricData}, including its metric definition and tags.
+     */
+    static final int METRIC_DATA_WEIGHT = 512;
+
+    /**
+     * A primitive double.
+     */
+    static final int DOUBLE_WEIGHT = 8;
+
+    /**
+     * A boxed double in a queue.
+     */
+    static final int BOXED_DOUBLE_WEIGHT = 24;
+
+    /**
+     * A Holt-Winters seasonal component: the estimate plus its summary statistics.
+     */
+    static final int SEASONAL_COMPONENT_WEIGHT = DOUBLE_WEIGHT + 160;
+
+    /**
+     * Values assumed for a moving average with an unbounded look back period.
+     */
+    static final int UNBOUNDED_LOOK_BACK_VALUES = 1024;
+
+    @Override
+    public int weigh(UUID uuid, DetectorContainer container) {
+        long weight = BASE_WEIGHT + historyWeight(container.getDetector());
+        return (int) Math.min(weight, Integer.MAX_VALUE);
+    }
+
+    private static long historyWeight(Detector detector) {
+        if (detector instanceof EdmxDetector) {
+            return (long) ((EdmxDetector) detector).getHyperparams().getBufferSize() * METRIC_DATA_WEIGHT;
+        }
+        if (detector instanceof ForecastingDetector) {
+            return historyWeight(((ForecastingDetector) detector).getPointForecaster());
+        }
+        return 0L;
+    }
+
+    private static long historyWeight(PointForecaster forecaster) {
+        if (forecaster instanceof SeasonalNaivePointForecaster) {
+            return (long) ((SeasonalNaivePointForecaster) forecaster).getParams().getCycleLength() * DOUBLE_WEIGHT;
+        }
+        if (forecaster instanceof HoltWintersPointForecaster) {
+            return (long) ((HoltWintersPointForecaster) forecaster).getParams().getFrequency() * SEASONAL_COMPONENT_WEIGHT;
+        }
+        if (forecaster instanceof SmaPointForecaster) {
+            int lookBackPeriod = ((SmaPointForecaster) forecaster).getParams().getLookBackPeriod();
+            return (long) Math.min(lookBackPeriod, UNBOUNDED_LOOK_BACK_VALUES) * BOXED_DOUBLE_WEIGHT;
+        }
+        return 0L;
+    }
+}
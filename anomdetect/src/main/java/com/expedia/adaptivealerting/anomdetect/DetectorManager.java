@@ -23,8 +23,13 @@ import com.expedia.adaptivealerting.anomdetect.detect.Detector;
 import com.expedia.adaptivealerting.anomdetect.detect.DetectorContainer;
 import com.expedia.adaptivealerting.anomdetect.detect.DetectorResult;
 import com.expedia.adaptivealerting.anomdetect.detect.MappedMetricData;
+import com.expedia.adaptivealerting.anomdetect.instrument.PipelineInstruments;
+import com.expedia.adaptivealerting.anomdetect.instrument.Stage;
 import com.expedia.adaptivealerting.anomdetect.source.DetectorException;
 import com.expedia.adaptivealerting.anomdetect.source.DetectorSource;
+import com.expedia.adaptivealerting.anomdetect.source.ModelChangeEvent;
+import com.expedia.adaptivealerting.anomdetect.source.ModelChangeFeed;
+import com.expedia.adaptivealerting.anomdetect.source.ModelChangeListener;
 import com.expedia.adaptivealerting.anomdetect.source.data.initializer.DataInitializer;
 import com.expedia.adaptivealerting.anomdetect.source.data.initializer.DetectorDataInitializationThrottledException;
 import com.expedia.metrics.MetricData;
@@ -37,41 +42,45 @@ import lombok.val;
 import org.slf4j.MDC;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.Queue;
 import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
-import java.util.function.Function;
+import java.util.function.BiConsumer;
 
 import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.notNull;
 
 /**
  * Component that manages a given set of anomaly detectors.
  * <p>
- * Detector manager maintains an internal cache of (UUID : Detectors).
- * This cache is kept up-to-date by polling modelservice for changes.
+ * Detector manager maintains an internal cache of (UUID : Detectors), kept up-to-date by polling modelservice for
+ * changes and, given a {@link ModelChangeFeed}, by the changes it pushes. Detectors missing from the cache are loaded
+ * on the calling thread, or in the background with asynchronous loading enabled, and their state may be saved to and
+ * restored from a {@link DetectorStateStore}.
  * <p>
- * An alternative event-based approach to keep cache updated is to compare last-modified timestamp of a detector.
- * This approach however doesn't provide a way to delete an existing detector.
+ * Detection may run on several threads so long as all metrics for a given detector go to the same thread, and
+ * {@link #replayLoadedDetectors()}, {@link #checkpointIfDue()} and {@link #close()} are only called between batches.
  */
 @RequiredArgsConstructor
 @Slf4j
 // TODO: This class is getting much too big. Refactor by breaking out smaller, single-purpose collaborator classes.
-public class DetectorManager {
+public class DetectorManager implements ModelChangeListener {
     private static final String CK_DETECTOR_REFRESH_PERIOD = "detector-refresh-period";
     private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
     private final Timer detectorForTimer;
     private final Meter noDetectorFoundMeter;
-    private final Function<String, Timer> detectTimer;
-    private MetricRegistry metricRegistry;
+    private final Meter cacheHitMeter;
+    private final Meter cacheMissMeter;
+    @Getter
+    private final PipelineInstruments instruments;
     private final DetectorExecutorImpl detectorExecutor = new DetectorExecutorImpl();
 
     // TODO Consider making this an explicit class so we can mock it and verify interactions
@@ -82,12 +91,16 @@ public class DetectorManager {
     private DetectorSource detectorSource;
     private int detectorRefreshTimePeriod;
 
-    //This assumes that we are running single thread per consumer
-    private Queue<UUID> detectorsLastUsedTimeToBeUpdatedQueue;
+    // Last time each detector was used since the last sync. Holds one entry per detector rather than per metric.
+    private final Map<UUID, Long> detectorsLastUsedTimes = new ConcurrentHashMap<>();
 
     private long cacheSyncedTillTime = System.currentTimeMillis();
     private long detectorsLastUsedSyncedTillTime = System.currentTimeMillis();
     private DataInitializer dataInitializer;
+    private final AsyncDetectorLoader asyncLoader;
+    private final DetectorStateStore stateStore;
+    private final DetectorPreloader preloader;
+    private volatile ModelChangeFeed modelChangeFeed;
 
     /**
      * Creates a new detector manager from the given parameters.
@@ -103,6 +116,26 @@ public class DetectorManager {
                            Config config,
                            Map<UUID, DetectorContainer> cachedDetectors,
                            MetricRegistry metricRegistry) {
+        this(detectorSource, dataInitializer, config, cachedDetectors, metricRegistry,
+                DetectorCheckpointer.isEnabled(config) ? new DetectorCheckpointer(config, metricRegistry, cachedDetectors) : null);
+    }
+
+    /**
+     * Creates a new detector manager that saves detector state to the given store.
+     *
+     * @param detectorSource  DetectorSource
+     * @param dataInitializer DataInitializer collaborator
+     * @param config          Config
+     * @param cachedDetectors Map containing cached detectors
+     * @param metricRegistry  MetricRegistry collaborator
+     * @param stateStore      detector state store, or null to keep detector state in the cache only
+     */
+    public DetectorManager(DetectorSource detectorSource,
+                           DataInitializer dataInitializer,
+                           Config config,
+                           Map<UUID, DetectorContainer> cachedDetectors,
+                           MetricRegistry metricRegistry,
+                           DetectorStateStore stateStore) {
         // TODO: Seems odd to include this constructor, whose purpose seems to be to support unit testing.
         //  At least I don't think it should be public.
         //  This is conceptually just the base constructor with the cache exposed.[WLW]
@@ -110,12 +143,19 @@ public class DetectorManager {
         this.dataInitializer = dataInitializer;
         this.detectorSource = detectorSource;
         this.detectorRefreshTimePeriod = config.getInt(CK_DETECTOR_REFRESH_PERIOD);
-        this.detectorsLastUsedTimeToBeUpdatedQueue = new ConcurrentLinkedQueue<>();
 
-        this.metricRegistry = metricRegistry;
         detectorForTimer = metricRegistry.timer("detector.detectorFor");
         noDetectorFoundMeter = metricRegistry.meter("detector.nullDetector");
-        detectTimer = (name) -> metricRegistry.timer("detector." + name + ".detect");
+        cacheHitMeter = metricRegistry.meter("detector.cache.hit");
+        cacheMissMeter = metricRegistry.meter("detector.cache.miss");
+        this.instruments = new PipelineInstruments(metricRegistry);
+        this.asyncLoader = AsyncDetectorLoader.isEnabled(config)
+                ? new AsyncDetectorLoader(config, metricRegistry, this::loadDetector)
+                : null;
+        this.stateStore = stateStore;
+        this.preloader = DetectorPreloader.isEnabled(config)
+                ? new DetectorPreloader(config, metricRegistry, detectorSource)
+                : null;
 
         this.initScheduler();
     }
@@ -124,7 +164,7 @@ public class DetectorManager {
                            DataInitializer dataInitializer,
                            Config config,
                            MetricRegistry metricRegistry) {
-        this(detectorSource, dataInitializer, config, new HashMap<>(), metricRegistry);
+        this(detectorSource, dataInitializer, config, new DetectorContainerCache(config, metricRegistry).asMap(), metricRegistry);
     }
 
     private void initScheduler() {
@@ -150,6 +190,9 @@ public class DetectorManager {
         try {
             MDC.put("DetectorUuid", mappedMetricData.getDetectorUuid().toString());
             checkMappedMetricData(mappedMetricData);
+            if (asyncLoader != null && parkIfLoading(mappedMetricData)) {
+                return null;
+            }
             Optional<DetectorContainer> container = getDetector(mappedMetricData);
             if (container.isPresent()) {
                 Optional<DetectorResult> optionalDetectorResult = doDetection(container.get(), mappedMetricData.getMetricData());
@@ -162,6 +205,166 @@ public class DetectorManager {
         }
     }
 
+    /**
+     * Runs detection on the metrics that were parked while their detectors loaded asynchronously, and caches the loaded
+     * detectors. Metrics for each detector are replayed in the order they arrived in. Returns nothing unless
+     * asynchronous loading is enabled.
+     *
+     * @return the replayed metrics with their anomaly results
+     */
+    public List<MappedMetricData> replayLoadedDetectors() {
+        List<MappedMetricData> results = new ArrayList<>();
+        replayLoadedDetectors((mappedMetricData, result) -> {
+            if (result != null) {
+                results.add(new MappedMetricData(mappedMetricData, result));
+            }
+        });
+        return results;
+    }
+
+    /**
+     * Same as {@link #replayLoadedDetectors()}, but hands every replayed metric to the given consumer, including those
+     * without a result or whose detector couldn't be loaded. Callers that track each parked metric can use this to tell
+     * when it's done.
+     *
+     * @param replayed receives each parked metric as it was passed to {@link #detect(MappedMetricData)}, and its anomaly
+     *                 result or {@code null}
+     */
+    public void replayLoadedDetectors(BiConsumer<MappedMetricData, DetectorResult> replayed) {
+        notNull(replayed, "replayed can't be null");
+        if (asyncLoader == null) {
+            return;
+        }
+        for (AsyncDetectorLoader.LoadedDetector loaded : asyncLoader.takeLoaded(System.currentTimeMillis())) {
+            DetectorContainer container = loaded.getContainer();
+            if (container == null) {
+                log.warn("No detector for {} parked metrics, detectorUuid={}",
+                        loaded.getParkedMetrics().size(), loaded.getDetectorUuid());
+                noDetectorFoundMeter.mark(loaded.getParkedMetrics().size());
+                loaded.getParkedMetrics().forEach(mappedMetricData -> replayed.accept(mappedMetricData, null));
+                continue;
+            }
+            cachedDetectors.put(loaded.getDetectorUuid(), container);
+            for (MappedMetricData mappedMetricData : loaded.getParkedMetrics()) {
+                DetectorResult result;
+                try {
+                    MDC.put("DetectorUuid", loaded.getDetectorUuid().toString());
+                    result = doDetection(container, mappedMetricData.getMetricData()).orElse(null);
+                } finally {
+                    MDC.remove("DetectorUuid");
+                }
+                replayed.accept(mappedMetricData, result);
+            }
+        }
+    }
+
+    /**
+     * Tells whether {@link #detect(MappedMetricData)} parked the given metric rather than running detection on it, in
+     * which case its result comes from a later {@link #replayLoadedDetectors()}. Call it right after
+     * {@link #detect(MappedMetricData)}, from the same thread.
+     *
+     * @param mappedMetricData mapped metric data just passed to {@link #detect(MappedMetricData)}
+     * @return whether the metric is parked
+     */
+    public boolean isParked(MappedMetricData mappedMetricData) {
+        return asyncLoader != null && asyncLoader.isParked(mappedMetricData);
+    }
+
+    public boolean isPreloadEnabled() {
+        return preloader != null;
+    }
+
+    /**
+     * Returns the detectors there's stored state for, which were in use when this instance last checkpointed. Empty
+     * without a state store.
+     *
+     * @return detector UUIDs
+     */
+    public Set<UUID> getStoredDetectorUuids() {
+        return stateStore == null ? Collections.emptySet() : stateStore.storedDetectorUuids();
+    }
+
+    /**
+     * Fetches, builds and caches the given detectors ahead of their first metrics, if preloading is enabled. Detectors
+     * with stored state are restored from it. Detectors that are already cached are skipped, as are detectors that
+     * need data initialization from their first metric and can't be restored: those are loaded when their first
+     * metrics arrive. Must be called from the same thread as {@link #detect(MappedMetricData)}, while no detection is
+     * running.
+     *
+     * @param detectorUuids detector UUIDs
+     * @return the number of detectors cached
+     */
+    public int preload(Collection<UUID> detectorUuids) {
+        notNull(detectorUuids, "detectorUuids can't be null");
+        if (preloader == null) {
+            return 0;
+        }
+        List<UUID> uncachedUuids = new ArrayList<>();
+        for (UUID detectorUuid : detectorUuids) {
+            if (!cachedDetectors.containsKey(detectorUuid)) {
+                uncachedUuids.add(detectorUuid);
+            }
+        }
+        int preloaded = 0;
+        for (Map.Entry<UUID, DetectorContainer> entry : preloader.fetch(uncachedUuids).entrySet()) {
+            val detectorUuid = entry.getKey();
+            val container = entry.getValue();
+            if (stateStore != null && stateStore.hasState(detectorUuid)) {
+                if (!stateStore.restore(container)) {
+                    // The detector may be partially restored, so leave it to be loaded afresh.
+                    continue;
+                }
+            } else if (dataInitializer != null && dataInitializer.needsInitialization(container.getDetector())) {
+                continue;
+            }
+            cachedDetectors.put(detectorUuid, container);
+            preloaded++;
+        }
+        log.info("Preloaded {} of {} detectors", preloaded, uncachedUuids.size());
+        return preloaded;
+    }
+
+    /**
+     * Checkpoints the state of detectors used since the last checkpoint, if there's a state store and a checkpoint is
+     * due. Must be called from the same thread as {@link #detect(MappedMetricData)}.
+     */
+    public void checkpointIfDue() {
+        if (stateStore != null) {
+            stateStore.checkpointIfDue(cachedDetectors, System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Stops refreshing detectors and, if there's a state store, writes a final checkpoint and closes the store. Must be called from the
+     * same thread as {@link #detect(MappedMetricData)}.
+     */
+    public void close() {
+        scheduler.shutdown();
+        if (stateStore != null) {
+            stateStore.checkpoint(cachedDetectors, System.currentTimeMillis());
+            stateStore.close();
+        }
+    }
+
+    /**
+     * Parks the metric if its detector isn't cached or is still loading, so that it's replayed in order once loaded.
+     */
+    private boolean parkIfLoading(MappedMetricData mappedMetricData) {
+        long startNanos = System.nanoTime();
+        try {
+            val detectorUuid = mappedMetricData.getDetectorUuid();
+            if (!asyncLoader.isParked(detectorUuid) && cachedDetectors.containsKey(detectorUuid)) {
+                return false;
+            }
+            markUsed(detectorUuid);
+            cacheMissMeter.mark();
+            asyncLoader.park(mappedMetricData, System.currentTimeMillis());
+            return true;
+        } finally {
+            recordLookup(System.nanoTime() - startNanos);
+        }
+    }
+
     private Optional<DetectorContainer> getDetector(MappedMetricData mappedMetricData) {
         Optional<DetectorContainer> optionalDetector = detectorFor(mappedMetricData);
         if (!optionalDetector.isPresent()) {
@@ -172,28 +375,49 @@ public class DetectorManager {
     }
 
     private Optional<DetectorContainer> detectorFor(MappedMetricData mappedMetricData) {
-        try (Timer.Context autoClosable = detectorForTimer.time()) {
+        long startNanos = System.nanoTime();
+        try {
             val detectorUuid = mappedMetricData.getDetectorUuid();
             DetectorContainer container = cachedDetectors.get(detectorUuid);
-            detectorsLastUsedTimeToBeUpdatedQueue.add(detectorUuid);
+            markUsed(detectorUuid);
             if (container == null) {
-                container = detectorSource.findDetector(detectorUuid);
-                return (container == null) ? Optional.empty()
-                        : initDataAndCacheIfSuccessful(mappedMetricData, detectorUuid, container);
+                cacheMissMeter.mark();
+                Optional<DetectorContainer> loaded = loadDetector(mappedMetricData);
+                loaded.ifPresent(it -> cachedDetectors.put(detectorUuid, it));
+                return loaded;
             } else {
+                cacheHitMeter.mark();
                 log.trace("Got cached detector");
                 return Optional.of(container);
             }
+        } finally {
+            recordLookup(System.nanoTime() - startNanos);
         }
     }
 
-    private Optional<DetectorContainer> initDataAndCacheIfSuccessful(MappedMetricData mappedMetricData,
-                                                                     UUID detectorUuid,
-                                                                     DetectorContainer container) {
-        // NPE HERE
+    private void recordLookup(long nanos) {
+        detectorForTimer.update(nanos, TimeUnit.NANOSECONDS);
+        instruments.record(Stage.LOOKUP, nanos);
+    }
+
+    private Optional<DetectorContainer> loadDetector(MappedMetricData mappedMetricData) {
+        DetectorContainer container = detectorSource.findDetector(mappedMetricData.getDetectorUuid());
+        if (container == null) {
+            return Optional.empty();
+        }
+        if (stateStore != null && stateStore.hasState(mappedMetricData.getDetectorUuid())) {
+            if (stateStore.restore(container)) {
+                log.debug("Restored detector from its stored state. Caching detector.");
+                return Optional.of(container);
+            }
+            // The detector may be partially restored, so start over with a fresh one.
+            container = detectorSource.findDetector(mappedMetricData.getDetectorUuid());
+            if (container == null) {
+                return Optional.empty();
+            }
+        }
         boolean dataInitCompleted = attemptDataInitialization(mappedMetricData, container.getDetector());
         if (dataInitCompleted) {
-            cachedDetectors.put(detectorUuid, container);
             log.debug("Data Initialization phase is complete.  Caching detector.");
             return Optional.ofNullable(container);
         } else {
@@ -204,6 +428,7 @@ public class DetectorManager {
 
     private boolean attemptDataInitialization(MappedMetricData mappedMetricData, Detector detector) {
         boolean dataInitCompleted;
+        long startNanos = System.nanoTime();
         try {
             val detectorMapping = detectorSource.findDetectorMappingByUuid(detector.getUuid());
             dataInitializer.initializeDetector(mappedMetricData, detector, detectorMapping);
@@ -214,33 +439,33 @@ public class DetectorManager {
         } catch (Exception e) {
             log.error("Error encountered while initialising detector. Ignoring error and proceeding with un-initialized detector.", e);
             dataInitCompleted = true;
+        } finally {
+            instruments.record(Stage.DATA_INIT, System.nanoTime() - startNanos);
         }
         return dataInitCompleted;
     }
 
     private Optional<DetectorResult> doDetection(DetectorContainer container, MetricData metricData) {
-        try (Timer.Context autoClosable = detectTimer.apply(container.getName()).time()) {
-            Optional<DetectorResult> optionalDetectorResult = Optional.empty();
-            try {
-                DetectorResult detectorResult = detectorExecutor.doDetection(container, metricData);
-                optionalDetectorResult = Optional.of(detectorResult);
-            } catch (Exception e) {
-                log.error("Error during anomaly detection", e);
-            } finally {
-                markAnomalyLevelMeter(container.getDetector(), optionalDetectorResult);
+        val detectorInstruments = instruments.forDetector(container.getName());
+        long startNanos = System.nanoTime();
+        Optional<DetectorResult> optionalDetectorResult = Optional.empty();
+        try {
+            DetectorResult detectorResult = detectorExecutor.doDetection(container, metricData);
+            optionalDetectorResult = Optional.of(detectorResult);
+            if (stateStore != null) {
+                stateStore.markDirty(container.getDetector().getUuid());
             }
-            return optionalDetectorResult;
+        } catch (Exception e) {
+            log.error("Error during anomaly detection", e);
+        } finally {
+            AnomalyLevel anomalyLevel = optionalDetectorResult.map(DetectorResult::getAnomalyLevel).orElse(null);
+            detectorInstruments.recordDetect(System.nanoTime() - startNanos, anomalyLevel);
         }
-    }
-
-    private void markAnomalyLevelMeter(@NonNull Detector detector, Optional<DetectorResult> optionalDetectorResult) {
-        AnomalyLevel anomalyLevel = optionalDetectorResult.map(DetectorResult::getAnomalyLevel).orElse(null);
-        getDetectorAndLevelMeter(detector.getName(), anomalyLevel).mark();
+        return optionalDetectorResult;
     }
 
     public Meter getDetectorAndLevelMeter(String name, AnomalyLevel anomalyLevel) {
-        String anomalyLevelStr = (anomalyLevel == null) ? "NONE" : anomalyLevel.name();
-        return metricRegistry.meter("detector." + name + "." + anomalyLevelStr);
+        return instruments.forDetector(name).levelMeter(anomalyLevel);
     }
 
     private void checkMappedMetricData(MappedMetricData mappedMetricData) {
@@ -248,11 +473,35 @@ public class DetectorManager {
         notNull(mappedMetricData.getDetectorUuid(), "MappedMetricData contains illegal detectorUuid=null");
     }
 
+    /**
+     * Evicts the changed detector, so that it's reloaded when its next metric comes in. Mapping changes are ignored.
+     *
+     * @param event model change
+     */
+    @Override
+    public void onModelChange(ModelChangeEvent event) {
+        if (event.getEntityType() != ModelChangeEvent.EntityType.DETECTOR) {
+            return;
+        }
+        val detectorUuid = UUID.fromString(event.getId());
+        if (evict(detectorUuid)) {
+            log.info("Removed {} detector from cache: detectorUuid={}", event.getChangeType(), detectorUuid);
+        }
+    }
+
+    @Override
+    public void setModelChangeFeed(ModelChangeFeed modelChangeFeed) {
+        this.modelChangeFeed = modelChangeFeed;
+    }
+
     /**
      * Sync with detector data store by polling to get all deleted detectors
      * The deleted detectors will be cleaned up and the detectors modified will be reloaded
      * when corresponding mapped-metric comes in.
      * On successful sync update cacheSyncedTillTime to currentTime
+     * <p>
+     * Skips polling if there's a model change feed that has been live since the last sync, until its catch-up period
+     * is up. The catch-up poll then covers everything since the last sync, in case a change failed to publish.
      */
     List<UUID> detectorCacheSync(long currentTime) {
         List<UUID> updatedDetectors = new ArrayList<>();
@@ -261,10 +510,12 @@ public class DetectorManager {
         if (updateDurationInSeconds <= 0) {
             return updatedDetectors;
         }
+        if (modelChangeFeed != null && modelChangeFeed.canSkipPoll(cacheSyncedTillTime, currentTime)) {
+            return updatedDetectors;
+        }
 
         detectorSource.findUpdatedDetectors(updateDurationInSeconds).forEach(key -> {
-            if (cachedDetectors.containsKey(key)) {
-                cachedDetectors.remove(key);
+            if (evict(key)) {
                 updatedDetectors.add(key);
             }
         });
@@ -283,30 +534,41 @@ public class DetectorManager {
     void detectorLastUsedTimeSync(long currentTime) {
         long updateDurationInSeconds = (currentTime - detectorsLastUsedSyncedTillTime) / 1000;
 
-        if (updateDurationInSeconds <= 0 || detectorsLastUsedTimeToBeUpdatedQueue.isEmpty()) {
+        if (updateDurationInSeconds <= 0 || detectorsLastUsedTimes.isEmpty()) {
             return;
         }
-        processDetectorsLastTimeUsedQueue();
+        processDetectorsLastUsedTimes();
         detectorsLastUsedSyncedTillTime = currentTime;
     }
 
-    private void processDetectorsLastTimeUsedQueue() {
-        int detectorsLastUsedTimeQueueSize = detectorsLastUsedTimeToBeUpdatedQueue.size();
-        Set<UUID> detectorsLastUsedTimeToBeUpdatedSet = new HashSet<>();
-        int noOfDetectorsUpdated = 0;
-        for (int i = 0; i < detectorsLastUsedTimeQueueSize; i++) {
-            UUID detectorUUID = detectorsLastUsedTimeToBeUpdatedQueue.poll();
-            if (!detectorsLastUsedTimeToBeUpdatedSet.contains(detectorUUID)) {
-                detectorsLastUsedTimeToBeUpdatedSet.add(detectorUUID);
-                try {
-                    detectorSource.updatedDetectorLastUsed(detectorUUID);
-                    noOfDetectorsUpdated++;
-                } catch (DetectorException ex) {
-                    log.error("Error updating last accessed time for detector UUID: {}", detectorUUID);
-                }
+    private boolean evict(UUID detectorUuid) {
+        if (stateStore != null) {
+            stateStore.discard(detectorUuid);
+        }
+        if (cachedDetectors.containsKey(detectorUuid)) {
+            cachedDetectors.remove(detectorUuid);
+            return true;
+        }
+        return false;
+    }
+
+    private void markUsed(UUID detectorUuid) {
+        detectorsLastUsedTimes.merge(detectorUuid, System.currentTimeMillis(), Math::max);
+    }
+
+    private void processDetectorsLastUsedTimes() {
+        Map<UUID, Long> lastUsedTimes = new HashMap<>();
+        for (Map.Entry<UUID, Long> entry : detectorsLastUsedTimes.entrySet()) {
+            // Only removes the entry if it wasn't used again in the meantime, in which case the next sync picks it up.
+            if (detectorsLastUsedTimes.remove(entry.getKey(), entry.getValue())) {
+                lastUsedTimes.put(entry.getKey(), entry.getValue());
             }
         }
-        log.info("Updated detectors last time used: detectorsUpdated={}, uniqueDetectorsInvoked={} , totalDetectorsInvoked={}",
-                noOfDetectorsUpdated, detectorsLastUsedTimeToBeUpdatedSet.size(), detectorsLastUsedTimeQueueSize);
+        try {
+            detectorSource.updateDetectorsLastUsed(lastUsedTimes);
+            log.info("Updated detectors last time used: detectorsUpdated={}", lastUsedTimes.size());
+        } catch (DetectorException ex) {
+            log.error("Error updating last accessed time for {} detectors", lastUsedTimes.size(), ex);
+        }
     }
 }
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.expedia.adaptivealerting.anomdetect.detect.DetectorContainer;
+import com.expedia.adaptivealerting.anomdetect.source.DetectorSource;
+import com.typesafe.config.Config;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.isTrue;
+import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.notNull;
+
+/**
+ * Fetches detectors for {@link DetectorManager} in bulk before their metrics arrive, so that a freshly started manager
+ * doesn't make one modelservice request per detector as its first metrics come in.
+ * <p>
+ * Detectors are fetched in pages, each with a single {@link DetectorSource#findDetectors(Collection)} call, and several
+ * pages are fetched at once. Pages that fail or don't complete within the timeout are skipped, leaving their detectors
+ * to be loaded when their first metrics arrive.
+ */
+@Slf4j
+final class DetectorPreloader {
+
+    /**
+     * Whether detectors are preloaded. Disabled by default.
+     */
+    private static final String CK_ENABLED = "detector-preload-enabled";
+
+    /**
+     * Number of detectors fetched per request.
+     */
+    private static final String CK_PAGE_SIZE = "detector-preload-page-size";
+
+    /**
+     * Number of pages fetched at once.
+     */
+    private static final String CK_THREADS = "detector-preload-threads";
+
+    /**
+     * Milliseconds after which pages still being fetched are abandoned.
+     */
+    private static final String CK_TIMEOUT_MS = "detector-preload-timeout-ms";
+
+    private static final int DEFAULT_PAGE_SIZE = 500;
+    private static final int DEFAULT_THREADS = 4;
+    private static final long DEFAULT_TIMEOUT_MS = 120_000;
+
+    private final DetectorSource detectorSource;
+    private final int pageSize;
+    private final int threads;
+    private final long timeoutMs;
+
+    private final Timer preloadTimer;
+    private final Meter fetchedMeter;
+    private final Meter failureMeter;
+
+    /**
+     * @param config         detector manager config
+     * @param metricRegistry metric registry
+     * @param detectorSource source to fetch detectors from
+     */
+    DetectorPreloader(Config config, MetricRegistry metricRegistry, DetectorSource detectorSource) {
+        notNull(config, "config can't be null");
+        notNull(metricRegistry, "metricRegistry can't be null");
+        notNull(detectorSource, "detectorSource can't be null");
+
+        this.pageSize = config.hasPath(CK_PAGE_SIZE) ? config.getInt(CK_PAGE_SIZE) : DEFAULT_PAGE_SIZE;
+        this.threads = config.hasPath(CK_THREADS) ? config.getInt(CK_THREADS) : DEFAULT_THREADS;
+        this.timeoutMs = config.hasPath(CK_TIMEOUT_MS) ? config.getLong(CK_TIMEOUT_MS) : DEFAULT_TIMEOUT_MS;
+        isTrue(pageSize > 0, "Required: " + CK_PAGE_SIZE + " > 0");
+        isTrue(threads > 0, "Required: " + CK_THREADS + " > 0");
+        isTrue(timeoutMs > 0, "Required: " + CK_TIMEOUT_MS + " > 0");
+
+        this.detectorSource = detectorSource;
+        this.preloadTimer = metricRegistry.timer("detector.preload");
+        this.fetchedMeter = metricRegistry.meter("detector.preload.fetched");
+        this.failureMeter = metricRegistry.meter("detector.preload.failure");
+    }
+
+    static boolean isEnabled(Config config) {
+        return config.hasPath(CK_ENABLED) && config.getBoolean(CK_ENABLED);
+    }
+
+    /**
+     * Fetches and builds the given detectors. Detectors that aren't found, or whose page failed, are left out.
+     *
+     * @param detectorUuids detector UUIDs
+     * @return the fetched detectors, by UUID
+     */
+    Map<UUID, DetectorContainer> fetch(Collection<UUID> detectorUuids) {
+        notNull(detectorUuids, "detectorUuids can't be null");
+        Map<UUID, DetectorContainer> detectors = new HashMap<>();
+        if (detectorUuids.isEmpty()) {
+            return detectors;
+        }
+        List<List<UUID>> pages = toPages(detectorUuids);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, pages.size()), runnable -> {
+            Thread thread = new Thread(runnable, "detector-preloader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try (Timer.Context autoClosable = preloadTimer.time()) {
+            List<Future<Map<UUID, DetectorContainer>>> futures = new ArrayList<>(pages.size());
+            for (List<UUID> page : pages) {
+                futures.add(executor.submit(() -> detectorSource.findDetectors(page)));
+            }
+            long deadline = System.currentTimeMillis() + timeoutMs;
+            for (int i = 0; i < futures.size(); i++) {
+                Future<Map<UUID, DetectorContainer>> future = futures.get(i);
+                try {
+                    detectors.putAll(future.get(Math.max(0L, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS));
+                } catch (ExecutionException e) {
+                    log.warn("Couldn't preload {} detectors", pages.get(i).size(), e.getCause());
+                    failureMeter.mark(pages.get(i).size());
+                } catch (TimeoutException e) {
+                    log.warn("Timed out preloading {} detectors", pages.get(i).size());
+                    future.cancel(true);
+                    failureMeter.mark(pages.get(i).size());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+        fetchedMeter.mark(detectors.size());
+        return detectors;
+    }
+
+    private List<List<UUID>> toPages(Collection<UUID> detectorUuids) {
+        List<List<UUID>> pages = new ArrayList<>();
+        List<UUID> page = new ArrayList<>(pageSize);
+        for (UUID detectorUuid : detectorUuids) {
+            page.add(detectorUuid);
+            if (page.size() == pageSize) {
+                pages.add(page);
+                page = new ArrayList<>(pageSize);
+            }
+        }
+        if (!page.isEmpty()) {
+            pages.add(page);
+        }
+        return pages;
+    }
+}
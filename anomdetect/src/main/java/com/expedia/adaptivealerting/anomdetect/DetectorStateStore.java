@@ -0,0 +1,94 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect;
+
+import com.expedia.adaptivealerting.anomdetect.detect.DetectorContainer;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Keeps detector state outside the {@link DetectorManager} cache, so that a detector can be restored rather than
+ * initialized from scratch when it's loaded, e.g. after a restart or after its partition moves to another instance.
+ * <p>
+ * {@link DetectorManager} calls {@link #restore(DetectorContainer)} when loading a detector, and
+ * {@link #markDirty(UUID)} after running it. The state of dirty detectors is saved by
+ * {@link #checkpointIfDue(Map, long)} and {@link #checkpoint(Map, long)}, which are called from the detection thread.
+ * {@link #discard(UUID)} may be called from any thread.
+ */
+public interface DetectorStateStore {
+
+    /**
+     * @param detectorUuid detector UUID
+     * @return whether there's state to restore the detector from
+     */
+    boolean hasState(UUID detectorUuid);
+
+    /**
+     * Returns the detectors there's stored state for, e.g. to preload them. Stores that can't list their detectors
+     * return an empty set.
+     *
+     * @return detector UUIDs
+     */
+    default Set<UUID> storedDetectorUuids() {
+        return Collections.emptySet();
+    }
+
+    /**
+     * Restores a freshly loaded detector from its stored state.
+     *
+     * @param container freshly loaded detector
+     * @return whether the detector was restored; if not, it may have been partially restored and should be discarded
+     */
+    boolean restore(DetectorContainer container);
+
+    /**
+     * Marks the detector's state as changed since the last checkpoint.
+     *
+     * @param detectorUuid detector UUID
+     */
+    void markDirty(UUID detectorUuid);
+
+    /**
+     * Discards the detector's stored state, e.g. because the detector was updated and its state may no longer fit.
+     *
+     * @param detectorUuid detector UUID
+     */
+    void discard(UUID detectorUuid);
+
+    /**
+     * Saves the state of the dirty detectors if a checkpoint is due.
+     *
+     * @param detectors   cached detectors
+     * @param currentTime current time in milliseconds
+     */
+    void checkpointIfDue(Map<UUID, DetectorContainer> detectors, long currentTime);
+
+    /**
+     * Saves the state of the dirty detectors.
+     *
+     * @param detectors   cached detectors
+     * @param currentTime current time in milliseconds
+     */
+    void checkpoint(Map<UUID, DetectorContainer> detectors, long currentTime);
+
+    /**
+     * Releases any resources held by the store.
+     */
+    void close();
+}
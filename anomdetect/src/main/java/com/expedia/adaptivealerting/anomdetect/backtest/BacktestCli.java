@@ -0,0 +1,73 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.backtest;
+
+import com.expedia.adaptivealerting.anomdetect.source.DetectorDocument;
+import com.expedia.adaptivealerting.anomdetect.source.DetectorFactory;
+import com.expedia.adaptivealerting.anomdetect.util.MetricFrameLoader;
+import com.expedia.adaptivealerting.anomdetect.util.ObjectMapperUtil;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.val;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>
+ * Command-line entry point for {@link BacktestEngine}:
+ * </p>
+ * <pre>
+ * java -cp anomdetect.jar com.expedia.adaptivealerting.anomdetect.backtest.BacktestCli \
+ *     detectors.json metric-def.json data-1.csv [data-2.csv ...]
+ * </pre>
+ * <p>
+ * detectors.json holds a JSON array of detector documents, metric-def.json the metric definition shared by the CSV
+ * files, and each CSV file a headed series of ISO-8601 timestamp and value rows, as read by
+ * {@link MetricFrameLoader}. The results are written to standard output as JSON. The
+ * {@code backtest.parallelism} system property sets the number of worker threads, which defaults to the number of
+ * processors.
+ * </p>
+ */
+public class BacktestCli {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("Usage: BacktestCli <detectors.json> <metric-def.json> <data.csv> [<data.csv> ...]");
+            System.exit(1);
+        }
+
+        val objectMapper = new ObjectMapper();
+        List<DetectorDocument> documents = objectMapper.readValue(
+                new File(args[0]), new TypeReference<List<DetectorDocument>>() { });
+
+        val metricDefFile = new File(args[1]);
+        val series = new ArrayList<BacktestSeries>();
+        for (int i = 2; i < args.length; i++) {
+            val dataFile = new File(args[i]);
+            val frame = MetricFrameLoader.loadCsv(metricDefFile, dataFile, true);
+            series.add(BacktestSeries.fromMetricFrame(dataFile.getName(), frame));
+        }
+
+        val parallelism = Integer.getInteger("backtest.parallelism", Runtime.getRuntime().availableProcessors());
+        try (BacktestEngine engine = new BacktestEngine(new DetectorFactory(), parallelism)) {
+            val results = engine.run(documents, series);
+            System.out.println(ObjectMapperUtil.writeValueAsString(objectMapper, results));
+        }
+    }
+}
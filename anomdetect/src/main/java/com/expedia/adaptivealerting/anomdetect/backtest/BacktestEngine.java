@@ -0,0 +1,169 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.backtest;
+
+import com.expedia.adaptivealerting.anomdetect.detect.AnomalyLevel;
+import com.expedia.adaptivealerting.anomdetect.detect.outlier.BatchOutlierDetector;
+import com.expedia.adaptivealerting.anomdetect.forecast.eval.algo.RmsePointForecastEvaluator;
+import com.expedia.adaptivealerting.anomdetect.source.DetectorDocument;
+import com.expedia.adaptivealerting.anomdetect.source.DetectorFactory;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.isStrictlyPositive;
+import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.notNull;
+
+/**
+ * Backtests detector documents against historical series offline. Every detector runs over every series on a fork-join
+ * pool, each run with a detector of its own, so that thousands of configurations can be compared in one go.
+ */
+@Slf4j
+public class BacktestEngine implements AutoCloseable {
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+    private static final byte WEAK = (byte) AnomalyLevel.WEAK.ordinal();
+    private static final byte STRONG = (byte) AnomalyLevel.STRONG.ordinal();
+
+    private final DetectorFactory detectorFactory;
+    private final ForkJoinPool pool;
+
+    public BacktestEngine(DetectorFactory detectorFactory) {
+        this(detectorFactory, Runtime.getRuntime().availableProcessors());
+    }
+
+    public BacktestEngine(DetectorFactory detectorFactory, int parallelism) {
+        notNull(detectorFactory, "detectorFactory can't be null");
+        isStrictlyPositive(parallelism, "Required: parallelism > 0");
+        this.detectorFactory = detectorFactory;
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * Runs each detector over each series.
+     *
+     * @param documents Detector documents.
+     * @param series    Series to run the detectors over.
+     * @return One result per detector and series, ordered by detector and then series.
+     */
+    public List<BacktestResult> run(List<DetectorDocument> documents, List<BacktestSeries> series) {
+        notNull(documents, "documents can't be null");
+        notNull(series, "series can't be null");
+
+        val tasks = new ArrayList<Callable<BacktestResult>>(documents.size() * series.size());
+        for (val document : documents) {
+            for (val s : series) {
+                tasks.add(() -> run(document, s));
+            }
+        }
+
+        val results = new ArrayList<BacktestResult>(tasks.size());
+        for (Future<BacktestResult> future : pool.invokeAll(tasks)) {
+            try {
+                results.add(future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while backtesting", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Backtest failed", e.getCause());
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    /**
+     * Runs one detector over one series. Each run stays on one worker thread, which is what lets us charge the
+     * thread's CPU time and allocation to the detector.
+     */
+    private BacktestResult run(DetectorDocument document, BacktestSeries series) {
+        val result = new BacktestResult()
+                .setDetectorUuid(document.getUuid())
+                .setDetectorType(document.getType())
+                .setSeries(series.getName())
+                .setNumObservations(series.size());
+
+        val startCpuTime = threadCpuTime();
+        val startAllocatedBytes = threadAllocatedBytes();
+        try {
+            val detector = detectorFactory.buildDetector(document);
+            val batchResult = BatchOutlierDetector.detectAll(detector, series.getValues(), series.getEpochSeconds());
+            tally(series, batchResult.getLevels(), batchResult.getWarmup(), batchResult.getPredicted(), result);
+        } catch (RuntimeException e) {
+            log.warn("Couldn't backtest detector {} on series {}: {}", document.getUuid(), series.getName(), e.toString());
+            result.setError(e.toString());
+        }
+        result.setCpuTimeNanos(elapsed(startCpuTime, threadCpuTime()));
+        result.setAllocatedBytes(elapsed(startAllocatedBytes, threadAllocatedBytes()));
+        return result;
+    }
+
+    private void tally(BacktestSeries series, byte[] levels, boolean[] warmup, double[] predicted, BacktestResult result) {
+        val values = series.getValues();
+        val evaluator = new RmsePointForecastEvaluator();
+        int numWeak = 0;
+        int numStrong = 0;
+        int numWarmup = 0;
+        int numPredicted = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (levels[i] == WEAK) {
+                numWeak++;
+            } else if (levels[i] == STRONG) {
+                numStrong++;
+            }
+            if (warmup[i]) {
+                numWarmup++;
+            }
+            if (!Double.isNaN(predicted[i])) {
+                evaluator.update(values[i], predicted[i]);
+                numPredicted++;
+            }
+        }
+        result.setNumWeak(numWeak)
+                .setNumStrong(numStrong)
+                .setNumWarmup(numWarmup)
+                .setRmse(numPredicted == 0 ? null : evaluator.evaluate().getEvaluatorScore());
+    }
+
+    private static long threadCpuTime() {
+        return THREAD_MX_BEAN.isCurrentThreadCpuTimeSupported() ? THREAD_MX_BEAN.getCurrentThreadCpuTime() : -1L;
+    }
+
+    private static long threadAllocatedBytes() {
+        if (THREAD_MX_BEAN instanceof com.sun.management.ThreadMXBean) {
+            val bean = (com.sun.management.ThreadMXBean) THREAD_MX_BEAN;
+            if (bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled()) {
+                return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1L;
+    }
+
+    private static long elapsed(long start, long end) {
+        return start < 0 || end < 0 ? -1L : end - start;
+    }
+}
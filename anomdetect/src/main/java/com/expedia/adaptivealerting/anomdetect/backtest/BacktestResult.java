@@ -0,0 +1,61 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.backtest;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+import java.util.UUID;
+
+/**
+ * Result of running one detector over one series.
+ */
+@Data
+@Accessors(chain = true)
+public class BacktestResult {
+    private UUID detectorUuid;
+    private String detectorType;
+    private String series;
+
+    /**
+     * Number of observations in the series.
+     */
+    private int numObservations;
+
+    private int numWeak;
+    private int numStrong;
+    private int numWarmup;
+
+    /**
+     * Root-mean-squared error of the detector's point forecasts, or {@literal null} if it made none.
+     */
+    private Double rmse;
+
+    /**
+     * CPU time spent building and running the detector, or -1 if the JVM doesn't measure thread CPU time.
+     */
+    private long cpuTimeNanos;
+
+    /**
+     * Bytes allocated building and running the detector, or -1 if the JVM doesn't measure thread allocation.
+     */
+    private long allocatedBytes;
+
+    /**
+     * Why the detector couldn't be backtested, or {@literal null} if it could.
+     */
+    private String error;
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.backtest;
+
+import com.expedia.adaptivealerting.anomdetect.util.MetricFrame;
+import lombok.Getter;
+import lombok.ToString;
+import lombok.val;
+
+import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.isTrue;
+import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.notNull;
+
+/**
+ * Named time series to backtest detectors against, held in primitive arrays so that every detector run over it can
+ * share them.
+ */
+@Getter
+@ToString(of = "name")
+public final class BacktestSeries {
+    private final String name;
+    private final double[] values;
+    private final long[] epochSeconds;
+
+    public BacktestSeries(String name, double[] values, long[] epochSeconds) {
+        notNull(name, "name can't be null");
+        notNull(values, "values can't be null");
+        notNull(epochSeconds, "epochSeconds can't be null");
+        isTrue(values.length == epochSeconds.length, "Required: values.length == epochSeconds.length");
+        this.name = name;
+        this.values = values;
+        this.epochSeconds = epochSeconds;
+    }
+
+    /**
+     * Creates a series from a {@link MetricFrame}, such as one loaded by
+     * {@link com.expedia.adaptivealerting.anomdetect.util.MetricFrameLoader}.
+     *
+     * @param name  Series name, used in backtest results.
+     * @param frame Metric frame.
+     * @return Series holding the frame's values and timestamps.
+     */
+    public static BacktestSeries fromMetricFrame(String name, MetricFrame frame) {
+        notNull(frame, "frame can't be null");
+        val numRows = frame.getNumRows();
+        val values = new double[numRows];
+        val epochSeconds = new long[numRows];
+        for (int i = 0; i < numRows; i++) {
+            val metricData = frame.getMetricDataPoint(i);
+            values[i] = metricData.getValue();
+            epochSeconds[i] = metricData.getTimestamp();
+        }
+        return new BacktestSeries(name, values, epochSeconds);
+    }
+
+    public int size() {
+        return values.length;
+    }
+}
@@ -18,20 +18,30 @@ package com.expedia.adaptivealerting.anomdetect.detect.breakout.algo.edmx;
 import com.expedia.adaptivealerting.anomdetect.detect.AnomalyLevel;
 import com.expedia.adaptivealerting.anomdetect.detect.DetectorResult;
 import com.expedia.adaptivealerting.anomdetect.detect.breakout.BreakoutDetector;
+import com.expedia.adaptivealerting.anomdetect.snapshot.Snapshottable;
 import com.expedia.metrics.MetricData;
+import com.expedia.metrics.MetricDefinition;
 import com.google.common.collect.EvictingQueue;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
+import static com.expedia.adaptivealerting.anomdetect.snapshot.DetectorSnapshotCodec.readLength;
 import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.notNull;
 import static com.expedia.adaptivealerting.anomdetect.util.DateUtil.epochSecondToInstant;
 
 @Slf4j
-public final class EdmxDetector implements BreakoutDetector {
+public final class EdmxDetector implements BreakoutDetector, Snapshottable {
+    private static final MetricDefinition RESTORED_METRIC_DEFINITION = new MetricDefinition("restored");
+
     private final String NAME = "edmx";
 
     @Getter
@@ -45,6 +55,8 @@ public final class EdmxDetector implements BreakoutDetector {
 
     private final EvictingQueue<MetricData> buffer;
 
+    private final FastEdmxEstimator fastEstimator;
+
     public EdmxDetector(UUID uuid, EdmxHyperparams hyperparams, boolean trusted) {
         notNull(uuid, "uuid can't be null");
         notNull(hyperparams, "hyperparams can't be null");
@@ -55,6 +67,9 @@ public final class EdmxDetector implements BreakoutDetector {
         this.hyperparams = hyperparams;
         this.buffer = EvictingQueue.create(hyperparams.getBufferSize());
         this.trusted = trusted;
+        this.fastEstimator = hyperparams.getEstimatorType() == EdmxEstimatorType.FAST
+                ? new FastEdmxEstimator(hyperparams)
+                : null;
     }
 
     @Override
@@ -73,10 +88,9 @@ public final class EdmxDetector implements BreakoutDetector {
         }
 
         val mdValues = buffer.stream().mapToDouble(md -> md.getValue()).toArray();
-        val estimate = EdmxEstimator.estimate(
-                mdValues,
-                hyperparams.getDelta(),
-                hyperparams.getNumPerms());
+        val estimate = fastEstimator != null
+                ? fastEstimator.estimate(mdValues)
+                : EdmxEstimator.estimate(mdValues, hyperparams.getDelta(), hyperparams.getNumPerms());
 
         val mdList = buffer.stream().collect(Collectors.toList());
         val location = estimate.getLocation();
@@ -101,6 +115,32 @@ public final class EdmxDetector implements BreakoutDetector {
         return NAME;
     }
 
+    @Override
+    public void snapshot(DataOutput out) throws IOException {
+        out.writeInt(buffer.size());
+        for (MetricData metricData : buffer) {
+            out.writeLong(metricData.getTimestamp());
+            out.writeDouble(metricData.getValue());
+        }
+    }
+
+    /**
+     * Restores the buffered points. Only their timestamps and values are snapshotted, so restored points share a
+     * placeholder metric definition.
+     */
+    @Override
+    public void restore(DataInput in) throws IOException {
+        val size = readLength(in, hyperparams.getBufferSize());
+        List<MetricData> restored = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            val timestamp = in.readLong();
+            val value = in.readDouble();
+            restored.add(new MetricData(RESTORED_METRIC_DEFINITION, value, timestamp));
+        }
+        buffer.clear();
+        buffer.addAll(restored);
+    }
+
     private AnomalyLevel calculateAnomalyLevel(EdmxEstimate estimate) {
         val pValue = estimate.getPValue();
         if (pValue <= hyperparams.getStrongAlpha()) {
@@ -111,4 +151,5 @@ public final class EdmxDetector implements BreakoutDetector {
             return AnomalyLevel.NORMAL;
         }
     }
+
 }
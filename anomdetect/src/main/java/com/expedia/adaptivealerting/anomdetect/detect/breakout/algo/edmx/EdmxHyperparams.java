@@ -22,6 +22,7 @@ import lombok.experimental.Accessors;
 
 import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.isBetween;
 import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.isTrue;
+import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.notNull;
 
 @Data
 @Accessors(chain = true)
@@ -53,6 +54,21 @@ public class EdmxHyperparams implements AlgoParams {
      */
     private double weakAlpha = 0.05;
 
+    /**
+     * Breakout estimator implementation.
+     */
+    private EdmxEstimatorType estimatorType = EdmxEstimatorType.STANDARD;
+
+    /**
+     * Number of fork-join tasks to run the permutation test across. Applies to the fast estimator only.
+     */
+    private int parallelism = 1;
+
+    /**
+     * Seed for the permutation test, or null to seed randomly on each estimate. Applies to the fast estimator only.
+     */
+    private Long randomSeed;
+
     @Override
     public void validate() {
         isTrue(delta > 0, "Required: delta > 0");
@@ -61,5 +77,7 @@ public class EdmxHyperparams implements AlgoParams {
         isBetween(strongAlpha, 0.0, 1.0, "Required: 0.0 <= alpha <= 1.0");
         isBetween(weakAlpha, 0.0, 1.0, "Required: 0.0 <= weakAlpha <= 1.0");
         isTrue(weakAlpha > strongAlpha, "Required: weakAlpha > strongAlpha");
+        notNull(estimatorType, "estimatorType can't be null");
+        isTrue(parallelism > 0, "Required: parallelism > 0");
     }
 }
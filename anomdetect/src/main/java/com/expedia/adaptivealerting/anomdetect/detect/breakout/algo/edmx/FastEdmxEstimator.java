@@ -0,0 +1,290 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.detect.breakout.algo.edmx;
+
+import com.expedia.adaptivealerting.anomdetect.util.ArrayUtil;
+import com.expedia.adaptivealerting.anomdetect.util.DataUtil;
+import com.expedia.adaptivealerting.anomdetect.util.DoubleRunningMedian;
+import lombok.val;
+
+import java.util.ArrayList;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.isTrue;
+import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.notNull;
+
+/**
+ * EDM-X breakout estimator for large buffers and permutation counts. It finds the same breakout as
+ * {@link EdmxEstimator}, but
+ *
+ * <ul>
+ * <li>computes running medians with reusable primitive heaps instead of allocating boxed heaps for every split,</li>
+ * <li>stops scanning a permutation as soon as it reaches the test statistic,</li>
+ * <li>stops the permutation test once further permutations can't change the anomaly level implied by the strong and
+ * weak alphas, and</li>
+ * <li>spreads the permutations across fork-join tasks.</li>
+ * </ul>
+ * <p>
+ * Because of the early stop, the reported p-value is an upper bound that falls in the same significance band as the
+ * exact p-value. Each permutation is shuffled from its own seed derived from the random seed and the permutation
+ * index, so for a given seed the estimate is the same regardless of parallelism.
+ */
+public class FastEdmxEstimator {
+
+    /**
+     * Number of permutations each task runs between pruning checks.
+     */
+    private static final int PERMS_PER_TASK = 4;
+
+    private final int delta;
+    private final int numPerms;
+    private final double strongAlpha;
+    private final double weakAlpha;
+    private final int parallelism;
+    private final Long randomSeed;
+
+    public FastEdmxEstimator(EdmxHyperparams hyperparams) {
+        notNull(hyperparams, "hyperparams can't be null");
+        hyperparams.validate();
+        this.delta = hyperparams.getDelta();
+        this.numPerms = hyperparams.getNumPerms();
+        this.strongAlpha = hyperparams.getStrongAlpha();
+        this.weakAlpha = hyperparams.getWeakAlpha();
+        this.parallelism = hyperparams.getParallelism();
+        this.randomSeed = hyperparams.getRandomSeed();
+    }
+
+    /**
+     * Runs EDM-X on the given time series data. This method scales the data to [0, 1] per the Appendix.
+     *
+     * @param data Time series data
+     * @return EDM-X breakout result
+     */
+    public EdmxEstimate estimate(double[] data) {
+        notNull(data, "data can't be null");
+        isTrue(data.length >= 2 * delta, "Required: data.size >= 2 * delta");
+
+        val scaledData = DataUtil.unitScale(data);
+        val workspace = new Workspace(scaledData.length);
+        val energyDistance = workspace.scan(scaledData, Double.POSITIVE_INFINITY);
+        val location = workspace.bestLoc;
+        val preBreakoutMedian = workspace.bestML;
+        val postBreakoutMedian = workspace.bestMR;
+        val pValue = estimatePValue(scaledData, energyDistance, workspace);
+
+        return new EdmxEstimate()
+                .setLocation(location)
+                .setEnergyDistance(energyDistance)
+                .setPreBreakoutMedian(preBreakoutMedian)
+                .setPostBreakoutMedian(postBreakoutMedian)
+                .setPValue(pValue);
+    }
+
+    private double estimatePValue(double[] data, double testStat, Workspace workspace) {
+        if (numPerms == 0) {
+            return 0.0;
+        }
+
+        val seed = randomSeed != null ? randomSeed : ThreadLocalRandom.current().nextLong();
+        val roundSize = parallelism == 1 ? 1 : parallelism * PERMS_PER_TASK;
+        val outcomes = new boolean[roundSize];
+        val workspaces = new Workspace[parallelism];
+        workspaces[0] = workspace;
+
+        // # permutations with energy distances greater than the test statistic.
+        int numGreater = 0;
+
+        for (int roundStart = 0; roundStart < numPerms; roundStart += roundSize) {
+            val roundEnd = Math.min(roundStart + roundSize, numPerms);
+            runRound(data, testStat, seed, roundStart, roundEnd, outcomes, workspaces);
+
+            // Fold in permutation order so that where we stop doesn't depend on the parallelism.
+            for (int i = roundStart; i < roundEnd; i++) {
+                if (outcomes[i - roundStart]) {
+                    numGreater++;
+                }
+                val remaining = numPerms - i - 1;
+                val lowerBound = numGreater / (numPerms + 1.0);
+                val upperBound = (numGreater + remaining) / (numPerms + 1.0);
+                if (significanceBand(lowerBound) == significanceBand(upperBound)) {
+                    return upperBound;
+                }
+            }
+        }
+
+        // Unreachable: the bounds coincide after the last permutation.
+        return numGreater / (numPerms + 1.0);
+    }
+
+    private void runRound(
+            double[] data,
+            double testStat,
+            long seed,
+            int roundStart,
+            int roundEnd,
+            boolean[] outcomes,
+            Workspace[] workspaces) {
+
+        if (parallelism == 1) {
+            for (int i = roundStart; i < roundEnd; i++) {
+                outcomes[i - roundStart] = workspaces[0].isPermGreater(data, testStat, ArrayUtil.splitSeed(seed, i));
+            }
+            return;
+        }
+
+        val tasks = new ArrayList<PermutationTask>(parallelism);
+        for (int t = 0; t < parallelism; t++) {
+            val from = roundStart + t * PERMS_PER_TASK;
+            if (from >= roundEnd) {
+                break;
+            }
+            if (workspaces[t] == null) {
+                workspaces[t] = new Workspace(data.length);
+            }
+            val to = Math.min(from + PERMS_PER_TASK, roundEnd);
+            tasks.add(new PermutationTask(data, testStat, seed, roundStart, from, to, outcomes, workspaces[t]));
+        }
+        RecursiveAction.invokeAll(tasks);
+    }
+
+    private int significanceBand(double pValue) {
+        if (pValue <= strongAlpha) {
+            return 0;
+        } else if (pValue <= weakAlpha) {
+            return 1;
+        } else {
+            return 2;
+        }
+    }
+
+    private final class PermutationTask extends RecursiveAction {
+        private final double[] data;
+        private final double testStat;
+        private final long seed;
+        private final int roundStart;
+        private final int from;
+        private final int to;
+        private final boolean[] outcomes;
+        private final Workspace workspace;
+
+        PermutationTask(
+                double[] data,
+                double testStat,
+                long seed,
+                int roundStart,
+                int from,
+                int to,
+                boolean[] outcomes,
+                Workspace workspace) {
+
+            this.data = data;
+            this.testStat = testStat;
+            this.seed = seed;
+            this.roundStart = roundStart;
+            this.from = from;
+            this.to = to;
+            this.outcomes = outcomes;
+            this.workspace = workspace;
+        }
+
+        @Override
+        protected void compute() {
+            for (int i = from; i < to; i++) {
+                outcomes[i - roundStart] = workspace.isPermGreater(data, testStat, ArrayUtil.splitSeed(seed, i));
+            }
+        }
+    }
+
+    /**
+     * Scratch space for a single thread, reused across splits and permutations.
+     */
+    private final class Workspace {
+        private final double[] perm;
+        private final DoubleRunningMedian heapsL;
+        private final DoubleRunningMedian heapsR;
+        private int bestLoc;
+        private double bestML;
+        private double bestMR;
+
+        Workspace(int n) {
+            this.perm = new double[n];
+            this.heapsL = new DoubleRunningMedian(n);
+            this.heapsR = new DoubleRunningMedian(n);
+        }
+
+        boolean isPermGreater(double[] data, double testStat, long permSeed) {
+            System.arraycopy(data, 0, perm, 0, data.length);
+            ArrayUtil.shuffle(perm, permSeed);
+            return scan(perm, testStat) >= testStat;
+        }
+
+        /**
+         * Scans all splits for the best breakout, same as {@link EdmxEstimator}, but returns as soon as a statistic
+         * reaches {@code stopAt}.
+         *
+         * @return the best statistic found, or the first one reaching {@code stopAt}
+         */
+        double scan(double[] data, double stopAt) {
+            val n = data.length;
+            int bestLoc = -1;
+            double bestStat = Double.MIN_VALUE;
+            double bestML = 0.0;
+            double bestMR = 0.0;
+
+            heapsL.clear();
+            for (int i = 0; i < delta - 1; i++) {
+                heapsL.add(data[i]);
+            }
+            for (int i = delta; i < n - delta + 1; i++) {
+                heapsL.add(data[i - 1]);
+                val mL = heapsL.getMedian();
+
+                heapsR.clear();
+                for (int j = i; j < i + delta - 1; j++) {
+                    heapsR.add(data[j]);
+                }
+                for (int j = i + delta; j < n + 1; j++) {
+                    heapsR.add(data[j - 1]);
+
+                    val mR = heapsR.getMedian();
+                    val diff = mL - mR;
+
+                    // Order matters here, as we want to avoid integer division
+                    val stat = diff * diff * i * (j - i) / j;
+
+                    if (stat > bestStat) {
+                        bestLoc = i;
+                        bestStat = stat;
+                        bestML = mL;
+                        bestMR = mR;
+                        if (stat >= stopAt) {
+                            break;
+                        }
+                    }
+                }
+                if (bestStat >= stopAt) {
+                    break;
+                }
+            }
+
+            this.bestLoc = bestLoc;
+            this.bestML = bestML;
+            this.bestMR = bestMR;
+            return bestStat;
+        }
+    }
+}
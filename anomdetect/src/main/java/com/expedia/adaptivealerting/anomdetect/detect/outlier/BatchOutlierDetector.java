@@ -0,0 +1,83 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.detect.outlier;
+
+import com.expedia.adaptivealerting.anomdetect.detect.Detector;
+import com.expedia.adaptivealerting.anomdetect.detect.DetectorResult;
+import com.expedia.adaptivealerting.anomdetect.util.MetricUtil;
+import com.expedia.metrics.MetricDefinition;
+
+import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.isTrue;
+import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.notNull;
+
+/**
+ * Outlier detector that can process a whole series at once, for replays and backtests. Running a detector over a
+ * series leaves it in the same state, and produces the same results, as passing it each observation in turn, but
+ * without building a {@link com.expedia.metrics.MetricData} and a {@link OutlierDetectorResult} per observation.
+ */
+public interface BatchOutlierDetector extends Detector {
+
+    /**
+     * Processes the first {@code length} observations of a series, writing the results to the same elements of
+     * {@code results}.
+     *
+     * @param values       observed values
+     * @param epochSeconds observation timestamps
+     * @param length       number of observations to process
+     * @param results      results, with room for at least {@code length} elements
+     */
+    void detect(double[] values, long[] epochSeconds, int length, OutlierDetectorBatchResult results);
+
+    /**
+     * Runs any outlier detector over a series: batch detectors process it in one go, and others get each observation
+     * in turn.
+     *
+     * @param detector     outlier detector
+     * @param values       observed values
+     * @param epochSeconds observation timestamps
+     * @return results for each observation
+     */
+    static OutlierDetectorBatchResult detectAll(Detector detector, double[] values, long[] epochSeconds) {
+        notNull(detector, "detector can't be null");
+        notNull(values, "values can't be null");
+        OutlierDetectorBatchResult results = new OutlierDetectorBatchResult(values.length);
+        checkBatch(values, epochSeconds, values.length, results);
+        if (detector instanceof BatchOutlierDetector) {
+            ((BatchOutlierDetector) detector).detect(values, epochSeconds, values.length, results);
+            return results;
+        }
+        MetricDefinition metricDefinition = MetricUtil.metricDefinition();
+        for (int i = 0; i < values.length; i++) {
+            DetectorResult result = detector.detect(MetricUtil.metricData(metricDefinition, values[i], epochSeconds[i]));
+            isTrue(result instanceof OutlierDetectorResult, "Required: an outlier detector");
+            results.set(i, (OutlierDetectorResult) result);
+        }
+        return results;
+    }
+
+    /**
+     * Validates the arguments of {@link #detect(double[], long[], int, OutlierDetectorBatchResult)}.
+     */
+    static void checkBatch(double[] values, long[] epochSeconds, int length, OutlierDetectorBatchResult results) {
+        notNull(values, "values can't be null");
+        notNull(epochSeconds, "epochSeconds can't be null");
+        notNull(results, "results can't be null");
+        isTrue(length >= 0, "Required: length >= 0");
+        isTrue(length <= values.length && length <= epochSeconds.length,
+                "Required: length <= values.length and length <= epochSeconds.length");
+        isTrue(length <= results.getCapacity(), "Required: length <= results.getCapacity()");
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.detect.outlier;
+
+import com.expedia.adaptivealerting.anomdetect.detect.AnomalyLevel;
+import com.expedia.adaptivealerting.anomdetect.detect.AnomalyThresholds;
+import lombok.Getter;
+
+import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.isTrue;
+
+/**
+ * Results of running an outlier detector over a series, held in primitive arrays indexed like the series, so that the
+ * detector needn't allocate anything per observation. Element i holds the fields of the {@link OutlierDetectorResult}
+ * the detector would have returned for observation i:
+ * <ul>
+ * <li>levels: {@link AnomalyLevel} ordinals (see {@link #levelCode(AnomalyLevel)})</li>
+ * <li>warmup and trusted flags</li>
+ * <li>predicted values and the four thresholds, with NaN standing in for a missing value</li>
+ * </ul>
+ * A result can be reused for several series, as detectors overwrite every field of the elements they're asked for.
+ */
+@Getter
+public final class OutlierDetectorBatchResult {
+    private static final AnomalyLevel[] LEVELS = AnomalyLevel.values();
+
+    private final byte[] levels;
+    private final boolean[] warmup;
+    private final boolean[] trusted;
+    private final double[] predicted;
+    private final double[] upperStrong;
+    private final double[] upperWeak;
+    private final double[] lowerWeak;
+    private final double[] lowerStrong;
+
+    public OutlierDetectorBatchResult(int capacity) {
+        isTrue(capacity >= 0, "Required: capacity >= 0");
+        this.levels = new byte[capacity];
+        this.warmup = new boolean[capacity];
+        this.trusted = new boolean[capacity];
+        this.predicted = new double[capacity];
+        this.upperStrong = new double[capacity];
+        this.upperWeak = new double[capacity];
+        this.lowerWeak = new double[capacity];
+        this.lowerStrong = new double[capacity];
+    }
+
+    public int getCapacity() {
+        return levels.length;
+    }
+
+    public static byte levelCode(AnomalyLevel level) {
+        return (byte) level.ordinal();
+    }
+
+    public AnomalyLevel getAnomalyLevel(int index) {
+        return LEVELS[levels[index]];
+    }
+
+    /**
+     * Sets the thresholds of the given element, with NaN for a missing threshold.
+     */
+    public void setThresholds(int index, double upperStrong, double upperWeak, double lowerWeak, double lowerStrong) {
+        this.upperStrong[index] = upperStrong;
+        this.upperWeak[index] = upperWeak;
+        this.lowerWeak[index] = lowerWeak;
+        this.lowerStrong[index] = lowerStrong;
+    }
+
+    /**
+     * Sets the given element from a detector result.
+     *
+     * @param index  element index
+     * @param result outlier detector result
+     */
+    public void set(int index, OutlierDetectorResult result) {
+        levels[index] = result.getAnomalyLevel() == null ? levelCode(AnomalyLevel.UNKNOWN) : levelCode(result.getAnomalyLevel());
+        warmup[index] = result.isWarmup();
+        trusted[index] = result.isTrusted();
+        predicted[index] = orNaN(result.getPredicted());
+        AnomalyThresholds thresholds = result.getThresholds();
+        if (thresholds == null) {
+            setThresholds(index, Double.NaN, Double.NaN, Double.NaN, Double.NaN);
+        } else {
+            setThresholds(index,
+                    orNaN(thresholds.getUpperStrong()),
+                    orNaN(thresholds.getUpperWeak()),
+                    orNaN(thresholds.getLowerWeak()),
+                    orNaN(thresholds.getLowerStrong()));
+        }
+    }
+
+    /**
+     * Builds the detector result for the given element.
+     *
+     * @param index element index
+     * @return outlier detector result
+     */
+    public OutlierDetectorResult toOutlierDetectorResult(int index) {
+        AnomalyThresholds thresholds = null;
+        if (!(Double.isNaN(upperStrong[index]) && Double.isNaN(upperWeak[index])
+                && Double.isNaN(lowerWeak[index]) && Double.isNaN(lowerStrong[index]))) {
+            thresholds = new AnomalyThresholds(
+                    orNull(upperStrong[index]),
+                    orNull(upperWeak[index]),
+                    orNull(lowerWeak[index]),
+                    orNull(lowerStrong[index]));
+        }
+        return new OutlierDetectorResult(warmup[index], getAnomalyLevel(index), trusted[index])
+                .setPredicted(orNull(predicted[index]))
+                .setThresholds(thresholds);
+    }
+
+    private static double orNaN(Double value) {
+        return value == null ? Double.NaN : value;
+    }
+
+    private static Double orNull(double value) {
+        return Double.isNaN(value) ? null : value;
+    }
+}
@@ -45,31 +45,43 @@ public class AnomalyClassifier {
      */
     public AnomalyLevel classify(AnomalyThresholds thresholds, double observed) {
         notNull(thresholds, "thresholds can't be null");
+        return classify(
+                orNaN(thresholds.getUpperStrong()),
+                orNaN(thresholds.getUpperWeak()),
+                orNaN(thresholds.getLowerWeak()),
+                orNaN(thresholds.getLowerStrong()),
+                observed);
+    }
 
+    /**
+     * Classifies against primitive thresholds, for batch detection. A NaN threshold is missing: no comparison with NaN
+     * holds, so it's never crossed.
+     */
+    public AnomalyLevel classify(double upperStrong, double upperWeak, double lowerWeak, double lowerStrong,
+                                 double observed) {
         val checkUpper = (anomalyType == AnomalyType.RIGHT_TAILED || anomalyType == AnomalyType.TWO_TAILED);
         val checkLower = (anomalyType == AnomalyType.LEFT_TAILED || anomalyType == AnomalyType.TWO_TAILED);
 
-        val upperStrong = thresholds.getUpperStrong();
-        val upperWeak = thresholds.getUpperWeak();
-        val lowerWeak = thresholds.getLowerWeak();
-        val lowerStrong = thresholds.getLowerStrong();
-
         if (checkUpper) {
-            if (upperStrong != null && observed > upperStrong) {
+            if (observed > upperStrong) {
                 return AnomalyLevel.STRONG;
-            } else if (upperWeak != null && observed > upperWeak) {
+            } else if (observed > upperWeak) {
                 return AnomalyLevel.WEAK;
             }
         }
 
         if (checkLower) {
-            if (lowerStrong != null && observed < lowerStrong) {
+            if (observed < lowerStrong) {
                 return AnomalyLevel.STRONG;
-            } else if (lowerWeak != null && observed < lowerWeak) {
+            } else if (observed < lowerWeak) {
                 return AnomalyLevel.WEAK;
             }
         }
 
         return AnomalyLevel.NORMAL;
     }
+
+    private static double orNaN(Double threshold) {
+        return threshold == null ? Double.NaN : threshold;
+    }
 }
@@ -17,6 +17,8 @@ package com.expedia.adaptivealerting.anomdetect.detect.outlier.algo.constant;
 
 import com.expedia.adaptivealerting.anomdetect.detect.DetectorResult;
 import com.expedia.adaptivealerting.anomdetect.detect.outlier.AbstractOutlierDetector;
+import com.expedia.adaptivealerting.anomdetect.detect.outlier.BatchOutlierDetector;
+import com.expedia.adaptivealerting.anomdetect.detect.outlier.OutlierDetectorBatchResult;
 import com.expedia.adaptivealerting.anomdetect.detect.outlier.OutlierDetectorResult;
 import com.expedia.adaptivealerting.anomdetect.detect.outlier.algo.AnomalyClassifier;
 import com.expedia.metrics.MetricData;
@@ -31,7 +33,7 @@ import java.util.UUID;
  * Anomaly detector with constant threshold for weak and strong anomalies. Supports both one- and two-tailed tests.
  */
 @ToString(callSuper = true)
-public final class ConstantThresholdDetector extends AbstractOutlierDetector {
+public final class ConstantThresholdDetector extends AbstractOutlierDetector implements BatchOutlierDetector {
     private static final String NAME = "constant-threshold";
 
     @Getter
@@ -61,8 +63,31 @@ public final class ConstantThresholdDetector extends AbstractOutlierDetector {
                 .setTrusted(trusted);
     }
 
+    @Override
+    public void detect(double[] values, long[] epochSeconds, int length, OutlierDetectorBatchResult results) {
+        BatchOutlierDetector.checkBatch(values, epochSeconds, length, results);
+        val thresholds = params.getThresholds();
+        val upperStrong = orNaN(thresholds.getUpperStrong());
+        val upperWeak = orNaN(thresholds.getUpperWeak());
+        val lowerWeak = orNaN(thresholds.getLowerWeak());
+        val lowerStrong = orNaN(thresholds.getLowerStrong());
+        val trusted = isTrusted();
+        for (int i = 0; i < length; i++) {
+            val level = classifier.classify(upperStrong, upperWeak, lowerWeak, lowerStrong, values[i]);
+            results.getLevels()[i] = OutlierDetectorBatchResult.levelCode(level);
+            results.getWarmup()[i] = false;
+            results.getTrusted()[i] = trusted;
+            results.getPredicted()[i] = Double.NaN;
+            results.setThresholds(i, upperStrong, upperWeak, lowerWeak, lowerStrong);
+        }
+    }
+
     @Override
     public String getName() {
         return NAME;
     }
+
+    private static double orNaN(Double threshold) {
+        return threshold == null ? Double.NaN : threshold;
+    }
 }
@@ -18,13 +18,19 @@ package com.expedia.adaptivealerting.anomdetect.detect.outlier.algo.cusum;
 import com.expedia.adaptivealerting.anomdetect.detect.AnomalyLevel;
 import com.expedia.adaptivealerting.anomdetect.detect.DetectorResult;
 import com.expedia.adaptivealerting.anomdetect.detect.outlier.AbstractOutlierDetector;
+import com.expedia.adaptivealerting.anomdetect.detect.outlier.BatchOutlierDetector;
+import com.expedia.adaptivealerting.anomdetect.detect.outlier.OutlierDetectorBatchResult;
 import com.expedia.adaptivealerting.anomdetect.detect.outlier.OutlierDetectorResult;
+import com.expedia.adaptivealerting.anomdetect.snapshot.Snapshottable;
 import com.expedia.adaptivealerting.anomdetect.util.AssertUtil;
 import com.expedia.metrics.MetricData;
 import lombok.Getter;
 import lombok.ToString;
 import lombok.val;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.UUID;
 
 import static com.expedia.adaptivealerting.anomdetect.detect.AnomalyLevel.MODEL_WARMUP;
@@ -43,7 +49,7 @@ import static com.expedia.adaptivealerting.anomdetect.detect.AnomalyLevel.WEAK;
  * </p>
  */
 @ToString(callSuper = true)
-public final class CusumDetector extends AbstractOutlierDetector {
+public final class CusumDetector extends AbstractOutlierDetector implements BatchOutlierDetector, Snapshottable {
     private static final String NAME = "cusum";
     private static final double STD_DEV_DIVISOR = 1.128;
 
@@ -92,10 +98,24 @@ public final class CusumDetector extends AbstractOutlierDetector {
     @Override
     public DetectorResult detect(MetricData metricData) {
         AssertUtil.notNull(metricData, "metricData can't be null");
+        return new OutlierDetectorResult(update(metricData.getValue()), isTrusted());
+    }
 
-        val params = getParams();
+    @Override
+    public void detect(double[] values, long[] epochSeconds, int length, OutlierDetectorBatchResult results) {
+        BatchOutlierDetector.checkBatch(values, epochSeconds, length, results);
         val trusted = isTrusted();
-        val observed = metricData.getValue();
+        for (int i = 0; i < length; i++) {
+            results.getLevels()[i] = OutlierDetectorBatchResult.levelCode(update(values[i]));
+            results.getWarmup()[i] = false;
+            results.getTrusted()[i] = trusted;
+            results.getPredicted()[i] = Double.NaN;
+            results.setThresholds(i, Double.NaN, Double.NaN, Double.NaN, Double.NaN);
+        }
+    }
+
+    private AnomalyLevel update(double observed) {
+        val params = getParams();
 
         this.movingRange += Math.abs(this.prevValue - observed);
 
@@ -168,7 +188,7 @@ public final class CusumDetector extends AbstractOutlierDetector {
             }
         }
 
-        return new OutlierDetectorResult(level, trusted);
+        return level;
     }
 
     @Override
@@ -176,6 +196,29 @@ public final class CusumDetector extends AbstractOutlierDetector {
         return NAME;
     }
 
+    @Override
+    public void snapshot(DataOutput out) throws IOException {
+        out.writeInt(totalDataPoints);
+        out.writeDouble(sumHigh);
+        out.writeDouble(sumLow);
+        out.writeDouble(movingRange);
+        out.writeDouble(prevValue);
+    }
+
+    @Override
+    public void restore(DataInput in) throws IOException {
+        val totalDataPoints = in.readInt();
+        val sumHigh = in.readDouble();
+        val sumLow = in.readDouble();
+        val movingRange = in.readDouble();
+        val prevValue = in.readDouble();
+        this.totalDataPoints = totalDataPoints;
+        this.sumHigh = sumHigh;
+        this.sumLow = sumLow;
+        this.movingRange = movingRange;
+        this.prevValue = prevValue;
+    }
+
     private void resetSums() {
         this.sumHigh = 0.0;
         this.sumLow = 0.0;
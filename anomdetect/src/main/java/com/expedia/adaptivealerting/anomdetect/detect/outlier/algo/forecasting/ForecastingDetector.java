@@ -21,17 +21,23 @@ import com.expedia.adaptivealerting.anomdetect.detect.AnomalyType;
 import com.expedia.adaptivealerting.anomdetect.detect.Detector;
 import com.expedia.adaptivealerting.anomdetect.detect.DetectorResult;
 import com.expedia.adaptivealerting.anomdetect.detect.outlier.AbstractOutlierDetector;
+import com.expedia.adaptivealerting.anomdetect.detect.outlier.BatchOutlierDetector;
+import com.expedia.adaptivealerting.anomdetect.detect.outlier.OutlierDetectorBatchResult;
 import com.expedia.adaptivealerting.anomdetect.detect.outlier.OutlierDetectorResult;
 import com.expedia.adaptivealerting.anomdetect.detect.outlier.algo.AnomalyClassifier;
 import com.expedia.adaptivealerting.anomdetect.forecast.interval.IntervalForecast;
 import com.expedia.adaptivealerting.anomdetect.forecast.interval.IntervalForecaster;
 import com.expedia.adaptivealerting.anomdetect.forecast.point.PointForecaster;
+import com.expedia.adaptivealerting.anomdetect.snapshot.Snapshottable;
 import com.expedia.metrics.MetricData;
 import lombok.Generated;
 import lombok.Getter;
 import lombok.ToString;
 import lombok.val;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.UUID;
 
 import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.notNull;
@@ -52,7 +58,7 @@ import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.notNull;
  * @see IntervalForecaster
  */
 @ToString(callSuper = true)
-public class ForecastingDetector extends AbstractOutlierDetector {
+public class ForecastingDetector extends AbstractOutlierDetector implements BatchOutlierDetector, Snapshottable {
     private final String NAME;
     @Getter
     @Generated // https://reflectoring.io/100-percent-test-coverage/
@@ -118,11 +124,77 @@ public class ForecastingDetector extends AbstractOutlierDetector {
                 .setTrusted(trusted);
     }
 
+    /**
+     * Runs the point forecaster over the whole series first, and then the interval forecaster and classifier. That
+     * leaves the forecasters in the same state as per-observation detection, as the point forecaster never depends on
+     * the interval forecaster.
+     */
+    @Override
+    public void detect(double[] values, long[] epochSeconds, int length, OutlierDetectorBatchResult results) {
+        BatchOutlierDetector.checkBatch(values, epochSeconds, length, results);
+
+        val predicted = results.getPredicted();
+        val warmup = results.getWarmup();
+        pointForecaster.forecast(values, epochSeconds, length, predicted, warmup);
+
+        val unknown = OutlierDetectorBatchResult.levelCode(AnomalyLevel.UNKNOWN);
+        val trusted = isTrusted();
+        val bounds = new double[4];
+        for (int i = 0; i < length; i++) {
+            if (warmup[i] || Double.isNaN(predicted[i])) {
+                results.getLevels()[i] = unknown;
+                results.getTrusted()[i] = false;
+                predicted[i] = Double.NaN;
+                results.setThresholds(i, Double.NaN, Double.NaN, Double.NaN, Double.NaN);
+                continue;
+            }
+            intervalForecaster.forecast(values[i], predicted[i], bounds);
+            IntervalForecast.validate(bounds[0], bounds[1], bounds[2], bounds[3]);
+            val level = classifier.classify(bounds[0], bounds[1], bounds[2], bounds[3], values[i]);
+            results.getLevels()[i] = OutlierDetectorBatchResult.levelCode(level);
+            results.getTrusted()[i] = trusted;
+            results.setThresholds(i, bounds[0], bounds[1], bounds[2], bounds[3]);
+        }
+    }
+
     @Override
     public String getName() {
         return NAME;
     }
 
+    /**
+     * Snapshots the forecasters. Forecasters that aren't {@link Snapshottable} are taken to be stateless.
+     */
+    @Override
+    public void snapshot(DataOutput out) throws IOException {
+        snapshot(out, pointForecaster);
+        snapshot(out, intervalForecaster);
+    }
+
+    @Override
+    public void restore(DataInput in) throws IOException {
+        restore(in, pointForecaster);
+        restore(in, intervalForecaster);
+    }
+
+    private void snapshot(DataOutput out, Object forecaster) throws IOException {
+        out.writeUTF(forecaster.getClass().getName());
+        if (forecaster instanceof Snapshottable) {
+            ((Snapshottable) forecaster).snapshot(out);
+        }
+    }
+
+    private void restore(DataInput in, Object forecaster) throws IOException {
+        val className = in.readUTF();
+        if (!className.equals(forecaster.getClass().getName())) {
+            throw new IOException(String.format(
+                    "Snapshot is for a %s, not a %s", className, forecaster.getClass().getName()));
+        }
+        if (forecaster instanceof Snapshottable) {
+            ((Snapshottable) forecaster).restore(in);
+        }
+    }
+
     private AnomalyThresholds toAnomalyThresholds(IntervalForecast intervalForecast) {
         return new AnomalyThresholds(
                 intervalForecast.getUpperStrong(),
@@ -130,4 +202,5 @@ public class ForecastingDetector extends AbstractOutlierDetector {
                 intervalForecast.getLowerWeak(),
                 intervalForecast.getLowerStrong());
     }
+
 }
@@ -17,14 +17,19 @@ package com.expedia.adaptivealerting.anomdetect.detect.outlier.algo.individuals;
 
 import com.expedia.adaptivealerting.anomdetect.detect.AnomalyLevel;
 import com.expedia.adaptivealerting.anomdetect.detect.AnomalyThresholds;
-import com.expedia.adaptivealerting.anomdetect.detect.Detector;
 import com.expedia.adaptivealerting.anomdetect.detect.DetectorResult;
+import com.expedia.adaptivealerting.anomdetect.detect.outlier.BatchOutlierDetector;
+import com.expedia.adaptivealerting.anomdetect.detect.outlier.OutlierDetectorBatchResult;
 import com.expedia.adaptivealerting.anomdetect.detect.outlier.OutlierDetectorResult;
+import com.expedia.adaptivealerting.anomdetect.snapshot.Snapshottable;
 import com.expedia.metrics.MetricData;
 import lombok.Getter;
 import lombok.ToString;
 import lombok.val;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.UUID;
 
 import static com.expedia.adaptivealerting.anomdetect.detect.AnomalyLevel.MODEL_WARMUP;
@@ -44,7 +49,7 @@ import static java.lang.Math.sqrt;
  * @see <a href="https://www.spcforexcel.com/knowledge/variable-control-charts/individuals-control-charts">https://www.spcforexcel.com/knowledge/variable-control-charts/individuals-control-charts</a>
  */
 @ToString
-public final class IndividualsDetector implements Detector {
+public final class IndividualsDetector implements BatchOutlierDetector, Snapshottable {
     private final String NAME;
     private static final double R_CONTROL_CHART_CONSTANT_D4 = 3.267;
     private static final double R_CONTROL_CHART_CONSTANT_D2 = 1.128;
@@ -128,15 +133,8 @@ public final class IndividualsDetector implements Detector {
     public DetectorResult detect(MetricData metricData) {
         notNull(metricData, "metricData can't be null");
 
-        val params = getParams();
         val trusted = isTrusted();
-
-        val observed = metricData.getValue();
-        val stdDev = sqrt(this.variance);
-//        val weakDelta = params.getWeakSigmas() * stdDev;
-        val strongDelta = params.getStrongSigmas() * stdDev;
-
-        val currentRange = Math.abs(prevValue - observed);
+        val strongDelta = strongDelta();
 
         // TODO Modify this to use AnomalyClassifier.detect() so we can get tail checks. [WLW]
 
@@ -147,6 +145,42 @@ public final class IndividualsDetector implements Detector {
                 this.mean - strongDelta,
                 this.mean - strongDelta);
 
+        val level = update(metricData.getValue());
+
+        final OutlierDetectorResult result = new OutlierDetectorResult(level);
+        result.setPredicted(this.mean);
+        result.setThresholds(thresholds);
+        result.setTrusted(trusted);
+        return result;
+    }
+
+    @Override
+    public void detect(double[] values, long[] epochSeconds, int length, OutlierDetectorBatchResult results) {
+        BatchOutlierDetector.checkBatch(values, epochSeconds, length, results);
+        val trusted = isTrusted();
+        for (int i = 0; i < length; i++) {
+            val strongDelta = strongDelta();
+            results.setThresholds(i,
+                    this.mean + strongDelta,
+                    this.mean + strongDelta,
+                    this.mean - strongDelta,
+                    this.mean - strongDelta);
+            results.getLevels()[i] = OutlierDetectorBatchResult.levelCode(update(values[i]));
+            results.getWarmup()[i] = false;
+            results.getTrusted()[i] = trusted;
+            results.getPredicted()[i] = this.mean;
+        }
+    }
+
+    private double strongDelta() {
+//        val weakDelta = params.getWeakSigmas() * stdDev;
+        return params.getStrongSigmas() * sqrt(this.variance);
+    }
+
+    private AnomalyLevel update(double observed) {
+        val params = getParams();
+        val currentRange = Math.abs(prevValue - observed);
+
         AnomalyLevel level;
 
         if (totalDataPoints > params.getWarmUpPeriod()) {
@@ -178,12 +212,7 @@ public final class IndividualsDetector implements Detector {
             lowerControlLimit_X = this.target - multiplier * averageMovingRange;
         }
         this.prevValue = observed;
-
-        final OutlierDetectorResult result = new OutlierDetectorResult(level);
-        result.setPredicted(this.mean);
-        result.setThresholds(thresholds);
-        result.setTrusted(trusted);
-        return result;
+        return level;
     }
 
     @Override
@@ -191,6 +220,41 @@ public final class IndividualsDetector implements Detector {
         return NAME;
     }
 
+    @Override
+    public void snapshot(DataOutput out) throws IOException {
+        out.writeInt(totalDataPoints);
+        out.writeDouble(movingRangeSum);
+        out.writeDouble(target);
+        out.writeDouble(prevValue);
+        out.writeDouble(upperControlLimit_R);
+        out.writeDouble(upperControlLimit_X);
+        out.writeDouble(lowerControlLimit_X);
+        out.writeDouble(variance);
+        out.writeDouble(mean);
+    }
+
+    @Override
+    public void restore(DataInput in) throws IOException {
+        val totalDataPoints = in.readInt();
+        val movingRangeSum = in.readDouble();
+        val target = in.readDouble();
+        val prevValue = in.readDouble();
+        val upperControlLimitR = in.readDouble();
+        val upperControlLimitX = in.readDouble();
+        val lowerControlLimitX = in.readDouble();
+        val variance = in.readDouble();
+        val mean = in.readDouble();
+        this.totalDataPoints = totalDataPoints;
+        this.movingRangeSum = movingRangeSum;
+        this.target = target;
+        this.prevValue = prevValue;
+        this.upperControlLimit_R = upperControlLimitR;
+        this.upperControlLimit_X = upperControlLimitX;
+        this.lowerControlLimit_X = lowerControlLimitX;
+        this.variance = variance;
+        this.mean = mean;
+    }
+
     private double getRunningMean(double observed) {
         return this.mean + ((observed - this.mean) / (this.totalDataPoints + 1));
     }
@@ -37,16 +37,28 @@ public class IntervalForecast {
             @JsonProperty("lowerWeak") double lowerWeak,
             @JsonProperty("lowerStrong") double lowerStrong) {
 
-        isTrue(upperStrong >= upperWeak,
-                String.format("Required: upperStrong (%f) >= upperWeak (%f)", upperStrong, upperWeak));
-        isTrue(upperWeak >= lowerWeak,
-                String.format("Required: upperWeak (%f) >= lowerWeak (%f)", upperWeak, lowerWeak));
-        isTrue(lowerWeak >= lowerStrong,
-                String.format("Required: lowerWeak (%f) >= lowerStrong (%f)", lowerWeak, lowerStrong));
+        validate(upperStrong, upperWeak, lowerWeak, lowerStrong);
 
         this.upperStrong = upperStrong;
         this.upperWeak = upperWeak;
         this.lowerWeak = lowerWeak;
         this.lowerStrong = lowerStrong;
     }
+
+    /**
+     * Checks that the bounds are ordered, as the constructor does. Batch detection uses this to validate bounds it
+     * doesn't build an interval forecast for.
+     */
+    public static void validate(double upperStrong, double upperWeak, double lowerWeak, double lowerStrong) {
+        // Only format the messages on failure, as batch detection validates every observation.
+        if (!(upperStrong >= upperWeak)) {
+            isTrue(false, String.format("Required: upperStrong (%f) >= upperWeak (%f)", upperStrong, upperWeak));
+        }
+        if (!(upperWeak >= lowerWeak)) {
+            isTrue(false, String.format("Required: upperWeak (%f) >= lowerWeak (%f)", upperWeak, lowerWeak));
+        }
+        if (!(lowerWeak >= lowerStrong)) {
+            isTrue(false, String.format("Required: lowerWeak (%f) >= lowerStrong (%f)", lowerWeak, lowerStrong));
+        }
+    }
 }
@@ -15,6 +15,7 @@
  */
 package com.expedia.adaptivealerting.anomdetect.forecast.interval;
 
+import com.expedia.adaptivealerting.anomdetect.util.MetricUtil;
 import com.expedia.metrics.MetricData;
 
 public interface IntervalForecaster {
@@ -23,4 +24,22 @@ public interface IntervalForecaster {
     //  Instead, if the interval forecaster needs a point forecast, it should take a point forecaster in the constructor
     //  and then use that to generate the point forecast. [WLW]
     IntervalForecast forecast(MetricData metricData, double pointForecast);
+
+    /**
+     * Primitive variant of {@link #forecast(MetricData, double)} for batch detection, which writes the upper strong,
+     * upper weak, lower weak and lower strong bounds to {@code bounds}. Forecasters override this to skip building the
+     * metric data and interval forecast.
+     *
+     * @param observed      observed value
+     * @param pointForecast point forecast
+     * @param bounds        receives the four bounds
+     */
+    default void forecast(double observed, double pointForecast, double[] bounds) {
+        IntervalForecast forecast = forecast(
+                MetricUtil.metricData(MetricUtil.metricDefinition(), observed), pointForecast);
+        bounds[0] = forecast.getUpperStrong();
+        bounds[1] = forecast.getUpperWeak();
+        bounds[2] = forecast.getLowerWeak();
+        bounds[3] = forecast.getLowerStrong();
+    }
 }
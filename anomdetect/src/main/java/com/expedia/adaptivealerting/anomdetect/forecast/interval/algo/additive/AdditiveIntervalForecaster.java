@@ -42,4 +42,12 @@ public class AdditiveIntervalForecaster implements IntervalForecaster {
                 pointForecast - params.getStrongValue());
     }
 
+    @Override
+    public void forecast(double observed, double pointForecast, double[] bounds) {
+        bounds[0] = pointForecast + params.getStrongValue();
+        bounds[1] = pointForecast + params.getWeakValue();
+        bounds[2] = pointForecast - params.getWeakValue();
+        bounds[3] = pointForecast - params.getStrongValue();
+    }
+
 }
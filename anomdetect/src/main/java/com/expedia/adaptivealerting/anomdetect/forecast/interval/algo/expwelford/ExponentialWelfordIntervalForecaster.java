@@ -17,10 +17,15 @@ package com.expedia.adaptivealerting.anomdetect.forecast.interval.algo.expwelfor
 
 import com.expedia.adaptivealerting.anomdetect.forecast.interval.IntervalForecast;
 import com.expedia.adaptivealerting.anomdetect.forecast.interval.IntervalForecaster;
+import com.expedia.adaptivealerting.anomdetect.snapshot.Snapshottable;
 import com.expedia.metrics.MetricData;
 import lombok.Getter;
 import lombok.val;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.notNull;
 
 /**
@@ -36,7 +41,7 @@ import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.notNull;
  * <li>https://www.johndcook.com/blog/2008/09/26/comparing-three-methods-of-computing-standard-deviation/</li>
  * </ul>
  */
-public class ExponentialWelfordIntervalForecaster implements IntervalForecaster {
+public class ExponentialWelfordIntervalForecaster implements IntervalForecaster, Snapshottable {
 
     @Getter
     private ExponentialWelfordIntervalForecasterParams params;
@@ -56,28 +61,49 @@ public class ExponentialWelfordIntervalForecaster implements IntervalForecaster
 
     @Override
     public IntervalForecast forecast(MetricData metricData, double pointForecast) {
+        val stdev = updateStdDev(metricData.getValue(), pointForecast);
+        val weakWidth = params.getWeakSigmas() * stdev;
+        val strongWidth = params.getStrongSigmas() * stdev;
+
+        return new IntervalForecast(
+                pointForecast + strongWidth,
+                pointForecast + weakWidth,
+                pointForecast - weakWidth,
+                pointForecast - strongWidth);
+    }
 
+    @Override
+    public void forecast(double observed, double pointForecast, double[] bounds) {
+        double stdev = updateStdDev(observed, pointForecast);
+        bounds[0] = pointForecast + params.getStrongSigmas() * stdev;
+        bounds[1] = pointForecast + params.getWeakSigmas() * stdev;
+        bounds[2] = pointForecast - params.getWeakSigmas() * stdev;
+        bounds[3] = pointForecast - params.getStrongSigmas() * stdev;
+    }
+
+    private double updateStdDev(double observed, double pointForecast) {
         // https://en.wikipedia.org/wiki/Moving_average#Exponentially_weighted_moving_variance_and_standard_deviation
         // http://people.ds.cam.ac.uk/fanf2/hermes/doc/antiforgery/stats.pdf
-        val observed = metricData.getValue();
         val residual = observed - pointForecast;
         val incr = params.getAlpha() * residual;
 
         // FIXME I believe this belongs here... [WLW]
         this.variance = (1.0 - params.getAlpha()) * (this.variance + residual * incr);
 
-        val stdev = Math.sqrt(variance);
-        val weakWidth = params.getWeakSigmas() * stdev;
-        val strongWidth = params.getStrongSigmas() * stdev;
-
         // FIXME ...but this is where it is in the legacy code (and where the unit tests expect it). [WLW]
 //        this.variance = (1.0 - params.getAlpha()) * (this.variance + residual * incr);
 
-        return new IntervalForecast(
-                pointForecast + strongWidth,
-                pointForecast + weakWidth,
-                pointForecast - weakWidth,
-                pointForecast - strongWidth);
+        return Math.sqrt(variance);
+    }
+
+    @Override
+    public void snapshot(DataOutput out) throws IOException {
+        out.writeDouble(variance);
+    }
+
+    @Override
+    public void restore(DataInput in) throws IOException {
+        this.variance = in.readDouble();
     }
 
 }
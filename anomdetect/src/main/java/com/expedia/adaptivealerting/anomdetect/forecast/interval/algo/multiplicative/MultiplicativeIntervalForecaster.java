@@ -41,4 +41,12 @@ public class MultiplicativeIntervalForecaster implements IntervalForecaster {
                 pointForecast * (1.0 - params.getStrongMultiplier()));
     }
 
+    @Override
+    public void forecast(double observed, double pointForecast, double[] bounds) {
+        bounds[0] = pointForecast * (1.0 + params.getStrongMultiplier());
+        bounds[1] = pointForecast * (1.0 + params.getWeakMultiplier());
+        bounds[2] = pointForecast * (1.0 - params.getWeakMultiplier());
+        bounds[3] = pointForecast * (1.0 - params.getStrongMultiplier());
+    }
+
 }
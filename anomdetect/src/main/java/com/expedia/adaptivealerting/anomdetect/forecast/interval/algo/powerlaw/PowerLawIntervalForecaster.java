@@ -36,7 +36,7 @@ public class PowerLawIntervalForecaster implements IntervalForecaster {
     public IntervalForecast forecast(MetricData metricData, double pointForecast) {
         notNull(metricData, "metricData can't be null");
 
-        val width = params.getAlpha() * Math.pow(pointForecast, params.getBeta());
+        val width = width(pointForecast);
         val weakWidth = params.getWeakMultiplier() * width;
         val strongWidth = params.getStrongMultiplier() * width;
 
@@ -47,4 +47,17 @@ public class PowerLawIntervalForecaster implements IntervalForecaster {
                 pointForecast - strongWidth);
     }
 
+    @Override
+    public void forecast(double observed, double pointForecast, double[] bounds) {
+        double width = width(pointForecast);
+        bounds[0] = pointForecast + params.getStrongMultiplier() * width;
+        bounds[1] = pointForecast + params.getWeakMultiplier() * width;
+        bounds[2] = pointForecast - params.getWeakMultiplier() * width;
+        bounds[3] = pointForecast - params.getStrongMultiplier() * width;
+    }
+
+    private double width(double pointForecast) {
+        return params.getAlpha() * Math.pow(pointForecast, params.getBeta());
+    }
+
 }
@@ -15,7 +15,9 @@
  */
 package com.expedia.adaptivealerting.anomdetect.forecast.point;
 
+import com.expedia.adaptivealerting.anomdetect.util.MetricUtil;
 import com.expedia.metrics.MetricData;
+import com.expedia.metrics.MetricDefinition;
 
 /**
  * Interface for point forecasting algorithms.
@@ -29,4 +31,23 @@ public interface PointForecaster {
      * @return A point forecast, or {@literal null}
      */
     PointForecast forecast(MetricData metricData);
+
+    /**
+     * Forecasts the first {@code length} points of a series in turn, as {@link #forecast(MetricData)} would, for batch
+     * detection. Forecasters override this to skip building the metric data and forecasts.
+     *
+     * @param values       observed values
+     * @param epochSeconds observation timestamps
+     * @param length       number of points to forecast
+     * @param forecasts    receives the point forecasts, or NaN where there's no forecast
+     * @param warmup       receives whether each forecast is a warmup forecast
+     */
+    default void forecast(double[] values, long[] epochSeconds, int length, double[] forecasts, boolean[] warmup) {
+        MetricDefinition metricDefinition = MetricUtil.metricDefinition();
+        for (int i = 0; i < length; i++) {
+            PointForecast forecast = forecast(MetricUtil.metricData(metricDefinition, values[i], epochSeconds[i]));
+            forecasts[i] = forecast == null ? Double.NaN : forecast.getValue();
+            warmup[i] = forecast != null && forecast.isWarmup();
+        }
+    }
 }
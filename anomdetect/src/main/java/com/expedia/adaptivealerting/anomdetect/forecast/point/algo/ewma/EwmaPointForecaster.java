@@ -17,18 +17,23 @@ package com.expedia.adaptivealerting.anomdetect.forecast.point.algo.ewma;
 
 import com.expedia.adaptivealerting.anomdetect.forecast.point.PointForecast;
 import com.expedia.adaptivealerting.anomdetect.forecast.point.PointForecaster;
+import com.expedia.adaptivealerting.anomdetect.snapshot.Snapshottable;
 import com.expedia.metrics.MetricData;
 import lombok.Generated;
 import lombok.Getter;
 import lombok.val;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.notNull;
 
 /**
  * Point forecaster based on the Exponential Weighted Moving Average (EWMA) method, aka Simple Exponential Smoothing
  * (SES).
  */
-public class EwmaPointForecaster implements PointForecaster {
+public class EwmaPointForecaster implements PointForecaster, Snapshottable {
 
     @Getter
     @Generated // https://reflectoring.io/100-percent-test-coverage/
@@ -59,6 +64,25 @@ public class EwmaPointForecaster implements PointForecaster {
         return new PointForecast(mean, false);
     }
 
+    @Override
+    public void forecast(double[] values, long[] epochSeconds, int length, double[] forecasts, boolean[] warmup) {
+        for (int i = 0; i < length; i++) {
+            updateMeanEstimate(values[i]);
+            forecasts[i] = mean;
+            warmup[i] = false;
+        }
+    }
+
+    @Override
+    public void snapshot(DataOutput out) throws IOException {
+        out.writeDouble(mean);
+    }
+
+    @Override
+    public void restore(DataInput in) throws IOException {
+        this.mean = in.readDouble();
+    }
+
     private void updateMeanEstimate(double observed) {
         // https://en.wikipedia.org/wiki/Moving_average#Exponentially_weighted_moving_variance_and_standard_deviation
         // http://people.ds.cam.ac.uk/fanf2/hermes/doc/antiforgery/stats.pdf
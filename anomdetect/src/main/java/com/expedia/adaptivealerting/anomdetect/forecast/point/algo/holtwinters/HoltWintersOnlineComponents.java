@@ -15,12 +15,20 @@
  */
 package com.expedia.adaptivealerting.anomdetect.forecast.point.algo.holtwinters;
 
+import com.expedia.adaptivealerting.anomdetect.snapshot.Snapshottable;
+import com.expedia.adaptivealerting.anomdetect.util.RunningStatistics;
 import lombok.Data;
 import lombok.NonNull;
-import org.apache.commons.math3.stat.descriptive.SummaryStatistics;
+import lombok.val;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Arrays;
 
+import static com.expedia.adaptivealerting.anomdetect.snapshot.DetectorSnapshotCodec.readDoubles;
+import static com.expedia.adaptivealerting.anomdetect.snapshot.DetectorSnapshotCodec.writeDoubles;
+
 /**
  * Encapsulates the values that represent the components for the {@link HoltWintersOnlineAlgorithm} logic. This
  * represents the model's online data as opposed to {@link HoltWintersPointForecasterParams} which represents the user's
@@ -31,7 +39,7 @@ import java.util.Arrays;
  * for naming conventions (e.g. usage of "frequency" and "cycle").
  */
 @Data
-public class HoltWintersOnlineComponents {
+public class HoltWintersOnlineComponents implements Snapshottable {
     private static final double MULTIPLICATIVE_IDENTITY = 1;
     private static final double ADDITIVE_IDENTITY = 0;
 
@@ -45,8 +53,8 @@ public class HoltWintersOnlineComponents {
     @NonNull
     private double[] seasonal;
 
-    private SummaryStatistics overallSummaryStatistics = new SummaryStatistics();
-    private SummaryStatistics[] seasonalSummaryStatistics;
+    private RunningStatistics overallStatistics = new RunningStatistics();
+    private RunningStatistics[] seasonalStatistics;
     private double forecast = Double.NaN;
 
     /**
@@ -63,7 +71,7 @@ public class HoltWintersOnlineComponents {
     }
 
     public long getN() {
-        return overallSummaryStatistics.getN();
+        return overallStatistics.getN();
     }
 
     public double getSeasonal(int seasonalIdx) {
@@ -91,15 +99,15 @@ public class HoltWintersOnlineComponents {
 
     public void setSeasonal(int seasonalIdx, double seasonalValue, double observed) {
         seasonal[seasonalIdx] = seasonalValue;
-        seasonalSummaryStatistics[seasonalIdx].addValue(observed);
+        seasonalStatistics[seasonalIdx].addValue(observed);
     }
 
     public void addValue(double observed) {
-        overallSummaryStatistics.addValue(observed);
+        overallStatistics.addValue(observed);
     }
 
     public double getSeasonalStandardDeviation(int seasonalIdx) {
-        return seasonalSummaryStatistics[seasonalIdx].getStandardDeviation();
+        return seasonalStatistics[seasonalIdx].getStandardDeviation();
     }
 
     /**
@@ -109,6 +117,37 @@ public class HoltWintersOnlineComponents {
         return (int) (getN() % params.getFrequency());
     }
 
+    @Override
+    public void snapshot(DataOutput out) throws IOException {
+        out.writeDouble(level);
+        out.writeDouble(base);
+        out.writeDouble(forecast);
+        writeDoubles(out, seasonal);
+        writeStatistics(out, overallStatistics);
+        for (RunningStatistics statistics : seasonalStatistics) {
+            writeStatistics(out, statistics);
+        }
+    }
+
+    @Override
+    public void restore(DataInput in) throws IOException {
+        val level = in.readDouble();
+        val base = in.readDouble();
+        val forecast = in.readDouble();
+        val seasonal = readDoubles(in, params.getFrequency());
+        val overallStatistics = readStatistics(in);
+        val seasonalStatistics = new RunningStatistics[params.getFrequency()];
+        for (int i = 0; i < seasonalStatistics.length; i++) {
+            seasonalStatistics[i] = readStatistics(in);
+        }
+        this.level = level;
+        this.base = base;
+        this.forecast = forecast;
+        this.seasonal = seasonal;
+        this.overallStatistics = overallStatistics;
+        this.seasonalStatistics = seasonalStatistics;
+    }
+
     private void initLevelFromParams(HoltWintersPointForecasterParams params) {
         this.level = Double.isNaN(params.getInitLevelEstimate()) ? seasonalityIdentity() : params.getInitLevelEstimate();
     }
@@ -140,11 +179,26 @@ public class HoltWintersOnlineComponents {
     }
 
     private void initSeasonalStatistics(HoltWintersPointForecasterParams params) {
-        seasonalSummaryStatistics = new SummaryStatistics[params.getFrequency()];
+        seasonalStatistics = new RunningStatistics[params.getFrequency()];
         for (int i = 0; i < params.getFrequency(); i++) {
-            seasonalSummaryStatistics[i] = new SummaryStatistics();
-            seasonalSummaryStatistics[i].addValue(seasonal[i]);
+            seasonalStatistics[i] = new RunningStatistics();
+            seasonalStatistics[i].addValue(seasonal[i]);
         }
     }
 
+    private static void writeStatistics(DataOutput out, RunningStatistics statistics) throws IOException {
+        out.writeLong(statistics.getN());
+        out.writeDouble(statistics.getMean());
+        out.writeDouble(statistics.getM2());
+    }
+
+    private static RunningStatistics readStatistics(DataInput in) throws IOException {
+        val n = in.readLong();
+        val mean = in.readDouble();
+        val m2 = in.readDouble();
+        if (n < 0) {
+            throw new IOException("Negative count: " + n);
+        }
+        return new RunningStatistics(n, mean, m2);
+    }
 }
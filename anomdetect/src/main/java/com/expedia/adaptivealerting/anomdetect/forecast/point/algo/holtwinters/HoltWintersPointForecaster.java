@@ -17,15 +17,20 @@ package com.expedia.adaptivealerting.anomdetect.forecast.point.algo.holtwinters;
 
 import com.expedia.adaptivealerting.anomdetect.forecast.point.PointForecast;
 import com.expedia.adaptivealerting.anomdetect.forecast.point.PointForecaster;
+import com.expedia.adaptivealerting.anomdetect.snapshot.Snapshottable;
 import com.expedia.metrics.MetricData;
 import lombok.Generated;
 import lombok.Getter;
 import lombok.val;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.notNull;
 import static java.lang.String.format;
 
-public class HoltWintersPointForecaster implements PointForecaster {
+public class HoltWintersPointForecaster implements PointForecaster, Snapshottable {
 
     @Getter
     @Generated // https://reflectoring.io/100-percent-test-coverage/
@@ -68,6 +73,18 @@ public class HoltWintersPointForecaster implements PointForecaster {
         }
     }
 
+    @Override
+    public void snapshot(DataOutput out) throws IOException {
+        holtWintersSimpleTrainingModel.snapshot(out);
+        components.snapshot(out);
+    }
+
+    @Override
+    public void restore(DataInput in) throws IOException {
+        holtWintersSimpleTrainingModel.restore(in);
+        components.restore(in);
+    }
+
     public boolean isInitialTrainingComplete() {
         switch (params.getInitTrainingMethod()) {
             case NONE:
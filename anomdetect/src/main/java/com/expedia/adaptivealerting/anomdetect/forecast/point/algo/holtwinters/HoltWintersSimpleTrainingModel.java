@@ -15,8 +15,16 @@
  */
 package com.expedia.adaptivealerting.anomdetect.forecast.point.algo.holtwinters;
 
+import com.expedia.adaptivealerting.anomdetect.snapshot.Snapshottable;
+import lombok.val;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Arrays;
 
+import static com.expedia.adaptivealerting.anomdetect.snapshot.DetectorSnapshotCodec.readDoubles;
+import static com.expedia.adaptivealerting.anomdetect.snapshot.DetectorSnapshotCodec.writeDoubles;
 import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.isFalse;
 import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.isTrue;
 import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.notNull;
@@ -29,7 +37,7 @@ import static java.util.stream.DoubleStream.concat;
  * <br>
  * R source code: <a href="https://github.com/robjhyndman/forecast/blob/master/R/HoltWintersNew.R#L61-L67">https://github.com/robjhyndman/forecast/blob/master/R/HoltWintersNew.R#L61-L67</a>
  */
-public class HoltWintersSimpleTrainingModel {
+public class HoltWintersSimpleTrainingModel implements Snapshottable {
     private int n = 0;
     private final double[] firstCycle;
     private final double[] secondCycle;
@@ -81,6 +89,26 @@ public class HoltWintersSimpleTrainingModel {
         return n >= (params.calculateInitTrainingPeriod());
     }
 
+    @Override
+    public void snapshot(DataOutput out) throws IOException {
+        out.writeInt(n);
+        writeDoubles(out, firstCycle);
+        writeDoubles(out, secondCycle);
+    }
+
+    @Override
+    public void restore(DataInput in) throws IOException {
+        val n = in.readInt();
+        val firstCycle = readDoubles(in, this.firstCycle.length);
+        val secondCycle = readDoubles(in, this.secondCycle.length);
+        if (n < 0) {
+            throw new IOException("Negative training count: " + n);
+        }
+        this.n = n;
+        System.arraycopy(firstCycle, 0, this.firstCycle, 0, firstCycle.length);
+        System.arraycopy(secondCycle, 0, this.secondCycle, 0, secondCycle.length);
+    }
+
     /**
      * Update the level, base and seasonal components by running the main algorithm over each of the observations to this point.
      */
@@ -17,9 +17,15 @@ package com.expedia.adaptivealerting.anomdetect.forecast.point.algo.naive;
 
 import com.expedia.adaptivealerting.anomdetect.forecast.point.PointForecast;
 import com.expedia.adaptivealerting.anomdetect.forecast.point.PointForecaster;
+import com.expedia.adaptivealerting.anomdetect.snapshot.Snapshottable;
 import com.expedia.metrics.MetricData;
+import com.expedia.metrics.MetricDefinition;
 import lombok.val;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.notNull;
 
 // TODO Support drift method. See https://otexts.com/fpp2/simple-methods.html#simple-methods.
@@ -29,7 +35,9 @@ import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.notNull;
  * optimal for random walk series, but they can be effective for other series as well. Accordingly, this algorithm is
  * also known as random walk forecasting.
  */
-public class NaivePointForecaster implements PointForecaster {
+public class NaivePointForecaster implements PointForecaster, Snapshottable {
+    private static final MetricDefinition RESTORED_METRIC_DEFINITION = new MetricDefinition("restored");
+
     private MetricData lastMetricData;
 
     @Override
@@ -39,4 +47,29 @@ public class NaivePointForecaster implements PointForecaster {
         this.lastMetricData = metricData;
         return forecastMetricData == null ? null : new PointForecast(forecastMetricData.getValue(), false);
     }
+
+    @Override
+    public void snapshot(DataOutput out) throws IOException {
+        out.writeBoolean(lastMetricData != null);
+        if (lastMetricData != null) {
+            out.writeLong(lastMetricData.getTimestamp());
+            out.writeDouble(lastMetricData.getValue());
+        }
+    }
+
+    /**
+     * Restores the last point. Only its timestamp and value are snapshotted, so it gets a placeholder metric
+     * definition.
+     */
+    @Override
+    public void restore(DataInput in) throws IOException {
+        MetricData restored = null;
+        if (in.readBoolean()) {
+            val timestamp = in.readLong();
+            val value = in.readDouble();
+            restored = new MetricData(RESTORED_METRIC_DEFINITION, value, timestamp);
+        }
+        this.lastMetricData = restored;
+    }
+
 }
@@ -17,14 +17,19 @@ package com.expedia.adaptivealerting.anomdetect.forecast.point.algo.pewma;
 
 import com.expedia.adaptivealerting.anomdetect.forecast.point.PointForecast;
 import com.expedia.adaptivealerting.anomdetect.forecast.point.PointForecaster;
+import com.expedia.adaptivealerting.anomdetect.snapshot.Snapshottable;
 import com.expedia.metrics.MetricData;
 import lombok.Generated;
 import lombok.Getter;
 import lombok.val;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.notNull;
 
-public class PewmaPointForecaster implements PointForecaster {
+public class PewmaPointForecaster implements PointForecaster, Snapshottable {
 
     @Getter
     @Generated // https://reflectoring.io/100-percent-test-coverage/
@@ -89,6 +94,33 @@ public class PewmaPointForecaster implements PointForecaster {
         return new PointForecast(mean, false);
     }
 
+    @Override
+    public void forecast(double[] values, long[] epochSeconds, int length, double[] forecasts, boolean[] warmup) {
+        for (int i = 0; i < length; i++) {
+            updateEstimates(values[i]);
+            forecasts[i] = mean;
+            warmup[i] = false;
+        }
+    }
+
+    @Override
+    public void snapshot(DataOutput out) throws IOException {
+        out.writeInt(trainingCount);
+        out.writeDouble(s1);
+        out.writeDouble(s2);
+    }
+
+    @Override
+    public void restore(DataInput in) throws IOException {
+        val trainingCount = in.readInt();
+        val s1 = in.readDouble();
+        val s2 = in.readDouble();
+        this.trainingCount = trainingCount;
+        this.s1 = s1;
+        this.s2 = s2;
+        updateMeanAndStdDev();
+    }
+
     private void updateMeanAndStdDev() {
         this.mean = this.s1;
         this.stdDev = Math.sqrt(this.s2 - this.s1 * this.s1);
@@ -15,14 +15,20 @@
  */
 package com.expedia.adaptivealerting.anomdetect.forecast.point.algo.seasonalnaive;
 
+import com.expedia.adaptivealerting.anomdetect.snapshot.Snapshottable;
 import com.expedia.adaptivealerting.anomdetect.util.DateUtil;
 import com.expedia.metrics.MetricData;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import lombok.val;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Arrays;
-import java.util.stream.IntStream;
 
+import static com.expedia.adaptivealerting.anomdetect.snapshot.DetectorSnapshotCodec.readDoubles;
+import static com.expedia.adaptivealerting.anomdetect.snapshot.DetectorSnapshotCodec.writeDoubles;
 import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.isStrictlyPositive;
 import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.notNull;
 
@@ -31,7 +37,7 @@ import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.notNull;
  */
 @RequiredArgsConstructor
 @Slf4j
-public class SeasonalBuffer {
+public class SeasonalBuffer implements Snapshottable {
 
     private static final long NOT_YET_INITIALIZED = -1L;
 
@@ -82,17 +88,51 @@ public class SeasonalBuffer {
 
     public double updateWhilePadding(MetricData metricData) {
         notNull(metricData, "metricData can't be null");
-        checkValidTimestamp(metricData);
-        padMissingDataPoints(metricData);
-        double oldValue = getValueForCurrentIndex();
-        updateBuffer(metricData);
-        return oldValue;
+        checkValidTimestamp(metricData.getTimestamp(), metricData);
+        return update(metricData.getTimestamp(), metricData.getValue());
+    }
+
+    /**
+     * Primitive variant of {@link #updateWhilePadding(MetricData)}, for callers replaying a series held in arrays.
+     *
+     * @param timestamp Epoch second of the datapoint.
+     * @param value     Datapoint value.
+     * @return Value the datapoint displaced from the buffer.
+     */
+    public double updateWhilePadding(long timestamp, double value) {
+        if (timestamp <= lastTimestamp) {
+            checkValidTimestamp(timestamp, "value " + value);
+        }
+        return update(timestamp, value);
     }
 
     public boolean isReady() {
         return this.lastTimestamp - (this.firstTimestamp + (cycleLength * interval)) >= 0;
     }
 
+    @Override
+    public void snapshot(DataOutput out) throws IOException {
+        out.writeInt(currIndex);
+        out.writeLong(firstTimestamp);
+        out.writeLong(lastTimestamp);
+        writeDoubles(out, buffer);
+    }
+
+    @Override
+    public void restore(DataInput in) throws IOException {
+        val currIndex = in.readInt();
+        val firstTimestamp = in.readLong();
+        val lastTimestamp = in.readLong();
+        val buffer = readDoubles(in, cycleLength);
+        if (currIndex < 0 || currIndex >= cycleLength) {
+            throw new IOException(String.format("Buffer index %d out of range [0, %d)", currIndex, cycleLength));
+        }
+        this.currIndex = currIndex;
+        this.firstTimestamp = firstTimestamp;
+        this.lastTimestamp = lastTimestamp;
+        this.buffer = buffer;
+    }
+
     private void initState() {
         this.firstTimestamp = NOT_YET_INITIALIZED;
         this.lastTimestamp = NOT_YET_INITIALIZED;
@@ -101,33 +141,44 @@ public class SeasonalBuffer {
         this.currIndex = 0;
     }
 
+    private double update(long timestamp, double value) {
+        padMissingDataPoints(timestamp, value);
+        double oldValue = getValueForCurrentIndex();
+        updateBuffer(timestamp, value);
+        return oldValue;
+    }
+
     /**
      * Moves currIndex for the number of missing datapoints and fills blanks with MISSING_VALUE values.
      *
-     * @param metricData The new datapoint.
+     * @param timestamp Timestamp of the new datapoint.
+     * @param value     Value of the new datapoint.
      */
-    private void padMissingDataPoints(MetricData metricData) {
+    private void padMissingDataPoints(long timestamp, double value) {
         if (isFirstDataPoint()) { // This is first metric value received. Assume it starts the cycle (i.e. no prior datapoints to pad)
-            firstTimestamp = metricData.getTimestamp();
-            log.debug("First data point received for Seasonal Buffer. " +
-                            "Buffer has cycleLength={}, interval={}, and starts at timestamp {} ({}). " +
-                            "First metric details: {}",
-                    this.cycleLength, this.interval, metricData.getTimestamp(), dateStr(metricData.getTimestamp()), metricData);
+            firstTimestamp = timestamp;
+            if (log.isDebugEnabled()) {
+                log.debug("First data point received for Seasonal Buffer. " +
+                                "Buffer has cycleLength={}, interval={}, and starts at timestamp {} ({}). " +
+                                "First value: {}",
+                        this.cycleLength, this.interval, timestamp, dateStr(timestamp), value);
+            }
             return;
         }
-        int numSkippedDataPoints = countIntervalsSkippedSinceLastTimestamp(metricData);
+        int numSkippedDataPoints = countIntervalsSkippedSinceLastTimestamp(timestamp);
         insertSkippedDataPoints(numSkippedDataPoints);
     }
 
     /**
      * Updates buffer with the new datapoint.
      *
-     * @param metricData Datapoint to update buffer with.
+     * @param timestamp Timestamp of the datapoint to update buffer with.
+     * @param value     Value of the datapoint to update buffer with.
      */
-    private void updateBuffer(MetricData metricData) {
-        setBufferValue(metricData.getValue());
+    private void updateBuffer(long timestamp, double value) {
+        setBufferValue(value);
         this.currIndex = (this.currIndex + 1) % this.buffer.length;
-        this.lastTimestamp = metricData.getTimestamp();
+        this.lastTimestamp = timestamp;
     }
 
     private double getValueForCurrentIndex() {
@@ -138,15 +189,17 @@ public class SeasonalBuffer {
      * Fill datapoints between last datapoint timestamp and current datapoint timestamp with MISSING_VALUE values.
      */
     private void insertSkippedDataPoints(int numSkippedDataPoints) {
-        IntStream.range(0, numSkippedDataPoints).forEach(__ -> {
+        for (int i = 0; i < numSkippedDataPoints; i++) {
             setBufferValue(this.missingValuePlaceholder);
             currIndex = (currIndex + 1) % this.buffer.length;
-        });
+        }
     }
 
     private void setBufferValue(double value) {
-        String valueStr = value == this.missingValuePlaceholder ? "MISSING PLACEHOLDER value (" + this.missingValuePlaceholder + ")" : ("value " + value);
-        log.debug("Updating buffer index " + currIndex + " with " + valueStr);
+        if (log.isDebugEnabled()) {
+            String valueStr = value == this.missingValuePlaceholder ? "MISSING PLACEHOLDER value (" + this.missingValuePlaceholder + ")" : ("value " + value);
+            log.debug("Updating buffer index " + currIndex + " with " + valueStr);
+        }
         this.buffer[currIndex] = value;
     }
 
@@ -154,29 +207,31 @@ public class SeasonalBuffer {
      * Find number of missing datapoints based on the last timestamp and interval.
      */
     // TODO: Return 0 when difference between current and previous timestamps is less than interval.  Currently returns -1.
-    private int countIntervalsSkippedSinceLastTimestamp(MetricData metricData) {
-        int timeDifference = new Long(metricData.getTimestamp() - lastTimestamp).intValue();
+    private int countIntervalsSkippedSinceLastTimestamp(long timestamp) {
+        int timeDifference = (int) (timestamp - lastTimestamp);
         int intervalsSkipped = timeDifference / this.interval - 1;
-        log.debug("Current metric timestamp " + metricData.getTimestamp() + " (" + dateStr(metricData.getTimestamp()) + ") includes " +
-                intervalsSkipped + " skipped data points since last timestamp " + lastTimestamp + " (" + dateStr(lastTimestamp) + ")");
+        if (log.isDebugEnabled()) {
+            log.debug("Current metric timestamp " + timestamp + " (" + dateStr(timestamp) + ") includes " +
+                    intervalsSkipped + " skipped data points since last timestamp " + lastTimestamp + " (" + dateStr(lastTimestamp) + ")");
+        }
         return intervalsSkipped;
     }
 
     /**
-     * This metricData timestamp has to come chronologically after previous datapoint. In addition,
+     * The datapoint timestamp has to come chronologically after previous datapoint. In addition,
      * the previous datapoint's timestamp needs to be different to the current datapoint one.
      *
-     * @param metricData Datapoint to check timestamp for.
+     * @param timestamp Timestamp to check.
+     * @param datapoint Datapoint description used in error messages.
      */
-    private void checkValidTimestamp(MetricData metricData) {
-        long timestamp = metricData.getTimestamp();
+    private void checkValidTimestamp(long timestamp, Object datapoint) {
         if (timestamp < lastTimestamp) {
             String error = String.format("Current metric %s has a timestamp (%s) dated before the last data point we observed (which had timestamp %d=%s)",
-                    metricData, dateStr(timestamp), lastTimestamp, dateStr(lastTimestamp));
+                    datapoint, dateStr(timestamp), lastTimestamp, dateStr(lastTimestamp));
             throw new MetricDeliveryTimeException(error);
         }
         if (timestamp == lastTimestamp) {
-            String error = String.format("Current metric %s has the same timestamp (%s) as the last data point observed (%s)", metricData, dateStr(lastTimestamp), dateStr(timestamp));
+            String error = String.format("Current metric %s has the same timestamp (%s) as the last data point observed (%s)", datapoint, dateStr(lastTimestamp), dateStr(timestamp));
             throw new MetricDeliveryDuplicateException(error);
         }
     }
@@ -193,4 +248,5 @@ public class SeasonalBuffer {
     private boolean isFirstDataPoint() {
         return lastTimestamp == NOT_YET_INITIALIZED;
     }
+
 }
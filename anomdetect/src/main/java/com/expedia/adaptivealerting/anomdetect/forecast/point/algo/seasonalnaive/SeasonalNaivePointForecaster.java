@@ -17,12 +17,16 @@ package com.expedia.adaptivealerting.anomdetect.forecast.point.algo.seasonalnaiv
 
 import com.expedia.adaptivealerting.anomdetect.forecast.point.PointForecast;
 import com.expedia.adaptivealerting.anomdetect.forecast.point.SeasonalPointForecaster;
+import com.expedia.adaptivealerting.anomdetect.snapshot.Snapshottable;
 import com.expedia.metrics.MetricData;
 import lombok.Getter;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import lombok.val;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.UUID;
 
 import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.notNull;
@@ -32,7 +36,7 @@ import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.notNull;
  * https://otexts.com/fpp2/simple-methods.html#simple-methods.
  */
 @RequiredArgsConstructor
-public class SeasonalNaivePointForecaster implements SeasonalPointForecaster {
+public class SeasonalNaivePointForecaster implements SeasonalPointForecaster, Snapshottable {
 
     /**
      * Detector UUID.
@@ -78,6 +82,18 @@ public class SeasonalNaivePointForecaster implements SeasonalPointForecaster {
         return getPreviousValueOrNull(oldValue);
     }
 
+    @Override
+    public void forecast(double[] values, long[] epochSeconds, int length, double[] forecasts, boolean[] warmup) {
+        // Same comparison as Double.equals(), without boxing each displaced value.
+        long missingValueBits = Double.doubleToLongBits(params.getMissingValuePlaceholder());
+        for (int i = 0; i < length; i++) {
+            double oldValue = buffer.updateWhilePadding(epochSeconds[i], values[i]);
+            boolean warmingUp = isWarmingUp();
+            warmup[i] = warmingUp;
+            forecasts[i] = warmingUp || Double.doubleToLongBits(oldValue) == missingValueBits ? Double.NaN : oldValue;
+        }
+    }
+
     @Override
     public int getCycleLength() {
         return params.getCycleLength();
@@ -88,6 +104,16 @@ public class SeasonalNaivePointForecaster implements SeasonalPointForecaster {
         return params.getIntervalLength();
     }
 
+    @Override
+    public void snapshot(DataOutput out) throws IOException {
+        buffer.snapshot(out);
+    }
+
+    @Override
+    public void restore(DataInput in) throws IOException {
+        buffer.restore(in);
+    }
+
     private PointForecast getPreviousValueOrNull(double oldValue) {
         if (isWarmingUp()) {
             return new PointForecast(Double.NaN, true);
@@ -104,4 +130,5 @@ public class SeasonalNaivePointForecaster implements SeasonalPointForecaster {
     private boolean bufferContainedMissingValue(double oldValue) {
         return this.params.getMissingValuePlaceholder().equals(oldValue);
     }
+
 }
@@ -17,18 +17,27 @@ package com.expedia.adaptivealerting.anomdetect.forecast.point.algo.sma;
 
 import com.expedia.adaptivealerting.anomdetect.forecast.point.PointForecast;
 import com.expedia.adaptivealerting.anomdetect.forecast.point.PointForecaster;
+import com.expedia.adaptivealerting.anomdetect.snapshot.Snapshottable;
 import com.expedia.metrics.MetricData;
 import com.google.common.collect.EvictingQueue;
 
 import lombok.Generated;
 import lombok.Getter;
+import lombok.val;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.expedia.adaptivealerting.anomdetect.snapshot.DetectorSnapshotCodec.readLength;
 import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.notNull;
 
 /**
  * Point forecaster based on the Simple Moving Average (SMA) method
  */
-public class SmaPointForecaster implements PointForecaster {
+public class SmaPointForecaster implements PointForecaster, Snapshottable {
 
     @Getter
     @Generated // https://reflectoring.io/100-percent-test-coverage/
@@ -65,6 +74,28 @@ public class SmaPointForecaster implements PointForecaster {
         return new PointForecast(mean, false);
     }
 
+    @Override
+    public void snapshot(DataOutput out) throws IOException {
+        out.writeDouble(mean);
+        out.writeInt(periodOfValues.size());
+        for (Double value : periodOfValues) {
+            out.writeDouble(value);
+        }
+    }
+
+    @Override
+    public void restore(DataInput in) throws IOException {
+        val mean = in.readDouble();
+        val size = readLength(in, params.getLookBackPeriod());
+        List<Double> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            values.add(in.readDouble());
+        }
+        this.mean = mean;
+        periodOfValues.clear();
+        periodOfValues.addAll(values);
+    }
+
     private void updateMeanEstimate(double observed) {
         double meanSum = mean * periodOfValues.size();
 
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.instrument;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.isTrue;
+
+/**
+ * Records latencies into an HdrHistogram {@link Recorder}, which any number of threads can write to without locking
+ * or allocating, and reports percentiles over a recent window.
+ * <p>
+ * Snapshots fold what's been recorded since the last snapshot into the current window, and start a new window once
+ * the current one is older than the window length. A snapshot covers the current and the previous window, so between
+ * one and two window lengths, provided snapshots are taken at least once per window.
+ */
+public class LatencyRecorder {
+
+    /**
+     * Longest latency tracked. Longer latencies are recorded as this.
+     */
+    static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(10);
+
+    private static final int SIGNIFICANT_DIGITS = 2;
+
+    private final Recorder recorder = new Recorder(HIGHEST_TRACKABLE_NANOS, SIGNIFICANT_DIGITS);
+    private final long windowMillis;
+    private Histogram interval;
+    private Histogram current = newHistogram();
+    private Histogram previous = newHistogram();
+    private final Histogram merged = newHistogram();
+    private long windowStartMillis;
+
+    /**
+     * @param windowMillis window length in milliseconds
+     * @param nowMillis    current time in milliseconds
+     */
+    public LatencyRecorder(long windowMillis, long nowMillis) {
+        isTrue(windowMillis > 0, "Required: windowMillis > 0");
+        this.windowMillis = windowMillis;
+        this.windowStartMillis = nowMillis;
+    }
+
+    /**
+     * Records a latency. Safe to call from any thread.
+     *
+     * @param nanos latency in nanoseconds
+     */
+    public void record(long nanos) {
+        recorder.recordValue(Math.min(Math.max(nanos, 0L), HIGHEST_TRACKABLE_NANOS));
+    }
+
+    /**
+     * @param nowMillis current time in milliseconds
+     * @return latency percentiles over the current and the previous window
+     */
+    public synchronized LatencySnapshot snapshot(long nowMillis) {
+        interval = recorder.getIntervalHistogram(interval);
+        current.add(interval);
+        if (nowMillis - windowStartMillis >= windowMillis) {
+            Histogram ended = current;
+            current = previous;
+            previous = ended;
+            current.reset();
+            windowStartMillis = nowMillis;
+        }
+        merged.reset();
+        merged.add(previous);
+        merged.add(current);
+        return LatencySnapshot.of(merged);
+    }
+
+    private static Histogram newHistogram() {
+        return new Histogram(HIGHEST_TRACKABLE_NANOS, SIGNIFICANT_DIGITS);
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.instrument;
+
+import lombok.Value;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Latency percentiles of a stage, in microseconds.
+ */
+@Value
+public class LatencySnapshot {
+    private static final double NANOS_PER_MICRO = 1000.0;
+
+    long count;
+    double p50;
+    double p99;
+    double p999;
+    double max;
+
+    static LatencySnapshot of(Histogram histogram) {
+        return new LatencySnapshot(
+                histogram.getTotalCount(),
+                histogram.getValueAtPercentile(50.0) / NANOS_PER_MICRO,
+                histogram.getValueAtPercentile(99.0) / NANOS_PER_MICRO,
+                histogram.getValueAtPercentile(99.9) / NANOS_PER_MICRO,
+                histogram.getMaxValue() / NANOS_PER_MICRO);
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.instrument;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.typesafe.config.Config;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+
+import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.notNull;
+
+/**
+ * Serves the latency percentiles of {@link PipelineInstruments#snapshot()} as JSON, at {@code GET /latency}.
+ */
+@Slf4j
+public class LatencySnapshotServer implements AutoCloseable {
+
+    /**
+     * Port to serve latency snapshots on. Optional: without it, no server is started.
+     */
+    private static final String CK_PORT = "instrumentation-http-port";
+
+    public static final String PATH = "/latency";
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final PipelineInstruments instruments;
+    private final HttpServer server;
+
+    /**
+     * Starts serving latency snapshots.
+     *
+     * @param instruments pipeline instruments
+     * @param port        port to listen on, or 0 for any free port
+     * @throws IOException if the server can't listen on the port
+     */
+    public LatencySnapshotServer(PipelineInstruments instruments, int port) throws IOException {
+        notNull(instruments, "instruments can't be null");
+        this.instruments = instruments;
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext(PATH, this::handle);
+        server.start();
+        log.info("Serving latency snapshots on port {}", getPort());
+    }
+
+    /**
+     * Starts a server if the configuration sets a port.
+     *
+     * @param config      app configuration
+     * @param instruments pipeline instruments
+     * @return the started server, or null if no port is configured
+     */
+    public static LatencySnapshotServer startIfEnabled(Config config, PipelineInstruments instruments) {
+        if (!config.hasPath(CK_PORT)) {
+            return null;
+        }
+        try {
+            return new LatencySnapshotServer(instruments, config.getInt(CK_PORT));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = OBJECT_MAPPER.writeValueAsBytes(instruments.snapshot());
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.instrument;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.expedia.adaptivealerting.anomdetect.detect.AnomalyLevel;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.notNull;
+
+/**
+ * Instruments the detection pipeline with latency recorders for each {@link Stage}, and with metric handles for each
+ * detector type that are resolved once, when the type is first seen, instead of looked up by name for every record.
+ * <p>
+ * The p50, p99 and p999 latencies of each stage, and of detection by detector type, are registered as gauges named
+ * {@code detector.latency.<stage>.<percentile>} and {@code detector.latency.detect.<type>.<percentile>}, so a JMX
+ * reporter on the registry exposes them. {@link #snapshot()} returns all of them at once.
+ */
+public class PipelineInstruments {
+    private static final long WINDOW_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    private static final String LATENCY_PREFIX = "detector.latency.";
+    private static final String NO_LEVEL = "NONE";
+
+    private final MetricRegistry metricRegistry;
+    private final Map<Stage, LatencyRecorder> stageLatencies = new EnumMap<>(Stage.class);
+    private final ConcurrentMap<String, DetectorInstruments> detectorInstruments = new ConcurrentHashMap<>();
+
+    /**
+     * @param metricRegistry registry for the metric handles and latency gauges
+     */
+    public PipelineInstruments(MetricRegistry metricRegistry) {
+        notNull(metricRegistry, "metricRegistry can't be null");
+        this.metricRegistry = metricRegistry;
+        for (Stage stage : Stage.values()) {
+            stageLatencies.put(stage, newLatencyRecorder(stage.getLabel()));
+        }
+    }
+
+    /**
+     * Records the latency of a stage. Safe to call from any thread.
+     *
+     * @param stage stage
+     * @param nanos latency in nanoseconds
+     */
+    public void record(Stage stage, long nanos) {
+        stageLatencies.get(stage).record(nanos);
+    }
+
+    /**
+     * @param detectorName detector type, as given by {@code Detector.getName()}
+     * @return the instruments for the detector type
+     */
+    public DetectorInstruments forDetector(String detectorName) {
+        String name = String.valueOf(detectorName);
+        // In Java 8, computeIfAbsent locks even when the key is present.
+        DetectorInstruments instruments = detectorInstruments.get(name);
+        return instruments != null ? instruments : detectorInstruments.computeIfAbsent(name, DetectorInstruments::new);
+    }
+
+    /**
+     * @return latency percentiles of each stage, followed by those of detection by detector type
+     */
+    public Map<String, LatencySnapshot> snapshot() {
+        long nowMillis = System.currentTimeMillis();
+        Map<String, LatencySnapshot> snapshots = new LinkedHashMap<>();
+        stageLatencies.forEach((stage, recorder) -> snapshots.put(stage.getLabel(), recorder.snapshot(nowMillis)));
+        new TreeMap<>(detectorInstruments).forEach((name, instruments) ->
+                snapshots.put(detectKey(name), instruments.detectLatency.snapshot(nowMillis)));
+        return snapshots;
+    }
+
+    private LatencyRecorder newLatencyRecorder(String key) {
+        LatencyRecorder recorder = new LatencyRecorder(WINDOW_MILLIS, System.currentTimeMillis());
+        registerGauge(key + ".p50", recorder, LatencySnapshot::getP50);
+        registerGauge(key + ".p99", recorder, LatencySnapshot::getP99);
+        registerGauge(key + ".p999", recorder, LatencySnapshot::getP999);
+        return recorder;
+    }
+
+    private void registerGauge(String name, LatencyRecorder recorder, ToDoubleFunction<LatencySnapshot> percentile) {
+        String fullName = LATENCY_PREFIX + name;
+        // Replace the gauges of any earlier instruments on the same registry.
+        metricRegistry.remove(fullName);
+        metricRegistry.register(fullName, (Gauge<Double>) () -> percentile.applyAsDouble(recorder.snapshot(System.currentTimeMillis())));
+    }
+
+    private static String detectKey(String detectorName) {
+        return Stage.DETECT.getLabel() + "." + detectorName;
+    }
+
+    /**
+     * Metric handles and detection latency of a detector type.
+     */
+    public final class DetectorInstruments {
+        private final Timer detectTimer;
+        private final Meter[] levelMeters;
+        private final LatencyRecorder detectLatency;
+
+        private DetectorInstruments(String detectorName) {
+            String prefix = "detector." + detectorName + ".";
+            this.detectTimer = metricRegistry.timer(prefix + "detect");
+            AnomalyLevel[] levels = AnomalyLevel.values();
+            // One meter per level, and a last one for detections without a result.
+            this.levelMeters = new Meter[levels.length + 1];
+            for (AnomalyLevel level : levels) {
+                levelMeters[level.ordinal()] = metricRegistry.meter(prefix + level.name());
+            }
+            levelMeters[levels.length] = metricRegistry.meter(prefix + NO_LEVEL);
+            this.detectLatency = newLatencyRecorder(detectKey(detectorName));
+        }
+
+        /**
+         * @param anomalyLevel anomaly level, or null for detections without a result
+         * @return meter of detections with the given level
+         */
+        public Meter levelMeter(AnomalyLevel anomalyLevel) {
+            return levelMeters[anomalyLevel == null ? levelMeters.length - 1 : anomalyLevel.ordinal()];
+        }
+
+        /**
+         * Records a detection. Safe to call from any thread.
+         *
+         * @param nanos        detection latency in nanoseconds
+         * @param anomalyLevel anomaly level, or null if detection produced no result
+         */
+        public void recordDetect(long nanos, AnomalyLevel anomalyLevel) {
+            detectTimer.update(nanos, TimeUnit.NANOSECONDS);
+            detectLatency.record(nanos);
+            record(Stage.DETECT, nanos);
+            levelMeter(anomalyLevel).mark();
+        }
+    }
+}
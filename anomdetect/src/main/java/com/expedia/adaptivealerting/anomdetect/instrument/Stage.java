@@ -0,0 +1,52 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.instrument;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Stages of processing a mapped metric, whose latencies {@link PipelineInstruments} records.
+ */
+@RequiredArgsConstructor
+public enum Stage {
+
+    /**
+     * Finding the metric's detector: a cache lookup, or on a miss loading the detector, including data initialization.
+     */
+    LOOKUP("lookup"),
+
+    /**
+     * Initializing a newly loaded detector with historical data.
+     */
+    DATA_INIT("data-init"),
+
+    /**
+     * Running the detector and its filters on the metric.
+     */
+    DETECT("detect"),
+
+    /**
+     * Sending an anomaly until the broker acknowledges it.
+     */
+    PRODUCE("produce");
+
+    /**
+     * Name used in metric names and snapshots.
+     */
+    @Getter
+    private final String label;
+}
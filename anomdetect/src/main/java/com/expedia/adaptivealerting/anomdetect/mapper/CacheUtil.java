@@ -45,15 +45,34 @@ public final class CacheUtil {
     public static String getKey(Map<String, String> tags) {
         List<String> listOfEntries = tags.entrySet()
                 .stream()
-                .map(entry -> {
-                    String encodedValue = Base64.getEncoder().encodeToString(entry.getValue().getBytes());
-                    return entry.getKey() + CACHE_KEY_DELIMITER + encodedValue;
-                })
+                .map(entry -> getKeyEntry(entry.getKey(), entry.getValue()))
                 .sorted()
                 .collect(Collectors.toList());
         return String.join(",", listOfEntries);
     }
 
+    /**
+     * Converts a single tag to the format it takes within a cache key
+     *
+     * @param key   tag key
+     * @param value tag value
+     * @return Returns a string in this format {@literal "k1->v1"}
+     */
+    public static String getKeyEntry(String key, String value) {
+        String encodedValue = Base64.getEncoder().encodeToString(value.getBytes());
+        return key + CACHE_KEY_DELIMITER + encodedValue;
+    }
+
+    /**
+     * Splits cache's key format into its tags, without decoding them
+     *
+     * @param key String {@literal "k1->v1,k2->v2,k3->v3"}
+     * @return Returns a list in this format {@literal ["k1->v1", "k2->v2", "k3->v3"]}
+     */
+    public static List<String> getKeyEntries(String key) {
+        return Arrays.asList(key.split(","));
+    }
+
     /**
      * Converts cache's key format to map
      *
@@ -19,8 +19,13 @@ package com.expedia.adaptivealerting.anomdetect.mapper;
 import com.codahale.metrics.Counter;
 import com.codahale.metrics.MetricRegistry;
 import com.expedia.adaptivealerting.anomdetect.source.DetectorSource;
+import com.expedia.adaptivealerting.anomdetect.source.ModelChangeEvent;
+import com.expedia.adaptivealerting.anomdetect.source.ModelChangeFeed;
+import com.expedia.adaptivealerting.anomdetect.source.ModelChangeListener;
 import com.expedia.adaptivealerting.anomdetect.util.AssertUtil;
 import com.expedia.metrics.MetricDefinition;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.typesafe.config.Config;
 import lombok.Getter;
 import lombok.NonNull;
@@ -34,16 +39,24 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
  * Detector mapper finds matching detectors for each incoming {@link MetricDefinition}
+ * <p>
+ * Mapping changes are polled for periodically. Given a {@link ModelChangeFeed}, they're also applied as soon as they're
+ * pushed from modelservice, and the scheduled poll is skipped while the feed is live, apart from a periodic catch-up
+ * poll for changes that failed to publish.
  */
 @Slf4j
-public class DetectorMapper {
+public class DetectorMapper implements ModelChangeListener {
     private static final int OPTIMAL_BATCH_SIZE = 80;
     private static final String CK_DETECTOR_CACHE_UPDATE_PERIOD = "detector-mapping-cache-update-period";
+    private static final String CK_DETECTOR_CACHE_MODE = "detector-mapping-cache-mode";
+    private static final String CK_LOCAL_MATCHING_ENABLED = "detector-mapping-local-matching-enabled";
     private static final String DETECTOR_MAPPER_ERRORS = "detector-mapper.exceptions";
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
 
     private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
     private AtomicLong lastElasticLookUpLatency = new AtomicLong(-1);
@@ -53,9 +66,14 @@ public class DetectorMapper {
     private DetectorSource detectorSource;
 
     private DetectorMapperCache cache;
+
+    // Optional in-process matcher. When set, cache misses are matched locally once the mappings are loaded.
+    private DetectorMappingMatcher matcher;
+
     private Counter exceptionCounter;
     private int detectorCacheUpdateTimePeriod;
     private long syncedUpTillTime = System.currentTimeMillis();
+    private volatile ModelChangeFeed modelChangeFeed;
 
     public DetectorMapper(DetectorSource detectorSource, DetectorMapperCache cache, int detectorCacheUpdateTimePeriod) {
         AssertUtil.notNull(detectorSource, "Detector source can't be null");
@@ -65,9 +83,30 @@ public class DetectorMapper {
         this.initScheduler();
     }
 
+    public DetectorMapper(DetectorSource detectorSource,
+                          DetectorMapperCache cache,
+                          DetectorMappingMatcher matcher,
+                          int detectorCacheUpdateTimePeriod) {
+        this(detectorSource, cache, detectorCacheUpdateTimePeriod);
+        AssertUtil.notNull(matcher, "matcher can't be null");
+        this.matcher = matcher;
+        loadMatcher(System.currentTimeMillis());
+    }
+
     public DetectorMapper(DetectorSource detectorSource, Config config, MetricRegistry metricRegistry) {
-        this(detectorSource, new DetectorMapperCache(metricRegistry), config.getInt(CK_DETECTOR_CACHE_UPDATE_PERIOD));
+        this(detectorSource, new DetectorMapperCache(metricRegistry, cacheMode(config)), config.getInt(CK_DETECTOR_CACHE_UPDATE_PERIOD));
         this.exceptionCounter = metricRegistry.counter(DETECTOR_MAPPER_ERRORS);
+        if (config.hasPath(CK_LOCAL_MATCHING_ENABLED) && config.getBoolean(CK_LOCAL_MATCHING_ENABLED)) {
+            this.matcher = new DetectorMappingMatcher();
+            loadMatcher(System.currentTimeMillis());
+        }
+    }
+
+    private static DetectorMapperCacheMode cacheMode(Config config) {
+        if (!config.hasPath(CK_DETECTOR_CACHE_MODE)) {
+            return DetectorMapperCacheMode.STRING;
+        }
+        return DetectorMapperCacheMode.valueOf(config.getString(CK_DETECTOR_CACHE_MODE).toUpperCase());
     }
 
     private void initScheduler() {
@@ -90,8 +129,18 @@ public class DetectorMapper {
     }
 
     public List<Detector> getDetectorsFromCache(MetricDefinition metricDefinition) {
-        String cacheKey = CacheUtil.getKey(metricDefinition.getTags().getKv());
-        return cache.get(cacheKey);
+        return cache.get(metricDefinition.getTags().getKv());
+    }
+
+    /**
+     * Looks up the cached detectors by tag set key, only asking for the tags if the cache can't use the key.
+     *
+     * @param tagSetKey the tag set key of the metric tags
+     * @param tags      supplies the metric tags
+     * @return the cached detectors
+     */
+    public List<Detector> getDetectorsFromCache(TagSetKey tagSetKey, Supplier<Map<String, String>> tags) {
+        return cache.get(tagSetKey, tags);
     }
 
     public boolean isSuccessfulDetectorMappingLookup(List<Map<String, String>> cacheMissedMetricTags) {
@@ -107,8 +156,7 @@ public class DetectorMapper {
             int i = 0;
             for (Map<String, String> tags : cacheMissedMetricTags) {
                 if (!searchIndexes.contains(i)) {
-                    String cacheKey = CacheUtil.getKey(tags);
-                    cache.put(cacheKey, Collections.emptyList());
+                    cache.put(tags, Collections.emptyList());
                 }
                 i++;
             }
@@ -118,13 +166,67 @@ public class DetectorMapper {
         return matchingDetectorMappings != null;
     }
 
+    /**
+     * Applies the changed mapping to the matcher and the cache. Detector changes are ignored.
+     *
+     * @param event model change
+     */
+    @Override
+    public void onModelChange(ModelChangeEvent event) {
+        if (event.getEntityType() != ModelChangeEvent.EntityType.MAPPING) {
+            return;
+        }
+        DetectorMapping detectorMapping;
+        try {
+            detectorMapping = OBJECT_MAPPER.treeToValue(event.getDocument(), DetectorMapping.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Can't read detector mapping from change: id=" + event.getId(), e);
+        }
+        AssertUtil.notNull(detectorMapping, "detector mapping change has no document: id=" + event.getId());
+        if (detectorMapping.getId() == null) {
+            detectorMapping.setId(event.getId());
+        }
+        if (event.getChangeType() == ModelChangeEvent.ChangeType.DELETED) {
+            detectorMapping.setEnabled(false);
+        }
+        List<DetectorMapping> detectorMappings = Collections.singletonList(detectorMapping);
+        if (matcher != null && matcher.isLoaded()) {
+            matcher.update(detectorMappings);
+        }
+        applyToCache(detectorMappings);
+    }
+
+    @Override
+    public void setModelChangeFeed(ModelChangeFeed modelChangeFeed) {
+        this.modelChangeFeed = modelChangeFeed;
+    }
+
     public void detectorMappingCacheSync(long currentTime) {
         long updateDurationInSeconds = (currentTime - syncedUpTillTime) / 1000;
         if (updateDurationInSeconds <= 0) {
             return;
         }
+        if (modelChangeFeed != null && modelChangeFeed.canSkipPoll(syncedUpTillTime, currentTime) && !needsMatcherLoad()) {
+            return;
+        }
 
         List<DetectorMapping> detectorMappings = detectorSource.findUpdatedDetectorMappings(updateDurationInSeconds);
+        if (matcher != null) {
+            if (matcher.isLoaded()) {
+                matcher.update(detectorMappings);
+            } else {
+                loadMatcher(currentTime);
+            }
+        }
+        applyToCache(detectorMappings);
+        syncedUpTillTime = currentTime;
+    }
+
+    private boolean needsMatcherLoad() {
+        return matcher != null && !matcher.isLoaded();
+    }
+
+    private synchronized void applyToCache(List<DetectorMapping> detectorMappings) {
 
         List<DetectorMapping> disabledDetectorMappings = detectorMappings.stream()
                 .filter(dt -> !dt.isEnabled())
@@ -141,13 +243,29 @@ public class DetectorMapper {
             cache.invalidateMetricsWithOldDetectorMappings(newDetectorMappings);
             log.info("Invalidating metrics for modified mappings: {}", newDetectorMappings);
         }
+    }
 
-        syncedUpTillTime = currentTime;
+    /*
+     * Loads every mapping into the matcher. There's no endpoint for all mappings, so we ask for those updated since the
+     * epoch. Until this succeeds, cache misses keep going to the detector source.
+     */
+    private void loadMatcher(long currentTime) {
+        try {
+            matcher.load(detectorSource.findUpdatedDetectorMappings(currentTime / 1000));
+        } catch (RuntimeException e) {
+            log.error("Error loading detector mappings for local matching", e);
+            if (exceptionCounter != null) {
+                exceptionCounter.inc();
+            }
+        }
     }
 
     private DetectorMatchResponse getMappingsFromElasticSearch(List<Map<String, String>> cacheMissedMetricTags) {
         DetectorMatchResponse matchingDetectorMappings = null;
         try {
+            if (matcher != null && matcher.isLoaded()) {
+                return matcher.findMatchingDetectorMappings(cacheMissedMetricTags);
+            }
             matchingDetectorMappings = detectorSource.findDetectorMappings(cacheMissedMetricTags);
         } catch (RuntimeException e) {
             log.error("Error fetching detector mappings from elastic search", e);
@@ -158,9 +276,8 @@ public class DetectorMapper {
 
     private void populateCache(Map<Integer, List<Detector>> groupedDetectorsByIndex, List<Map<String, String>> cacheMissedMetricTags) {
         groupedDetectorsByIndex.forEach((index, detectors) -> {
-            String cacheKey = CacheUtil.getKey(cacheMissedMetricTags.get(index));
             if (!detectors.isEmpty()) {
-                cache.put(cacheKey, detectors);
+                cache.put(cacheMissedMetricTags.get(index), detectors);
             }
         });
     }
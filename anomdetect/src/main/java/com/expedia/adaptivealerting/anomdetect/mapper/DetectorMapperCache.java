@@ -21,15 +21,23 @@ import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.MetricSet;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import static com.codahale.metrics.MetricRegistry.name;
@@ -53,25 +61,59 @@ import static com.codahale.metrics.MetricRegistry.name;
  *
  * has two matching detectors <em> D1(consumerID= CID_ONE, uuid= UUID_ONE), D2(consumerID= CID_TWO, uuid= UUID_TWO) </em> it will be stored in cache as <em> {@literal "k1->v1,k2->v2"} : "CID_ONE,UUID_ONE|CID_TWO,UUID_TWO" </em>
  * </pre>
- * The DetectorMapperCache can be updated using methods {@link #removeDisabledDetectorMappings(List)} and {@link #invalidateMetricsWithOldDetectorMappings(List)} }
+ * In {@link DetectorMapperCacheMode#BINARY} mode the cache instead trades space for speed: entries are keyed by
+ * {@link TagSetKey} and hold the metric's tags along with a pre-built immutable list of its detectors, so lookups
+ * neither build string keys nor parse detectors.
+ * <p>
+ * The DetectorMapperCache can be updated using methods {@link #removeDisabledDetectorMappings(List)} and {@link #invalidateMetricsWithOldDetectorMappings(List)} }.
+ * Both look up the affected entries in a {@link DetectorMapperCacheIndex} of each entry's tags and detectors, instead of
+ * scanning the whole cache.
  */
 @Slf4j
 public class DetectorMapperCache {
 
+    private final DetectorMapperCacheMode mode;
+
     private Cache<String, String> cache;
 
+    private Cache<TagSetKey, CachedDetectors> binaryCache;
+
+    // Tag and detector postings for the cache entries, used to find the entries affected by mapping changes.
+    private final DetectorMapperCacheIndex<String> index = new DetectorMapperCacheIndex<>();
+    private final DetectorMapperCacheIndex<TagSetKey> binaryIndex = new DetectorMapperCacheIndex<>();
+
     /**
      * Instantiates a new Detector mapper cache.
      *
      * @param metricRegistry Metric registry.
      */
     public DetectorMapperCache(MetricRegistry metricRegistry) {
-        this.cache = CacheBuilder.newBuilder()
-                .recordStats()
-                .expireAfterAccess(120, TimeUnit.MINUTES) // to delete mappings for stale metrics
-                .build();
-        metricRegistry.registerAll(metricsFor("cache", cache));
+        this(metricRegistry, DetectorMapperCacheMode.STRING);
+    }
 
+    /**
+     * Instantiates a new Detector mapper cache.
+     *
+     * @param metricRegistry Metric registry.
+     * @param mode           Cache entry representation.
+     */
+    public DetectorMapperCache(MetricRegistry metricRegistry, DetectorMapperCacheMode mode) {
+        this.mode = mode;
+        if (mode == DetectorMapperCacheMode.BINARY) {
+            this.binaryCache = CacheBuilder.newBuilder()
+                    .recordStats()
+                    .expireAfterAccess(120, TimeUnit.MINUTES) // to delete mappings for stale metrics
+                    .removalListener(this::unindexBinary)
+                    .build();
+            metricRegistry.registerAll(metricsFor("cache", binaryCache));
+        } else {
+            this.cache = CacheBuilder.newBuilder()
+                    .recordStats()
+                    .expireAfterAccess(120, TimeUnit.MINUTES) // to delete mappings for stale metrics
+                    .removalListener(this::unindex)
+                    .build();
+            metricRegistry.registerAll(metricsFor("cache", cache));
+        }
     }
 
     /* Cache stat metrics: https://guava.dev/releases/23.0/api/docs/com/google/common/cache/CacheStats.html
@@ -98,11 +140,57 @@ public class DetectorMapperCache {
         return () -> metrics;
     }
 
+    /**
+     * @param tags the metric tags
+     * @return the list of Detectors
+     */
+    public List<Detector> get(Map<String, String> tags) {
+        if (mode == DetectorMapperCacheMode.BINARY) {
+            CachedDetectors cached = binaryCache.getIfPresent(TagSetKey.of(tags));
+            return cached == null ? Collections.emptyList() : cached.getDetectors();
+        }
+        return get(CacheUtil.getKey(tags));
+    }
+
+    /**
+     * Looks up the detectors by a tag set key the caller already has, e.g. one computed from a serialized record. In
+     * {@link DetectorMapperCacheMode#BINARY} mode the tags aren't needed; otherwise they're used to build the string key.
+     *
+     * @param key  the tag set key of the metric tags
+     * @param tags supplies the metric tags
+     * @return the list of Detectors
+     */
+    public List<Detector> get(TagSetKey key, Supplier<Map<String, String>> tags) {
+        if (mode == DetectorMapperCacheMode.BINARY) {
+            CachedDetectors cached = binaryCache.getIfPresent(key);
+            return cached == null ? Collections.emptyList() : cached.getDetectors();
+        }
+        return get(CacheUtil.getKey(tags.get()));
+    }
+
+    /**
+     * @param tags      the metric tags
+     * @param detectors the detectors
+     */
+    public void put(Map<String, String> tags, List<Detector> detectors) {
+        if (mode == DetectorMapperCacheMode.BINARY) {
+            log.info("Updating cache with {} - {}", tags, detectors);
+            TagSetKey key = TagSetKey.of(tags);
+            binaryIndex.add(key, tagEntries(tags), detectors);
+            binaryCache.put(key, new CachedDetectors(ImmutableMap.copyOf(tags), ImmutableList.copyOf(detectors)));
+        } else {
+            put(CacheUtil.getKey(tags), detectors);
+        }
+    }
+
     /**
      * @param key the metric-key generated using {@link CacheUtil#getKey(Map)} <br>
      * @return the list of Detectors
      */
     public List<Detector> get(String key) {
+        if (mode == DetectorMapperCacheMode.BINARY) {
+            return get(CacheUtil.getTags(key));
+        }
         String detectorsString = cache.getIfPresent(key);
         if (detectorsString == null) {
             return Collections.emptyList();
@@ -116,8 +204,13 @@ public class DetectorMapperCache {
      * @param detectors the detectors
      */
     public void put(String key, List<Detector> detectors) {
+        if (mode == DetectorMapperCacheMode.BINARY) {
+            put(CacheUtil.getTags(key), detectors);
+            return;
+        }
         String detectorsString = CacheUtil.getDetectors(detectors);
         log.info("Updating cache with {} - {}", key, detectorsString);
+        index.add(key, CacheUtil.getKeyEntries(key), detectors);
         cache.put(key, detectorsString);
     }
 
@@ -133,6 +226,7 @@ public class DetectorMapperCache {
      *   <em> ({@literal "k1->v1,k2->v2"} : "CID_TWO,UUID_TWO")</em>
      *   <em> ({@literal "k3->v3,k3->v4"} : "CID_THREE,UUID_THREE|CID_FIVE,UUID_FIVE")</em>
      * </pre>
+     * Only the entries the index lists under a disabled detector are visited.
      *
      * @param disabledMappings the list of mappings
      */
@@ -141,19 +235,19 @@ public class DetectorMapperCache {
                 .map(detectorMapping -> detectorMapping.getDetector())
                 .collect(Collectors.toList());
 
-        Map<String, String> mappingsWhichNeedsAnUpdate = new HashMap<>();
-
-        this.cache.asMap().forEach((key, detectorsString) -> {
-            if (detectorsOfDisabledMappings.stream().anyMatch(detector -> detectorsString.contains(detector.getUuid().toString()))) {
-                mappingsWhichNeedsAnUpdate.put(key, detectorsString);
-            }
-        });
+        if (mode == DetectorMapperCacheMode.BINARY) {
+            removeDisabledDetectorsFromBinaryCache(detectorsOfDisabledMappings);
+            return;
+        }
 
         Map<String, String> modifiedDetectorMappings = new HashMap<>();
 
-        mappingsWhichNeedsAnUpdate.forEach((key, detectorsString) -> {
-            String updatedDetectorsString = removeDisabledDetectors(detectorsOfDisabledMappings, detectorsString);
-            modifiedDetectorMappings.put(key, updatedDetectorsString);
+        keysWithAnyDetector(index, detectorsOfDisabledMappings).forEach(key -> {
+            String detectorsString = this.cache.asMap().get(key);
+            if (detectorsString != null && detectorsOfDisabledMappings.stream()
+                    .anyMatch(detector -> detectorsString.contains(detector.getUuid().toString()))) {
+                modifiedDetectorMappings.put(key, removeDisabledDetectors(detectorsOfDisabledMappings, detectorsString));
+            }
         });
 
         log.info("removing mappings : {} from cache entries",
@@ -163,6 +257,28 @@ public class DetectorMapperCache {
         this.cache.putAll(modifiedDetectorMappings);
     }
 
+    private void removeDisabledDetectorsFromBinaryCache(List<Detector> detectorsToBeDisabled) {
+        Map<TagSetKey, CachedDetectors> modifiedDetectorMappings = new HashMap<>();
+        keysWithAnyDetector(binaryIndex, detectorsToBeDisabled).forEach(key -> {
+            CachedDetectors cached = this.binaryCache.asMap().get(key);
+            if (cached == null) {
+                return;
+            }
+            List<Detector> remaining = cached.getDetectors().stream()
+                    .filter(detector -> !detectorsToBeDisabled.contains(detector))
+                    .collect(Collectors.toList());
+            if (remaining.size() != cached.getDetectors().size()) {
+                modifiedDetectorMappings.put(key, new CachedDetectors(cached.getTags(), ImmutableList.copyOf(remaining)));
+            }
+        });
+
+        log.info("removing mappings : {} from cache entries",
+                Arrays.toString(detectorsToBeDisabled.toArray()));
+        modifiedDetectorMappings.forEach((key, cached) -> log.info("cache key: {}, updated mapping {}", cached.getTags(), cached.getDetectors()));
+
+        this.binaryCache.putAll(modifiedDetectorMappings);
+    }
+
     private String removeDisabledDetectors(List<Detector> detectorsToBeDisabled, String detectorsString) {
         List<Detector> detectorsStoredInCache = CacheUtil.buildDetectors(detectorsString);
         detectorsToBeDisabled.forEach(detectorToBeDisabled -> {
@@ -171,27 +287,39 @@ public class DetectorMapperCache {
         return CacheUtil.getDetectors(detectorsStoredInCache);
     }
 
+    private static <K> Set<K> keysWithAnyDetector(DetectorMapperCacheIndex<K> index, List<Detector> detectors) {
+        Set<K> keys = new HashSet<>();
+        detectors.forEach(detector -> keys.addAll(index.keysWithDetector(detector.getUuid())));
+        return keys;
+    }
+
     /**
-     * Removes metrics from cache which contain detectors which are now updated.
+     * Removes metrics from cache which match any of the given mapping expressions.
      * <p>
-     * This causes a cache-miss and eventually removed metrics are re-populated with new mappings.
+     * This causes a cache-miss and eventually removed metrics are re-populated with new mappings. Candidate metrics are
+     * looked up in the tag index and then checked against the full expression, so AND, OR and NOT expressions are all
+     * supported. Expressions the index can't narrow down, such as NOT, fall back to checking every cached metric.
      *
      * @param detectorMappings the new detector mappings
      */
     public void invalidateMetricsWithOldDetectorMappings(List<DetectorMapping> detectorMappings) {
-        final List<String> matchingMappings = new ArrayList<>();
-        List<Map<String, String>> listOfTagsFromExpression = findTags(detectorMappings);
-
-        //iterate over the list of cache entries and find for matches and invalidate those from cache.
-        //FIXME - This is a brute force approach with time complexity of O(n * m).
-        // But assumption is that this will work as we are doing this in memory
-        // and m (no of new mappings) will be always less.
-        this.cache.asMap().forEach((metricKey, value) -> {
-            Map<String, String> metricTags = CacheUtil.getTags(metricKey);
-            if (doMetricTagsMatchesWithTagsPresentInExpression(metricTags, listOfTagsFromExpression)) {
-                matchingMappings.add(metricKey);
+        if (mode == DetectorMapperCacheMode.BINARY) {
+            invalidateBinaryCacheEntries(detectorMappings);
+            return;
+        }
+
+        Set<String> matchingMappings = new HashSet<>();
+        for (DetectorMapping detectorMapping : detectorMappings) {
+            ExpressionTree expression = detectorMapping.getExpression();
+            Set<String> candidateKeys = index.candidateKeys(expression);
+            Collection<String> keysToCheck = candidateKeys == null ? this.cache.asMap().keySet() : candidateKeys;
+            for (String metricKey : keysToCheck) {
+                if (!matchingMappings.contains(metricKey)
+                        && ExpressionMatcher.matches(expression, CacheUtil.getTags(metricKey))) {
+                    matchingMappings.add(metricKey);
+                }
             }
-        });
+        }
         log.info("invalidating cache entries: {} for input : {}",
                 Arrays.toString(matchingMappings.toArray()),
                 Arrays.toString(detectorMappings.stream()
@@ -201,31 +329,66 @@ public class DetectorMapperCache {
         cache.invalidateAll(matchingMappings);
     }
 
-    private List<Map<String, String>> findTags(List<DetectorMapping> newDetectorMappings) {
-        return newDetectorMappings.stream()
-                .map(detectorMapping ->
-                        findTagsFromDetectorMappingExpression(detectorMapping.getExpression()))
-                .collect(Collectors.toList());
-    }
-
-    private boolean doMetricTagsMatchesWithTagsPresentInExpression(Map<String, String> metricTags,
-                                                                   List<Map<String, String>> tagsFromDetectorMappingExpression) {
-        //FIXME - we are doing an exact match here. so this will work as along as we always use AND condition
-        //in expression.
-        //we need to improve this logic to handle OR, NOT conditions as well.
-        for (Map<String, String> tags : tagsFromDetectorMappingExpression) {
-            for (Map.Entry<String, String> entry : tags.entrySet()) {
-                if (metricTags.get(entry.getKey()) == null
-                        || !metricTags.get(entry.getKey()).equals(entry.getValue())) {
-                    return false;
+    private void invalidateBinaryCacheEntries(List<DetectorMapping> detectorMappings) {
+        final Map<TagSetKey, Map<String, String>> matchingEntries = new HashMap<>();
+        for (DetectorMapping detectorMapping : detectorMappings) {
+            ExpressionTree expression = detectorMapping.getExpression();
+            Set<TagSetKey> candidateKeys = binaryIndex.candidateKeys(expression);
+            Collection<TagSetKey> keysToCheck = candidateKeys == null ? this.binaryCache.asMap().keySet() : candidateKeys;
+            for (TagSetKey key : keysToCheck) {
+                CachedDetectors cached = this.binaryCache.asMap().get(key);
+                if (cached != null && !matchingEntries.containsKey(key)
+                        && ExpressionMatcher.matches(expression, cached.getTags())) {
+                    matchingEntries.put(key, cached.getTags());
                 }
             }
         }
-        return true;
+        log.info("invalidating cache entries: {} for input : {}",
+                Arrays.toString(matchingEntries.values().toArray()),
+                Arrays.toString(detectorMappings.stream()
+                        .map(mapping -> mapping.getDetector().getUuid().toString())
+                        .toArray()));
+        binaryCache.invalidateAll(matchingEntries.keySet());
+    }
+
+    /*
+     * Drops the postings of removed entries. A replaced entry keeps its tag postings, but loses the postings of any
+     * detectors it no longer has.
+     */
+    private void unindex(RemovalNotification<String, String> notification) {
+        String key = notification.getKey();
+        List<Detector> removedDetectors = new ArrayList<>(CacheUtil.buildDetectors(notification.getValue()));
+        String current = cache.asMap().get(key);
+        if (current == null) {
+            index.remove(key, CacheUtil.getKeyEntries(key), removedDetectors);
+        } else {
+            removedDetectors.removeAll(CacheUtil.buildDetectors(current));
+            index.remove(key, Collections.emptyList(), removedDetectors);
+        }
+    }
+
+    private void unindexBinary(RemovalNotification<TagSetKey, CachedDetectors> notification) {
+        TagSetKey key = notification.getKey();
+        CachedDetectors removed = notification.getValue();
+        CachedDetectors current = binaryCache.asMap().get(key);
+        if (current == null) {
+            binaryIndex.remove(key, tagEntries(removed.getTags()), removed.getDetectors());
+        } else {
+            List<Detector> removedDetectors = new ArrayList<>(removed.getDetectors());
+            removedDetectors.removeAll(current.getDetectors());
+            binaryIndex.remove(key, Collections.emptyList(), removedDetectors);
+        }
+    }
+
+    private static List<String> tagEntries(Map<String, String> tags) {
+        return tags.entrySet().stream()
+                .map(tag -> CacheUtil.getKeyEntry(tag.getKey(), tag.getValue()))
+                .collect(Collectors.toList());
     }
 
-    private Map<String, String> findTagsFromDetectorMappingExpression(ExpressionTree expression) {
-        return expression.getOperands()
-                .stream().collect(Collectors.toMap(op -> op.getField().getKey(), op -> op.getField().getValue()));
+    @Value
+    private static class CachedDetectors {
+        Map<String, String> tags;
+        List<Detector> detectors;
     }
 }
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.mapper;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Inverted index over {@link DetectorMapperCache} entries, from each tag and each detector UUID to the cache keys that
+ * have it. Tags are indexed in their cache key form ({@link CacheUtil#getKeyEntry(String, String)}).
+ * <p>
+ * Postings are added before an entry is written and removed after it's gone, so they may briefly outlive
+ * the entries they point to. Callers must check candidates against the cache before acting on them.
+ *
+ * @param <K> cache key type
+ */
+final class DetectorMapperCacheIndex<K> {
+    private final Map<String, Set<K>> keysByTag = new ConcurrentHashMap<>();
+    private final Map<UUID, Set<K>> keysByDetector = new ConcurrentHashMap<>();
+
+    void add(K key, Collection<String> tagEntries, Collection<Detector> detectors) {
+        tagEntries.forEach(tagEntry -> addPosting(keysByTag, tagEntry, key));
+        detectors.forEach(detector -> addPosting(keysByDetector, detector.getUuid(), key));
+    }
+
+    void remove(K key, Collection<String> tagEntries, Collection<Detector> detectors) {
+        tagEntries.forEach(tagEntry -> removePosting(keysByTag, tagEntry, key));
+        detectors.forEach(detector -> removePosting(keysByDetector, detector.getUuid(), key));
+    }
+
+    Set<K> keysWithDetector(UUID detectorUuid) {
+        Set<K> keys = keysByDetector.get(detectorUuid);
+        return keys == null ? Collections.emptySet() : new HashSet<>(keys);
+    }
+
+    /**
+     * Returns the cache keys that might match the given expression, or null if the index can't narrow it down (e.g.
+     * for {@link Operator#NOT}) and every key is a candidate.
+     *
+     * @param expression detector mapping expression
+     * @return candidate keys, or null for all keys
+     */
+    Set<K> candidateKeys(ExpressionTree expression) {
+        Operator operator = expression.getOperator() == null ? Operator.AND : expression.getOperator();
+        if (operator == Operator.NOT || expression.getOperands() == null) {
+            return null;
+        }
+
+        Set<K> result = null;
+        for (Operand operand : expression.getOperands()) {
+            Set<K> operandKeys = candidateKeys(operand);
+            if (operator == Operator.OR) {
+                if (operandKeys == null) {
+                    return null;
+                }
+                result = result == null ? new HashSet<>() : result;
+                result.addAll(operandKeys);
+            } else if (operandKeys != null && (result == null || operandKeys.size() < result.size())) {
+                // Any operand of an AND bounds the candidates, so use the most selective one.
+                result = operandKeys;
+            }
+        }
+        if (result == null && operator == Operator.OR) {
+            return Collections.emptySet();
+        }
+        return result == null ? null : new HashSet<>(result);
+    }
+
+    private Set<K> candidateKeys(Operand operand) {
+        if (operand.getField() != null) {
+            Field field = operand.getField();
+            if (field.getKey() == null || field.getValue() == null) {
+                return Collections.emptySet();
+            }
+            Set<K> keys = keysByTag.get(CacheUtil.getKeyEntry(field.getKey(), field.getValue()));
+            return keys == null ? Collections.emptySet() : keys;
+        }
+        return operand.getExpression() == null ? Collections.emptySet() : candidateKeys(operand.getExpression());
+    }
+
+    private static <P, K> void addPosting(Map<P, Set<K>> postings, P posting, K key) {
+        postings.computeIfAbsent(posting, p -> ConcurrentHashMap.newKeySet()).add(key);
+    }
+
+    private static <P, K> void removePosting(Map<P, Set<K>> postings, P posting, K key) {
+        postings.computeIfPresent(posting, (p, keys) -> {
+            keys.remove(key);
+            return keys.isEmpty() ? null : keys;
+        });
+    }
+}
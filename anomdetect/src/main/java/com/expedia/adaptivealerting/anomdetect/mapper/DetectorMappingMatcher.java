@@ -0,0 +1,229 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.mapper;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.notNull;
+
+/**
+ * Matches metrics to detectors in process, as an alternative to the modelservice percolator lookup behind
+ * {@link com.expedia.adaptivealerting.anomdetect.source.DetectorSource#findDetectorMappings(List)}.
+ * <p>
+ * The matcher holds the enabled detector mappings, which it keeps current from the same updated mapping deltas that
+ * refresh the {@link DetectorMapperCache}. Each mapping expression is compiled down to its anchor tags: a set of tags at
+ * least one of which a metric must have to match. Mappings are indexed by their anchors, so matching a metric only
+ * evaluates the mappings anchored on one of its tags, plus the few that can't be anchored (e.g. {@link Operator#NOT}).
+ * <p>
+ * Mappings are kept by mapping id, since a detector may have several of them; matches are grouped by detector.
+ * <p>
+ * Updates build a new index and swap it in, so lookups never block.
+ */
+@Slf4j
+public class DetectorMappingMatcher {
+    private volatile MappingIndex index = new MappingIndex(Collections.emptyMap());
+    private volatile boolean loaded;
+
+    /**
+     * Replaces all mappings with the given ones, typically everything from
+     * {@link com.expedia.adaptivealerting.anomdetect.source.DetectorSource#findUpdatedDetectorMappings(long)} since
+     * the epoch.
+     *
+     * @param detectorMappings all detector mappings
+     */
+    public synchronized void load(List<DetectorMapping> detectorMappings) {
+        notNull(detectorMappings, "detectorMappings can't be null");
+        Map<String, DetectorMapping> mappings = new HashMap<>();
+        applyTo(mappings, detectorMappings);
+        this.index = new MappingIndex(mappings);
+        this.loaded = true;
+        log.info("Loaded {} detector mappings", mappings.size());
+    }
+
+    /**
+     * Applies updated mappings: enabled mappings are added or replaced, disabled ones are removed.
+     *
+     * @param detectorMappings updated detector mappings
+     */
+    public synchronized void update(List<DetectorMapping> detectorMappings) {
+        notNull(detectorMappings, "detectorMappings can't be null");
+        if (detectorMappings.isEmpty()) {
+            return;
+        }
+        Map<String, DetectorMapping> mappings = new HashMap<>(index.mappings);
+        applyTo(mappings, detectorMappings);
+        this.index = new MappingIndex(mappings);
+    }
+
+    /**
+     * @return whether the mappings have been loaded, so that lookups can be served locally
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    public int size() {
+        return index.mappings.size();
+    }
+
+    /**
+     * Finds the matching detectors for each of the given metrics, in the same shape as the modelservice lookup.
+     *
+     * @param tagsList list of metric tags
+     * @return the detector match response
+     */
+    public DetectorMatchResponse findMatchingDetectorMappings(List<Map<String, String>> tagsList) {
+        notNull(tagsList, "tagsList can't be null");
+        long start = System.currentTimeMillis();
+        MappingIndex index = this.index;
+        Map<Integer, List<Detector>> groupedDetectorsBySearchIndex = new HashMap<>();
+        for (int i = 0; i < tagsList.size(); i++) {
+            List<Detector> detectors = index.match(tagsList.get(i));
+            if (!detectors.isEmpty()) {
+                groupedDetectorsBySearchIndex.put(i, detectors);
+            }
+        }
+        return new DetectorMatchResponse(groupedDetectorsBySearchIndex, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * @param tags metric tags
+     * @return the detectors whose mappings match the metric
+     */
+    public List<Detector> findMatchingDetectors(Map<String, String> tags) {
+        notNull(tags, "tags can't be null");
+        return index.match(tags);
+    }
+
+    private static void applyTo(Map<String, DetectorMapping> mappings, List<DetectorMapping> detectorMappings) {
+        for (DetectorMapping mapping : detectorMappings) {
+            if (mapping.getDetector() == null || mapping.getDetector().getUuid() == null) {
+                log.warn("Ignoring detector mapping without a detector: {}", mapping);
+                continue;
+            }
+            if (mapping.getId() == null) {
+                log.warn("Ignoring detector mapping without an id: {}", mapping);
+                continue;
+            }
+            if (mapping.isEnabled() && mapping.getExpression() != null) {
+                mappings.put(mapping.getId(), mapping);
+            } else {
+                mappings.remove(mapping.getId());
+            }
+        }
+    }
+
+    /**
+     * Returns tags at least one of which a metric must have to match the expression, or null if there's no such set.
+     * AND expressions are anchored by their most selective operand, and OR expressions by the union of their operands'
+     * anchors.
+     */
+    static Set<Field> anchors(ExpressionTree expression) {
+        Operator operator = expression.getOperator() == null ? Operator.AND : expression.getOperator();
+        if (operator == Operator.NOT || expression.getOperands() == null) {
+            return null;
+        }
+
+        Set<Field> result = null;
+        for (Operand operand : expression.getOperands()) {
+            Set<Field> operandAnchors = anchors(operand);
+            if (operator == Operator.OR) {
+                if (operandAnchors == null) {
+                    return null;
+                }
+                result = result == null ? new HashSet<>() : result;
+                result.addAll(operandAnchors);
+            } else if (operandAnchors != null && (result == null || operandAnchors.size() < result.size())) {
+                result = operandAnchors;
+            }
+        }
+        if (result == null && operator == Operator.OR) {
+            return Collections.emptySet();
+        }
+        return result;
+    }
+
+    private static Set<Field> anchors(Operand operand) {
+        if (operand.getField() != null) {
+            Field field = operand.getField();
+            if (field.getKey() == null || field.getValue() == null) {
+                return Collections.emptySet();
+            }
+            return Collections.singleton(field);
+        }
+        return operand.getExpression() == null ? Collections.emptySet() : anchors(operand.getExpression());
+    }
+
+    /**
+     * Immutable index of mappings by anchor tag: tag key to tag value to mappings.
+     */
+    private static final class MappingIndex {
+        private final Map<String, DetectorMapping> mappings;
+        private final Map<String, Map<String, List<DetectorMapping>>> mappingsByAnchor = new HashMap<>();
+        private final List<DetectorMapping> unanchoredMappings = new ArrayList<>();
+
+        MappingIndex(Map<String, DetectorMapping> mappings) {
+            this.mappings = mappings;
+            for (DetectorMapping mapping : mappings.values()) {
+                Set<Field> anchors = anchors(mapping.getExpression());
+                if (anchors == null) {
+                    unanchoredMappings.add(mapping);
+                    continue;
+                }
+                // An empty anchor set means the expression can never match, so the mapping isn't indexed at all.
+                for (Field anchor : anchors) {
+                    mappingsByAnchor
+                            .computeIfAbsent(anchor.getKey(), key -> new HashMap<>())
+                            .computeIfAbsent(anchor.getValue(), value -> new ArrayList<>())
+                            .add(mapping);
+                }
+            }
+        }
+
+        List<Detector> match(Map<String, String> tags) {
+            // Mappings with several anchors may come up more than once.
+            Map<DetectorMapping, Boolean> candidates = new IdentityHashMap<>();
+            for (Map.Entry<String, String> tag : tags.entrySet()) {
+                Map<String, List<DetectorMapping>> byValue = mappingsByAnchor.get(tag.getKey());
+                List<DetectorMapping> anchored = byValue == null ? null : byValue.get(tag.getValue());
+                if (anchored != null) {
+                    anchored.forEach(mapping -> candidates.put(mapping, Boolean.TRUE));
+                }
+            }
+            unanchoredMappings.forEach(mapping -> candidates.put(mapping, Boolean.TRUE));
+
+            // A detector with several matching mappings is returned once.
+            Map<UUID, Detector> detectors = new LinkedHashMap<>();
+            for (DetectorMapping mapping : candidates.keySet()) {
+                if (ExpressionMatcher.matches(mapping.getExpression(), tags)) {
+                    detectors.put(mapping.getDetector().getUuid(), mapping.getDetector());
+                }
+            }
+            return new ArrayList<>(detectors.values());
+        }
+    }
+}
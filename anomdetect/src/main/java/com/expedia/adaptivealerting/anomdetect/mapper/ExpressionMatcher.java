@@ -0,0 +1,75 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.mapper;
+
+import lombok.experimental.UtilityClass;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Evaluates detector mapping expressions against metric tags, following the same rules as the modelservice percolator
+ * query: a field matches when the metric has the tag with exactly that value, and a missing operator means
+ * {@link Operator#AND}.
+ */
+@UtilityClass
+public class ExpressionMatcher {
+
+    /**
+     * @param expression detector mapping expression
+     * @param tags       metric tags
+     * @return whether the metric tags match the expression
+     */
+    public static boolean matches(ExpressionTree expression, Map<String, String> tags) {
+        List<Operand> operands = expression.getOperands();
+        Operator operator = expression.getOperator() == null ? Operator.AND : expression.getOperator();
+        if (operands == null) {
+            return operator == Operator.AND;
+        }
+
+        switch (operator) {
+            case OR:
+                for (Operand operand : operands) {
+                    if (matches(operand, tags)) {
+                        return true;
+                    }
+                }
+                return false;
+            case NOT:
+                for (Operand operand : operands) {
+                    if (matches(operand, tags)) {
+                        return false;
+                    }
+                }
+                return true;
+            default:
+                for (Operand operand : operands) {
+                    if (!matches(operand, tags)) {
+                        return false;
+                    }
+                }
+                return true;
+        }
+    }
+
+    private static boolean matches(Operand operand, Map<String, String> tags) {
+        if (operand.getField() != null) {
+            Field field = operand.getField();
+            return field.getValue() != null && field.getValue().equals(tags.get(field.getKey()));
+        }
+        return operand.getExpression() != null && matches(operand.getExpression(), tags);
+    }
+}
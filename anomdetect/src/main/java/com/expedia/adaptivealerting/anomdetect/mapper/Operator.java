@@ -16,5 +16,10 @@
 package com.expedia.adaptivealerting.anomdetect.mapper;
 
 public enum Operator {
-    AND, OR
+    AND, OR,
+
+    /**
+     * Matches when none of the operands match.
+     */
+    NOT
 }
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.mapper;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.Map;
+
+import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.notNull;
+
+/**
+ * Compact cache key for a metric's tag set: a 128-bit hash of the tags.
+ * <p>
+ * Each tag is hashed over the UTF-8 bytes of its key, a 0xFF separator (which never occurs in UTF-8) and its value,
+ * and the per-tag hashes are summed. The sum doesn't depend on iteration order, so unlike {@link CacheUtil#getKey(Map)}
+ * there's no need to sort, encode or concatenate the tags, and the key can be computed without allocating anything
+ * beyond the key itself. Hashing works on the encoded bytes so that the same key can be computed straight from a
+ * serialized tag map.
+ */
+@EqualsAndHashCode
+@ToString
+public final class TagSetKey {
+    private static final long BASIS_HIGH = 0xCBF29CE484222325L;
+    private static final long BASIS_LOW = 0x84222325CBF29CE4L;
+    private static final long PRIME_HIGH = 0x100000001B3L;
+    private static final long PRIME_LOW = 0x9E3779B97F4A7C15L;
+    private static final int SEPARATOR = 0xFF;
+
+    @Getter
+    private final long high;
+
+    @Getter
+    private final long low;
+
+    public TagSetKey(long high, long low) {
+        this.high = high;
+        this.low = low;
+    }
+
+    /**
+     * Builds the key for the given tags.
+     *
+     * @param tags metric tags
+     * @return tag set key
+     */
+    public static TagSetKey of(Map<String, String> tags) {
+        notNull(tags, "tags can't be null");
+        long sumHigh = 0L;
+        long sumLow = 0L;
+        for (Map.Entry<String, String> tag : tags.entrySet()) {
+            sumHigh += hashTag(tag.getKey(), tag.getValue(), BASIS_HIGH, PRIME_HIGH);
+            sumLow += hashTag(tag.getKey(), tag.getValue(), BASIS_LOW, PRIME_LOW);
+        }
+        return finish(sumHigh, sumLow, tags.size());
+    }
+
+    /**
+     * Returns a hasher that builds keys from UTF-8 encoded tags, e.g. straight from a serialized record. For valid UTF-8
+     * the key is the same as {@link #of(Map)} builds for the decoded tags.
+     *
+     * @return tag set key hasher
+     */
+    public static Hasher hasher() {
+        return new Hasher();
+    }
+
+    private static TagSetKey finish(long sumHigh, long sumLow, int numTags) {
+        return new TagSetKey(mix64(sumHigh + numTags * PRIME_LOW), mix64(sumLow ^ numTags));
+    }
+
+    private static long hashTag(String key, String value, long basis, long prime) {
+        long h = hashUtf8(key, basis, prime);
+        h = (h ^ SEPARATOR) * prime;
+        return mix64(hashUtf8(value, h, prime));
+    }
+
+    /**
+     * Hashes the UTF-8 encoding of the given string without materializing it. Unpaired surrogates hash as '?', same
+     * as {@link String#getBytes(java.nio.charset.Charset)} encodes them.
+     */
+    private static long hashUtf8(String s, long h, long prime) {
+        int len = s.length();
+        for (int i = 0; i < len; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                h = (h ^ c) * prime;
+            } else if (c < 0x800) {
+                h = (h ^ (0xC0 | (c >> 6))) * prime;
+                h = (h ^ (0x80 | (c & 0x3F))) * prime;
+            } else if (Character.isSurrogate(c)) {
+                int cp = -1;
+                if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    cp = Character.toCodePoint(c, s.charAt(++i));
+                }
+                if (cp < 0) {
+                    h = (h ^ '?') * prime;
+                } else {
+                    h = (h ^ (0xF0 | (cp >> 18))) * prime;
+                    h = (h ^ (0x80 | ((cp >> 12) & 0x3F))) * prime;
+                    h = (h ^ (0x80 | ((cp >> 6) & 0x3F))) * prime;
+                    h = (h ^ (0x80 | (cp & 0x3F))) * prime;
+                }
+            } else {
+                h = (h ^ (0xE0 | (c >> 12))) * prime;
+                h = (h ^ (0x80 | ((c >> 6) & 0x3F))) * prime;
+                h = (h ^ (0x80 | (c & 0x3F))) * prime;
+            }
+        }
+        return h;
+    }
+
+    private static long hashBytes(byte[] bytes, int offset, int length, long h, long prime) {
+        for (int i = offset; i < offset + length; i++) {
+            h = (h ^ (bytes[i] & 0xFF)) * prime;
+        }
+        return h;
+    }
+
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Incrementally builds a {@link TagSetKey} from UTF-8 encoded tags. A hasher can be reused after {@link #reset()}.
+     * Like {@link #of(Map)}, this expects distinct tag keys.
+     */
+    public static final class Hasher {
+        private long sumHigh;
+        private long sumLow;
+        private int numTags;
+
+        private Hasher() {
+        }
+
+        /**
+         * Adds a tag whose UTF-8 encoded key and value are at the given ranges of the buffer.
+         *
+         * @param bytes       buffer holding the encoded tag
+         * @param keyOffset   offset of the key
+         * @param keyLength   length of the key in bytes
+         * @param valueOffset offset of the value
+         * @param valueLength length of the value in bytes
+         * @return this hasher
+         */
+        public Hasher addTag(byte[] bytes, int keyOffset, int keyLength, int valueOffset, int valueLength) {
+            sumHigh += hashTag(bytes, keyOffset, keyLength, valueOffset, valueLength, BASIS_HIGH, PRIME_HIGH);
+            sumLow += hashTag(bytes, keyOffset, keyLength, valueOffset, valueLength, BASIS_LOW, PRIME_LOW);
+            numTags++;
+            return this;
+        }
+
+        /**
+         * @return the key for the tags added since the hasher was created or last reset
+         */
+        public TagSetKey build() {
+            return finish(sumHigh, sumLow, numTags);
+        }
+
+        public Hasher reset() {
+            this.sumHigh = 0L;
+            this.sumLow = 0L;
+            this.numTags = 0;
+            return this;
+        }
+
+        private static long hashTag(byte[] bytes, int keyOffset, int keyLength, int valueOffset, int valueLength,
+                                    long basis, long prime) {
+            long h = hashBytes(bytes, keyOffset, keyLength, basis, prime);
+            h = (h ^ SEPARATOR) * prime;
+            return mix64(hashBytes(bytes, valueOffset, valueLength, h, prime));
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.snapshot;
+
+import com.expedia.adaptivealerting.anomdetect.detect.Detector;
+import lombok.experimental.UtilityClass;
+import lombok.val;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.isTrue;
+import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.notNull;
+
+/**
+ * Binary codec for detector state snapshots.
+ * <p>
+ * A snapshot is a header (magic number, format version and detector class) followed by whatever the
+ * {@link Snapshottable} detector writes. The format version covers the state layout of every snapshottable
+ * component, and must be bumped whenever any of them changes. Snapshots in any other version are rejected, which
+ * simply means the detector warms up from scratch.
+ */
+@UtilityClass
+public class DetectorSnapshotCodec {
+    private static final int MAGIC = 0x41414453;
+    private static final int MAX_ARRAY_LENGTH = 10_000_000;
+
+    /**
+     * Current snapshot format version.
+     */
+    public static final byte FORMAT_VERSION = 1;
+
+    /**
+     * @param detector detector
+     * @return whether the detector's state can be snapshotted
+     */
+    public static boolean isSupported(Detector detector) {
+        return detector instanceof Snapshottable;
+    }
+
+    /**
+     * Snapshots the given detector's state.
+     *
+     * @param detector snapshottable detector
+     * @return snapshot
+     * @throws DetectorSnapshotException if the state can't be written
+     */
+    public static byte[] snapshot(Detector detector) {
+        notNull(detector, "detector can't be null");
+        isTrue(isSupported(detector), "detector must be snapshottable");
+        val bytes = new ByteArrayOutputStream(256);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeByte(FORMAT_VERSION);
+            out.writeUTF(detector.getClass().getName());
+            ((Snapshottable) detector).snapshot(out);
+        } catch (IOException e) {
+            throw new DetectorSnapshotException("Can't snapshot detector " + detector.getUuid(), e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Restores a snapshot into the given detector. The detector may be left partially restored if this fails.
+     *
+     * @param detector snapshottable detector
+     * @param snapshot snapshot from {@link #snapshot(Detector)}
+     * @throws DetectorSnapshotException if the snapshot can't be read or doesn't fit the detector
+     */
+    public static void restore(Detector detector, byte[] snapshot) {
+        notNull(detector, "detector can't be null");
+        notNull(snapshot, "snapshot can't be null");
+        isTrue(isSupported(detector), "detector must be snapshottable");
+        val uuid = detector.getUuid();
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(snapshot))) {
+            if (in.readInt() != MAGIC) {
+                throw new DetectorSnapshotException("Not a detector snapshot: uuid=" + uuid);
+            }
+            val version = in.readByte();
+            if (version != FORMAT_VERSION) {
+                throw new DetectorSnapshotException(String.format(
+                        "Unsupported snapshot version %d, expected %d: uuid=%s", version, FORMAT_VERSION, uuid));
+            }
+            val className = in.readUTF();
+            if (!className.equals(detector.getClass().getName())) {
+                throw new DetectorSnapshotException(String.format(
+                        "Snapshot is for a %s, not a %s: uuid=%s", className, detector.getClass().getName(), uuid));
+            }
+            ((Snapshottable) detector).restore(in);
+            if (in.available() > 0) {
+                throw new DetectorSnapshotException("Snapshot has trailing bytes: uuid=" + uuid);
+            }
+        } catch (IOException e) {
+            throw new DetectorSnapshotException("Can't restore detector " + uuid, e);
+        }
+    }
+
+    /**
+     * Writes a length-prefixed array of doubles.
+     *
+     * @param out    state output
+     * @param values values
+     * @throws IOException if the values can't be written
+     */
+    public static void writeDoubles(DataOutput out, double[] values) throws IOException {
+        out.writeInt(values.length);
+        for (double value : values) {
+            out.writeDouble(value);
+        }
+    }
+
+    /**
+     * Reads an array of doubles written by {@link #writeDoubles(DataOutput, double[])}, checking its length.
+     *
+     * @param in             state input
+     * @param expectedLength expected number of values
+     * @return values
+     * @throws IOException if the values can't be read or there aren't as many as expected
+     */
+    public static double[] readDoubles(DataInput in, int expectedLength) throws IOException {
+        checkLength(in.readInt(), expectedLength);
+        double[] values = new double[expectedLength];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readDouble();
+        }
+        return values;
+    }
+
+    /**
+     * Reads an array length, checking it's no larger than the given maximum.
+     *
+     * @param in        state input
+     * @param maxLength maximum length
+     * @return length
+     * @throws IOException if the length can't be read or is out of range
+     */
+    public static int readLength(DataInput in, int maxLength) throws IOException {
+        val length = in.readInt();
+        if (length < 0 || length > maxLength || length > MAX_ARRAY_LENGTH) {
+            throw new IOException(String.format("Length %d out of range [0, %d]", length, maxLength));
+        }
+        return length;
+    }
+
+    /**
+     * Checks that a restored length matches the one this instance was configured with.
+     *
+     * @param length         restored length
+     * @param expectedLength configured length
+     * @throws IOException if the lengths differ
+     */
+    public static void checkLength(int length, int expectedLength) throws IOException {
+        if (length != expectedLength) {
+            throw new IOException(String.format("Snapshot length %d doesn't match configured length %d", length, expectedLength));
+        }
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.snapshot;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * A detector or detector component whose learned state can be written out and later read back into an equivalent
+ * instance, so that it doesn't have to warm up again. Configuration isn't part of the state: a snapshot is restored into
+ * an instance built from the same detector document.
+ *
+ * @see DetectorSnapshotCodec
+ */
+public interface Snapshottable {
+
+    /**
+     * Writes the learned state.
+     *
+     * @param out state output
+     * @throws IOException if the state can't be written
+     */
+    void snapshot(DataOutput out) throws IOException;
+
+    /**
+     * Replaces the learned state with state written by {@link #snapshot(DataOutput)}.
+     *
+     * @param in state input
+     * @throws IOException if the state can't be read or doesn't fit this instance, e.g. because its buffer sizes have
+     *                     changed
+     */
+    void restore(DataInput in) throws IOException;
+}
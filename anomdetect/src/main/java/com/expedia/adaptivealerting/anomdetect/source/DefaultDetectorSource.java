@@ -24,10 +24,12 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
-import java.util.stream.Collectors;
 
 import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.isTrue;
 import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.notNull;
@@ -59,7 +61,9 @@ public class DefaultDetectorSource implements DetectorSource {
     @Override
     public List<DetectorMapping> findUpdatedDetectorMappings(long timePeriod) {
         isTrue(timePeriod > 0, "Required: timePeriod > 0");
-        return client.findUpdatedDetectorMappings(timePeriod);
+        List<DetectorMapping> mappings = new ArrayList<>();
+        client.forEachUpdatedDetectorMapping(timePeriod, mappings::add);
+        return mappings;
     }
 
     @Override
@@ -72,7 +76,23 @@ public class DefaultDetectorSource implements DetectorSource {
     @Override
     public DetectorContainer findDetector(UUID uuid) {
         notNull(uuid, "uuid can't be null");
-        val document = client.findDetectorDocument(uuid);
+        return buildContainer(client.findDetectorDocument(uuid));
+    }
+
+    @Override
+    public Map<UUID, DetectorContainer> findDetectors(Collection<UUID> uuids) {
+        notNull(uuids, "uuids can't be null");
+        Map<UUID, DetectorContainer> containers = new HashMap<>();
+        for (val document : client.findDetectorDocuments(uuids)) {
+            val container = buildContainer(document);
+            if (container != null) {
+                containers.put(document.getUuid(), container);
+            }
+        }
+        return containers;
+    }
+
+    private DetectorContainer buildContainer(DetectorDocument document) {
         val detector = detectorFactory.buildDetector(document);
         if (detector == null) return null;
         val filters = DetectorDocumentParserUtil.parseFilters(document);
@@ -82,11 +102,10 @@ public class DefaultDetectorSource implements DetectorSource {
     @Override
     public List<UUID> findUpdatedDetectors(long timePeriod) {
         isTrue(timePeriod > 0, "Required: timePeriod > 0");
-        return client
-                .findUpdatedDetectorDocuments(timePeriod)
-                .stream()
-                .map(document -> document.getUuid())
-                .collect(Collectors.toList());
+        // Only the UUIDs are needed, so don't hold on to the (potentially many) documents.
+        List<UUID> uuids = new ArrayList<>();
+        client.forEachUpdatedDetectorDocument(timePeriod, document -> uuids.add(document.getUuid()));
+        return uuids;
     }
 
     @Override
@@ -94,4 +113,12 @@ public class DefaultDetectorSource implements DetectorSource {
         notNull(uuid, "uuid can't be null");
         client.updatedDetectorLastUsed(uuid);
     }
+
+    @Override
+    public void updateDetectorsLastUsed(Map<UUID, Long> lastUsedTimes) {
+        notNull(lastUsedTimes, "lastUsedTimes can't be null");
+        if (!lastUsedTimes.isEmpty()) {
+            client.updateDetectorsLastUsed(lastUsedTimes);
+        }
+    }
 }
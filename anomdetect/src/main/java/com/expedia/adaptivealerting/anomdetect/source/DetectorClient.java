@@ -18,21 +18,27 @@ package com.expedia.adaptivealerting.anomdetect.source;
 import com.expedia.adaptivealerting.anomdetect.mapper.DetectorMapper;
 import com.expedia.adaptivealerting.anomdetect.mapper.DetectorMapping;
 import com.expedia.adaptivealerting.anomdetect.mapper.DetectorMatchResponse;
+import com.expedia.adaptivealerting.anomdetect.util.ConditionalResponse;
 import com.expedia.adaptivealerting.anomdetect.util.HttpClientWrapper;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
+import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
-import org.apache.http.client.fluent.Content;
 
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.isTrue;
 import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.notNull;
@@ -52,14 +58,25 @@ import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.notNull;
 @Slf4j
 public class DetectorClient {
     static final String FIND_DOCUMENT_PATH = "/api/v3/detectors/findByUuid?uuid=%s";
+    static final String FIND_DOCUMENTS_PATH = "/api/v3/detectors/findByUuids";
     static final String FIND_UPDATED_DOCUMENTS_PATH = "/api/v3/detectors/getLastUpdatedDetectors?interval=%d";
     static final String UPDATE_DETECTOR_LAST_USED_PATH = "/api/v3/detectors/updateDetectorLastUsed";
+    static final String UPDATE_DETECTORS_LAST_USED_PATH = "/api/v3/detectors/updateDetectorsLastUsed";
 
     // TODO Shouldn't these also include the /api/v2 prefix? [WLW]
     static final String FIND_MAPPINGS_BY_TAGS_PATH = "/api/detectorMappings/findMatchingByTags";
     static final String FIND_UPDATED_MAPPINGS_PATH = "/api/detectorMappings/lastUpdated?timeInSecs=%d";
     static final String FIND_MAPPINGS_BY_UUID_PATH = "/api/detectorMappings/search";
 
+    private static final int DOCUMENT_CACHE_SIZE = 10_000;
+
+    // Asks the sync endpoints for newline-delimited JSON, which they stream rather than build up in memory.
+    // Older modelservice versions can't stream, and answer with a JSON array instead.
+    private static final Map<String, String> NDJSON_HEADERS =
+            Collections.singletonMap("Accept", "application/x-ndjson, application/json;q=0.9");
+
+    private static final TypeReference<List<DetectorMapping>> DETECTOR_MAPPING_LIST_TYPE = new TypeReference<List<DetectorMapping>>() {
+    };
 
     @NonNull
     private final HttpClientWrapper httpClient;
@@ -70,8 +87,14 @@ public class DetectorClient {
     @NonNull
     private final ObjectMapper objectMapper;
 
+    // Last document found for each detector, with its ETag. Documents are never modified once read, so they're shared.
+    private final Cache<UUID, TaggedDocument> documentCache = CacheBuilder.newBuilder()
+            .maximumSize(DOCUMENT_CACHE_SIZE)
+            .build();
+
     /**
-     * Finds the detector document for the given detector UUID.
+     * Finds the detector document for the given detector UUID. The request is conditional on the ETag of the document
+     * last found for the detector, if any, and the cached document is returned without parsing if it's unchanged.
      *
      * @param uuid detector UUID
      * @return latest model for the given detector
@@ -83,30 +106,111 @@ public class DetectorClient {
         // http://modelservice/api/v2/detectors/findByUuid?uuid=%s
         // http://modelservice/api/v2/detectors/findByUuid?uuid=85f395a2-e276-7cfd-34bc-cb850ae3bc2e
         val uri = String.format(baseUri + FIND_DOCUMENT_PATH, uuid);
+        val cached = documentCache.getIfPresent(uuid);
 
-        Content content;
+        ConditionalResponse<DetectorDocument> response;
         try {
-            content = httpClient.get(uri);
+            response = httpClient.getIfNoneMatch(uri, eTagOf(cached), objectMapper.readerFor(DetectorDocument.class));
         } catch (IOException e) {
-            val message = "IOException while getting detector document " + uuid +
-                    ": httpMethod=GET" +
-                    ", uri=" + uri +
-                    ", message=" + e.getMessage();
-            throw new DetectorException(message, e);
+            documentCache.invalidate(uuid);
+            throw findDetectorDocumentException(uuid, uri, e);
         }
+        return toDetectorDocument(uuid, cached, response);
+    }
 
-        DetectorDocument document;
+    /**
+     * Async variant of {@link #findDetectorDocument(UUID)}, which doesn't tie up the calling thread while the document
+     * is fetched.
+     *
+     * @param uuid detector UUID
+     * @return future latest model for the given detector, failing with a {@link DetectorException} if there's a
+     * problem finding the detector document
+     */
+    public CompletableFuture<DetectorDocument> findDetectorDocumentAsync(UUID uuid) {
+        notNull(uuid, "uuid can't be null");
+        val uri = String.format(baseUri + FIND_DOCUMENT_PATH, uuid);
+        val cached = documentCache.getIfPresent(uuid);
+        CompletableFuture<DetectorDocument> result = new CompletableFuture<>();
+        httpClient.<DetectorDocument>getIfNoneMatchAsync(uri, eTagOf(cached), objectMapper.readerFor(DetectorDocument.class))
+                .whenComplete((response, e) -> {
+                    if (e == null) {
+                        try {
+                            result.complete(toDetectorDocument(uuid, cached, response));
+                        } catch (DetectorException de) {
+                            result.completeExceptionally(de);
+                        }
+                    } else if (e instanceof IOException) {
+                        documentCache.invalidate(uuid);
+                        result.completeExceptionally(findDetectorDocumentException(uuid, uri, (IOException) e));
+                    } else {
+                        result.completeExceptionally(e);
+                    }
+                });
+        return result;
+    }
+
+    /**
+     * Finds the detector documents for several detector UUIDs in one request. UUIDs without a detector are skipped.
+     *
+     * @param uuids detector UUIDs
+     * @return latest models for the given detectors, in no particular order
+     * @throws DetectorException if there's a problem finding the detector documents
+     */
+    public List<DetectorDocument> findDetectorDocuments(Collection<UUID> uuids) {
+        notNull(uuids, "uuids can't be null");
+        if (uuids.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        val uri = baseUri + FIND_DOCUMENTS_PATH;
+        DetectorDocument[] documents;
         try {
-            document = objectMapper.readValue(content.asBytes(), DetectorDocument.class);
+            val body = objectMapper.writeValueAsString(uuids);
+            documents = httpClient.post(uri, body, objectMapper.readerFor(DetectorDocument[].class));
         } catch (IOException e) {
-            val message = "IOException while reading detector document " + uuid;
+            val message = "IOException while getting detector documents" +
+                    ": detectors=" + uuids.size() +
+                    ", httpMethod=POST" +
+                    ", uri=" + uri;
             throw new DetectorException(message, e);
         }
 
+        if (documents == null) {
+            throw new DetectorException("Detector documents are null");
+        }
+        return Arrays.asList(documents);
+    }
+
+    private DetectorException findDetectorDocumentException(UUID uuid, String uri, IOException e) {
+        val message = "IOException while getting detector document " + uuid +
+                ": httpMethod=GET" +
+                ", uri=" + uri +
+                ", message=" + e.getMessage();
+        return new DetectorException(message, e);
+    }
+
+    private DetectorDocument toDetectorDocument(UUID uuid, TaggedDocument cached,
+                                                ConditionalResponse<DetectorDocument> response) {
+        if (response.isNotModified() && cached != null) {
+            return cached.getDocument();
+        }
+        val document = checkDetectorDocument(uuid, response.getValue());
+        if (response.getETag() == null) {
+            documentCache.invalidate(uuid);
+        } else {
+            documentCache.put(uuid, new TaggedDocument(response.getETag(), document));
+        }
+        return document;
+    }
+
+    private static String eTagOf(TaggedDocument cached) {
+        return cached == null ? null : cached.getETag();
+    }
+
+    private DetectorDocument checkDetectorDocument(UUID uuid, DetectorDocument document) {
         if (document == null) {
             throw new DetectorException("No detector document for uuid=" + uuid);
         }
-
         return document;
     }
 
@@ -118,9 +222,9 @@ public class DetectorClient {
         isTrue(timeInSecs > 0, "sinceSeconds must be strictly positive");
 
         val uri = String.format(baseUri + FIND_UPDATED_DOCUMENTS_PATH, timeInSecs);
-        Content content;
+        DetectorDocument[] documents;
         try {
-            content = httpClient.get(uri);
+            documents = httpClient.get(uri, objectMapper.readerFor(DetectorDocument[].class));
         } catch (IOException e) {
             val message = "IOException while getting last updated detectors" +
                     ": sinceSeconds=" + timeInSecs +
@@ -129,10 +233,31 @@ public class DetectorClient {
             throw new DetectorException(message, e);
         }
 
+        if (documents == null) {
+            throw new DetectorException("Updated detector documents are null");
+        }
+        return Arrays.asList(documents);
+    }
+
+    /**
+     * Streaming variant of {@link #findUpdatedDetectorDocuments(long)}, handing each document to the action as it's
+     * read rather than collecting them all first.
+     *
+     * @param timeInSecs the time period in seconds
+     * @param action     action to perform on each detector document modified in the period
+     */
+    public void forEachUpdatedDetectorDocument(long timeInSecs, Consumer<DetectorDocument> action) {
+        isTrue(timeInSecs > 0, "sinceSeconds must be strictly positive");
+        notNull(action, "action can't be null");
+
+        val uri = String.format(baseUri + FIND_UPDATED_DOCUMENTS_PATH, timeInSecs);
         try {
-            return Arrays.asList(objectMapper.readValue(content.asBytes(), DetectorDocument[].class));
+            httpClient.getEach(uri, NDJSON_HEADERS, objectMapper.readerFor(DetectorDocument.class), action);
         } catch (IOException e) {
-            val message = "IOException while reading detectors: sinceSeconds=" + timeInSecs;
+            val message = "IOException while streaming last updated detectors" +
+                    ": sinceSeconds=" + timeInSecs +
+                    ", httpMethod=GET" +
+                    ", uri=" + uri;
             throw new DetectorException(message, e);
         }
     }
@@ -157,6 +282,26 @@ public class DetectorClient {
         }
     }
 
+    /**
+     * Updates the dateLastAccessed field of several detectors in one request.
+     *
+     * @param lastUsedTimes detector UUIDs and the epoch milliseconds they were last used at
+     */
+    public void updateDetectorsLastUsed(Map<UUID, Long> lastUsedTimes) {
+        notNull(lastUsedTimes, "lastUsedTimes can't be null");
+        val uri = baseUri + UPDATE_DETECTORS_LAST_USED_PATH;
+        try {
+            val body = objectMapper.writeValueAsString(lastUsedTimes);
+            httpClient.post(uri, body);
+        } catch (IOException e) {
+            val message = "IOException while updating detectors' dateLastAccessed values for" +
+                    ": detectors=" + lastUsedTimes.size() +
+                    ", httpMethod=POST" +
+                    ", uri=" + uri;
+            throw new DetectorException(message, e);
+        }
+    }
+
     /**
      * Find matching detectors for a list of metrics, represented by a set of tags
      *
@@ -167,10 +312,9 @@ public class DetectorClient {
         isTrue(tagsList.size() > 0, "tagsList must not be empty");
 
         val uri = baseUri + FIND_MAPPINGS_BY_TAGS_PATH;
-        Content content;
         try {
             String body = objectMapper.writeValueAsString(tagsList);
-            content = httpClient.post(uri, body);
+            return httpClient.post(uri, body, objectMapper.readerFor(DetectorMatchResponse.class));
         } catch (IOException e) {
             val message = "IOException while getting matching detectors for" +
                     ": tags=" + tagsList +
@@ -178,12 +322,6 @@ public class DetectorClient {
                     ", uri=" + uri;
             throw new DetectorException(message, e);
         }
-        try {
-            return objectMapper.readValue(content.asBytes(), DetectorMatchResponse.class);
-        } catch (IOException e) {
-            val message = "IOException while reading detectorMatchResponse: tags=" + tagsList;
-            throw new DetectorException(message, e);
-        }
     }
 
 
@@ -194,12 +332,11 @@ public class DetectorClient {
      * @return the list of detectormappings that were modified in last since minutes
      */
     public List<DetectorMapping> findUpdatedDetectorMappings(long timeInSecs) {
-        Content content;
         List<DetectorMapping> result;
 
         val uri = String.format(baseUri + FIND_UPDATED_MAPPINGS_PATH, timeInSecs);
         try {
-            content = httpClient.get(uri);
+            result = httpClient.get(uri, objectMapper.readerFor(DETECTOR_MAPPING_LIST_TYPE));
         } catch (IOException e) {
             val message = "IOException while getting updated detectors mappings" +
                     ": timeInSecs=" + timeInSecs +
@@ -208,16 +345,6 @@ public class DetectorClient {
             throw new DetectorException(message, e);
         }
 
-        val typeRef = new TypeReference<List<DetectorMapping>>() {
-        };
-        try {
-            result = objectMapper.readValue(content.asBytes(), typeRef);
-        } catch (IOException e) {
-            val message = "IOException while reading updated detectors mappings" +
-                    ": timeInSecs=" + timeInSecs;
-            throw new DetectorException(message, e);
-        }
-
         if (result == null) {
             throw new DetectorException("Updated detector mappings are null");
         }
@@ -225,6 +352,28 @@ public class DetectorClient {
         return result;
     }
 
+    /**
+     * Streaming variant of {@link #findUpdatedDetectorMappings(long)}, handing each mapping to the action as it's read
+     * rather than collecting them all first.
+     *
+     * @param timeInSecs the time period in seconds
+     * @param action     action to perform on each detector mapping modified in the period
+     */
+    public void forEachUpdatedDetectorMapping(long timeInSecs, Consumer<DetectorMapping> action) {
+        notNull(action, "action can't be null");
+
+        val uri = String.format(baseUri + FIND_UPDATED_MAPPINGS_PATH, timeInSecs);
+        try {
+            httpClient.getEach(uri, NDJSON_HEADERS, objectMapper.readerFor(DetectorMapping.class), action);
+        } catch (IOException e) {
+            val message = "IOException while streaming updated detectors mappings" +
+                    ": timeInSecs=" + timeInSecs +
+                    ", httpMethod=GET" +
+                    ", uri=" + uri;
+            throw new DetectorException(message, e);
+        }
+    }
+
     /**
      * Finds a detector mapping for the given detector UUID
      *
@@ -232,14 +381,13 @@ public class DetectorClient {
      * @return Detector mapping
      */
     public DetectorMapping findDetectorMappingByUuid(UUID uuid) {
-        Content content;
         List<DetectorMapping> result;
 
         val uri = String.format(baseUri + FIND_MAPPINGS_BY_UUID_PATH);
         val bodyMap = Collections.singletonMap("detectorUuid", uuid);
         try {
             val body = objectMapper.writeValueAsString(bodyMap);
-            content = httpClient.post(uri, body);
+            result = httpClient.post(uri, body, objectMapper.readerFor(DETECTOR_MAPPING_LIST_TYPE));
         } catch (IOException e) {
             val message = "IOException while getting detectors mappings for" +
                     ": uuid=" + uuid +
@@ -247,15 +395,6 @@ public class DetectorClient {
                     ", uri=" + uri;
             throw new DetectorException(message, e);
         }
-        val typeRef = new TypeReference<List<DetectorMapping>>() {
-        };
-        try {
-            result = objectMapper.readValue(content.asBytes(), typeRef);
-        } catch (IOException e) {
-            val message = "IOException while reading detectors mappings for" +
-                    ": uuid=" + uuid;
-            throw new DetectorException(message, e);
-        }
 
         if (result == null || result.isEmpty()) {
             throw new DetectorException("No detector mappings for" +
@@ -264,4 +403,9 @@ public class DetectorClient {
         return result.get(0);
     }
 
+    @Value
+    private static class TaggedDocument {
+        String eTag;
+        DetectorDocument document;
+    }
 }
@@ -21,6 +21,7 @@ import com.expedia.adaptivealerting.anomdetect.mapper.DetectorMapper;
 import com.expedia.adaptivealerting.anomdetect.mapper.DetectorMapping;
 import com.expedia.adaptivealerting.anomdetect.mapper.DetectorMatchResponse;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -76,6 +77,16 @@ public interface DetectorSource {
      */
     DetectorContainer findDetector(UUID uuid);
 
+    /**
+     * Finds several detectors at once, e.g. to preload them before their metrics arrive. UUIDs without a detector are
+     * left out.
+     *
+     * @param uuids Detector UUIDs.
+     * @return The associated detectors, by UUID.
+     * @throws DetectorException if there's a problem while trying to find the detectors
+     */
+    Map<UUID, DetectorContainer> findDetectors(Collection<UUID> uuids);
+
     /**
      * Finds the list of detector UUIDs updated in last {@code timePeriod} seconds. This allows the Detector Manager to
      * keep current with new and updated detectors.
@@ -92,4 +103,12 @@ public interface DetectorSource {
      * @param uuid Detector UUID.
      */
     void updatedDetectorLastUsed(UUID uuid);
+
+    /**
+     * Updates several detectors' dateLastAccessed field at once.
+     *
+     * @param lastUsedTimes Detector UUIDs and the epoch milliseconds they were last used at.
+     * @throws DetectorException if there's a problem updating the detectors
+     */
+    void updateDetectorsLastUsed(Map<UUID, Long> lastUsedTimes);
 }
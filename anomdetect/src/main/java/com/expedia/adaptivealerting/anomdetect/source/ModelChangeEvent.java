@@ -0,0 +1,69 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.source;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+/**
+ * Change to a detector or detector mapping, as published by modelservice to the model change topic.
+ * <p>
+ * The document is the detector or mapping as of the change, in the same shape modelservice serves it. Deleted mappings
+ * carry their last document, marked disabled, so that they can be removed the same way as disabled ones. Deleted
+ * detectors carry no document.
+ */
+@Data
+@Accessors(chain = true)
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ModelChangeEvent {
+
+    public enum EntityType {
+        DETECTOR,
+        MAPPING
+    }
+
+    public enum ChangeType {
+        CREATED,
+        UPDATED,
+        DISABLED,
+        DELETED
+    }
+
+    private EntityType entityType;
+    private ChangeType changeType;
+
+    /**
+     * Detector UUID or mapping ID.
+     */
+    private String id;
+
+    private long timestamp;
+    private JsonNode document;
+
+    /**
+     * Returns the record key for a change to the given entity. Changes to the same entity share a key, so that they
+     * stay in order and a compacted topic keeps the latest.
+     *
+     * @param entityType entity type
+     * @param id         detector UUID or mapping ID
+     * @return the record key
+     */
+    public static String keyOf(EntityType entityType, String id) {
+        return entityType.name().toLowerCase() + ":" + id;
+    }
+}
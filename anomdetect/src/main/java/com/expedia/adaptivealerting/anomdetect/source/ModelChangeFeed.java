@@ -0,0 +1,66 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.source;
+
+/**
+ * Feed of detector and mapping changes pushed from modelservice.
+ * <p>
+ * Publishing is best-effort, so a live feed can still miss a change. Consumers keep polling every
+ * {@link #getCatchUpPeriodMillis()} while the feed is live, to pick up changes that failed to publish.
+ */
+public interface ModelChangeFeed {
+
+    long DEFAULT_CATCH_UP_PERIOD_MILLIS = 60 * 60 * 1000L;
+
+    /**
+     * Returns the time since which the feed has been continuously live, i.e. delivering every change as it's published.
+     * Changes made before then, or while the feed isn't live, must still be polled for.
+     *
+     * @return epoch millis since which the feed has been live, or -1 if it isn't live
+     */
+    long getLiveSince();
+
+    /**
+     * Returns whether the feed has been live since the given time, so that there's no need to poll for changes made
+     * after it.
+     *
+     * @param timeMillis epoch millis
+     * @return whether the feed has been live since the given time
+     */
+    default boolean isLiveSince(long timeMillis) {
+        long liveSince = getLiveSince();
+        return liveSince >= 0 && liveSince <= timeMillis;
+    }
+
+    /**
+     * @return how long consumers may go without polling while the feed is live
+     */
+    default long getCatchUpPeriodMillis() {
+        return DEFAULT_CATCH_UP_PERIOD_MILLIS;
+    }
+
+    /**
+     * Returns whether a consumer can skip its scheduled poll: the feed has been live since the last poll, and the last
+     * poll was within the catch-up period. The next poll must cover everything since the last one.
+     *
+     * @param lastPollTime epoch millis up till which changes were last polled for
+     * @param currentTime  current epoch millis
+     * @return whether the poll can be skipped
+     */
+    default boolean canSkipPoll(long lastPollTime, long currentTime) {
+        return isLiveSince(lastPollTime) && currentTime - lastPollTime < getCatchUpPeriodMillis();
+    }
+}
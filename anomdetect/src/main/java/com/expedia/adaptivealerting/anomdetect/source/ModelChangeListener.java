@@ -0,0 +1,38 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.source;
+
+/**
+ * Receives detector and mapping changes pushed from modelservice, and polls for them only when the feed delivering them
+ * isn't live.
+ */
+public interface ModelChangeListener {
+
+    /**
+     * Applies a change. Called from the feed's thread.
+     *
+     * @param event model change
+     */
+    void onModelChange(ModelChangeEvent event);
+
+    /**
+     * Sets the feed delivering changes to this listener. While the feed is live, scheduled polls for changes are
+     * skipped.
+     *
+     * @param feed model change feed
+     */
+    void setModelChangeFeed(ModelChangeFeed feed);
+}
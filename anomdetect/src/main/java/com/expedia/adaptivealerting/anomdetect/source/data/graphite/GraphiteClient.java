@@ -21,12 +21,13 @@ import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
-import org.apache.http.client.fluent.Content;
 
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.notNull;
 
@@ -42,6 +43,10 @@ public class GraphiteClient {
 
     public static final String FETCH_METRICS_PATH = "/render?from=%d&until=%d&maxDataPoints=%d&format=json&target=%s";
 
+    //FIXME x-org-id is a mandatory header for metric tank.
+    // In future, we would like to make it configurable as the only difference between graphite client and metric tank client is x-org-id header.
+    private static final Map<String, String> HEADERS = Collections.singletonMap("x-org-id", "1");
+
     @NonNull
     private final String baseUri;
 
@@ -61,7 +66,43 @@ public class GraphiteClient {
      * @return time series for the specified metric
      */
     public List<GraphiteResult> getData(long from, long until, int intervalLength, String target) {
+        val uri = buildUri(from, until, intervalLength, target);
+        GraphiteResult[] results;
+        try {
+            results = httpClient.get(uri, HEADERS, objectMapper.readerFor(GraphiteResult[].class));
+        } catch (IOException e) {
+            throw getDataException(target, uri, e);
+        }
+        return toList(results);
+    }
+
+    /**
+     * Async variant of {@link #getData(long, long, int, String)}, so that several queries can be in flight at once.
+     *
+     * @param from           earliest time (in epoch seconds)
+     * @param until          latest time (in epoch seconds)
+     * @param intervalLength number of seconds per bin of data - used to calculate the maximum data points we expect to retrieve
+     * @param target         metric name or tag with an optional graphite function
+     * @return future time series for the specified metric, failing with a {@link GraphiteClientException} if the query
+     * fails
+     */
+    public CompletableFuture<List<GraphiteResult>> getDataAsync(long from, long until, int intervalLength, String target) {
+        val uri = buildUri(from, until, intervalLength, target);
+        CompletableFuture<List<GraphiteResult>> result = new CompletableFuture<>();
+        httpClient.<GraphiteResult[]>getAsync(uri, HEADERS, objectMapper.readerFor(GraphiteResult[].class))
+                .whenComplete((results, e) -> {
+                    if (e == null) {
+                        result.complete(toList(results));
+                    } else if (e instanceof IOException) {
+                        result.completeExceptionally(getDataException(target, uri, (IOException) e));
+                    } else {
+                        result.completeExceptionally(e);
+                    }
+                });
+        return result;
+    }
 
+    private String buildUri(long from, long until, int intervalLength, String target) {
         notNull(from, "from can't be null");
         notNull(until, "until can't be null");
         notNull(target, "target can't be null");
@@ -70,28 +111,19 @@ public class GraphiteClient {
         val maxDataPoints = calculateMaxDataPointsPerDay(from, until, intervalLength);
         val uri = String.format(baseUri + FETCH_METRICS_PATH, from, until, maxDataPoints, target);
         log.debug("Sending query to Graphite target: {}", uri);
+        return uri;
+    }
 
-        //FIXME x-org-id is a mandatory header for metric tank.
-        // In future, we would like to make it configurable as the only difference between graphite client and metric tank client is x-org-id header.
-        val headers = Collections.singletonMap("x-org-id", "1");
-        Content content;
-        try {
-            content = httpClient.get(uri, headers);
-        } catch (IOException e) {
-            val message = String.format("Encountered IOException while querying Metrictank target '%s': httpMethod=GET, uri=%s, message=%s",
-                    target,
-                    uri,
-                    e.getMessage());
-            throw new GraphiteClientException(message, e);
-        }
+    private GraphiteClientException getDataException(String target, String uri, IOException e) {
+        val message = String.format("Encountered IOException while querying Metrictank target '%s': httpMethod=GET, uri=%s, message=%s",
+                target,
+                uri,
+                e.getMessage());
+        return new GraphiteClientException(message, e);
+    }
 
-        List<GraphiteResult> results;
-        try {
-            results = Arrays.asList(objectMapper.readValue(content.asBytes(), GraphiteResult[].class));
-        } catch (IOException e) {
-            throw new GraphiteClientException(String.format("IOException while parsing response from Metrictank target: %s", target), e);
-        }
-        return results;
+    private List<GraphiteResult> toList(GraphiteResult[] results) {
+        return results == null ? Collections.emptyList() : Arrays.asList(results);
     }
 
     private long calculateMaxDataPointsPerDay(long from, long until, int intervalLength) {
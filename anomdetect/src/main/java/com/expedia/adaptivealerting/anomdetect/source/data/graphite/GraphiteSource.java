@@ -23,8 +23,12 @@ import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import static com.expedia.adaptivealerting.anomdetect.util.DateUtil.epochSecondToInstant;
 import static com.expedia.adaptivealerting.anomdetect.util.DateUtil.epochSecondToString;
@@ -35,6 +39,11 @@ public class GraphiteSource implements DataSource {
 
     public static final Double MISSING_VALUE = Double.NEGATIVE_INFINITY;
 
+    /**
+     * Maximum number of days queried from Graphite at once.
+     */
+    static final int MAX_DAYS_IN_FLIGHT = 4;
+
     /**
      * Client to load metric data from graphite.
      */
@@ -51,8 +60,22 @@ public class GraphiteSource implements DataSource {
         long earliestTimeSnappedToInterval = epochTimeSnappedToSeconds(earliestTime, intervalLength);
         long latestTimeSnappedToInterval = epochTimeSnappedToSeconds(latestTime, intervalLength);
 
-        for (long i = earliestTimeSnappedToInterval; i < latestTimeSnappedToInterval; i += TimeConstantsUtil.SECONDS_PER_DAY) {
-            List<GraphiteResult> graphiteResults = getOneDayDataFromGraphite(i, intervalLength, metric);
+        // Query a few days ahead at a time, and assemble the results in order. If a day fails, the days in flight are
+        // cancelled and the rest aren't queried.
+        Deque<CompletableFuture<List<GraphiteResult>>> oneDayResults = new ArrayDeque<>();
+        long nextDay = earliestTimeSnappedToInterval;
+        while (nextDay < latestTimeSnappedToInterval || !oneDayResults.isEmpty()) {
+            while (nextDay < latestTimeSnappedToInterval && oneDayResults.size() < MAX_DAYS_IN_FLIGHT) {
+                oneDayResults.addLast(getOneDayDataFromGraphite(nextDay, intervalLength, metric));
+                nextDay += TimeConstantsUtil.SECONDS_PER_DAY;
+            }
+            List<GraphiteResult> graphiteResults;
+            try {
+                graphiteResults = join(oneDayResults.removeFirst());
+            } catch (RuntimeException e) {
+                oneDayResults.forEach(oneDayResult -> oneDayResult.cancel(true));
+                throw e;
+            }
 
             if (graphiteResults.size() > 0) {
                 String[][] dataPoints = graphiteResults.get(0).getDatapoints();
@@ -70,14 +93,25 @@ public class GraphiteSource implements DataSource {
         return results;
     }
 
-    private List<GraphiteResult> getOneDayDataFromGraphite(long from, int intervalLength, String metric) {
+    private CompletableFuture<List<GraphiteResult>> getOneDayDataFromGraphite(long from, int intervalLength, String metric) {
         // TODO: Ensure until is never greater than current metric's timestamp
         long until = from + TimeConstantsUtil.SECONDS_PER_DAY;
         // We subtract 1 second from FROM time to get complete data for the first bin from Graphite. Graphite for some reason gives incomplete data for first bin if we don't do this.
         long fromMinusOneSecond = from - 1;
         log.debug("Querying Graphite with: from={} ({}), until={} ({}), metric='{}'",
                 fromMinusOneSecond, epochSecondToInstant(fromMinusOneSecond), until, epochSecondToInstant(until), metric);
-        return graphiteClient.getData(fromMinusOneSecond, until, intervalLength, metric);
+        return graphiteClient.getDataAsync(fromMinusOneSecond, until, intervalLength, metric);
+    }
+
+    private List<GraphiteResult> join(CompletableFuture<List<GraphiteResult>> oneDayResult) {
+        try {
+            return oneDayResult.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
     }
 
     private long epochTimeSnappedToSeconds(long time, int seconds) {
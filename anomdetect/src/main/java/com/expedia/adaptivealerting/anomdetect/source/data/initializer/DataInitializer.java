@@ -42,6 +42,7 @@ import java.util.Map;
 public class DataInitializer {
 
     public static final String BASE_URI = "graphite-base-uri";
+    public static final String GRAPHITE_HTTP_CLIENT = "graphite-http-client";
     public static final String DATA_RETRIEVAL_TAG_KEY = "graphite-data-retrieval-key";
     public static final String THROTTLE_GATE_LIKELIHOOD = "throttle-gate-likelihood";
     //FIXME WE don't want to hardcode graphite function here. Ideally this should be part of graphite client.
@@ -72,6 +73,17 @@ public class DataInitializer {
         }
     }
 
+    /**
+     * Returns whether the detector needs historical data from a metric before it's used, so that it can't be
+     * initialized ahead of its first metric.
+     *
+     * @param detector detector
+     * @return whether {@link #initializeDetector(MappedMetricData, Detector, DetectorMapping)} initializes the detector
+     */
+    public boolean needsInitialization(Detector detector) {
+        return isSeasonalNaiveDetector(detector);
+    }
+
     private boolean isSeasonalNaiveDetector(Detector detector) {
         return detector instanceof ForecastingDetector && "seasonalnaive".equals(detector.getName());
     }
@@ -104,6 +116,25 @@ public class DataInitializer {
     }
 
     private void populateForecastingDetectorWithHistoricalData(ForecastingDetector forecastingDetector, List<DataSourceResult> data, MetricDefinition metricDefinition) {
+        val size = data.size();
+        val values = new double[size];
+        val epochSeconds = new long[size];
+        for (int i = 0; i < size; i++) {
+            val dataSourceResult = data.get(i);
+            values[i] = dataSourceResult.getDataPoint();
+            epochSeconds[i] = dataSourceResult.getEpochSecond();
+        }
+        try {
+            forecastingDetector.getPointForecaster().forecast(values, epochSeconds, size, new double[size], new boolean[size]);
+        } catch (MetricDeliveryDuplicateException | MetricDeliveryTimeException e) {
+            // The forecaster rejected a point without updating its state, so replaying point by point from the start
+            // skips the points it has already seen and carries on past the rejected one.
+            log.warn("Encountered {} during batch history replay. Replaying point by point. Details: {}", e.getClass().getSimpleName(), e.getMessage());
+            replayHistoricalData(forecastingDetector, data, metricDefinition);
+        }
+    }
+
+    private void replayHistoricalData(ForecastingDetector forecastingDetector, List<DataSourceResult> data, MetricDefinition metricDefinition) {
         for (DataSourceResult dataSourceResult : data) {
             val metricData = dataSourceResultToMetricData(dataSourceResult, metricDefinition);
             try {
@@ -19,12 +19,14 @@ import com.expedia.adaptivealerting.anomdetect.source.data.graphite.GraphiteClie
 import com.expedia.adaptivealerting.anomdetect.source.data.graphite.GraphiteSource;
 import com.expedia.adaptivealerting.anomdetect.source.data.initializer.throttlegate.RandomThrottleGate;
 import com.expedia.adaptivealerting.anomdetect.source.data.initializer.throttlegate.ThrottleGate;
+import com.expedia.adaptivealerting.anomdetect.util.HttpClientConfig;
 import com.expedia.adaptivealerting.anomdetect.util.HttpClientWrapper;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.typesafe.config.Config;
 import lombok.val;
 
 import static com.expedia.adaptivealerting.anomdetect.source.data.initializer.DataInitializer.BASE_URI;
+import static com.expedia.adaptivealerting.anomdetect.source.data.initializer.DataInitializer.GRAPHITE_HTTP_CLIENT;
 import static com.expedia.adaptivealerting.anomdetect.source.data.initializer.DataInitializer.THROTTLE_GATE_LIKELIHOOD;
 
 public class DataInitializerFactory {
@@ -32,7 +34,7 @@ public class DataInitializerFactory {
     public static DataInitializer buildDataInitializer(Config config) {
         val throttleGate = tryCreateThrottleGate(config);
         val baseUri = config.getString(BASE_URI);
-        val graphiteClient = new GraphiteClient(baseUri, new HttpClientWrapper(), new ObjectMapper());
+        val graphiteClient = new GraphiteClient(baseUri, new HttpClientWrapper(HttpClientConfig.from(config, GRAPHITE_HTTP_CLIENT)), new ObjectMapper());
         val dataSource = new GraphiteSource(graphiteClient);
         return new DataInitializer(config, throttleGate, dataSource);
     }
@@ -22,6 +22,7 @@ import java.util.concurrent.ThreadLocalRandom;
 
 @UtilityClass
 public class ArrayUtil {
+    private static final long SPLITMIX_GAMMA = 0x9E3779B97F4A7C15L;
 
     /**
      * Shuffles the given array in-place, using the Durstenfeld version of the Fisher-Yates shuffle. Implemented this
@@ -46,4 +47,40 @@ public class ArrayUtil {
             arr[i] = elemToSwap;
         }
     }
+
+    /**
+     * Shuffles the given array in-place like {@link #shuffle(double[])}, but draws from a SplitMix64 sequence started
+     * at the given seed. The same seed always produces the same permutation, and no generator object is allocated.
+     *
+     * @param arr  array to shuffle
+     * @param seed random seed
+     */
+    public static void shuffle(double[] arr, long seed) {
+        long state = seed;
+        for (int i = arr.length - 1; i > 0; i--) {
+            state += SPLITMIX_GAMMA;
+            val index = (int) (((mix64(state) >>> 32) * (i + 1)) >>> 32);
+            val elemToSwap = arr[index];
+            arr[index] = arr[i];
+            arr[i] = elemToSwap;
+        }
+    }
+
+    /**
+     * Derives a well-mixed seed for the given stream index, so per-task generators started from the same base seed
+     * don't overlap.
+     *
+     * @param seed  base seed
+     * @param index stream index
+     * @return seed for the given stream
+     */
+    public static long splitSeed(long seed, long index) {
+        return mix64(seed + (index + 1) * SPLITMIX_GAMMA);
+    }
+
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
 }
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.util;
+
+import lombok.Value;
+
+/**
+ * Response to a conditional GET. A response that's not modified has no value: the caller still has it.
+ *
+ * @param <T> response type
+ */
+@Value
+public class ConditionalResponse<T> {
+
+    /**
+     * Whether the server answered 304 Not Modified.
+     */
+    boolean notModified;
+
+    /**
+     * Parsed response, or null if not modified.
+     */
+    T value;
+
+    /**
+     * The response's ETag, or null if it didn't have one.
+     */
+    String eTag;
+}
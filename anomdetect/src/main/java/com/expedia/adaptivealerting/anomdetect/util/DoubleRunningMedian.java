@@ -0,0 +1,138 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.util;
+
+import java.util.Arrays;
+
+import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.isTrue;
+
+/**
+ * Calculates a running median over primitive doubles. Unlike {@link RunningMedian} this doesn't box values, and it can
+ * be cleared and reused without allocating, which makes it suitable for tight loops such as EDM-X breakout estimation.
+ */
+public final class DoubleRunningMedian {
+    private static final int DEFAULT_CAPACITY = 16;
+
+    // The lower half is a max-heap. We store it negated so both halves can share the min-heap code below.
+    private double[] lowerHalf;
+    private double[] upperHalf;
+    private int lowerSize;
+    private int upperSize;
+
+    public DoubleRunningMedian() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity Expected number of values. The heaps grow past this if needed.
+     */
+    public DoubleRunningMedian(int capacity) {
+        isTrue(capacity > 0, "Required: capacity > 0");
+        int halfCapacity = capacity / 2 + 1;
+        this.lowerHalf = new double[halfCapacity];
+        this.upperHalf = new double[halfCapacity];
+    }
+
+    public void add(double value) {
+
+        // Add the value to one or the other heap
+        if (upperSize == 0 || value <= upperHalf[0]) {
+            lowerHalf = push(lowerHalf, lowerSize, -value);
+            lowerSize++;
+        } else {
+            upperHalf = push(upperHalf, upperSize, value);
+            upperSize++;
+        }
+
+        // If either half gets too big, move an element to the other half
+        if (lowerSize > upperSize + 1) {
+            double moved = -pop(lowerHalf, lowerSize);
+            lowerSize--;
+            upperHalf = push(upperHalf, upperSize, moved);
+            upperSize++;
+        } else if (upperSize > lowerSize + 1) {
+            double moved = pop(upperHalf, upperSize);
+            upperSize--;
+            lowerHalf = push(lowerHalf, lowerSize, -moved);
+            lowerSize++;
+        }
+    }
+
+    public double getMedian() {
+        if (size() == 0) {
+            throw new IllegalStateException("Add values before getting the median");
+        }
+
+        if (upperSize > lowerSize) {
+            return upperHalf[0];
+        } else if (lowerSize > upperSize) {
+            return -lowerHalf[0];
+        } else {
+            return 0.5 * (-lowerHalf[0] + upperHalf[0]);
+        }
+    }
+
+    public int size() {
+        return lowerSize + upperSize;
+    }
+
+    /**
+     * Removes all values, keeping the allocated capacity for reuse.
+     */
+    public void clear() {
+        this.lowerSize = 0;
+        this.upperSize = 0;
+    }
+
+    private static double[] push(double[] heap, int size, double value) {
+        if (size == heap.length) {
+            heap = Arrays.copyOf(heap, 2 * size);
+        }
+        int i = size;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heap[parent] <= value) {
+                break;
+            }
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = value;
+        return heap;
+    }
+
+    private static double pop(double[] heap, int size) {
+        double root = heap[0];
+        double last = heap[size - 1];
+        int newSize = size - 1;
+        int i = 0;
+        int half = newSize >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            int right = child + 1;
+            if (right < newSize && heap[right] < heap[child]) {
+                child = right;
+            }
+            if (last <= heap[child]) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = last;
+        return root;
+    }
+}
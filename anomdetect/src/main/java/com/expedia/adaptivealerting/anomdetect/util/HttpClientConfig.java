@@ -0,0 +1,146 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.util;
+
+import com.typesafe.config.Config;
+import lombok.Getter;
+import lombok.ToString;
+
+import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.isTrue;
+import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.notNull;
+
+/**
+ * Connection pool, timeout and async settings for {@link HttpClientWrapper}. All settings are optional.
+ */
+@Getter
+@ToString
+public class HttpClientConfig {
+
+    /**
+     * Maximum number of pooled connections across all routes.
+     */
+    private static final String CK_MAX_CONNECTIONS = "max-connections";
+
+    /**
+     * Maximum number of pooled connections to any one host.
+     */
+    private static final String CK_MAX_CONNECTIONS_PER_ROUTE = "max-connections-per-route";
+
+    /**
+     * Maximum time in milliseconds to establish a connection.
+     */
+    private static final String CK_CONNECT_TIMEOUT_MS = "connect-timeout-ms";
+
+    /**
+     * Maximum time in milliseconds to wait for data once connected.
+     */
+    private static final String CK_SOCKET_TIMEOUT_MS = "socket-timeout-ms";
+
+    /**
+     * Maximum time in milliseconds to wait for a connection from the pool.
+     */
+    private static final String CK_CONNECTION_REQUEST_TIMEOUT_MS = "connection-request-timeout-ms";
+
+    /**
+     * Time in milliseconds after which idle pooled connections are closed.
+     */
+    private static final String CK_IDLE_CONNECTION_TIMEOUT_MS = "idle-connection-timeout-ms";
+
+    /**
+     * Number of threads running async calls.
+     */
+    private static final String CK_ASYNC_THREADS = "async-threads";
+
+    private static final int DEFAULT_MAX_CONNECTIONS = 200;
+    private static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 50;
+    private static final int DEFAULT_CONNECT_TIMEOUT_MS = 5000;
+    private static final int DEFAULT_SOCKET_TIMEOUT_MS = 30000;
+    private static final int DEFAULT_CONNECTION_REQUEST_TIMEOUT_MS = 5000;
+    private static final long DEFAULT_IDLE_CONNECTION_TIMEOUT_MS = 60000;
+    private static final int DEFAULT_ASYNC_THREADS = 4;
+
+    private final int maxConnections;
+    private final int maxConnectionsPerRoute;
+    private final int connectTimeoutMs;
+    private final int socketTimeoutMs;
+    private final int connectionRequestTimeoutMs;
+    private final long idleConnectionTimeoutMs;
+    private final int asyncThreads;
+
+    public HttpClientConfig() {
+        this(DEFAULT_MAX_CONNECTIONS,
+                DEFAULT_MAX_CONNECTIONS_PER_ROUTE,
+                DEFAULT_CONNECT_TIMEOUT_MS,
+                DEFAULT_SOCKET_TIMEOUT_MS,
+                DEFAULT_CONNECTION_REQUEST_TIMEOUT_MS,
+                DEFAULT_IDLE_CONNECTION_TIMEOUT_MS,
+                DEFAULT_ASYNC_THREADS);
+    }
+
+    public HttpClientConfig(int maxConnections,
+                            int maxConnectionsPerRoute,
+                            int connectTimeoutMs,
+                            int socketTimeoutMs,
+                            int connectionRequestTimeoutMs,
+                            long idleConnectionTimeoutMs,
+                            int asyncThreads) {
+        isTrue(maxConnections > 0, "Required: maxConnections > 0");
+        isTrue(maxConnectionsPerRoute > 0, "Required: maxConnectionsPerRoute > 0");
+        isTrue(maxConnectionsPerRoute <= maxConnections, "Required: maxConnectionsPerRoute <= maxConnections");
+        isTrue(connectTimeoutMs >= 0, "Required: connectTimeoutMs >= 0");
+        isTrue(socketTimeoutMs >= 0, "Required: socketTimeoutMs >= 0");
+        isTrue(connectionRequestTimeoutMs >= 0, "Required: connectionRequestTimeoutMs >= 0");
+        isTrue(idleConnectionTimeoutMs > 0, "Required: idleConnectionTimeoutMs > 0");
+        isTrue(asyncThreads > 0, "Required: asyncThreads > 0");
+        this.maxConnections = maxConnections;
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+        this.connectTimeoutMs = connectTimeoutMs;
+        this.socketTimeoutMs = socketTimeoutMs;
+        this.connectionRequestTimeoutMs = connectionRequestTimeoutMs;
+        this.idleConnectionTimeoutMs = idleConnectionTimeoutMs;
+        this.asyncThreads = asyncThreads;
+    }
+
+    /**
+     * Reads the HTTP client configuration, falling back to defaults for missing settings.
+     *
+     * @param config HTTP client configuration
+     * @return HTTP client configuration
+     */
+    public static HttpClientConfig from(Config config) {
+        notNull(config, "config can't be null");
+        return new HttpClientConfig(
+                config.hasPath(CK_MAX_CONNECTIONS) ? config.getInt(CK_MAX_CONNECTIONS) : DEFAULT_MAX_CONNECTIONS,
+                config.hasPath(CK_MAX_CONNECTIONS_PER_ROUTE) ? config.getInt(CK_MAX_CONNECTIONS_PER_ROUTE) : DEFAULT_MAX_CONNECTIONS_PER_ROUTE,
+                config.hasPath(CK_CONNECT_TIMEOUT_MS) ? config.getInt(CK_CONNECT_TIMEOUT_MS) : DEFAULT_CONNECT_TIMEOUT_MS,
+                config.hasPath(CK_SOCKET_TIMEOUT_MS) ? config.getInt(CK_SOCKET_TIMEOUT_MS) : DEFAULT_SOCKET_TIMEOUT_MS,
+                config.hasPath(CK_CONNECTION_REQUEST_TIMEOUT_MS) ? config.getInt(CK_CONNECTION_REQUEST_TIMEOUT_MS) : DEFAULT_CONNECTION_REQUEST_TIMEOUT_MS,
+                config.hasPath(CK_IDLE_CONNECTION_TIMEOUT_MS) ? config.getLong(CK_IDLE_CONNECTION_TIMEOUT_MS) : DEFAULT_IDLE_CONNECTION_TIMEOUT_MS,
+                config.hasPath(CK_ASYNC_THREADS) ? config.getInt(CK_ASYNC_THREADS) : DEFAULT_ASYNC_THREADS);
+    }
+
+    /**
+     * Reads the HTTP client configuration from the given optional subsection of a module configuration.
+     *
+     * @param config module configuration
+     * @param path   path of the HTTP client subsection
+     * @return HTTP client configuration, with defaults if the subsection is missing
+     */
+    public static HttpClientConfig from(Config config, String path) {
+        notNull(config, "config can't be null");
+        return config.hasPath(path) ? from(config.getConfig(path)) : new HttpClientConfig();
+    }
+}
@@ -15,20 +15,85 @@
  */
 package com.expedia.adaptivealerting.anomdetect.util;
 
-import lombok.Generated;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectReader;
 import lombok.val;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.HttpResponseException;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.fluent.Content;
+import org.apache.http.client.fluent.Executor;
 import org.apache.http.client.fluent.Request;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.notNull;
 
 /**
- * Simple wrapper around Apache's fluent HTTP client, intended to support mockability.
+ * Wrapper around a pooled Apache HTTP client, intended to support mockability.
+ * <p>
+ * Connections are kept alive and pooled per the {@link HttpClientConfig}, and responses are gzip-decoded
+ * transparently. Besides the buffered {@link Content} calls, the wrapper can parse JSON responses straight from the
+ * response stream, either on the calling thread or on a small pool of async threads.
  */
-@Generated // https://reflectoring.io/100-percent-test-coverage/
-public class HttpClientWrapper {
+public class HttpClientWrapper implements Closeable {
+    private final CloseableHttpClient httpClient;
+    private final Executor executor;
+    private final ExecutorService asyncExecutor;
+
+    public HttpClientWrapper() {
+        this(new HttpClientConfig());
+    }
+
+    public HttpClientWrapper(HttpClientConfig config) {
+        notNull(config, "config can't be null");
+        val connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(config.getMaxConnections());
+        connectionManager.setDefaultMaxPerRoute(config.getMaxConnectionsPerRoute());
+        val requestConfig = RequestConfig.custom()
+                .setConnectTimeout(config.getConnectTimeoutMs())
+                .setSocketTimeout(config.getSocketTimeoutMs())
+                .setConnectionRequestTimeout(config.getConnectionRequestTimeoutMs())
+                .build();
+
+        // HttpClientBuilder sends Accept-Encoding and decodes gzip responses unless compression is disabled.
+        this.httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .evictExpiredConnections()
+                .evictIdleConnections(config.getIdleConnectionTimeoutMs(), TimeUnit.MILLISECONDS)
+                .build();
+        this.executor = Executor.newInstance(httpClient);
+        this.asyncExecutor = Executors.newFixedThreadPool(config.getAsyncThreads(), runnable -> {
+            Thread thread = new Thread(runnable, "http-client-async");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
 
     /**
      * Makes an HTTP GET call with headers to the given URI and returns the result.
@@ -42,8 +107,7 @@ public class HttpClientWrapper {
             return get(uri);
         }
         val getRequest = Request.Get(uri);
-        return buildRequestWithHeaders(getRequest, headers)
-                .execute()
+        return executor.execute(buildRequestWithHeaders(getRequest, headers))
                 .returnContent();
     }
 
@@ -55,8 +119,7 @@ public class HttpClientWrapper {
      * @throws IOException if there's a problem making the call
      */
     public Content get(String uri) throws IOException {
-        return Request.Get(uri)
-                .execute()
+        return executor.execute(Request.Get(uri))
                 .returnContent();
     }
 
@@ -68,14 +131,227 @@ public class HttpClientWrapper {
      * @return Call result
      * @throws IOException the io exception
      */
-    @Generated // https://reflectoring.io/100-percent-test-coverage/
     public Content post(String uri, String body) throws IOException {
-        return Request.Post(uri)
-                .bodyString(body, ContentType.APPLICATION_JSON)
-                .execute()
+        return executor.execute(Request.Post(uri).bodyString(body, ContentType.APPLICATION_JSON))
                 .returnContent();
     }
 
+    /**
+     * Makes an HTTP GET call to the given URI and parses the JSON response as it streams in.
+     *
+     * @param uri    URI
+     * @param reader reader for the response type
+     * @param <T>    response type
+     * @return parsed response
+     * @throws IOException if there's a problem making the call or parsing the response
+     */
+    public <T> T get(String uri, ObjectReader reader) throws IOException {
+        return get(uri, Collections.emptyMap(), reader);
+    }
+
+    /**
+     * Makes an HTTP GET call with headers to the given URI and parses the JSON response as it streams in.
+     *
+     * @param uri     URI
+     * @param headers request headers
+     * @param reader  reader for the response type
+     * @param <T>     response type
+     * @return parsed response
+     * @throws IOException if there's a problem making the call or parsing the response
+     */
+    public <T> T get(String uri, Map<String, String> headers, ObjectReader reader) throws IOException {
+        val request = new HttpGet(uri);
+        headers.forEach(request::addHeader);
+        return execute(request, reader);
+    }
+
+    /**
+     * Makes a conditional HTTP GET call to the given URI, sending the ETag in an If-None-Match header, and parses the
+     * JSON response as it streams in unless the server answers 304 Not Modified.
+     *
+     * @param uri    URI
+     * @param eTag   ETag of the response the caller already has, or null for an unconditional call
+     * @param reader reader for the response type
+     * @param <T>    response type
+     * @return parsed response and its ETag, or a not modified response
+     * @throws IOException if there's a problem making the call or parsing the response
+     */
+    public <T> ConditionalResponse<T> getIfNoneMatch(String uri, String eTag, ObjectReader reader) throws IOException {
+        val request = new HttpGet(uri);
+        if (eTag != null) {
+            request.addHeader(HttpHeaders.IF_NONE_MATCH, eTag);
+        }
+        return httpClient.execute(request, response -> {
+            val eTagHeader = response.getFirstHeader(HttpHeaders.ETAG);
+            val responseETag = eTagHeader == null ? eTag : eTagHeader.getValue();
+            if (response.getStatusLine().getStatusCode() == HttpStatus.SC_NOT_MODIFIED) {
+                EntityUtils.consume(response.getEntity());
+                return new ConditionalResponse<>(true, null, responseETag);
+            }
+            T value = readValue(response, reader);
+            return new ConditionalResponse<>(false, value, eTagHeader == null ? null : responseETag);
+        });
+    }
+
+    /**
+     * Makes an HTTP POST call to the given URI with given body and parses the JSON response as it streams in.
+     *
+     * @param uri    URI
+     * @param body   JSON body
+     * @param reader reader for the response type
+     * @param <T>    response type
+     * @return parsed response
+     * @throws IOException if there's a problem making the call or parsing the response
+     */
+    public <T> T post(String uri, String body, ObjectReader reader) throws IOException {
+        val request = new HttpPost(uri);
+        request.setEntity(new StringEntity(body, ContentType.APPLICATION_JSON));
+        return execute(request, reader);
+    }
+
+    /**
+     * Makes an HTTP GET call with headers to the given URI and parses the response as a sequence of JSON values, such as
+     * newline-delimited JSON, handing each to the action as soon as it's read. Only one value is held at a time. An
+     * {@code application/json} response, e.g. from a server that can't stream, is read as a JSON array of the values.
+     *
+     * @param uri     URI
+     * @param headers request headers
+     * @param reader  reader for the value type
+     * @param action  action to perform on each value
+     * @param <T>     value type
+     * @throws IOException if there's a problem making the call or parsing the response, including the response ending
+     *                     abruptly
+     */
+    public <T> void getEach(String uri, Map<String, String> headers, ObjectReader reader, Consumer<? super T> action)
+            throws IOException {
+        val request = new HttpGet(uri);
+        headers.forEach(request::addHeader);
+        httpClient.execute(request, response -> {
+            readEach(response, reader, action);
+            return null;
+        });
+    }
+
+    /**
+     * Async variant of {@link #get(String, Map, ObjectReader)}. The future fails with the call's {@link IOException}.
+     *
+     * @param uri     URI
+     * @param headers request headers
+     * @param reader  reader for the response type
+     * @param <T>     response type
+     * @return future parsed response
+     */
+    public <T> CompletableFuture<T> getAsync(String uri, Map<String, String> headers, ObjectReader reader) {
+        return supplyAsync(() -> get(uri, headers, reader));
+    }
+
+    /**
+     * Async variant of {@link #getIfNoneMatch(String, String, ObjectReader)}. The future fails with the call's
+     * {@link IOException}.
+     *
+     * @param uri    URI
+     * @param eTag   ETag of the response the caller already has, or null for an unconditional call
+     * @param reader reader for the response type
+     * @param <T>    response type
+     * @return future parsed response and its ETag, or a not modified response
+     */
+    public <T> CompletableFuture<ConditionalResponse<T>> getIfNoneMatchAsync(String uri, String eTag,
+                                                                            ObjectReader reader) {
+        return supplyAsync(() -> getIfNoneMatch(uri, eTag, reader));
+    }
+
+    /**
+     * Async variant of {@link #post(String, String, ObjectReader)}. The future fails with the call's
+     * {@link IOException}.
+     *
+     * @param uri    URI
+     * @param body   JSON body
+     * @param reader reader for the response type
+     * @param <T>    response type
+     * @return future parsed response
+     */
+    public <T> CompletableFuture<T> postAsync(String uri, String body, ObjectReader reader) {
+        return supplyAsync(() -> post(uri, body, reader));
+    }
+
+    @Override
+    public void close() throws IOException {
+        asyncExecutor.shutdownNow();
+        httpClient.close();
+    }
+
+    private <T> T execute(HttpRequestBase request, ObjectReader reader) throws IOException {
+        // The client consumes whatever the handler leaves of the entity, which returns the connection to the pool.
+        return httpClient.execute(request, response -> readValue(response, reader));
+    }
+
+    private static <T> T readValue(HttpResponse response, ObjectReader reader) throws IOException {
+        val statusLine = response.getStatusLine();
+        val entity = response.getEntity();
+        if (statusLine.getStatusCode() >= 300) {
+            EntityUtils.consume(entity);
+            throw new HttpResponseException(statusLine.getStatusCode(), statusLine.getReasonPhrase());
+        }
+        if (entity == null) {
+            return null;
+        }
+        try (InputStream in = entity.getContent()) {
+            return reader.readValue(in);
+        }
+    }
+
+    private static <T> void readEach(HttpResponse response, ObjectReader reader, Consumer<? super T> action)
+            throws IOException {
+        val statusLine = response.getStatusLine();
+        val entity = response.getEntity();
+        if (statusLine.getStatusCode() >= 300) {
+            EntityUtils.consume(entity);
+            throw new HttpResponseException(statusLine.getStatusCode(), statusLine.getReasonPhrase());
+        }
+        if (entity == null) {
+            return;
+        }
+        try (InputStream in = entity.getContent(); JsonParser parser = reader.getFactory().createParser(in)) {
+            if (isJson(entity)) {
+                if (parser.nextToken() != JsonToken.START_ARRAY) {
+                    throw new JsonParseException(parser, "Expected a JSON array");
+                }
+                // Leaves the parser inside the array, so that the values are its elements.
+                parser.clearCurrentToken();
+            }
+            try (MappingIterator<T> values = reader.readValues(parser)) {
+                while (values.hasNextValue()) {
+                    action.accept(values.nextValue());
+                }
+            }
+        }
+    }
+
+    private static boolean isJson(HttpEntity entity) {
+        val contentType = entity.getContentType();
+        if (contentType == null) {
+            return false;
+        }
+        try {
+            val mimeType = ContentType.parse(contentType.getValue()).getMimeType();
+            return ContentType.APPLICATION_JSON.getMimeType().equalsIgnoreCase(mimeType);
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    private <T> CompletableFuture<T> supplyAsync(Call<T> call) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        asyncExecutor.execute(() -> {
+            try {
+                future.complete(call.call());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
     private Request buildRequestWithHeaders(Request request, Map<String, String> headers) {
         for (val entry : headers.entrySet()) {
             val key = entry.getKey();
@@ -84,4 +360,9 @@ public class HttpClientWrapper {
         }
         return request;
     }
+
+    @FunctionalInterface
+    private interface Call<T> {
+        T call() throws IOException;
+    }
 }
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.util;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Calculates a running count, mean and standard deviation. Updates are the same as those of commons-math's
+ * {@code SummaryStatistics}, but the state is exposed so that it can be snapshotted and restored.
+ */
+@Getter
+@ToString
+public final class RunningStatistics {
+    private long n;
+    private double mean;
+
+    /**
+     * Sum of squared deviations from the mean.
+     */
+    private double m2;
+
+    public RunningStatistics() {
+    }
+
+    public RunningStatistics(long n, double mean, double m2) {
+        AssertUtil.isTrue(n >= 0, "Required: n >= 0");
+        this.n = n;
+        this.mean = n == 0 ? 0.0 : mean;
+        this.m2 = n == 0 ? 0.0 : m2;
+    }
+
+    public void addValue(double value) {
+        n++;
+        double dev = value - mean;
+        double nDev = dev / n;
+        mean += nDev;
+        m2 += (n - 1) * dev * nDev;
+    }
+
+    /**
+     * Returns the bias-corrected sample standard deviation: NaN before any values are added, and 0 after one.
+     *
+     * @return standard deviation
+     */
+    public double getStandardDeviation() {
+        if (n == 0) {
+            return Double.NaN;
+        }
+        return n == 1 ? 0.0 : Math.sqrt(m2 / (n - 1));
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.util;
+
+import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.isBetween;
+import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.isTrue;
+
+/**
+ * Calculates a running quantile over a sliding window of primitive doubles. Adding to a full window evicts the oldest
+ * value. Adds and removals are O(log n), and all storage is allocated up front, so there's no per-sample allocation.
+ * <p>
+ * Values live in a ring buffer. The lower and upper parts of the window are kept in two heaps of ring buffer slots,
+ * with each slot tracking its heap position so that the oldest value can be removed without a search. Quantiles are
+ * linearly interpolated between the closest ranks, which for q = 0.5 gives the usual median.
+ */
+public final class SlidingWindowQuantile {
+    private final double quantile;
+    private final double[] values;
+
+    // For each ring buffer slot, the slot's position in its heap, and which heap it's in.
+    private final int[] heapPos;
+    private final boolean[] inLower;
+
+    private final IndexedHeap lowerHalf;
+    private final IndexedHeap upperHalf;
+
+    // Ring buffer slot holding the oldest value.
+    private int head;
+    private int size;
+
+    /**
+     * @param windowSize Maximum number of values in the window
+     * @param quantile   Quantile to track, between 0.0 and 1.0
+     */
+    public SlidingWindowQuantile(int windowSize, double quantile) {
+        isTrue(windowSize > 0, "Required: windowSize > 0");
+        isBetween(quantile, 0.0, 1.0, "Required: 0.0 <= quantile <= 1.0");
+        this.quantile = quantile;
+        this.values = new double[windowSize];
+        this.heapPos = new int[windowSize];
+        this.inLower = new boolean[windowSize];
+        this.lowerHalf = new IndexedHeap(windowSize, true);
+        this.upperHalf = new IndexedHeap(windowSize, false);
+    }
+
+    /**
+     * Creates a sliding window median.
+     *
+     * @param windowSize Maximum number of values in the window
+     * @return sliding window median
+     */
+    public static SlidingWindowQuantile median(int windowSize) {
+        return new SlidingWindowQuantile(windowSize, 0.5);
+    }
+
+    /**
+     * Adds a value to the window, evicting the oldest value if the window is full.
+     *
+     * @param value value to add
+     */
+    public void add(double value) {
+        if (isFull()) {
+            removeOldest();
+        }
+
+        int slot = head + size;
+        if (slot >= values.length) {
+            slot -= values.length;
+        }
+        values[slot] = value;
+        size++;
+
+        if (lowerHalf.size > 0 && value <= values[lowerHalf.peek()]) {
+            lowerHalf.push(slot);
+        } else {
+            upperHalf.push(slot);
+        }
+        rebalance();
+    }
+
+    /**
+     * Removes the oldest value from the window.
+     *
+     * @return the removed value
+     */
+    public double removeOldest() {
+        if (size == 0) {
+            throw new IllegalStateException("Window is empty");
+        }
+
+        int slot = head;
+        if (inLower[slot]) {
+            lowerHalf.remove(heapPos[slot]);
+        } else {
+            upperHalf.remove(heapPos[slot]);
+        }
+        head = head + 1 == values.length ? 0 : head + 1;
+        size--;
+        rebalance();
+        return values[slot];
+    }
+
+    public double getQuantile() {
+        if (size == 0) {
+            throw new IllegalStateException("Add values before getting the quantile");
+        }
+
+        double rank = quantile * (size - 1);
+        double frac = rank - Math.floor(rank);
+        double lower = values[lowerHalf.peek()];
+        if (frac == 0.0) {
+            return lower;
+        }
+        double upper = values[upperHalf.peek()];
+        return (1.0 - frac) * lower + frac * upper;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isFull() {
+        return size == values.length;
+    }
+
+    /**
+     * Removes all values, keeping the allocated storage for reuse.
+     */
+    public void clear() {
+        this.head = 0;
+        this.size = 0;
+        lowerHalf.size = 0;
+        upperHalf.size = 0;
+    }
+
+    /**
+     * Moves values between the halves so the lower half holds the values up to and including the lower interpolation
+     * rank.
+     */
+    private void rebalance() {
+        int targetLowerSize = size == 0 ? 0 : (int) Math.floor(quantile * (size - 1)) + 1;
+        while (lowerHalf.size > targetLowerSize) {
+            upperHalf.push(lowerHalf.remove(0));
+        }
+        while (lowerHalf.size < targetLowerSize) {
+            lowerHalf.push(upperHalf.remove(0));
+        }
+    }
+
+    /**
+     * Binary heap of ring buffer slots, ordered by the slot values.
+     */
+    private final class IndexedHeap {
+        private final int[] slots;
+        private final boolean maxHeap;
+        private int size;
+
+        IndexedHeap(int capacity, boolean maxHeap) {
+            this.slots = new int[capacity];
+            this.maxHeap = maxHeap;
+        }
+
+        int peek() {
+            return slots[0];
+        }
+
+        void push(int slot) {
+            inLower[slot] = maxHeap;
+            place(size, slot);
+            size++;
+            siftUp(size - 1);
+        }
+
+        /**
+         * Removes the slot at the given heap position.
+         *
+         * @return the removed slot
+         */
+        int remove(int pos) {
+            int removed = slots[pos];
+            size--;
+            if (pos < size) {
+                place(pos, slots[size]);
+                siftDown(pos);
+                siftUp(pos);
+            }
+            return removed;
+        }
+
+        private void siftUp(int pos) {
+            int slot = slots[pos];
+            while (pos > 0) {
+                int parent = (pos - 1) >>> 1;
+                if (!before(slot, slots[parent])) {
+                    break;
+                }
+                place(pos, slots[parent]);
+                pos = parent;
+            }
+            place(pos, slot);
+        }
+
+        private void siftDown(int pos) {
+            int slot = slots[pos];
+            int half = size >>> 1;
+            while (pos < half) {
+                int child = 2 * pos + 1;
+                int right = child + 1;
+                if (right < size && before(slots[right], slots[child])) {
+                    child = right;
+                }
+                if (!before(slots[child], slot)) {
+                    break;
+                }
+                place(pos, slots[child]);
+                pos = child;
+            }
+            place(pos, slot);
+        }
+
+        private boolean before(int slotA, int slotB) {
+            return maxHeap ? values[slotA] > values[slotB] : values[slotA] < values[slotB];
+        }
+
+        private void place(int pos, int slot) {
+            slots[pos] = slot;
+            heapPos[slot] = pos;
+        }
+    }
+}
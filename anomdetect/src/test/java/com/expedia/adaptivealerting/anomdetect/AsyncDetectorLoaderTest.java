@@ -0,0 +1,187 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect;
+
+import com.codahale.metrics.MetricRegistry;
+import com.expedia.adaptivealerting.anomdetect.detect.DetectorContainer;
+import com.expedia.adaptivealerting.anomdetect.detect.MappedMetricData;
+import com.expedia.metrics.MetricData;
+import com.expedia.metrics.MetricDefinition;
+import com.google.common.collect.ImmutableMap;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public final class AsyncDetectorLoaderTest {
+    private static final long TIMEOUT_MS = 1000;
+
+    private final UUID detectorUuid = UUID.randomUUID();
+    private final DetectorContainer container = mock(DetectorContainer.class);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final AtomicInteger loads = new AtomicInteger();
+    private MetricRegistry metricRegistry;
+
+    @Before
+    public void setUp() {
+        this.metricRegistry = new MetricRegistry();
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+    }
+
+    @Test
+    public void testCoalescesLoadsAndKeepsOrder() throws Exception {
+        AsyncDetectorLoader loaderUnderTest = loader(config(10), blockingLoad(Optional.of(container)));
+        List<MappedMetricData> metrics = Arrays.asList(metric(1), metric(2), metric(3));
+        metrics.forEach(metric -> loaderUnderTest.park(metric, 0L));
+
+        assertTrue(loaderUnderTest.isParked(detectorUuid));
+        assertTrue(loaderUnderTest.takeLoaded(0L).isEmpty());
+        assertEquals(3, metricRegistry.getGauges().get("detector.load.parked").getValue());
+
+        release.countDown();
+        List<AsyncDetectorLoader.LoadedDetector> loaded = awaitLoaded(loaderUnderTest);
+        assertEquals(1, loaded.size());
+        assertSame(container, loaded.get(0).getContainer());
+        assertEquals(metrics, loaded.get(0).getParkedMetrics());
+        assertEquals(1, loads.get());
+        assertFalse(loaderUnderTest.isParked(detectorUuid));
+        assertEquals(0, metricRegistry.getGauges().get("detector.load.parked").getValue());
+        assertEquals(0, metricRegistry.getGauges().get("detector.load.pending").getValue());
+    }
+
+    @Test
+    public void testAbandonsLoadAfterTimeout() {
+        AsyncDetectorLoader loaderUnderTest = loader(config(10), blockingLoad(Optional.of(container)));
+        loaderUnderTest.park(metric(1), 0L);
+
+        assertTrue(loaderUnderTest.takeLoaded(TIMEOUT_MS - 1).isEmpty());
+        List<AsyncDetectorLoader.LoadedDetector> loaded = loaderUnderTest.takeLoaded(TIMEOUT_MS);
+        assertEquals(1, loaded.size());
+        assertNull(loaded.get(0).getContainer());
+        assertEquals(1, loaded.get(0).getParkedMetrics().size());
+        assertEquals(1, metricRegistry.meter("detector.load.timeout").getCount());
+    }
+
+    @Test
+    public void testDropsMetricsBeyondParkingLimit() {
+        AsyncDetectorLoader loaderUnderTest = loader(config(2), blockingLoad(Optional.of(container)));
+        for (int i = 0; i < 5; i++) {
+            loaderUnderTest.park(metric(i), 0L);
+        }
+
+        assertEquals(2, metricRegistry.getGauges().get("detector.load.parked").getValue());
+        assertEquals(3, metricRegistry.meter("detector.load.dropped").getCount());
+    }
+
+    @Test
+    public void testIsParked_metric() {
+        AsyncDetectorLoader loaderUnderTest = loader(config(1), blockingLoad(Optional.of(container)));
+        MappedMetricData parked = metric(1);
+        MappedMetricData dropped = metric(2);
+
+        loaderUnderTest.park(parked, 0L);
+        assertTrue(loaderUnderTest.isParked(parked));
+        loaderUnderTest.park(dropped, 0L);
+        assertFalse(loaderUnderTest.isParked(dropped));
+    }
+
+    @Test
+    public void testReturnsNoContainerWhenLoadFails() throws Exception {
+        AsyncDetectorLoader loaderUnderTest = loader(config(10), metric -> {
+            throw new RuntimeException("Some detector source failure");
+        });
+        loaderUnderTest.park(metric(1), 0L);
+
+        List<AsyncDetectorLoader.LoadedDetector> loaded = awaitLoaded(loaderUnderTest);
+        assertNull(loaded.get(0).getContainer());
+        assertEquals(1, metricRegistry.meter("detector.load.failure").getCount());
+    }
+
+    @Test
+    public void testIsEnabled() {
+        assertFalse(AsyncDetectorLoader.isEnabled(ConfigFactory.empty()));
+        assertTrue(AsyncDetectorLoader.isEnabled(config(10)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadConfig() {
+        loader(config(0), metric -> Optional.empty());
+    }
+
+    private AsyncDetectorLoader loader(Config config, Function<MappedMetricData, Optional<DetectorContainer>> load) {
+        return new AsyncDetectorLoader(config, metricRegistry, load);
+    }
+
+    private Function<MappedMetricData, Optional<DetectorContainer>> blockingLoad(Optional<DetectorContainer> result) {
+        return metric -> {
+            loads.incrementAndGet();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return result;
+        };
+    }
+
+    private List<AsyncDetectorLoader.LoadedDetector> awaitLoaded(AsyncDetectorLoader loader) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while (System.currentTimeMillis() < deadline) {
+            List<AsyncDetectorLoader.LoadedDetector> loaded = loader.takeLoaded(0L);
+            if (!loaded.isEmpty()) {
+                return loaded;
+            }
+            Thread.sleep(10);
+        }
+        throw new AssertionError("Detector didn't load");
+    }
+
+    private MappedMetricData metric(int value) {
+        MetricData metricData = new MetricData(new MetricDefinition("some-key"), value, value);
+        return new MappedMetricData(metricData, detectorUuid);
+    }
+
+    private static Config config(int maxParkedMetrics) {
+        Map<String, Object> config = ImmutableMap.of(
+                "detector-loading-async-enabled", true,
+                "detector-loading-threads", 2,
+                "detector-loading-max-parked-metrics", maxParkedMetrics,
+                "detector-loading-timeout-ms", TIMEOUT_MS);
+        return ConfigFactory.parseMap(config);
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect;
+
+import lombok.val;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DetectorCheckpointStoreTest {
+    private static final long MAX_AGE_MS = TimeUnit.HOURS.toMillis(1);
+    private static final long NOW = 1_580_000_000_000L;
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private Path path;
+    private UUID uuid1;
+    private UUID uuid2;
+
+    @Before
+    public void setUp() throws Exception {
+        this.path = tempFolder.getRoot().toPath().resolve("checkpoints.bin");
+        this.uuid1 = UUID.randomUUID();
+        this.uuid2 = UUID.randomUUID();
+    }
+
+    @Test
+    public void testOpen_newFile() throws Exception {
+        try (val store = new DetectorCheckpointStore(path, MAX_AGE_MS)) {
+            assertTrue(store.open(NOW).isEmpty());
+        }
+        assertTrue(Files.exists(path));
+    }
+
+    @Test
+    public void testOpen_lastSnapshotWins() throws Exception {
+        try (val store = new DetectorCheckpointStore(path, MAX_AGE_MS)) {
+            store.open(NOW);
+            store.append(uuid1, new byte[]{1}, NOW);
+            store.append(uuid2, new byte[]{2}, NOW);
+            store.append(uuid1, new byte[]{3, 4}, NOW);
+            store.flush(NOW);
+        }
+        try (val store = new DetectorCheckpointStore(path, MAX_AGE_MS)) {
+            val snapshots = store.open(NOW);
+            assertEquals(2, snapshots.size());
+            assertArrayEquals(new byte[]{3, 4}, snapshots.get(uuid1));
+            assertArrayEquals(new byte[]{2}, snapshots.get(uuid2));
+        }
+    }
+
+    @Test
+    public void testOpen_tombstone() throws Exception {
+        try (val store = new DetectorCheckpointStore(path, MAX_AGE_MS)) {
+            store.open(NOW);
+            store.append(uuid1, new byte[]{1}, NOW);
+            store.append(uuid2, new byte[]{2}, NOW);
+            store.append(uuid1, null, NOW);
+            store.flush(NOW);
+        }
+        try (val store = new DetectorCheckpointStore(path, MAX_AGE_MS)) {
+            val snapshots = store.open(NOW);
+            assertFalse(snapshots.containsKey(uuid1));
+            assertTrue(snapshots.containsKey(uuid2));
+        }
+    }
+
+    @Test
+    public void testOpen_expired() throws Exception {
+        try (val store = new DetectorCheckpointStore(path, MAX_AGE_MS)) {
+            store.open(NOW);
+            store.append(uuid1, new byte[]{1}, NOW - MAX_AGE_MS - 1);
+            store.append(uuid2, new byte[]{2}, NOW - MAX_AGE_MS);
+            store.flush(NOW);
+        }
+        try (val store = new DetectorCheckpointStore(path, MAX_AGE_MS)) {
+            val snapshots = store.open(NOW);
+            assertFalse(snapshots.containsKey(uuid1));
+            assertTrue(snapshots.containsKey(uuid2));
+        }
+    }
+
+    @Test
+    public void testOpen_truncatedTail() throws Exception {
+        try (val store = new DetectorCheckpointStore(path, MAX_AGE_MS)) {
+            store.open(NOW);
+            store.append(uuid1, new byte[]{1}, NOW);
+            store.append(uuid2, new byte[]{2, 3, 4}, NOW);
+            store.flush(NOW);
+        }
+        try (val file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.setLength(file.length() - 3);
+        }
+        try (val store = new DetectorCheckpointStore(path, MAX_AGE_MS)) {
+            val snapshots = store.open(NOW);
+            assertEquals(1, snapshots.size());
+            assertArrayEquals(new byte[]{1}, snapshots.get(uuid1));
+
+            // Appends after the discarded tail are readable.
+            store.append(uuid2, new byte[]{5}, NOW);
+            store.flush(NOW);
+        }
+        try (val store = new DetectorCheckpointStore(path, MAX_AGE_MS)) {
+            assertArrayEquals(new byte[]{5}, store.open(NOW).get(uuid2));
+        }
+    }
+
+    @Test
+    public void testOpen_corruptRecord() throws Exception {
+        try (val store = new DetectorCheckpointStore(path, MAX_AGE_MS)) {
+            store.open(NOW);
+            store.append(uuid1, new byte[]{1}, NOW);
+            store.append(uuid2, new byte[]{2}, NOW);
+            store.flush(NOW);
+        }
+        try (val file = new RandomAccessFile(path.toFile(), "rw")) {
+            // Flips the snapshot byte of the last record.
+            file.seek(file.length() - 5);
+            file.write(9);
+        }
+        try (val store = new DetectorCheckpointStore(path, MAX_AGE_MS)) {
+            val snapshots = store.open(NOW);
+            assertEquals(1, snapshots.size());
+            assertTrue(snapshots.containsKey(uuid1));
+        }
+    }
+
+    @Test
+    public void testOpen_unknownFormat() throws Exception {
+        Files.write(path, new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+        try (val store = new DetectorCheckpointStore(path, MAX_AGE_MS)) {
+            assertTrue(store.open(NOW).isEmpty());
+        }
+    }
+
+    @Test
+    public void testFlush_compacts() throws Exception {
+        val snapshot = new byte[100 * 1024];
+        try (val store = new DetectorCheckpointStore(path, MAX_AGE_MS)) {
+            store.open(NOW);
+            // The file reaches the compaction threshold on the eleventh snapshot.
+            for (int i = 0; i < 11; i++) {
+                snapshot[0] = (byte) i;
+                store.append(uuid1, snapshot, NOW);
+                store.flush(NOW);
+            }
+            assertTrue(store.length() < 2 * snapshot.length);
+            assertEquals(store.length(), Files.size(path));
+
+            store.append(uuid2, new byte[]{1}, NOW);
+            store.flush(NOW);
+        }
+        try (val store = new DetectorCheckpointStore(path, MAX_AGE_MS)) {
+            val snapshots = store.open(NOW);
+            assertEquals(10, snapshots.get(uuid1)[0]);
+            assertArrayEquals(new byte[]{1}, snapshots.get(uuid2));
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect;
+
+import com.codahale.metrics.MetricRegistry;
+import com.expedia.adaptivealerting.anomdetect.detect.AnomalyType;
+import com.expedia.adaptivealerting.anomdetect.detect.DetectorContainer;
+import com.expedia.adaptivealerting.anomdetect.detect.outlier.algo.forecasting.ForecastingDetector;
+import com.expedia.adaptivealerting.anomdetect.forecast.interval.algo.expwelford.ExponentialWelfordIntervalForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.algo.ewma.EwmaPointForecaster;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import lombok.val;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DetectorCheckpointerTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private Config config;
+    private UUID detectorUuid;
+    private Map<UUID, DetectorContainer> detectors;
+
+    @Before
+    public void setUp() {
+        val path = tempFolder.getRoot().toPath().resolve("checkpoints.bin").toString();
+        this.config = ConfigFactory.parseMap(Collections.singletonMap("detector-checkpoint-path", path));
+        this.detectorUuid = UUID.randomUUID();
+        this.detectors = new HashMap<>();
+        val detector = new ForecastingDetector(detectorUuid, new EwmaPointForecaster(),
+                new ExponentialWelfordIntervalForecaster(), AnomalyType.TWO_TAILED, true, "ewma");
+        detectors.put(detectorUuid, new DetectorContainer(detector, Collections.emptyList()));
+    }
+
+    @Test
+    public void testClose_checkpointsDirtyDetectors() {
+        val checkpointer = new DetectorCheckpointer(config, new MetricRegistry(), detectors);
+        checkpointer.markDirty(detectorUuid);
+        checkpointer.close();
+
+        val restarted = new DetectorCheckpointer(config, new MetricRegistry(), detectors);
+        assertTrue(restarted.hasState(detectorUuid));
+        restarted.close();
+    }
+
+    @Test
+    public void testClose_skipsCleanDetectors() {
+        val checkpointer = new DetectorCheckpointer(config, new MetricRegistry(), detectors);
+        checkpointer.close();
+
+        val restarted = new DetectorCheckpointer(config, new MetricRegistry(), detectors);
+        assertFalse(restarted.hasState(detectorUuid));
+        restarted.close();
+    }
+}
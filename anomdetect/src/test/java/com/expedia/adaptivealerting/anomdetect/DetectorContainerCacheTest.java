@@ -0,0 +1,110 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect;
+
+import com.codahale.metrics.MetricRegistry;
+import com.expedia.adaptivealerting.anomdetect.detect.DetectorContainer;
+import com.expedia.adaptivealerting.anomdetect.detect.breakout.algo.edmx.EdmxDetector;
+import com.expedia.adaptivealerting.anomdetect.detect.breakout.algo.edmx.EdmxHyperparams;
+import com.google.common.collect.ImmutableMap;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public final class DetectorContainerCacheTest {
+
+    // Roughly 0.4 MB per detector, so that a 1 MB cache holds two of them.
+    private static final int BUFFER_SIZE = 800;
+
+    private MetricRegistry metricRegistry;
+
+    @Before
+    public void setUp() {
+        this.metricRegistry = new MetricRegistry();
+    }
+
+    @Test
+    public void testPutAndGet() {
+        Map<UUID, DetectorContainer> cache = new DetectorContainerCache(ConfigFactory.empty(), metricRegistry).asMap();
+        DetectorContainer container = container();
+        cache.put(container.getUuid(), container);
+
+        assertSame(container, cache.get(container.getUuid()));
+        assertEquals(1L, metricRegistry.getGauges().get("detector.cache.size").getValue());
+    }
+
+    @Test
+    public void testEvictsByWeight() {
+        Map<UUID, DetectorContainer> cache = new DetectorContainerCache(config(1, 1), metricRegistry).asMap();
+        DetectorContainer first = container();
+        cache.put(first.getUuid(), first);
+        for (int i = 0; i < 4; i++) {
+            DetectorContainer container = container();
+            cache.put(container.getUuid(), container);
+        }
+
+        assertTrue(cache.size() <= 2);
+        assertFalse(cache.containsKey(first.getUuid()));
+        assertEquals(5 - cache.size(), metricRegistry.meter("detector.cache.eviction").getCount());
+    }
+
+    @Test
+    public void testInvalidationIsNotEviction() {
+        Map<UUID, DetectorContainer> cache = new DetectorContainerCache(config(1, 1), metricRegistry).asMap();
+        DetectorContainer container = container();
+        cache.put(container.getUuid(), container);
+        cache.remove(container.getUuid());
+
+        assertTrue(cache.isEmpty());
+        assertEquals(0, metricRegistry.meter("detector.cache.eviction").getCount());
+    }
+
+    @Test
+    public void testReplacesSizeGauge() {
+        new DetectorContainerCache(ConfigFactory.empty(), metricRegistry);
+        Map<UUID, DetectorContainer> cache = new DetectorContainerCache(ConfigFactory.empty(), metricRegistry).asMap();
+        DetectorContainer container = container();
+        cache.put(container.getUuid(), container);
+
+        assertEquals(1L, metricRegistry.getGauges().get("detector.cache.size").getValue());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadConfig() {
+        new DetectorContainerCache(config(0, 1), metricRegistry);
+    }
+
+    private static Config config(int maxWeightMb, int concurrencyLevel) {
+        return ConfigFactory.parseMap(ImmutableMap.of(
+                "detector-cache-max-weight-mb", maxWeightMb,
+                "detector-cache-concurrency-level", concurrencyLevel));
+    }
+
+    private static DetectorContainer container() {
+        EdmxHyperparams hyperparams = new EdmxHyperparams().setBufferSize(BUFFER_SIZE);
+        return new DetectorContainer(new EdmxDetector(UUID.randomUUID(), hyperparams, true), Collections.emptyList());
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect;
+
+import com.expedia.adaptivealerting.anomdetect.detect.Detector;
+import com.expedia.adaptivealerting.anomdetect.detect.DetectorContainer;
+import com.expedia.adaptivealerting.anomdetect.detect.breakout.algo.edmx.EdmxDetector;
+import com.expedia.adaptivealerting.anomdetect.detect.breakout.algo.edmx.EdmxHyperparams;
+import com.expedia.adaptivealerting.anomdetect.detect.outlier.algo.forecasting.ForecastingDetector;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.PointForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.algo.seasonalnaive.SeasonalNaivePointForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.algo.seasonalnaive.SeasonalNaivePointForecasterParams;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.algo.sma.SmaPointForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.algo.sma.SmaPointForecasterParams;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.UUID;
+
+import static com.expedia.adaptivealerting.anomdetect.DetectorContainerWeigher.BASE_WEIGHT;
+import static com.expedia.adaptivealerting.anomdetect.DetectorContainerWeigher.BOXED_DOUBLE_WEIGHT;
+import static com.expedia.adaptivealerting.anomdetect.DetectorContainerWeigher.DOUBLE_WEIGHT;
+import static com.expedia.adaptivealerting.anomdetect.DetectorContainerWeigher.METRIC_DATA_WEIGHT;
+import static com.expedia.adaptivealerting.anomdetect.DetectorContainerWeigher.UNBOUNDED_LOOK_BACK_VALUES;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public final class DetectorContainerWeigherTest {
+    private final DetectorContainerWeigher weigherUnderTest = new DetectorContainerWeigher();
+
+    @Test
+    public void testWeigh_stateless() {
+        assertEquals(BASE_WEIGHT, weigh(mock(Detector.class)));
+    }
+
+    @Test
+    public void testWeigh_edmx() {
+        EdmxHyperparams hyperparams = new EdmxHyperparams().setBufferSize(20);
+        EdmxDetector detector = new EdmxDetector(UUID.randomUUID(), hyperparams, true);
+        assertEquals(BASE_WEIGHT + 20 * METRIC_DATA_WEIGHT, weigh(detector));
+    }
+
+    @Test
+    public void testWeigh_seasonalNaive() {
+        SeasonalNaivePointForecasterParams params = new SeasonalNaivePointForecasterParams()
+                .setCycleLength(2016)
+                .setIntervalLength(300);
+        assertEquals(BASE_WEIGHT + 2016 * DOUBLE_WEIGHT, weigh(forecasting(new SeasonalNaivePointForecaster(params))));
+    }
+
+    @Test
+    public void testWeigh_sma() {
+        SmaPointForecasterParams params = new SmaPointForecasterParams().setLookBackPeriod(10);
+        assertEquals(BASE_WEIGHT + 10 * BOXED_DOUBLE_WEIGHT, weigh(forecasting(new SmaPointForecaster(params))));
+    }
+
+    @Test
+    public void testWeigh_smaUnbounded() {
+        // Mocked, as a real forecaster would allocate its unbounded window up front.
+        SmaPointForecaster forecaster = mock(SmaPointForecaster.class);
+        when(forecaster.getParams()).thenReturn(new SmaPointForecasterParams());
+        assertEquals(BASE_WEIGHT + UNBOUNDED_LOOK_BACK_VALUES * BOXED_DOUBLE_WEIGHT,
+                weigh(forecasting(forecaster)));
+    }
+
+    private int weigh(Detector detector) {
+        return weigherUnderTest.weigh(UUID.randomUUID(), new DetectorContainer(detector, Collections.emptyList()));
+    }
+
+    private static Detector forecasting(PointForecaster pointForecaster) {
+        ForecastingDetector detector = mock(ForecastingDetector.class);
+        when(detector.getPointForecaster()).thenReturn(pointForecaster);
+        return detector;
+    }
+}
@@ -15,16 +15,25 @@
  */
 package com.expedia.adaptivealerting.anomdetect;
 
+import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.SharedMetricRegistries;
 import com.expedia.adaptivealerting.anomdetect.detect.AnomalyLevel;
+import com.expedia.adaptivealerting.anomdetect.detect.AnomalyType;
 import com.expedia.adaptivealerting.anomdetect.detect.Detector;
 import com.expedia.adaptivealerting.anomdetect.detect.DetectorContainer;
 import com.expedia.adaptivealerting.anomdetect.detect.DetectorResult;
 import com.expedia.adaptivealerting.anomdetect.detect.MappedMetricData;
 import com.expedia.adaptivealerting.anomdetect.detect.outlier.OutlierDetectorResult;
+import com.expedia.adaptivealerting.anomdetect.detect.outlier.algo.forecasting.ForecastingDetector;
+import com.expedia.adaptivealerting.anomdetect.forecast.interval.algo.expwelford.ExponentialWelfordIntervalForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.algo.ewma.EwmaPointForecaster;
+import com.expedia.adaptivealerting.anomdetect.instrument.Stage;
 import com.expedia.adaptivealerting.anomdetect.mapper.DetectorMapping;
+import com.expedia.adaptivealerting.anomdetect.snapshot.DetectorSnapshotCodec;
 import com.expedia.adaptivealerting.anomdetect.source.DetectorException;
 import com.expedia.adaptivealerting.anomdetect.source.DetectorSource;
+import com.expedia.adaptivealerting.anomdetect.source.ModelChangeEvent;
+import com.expedia.adaptivealerting.anomdetect.source.ModelChangeFeed;
 import com.expedia.adaptivealerting.anomdetect.source.data.initializer.DataInitializer;
 import com.expedia.adaptivealerting.anomdetect.source.data.initializer.DetectorDataInitializationThrottledException;
 import com.expedia.metrics.MetricData;
@@ -32,27 +41,39 @@ import com.expedia.metrics.MetricDefinition;
 import com.typesafe.config.Config;
 import lombok.val;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.atLeastOnce;
-import static org.mockito.Mockito.atMost;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -114,6 +135,9 @@ public final class DetectorManagerTest {
     @Mock
     private Config badConfig;
 
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
     @Before
     public void setUp() {
         MockitoAnnotations.initMocks(this);
@@ -148,12 +172,60 @@ public final class DetectorManagerTest {
         assertEquals(emptyList, result);
     }
 
+    @Test
+    public void testDetectorRefresh_skippedWhileChangeFeedLive() {
+        managerUnderTest.setModelChangeFeed(() -> 0L);
+        val result = managerUnderTest.detectorCacheSync(System.currentTimeMillis() + 1000 * 60);
+        assertEquals(Collections.emptyList(), result);
+        verify(detectorSource, never()).findUpdatedDetectors(anyLong());
+    }
+
+    @Test
+    public void testDetectorRefresh_catchesUpWhileChangeFeedLive() {
+        managerUnderTest.setModelChangeFeed(() -> 0L);
+        val result = managerUnderTest.detectorCacheSync(System.currentTimeMillis() + ModelChangeFeed.DEFAULT_CATCH_UP_PERIOD_MILLIS);
+        assertEquals(updatedDetectors, result);
+    }
+
+    @Test
+    public void testDetectorRefresh_pollsWhileChangeFeedNotLive() {
+        managerUnderTest.setModelChangeFeed(() -> -1L);
+        val result = managerUnderTest.detectorCacheSync(System.currentTimeMillis() + 1000 * 60);
+        assertEquals(updatedDetectors, result);
+    }
+
+    @Test
+    public void testDetectorRefresh_catchesUpOnChangesBeforeChangeFeedWentLive() {
+        managerUnderTest.setModelChangeFeed(() -> System.currentTimeMillis() + 1000 * 30);
+        val result = managerUnderTest.detectorCacheSync(System.currentTimeMillis() + 1000 * 60);
+        assertEquals(updatedDetectors, result);
+    }
+
+    @Test
+    public void testModelChange_evictsDetector() {
+        val detectorUuid = updatedDetectors.get(0);
+        managerUnderTest.onModelChange(new ModelChangeEvent()
+                .setEntityType(ModelChangeEvent.EntityType.DETECTOR)
+                .setChangeType(ModelChangeEvent.ChangeType.UPDATED)
+                .setId(detectorUuid.toString()));
+        verify(cachedDetectors).remove(detectorUuid);
+    }
+
+    @Test
+    public void testModelChange_ignoresMappingChanges() {
+        managerUnderTest.onModelChange(new ModelChangeEvent()
+                .setEntityType(ModelChangeEvent.EntityType.MAPPING)
+                .setChangeType(ModelChangeEvent.ChangeType.UPDATED)
+                .setId("mapping-id"));
+        verify(cachedDetectors, never()).remove(any());
+    }
+
     @Test
     public void testDetectorLastUsedTimeSync_unique_detectors() {
         int setSize = 50;
         populateSetWithUniqueUUIDs(setSize);
         managerUnderTest.detectorLastUsedTimeSync(System.currentTimeMillis() + 1000 * 60);
-        verify(detectorSource, atMost(setSize)).updatedDetectorLastUsed(any(UUID.class));
+        verify(detectorSource, times(1)).updateDetectorsLastUsed(argThat(lastUsedTimes -> lastUsedTimes.size() == setSize));
     }
 
     @Test
@@ -161,7 +233,11 @@ public final class DetectorManagerTest {
         int setSize = 4;
         populateSetWithDuplicateUUIDs(setSize);
         managerUnderTest.detectorLastUsedTimeSync(System.currentTimeMillis() + 1000 * 60);
-        verify(detectorSource, atMost(1)).updatedDetectorLastUsed(any(UUID.class));
+        verify(detectorSource, times(1)).updateDetectorsLastUsed(argThat(lastUsedTimes -> lastUsedTimes.size() == 1));
+
+        // Synced detectors aren't sent again until they're used again.
+        managerUnderTest.detectorLastUsedTimeSync(System.currentTimeMillis() + 1000 * 120);
+        verify(detectorSource, times(1)).updateDetectorsLastUsed(anyMap());
     }
 
     @Test
@@ -175,21 +251,22 @@ public final class DetectorManagerTest {
         goodMappedMetricData.setDetectorUuid(invalidDetectorUuid);
         managerUnderTest.detect(goodMappedMetricData);
 
-        doThrow(DetectorException.class).when(detectorSource).updatedDetectorLastUsed(invalidDetectorUuid);
+        doThrow(DetectorException.class).when(detectorSource).updateDetectorsLastUsed(anyMap());
         managerUnderTest.detectorLastUsedTimeSync(System.currentTimeMillis() + 1000 * 60);
-        verify(detectorSource, atMost(2)).updatedDetectorLastUsed(any(UUID.class));
+        verify(detectorSource, times(1)).updateDetectorsLastUsed(argThat(lastUsedTimes ->
+                lastUsedTimes.keySet().equals(new HashSet<>(Arrays.asList(detectorUuid, invalidDetectorUuid)))));
     }
 
     @Test
     public void testDetectorLastUsedTimeSync_invalid_time() {
         managerUnderTest.detectorLastUsedTimeSync(System.currentTimeMillis());
-        verify(detectorSource, never()).updatedDetectorLastUsed(any(UUID.class));
+        verify(detectorSource, never()).updateDetectorsLastUsed(anyMap());
     }
 
     @Test
     public void testDetectorLastUsedTimeSync_emptyQueue() {
         managerUnderTest.detectorLastUsedTimeSync(System.currentTimeMillis() + 1000 * 60);
-        verify(detectorSource, never()).updatedDetectorLastUsed(any(UUID.class));
+        verify(detectorSource, never()).updateDetectorsLastUsed(anyMap());
     }
 
     @Test
@@ -228,6 +305,132 @@ public final class DetectorManagerTest {
         managerUnderTest.detect(goodMappedMetricData);
     }
 
+    @Test
+    public void testClassify_countsCacheHitsAndMisses() {
+        MetricRegistry metricRegistry = new MetricRegistry();
+        DetectorManager manager = new DetectorManager(detectorSource, dataInitializer, config, cachedDetectors, metricRegistry);
+        manager.detect(goodMappedMetricData);
+        when(cachedDetectors.get(goodMappedMetricData.getDetectorUuid())).thenReturn(detectorContainer);
+        manager.detect(goodMappedMetricData);
+
+        assertEquals(1, metricRegistry.meter("detector.cache.miss").getCount());
+        assertEquals(1, metricRegistry.meter("detector.cache.hit").getCount());
+
+        val latencies = manager.getInstruments().snapshot();
+        assertEquals(2, latencies.get(Stage.LOOKUP.getLabel()).getCount());
+        assertEquals(1, latencies.get(Stage.DATA_INIT.getLabel()).getCount());
+        assertEquals(2, latencies.get(Stage.DETECT.getLabel()).getCount());
+    }
+
+    @Test
+    public void testClassify_loadsAsynchronouslyAndReplays() throws Exception {
+        when(config.hasPath("detector-loading-async-enabled")).thenReturn(true);
+        when(config.getBoolean("detector-loading-async-enabled")).thenReturn(true);
+        DetectorManager manager = new DetectorManager(detectorSource, dataInitializer, config, cachedDetectors, new MetricRegistry());
+
+        assertNull(manager.detect(goodMappedMetricData));
+        assertNull(manager.detect(goodMappedMetricData));
+
+        List<MappedMetricData> replayed = new ArrayList<>();
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (replayed.isEmpty() && System.currentTimeMillis() < deadline) {
+            replayed.addAll(manager.replayLoadedDetectors());
+            Thread.sleep(10);
+        }
+        assertEquals(2, replayed.size());
+        assertSame(outlierDetectorResult, replayed.get(0).getAnomalyResult());
+        verify(detectorSource, times(1)).findDetector(mappedUuid);
+        verify(cachedDetectors).put(mappedUuid, detectorContainer);
+    }
+
+    @Test
+    public void testClassify_replaysEachParkedMetric() throws Exception {
+        when(config.hasPath("detector-loading-async-enabled")).thenReturn(true);
+        when(config.getBoolean("detector-loading-async-enabled")).thenReturn(true);
+        DetectorManager manager = new DetectorManager(detectorSource, dataInitializer, config, cachedDetectors, new MetricRegistry());
+
+        assertNull(manager.detect(goodMappedMetricData));
+        assertTrue(manager.isParked(goodMappedMetricData));
+        assertFalse(manager.isParked(badMappedMetricData));
+
+        Map<MappedMetricData, DetectorResult> replayed = new IdentityHashMap<>();
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (replayed.isEmpty() && System.currentTimeMillis() < deadline) {
+            manager.replayLoadedDetectors(replayed::put);
+            Thread.sleep(10);
+        }
+        assertEquals(1, replayed.size());
+        assertSame(outlierDetectorResult, replayed.get(goodMappedMetricData));
+        assertFalse(manager.isParked(goodMappedMetricData));
+    }
+
+    @Test
+    public void testCheckpoint_restoresDetectorInsteadOfInitializing() throws Exception {
+        val path = tempFolder.getRoot().toPath().resolve("checkpoints.bin").toString();
+        when(config.hasPath("detector-checkpoint-enabled")).thenReturn(true);
+        when(config.getBoolean("detector-checkpoint-enabled")).thenReturn(true);
+        when(config.hasPath("detector-checkpoint-path")).thenReturn(true);
+        when(config.getString("detector-checkpoint-path")).thenReturn(path);
+
+        val original = new DetectorContainer(ewmaDetector(mappedUuid), Collections.emptyList());
+        when(detectorSource.findDetector(mappedUuid)).thenReturn(original);
+        DetectorManager manager = new DetectorManager(detectorSource, dataInitializer, config, new HashMap<>(), new MetricRegistry());
+        for (int i = 0; i < 10; i++) {
+            manager.detect(new MappedMetricData(new MetricData(goodDefinition, 100.0 + i, i * 60L), mappedUuid));
+        }
+        manager.close();
+        verify(dataInitializer, times(1)).initializeDetector(any(), any(), any());
+
+        val restored = new DetectorContainer(ewmaDetector(mappedUuid), Collections.emptyList());
+        when(detectorSource.findDetector(mappedUuid)).thenReturn(restored);
+        MetricRegistry metricRegistry = new MetricRegistry();
+        DetectorManager restartedManager = new DetectorManager(detectorSource, dataInitializer, config, new HashMap<>(), metricRegistry);
+        val metricData = new MetricData(goodDefinition, 150.0, 600L);
+        assertEquals(original.getDetector().detect(metricData),
+                restartedManager.detect(new MappedMetricData(metricData, mappedUuid)));
+        assertArrayEquals(DetectorSnapshotCodec.snapshot(original.getDetector()),
+                DetectorSnapshotCodec.snapshot(restored.getDetector()));
+        verify(dataInitializer, times(1)).initializeDetector(any(), any(), any());
+        assertEquals(1, metricRegistry.meter("detector.checkpoint.restored").getCount());
+        restartedManager.close();
+    }
+
+    @Test
+    public void testPreload_disabled() {
+        assertFalse(managerUnderTest.isPreloadEnabled());
+        assertEquals(0, managerUnderTest.preload(Collections.singletonList(mappedUuid)));
+        verify(detectorSource, never()).findDetectors(any());
+    }
+
+    @Test
+    public void testPreload() {
+        DetectorManager manager = preloadingManager();
+        val cachedUuid = updatedDetectors.get(0);
+        when(detectorSource.findDetectors(Collections.singletonList(mappedUuid)))
+                .thenReturn(Collections.singletonMap(mappedUuid, detectorContainer));
+
+        assertTrue(manager.isPreloadEnabled());
+        assertEquals(1, manager.preload(Arrays.asList(mappedUuid, cachedUuid)));
+        verify(cachedDetectors).put(mappedUuid, detectorContainer);
+        verify(detectorSource, never()).findDetectors(argThat(uuids -> uuids.contains(cachedUuid)));
+    }
+
+    @Test
+    public void testPreload_skipsDetectorsNeedingDataInit() {
+        DetectorManager manager = preloadingManager();
+        when(detectorSource.findDetectors(Collections.singletonList(mappedUuid)))
+                .thenReturn(Collections.singletonMap(mappedUuid, detectorContainer));
+        when(dataInitializer.needsInitialization(detector)).thenReturn(true);
+
+        assertEquals(0, manager.preload(Collections.singletonList(mappedUuid)));
+        verify(cachedDetectors, never()).put(any(), any());
+    }
+
+    @Test
+    public void testReplayLoadedDetectors_syncLoading() {
+        assertTrue(managerUnderTest.replayLoadedDetectors().isEmpty());
+    }
+
     @Test
     public void testClassify_returnsNullWhenDetectorErrors() {
         doThrow(new RuntimeException("Some Detector Failure")).when(detector).detect(goodMetricData);
@@ -246,6 +449,17 @@ public final class DetectorManagerTest {
         managerUnderTest.detect(null);
     }
 
+    private DetectorManager preloadingManager() {
+        when(config.hasPath("detector-preload-enabled")).thenReturn(true);
+        when(config.getBoolean("detector-preload-enabled")).thenReturn(true);
+        return new DetectorManager(detectorSource, dataInitializer, config, cachedDetectors, new MetricRegistry());
+    }
+
+    private static Detector ewmaDetector(UUID uuid) {
+        return new ForecastingDetector(uuid, new EwmaPointForecaster(), new ExponentialWelfordIntervalForecaster(),
+                AnomalyType.TWO_TAILED, true, "ewma");
+    }
+
     private void initTestObjects() {
         this.mappedUuid = UUID.randomUUID();
         this.mappedUuid2 = UUID.randomUUID();
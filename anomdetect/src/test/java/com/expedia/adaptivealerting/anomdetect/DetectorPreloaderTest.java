@@ -0,0 +1,111 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect;
+
+import com.codahale.metrics.MetricRegistry;
+import com.expedia.adaptivealerting.anomdetect.detect.DetectorContainer;
+import com.expedia.adaptivealerting.anomdetect.source.DetectorException;
+import com.expedia.adaptivealerting.anomdetect.source.DetectorSource;
+import com.google.common.collect.ImmutableMap;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public final class DetectorPreloaderTest {
+    private final DetectorSource detectorSource = mock(DetectorSource.class);
+    private final DetectorContainer container = mock(DetectorContainer.class);
+    private final UUID uuid1 = UUID.randomUUID();
+    private final UUID uuid2 = UUID.randomUUID();
+    private final UUID uuid3 = UUID.randomUUID();
+    private MetricRegistry metricRegistry;
+
+    @Before
+    public void setUp() {
+        this.metricRegistry = new MetricRegistry();
+        when(detectorSource.findDetectors(anyCollection())).thenAnswer(invocation -> {
+            Collection<UUID> uuids = invocation.getArgument(0);
+            return uuids.stream().collect(Collectors.toMap(uuid -> uuid, uuid -> container));
+        });
+    }
+
+    @Test
+    public void testIsEnabled() {
+        assertFalse(DetectorPreloader.isEnabled(ConfigFactory.empty()));
+        assertTrue(DetectorPreloader.isEnabled(config(10)));
+    }
+
+    @Test
+    public void testFetchesInPages() {
+        DetectorPreloader preloaderUnderTest = new DetectorPreloader(config(2), metricRegistry, detectorSource);
+        Map<UUID, DetectorContainer> detectors = preloaderUnderTest.fetch(Arrays.asList(uuid1, uuid2, uuid3));
+
+        assertEquals(3, detectors.size());
+        assertSame(container, detectors.get(uuid3));
+        verify(detectorSource).findDetectors(Arrays.asList(uuid1, uuid2));
+        verify(detectorSource).findDetectors(Collections.singletonList(uuid3));
+        assertEquals(3, metricRegistry.meter("detector.preload.fetched").getCount());
+    }
+
+    @Test
+    public void testSkipsFailedPages() {
+        List<UUID> failedPage = Collections.singletonList(uuid1);
+        when(detectorSource.findDetectors(failedPage)).thenThrow(new DetectorException("Couldn't find detectors"));
+        DetectorPreloader preloaderUnderTest = new DetectorPreloader(config(1), metricRegistry, detectorSource);
+        Map<UUID, DetectorContainer> detectors = preloaderUnderTest.fetch(Arrays.asList(uuid1, uuid2));
+
+        assertEquals(Collections.singleton(uuid2), detectors.keySet());
+        assertEquals(1, metricRegistry.meter("detector.preload.failure").getCount());
+    }
+
+    @Test
+    public void testFetchNothing() {
+        DetectorPreloader preloaderUnderTest = new DetectorPreloader(config(10), metricRegistry, detectorSource);
+        assertTrue(preloaderUnderTest.fetch(Collections.emptyList()).isEmpty());
+        verify(detectorSource, never()).findDetectors(any());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidPageSize() {
+        new DetectorPreloader(config(0), metricRegistry, detectorSource);
+    }
+
+    private static Config config(int pageSize) {
+        return ConfigFactory.parseMap(ImmutableMap.of(
+                "detector-preload-enabled", true,
+                "detector-preload-page-size", pageSize,
+                "detector-preload-threads", 2));
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.backtest;
+
+import com.expedia.adaptivealerting.anomdetect.detect.AbstractDetectorFactoryTest;
+import com.expedia.adaptivealerting.anomdetect.detect.AnomalyLevel;
+import com.expedia.adaptivealerting.anomdetect.detect.outlier.OutlierDetectorResult;
+import com.expedia.adaptivealerting.anomdetect.forecast.eval.algo.RmsePointForecastEvaluator;
+import com.expedia.adaptivealerting.anomdetect.source.DetectorDocument;
+import com.expedia.adaptivealerting.anomdetect.source.DetectorFactory;
+import com.expedia.adaptivealerting.anomdetect.util.MetricFrame;
+import com.expedia.adaptivealerting.anomdetect.util.MetricFrameLoader;
+import lombok.val;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static com.expedia.adaptivealerting.anomdetect.util.TestFileHelper.getResourceAsFile;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BacktestEngineTest extends AbstractDetectorFactoryTest {
+    private static final double TOLERANCE = 1e-9;
+
+    private BacktestEngine engineUnderTest;
+    private MetricFrame frame;
+    private List<BacktestSeries> series;
+
+    @Before
+    public void setUp() throws Exception {
+        this.engineUnderTest = new BacktestEngine(new DetectorFactory(), 4);
+        this.frame = MetricFrameLoader.loadCsv(
+                getResourceAsFile("datasets/cal-inflow-metric-def.json"),
+                getResourceAsFile("datasets/cal-inflow-2.csv"),
+                true);
+        val whole = BacktestSeries.fromMetricFrame("cal-inflow", frame);
+        val half = new BacktestSeries(
+                "cal-inflow-first-half",
+                Arrays.copyOf(whole.getValues(), whole.size() / 2),
+                Arrays.copyOf(whole.getEpochSeconds(), whole.size() / 2));
+        this.series = Arrays.asList(whole, half);
+    }
+
+    @After
+    public void tearDown() {
+        engineUnderTest.close();
+    }
+
+    @Test
+    public void testRun() {
+        val documents = Arrays.asList(
+                readDocument("constant-threshold"),
+                readDocument("cusum"),
+                readDocument("ewma"),
+                readDocument("pewma"),
+                readDocument("individuals"));
+
+        val results = engineUnderTest.run(documents, series);
+
+        assertEquals(documents.size() * series.size(), results.size());
+        for (int i = 0; i < results.size(); i++) {
+            val document = documents.get(i / series.size());
+            val s = series.get(i % series.size());
+            val result = results.get(i);
+            assertEquals(document.getUuid(), result.getDetectorUuid());
+            assertEquals(document.getType(), result.getDetectorType());
+            assertEquals(s.getName(), result.getSeries());
+            assertEquals(s.size(), result.getNumObservations());
+            assertNull(result.getError());
+            assertExpectedResult(document, s.size(), result);
+        }
+    }
+
+    @Test
+    public void testRun_recordsErrors() {
+        val documents = Arrays.asList(readDocument("edmx"), readDocument("invalid-type"), readDocument("cusum"));
+
+        val results = engineUnderTest.run(documents, series.subList(0, 1));
+
+        assertEquals(3, results.size());
+        assertNotNull(results.get(0).getError());
+        assertNotNull(results.get(1).getError());
+        assertNull(results.get(2).getError());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRun_nullDocuments() {
+        engineUnderTest.run(null, series);
+    }
+
+    /**
+     * Compares a backtest result with running the detector over the series one observation at a time.
+     */
+    private void assertExpectedResult(DetectorDocument document, int numRows, BacktestResult result) {
+        val detector = new DetectorFactory().buildDetector(document);
+        val evaluator = new RmsePointForecastEvaluator();
+        int numWeak = 0;
+        int numStrong = 0;
+        int numPredicted = 0;
+        for (int i = 0; i < numRows; i++) {
+            val metricData = frame.getMetricDataPoint(i);
+            val detectorResult = (OutlierDetectorResult) detector.detect(metricData);
+            if (detectorResult.getAnomalyLevel() == AnomalyLevel.WEAK) {
+                numWeak++;
+            } else if (detectorResult.getAnomalyLevel() == AnomalyLevel.STRONG) {
+                numStrong++;
+            }
+            if (detectorResult.getPredicted() != null) {
+                evaluator.update(metricData.getValue(), detectorResult.getPredicted());
+                numPredicted++;
+            }
+        }
+        assertEquals(numWeak, result.getNumWeak());
+        assertEquals(numStrong, result.getNumStrong());
+        if (numPredicted == 0) {
+            assertNull(result.getRmse());
+        } else {
+            assertEquals(evaluator.evaluate().getEvaluatorScore(), result.getRmse(), TOLERANCE);
+        }
+        assertTrue(result.getCpuTimeNanos() >= -1L);
+        assertTrue(result.getAllocatedBytes() >= -1L);
+    }
+}
@@ -44,6 +44,18 @@ public class EdmxDetectorFactoryProviderTest extends AbstractDetectorFactoryTest
         assertEquals(0.05, hyperparams.getWeakAlpha(), TOLERANCE);
     }
 
+    @Test
+    public void testBuildDetector_fastEstimator() {
+        val factoryUnderTest = new EdmxDetectorFactoryProvider();
+        val document = readDocument("edmx-fast");
+        val detector = factoryUnderTest.buildDetector(document);
+        val hyperparams = detector.getHyperparams();
+
+        assertEquals(EdmxEstimatorType.FAST, hyperparams.getEstimatorType());
+        assertEquals(4, hyperparams.getParallelism());
+        assertEquals(Long.valueOf(314159L), hyperparams.getRandomSeed());
+    }
+
     @Test(expected = RuntimeException.class)
     public void testBuild_invalidUuid() {
         readDocument("edmx-invalid-uuid");
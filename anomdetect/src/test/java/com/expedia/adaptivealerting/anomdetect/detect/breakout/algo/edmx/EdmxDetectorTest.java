@@ -15,6 +15,7 @@
  */
 package com.expedia.adaptivealerting.anomdetect.detect.breakout.algo.edmx;
 
+import com.expedia.adaptivealerting.anomdetect.detect.AnomalyLevel;
 import com.expedia.adaptivealerting.anomdetect.detect.breakout.algo.edmx.EdmxDetector;
 import com.expedia.adaptivealerting.anomdetect.detect.breakout.algo.edmx.EdmxDetectorResult;
 import com.expedia.adaptivealerting.anomdetect.detect.breakout.algo.edmx.EdmxHyperparams;
@@ -65,6 +66,43 @@ public final class EdmxDetectorTest {
         }
     }
 
+    @Test
+    public void testDetect_whiteNoiseWithBreakout_fastEstimator() throws Exception {
+        val bufferSize = 40;
+
+        val hyperparams = new EdmxHyperparams()
+                .setBufferSize(bufferSize)
+                .setDelta(6)
+                .setNumPerms(199)
+                .setStrongAlpha(0.01)
+                .setWeakAlpha(0.05)
+                .setEstimatorType(EdmxEstimatorType.FAST)
+                .setParallelism(2)
+                .setRandomSeed(314159L);
+        val detectorUnderTest = new EdmxDetector(UUID.randomUUID(), hyperparams, true);
+        val standardDetector = new EdmxDetector(
+                UUID.randomUUID(),
+                new EdmxHyperparams().setBufferSize(bufferSize).setDelta(6).setNumPerms(0),
+                true);
+
+        val metricDef = TestObjectMother.metricDefinition();
+        val is = ClassLoader.getSystemResourceAsStream("datasets/white-noise-with-breakout-at-row-600.csv");
+        val metricFrame = MetricFrameLoader.loadCsv(metricDef, is, false);
+        val metricDataList = metricFrame.getMetricData();
+
+        EdmxDetectorResult result = null;
+        EdmxDetectorResult standardResult = null;
+        for (int i = 0; i < 620; i++) {
+            val metricData = metricDataList.get(i);
+            result = (EdmxDetectorResult) detectorUnderTest.detect(metricData);
+            standardResult = (EdmxDetectorResult) standardDetector.detect(metricData);
+            assertEquals(i < bufferSize - 1, result.isWarmup());
+        }
+
+        assertEquals(standardResult.getTimestamp(), result.getTimestamp());
+        assertEquals(AnomalyLevel.STRONG, result.getAnomalyLevel());
+    }
+
     @Test
     public void testName() {
         val hyperparams = new EdmxHyperparams()
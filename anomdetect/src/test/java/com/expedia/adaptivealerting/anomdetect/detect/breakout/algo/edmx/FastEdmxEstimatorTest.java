@@ -0,0 +1,140 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.detect.breakout.algo.edmx;
+
+import com.expedia.adaptivealerting.anomdetect.util.MetricFrameLoader;
+import com.expedia.adaptivealerting.anomdetect.util.TestObjectMother;
+import lombok.val;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FastEdmxEstimatorTest {
+    private static final double TOLERANCE = 0.001;
+    private static final long RANDOM_SEED = 314159;
+
+    private Random random;
+    private double[] whiteNoise;
+
+    @Before
+    public void setUp() throws Exception {
+        this.random = new Random(RANDOM_SEED);
+
+        val metricDef = TestObjectMother.metricDefinition();
+        val is = ClassLoader.getSystemResourceAsStream("datasets/white-noise-with-breakout-at-row-600.csv");
+        val metricFrame = MetricFrameLoader.loadCsv(metricDef, is, false);
+        this.whiteNoise = metricFrame.getMetricData().stream()
+                .mapToDouble(metricData -> metricData.getValue())
+                .toArray();
+    }
+
+    @Test
+    public void testEstimate_range0() {
+        val data = new double[100];
+        Arrays.fill(data, 1.0);
+        val estimate = new FastEdmxEstimator(hyperparams(24, 0, 1)).estimate(data);
+        assertEquals(-1, estimate.getLocation());
+    }
+
+    @Test
+    public void testEstimate_matchesStandardEstimator() {
+        testMatchesStandardEstimator(Arrays.copyOfRange(whiteNoise, 0, 1000), 24);
+        testMatchesStandardEstimator(Arrays.copyOfRange(whiteNoise, 579, 620), 20);
+        testMatchesStandardEstimator(Arrays.copyOfRange(whiteNoise, 589, 610), 5);
+
+        for (int trial = 0; trial < 10; trial++) {
+            val data = new double[50];
+            for (int i = 0; i < data.length; i++) {
+                data[i] = random.nextGaussian() + (i >= 30 ? trial : 0.0);
+            }
+            testMatchesStandardEstimator(data, 5);
+        }
+    }
+
+    @Test
+    public void testEstimate_strongBreakout() {
+        val data = Arrays.copyOfRange(whiteNoise, 500, 700);
+        val estimate = new FastEdmxEstimator(hyperparams(10, 199, 1)).estimate(data);
+        assertEquals(100, estimate.getLocation());
+        assertTrue(estimate.getPValue() <= 0.01);
+    }
+
+    @Test
+    public void testEstimate_noBreakout() {
+        val data = new double[100];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = random.nextGaussian();
+        }
+        val estimate = new FastEdmxEstimator(hyperparams(10, 199, 1)).estimate(data);
+        assertTrue(estimate.getPValue() > 0.05);
+    }
+
+    @Test
+    public void testEstimate_deterministicAcrossParallelism() {
+        val data = new double[60];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = random.nextGaussian() + (i >= 40 ? 0.8 : 0.0);
+        }
+
+        val sequential = new FastEdmxEstimator(hyperparams(6, 199, 1)).estimate(data);
+        val parallel = new FastEdmxEstimator(hyperparams(6, 199, 3)).estimate(data);
+        assertEquals(sequential, parallel);
+    }
+
+    @Test
+    public void testEstimate_unseeded() {
+        val data = Arrays.copyOfRange(whiteNoise, 500, 700);
+        val hyperparams = hyperparams(10, 99, 2).setRandomSeed(null);
+        val estimate = new FastEdmxEstimator(hyperparams).estimate(data);
+        assertEquals(100, estimate.getLocation());
+        assertTrue(estimate.getPValue() <= 0.01);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEstimate_insufficientData() {
+        new FastEdmxEstimator(hyperparams(6, 0, 1)).estimate(new double[11]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructor_invalidParallelism() {
+        new FastEdmxEstimator(hyperparams(6, 0, 0));
+    }
+
+    private void testMatchesStandardEstimator(double[] data, int delta) {
+        val expected = EdmxEstimator.estimate(data, delta, 0);
+        val actual = new FastEdmxEstimator(hyperparams(delta, 0, 1)).estimate(data);
+        assertEquals(expected.getLocation(), actual.getLocation());
+        assertEquals(expected.getEnergyDistance(), actual.getEnergyDistance(), 0.0);
+        assertEquals(expected.getPreBreakoutMedian(), actual.getPreBreakoutMedian(), 0.0);
+        assertEquals(expected.getPostBreakoutMedian(), actual.getPostBreakoutMedian(), 0.0);
+        assertEquals(0.0, actual.getPValue(), TOLERANCE);
+    }
+
+    private EdmxHyperparams hyperparams(int delta, int numPerms, int parallelism) {
+        return new EdmxHyperparams()
+                .setDelta(delta)
+                .setBufferSize(2 * delta)
+                .setNumPerms(numPerms)
+                .setEstimatorType(EdmxEstimatorType.FAST)
+                .setParallelism(parallelism)
+                .setRandomSeed(RANDOM_SEED);
+    }
+}
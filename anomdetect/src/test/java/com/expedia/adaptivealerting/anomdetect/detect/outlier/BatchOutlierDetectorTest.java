@@ -0,0 +1,220 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.detect.outlier;
+
+import com.expedia.adaptivealerting.anomdetect.detect.AnomalyThresholds;
+import com.expedia.adaptivealerting.anomdetect.detect.AnomalyType;
+import com.expedia.adaptivealerting.anomdetect.detect.Detector;
+import com.expedia.adaptivealerting.anomdetect.detect.DetectorResult;
+import com.expedia.adaptivealerting.anomdetect.detect.outlier.algo.constant.ConstantThresholdDetector;
+import com.expedia.adaptivealerting.anomdetect.detect.outlier.algo.constant.ConstantThresholdDetectorParams;
+import com.expedia.adaptivealerting.anomdetect.detect.outlier.algo.cusum.CusumDetector;
+import com.expedia.adaptivealerting.anomdetect.detect.outlier.algo.cusum.CusumDetectorParams;
+import com.expedia.adaptivealerting.anomdetect.detect.outlier.algo.forecasting.ForecastingDetector;
+import com.expedia.adaptivealerting.anomdetect.detect.outlier.algo.individuals.IndividualsDetector;
+import com.expedia.adaptivealerting.anomdetect.detect.outlier.algo.individuals.IndividualsDetectorParams;
+import com.expedia.adaptivealerting.anomdetect.forecast.interval.IntervalForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.interval.algo.additive.AdditiveIntervalForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.interval.algo.additive.AdditiveIntervalForecasterParams;
+import com.expedia.adaptivealerting.anomdetect.forecast.interval.algo.expwelford.ExponentialWelfordIntervalForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.interval.algo.multiplicative.MultiplicativeIntervalForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.interval.algo.multiplicative.MultiplicativeIntervalForecasterParams;
+import com.expedia.adaptivealerting.anomdetect.forecast.interval.algo.powerlaw.PowerLawIntervalForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.interval.algo.powerlaw.PowerLawIntervalForecasterParams;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.PointForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.algo.ewma.EwmaPointForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.algo.naive.NaivePointForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.algo.pewma.PewmaPointForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.algo.seasonalnaive.SeasonalNaivePointForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.algo.seasonalnaive.SeasonalNaivePointForecasterParams;
+import com.expedia.adaptivealerting.anomdetect.util.MetricUtil;
+import com.expedia.metrics.MetricData;
+import lombok.val;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class BatchOutlierDetectorTest {
+    private static final int SIZE = 500;
+    private static final int INTERVAL = 60;
+
+    private double[] values;
+    private long[] epochSeconds;
+
+    @Before
+    public void setUp() {
+        val random = new Random(42);
+        this.values = new double[SIZE];
+        this.epochSeconds = new long[SIZE];
+        long epochSecond = 1_500_000_000L;
+        for (int i = 0; i < SIZE; i++) {
+            values[i] = 100.0 + 20.0 * Math.sin(i / 10.0) + 5.0 * random.nextGaussian() + (i % 97 == 0 ? 80.0 : 0.0);
+            // Skip the odd interval, so that seasonal forecasters see missing values.
+            epochSecond += i % 37 == 0 ? 2 * INTERVAL : INTERVAL;
+            epochSeconds[i] = epochSecond;
+        }
+    }
+
+    @Test
+    public void testConstantThresholdDetector() {
+        val params = new ConstantThresholdDetectorParams()
+                .setType(AnomalyType.TWO_TAILED)
+                .setThresholds(new AnomalyThresholds(130.0, 120.0, null, 70.0));
+        assertBatchMatches(() -> new ConstantThresholdDetector(UUID.randomUUID(), params, true));
+    }
+
+    @Test
+    public void testCusumDetector() {
+        val params = new CusumDetectorParams()
+                .setType(AnomalyType.TWO_TAILED)
+                .setTargetValue(100.0)
+                .setWeakSigmas(3.0)
+                .setStrongSigmas(4.0)
+                .setSlackParam(0.5)
+                .setInitMeanEstimate(100.0)
+                .setWarmUpPeriod(25);
+        assertBatchMatches(() -> new CusumDetector(UUID.randomUUID(), params, true));
+    }
+
+    @Test
+    public void testIndividualsDetector() {
+        val params = new IndividualsDetectorParams()
+                .setInitValue(100.0)
+                .setInitMeanEstimate(100.0)
+                .setWarmUpPeriod(30)
+                .setStrongSigmas(3.0);
+        assertBatchMatches(() -> new IndividualsDetector(UUID.randomUUID(), params, false, "individuals"));
+    }
+
+    @Test
+    public void testForecastingDetector_ewmaExponentialWelford() {
+        assertBatchMatches(() -> forecastingDetector(new EwmaPointForecaster(), new ExponentialWelfordIntervalForecaster()));
+    }
+
+    @Test
+    public void testForecastingDetector_pewmaPowerLaw() {
+        val params = new PowerLawIntervalForecasterParams()
+                .setAlpha(1.0)
+                .setBeta(0.5)
+                .setWeakMultiplier(2.0)
+                .setStrongMultiplier(3.0);
+        assertBatchMatches(() -> forecastingDetector(new PewmaPointForecaster(), new PowerLawIntervalForecaster(params)));
+    }
+
+    @Test
+    public void testForecastingDetector_seasonalNaiveMultiplicative() {
+        val pointParams = new SeasonalNaivePointForecasterParams()
+                .setCycleLength(50)
+                .setIntervalLength(INTERVAL);
+        val intervalParams = new MultiplicativeIntervalForecasterParams()
+                .setWeakMultiplier(0.2)
+                .setStrongMultiplier(0.3);
+        assertBatchMatches(() -> forecastingDetector(
+                new SeasonalNaivePointForecaster(pointParams), new MultiplicativeIntervalForecaster(intervalParams)));
+    }
+
+    @Test
+    public void testForecastingDetector_defaultPointForecast() {
+        val params = new AdditiveIntervalForecasterParams()
+                .setWeakValue(10.0)
+                .setStrongValue(20.0);
+        assertBatchMatches(() -> forecastingDetector(new NaivePointForecaster(), new AdditiveIntervalForecaster(params)));
+    }
+
+    @Test
+    public void testDetectAll_perObservationFallback() {
+        val params = new ConstantThresholdDetectorParams()
+                .setType(AnomalyType.RIGHT_TAILED)
+                .setThresholds(new AnomalyThresholds(130.0, 120.0, null, null));
+        val batchDetector = new ConstantThresholdDetector(UUID.randomUUID(), params, true);
+
+        // Hides the batch implementation from detectAll().
+        Detector detector = new Detector() {
+            @Override
+            public UUID getUuid() {
+                return batchDetector.getUuid();
+            }
+
+            @Override
+            public boolean isTrusted() {
+                return batchDetector.isTrusted();
+            }
+
+            @Override
+            public DetectorResult detect(MetricData metricData) {
+                return batchDetector.detect(metricData);
+            }
+
+            @Override
+            public String getName() {
+                return batchDetector.getName();
+            }
+        };
+
+        val expected = BatchOutlierDetector.detectAll(batchDetector, values, epochSeconds);
+        val actual = BatchOutlierDetector.detectAll(detector, values, epochSeconds);
+        for (int i = 0; i < SIZE; i++) {
+            assertEquals(expected.toOutlierDetectorResult(i), actual.toOutlierDetectorResult(i));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDetect_lengthExceedsCapacity() {
+        val params = new CusumDetectorParams().setType(AnomalyType.TWO_TAILED);
+        new CusumDetector(UUID.randomUUID(), params, true)
+                .detect(values, epochSeconds, SIZE, new OutlierDetectorBatchResult(SIZE - 1));
+    }
+
+    private ForecastingDetector forecastingDetector(PointForecaster pointForecaster, IntervalForecaster intervalForecaster) {
+        return new ForecastingDetector(
+                UUID.randomUUID(), pointForecaster, intervalForecaster, AnomalyType.TWO_TAILED, true, "forecasting");
+    }
+
+    /**
+     * Checks that a fresh detector produces the same results in batch as it does one observation at a time. The batch
+     * runs in two halves, to check that batches pick up where earlier ones left off.
+     */
+    private void assertBatchMatches(Supplier<? extends BatchOutlierDetector> detectorSupplier) {
+        val perObservation = detectorSupplier.get();
+        val metricDefinition = MetricUtil.metricDefinition();
+
+        val batch = detectorSupplier.get();
+        val half = SIZE / 2;
+        val first = new OutlierDetectorBatchResult(SIZE);
+        batch.detect(values, epochSeconds, half, first);
+        val second = new OutlierDetectorBatchResult(SIZE);
+        batch.detect(
+                Arrays.copyOfRange(values, half, SIZE),
+                Arrays.copyOfRange(epochSeconds, half, SIZE),
+                SIZE - half,
+                second);
+
+        for (int i = 0; i < SIZE; i++) {
+            val metricData = MetricUtil.metricData(metricDefinition, values[i], epochSeconds[i]);
+            val expected = (OutlierDetectorResult) perObservation.detect(metricData);
+            val actual = i < half ? first.toOutlierDetectorResult(i) : second.toOutlierDetectorResult(i - half);
+            assertEquals("Observation " + i, expected, actual);
+            assertSame(expected.getAnomalyLevel(), actual.getAnomalyLevel());
+        }
+    }
+}
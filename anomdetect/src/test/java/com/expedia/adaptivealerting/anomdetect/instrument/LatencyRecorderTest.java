@@ -0,0 +1,85 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.instrument;
+
+import lombok.val;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public final class LatencyRecorderTest {
+    private static final long WINDOW_MILLIS = 60_000L;
+    private static final double TOLERANCE = 0.01;
+
+    private LatencyRecorder recorderUnderTest;
+
+    @Before
+    public void setUp() {
+        this.recorderUnderTest = new LatencyRecorder(WINDOW_MILLIS, 0L);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructor_nonPositiveWindow() {
+        new LatencyRecorder(0L, 0L);
+    }
+
+    @Test
+    public void testSnapshot_percentiles() {
+        for (int i = 1; i <= 1000; i++) {
+            recorderUnderTest.record(TimeUnit.MICROSECONDS.toNanos(i));
+        }
+        val snapshot = recorderUnderTest.snapshot(1000L);
+        assertEquals(1000, snapshot.getCount());
+        assertEquals(500.0, snapshot.getP50(), 500.0 * TOLERANCE);
+        assertEquals(990.0, snapshot.getP99(), 990.0 * TOLERANCE);
+        assertEquals(999.0, snapshot.getP999(), 999.0 * TOLERANCE);
+        assertEquals(1000.0, snapshot.getMax(), 1000.0 * TOLERANCE);
+    }
+
+    @Test
+    public void testSnapshot_empty() {
+        val snapshot = recorderUnderTest.snapshot(1000L);
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0.0, snapshot.getP99(), 0.0);
+    }
+
+    @Test
+    public void testSnapshot_clampsOutOfRangeLatencies() {
+        recorderUnderTest.record(-1L);
+        recorderUnderTest.record(Long.MAX_VALUE);
+        val snapshot = recorderUnderTest.snapshot(1000L);
+        assertEquals(2, snapshot.getCount());
+        assertEquals(LatencyRecorder.HIGHEST_TRACKABLE_NANOS / 1000.0, snapshot.getMax(),
+                LatencyRecorder.HIGHEST_TRACKABLE_NANOS / 1000.0 * TOLERANCE);
+    }
+
+    @Test
+    public void testSnapshot_coversCurrentAndPreviousWindow() {
+        recorderUnderTest.record(1000L);
+        assertEquals(1, recorderUnderTest.snapshot(WINDOW_MILLIS / 2).getCount());
+
+        // The first window ends, but stays in the snapshot as the previous window.
+        recorderUnderTest.record(1000L);
+        assertEquals(2, recorderUnderTest.snapshot(WINDOW_MILLIS).getCount());
+
+        // The second window ends, and the first drops out.
+        recorderUnderTest.record(1000L);
+        assertEquals(1, recorderUnderTest.snapshot(2 * WINDOW_MILLIS).getCount());
+    }
+}
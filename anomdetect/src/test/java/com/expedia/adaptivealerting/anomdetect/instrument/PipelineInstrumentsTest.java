@@ -0,0 +1,108 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.instrument;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.expedia.adaptivealerting.anomdetect.detect.AnomalyLevel;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.val;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public final class PipelineInstrumentsTest {
+    private static final String DETECTOR_NAME = "constant-detector";
+
+    private MetricRegistry metricRegistry;
+    private PipelineInstruments instrumentsUnderTest;
+
+    @Before
+    public void setUp() {
+        this.metricRegistry = new MetricRegistry();
+        this.instrumentsUnderTest = new PipelineInstruments(metricRegistry);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructor_nullMetricRegistry() {
+        new PipelineInstruments(null);
+    }
+
+    @Test
+    public void testForDetector_cachesHandles() {
+        assertSame(instrumentsUnderTest.forDetector(DETECTOR_NAME), instrumentsUnderTest.forDetector(DETECTOR_NAME));
+        assertSame(metricRegistry.meter("detector." + DETECTOR_NAME + ".STRONG"),
+                instrumentsUnderTest.forDetector(DETECTOR_NAME).levelMeter(AnomalyLevel.STRONG));
+        assertSame(metricRegistry.meter("detector." + DETECTOR_NAME + ".NONE"),
+                instrumentsUnderTest.forDetector(DETECTOR_NAME).levelMeter(null));
+    }
+
+    @Test
+    public void testRecordDetect() {
+        val detectorInstruments = instrumentsUnderTest.forDetector(DETECTOR_NAME);
+        detectorInstruments.recordDetect(TimeUnit.MICROSECONDS.toNanos(100), AnomalyLevel.NORMAL);
+        detectorInstruments.recordDetect(TimeUnit.MICROSECONDS.toNanos(100), AnomalyLevel.STRONG);
+
+        assertEquals(2, metricRegistry.timer("detector." + DETECTOR_NAME + ".detect").getCount());
+        assertEquals(1, metricRegistry.meter("detector." + DETECTOR_NAME + ".NORMAL").getCount());
+        assertEquals(1, metricRegistry.meter("detector." + DETECTOR_NAME + ".STRONG").getCount());
+
+        val snapshots = instrumentsUnderTest.snapshot();
+        assertEquals(Arrays.asList("lookup", "data-init", "detect", "produce", "detect." + DETECTOR_NAME),
+                Arrays.asList(snapshots.keySet().toArray()));
+        assertEquals(2, snapshots.get("detect").getCount());
+        assertEquals(2, snapshots.get("detect." + DETECTOR_NAME).getCount());
+        assertEquals(100.0, snapshots.get("detect." + DETECTOR_NAME).getP99(), 1.0);
+    }
+
+    @Test
+    public void testGauges() {
+        instrumentsUnderTest.record(Stage.PRODUCE, TimeUnit.MILLISECONDS.toNanos(5));
+        val gauge = (Gauge<?>) metricRegistry.getGauges().get("detector.latency.produce.p99");
+        assertEquals(5000.0, (Double) gauge.getValue(), 50.0);
+        assertTrue(metricRegistry.getGauges().containsKey("detector.latency.lookup.p999"));
+    }
+
+    @Test
+    public void testGauges_replacedByLaterInstruments() {
+        val laterInstruments = new PipelineInstruments(metricRegistry);
+        laterInstruments.record(Stage.LOOKUP, TimeUnit.MILLISECONDS.toNanos(5));
+        val gauge = (Gauge<?>) metricRegistry.getGauges().get("detector.latency.lookup.p50");
+        assertEquals(5000.0, (Double) gauge.getValue(), 50.0);
+    }
+
+    @Test
+    public void testSnapshotServer() throws Exception {
+        instrumentsUnderTest.record(Stage.LOOKUP, TimeUnit.MICROSECONDS.toNanos(10));
+        try (val server = new LatencySnapshotServer(instrumentsUnderTest, 0)) {
+            val url = new URL("http://localhost:" + server.getPort() + LatencySnapshotServer.PATH);
+            val connection = (HttpURLConnection) url.openConnection();
+            assertEquals(200, connection.getResponseCode());
+            val body = new ObjectMapper().readTree(connection.getInputStream());
+            assertEquals(1, body.path("lookup").path("count").asLong());
+            assertEquals(10.0, body.path("lookup").path("p99").asDouble(), 0.1);
+            assertTrue(body.has("produce"));
+        }
+    }
+}
@@ -19,6 +19,7 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -62,6 +63,14 @@ public class CacheUtilTest {
         Assert.assertEquals(cacheKey, CacheUtil.getKey(tags));
     }
 
+    @Test
+    public void getKeyEntries() {
+        initMap();
+        Assert.assertEquals("key1->dmFsdWUx", CacheUtil.getKeyEntry("key1", "value1"));
+        Assert.assertEquals(Arrays.asList("key1->dmFsdWUx", "key2->dmFsdWUy", "key3->dmFsdWUz", "key4->dmFsdWU0"),
+                CacheUtil.getKeyEntries(cacheKey));
+    }
+
     @Test
     public void getTags() {
         initMap();
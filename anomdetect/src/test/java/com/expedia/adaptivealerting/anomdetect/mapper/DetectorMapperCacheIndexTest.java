@@ -0,0 +1,101 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.mapper;
+
+import com.google.common.collect.ImmutableSet;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+
+import static com.expedia.adaptivealerting.anomdetect.mapper.ExpressionMatcherTest.expression;
+import static com.expedia.adaptivealerting.anomdetect.mapper.ExpressionMatcherTest.field;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class DetectorMapperCacheIndexTest {
+    private static final Detector DETECTOR_ONE = new Detector("cid", UUID.randomUUID());
+    private static final Detector DETECTOR_TWO = new Detector("cid", UUID.randomUUID());
+
+    private DetectorMapperCacheIndex<String> indexUnderTest;
+
+    @Before
+    public void setUp() {
+        this.indexUnderTest = new DetectorMapperCacheIndex<>();
+        indexUnderTest.add("hotels", Arrays.asList(entry("lob", "hotels"), entry("pos", "expedia.com")),
+                Arrays.asList(DETECTOR_ONE, DETECTOR_TWO));
+        indexUnderTest.add("flight", Arrays.asList(entry("lob", "flight"), entry("pos", "expedia.com")),
+                Collections.singletonList(DETECTOR_TWO));
+    }
+
+    @Test
+    public void testKeysWithDetector() {
+        assertEquals(ImmutableSet.of("hotels"), indexUnderTest.keysWithDetector(DETECTOR_ONE.getUuid()));
+        assertEquals(ImmutableSet.of("hotels", "flight"), indexUnderTest.keysWithDetector(DETECTOR_TWO.getUuid()));
+        assertEquals(Collections.emptySet(), indexUnderTest.keysWithDetector(UUID.randomUUID()));
+    }
+
+    @Test
+    public void testCandidateKeys_and() {
+        assertEquals(ImmutableSet.of("hotels"),
+                indexUnderTest.candidateKeys(expression(Operator.AND, field("pos", "expedia.com"), field("lob", "hotels"))));
+        assertEquals(Collections.emptySet(),
+                indexUnderTest.candidateKeys(expression(Operator.AND, field("pos", "expedia.com"), field("lob", "cars"))));
+    }
+
+    @Test
+    public void testCandidateKeys_or() {
+        assertEquals(ImmutableSet.of("hotels", "flight"),
+                indexUnderTest.candidateKeys(expression(Operator.OR, field("lob", "flight"), field("lob", "hotels"))));
+        assertEquals(Collections.emptySet(), indexUnderTest.candidateKeys(expression(Operator.OR)));
+    }
+
+    @Test
+    public void testCandidateKeys_unbounded() {
+        assertNull(indexUnderTest.candidateKeys(expression(Operator.NOT, field("lob", "hotels"))));
+        assertNull(indexUnderTest.candidateKeys(expression(Operator.OR, field("lob", "hotels"),
+                nested(expression(Operator.NOT, field("lob", "flight"))))));
+        assertNull(indexUnderTest.candidateKeys(new ExpressionTree()));
+    }
+
+    @Test
+    public void testCandidateKeys_andBoundsNot() {
+        assertEquals(ImmutableSet.of("flight"), indexUnderTest.candidateKeys(expression(Operator.AND,
+                field("lob", "flight"), nested(expression(Operator.NOT, field("pos", "expedia.com"))))));
+    }
+
+    @Test
+    public void testRemove() {
+        indexUnderTest.remove("hotels", Arrays.asList(entry("lob", "hotels"), entry("pos", "expedia.com")),
+                Arrays.asList(DETECTOR_ONE, DETECTOR_TWO));
+
+        assertEquals(Collections.emptySet(), indexUnderTest.keysWithDetector(DETECTOR_ONE.getUuid()));
+        assertEquals(ImmutableSet.of("flight"), indexUnderTest.keysWithDetector(DETECTOR_TWO.getUuid()));
+        assertEquals(ImmutableSet.of("flight"), indexUnderTest.candidateKeys(expression(Operator.AND, field("pos", "expedia.com"))));
+    }
+
+    private static String entry(String key, String value) {
+        return CacheUtil.getKeyEntry(key, value);
+    }
+
+    private static Operand nested(ExpressionTree expression) {
+        Operand operand = new Operand();
+        operand.setExpression(expression);
+        return operand;
+    }
+}
@@ -25,11 +25,14 @@ import org.mockito.MockitoAnnotations;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import static com.expedia.adaptivealerting.anomdetect.util.TestFileHelper.getResourceAsFile;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
@@ -37,11 +40,13 @@ import static org.junit.Assert.assertTrue;
 public class DetectorMapperCacheRefreshTest {
 
     private DetectorMapperCache detectorMapperCache;
+    private DetectorMapperCache binaryDetectorMapperCache;
 
     @Before
     public void setUp() {
         MockitoAnnotations.initMocks(this);
         this.detectorMapperCache = new DetectorMapperCache(new MetricRegistry());
+        this.binaryDetectorMapperCache = new DetectorMapperCache(new MetricRegistry(), DetectorMapperCacheMode.BINARY);
     }
 
     @Test
@@ -97,6 +102,136 @@ public class DetectorMapperCacheRefreshTest {
 
     }
 
+    @Test
+    public void removeTest_binaryMode() {
+        String updateId1 = "774a5e3a-9ef4-48c7-a1e8-f09a623f45fb";
+        String unchangedId = "936e9f6b-4f83-4f09-bd5e-dee62657e5e2";
+        List<DetectorMapping> detectorMappings = Collections.singletonList(
+                new DetectorMapping().setDetector(buildDetector(updateId1)).setEnabled(false));
+
+        Map<String, String> affectedTags = ImmutableMap.of("lob", "hotels");
+        Map<String, String> unaffectedTags = ImmutableMap.of("lob", "flight");
+        binaryDetectorMapperCache.put(affectedTags, Arrays.asList(buildDetector(unchangedId), buildDetector(updateId1)));
+        binaryDetectorMapperCache.put(unaffectedTags, Collections.singletonList(buildDetector(unchangedId)));
+
+        binaryDetectorMapperCache.removeDisabledDetectorMappings(detectorMappings);
+
+        assertEquals(Collections.singletonList(buildDetector(unchangedId)), binaryDetectorMapperCache.get(affectedTags));
+        assertEquals(Collections.singletonList(buildDetector(unchangedId)), binaryDetectorMapperCache.get(unaffectedTags));
+    }
+
+    @Test
+    public void updateTest_binaryMode() throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+
+        List<DetectorMapping> newDetectorMappings = mapper.readValue(
+                getResourceAsFile("testDetectorMapping.json"),
+                new TypeReference<List<DetectorMapping>>() {
+                });
+
+        Map<String, String> notMatchingTags = ImmutableMap.of("lob", "flight", "pos", "expedia.com");
+        Map<String, String> matchingTags = ImmutableMap.of("lob", "hotels", "pos", "expedia.com");
+
+        Detector d = buildDetector("2c49ba26-1a7d-43f4-b70c-c6644a2c1689");
+        List<Detector> detectors = Collections.singletonList(d);
+
+        binaryDetectorMapperCache.put(notMatchingTags, detectors);
+        binaryDetectorMapperCache.put(matchingTags, detectors);
+
+        binaryDetectorMapperCache.invalidateMetricsWithOldDetectorMappings(newDetectorMappings);
+
+        assertTrue(binaryDetectorMapperCache.get(notMatchingTags).contains(d));
+        assertTrue(binaryDetectorMapperCache.get(matchingTags).isEmpty());
+    }
+
+    @Test
+    public void updateTest_orExpression() {
+        Map<String, String> hotelsTags = ImmutableMap.of("lob", "hotels", "pos", "expedia.com");
+        Map<String, String> flightTags = ImmutableMap.of("lob", "flight", "pos", "expedia.com");
+        Map<String, String> carsTags = ImmutableMap.of("lob", "cars", "pos", "expedia.com");
+        List<Detector> detectors = Collections.singletonList(buildDetector("2c49ba26-1a7d-43f4-b70c-c6644a2c1689"));
+
+        for (DetectorMapperCache cache : Arrays.asList(detectorMapperCache, binaryDetectorMapperCache)) {
+            cache.put(hotelsTags, detectors);
+            cache.put(flightTags, detectors);
+            cache.put(carsTags, detectors);
+
+            cache.invalidateMetricsWithOldDetectorMappings(Collections.singletonList(buildMapping(
+                    ExpressionMatcherTest.expression(Operator.OR,
+                            ExpressionMatcherTest.field("lob", "hotels"),
+                            ExpressionMatcherTest.field("lob", "flight")))));
+
+            assertTrue(cache.get(hotelsTags).isEmpty());
+            assertTrue(cache.get(flightTags).isEmpty());
+            assertEquals(detectors, cache.get(carsTags));
+        }
+    }
+
+    @Test
+    public void updateTest_notExpression() {
+        Map<String, String> hotelsTags = ImmutableMap.of("lob", "hotels");
+        Map<String, String> flightTags = ImmutableMap.of("lob", "flight");
+        List<Detector> detectors = Collections.singletonList(buildDetector("2c49ba26-1a7d-43f4-b70c-c6644a2c1689"));
+
+        for (DetectorMapperCache cache : Arrays.asList(detectorMapperCache, binaryDetectorMapperCache)) {
+            cache.put(hotelsTags, detectors);
+            cache.put(flightTags, detectors);
+
+            cache.invalidateMetricsWithOldDetectorMappings(Collections.singletonList(buildMapping(
+                    ExpressionMatcherTest.expression(Operator.NOT, ExpressionMatcherTest.field("lob", "hotels")))));
+
+            assertEquals(detectors, cache.get(hotelsTags));
+            assertTrue(cache.get(flightTags).isEmpty());
+        }
+    }
+
+    @Test
+    public void updateTest_anyOfSeveralMappings() {
+        Map<String, String> hotelsTags = ImmutableMap.of("lob", "hotels");
+        Map<String, String> flightTags = ImmutableMap.of("lob", "flight");
+        Map<String, String> carsTags = ImmutableMap.of("lob", "cars");
+        List<Detector> detectors = Collections.singletonList(buildDetector("2c49ba26-1a7d-43f4-b70c-c6644a2c1689"));
+
+        for (DetectorMapperCache cache : Arrays.asList(detectorMapperCache, binaryDetectorMapperCache)) {
+            cache.put(hotelsTags, detectors);
+            cache.put(flightTags, detectors);
+            cache.put(carsTags, detectors);
+
+            cache.invalidateMetricsWithOldDetectorMappings(Arrays.asList(
+                    buildMapping(ExpressionMatcherTest.expression(Operator.AND, ExpressionMatcherTest.field("lob", "hotels"))),
+                    buildMapping(ExpressionMatcherTest.expression(Operator.AND, ExpressionMatcherTest.field("lob", "flight")))));
+
+            assertTrue(cache.get(hotelsTags).isEmpty());
+            assertTrue(cache.get(flightTags).isEmpty());
+            assertEquals(detectors, cache.get(carsTags));
+        }
+    }
+
+    @Test
+    public void removeTest_afterEntryIsReinserted() {
+        String disabledId = "774a5e3a-9ef4-48c7-a1e8-f09a623f45fb";
+        String unchangedId = "936e9f6b-4f83-4f09-bd5e-dee62657e5e2";
+        Map<String, String> tags = ImmutableMap.of("lob", "hotels");
+
+        for (DetectorMapperCache cache : Arrays.asList(detectorMapperCache, binaryDetectorMapperCache)) {
+            cache.put(tags, Arrays.asList(buildDetector(unchangedId), buildDetector(disabledId)));
+            cache.invalidateMetricsWithOldDetectorMappings(Collections.singletonList(buildMapping(
+                    ExpressionMatcherTest.expression(Operator.AND, ExpressionMatcherTest.field("lob", "hotels")))));
+            cache.put(tags, Collections.singletonList(buildDetector(disabledId)));
+
+            cache.removeDisabledDetectorMappings(Collections.singletonList(
+                    new DetectorMapping().setDetector(buildDetector(disabledId)).setEnabled(false)));
+
+            assertTrue(cache.get(tags).isEmpty());
+        }
+    }
+
+    private DetectorMapping buildMapping(ExpressionTree expression) {
+        return new DetectorMapping()
+                .setDetector(buildDetector("2c49ba26-1a7d-43f4-b70c-c6644a2c1689"))
+                .setExpression(expression);
+    }
+
     private Detector buildDetector(String detectorUuid) {
         return new Detector("cid", UUID.fromString(detectorUuid));
     }
@@ -17,6 +17,7 @@ package com.expedia.adaptivealerting.anomdetect.mapper;
 
 import com.codahale.metrics.MetricRegistry;
 import com.google.common.cache.Cache;
+import com.google.common.collect.ImmutableMap;
 import lombok.val;
 import org.junit.Assert;
 import org.junit.Before;
@@ -26,6 +27,8 @@ import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
@@ -68,6 +71,61 @@ public class DetectorMapperCacheTest {
 
     }
 
+    @Test
+    public void getAndPut_byTags() {
+        val tags = ImmutableMap.of("k1", "v1", "k2", "v2");
+        detectors = Collections.singletonList(new Detector("cid", UUID.randomUUID()));
+        detectorIds = CacheUtil.getDetectors(detectors);
+        Mockito.when(cache.getIfPresent(CacheUtil.getKey(tags))).thenReturn(detectorIds);
+
+        Assert.assertEquals(detectors, detectorMapperCache.get(tags));
+
+        detectorMapperCache.put(tags, detectors);
+        verify(cache, times(1)).put(CacheUtil.getKey(tags), detectorIds);
+    }
+
+    @Test
+    public void binaryMode_getAndPut() {
+        val binaryCache = new DetectorMapperCache(new MetricRegistry(), DetectorMapperCacheMode.BINARY);
+        val tags = ImmutableMap.of("k1", "v1", "k2", "v2");
+        detectors = Arrays.asList(new Detector("cid", UUID.randomUUID()), new Detector("", UUID.randomUUID()));
+
+        Assert.assertEquals(Collections.emptyList(), binaryCache.get(tags));
+
+        binaryCache.put(tags, detectors);
+        Assert.assertEquals(detectors, binaryCache.get(tags));
+        Assert.assertEquals(detectors, binaryCache.get(ImmutableMap.of("k2", "v2", "k1", "v1")));
+        Assert.assertEquals(detectors, binaryCache.get(CacheUtil.getKey(tags)));
+        Assert.assertEquals(Collections.emptyList(), binaryCache.get(ImmutableMap.of("k1", "v1")));
+
+        binaryCache.put(CacheUtil.getKey(tags), Collections.emptyList());
+        Assert.assertEquals(Collections.emptyList(), binaryCache.get(tags));
+    }
+
+    @Test
+    public void getByTagSetKey() {
+        val tags = ImmutableMap.of("k1", "v1", "k2", "v2");
+        detectors = Collections.singletonList(new Detector("cid", UUID.randomUUID()));
+        Mockito.when(cache.getIfPresent(CacheUtil.getKey(tags))).thenReturn(CacheUtil.getDetectors(detectors));
+
+        Assert.assertEquals(detectors, detectorMapperCache.get(TagSetKey.of(tags), () -> tags));
+
+        val binaryCache = new DetectorMapperCache(new MetricRegistry(), DetectorMapperCacheMode.BINARY);
+        binaryCache.put(tags, detectors);
+        Assert.assertEquals(detectors, binaryCache.get(TagSetKey.of(tags), () -> {
+            throw new AssertionError("Binary mode shouldn't need the tags");
+        }));
+        Assert.assertEquals(Collections.emptyList(), binaryCache.get(TagSetKey.of(ImmutableMap.of("k1", "v1")), () -> tags));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void binaryMode_detectorsAreImmutable() {
+        val binaryCache = new DetectorMapperCache(new MetricRegistry(), DetectorMapperCacheMode.BINARY);
+        val tags = ImmutableMap.of("k1", "v1");
+        binaryCache.put(tags, new ArrayList<>(Collections.singletonList(new Detector("cid", UUID.randomUUID()))));
+        binaryCache.get(tags).clear();
+    }
+
     @Test
     public void put() {
         detectors = Collections.singletonList(new Detector("", UUID.randomUUID()));
@@ -2,6 +2,8 @@ package com.expedia.adaptivealerting.anomdetect.mapper;
 
 import com.codahale.metrics.MetricRegistry;
 import com.expedia.adaptivealerting.anomdetect.source.DetectorSource;
+import com.expedia.adaptivealerting.anomdetect.source.ModelChangeEvent;
+import com.expedia.adaptivealerting.anomdetect.source.ModelChangeFeed;
 import com.expedia.metrics.MetricData;
 import com.expedia.metrics.MetricDefinition;
 import com.expedia.metrics.TagCollection;
@@ -33,7 +35,10 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -183,6 +188,28 @@ public final class DetectorMapperTest {
         assertThat(detectorResults, IsMapContaining.hasEntry("name->aGl3,region->dXMtd2VzdC0y", Collections.singletonList(buildDetector("", "d86b798c-cfee-4a2c-a17a-aa2ba79ccf51"))));
     }
 
+    @Test
+    public void testGetDetectorsFromCache_binaryCacheMode() throws IOException {
+        when(config.hasPath("detector-mapping-cache-mode")).thenReturn(true);
+        when(config.getString("detector-mapping-cache-mode")).thenReturn("binary");
+        this.detectorMapper = new DetectorMapper(detectorSource, config, new MetricRegistry());
+
+        this.initTagsFromFile();
+        detectorMapper.isSuccessfulDetectorMappingLookup(listOfMetricTags);
+
+        Map<String, List<Detector>> detectorResults = new HashMap<>();
+        for (Map<String, String> tags : listOfMetricTags) {
+            MetricData metricData = new MetricData(new MetricDefinition(new TagCollection(tags)), 0.0, 1L);
+            List<Detector> detector = detectorMapper.getDetectorsFromCache(metricData.getMetricDefinition());
+            if (!detector.isEmpty()) {
+                detectorResults.put(CacheUtil.getKey(tags), detector);
+            }
+        }
+
+        assertThat(detectorResults.size(), is(3));
+        assertThat(detectorResults, IsMapContaining.hasEntry("name->aGl3,region->dXMtd2VzdC0y", Collections.singletonList(buildDetector("", "d86b798c-cfee-4a2c-a17a-aa2ba79ccf51"))));
+    }
+
     @Test
     public void detectorCacheUpdateTest() {
 
@@ -200,6 +227,124 @@ public final class DetectorMapperTest {
         verify(cache).invalidateMetricsWithOldDetectorMappings(Collections.singletonList(modifiedDetectorMapping));
     }
 
+    @Test
+    public void detectorCacheUpdate_skippedWhileChangeFeedLive() {
+        detectorMapper.setModelChangeFeed(() -> 0L);
+        detectorMapper.detectorMappingCacheSync(System.currentTimeMillis() + 60000);
+        verify(detectorSource, never()).findUpdatedDetectorMappings(anyLong());
+    }
+
+    @Test
+    public void detectorCacheUpdate_catchesUpWhileChangeFeedLive() {
+        detectorMapper.setModelChangeFeed(() -> 0L);
+        detectorMapper.detectorMappingCacheSync(System.currentTimeMillis() + 60000);
+        detectorMapper.detectorMappingCacheSync(System.currentTimeMillis() + ModelChangeFeed.DEFAULT_CATCH_UP_PERIOD_MILLIS);
+        verify(detectorSource).findUpdatedDetectorMappings(ModelChangeFeed.DEFAULT_CATCH_UP_PERIOD_MILLIS / 1000);
+    }
+
+    @Test
+    public void modelChange_disabledMappingIsRemovedFromCache() {
+        DetectorMapping disabledDetectorMapping = new DetectorMapping().setId("1").setDetector(buildDetector("cid", "2c49ba26-1a7d-43f4-b70c-c6644a2c1689")).setEnabled(false);
+        detectorMapper.onModelChange(mappingChange(ModelChangeEvent.ChangeType.DISABLED, disabledDetectorMapping));
+        verify(cache).removeDisabledDetectorMappings(Collections.singletonList(disabledDetectorMapping));
+    }
+
+    @Test
+    public void modelChange_deletedMappingIsRemovedFromCache() {
+        DetectorMapping deletedDetectorMapping = new DetectorMapping().setId("1").setDetector(buildDetector("cid", "2c49ba26-1a7d-43f4-b70c-c6644a2c1689")).setEnabled(true);
+        detectorMapper.onModelChange(mappingChange(ModelChangeEvent.ChangeType.DELETED, deletedDetectorMapping));
+        verify(cache).removeDisabledDetectorMappings(Collections.singletonList(deletedDetectorMapping.setEnabled(false)));
+    }
+
+    @Test
+    public void modelChange_updatedMappingInvalidatesCache() {
+        DetectorMapping modifiedDetectorMapping = new DetectorMapping().setId("2").setDetector(buildDetector("cid", "4d49ba26-1a7d-43f4-b70c-ee644a2c1689")).setEnabled(true);
+        detectorMapper.onModelChange(mappingChange(ModelChangeEvent.ChangeType.UPDATED, modifiedDetectorMapping));
+        verify(cache).invalidateMetricsWithOldDetectorMappings(Collections.singletonList(modifiedDetectorMapping));
+    }
+
+    @Test
+    public void modelChange_updatedMappingIsMatchedLocally() {
+        Detector hotelsDetector = buildDetector("cid", "2c49ba26-1a7d-43f4-b70c-c6644a2c1689");
+        DetectorMapping hotelsMapping = new DetectorMapping()
+                .setId("hotels")
+                .setDetector(hotelsDetector)
+                .setExpression(ExpressionMatcherTest.expression(Operator.AND, ExpressionMatcherTest.field("lob", "hotels")))
+                .setEnabled(true);
+        DetectorMappingMatcher matcher = new DetectorMappingMatcher();
+        when(detectorSource.findUpdatedDetectorMappings(anyLong())).thenReturn(Collections.emptyList());
+        this.detectorMapper = new DetectorMapper(detectorSource, cache, matcher, detectorMappingCacheUpdatePeriod);
+
+        detectorMapper.onModelChange(mappingChange(ModelChangeEvent.ChangeType.CREATED, hotelsMapping));
+        assertEquals(1, matcher.size());
+        detectorMapper.onModelChange(mappingChange(ModelChangeEvent.ChangeType.DELETED, hotelsMapping));
+        assertEquals(0, matcher.size());
+    }
+
+    @Test
+    public void modelChange_detectorChangeIsIgnored() {
+        detectorMapper.onModelChange(new ModelChangeEvent()
+                .setEntityType(ModelChangeEvent.EntityType.DETECTOR)
+                .setChangeType(ModelChangeEvent.ChangeType.UPDATED)
+                .setId("2c49ba26-1a7d-43f4-b70c-c6644a2c1689"));
+        verifyZeroInteractions(cache);
+    }
+
+    @Test
+    public void testLocalMatching() {
+        Detector hotelsDetector = buildDetector("cid", "2c49ba26-1a7d-43f4-b70c-c6644a2c1689");
+        Detector flightDetector = buildDetector("cid", "4d49ba26-1a7d-43f4-b70c-ee644a2c1689");
+        DetectorMapping hotelsMapping = new DetectorMapping()
+                .setId("hotels")
+                .setDetector(hotelsDetector)
+                .setExpression(ExpressionMatcherTest.expression(Operator.AND, ExpressionMatcherTest.field("lob", "hotels")))
+                .setEnabled(true);
+        DetectorMapping flightMapping = new DetectorMapping()
+                .setId("flight")
+                .setDetector(flightDetector)
+                .setExpression(ExpressionMatcherTest.expression(Operator.AND, ExpressionMatcherTest.field("lob", "flight")))
+                .setEnabled(true);
+        when(detectorSource.findUpdatedDetectorMappings(anyLong())).thenReturn(Collections.singletonList(hotelsMapping));
+        when(config.hasPath("detector-mapping-local-matching-enabled")).thenReturn(true);
+        when(config.getBoolean("detector-mapping-local-matching-enabled")).thenReturn(true);
+        this.detectorMapper = new DetectorMapper(detectorSource, config, new MetricRegistry());
+
+        Map<String, String> hotelsTags = ImmutableMap.of("lob", "hotels");
+        Map<String, String> flightTags = ImmutableMap.of("lob", "flight");
+        assertTrue(detectorMapper.isSuccessfulDetectorMappingLookup(Arrays.asList(hotelsTags, flightTags)));
+        assertEquals(Collections.singletonList(hotelsDetector), detectorMapper.getDetectorsFromCache(metricDefinition(hotelsTags)));
+        assertEquals(Collections.emptyList(), detectorMapper.getDetectorsFromCache(metricDefinition(flightTags)));
+        verify(detectorSource, never()).findDetectorMappings(anyList());
+
+        when(detectorSource.findUpdatedDetectorMappings(anyLong())).thenReturn(Collections.singletonList(flightMapping));
+        detectorMapper.detectorMappingCacheSync(System.currentTimeMillis() + 60000);
+        assertTrue(detectorMapper.isSuccessfulDetectorMappingLookup(Collections.singletonList(flightTags)));
+        assertEquals(Collections.singletonList(flightDetector), detectorMapper.getDetectorsFromCache(metricDefinition(flightTags)));
+    }
+
+    @Test
+    public void testLocalMatching_fallsBackUntilLoaded() {
+        DetectorMappingMatcher matcher = new DetectorMappingMatcher();
+        when(detectorSource.findUpdatedDetectorMappings(anyLong())).thenThrow(new RuntimeException());
+        this.detectorMapper = new DetectorMapper(detectorSource, cache, matcher, detectorMappingCacheUpdatePeriod);
+
+        assertFalse(matcher.isLoaded());
+        assertTrue(detectorMapper.isSuccessfulDetectorMappingLookup(tags));
+        verify(detectorSource).findDetectorMappings(tags);
+    }
+
+    private ModelChangeEvent mappingChange(ModelChangeEvent.ChangeType changeType, DetectorMapping detectorMapping) {
+        return new ModelChangeEvent()
+                .setEntityType(ModelChangeEvent.EntityType.MAPPING)
+                .setChangeType(changeType)
+                .setId(detectorMapping.getId())
+                .setDocument(new ObjectMapper().valueToTree(detectorMapping));
+    }
+
+    private MetricDefinition metricDefinition(Map<String, String> tags) {
+        return new MetricDefinition(new TagCollection(tags));
+    }
+
     private Detector buildDetector(String consumerId, String detectorUuid) {
         return new Detector(consumerId, UUID.fromString(detectorUuid));
     }
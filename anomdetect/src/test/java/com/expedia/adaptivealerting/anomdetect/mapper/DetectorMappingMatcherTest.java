@@ -0,0 +1,155 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.mapper;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static com.expedia.adaptivealerting.anomdetect.mapper.ExpressionMatcherTest.expression;
+import static com.expedia.adaptivealerting.anomdetect.mapper.ExpressionMatcherTest.field;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DetectorMappingMatcherTest {
+    private static final Detector HOTELS_DETECTOR = new Detector("cid", UUID.randomUUID());
+    private static final Detector EXPEDIA_DETECTOR = new Detector("ad-manager", UUID.randomUUID());
+    private static final Detector NOT_FLIGHT_DETECTOR = new Detector("cid", UUID.randomUUID());
+
+    private static final Map<String, String> HOTELS_TAGS = ImmutableMap.of("lob", "hotels", "pos", "expedia.com");
+    private static final Map<String, String> FLIGHT_TAGS = ImmutableMap.of("lob", "flight", "pos", "hotels.com");
+
+    private DetectorMappingMatcher matcherUnderTest;
+
+    @Before
+    public void setUp() {
+        this.matcherUnderTest = new DetectorMappingMatcher();
+        matcherUnderTest.load(Arrays.asList(
+                mapping("hotels", HOTELS_DETECTOR, expression(Operator.AND, field("lob", "hotels"), field("pos", "expedia.com"))),
+                mapping("expedia", EXPEDIA_DETECTOR, expression(Operator.OR, field("pos", "expedia.com"), field("pos", "expedia.co.uk"))),
+                mapping("not-flight", NOT_FLIGHT_DETECTOR, expression(Operator.NOT, field("lob", "flight")))));
+    }
+
+    @Test
+    public void testLoad() {
+        DetectorMappingMatcher matcher = new DetectorMappingMatcher();
+        assertFalse(matcher.isLoaded());
+
+        matcher.load(Collections.singletonList(mapping("hotels", HOTELS_DETECTOR, expression(Operator.AND, field("lob", "hotels"))).setEnabled(false)));
+        assertTrue(matcher.isLoaded());
+        assertEquals(0, matcher.size());
+        assertEquals(3, matcherUnderTest.size());
+    }
+
+    @Test
+    public void testFindMatchingDetectors() {
+        assertEquals(ImmutableSet.of(HOTELS_DETECTOR, EXPEDIA_DETECTOR, NOT_FLIGHT_DETECTOR),
+                new HashSet<>(matcherUnderTest.findMatchingDetectors(HOTELS_TAGS)));
+        assertEquals(Collections.emptyList(), matcherUnderTest.findMatchingDetectors(FLIGHT_TAGS));
+        assertEquals(ImmutableSet.of(EXPEDIA_DETECTOR, NOT_FLIGHT_DETECTOR),
+                new HashSet<>(matcherUnderTest.findMatchingDetectors(ImmutableMap.of("pos", "expedia.co.uk"))));
+    }
+
+    @Test
+    public void testFindMatchingDetectorMappings() {
+        List<Map<String, String>> tagsList = Arrays.asList(FLIGHT_TAGS, ImmutableMap.of("lob", "cars", "pos", "expedia.com"));
+
+        DetectorMatchResponse response = matcherUnderTest.findMatchingDetectorMappings(tagsList);
+
+        assertEquals(Collections.singleton(1), response.getGroupedDetectorsBySearchIndex().keySet());
+        assertEquals(ImmutableSet.of(EXPEDIA_DETECTOR, NOT_FLIGHT_DETECTOR),
+                new HashSet<>(response.getGroupedDetectorsBySearchIndex().get(1)));
+    }
+
+    @Test
+    public void testUpdate() {
+        matcherUnderTest.update(Arrays.asList(
+                mapping("hotels", HOTELS_DETECTOR, expression(Operator.AND, field("lob", "flight"))),
+                mapping("not-flight", NOT_FLIGHT_DETECTOR, expression(Operator.NOT, field("lob", "flight"))).setEnabled(false)));
+
+        assertEquals(2, matcherUnderTest.size());
+        assertEquals(Collections.singletonList(HOTELS_DETECTOR), matcherUnderTest.findMatchingDetectors(FLIGHT_TAGS));
+        assertEquals(Collections.singletonList(EXPEDIA_DETECTOR), matcherUnderTest.findMatchingDetectors(HOTELS_TAGS));
+    }
+
+    @Test
+    public void testUpdate_detectorWithSeveralMappings() {
+        matcherUnderTest.update(Collections.singletonList(
+                mapping("hotels-flight", HOTELS_DETECTOR, expression(Operator.AND, field("lob", "flight")))));
+
+        assertEquals(4, matcherUnderTest.size());
+        assertTrue(matcherUnderTest.findMatchingDetectors(HOTELS_TAGS).contains(HOTELS_DETECTOR));
+        assertEquals(Collections.singletonList(HOTELS_DETECTOR), matcherUnderTest.findMatchingDetectors(FLIGHT_TAGS));
+
+        matcherUnderTest.update(Collections.singletonList(
+                mapping("hotels", HOTELS_DETECTOR, expression(Operator.AND, field("lob", "hotels"))).setEnabled(false)));
+
+        assertEquals(3, matcherUnderTest.size());
+        assertFalse(matcherUnderTest.findMatchingDetectors(HOTELS_TAGS).contains(HOTELS_DETECTOR));
+        assertEquals(Collections.singletonList(HOTELS_DETECTOR), matcherUnderTest.findMatchingDetectors(FLIGHT_TAGS));
+    }
+
+    @Test
+    public void testUpdate_ignoresMappingWithoutId() {
+        matcherUnderTest.update(Collections.singletonList(
+                mapping(null, HOTELS_DETECTOR, expression(Operator.AND, field("lob", "flight")))));
+
+        assertEquals(3, matcherUnderTest.size());
+        assertEquals(Collections.emptyList(), matcherUnderTest.findMatchingDetectors(FLIGHT_TAGS));
+    }
+
+    @Test
+    public void testFindMatchingDetectors_groupsByDetector() {
+        matcherUnderTest.update(Collections.singletonList(
+                mapping("hotels-lob", HOTELS_DETECTOR, expression(Operator.AND, field("lob", "hotels")))));
+
+        assertEquals(1, matcherUnderTest.findMatchingDetectors(HOTELS_TAGS).stream()
+                .filter(HOTELS_DETECTOR::equals)
+                .count());
+    }
+
+    @Test
+    public void testAnchors() {
+        assertEquals(Collections.singleton(new Field("lob", "hotels")),
+                DetectorMappingMatcher.anchors(expression(Operator.AND, field("lob", "hotels"), field("pos", "expedia.com"))));
+        assertEquals(ImmutableSet.of(new Field("lob", "hotels"), new Field("lob", "flight")),
+                DetectorMappingMatcher.anchors(expression(Operator.OR, field("lob", "hotels"), field("lob", "flight"))));
+        assertEquals(Collections.singleton(new Field("lob", "hotels")),
+                DetectorMappingMatcher.anchors(expression(null, field("lob", "hotels"), nested(expression(Operator.NOT, field("pos", "expedia.com"))))));
+        assertNull(DetectorMappingMatcher.anchors(expression(Operator.OR, field("lob", "hotels"), nested(expression(Operator.NOT, field("lob", "flight"))))));
+        assertEquals(Collections.emptySet(), DetectorMappingMatcher.anchors(expression(Operator.OR)));
+    }
+
+    private static DetectorMapping mapping(String id, Detector detector, ExpressionTree expression) {
+        return new DetectorMapping().setId(id).setDetector(detector).setExpression(expression).setEnabled(true);
+    }
+
+    private static Operand nested(ExpressionTree expression) {
+        Operand operand = new Operand();
+        operand.setExpression(expression);
+        return operand;
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.mapper;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ExpressionMatcherTest {
+
+    private static final Map<String, String> TAGS = ImmutableMap.of("lob", "hotels", "pos", "expedia.com");
+
+    @Test
+    public void testAnd() {
+        assertTrue(ExpressionMatcher.matches(expression(Operator.AND, field("lob", "hotels"), field("pos", "expedia.com")), TAGS));
+        assertFalse(ExpressionMatcher.matches(expression(Operator.AND, field("lob", "hotels"), field("pos", "hotels.com")), TAGS));
+        assertFalse(ExpressionMatcher.matches(expression(Operator.AND, field("region", "us")), TAGS));
+    }
+
+    @Test
+    public void testOr() {
+        assertTrue(ExpressionMatcher.matches(expression(Operator.OR, field("lob", "flight"), field("pos", "expedia.com")), TAGS));
+        assertFalse(ExpressionMatcher.matches(expression(Operator.OR, field("lob", "flight"), field("pos", "hotels.com")), TAGS));
+    }
+
+    @Test
+    public void testNot() {
+        assertTrue(ExpressionMatcher.matches(expression(Operator.NOT, field("lob", "flight")), TAGS));
+        assertFalse(ExpressionMatcher.matches(expression(Operator.NOT, field("lob", "flight"), field("lob", "hotels")), TAGS));
+    }
+
+    @Test
+    public void testNestedExpression() {
+        Operand nested = new Operand();
+        nested.setExpression(expression(Operator.OR, field("lob", "flight"), field("lob", "hotels")));
+        assertTrue(ExpressionMatcher.matches(expression(Operator.AND, field("pos", "expedia.com"), nested), TAGS));
+        assertFalse(ExpressionMatcher.matches(expression(Operator.AND, field("pos", "hotels.com"), nested), TAGS));
+    }
+
+    @Test
+    public void testMissingOperatorDefaultsToAnd() {
+        assertTrue(ExpressionMatcher.matches(expression(null, field("lob", "hotels"), field("pos", "expedia.com")), TAGS));
+        assertFalse(ExpressionMatcher.matches(expression(null, field("lob", "hotels"), field("pos", "hotels.com")), TAGS));
+    }
+
+    @Test
+    public void testMissingOperands() {
+        assertTrue(ExpressionMatcher.matches(new ExpressionTree(), TAGS));
+        ExpressionTree or = new ExpressionTree();
+        or.setOperator(Operator.OR);
+        assertFalse(ExpressionMatcher.matches(or, TAGS));
+        assertFalse(ExpressionMatcher.matches(expression(Operator.AND, new Operand()), TAGS));
+    }
+
+    static ExpressionTree expression(Operator operator, Operand... operands) {
+        ExpressionTree expression = new ExpressionTree();
+        expression.setOperator(operator);
+        expression.setOperands(Arrays.asList(operands));
+        return expression;
+    }
+
+    static Operand field(String key, String value) {
+        Operand operand = new Operand();
+        operand.setField(new Field(key, value));
+        return operand;
+    }
+}
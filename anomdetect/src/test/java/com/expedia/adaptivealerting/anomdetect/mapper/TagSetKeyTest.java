@@ -0,0 +1,107 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.mapper;
+
+import com.google.common.collect.ImmutableMap;
+import lombok.val;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class TagSetKeyTest {
+
+    @Test
+    public void testOf_orderIndependent() {
+        val tags1 = new LinkedHashMap<String, String>();
+        tags1.put("org_id", "1");
+        tags1.put("mtype", "count");
+        tags1.put("what", "bookings");
+
+        val tags2 = new LinkedHashMap<String, String>();
+        tags2.put("what", "bookings");
+        tags2.put("org_id", "1");
+        tags2.put("mtype", "count");
+
+        assertEquals(TagSetKey.of(tags1), TagSetKey.of(tags2));
+        assertEquals(TagSetKey.of(tags1).hashCode(), TagSetKey.of(tags2).hashCode());
+    }
+
+    @Test
+    public void testOf_distinguishesTags() {
+        val key = TagSetKey.of(ImmutableMap.of("k1", "v1", "k2", "v2"));
+
+        assertNotEquals(key, TagSetKey.of(ImmutableMap.of("k1", "v1", "k2", "v3")));
+        assertNotEquals(key, TagSetKey.of(ImmutableMap.of("k1", "v2", "k2", "v1")));
+        assertNotEquals(key, TagSetKey.of(ImmutableMap.of("k1", "v1")));
+        assertNotEquals(key, TagSetKey.of(ImmutableMap.of("k1", "v1", "k2", "v2", "k3", "")));
+
+        // Moving characters across the key/value boundary must change the hash.
+        assertNotEquals(TagSetKey.of(ImmutableMap.of("ab", "c")), TagSetKey.of(ImmutableMap.of("a", "bc")));
+        assertNotEquals(TagSetKey.of(new HashMap<>()), TagSetKey.of(ImmutableMap.of("", "")));
+    }
+
+    @Test
+    public void testOf_nonAscii() {
+        val twoByte = ImmutableMap.of("city", "München");
+        val threeByte = ImmutableMap.of("city", "東京");
+        val fourByte = ImmutableMap.of("emoji", "😀");
+        val unpaired = ImmutableMap.of("emoji", "\ud83d");
+
+        assertEquals(TagSetKey.of(twoByte), TagSetKey.of(ImmutableMap.of("city", "München")));
+        assertNotEquals(TagSetKey.of(twoByte), TagSetKey.of(ImmutableMap.of("city", "Munchen")));
+        assertNotEquals(TagSetKey.of(threeByte), TagSetKey.of(twoByte));
+        assertNotEquals(TagSetKey.of(fourByte), TagSetKey.of(unpaired));
+
+        // Unpaired surrogates encode as '?' in UTF-8.
+        assertEquals(TagSetKey.of(unpaired), TagSetKey.of(ImmutableMap.of("emoji", "?")));
+    }
+
+    @Test
+    public void testHasher_matchesOf() {
+        val tags = new LinkedHashMap<String, String>();
+        tags.put("org_id", "1");
+        tags.put("city", "München");
+        tags.put("where", "東京");
+        tags.put("emoji", "😀");
+        tags.put("empty", "");
+
+        val hasher = TagSetKey.hasher();
+        for (Map.Entry<String, String> tag : tags.entrySet()) {
+            // Encode each tag as "key=value" in a larger buffer, as in a serialized record.
+            byte[] key = tag.getKey().getBytes(StandardCharsets.UTF_8);
+            byte[] value = tag.getValue().getBytes(StandardCharsets.UTF_8);
+            byte[] buf = new byte[key.length + value.length + 3];
+            System.arraycopy(key, 0, buf, 1, key.length);
+            buf[key.length + 1] = '=';
+            System.arraycopy(value, 0, buf, key.length + 2, value.length);
+            hasher.addTag(buf, 1, key.length, key.length + 2, value.length);
+        }
+        assertEquals(TagSetKey.of(tags), hasher.build());
+
+        assertEquals(TagSetKey.of(new HashMap<>()), hasher.reset().build());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOf_nullTags() {
+        TagSetKey.of(null);
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.snapshot;
+
+import com.expedia.adaptivealerting.anomdetect.detect.AnomalyThresholds;
+import com.expedia.adaptivealerting.anomdetect.detect.AnomalyType;
+import com.expedia.adaptivealerting.anomdetect.detect.Detector;
+import com.expedia.adaptivealerting.anomdetect.detect.breakout.algo.edmx.EdmxDetector;
+import com.expedia.adaptivealerting.anomdetect.detect.breakout.algo.edmx.EdmxHyperparams;
+import com.expedia.adaptivealerting.anomdetect.detect.outlier.algo.constant.ConstantThresholdDetector;
+import com.expedia.adaptivealerting.anomdetect.detect.outlier.algo.constant.ConstantThresholdDetectorParams;
+import com.expedia.adaptivealerting.anomdetect.detect.outlier.algo.cusum.CusumDetector;
+import com.expedia.adaptivealerting.anomdetect.detect.outlier.algo.cusum.CusumDetectorParams;
+import com.expedia.adaptivealerting.anomdetect.detect.outlier.algo.forecasting.ForecastingDetector;
+import com.expedia.adaptivealerting.anomdetect.detect.outlier.algo.individuals.IndividualsDetector;
+import com.expedia.adaptivealerting.anomdetect.detect.outlier.algo.individuals.IndividualsDetectorParams;
+import com.expedia.adaptivealerting.anomdetect.forecast.interval.IntervalForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.interval.algo.expwelford.ExponentialWelfordIntervalForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.PointForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.algo.ewma.EwmaPointForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.algo.holtwinters.HoltWintersPointForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.algo.holtwinters.HoltWintersPointForecasterParams;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.algo.holtwinters.HoltWintersTrainingMethod;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.algo.naive.NaivePointForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.algo.pewma.PewmaPointForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.algo.seasonalnaive.SeasonalNaivePointForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.algo.seasonalnaive.SeasonalNaivePointForecasterParams;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.algo.sma.SmaPointForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.algo.sma.SmaPointForecasterParams;
+import com.expedia.metrics.MetricData;
+import com.expedia.metrics.MetricDefinition;
+import lombok.val;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DetectorSnapshotCodecTest {
+    private static final UUID DETECTOR_UUID = UUID.randomUUID();
+    private static final MetricDefinition METRIC_DEFINITION = new MetricDefinition("some-key");
+    private static final int NUM_OBSERVED = 50;
+    private static final int NUM_REPLAYED = 20;
+
+    @Test
+    public void testRoundTrip_cusum() {
+        assertRoundTrip(() -> new CusumDetector(DETECTOR_UUID, new CusumDetectorParams()
+                .setType(AnomalyType.RIGHT_TAILED)
+                .setTargetValue(100.0)
+                .setWeakSigmas(3.0)
+                .setStrongSigmas(4.0)
+                .setInitMeanEstimate(100.0)
+                .setWarmUpPeriod(10), true));
+    }
+
+    @Test
+    public void testRoundTrip_individuals() {
+        assertRoundTrip(() -> new IndividualsDetector(DETECTOR_UUID, new IndividualsDetectorParams()
+                .setInitValue(100.0)
+                .setWarmUpPeriod(10), true, "individuals"));
+    }
+
+    @Test
+    public void testRoundTrip_edmx() {
+        val hyperparams = new EdmxHyperparams()
+                .setBufferSize(20)
+                .setDelta(6)
+                .setNumPerms(19);
+        assertSnapshotRoundTrip(() -> new EdmxDetector(DETECTOR_UUID, hyperparams, true));
+    }
+
+    @Test
+    public void testRoundTrip_forecasting() {
+        assertRoundTrip(() -> forecastingDetector(new PewmaPointForecaster()));
+        assertRoundTrip(() -> forecastingDetector(new EwmaPointForecaster()));
+        assertRoundTrip(() -> forecastingDetector(new NaivePointForecaster()));
+        assertRoundTrip(() -> forecastingDetector(new SmaPointForecaster(new SmaPointForecasterParams()
+                .setLookBackPeriod(5))));
+        assertRoundTrip(() -> forecastingDetector(new SeasonalNaivePointForecaster(new SeasonalNaivePointForecasterParams()
+                .setCycleLength(7)
+                .setIntervalLength(60))));
+        assertRoundTrip(() -> forecastingDetector(new HoltWintersPointForecaster(new HoltWintersPointForecasterParams()
+                .setFrequency(4)
+                .setInitTrainingMethod(HoltWintersTrainingMethod.SIMPLE))));
+    }
+
+    @Test
+    public void testIsSupported() {
+        assertTrue(DetectorSnapshotCodec.isSupported(forecastingDetector(new EwmaPointForecaster())));
+        assertFalse(DetectorSnapshotCodec.isSupported(constantThresholdDetector()));
+    }
+
+    @Test(expected = DetectorSnapshotException.class)
+    public void testRestore_unsupportedVersion() {
+        val snapshot = DetectorSnapshotCodec.snapshot(forecastingDetector(new EwmaPointForecaster()));
+        snapshot[4] = DetectorSnapshotCodec.FORMAT_VERSION + 1;
+        DetectorSnapshotCodec.restore(forecastingDetector(new EwmaPointForecaster()), snapshot);
+    }
+
+    @Test(expected = DetectorSnapshotException.class)
+    public void testRestore_differentDetectorClass() {
+        val snapshot = DetectorSnapshotCodec.snapshot(forecastingDetector(new EwmaPointForecaster()));
+        DetectorSnapshotCodec.restore(new IndividualsDetector(DETECTOR_UUID, new IndividualsDetectorParams(), true, "individuals"),
+                snapshot);
+    }
+
+    @Test(expected = DetectorSnapshotException.class)
+    public void testRestore_differentForecaster() {
+        val snapshot = DetectorSnapshotCodec.snapshot(forecastingDetector(new EwmaPointForecaster()));
+        DetectorSnapshotCodec.restore(forecastingDetector(new PewmaPointForecaster()), snapshot);
+    }
+
+    @Test(expected = DetectorSnapshotException.class)
+    public void testRestore_differentConfiguration() {
+        val detector = forecastingDetector(new SmaPointForecaster(new SmaPointForecasterParams().setLookBackPeriod(5)));
+        for (MetricData metricData : data()) {
+            detector.detect(metricData);
+        }
+        val snapshot = DetectorSnapshotCodec.snapshot(detector);
+        DetectorSnapshotCodec.restore(forecastingDetector(new SmaPointForecaster(
+                new SmaPointForecasterParams().setLookBackPeriod(3))), snapshot);
+    }
+
+    @Test(expected = DetectorSnapshotException.class)
+    public void testRestore_truncated() {
+        val snapshot = DetectorSnapshotCodec.snapshot(forecastingDetector(new PewmaPointForecaster()));
+        DetectorSnapshotCodec.restore(forecastingDetector(new PewmaPointForecaster()),
+                Arrays.copyOf(snapshot, snapshot.length - 1));
+    }
+
+    @Test(expected = DetectorSnapshotException.class)
+    public void testRestore_trailingBytes() {
+        val snapshot = DetectorSnapshotCodec.snapshot(forecastingDetector(new PewmaPointForecaster()));
+        DetectorSnapshotCodec.restore(forecastingDetector(new PewmaPointForecaster()),
+                Arrays.copyOf(snapshot, snapshot.length + 1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSnapshot_unsupported() {
+        DetectorSnapshotCodec.snapshot(constantThresholdDetector());
+    }
+
+    private static ConstantThresholdDetector constantThresholdDetector() {
+        val params = new ConstantThresholdDetectorParams()
+                .setType(AnomalyType.RIGHT_TAILED)
+                .setThresholds(new AnomalyThresholds(100.0, 90.0, null, null));
+        return new ConstantThresholdDetector(DETECTOR_UUID, params, true);
+    }
+
+    private static ForecastingDetector forecastingDetector(PointForecaster pointForecaster) {
+        IntervalForecaster intervalForecaster = new ExponentialWelfordIntervalForecaster();
+        return new ForecastingDetector(DETECTOR_UUID, pointForecaster, intervalForecaster,
+                AnomalyType.TWO_TAILED, true, "forecasting");
+    }
+
+    /**
+     * Checks that a restored detector produces the same results as the original one.
+     */
+    private static void assertRoundTrip(Supplier<Detector> detectorFactory) {
+        val original = detectorFactory.get();
+        val data = data();
+        for (int i = 0; i < NUM_OBSERVED; i++) {
+            original.detect(data[i]);
+        }
+        val restored = detectorFactory.get();
+        DetectorSnapshotCodec.restore(restored, DetectorSnapshotCodec.snapshot(original));
+
+        for (int i = NUM_OBSERVED; i < data.length; i++) {
+            assertEquals(original.detect(data[i]), restored.detect(data[i]));
+        }
+        assertArrayEquals(DetectorSnapshotCodec.snapshot(original), DetectorSnapshotCodec.snapshot(restored));
+    }
+
+    /**
+     * Checks that a restored detector has the same state as the original one, for detectors with randomized results.
+     */
+    private static void assertSnapshotRoundTrip(Supplier<Detector> detectorFactory) {
+        val original = detectorFactory.get();
+        for (MetricData metricData : data()) {
+            original.detect(metricData);
+        }
+        val snapshot = DetectorSnapshotCodec.snapshot(original);
+        val restored = detectorFactory.get();
+        DetectorSnapshotCodec.restore(restored, snapshot);
+        assertArrayEquals(snapshot, DetectorSnapshotCodec.snapshot(restored));
+    }
+
+    private static MetricData[] data() {
+        val random = new Random(42);
+        val data = new MetricData[NUM_OBSERVED + NUM_REPLAYED];
+        for (int i = 0; i < data.length; i++) {
+            val value = 100.0 + 10.0 * Math.sin(i * Math.PI / 2) + random.nextGaussian();
+            data[i] = new MetricData(METRIC_DEFINITION, value, 1_580_000_000L + i * 60L);
+        }
+        return data;
+    }
+}
@@ -33,13 +33,19 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -151,6 +157,30 @@ public final class DefaultDetectorSourceTest {
         sourceUnderTest.findDetector(DETECTOR_UUID_EXCEPTION);
     }
 
+    @Test
+    public void testFindDetectors() {
+        when(detectorDocument.getUuid()).thenReturn(DETECTOR_UUID);
+        when(detectorClient.findDetectorDocuments(Collections.singletonList(DETECTOR_UUID)))
+                .thenReturn(Collections.singletonList(detectorDocument));
+        val results = sourceUnderTest.findDetectors(Collections.singletonList(DETECTOR_UUID));
+        assertEquals(1, results.size());
+        assertEquals(detector, results.get(DETECTOR_UUID).getDetector());
+    }
+
+    @Test
+    public void testFindDetectors_nullDetectorBuilt() {
+        when(detectorClient.findDetectorDocuments(Collections.singletonList(DETECTOR_UUID)))
+                .thenReturn(Collections.singletonList(detectorDocument));
+        when(detectorFactory.buildDetector(detectorDocument)).thenReturn(null);
+        val results = sourceUnderTest.findDetectors(Collections.singletonList(DETECTOR_UUID));
+        assertTrue(results.isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFindDetectors_nullUuids() {
+        sourceUnderTest.findDetectors(null);
+    }
+
     @Test
     public void testUpdatedDetectorLastUsed() {
         sourceUnderTest.updatedDetectorLastUsed(DETECTOR_UUID);
@@ -162,6 +192,19 @@ public final class DefaultDetectorSourceTest {
         sourceUnderTest.updatedDetectorLastUsed(null);
     }
 
+    @Test
+    public void testUpdateDetectorsLastUsed() {
+        val lastUsedTimes = Collections.singletonMap(DETECTOR_UUID, 1000L);
+        sourceUnderTest.updateDetectorsLastUsed(lastUsedTimes);
+        verify(detectorClient, times(1)).updateDetectorsLastUsed(lastUsedTimes);
+    }
+
+    @Test
+    public void testUpdateDetectorsLastUsed_empty() {
+        sourceUnderTest.updateDetectorsLastUsed(Collections.emptyMap());
+        verify(detectorClient, never()).updateDetectorsLastUsed(anyMap());
+    }
+
 
     private void initTestObjects() {
         this.metricTags = new ArrayList<>();
@@ -187,16 +230,20 @@ public final class DefaultDetectorSourceTest {
     private void initDependencies() {
         when(detectorClient.findMatchingDetectorMappings(anyList()))
                 .thenReturn(detectorMatchResponse);
-        when(detectorClient.findUpdatedDetectorDocuments(1))
-                .thenReturn(Arrays.asList(updatedDetectorDocuments));
+        doAnswer(invocation -> {
+            Arrays.stream(updatedDetectorDocuments).forEach(invocation.<Consumer<DetectorDocument>>getArgument(1));
+            return null;
+        }).when(detectorClient).forEachUpdatedDetectorDocument(eq(1L), any());
         when(detectorClient.findDetectorDocument(DETECTOR_UUID))
                 .thenReturn(detectorDocument);
         when(detectorClient.findDetectorDocument(DETECTOR_UUID_MISSING_DETECTOR))
                 .thenThrow(new DetectorException("No detectors found"));
         when(detectorClient.findDetectorDocument(DETECTOR_UUID_EXCEPTION))
                 .thenThrow(new DetectorException("Error finding latest model", new IOException()));
-        when(detectorClient.findUpdatedDetectorMappings(1))
-                .thenReturn(Collections.singletonList(this.detectorMapping));
+        doAnswer(invocation -> {
+            invocation.<Consumer<DetectorMapping>>getArgument(1).accept(this.detectorMapping);
+            return null;
+        }).when(detectorClient).forEachUpdatedDetectorMapping(eq(1L), any());
         when(detectorClient.findDetectorMappingByUuid(any(UUID.class)))
                 .thenReturn(this.detectorMapping);
         when(detectorFactory.buildDetector(any(DetectorDocument.class))).thenReturn(detector);
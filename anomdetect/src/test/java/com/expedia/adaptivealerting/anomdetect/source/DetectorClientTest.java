@@ -17,12 +17,14 @@ package com.expedia.adaptivealerting.anomdetect.source;
 
 import com.expedia.adaptivealerting.anomdetect.mapper.DetectorMapping;
 import com.expedia.adaptivealerting.anomdetect.mapper.DetectorMatchResponse;
+import com.expedia.adaptivealerting.anomdetect.util.ConditionalResponse;
 import com.expedia.adaptivealerting.anomdetect.util.HttpClientWrapper;
+import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
-import org.apache.http.client.fluent.Content;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
@@ -34,18 +36,29 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
 
 import static com.expedia.adaptivealerting.anomdetect.source.DetectorClient.FIND_DOCUMENT_PATH;
+import static com.expedia.adaptivealerting.anomdetect.source.DetectorClient.FIND_DOCUMENTS_PATH;
 import static com.expedia.adaptivealerting.anomdetect.source.DetectorClient.FIND_MAPPINGS_BY_TAGS_PATH;
 import static com.expedia.adaptivealerting.anomdetect.source.DetectorClient.FIND_MAPPINGS_BY_UUID_PATH;
 import static com.expedia.adaptivealerting.anomdetect.source.DetectorClient.FIND_UPDATED_DOCUMENTS_PATH;
 import static com.expedia.adaptivealerting.anomdetect.source.DetectorClient.FIND_UPDATED_MAPPINGS_PATH;
+import static com.expedia.adaptivealerting.anomdetect.source.DetectorClient.UPDATE_DETECTORS_LAST_USED_PATH;
 import static com.expedia.adaptivealerting.anomdetect.source.DetectorClient.UPDATE_DETECTOR_LAST_USED_PATH;
+import static java.util.concurrent.CompletableFuture.completedFuture;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -56,6 +69,8 @@ import static org.mockito.Mockito.when;
 @Slf4j
 public class DetectorClientTest {
     private static final String BASE_URI = "http://example.com";
+    private static final Map<String, String> NDJSON_HEADERS =
+            Collections.singletonMap("Accept", "application/x-ndjson, application/json;q=0.9");
 
     private static final UUID DETECTOR_UUID = UUID.fromString("2c656ea0-dbf7-4081-aa01-55e86439ad21");
     private static final UUID DETECTOR_UUID_CANT_GET = UUID.fromString("2c656ea0-dbf7-4081-aa01-55e86439ad22");
@@ -70,6 +85,7 @@ public class DetectorClientTest {
     private static final int TIME_PERIOD_NO_MAPPINGS = 4000;
 
     private static final String FIND_DOC_URI = uri(FIND_DOCUMENT_PATH, DETECTOR_UUID);
+    private static final String DOC_ETAG = "W/\"1\"";
     private static final String FIND_DOC_URI_CANT_GET = uri(FIND_DOCUMENT_PATH, DETECTOR_UUID_CANT_GET);
     private static final String FIND_DOC_URI_CANT_READ = uri(FIND_DOCUMENT_PATH, DETECTOR_UUID_CANT_READ);
     private static final String FIND_DOC_URI_NO_DOC = uri(FIND_DOCUMENT_PATH, DETECTOR_UUID_NO_DOCS);
@@ -78,8 +94,10 @@ public class DetectorClientTest {
     private static final String FIND_UPDATED_DOCS_URI_CANT_GET = uri(FIND_UPDATED_DOCUMENTS_PATH, TIME_PERIOD_CANT_GET);
     private static final String FIND_UPDATED_DOCS_URI_CANT_READ = uri(FIND_UPDATED_DOCUMENTS_PATH, TIME_PERIOD_CANT_READ);
 
+    private static final String FIND_DOCS_URI = BASE_URI + FIND_DOCUMENTS_PATH;
     private static final String FIND_MAPPINGS_URI = BASE_URI + FIND_MAPPINGS_BY_TAGS_PATH;
     private static final String UPDATE_DETECTOR_LAST_USED_URI = BASE_URI + UPDATE_DETECTOR_LAST_USED_PATH;
+    private static final String UPDATE_DETECTORS_LAST_USED_URI = BASE_URI + UPDATE_DETECTORS_LAST_USED_PATH;
 
     private static final String FIND_UPDATED_MAPPINGS_URI = uri(FIND_UPDATED_MAPPINGS_PATH, TIME_PERIOD_VALID);
     private static final String FIND_UPDATED_MAPPINGS_URI_CANT_GET = uri(FIND_UPDATED_MAPPINGS_PATH, TIME_PERIOD_CANT_GET);
@@ -114,51 +132,16 @@ public class DetectorClientTest {
     private List<Map<String, String>> tags_cantRead = Collections.singletonList(Collections.singletonMap("tags", "cantRead"));
 
     @Mock
-    private Content docContent;
+    private ObjectReader docReader;
 
     @Mock
-    private Content docContent_cantRead;
+    private ObjectReader docsReader;
 
     @Mock
-    private Content docContent_noDoc;
+    private ObjectReader matchResponseReader;
 
     @Mock
-    private Content updatedDocsContent;
-
-    @Mock
-    private Content updatedDocsContent_cantRead;
-
-    @Mock
-    private Content mappingContent;
-
-    @Mock
-    private Content mappingContent_cantRead;
-
-    @Mock
-    private Content mappingContent_noMappings;
-
-    @Mock
-    private Content updatedMappingContent;
-
-    @Mock
-    private Content updatedMappingContent_cantRead;
-
-    @Mock
-    private Content updatedMappingContent_noMappings;
-
-
-    private byte[] docBytes = "docBytes".getBytes();
-    private byte[] docBytes_cantRead = "docBytes_cantRead".getBytes();
-    private byte[] docBytes_noDocs = "docBytes_noDocs".getBytes();
-    private byte[] updatedDocsBytes = "updatedDocsBytes".getBytes();
-    private byte[] updatedDocsBytes_cantRead = "updatedDocsBytes_cantRead".getBytes();
-    private byte[] mappingBytes = "mappingBytes".getBytes();
-    private byte[] mappingBytes_cantRead = "mappingBytes_cantRead".getBytes();
-    private byte[] mappingBytes_noMappings = "mappingBytes_noMappings".getBytes();
-
-    private byte[] updatedMappingBytes = "updatedMappingBytes".getBytes();
-    private byte[] updatedMappingBytes_cantRead = "updatedMappingBytes_cantRead".getBytes();
-    private byte[] updatedMappingBytes_noMappings = "updatedMappingBytes_noMappings".getBytes();
+    private ObjectReader mappingsReader;
 
     private String tagsBody = "tagsBody";
     private String tagsBody_cantPost = "tagsBody_cantPost";
@@ -181,6 +164,7 @@ public class DetectorClientTest {
     @Before
     public void setUp() throws Exception {
         MockitoAnnotations.initMocks(this);
+        initReaders();
         initFindDetectorDocument();
         initFindUpdatedDetectorDocuments();
         initFindMatchingDetectorMappings();
@@ -199,6 +183,21 @@ public class DetectorClientTest {
         assertNotNull(result);
     }
 
+    @Test
+    public void testFindDetectorDocument_notModified() throws IOException {
+        val result = clientUnderTest.findDetectorDocument(DETECTOR_UUID);
+        assertSame(result, clientUnderTest.findDetectorDocument(DETECTOR_UUID));
+        verify(httpClient).getIfNoneMatch(FIND_DOC_URI, DOC_ETAG, docReader);
+    }
+
+    @Test
+    public void testFindDetectorDocument_modified() throws IOException {
+        val updatedDoc = new DetectorDocument();
+        clientUnderTest.findDetectorDocument(DETECTOR_UUID);
+        when(httpClient.<DetectorDocument>getIfNoneMatch(FIND_DOC_URI, DOC_ETAG, docReader)).thenReturn(modified(updatedDoc, "W/\"2\""));
+        assertSame(updatedDoc, clientUnderTest.findDetectorDocument(DETECTOR_UUID));
+    }
+
     @Test(expected = DetectorException.class)
     public void testFindDetectorDocument_cantGet() {
         clientUnderTest.findDetectorDocument(DETECTOR_UUID_CANT_GET);
@@ -214,6 +213,56 @@ public class DetectorClientTest {
         clientUnderTest.findDetectorDocument(DETECTOR_UUID_NO_DOCS);
     }
 
+    @Test
+    public void testFindDetectorDocumentAsync() throws Exception {
+        when(httpClient.<DetectorDocument>getIfNoneMatchAsync(FIND_DOC_URI, null, docReader))
+                .thenReturn(completedFuture(modified(doc, DOC_ETAG)));
+        val result = clientUnderTest.findDetectorDocumentAsync(DETECTOR_UUID);
+        assertSame(doc, result.get());
+    }
+
+    @Test
+    public void testFindDetectorDocumentAsync_cantGet() throws Exception {
+        CompletableFuture<ConditionalResponse<DetectorDocument>> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new IOException());
+        when(httpClient.<DetectorDocument>getIfNoneMatchAsync(FIND_DOC_URI_CANT_GET, null, docReader)).thenReturn(failed);
+        assertAsyncFailure(clientUnderTest.findDetectorDocumentAsync(DETECTOR_UUID_CANT_GET));
+    }
+
+    @Test
+    public void testFindDetectorDocumentAsync_noDocs() throws Exception {
+        when(httpClient.<DetectorDocument>getIfNoneMatchAsync(FIND_DOC_URI_NO_DOC, null, docReader))
+                .thenReturn(completedFuture(modified(null, null)));
+        assertAsyncFailure(clientUnderTest.findDetectorDocumentAsync(DETECTOR_UUID_NO_DOCS));
+    }
+
+    // ================================================================================
+    // findDetectorDocuments
+    // ================================================================================
+
+    @Test
+    public void testFindDetectorDocuments() throws IOException {
+        val uuids = Collections.singletonList(DETECTOR_UUID);
+        val found = new DetectorDocument[]{doc};
+        when(objectMapper.writeValueAsString(uuids)).thenReturn("uuidsBody");
+        when(httpClient.post(FIND_DOCS_URI, "uuidsBody", docsReader)).thenReturn(found);
+        assertEquals(Collections.singletonList(doc), clientUnderTest.findDetectorDocuments(uuids));
+    }
+
+    @Test
+    public void testFindDetectorDocuments_noUuids() throws IOException {
+        assertTrue(clientUnderTest.findDetectorDocuments(Collections.emptyList()).isEmpty());
+        verify(httpClient, never()).post(eq(FIND_DOCS_URI), any(), any());
+    }
+
+    @Test(expected = DetectorException.class)
+    public void testFindDetectorDocuments_cantPost() throws IOException {
+        val uuids = Collections.singletonList(DETECTOR_UUID_CANT_POST);
+        when(objectMapper.writeValueAsString(uuids)).thenReturn("uuidsBody_cantPost");
+        when(httpClient.post(FIND_DOCS_URI, "uuidsBody_cantPost", docsReader)).thenThrow(new IOException());
+        clientUnderTest.findDetectorDocuments(uuids);
+    }
+
     // ================================================================================
     // findUpdatedDetectorDocuments
     // ================================================================================
@@ -223,6 +272,12 @@ public class DetectorClientTest {
         clientUnderTest.findUpdatedDetectorDocuments(TIME_PERIOD_INVALID);
     }
 
+    @Test
+    public void testFindUpdatedDetectorDocuments() {
+        val result = clientUnderTest.findUpdatedDetectorDocuments(TIME_PERIOD_VALID);
+        assertEquals(0, result.size());
+    }
+
     @Test(expected = DetectorException.class)
     public void testFindUpdatedDetectorDocuments_cantGet() {
         clientUnderTest.findUpdatedDetectorDocuments(TIME_PERIOD_CANT_GET);
@@ -234,6 +289,38 @@ public class DetectorClientTest {
     }
 
 
+    // ================================================================================
+    // forEachUpdatedDetectorDocument
+    // ================================================================================
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testForEachUpdatedDetectorDocument_timePeriodInvalid() {
+        clientUnderTest.forEachUpdatedDetectorDocument(TIME_PERIOD_INVALID, document -> {
+        });
+    }
+
+    @Test
+    public void testForEachUpdatedDetectorDocument() throws IOException {
+        doAnswer(invocation -> {
+            invocation.<Consumer<DetectorDocument>>getArgument(3).accept(doc);
+            invocation.<Consumer<DetectorDocument>>getArgument(3).accept(doc);
+            return null;
+        }).when(httpClient).getEach(eq(FIND_UPDATED_DOCS_URI), eq(NDJSON_HEADERS), eq(docReader), any());
+
+        List<DetectorDocument> result = new ArrayList<>();
+        clientUnderTest.forEachUpdatedDetectorDocument(TIME_PERIOD_VALID, result::add);
+        assertEquals(2, result.size());
+        assertSame(doc, result.get(0));
+    }
+
+    @Test(expected = DetectorException.class)
+    public void testForEachUpdatedDetectorDocument_cantGet() throws IOException {
+        doThrow(new IOException()).when(httpClient)
+                .getEach(eq(FIND_UPDATED_DOCS_URI_CANT_GET), eq(NDJSON_HEADERS), eq(docReader), any());
+        clientUnderTest.forEachUpdatedDetectorDocument(TIME_PERIOD_CANT_GET, document -> {
+        });
+    }
+
     // ================================================================================
     // updatedDetectorLastUsed
     // ================================================================================
@@ -253,6 +340,26 @@ public class DetectorClientTest {
         clientUnderTest.updatedDetectorLastUsed(DETECTOR_UUID);
     }
 
+    // ================================================================================
+    // updateDetectorsLastUsed
+    // ================================================================================
+
+    @Test
+    public void testUpdateDetectorsLastUsed() throws IOException {
+        val lastUsedTimes = Collections.singletonMap(DETECTOR_UUID, 1000L);
+        when(objectMapper.writeValueAsString(lastUsedTimes)).thenReturn("some-body");
+        clientUnderTest.updateDetectorsLastUsed(lastUsedTimes);
+        verify(httpClient, times(1)).post(UPDATE_DETECTORS_LAST_USED_URI, "some-body");
+    }
+
+    @Test(expected = DetectorException.class)
+    public void testUpdateDetectorsLastUsed_cantPost() throws IOException {
+        val lastUsedTimes = Collections.singletonMap(DETECTOR_UUID, 1000L);
+        when(objectMapper.writeValueAsString(lastUsedTimes)).thenReturn("some-body");
+        when(httpClient.post(UPDATE_DETECTORS_LAST_USED_URI, "some-body")).thenThrow(new IOException());
+        clientUnderTest.updateDetectorsLastUsed(lastUsedTimes);
+    }
+
     // ================================================================================
     // findMatchingDetectorMappings
     // ================================================================================
@@ -299,6 +406,32 @@ public class DetectorClientTest {
         clientUnderTest.findUpdatedDetectorMappings(TIME_PERIOD_NO_MAPPINGS);
     }
 
+    // ================================================================================
+    // forEachUpdatedDetectorMapping
+    // ================================================================================
+
+    @Test
+    public void testForEachUpdatedDetectorMapping() throws IOException {
+        val mapping = new DetectorMapping();
+        doAnswer(invocation -> {
+            invocation.<Consumer<DetectorMapping>>getArgument(3).accept(mapping);
+            return null;
+        }).when(httpClient).getEach(eq(FIND_UPDATED_MAPPINGS_URI), eq(NDJSON_HEADERS), any(), any());
+
+        List<DetectorMapping> result = new ArrayList<>();
+        clientUnderTest.forEachUpdatedDetectorMapping(TIME_PERIOD_VALID, result::add);
+        assertEquals(1, result.size());
+        assertSame(mapping, result.get(0));
+    }
+
+    @Test(expected = DetectorException.class)
+    public void testForEachUpdatedDetectorMapping_cantRead() throws IOException {
+        doThrow(new JsonParseException(null, "Can't read")).when(httpClient)
+                .getEach(eq(FIND_UPDATED_MAPPINGS_URI_CANT_READ), eq(NDJSON_HEADERS), any(), any());
+        clientUnderTest.forEachUpdatedDetectorMapping(TIME_PERIOD_CANT_READ, mapping -> {
+        });
+    }
+
     // ================================================================================
     // findDetectorMappingByUuid
     // ================================================================================
@@ -333,63 +466,60 @@ public class DetectorClientTest {
         return String.format(BASE_URI + path, param);
     }
 
-    private void initFindDetectorDocument() throws IOException {
-        when(httpClient.get(FIND_DOC_URI)).thenReturn(docContent);
-        when(docContent.asBytes()).thenReturn(docBytes);
-        when(objectMapper.readValue(docBytes, DetectorDocument.class)).thenReturn(doc);
-
-        when(httpClient.get(FIND_DOC_URI_CANT_GET)).thenThrow(new IOException());
+    private static void assertAsyncFailure(CompletableFuture<?> future) throws InterruptedException {
+        try {
+            future.get();
+            fail("Expected ExecutionException");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof DetectorException);
+        }
+    }
 
-        when(httpClient.get(FIND_DOC_URI_CANT_READ)).thenReturn(docContent_cantRead);
-        when(docContent_cantRead.asBytes()).thenReturn(docBytes_cantRead);
-        when(objectMapper.readValue(docBytes_cantRead, DetectorDocument.class)).thenThrow(new IOException());
+    private static ConditionalResponse<DetectorDocument> modified(DetectorDocument document, String eTag) {
+        return new ConditionalResponse<>(false, document, eTag);
+    }
 
-        when(httpClient.get(FIND_DOC_URI_NO_DOC)).thenReturn(docContent_noDoc);
-        when(docContent_noDoc.asBytes()).thenReturn(docBytes_noDocs);
-        when(objectMapper.readValue(docBytes_noDocs, DetectorDocument.class)).thenReturn(null);
+    private static ConditionalResponse<DetectorDocument> notModified(String eTag) {
+        return new ConditionalResponse<>(true, null, eTag);
     }
 
-    private void initFindUpdatedDetectorDocuments() throws IOException {
-        when(httpClient.get(FIND_UPDATED_DOCS_URI)).thenReturn(updatedDocsContent);
-        when(updatedDocsContent.asBytes()).thenReturn(updatedDocsBytes);
-        when(objectMapper.readValue(updatedDocsBytes, DetectorDocument[].class)).thenReturn(docs);
+    private void initReaders() {
+        when(objectMapper.readerFor(DetectorDocument.class)).thenReturn(docReader);
+        when(objectMapper.readerFor(DetectorDocument[].class)).thenReturn(docsReader);
+        when(objectMapper.readerFor(DetectorMatchResponse.class)).thenReturn(matchResponseReader);
+        when(objectMapper.readerFor(any(TypeReference.class))).thenReturn(mappingsReader);
+    }
 
-        when(httpClient.get(FIND_UPDATED_DOCS_URI_CANT_GET)).thenThrow(new IOException());
+    private void initFindDetectorDocument() throws IOException {
+        when(httpClient.<DetectorDocument>getIfNoneMatch(FIND_DOC_URI, null, docReader)).thenReturn(modified(doc, DOC_ETAG));
+        when(httpClient.<DetectorDocument>getIfNoneMatch(FIND_DOC_URI, DOC_ETAG, docReader)).thenReturn(notModified(DOC_ETAG));
+        when(httpClient.<DetectorDocument>getIfNoneMatch(FIND_DOC_URI_CANT_GET, null, docReader)).thenThrow(new IOException());
+        when(httpClient.<DetectorDocument>getIfNoneMatch(FIND_DOC_URI_CANT_READ, null, docReader)).thenThrow(new JsonParseException(null, "Can't read"));
+        when(httpClient.<DetectorDocument>getIfNoneMatch(FIND_DOC_URI_NO_DOC, null, docReader)).thenReturn(modified(null, null));
+    }
 
-        when(httpClient.get(FIND_UPDATED_DOCS_URI_CANT_READ)).thenReturn(updatedDocsContent_cantRead);
-        when(updatedDocsContent_cantRead.asBytes()).thenReturn(updatedDocsBytes_cantRead);
-        when(objectMapper.readValue(updatedDocsBytes_cantRead, DetectorDocument[].class)).thenThrow(new IOException());
+    private void initFindUpdatedDetectorDocuments() throws IOException {
+        when(httpClient.get(FIND_UPDATED_DOCS_URI, docsReader)).thenReturn(docs);
+        when(httpClient.get(FIND_UPDATED_DOCS_URI_CANT_GET, docsReader)).thenThrow(new IOException());
+        when(httpClient.get(FIND_UPDATED_DOCS_URI_CANT_READ, docsReader)).thenThrow(new JsonParseException(null, "Can't read"));
     }
 
     private void initFindMatchingDetectorMappings() throws IOException {
         when(objectMapper.writeValueAsString(tags)).thenReturn(tagsBody);
-        when(httpClient.post(FIND_MAPPINGS_URI, tagsBody)).thenReturn(mappingContent);
-        when(mappingContent.asBytes()).thenReturn(mappingBytes);
-        when(objectMapper.readValue(mappingBytes, DetectorMatchResponse.class)).thenReturn(detectorMatchResponse);
+        when(httpClient.post(FIND_MAPPINGS_URI, tagsBody, matchResponseReader)).thenReturn(detectorMatchResponse);
 
         when(objectMapper.writeValueAsString(tags_cantPost)).thenReturn(tagsBody_cantPost);
-        when(httpClient.post(FIND_MAPPINGS_URI, tagsBody_cantPost)).thenThrow(new IOException());
+        when(httpClient.post(FIND_MAPPINGS_URI, tagsBody_cantPost, matchResponseReader)).thenThrow(new IOException());
 
         when(objectMapper.writeValueAsString(tags_cantRead)).thenReturn(tagsBody_cantRead);
-        when(httpClient.post(FIND_MAPPINGS_URI, tagsBody_cantRead)).thenReturn(mappingContent_cantRead);
-        when(mappingContent_cantRead.asBytes()).thenReturn(mappingBytes_cantRead);
-        when(objectMapper.readValue(mappingBytes_cantRead, DetectorMatchResponse.class)).thenThrow(new IOException());
+        when(httpClient.post(FIND_MAPPINGS_URI, tagsBody_cantRead, matchResponseReader)).thenThrow(new JsonParseException(null, "Can't read"));
     }
 
     private void initFindUpdatedDetectorMappings() throws IOException {
-        when(httpClient.get(FIND_UPDATED_MAPPINGS_URI)).thenReturn(updatedMappingContent);
-        when(updatedMappingContent.asBytes()).thenReturn(updatedMappingBytes);
-        when(objectMapper.readValue(eq(updatedMappingBytes), any(TypeReference.class))).thenReturn(mappings);
-
-        when(httpClient.get(FIND_UPDATED_MAPPINGS_URI_CANT_GET)).thenThrow(new IOException());
-
-        when(httpClient.get(FIND_UPDATED_MAPPINGS_URI_CANT_READ)).thenReturn(updatedMappingContent_cantRead);
-        when(updatedMappingContent_cantRead.asBytes()).thenReturn(updatedMappingBytes_cantRead);
-        when(objectMapper.readValue(eq(updatedMappingBytes_cantRead), any(TypeReference.class))).thenThrow(new IOException());
-
-        when(httpClient.get(FIND_UPDATED_MAPPINGS_URI_NO_MAPPINGS)).thenReturn(updatedMappingContent_noMappings);
-        when(updatedMappingContent_noMappings.asBytes()).thenReturn(updatedMappingBytes_noMappings);
-        when(objectMapper.readValue(eq(updatedMappingBytes_noMappings), any(TypeReference.class))).thenReturn(null);
+        when(httpClient.get(FIND_UPDATED_MAPPINGS_URI, mappingsReader)).thenReturn(mappings);
+        when(httpClient.get(FIND_UPDATED_MAPPINGS_URI_CANT_GET, mappingsReader)).thenThrow(new IOException());
+        when(httpClient.get(FIND_UPDATED_MAPPINGS_URI_CANT_READ, mappingsReader)).thenThrow(new JsonParseException(null, "Can't read"));
+        when(httpClient.get(FIND_UPDATED_MAPPINGS_URI_NO_MAPPINGS, mappingsReader)).thenReturn(null);
     }
 
     private void initFindDetectorMappingsByUuid() throws IOException {
@@ -397,25 +527,20 @@ public class DetectorClientTest {
 
         val bodyMap = buildDetectorMappingByUuidBody(DETECTOR_UUID);
         when(objectMapper.writeValueAsString(bodyMap)).thenReturn(uuidMappingsBody);
-        when(httpClient.post(FIND_MAPPINGS_URI_BY_UUID, uuidMappingsBody)).thenReturn(mappingContent);
-        when(mappingContent.asBytes()).thenReturn(mappingBytes);
-        when(objectMapper.readValue(eq(mappingBytes), any(TypeReference.class))).thenReturn(mappings);
+        when(httpClient.post(FIND_MAPPINGS_URI_BY_UUID, uuidMappingsBody, mappingsReader)).thenReturn(mappings);
 
         val bodyCantPostMap = buildDetectorMappingByUuidBody(DETECTOR_UUID_CANT_POST);
         when(objectMapper.writeValueAsString(bodyCantPostMap)).thenReturn(uuidMappingsBody_cantPost);
-        when(httpClient.post(FIND_MAPPINGS_URI_BY_UUID_URI_CANT_GET, uuidMappingsBody_cantPost)).thenThrow(new IOException());
+        when(httpClient.post(FIND_MAPPINGS_URI_BY_UUID_URI_CANT_GET, uuidMappingsBody_cantPost, mappingsReader)).thenThrow(new IOException());
 
         val bodyCantReadMap = buildDetectorMappingByUuidBody(DETECTOR_UUID_CANT_READ);
         when(objectMapper.writeValueAsString(bodyCantReadMap)).thenReturn(uuidMappingsBody_cantRead);
-        when(httpClient.post(FIND_MAPPINGS_URI_BY_UUID_CANT_READ, uuidMappingsBody_cantRead)).thenReturn(mappingContent_cantRead);
-        when(mappingContent_cantRead.asBytes()).thenReturn(mappingBytes_cantRead);
-        when(objectMapper.readValue(eq(mappingBytes_cantRead), any(TypeReference.class))).thenThrow(new IOException());
+        when(httpClient.post(FIND_MAPPINGS_URI_BY_UUID_CANT_READ, uuidMappingsBody_cantRead, mappingsReader))
+                .thenThrow(new JsonParseException(null, "Can't read"));
 
         val bodyNoMappingsMap = buildDetectorMappingByUuidBody(DETECTOR_UUID_NO_DOCS);
         when(objectMapper.writeValueAsString(bodyNoMappingsMap)).thenReturn(uuidMappingsBody_noMappings);
-        when(httpClient.post(FIND_MAPPINGS_URI_BY_UUID_NO_MAPPINGS, uuidMappingsBody_noMappings)).thenReturn(mappingContent_noMappings);
-        when(mappingContent_noMappings.asBytes()).thenReturn(mappingBytes_noMappings);
-        when(objectMapper.readValue(eq(mappingBytes_noMappings), any(TypeReference.class))).thenReturn(null);
+        when(httpClient.post(FIND_MAPPINGS_URI_BY_UUID_NO_MAPPINGS, uuidMappingsBody_noMappings, mappingsReader)).thenReturn(null);
     }
 
     private Map<String, UUID> buildDetectorMappingByUuidBody(UUID uuid) {
@@ -1,20 +1,27 @@
 package com.expedia.adaptivealerting.anomdetect.source.data.graphite;
 
 import com.expedia.adaptivealerting.anomdetect.util.HttpClientWrapper;
+import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.http.client.fluent.Content;
+import lombok.val;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 import static com.expedia.adaptivealerting.anomdetect.source.data.graphite.GraphiteClient.FETCH_METRICS_PATH;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.when;
 
 @Slf4j
@@ -37,15 +44,9 @@ public class GraphiteClientTest {
     private ObjectMapper objectMapper;
 
     @Mock
-    private Content docsContent;
+    private ObjectReader reader;
 
-    @Mock
-    private Content docContent_cantRead;
-
-    private byte[] docsBytes = "docsBytes".getBytes();
-
-    private byte[] docBytes_cantRead = "docBytes_cantRead".getBytes();
-    private GraphiteResult[] docs = {};
+    private GraphiteResult[] docs = {new GraphiteResult()};
     private Map<String, String> headers = Collections.singletonMap("x-org-id", "1");
 
     @Before
@@ -58,7 +59,36 @@ public class GraphiteClientTest {
     @Test
     public void testGetMetricData() {
         assertEquals(1580901895, UNTIL_TIME_IN_SECONDS);
-        clientUnderTest.getData(FROM_TIME_IN_SECONDS, UNTIL_TIME_IN_SECONDS, INTERVAL_LENGTH, "metricName");
+        val results = clientUnderTest.getData(FROM_TIME_IN_SECONDS, UNTIL_TIME_IN_SECONDS, INTERVAL_LENGTH, "metricName");
+        assertEquals(Arrays.asList(docs), results);
+    }
+
+    @Test
+    public void testGetMetricData_noContent() throws IOException {
+        when(httpClient.get(METRIC_URI, headers, reader)).thenReturn(null);
+        val results = clientUnderTest.getData(FROM_TIME_IN_SECONDS, UNTIL_TIME_IN_SECONDS, INTERVAL_LENGTH, "metricName");
+        assertTrue(results.isEmpty());
+    }
+
+    @Test
+    public void testGetMetricDataAsync() throws Exception {
+        when(httpClient.getAsync(METRIC_URI, headers, reader)).thenReturn(CompletableFuture.completedFuture(docs));
+        val results = clientUnderTest.getDataAsync(FROM_TIME_IN_SECONDS, UNTIL_TIME_IN_SECONDS, INTERVAL_LENGTH, "metricName");
+        assertEquals(Arrays.asList(docs), results.get());
+    }
+
+    @Test
+    public void testGetMetricDataAsync_cant_get() throws Exception {
+        CompletableFuture<Object> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new IOException());
+        when(httpClient.getAsync(METRIC_URI_CANT_GET, headers, reader)).thenReturn(failed);
+        val results = clientUnderTest.getDataAsync(FROM_TIME_IN_SECONDS, UNTIL_TIME_IN_SECONDS, INTERVAL_LENGTH, "metricNameCantGet");
+        try {
+            results.get();
+            fail("Expected ExecutionException");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof GraphiteClientException);
+        }
     }
 
     @Test(expected = GraphiteClientException.class)
@@ -72,15 +102,10 @@ public class GraphiteClientTest {
     }
 
     private void initMetricData() throws IOException {
-        when(httpClient.get(METRIC_URI, headers)).thenReturn(docsContent);
-        when(docsContent.asBytes()).thenReturn(docsBytes);
-        when(objectMapper.readValue(docsBytes, GraphiteResult[].class)).thenReturn(docs);
-
-        when(httpClient.get(METRIC_URI_CANT_GET, headers)).thenThrow(new IOException());
-
-        when(httpClient.get(METRIC_URI_CANT_READ, headers)).thenReturn(docContent_cantRead);
-        when(docContent_cantRead.asBytes()).thenReturn(docBytes_cantRead);
-        when(objectMapper.readValue(docBytes_cantRead, GraphiteResult[].class)).thenThrow(new IOException());
+        when(objectMapper.readerFor(GraphiteResult[].class)).thenReturn(reader);
+        when(httpClient.get(METRIC_URI, headers, reader)).thenReturn(docs);
+        when(httpClient.get(METRIC_URI_CANT_GET, headers, reader)).thenThrow(new IOException());
+        when(httpClient.get(METRIC_URI_CANT_READ, headers, reader)).thenThrow(new JsonParseException(null, "Can't read"));
     }
 
 
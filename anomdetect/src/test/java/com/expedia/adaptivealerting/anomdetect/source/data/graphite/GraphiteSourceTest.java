@@ -9,11 +9,16 @@ import org.junit.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.io.IOException;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
+import static java.util.concurrent.CompletableFuture.completedFuture;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
@@ -93,6 +98,34 @@ public class GraphiteSourceTest {
         assertEquals(expected, actual);
     }
 
+    @Test(expected = GraphiteClientException.class)
+    public void testGetMetricData_client_exception() {
+        val latestTimeInEpoch = earliestTimeInEpoch + TimeConstantsUtil.SECONDS_PER_DAY;
+        sourceUnderTest.getMetricData(earliestTimeInEpoch, latestTimeInEpoch, intervalLength, "failing_metric");
+    }
+
+    @Test
+    public void testGetMetricData_cancelsDaysInFlightOnFailure() {
+        List<CompletableFuture<List<GraphiteResult>>> started = new ArrayList<>();
+        when(client.getDataAsync(anyLong(), anyLong(), anyInt(), eq("slow_metric"))).thenAnswer(invocation -> {
+            CompletableFuture<List<GraphiteResult>> future = new CompletableFuture<>();
+            if (started.isEmpty()) {
+                future.completeExceptionally(new GraphiteClientException("Can't get", new IOException()));
+            }
+            started.add(future);
+            return future;
+        });
+
+        val latestTimeInEpoch = earliestTimeInEpoch + 7 * TimeConstantsUtil.SECONDS_PER_DAY;
+        try {
+            sourceUnderTest.getMetricData(earliestTimeInEpoch, latestTimeInEpoch, intervalLength, "slow_metric");
+            fail("Expected GraphiteClientException");
+        } catch (GraphiteClientException e) {
+            assertEquals(GraphiteSource.MAX_DAYS_IN_FLIGHT, started.size());
+            started.subList(1, started.size()).forEach(future -> assertTrue(future.isCancelled()));
+        }
+    }
+
     private void initTestObjects() {
         earliestTimeInEpoch = Instant.parse(EARLIEST_TIME).getEpochSecond();
         noOfBinsInADay = getBinsInDay(intervalLength);
@@ -102,10 +135,14 @@ public class GraphiteSourceTest {
     }
 
     private void initDependencies() {
-        when(client.getData(anyLong(), anyLong(), anyInt(), eq("metric_name"))).thenReturn(graphiteResults);
-        when(client.getData(anyLong(), anyLong(), anyInt(), eq("null_metric"))).thenReturn(new ArrayList<>());
-        when(client.getData(anyLong(), anyLong(), anyInt(), eq("null_value"))).thenReturn(graphiteResults_null);
-        when(client.getData(anyLong(), anyLong(), anyInt(), eq("partial_value"))).thenReturn(partialGraphiteResults_null);
+        when(client.getDataAsync(anyLong(), anyLong(), anyInt(), eq("metric_name"))).thenReturn(completedFuture(graphiteResults));
+        when(client.getDataAsync(anyLong(), anyLong(), anyInt(), eq("null_metric"))).thenReturn(completedFuture(new ArrayList<>()));
+        when(client.getDataAsync(anyLong(), anyLong(), anyInt(), eq("null_value"))).thenReturn(completedFuture(graphiteResults_null));
+        when(client.getDataAsync(anyLong(), anyLong(), anyInt(), eq("partial_value"))).thenReturn(completedFuture(partialGraphiteResults_null));
+
+        CompletableFuture<List<GraphiteResult>> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new GraphiteClientException("Can't get", new IOException()));
+        when(client.getDataAsync(anyLong(), anyLong(), anyInt(), eq("failing_metric"))).thenReturn(failed);
     }
 
     private GraphiteResult buildGraphiteResult(long earliestTime) {
@@ -21,6 +21,9 @@ import org.junit.Test;
 import java.util.Arrays;
 
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertTrue;
 
 public class ArrayUtilTest {
@@ -52,4 +55,35 @@ public class ArrayUtilTest {
         Arrays.sort(copy);
         assertArrayEquals(orig, copy, TOLERANCE);
     }
+
+    @Test
+    public void testShuffle_seeded() {
+        val n = 14;
+
+        val orig = new double[n];
+        for (int i = 0; i < n; i++) {
+            orig[i] = i;
+        }
+
+        val copy1 = Arrays.copyOf(orig, n);
+        val copy2 = Arrays.copyOf(orig, n);
+        val copy3 = Arrays.copyOf(orig, n);
+        ArrayUtil.shuffle(copy1, 42L);
+        ArrayUtil.shuffle(copy2, 42L);
+        ArrayUtil.shuffle(copy3, ArrayUtil.splitSeed(42L, 1));
+
+        assertArrayEquals(copy1, copy2, TOLERANCE);
+        assertFalse(Arrays.equals(copy1, copy3));
+        assertFalse(Arrays.equals(orig, copy1));
+
+        Arrays.sort(copy1);
+        assertArrayEquals(orig, copy1, TOLERANCE);
+    }
+
+    @Test
+    public void testSplitSeed() {
+        assertEquals(ArrayUtil.splitSeed(42L, 3), ArrayUtil.splitSeed(42L, 3));
+        assertNotEquals(ArrayUtil.splitSeed(42L, 3), ArrayUtil.splitSeed(42L, 4));
+        assertNotEquals(ArrayUtil.splitSeed(42L, 3), ArrayUtil.splitSeed(43L, 3));
+    }
 }
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.util;
+
+import lombok.val;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public final class DoubleRunningMedianTest {
+    private static final double TOLERANCE = 0.001;
+    private static final long RANDOM_SEED = 314159;
+
+    private DoubleRunningMedian runningMedian;
+
+    @Before
+    public void setUp() {
+        this.runningMedian = new DoubleRunningMedian();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructor_invalidCapacity() {
+        new DoubleRunningMedian(0);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testGetMedian_empty() {
+        runningMedian.getMedian();
+    }
+
+    @Test
+    public void testAddAndGet() {
+        runningMedian.add(10.0);
+        assertEquals(10.0, runningMedian.getMedian(), TOLERANCE);
+        runningMedian.add(12.0);
+        assertEquals(11.0, runningMedian.getMedian(), TOLERANCE);
+        runningMedian.add(8.0);
+        assertEquals(10.0, runningMedian.getMedian(), TOLERANCE);
+        runningMedian.add(6.0);
+        assertEquals(9.0, runningMedian.getMedian(), TOLERANCE);
+        runningMedian.add(20.0);
+        assertEquals(10.0, runningMedian.getMedian(), TOLERANCE);
+        runningMedian.add(20.0);
+        assertEquals(11.0, runningMedian.getMedian(), TOLERANCE);
+        assertEquals(6, runningMedian.size());
+    }
+
+    @Test
+    public void testClear() {
+        runningMedian.add(10.0);
+        runningMedian.add(12.0);
+        runningMedian.clear();
+        assertEquals(0, runningMedian.size());
+
+        runningMedian.add(-3.0);
+        assertEquals(-3.0, runningMedian.getMedian(), TOLERANCE);
+    }
+
+    @Test
+    public void testMatchesRunningMedian() {
+        val random = new Random(RANDOM_SEED);
+
+        // Start small so the heaps have to grow.
+        val medianUnderTest = new DoubleRunningMedian(1);
+        val reference = new RunningMedian();
+
+        for (int i = 0; i < 1000; i++) {
+            val value = random.nextGaussian();
+            medianUnderTest.add(value);
+            reference.add(value);
+            assertEquals(reference.getMedian(), medianUnderTest.getMedian(), 0.0);
+        }
+    }
+}
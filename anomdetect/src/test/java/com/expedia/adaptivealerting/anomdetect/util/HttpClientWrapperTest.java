@@ -0,0 +1,287 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.util;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.typesafe.config.ConfigFactory;
+import lombok.val;
+import org.apache.http.client.HttpResponseException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link HttpClientWrapper} tests against a local HTTP server.
+ */
+public class HttpClientWrapperTest {
+    private static final String JSON = "{\"name\":\"some-name\",\"value\":42}";
+    private static final String ETAG = "\"v1\"";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private HttpServer server;
+    private String baseUri;
+    private HttpClientWrapper wrapperUnderTest;
+
+    @Before
+    public void setUp() throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/json", exchange -> respond(exchange, 200, JSON.getBytes(StandardCharsets.UTF_8), false));
+        server.createContext("/gzip", exchange -> respond(exchange, 200, gzip(JSON), true));
+        server.createContext("/echo", exchange -> respond(exchange, 200, readBody(exchange), false));
+        server.createContext("/header", exchange -> {
+            val orgId = exchange.getRequestHeaders().getFirst("x-org-id");
+            respond(exchange, 200, ("{\"name\":\"" + orgId + "\"}").getBytes(StandardCharsets.UTF_8), false);
+        });
+        server.createContext("/missing", exchange -> respond(exchange, 404, new byte[0], false));
+        server.createContext("/ndjson", exchange -> respond(exchange, 200,
+                (JSON + "\n" + JSON + "\n").getBytes(StandardCharsets.UTF_8), false, "application/x-ndjson"));
+        server.createContext("/array", exchange -> respond(exchange, 200,
+                ("[" + JSON + "," + JSON + "]").getBytes(StandardCharsets.UTF_8), false));
+        server.createContext("/etag", exchange -> {
+            exchange.getResponseHeaders().add("ETag", ETAG);
+            if (ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                respond(exchange, 304, new byte[0], false);
+            } else {
+                respond(exchange, 200, JSON.getBytes(StandardCharsets.UTF_8), false);
+            }
+        });
+        server.start();
+        this.baseUri = "http://localhost:" + server.getAddress().getPort();
+        this.wrapperUnderTest = new HttpClientWrapper(new HttpClientConfig(4, 2, 1000, 1000, 1000, 60000, 2));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        wrapperUnderTest.close();
+        server.stop(0);
+    }
+
+    @Test
+    public void testGet_content() throws IOException {
+        assertEquals(JSON, wrapperUnderTest.get(baseUri + "/json").asString());
+        assertEquals(JSON, wrapperUnderTest.get(baseUri + "/json", Collections.emptyMap()).asString());
+    }
+
+    @Test
+    public void testGet_contentWithHeaders() throws IOException {
+        val headers = Collections.singletonMap("x-org-id", "1");
+        assertEquals("{\"name\":\"1\"}", wrapperUnderTest.get(baseUri + "/header", headers).asString());
+    }
+
+    @Test
+    public void testGet_streaming() throws IOException {
+        // More calls than pooled connections, so connections must be returned to the pool after each call.
+        for (int i = 0; i < 10; i++) {
+            Map<String, Object> result = wrapperUnderTest.get(baseUri + "/json", objectMapper.readerFor(Map.class));
+            assertEquals("some-name", result.get("name"));
+            assertEquals(42, result.get("value"));
+        }
+    }
+
+    @Test
+    public void testGet_gzip() throws IOException {
+        Map<String, Object> result = wrapperUnderTest.get(baseUri + "/gzip", objectMapper.readerFor(Map.class));
+        assertEquals("some-name", result.get("name"));
+    }
+
+    @Test
+    public void testGet_headers() throws IOException {
+        val headers = Collections.singletonMap("x-org-id", "1");
+        Map<String, Object> result = wrapperUnderTest.get(baseUri + "/header", headers, objectMapper.readerFor(Map.class));
+        assertEquals("1", result.get("name"));
+    }
+
+    @Test
+    public void testPost_streaming() throws IOException {
+        Map<String, Object> result = wrapperUnderTest.post(baseUri + "/echo", JSON, objectMapper.readerFor(Map.class));
+        assertEquals(42, result.get("value"));
+        assertEquals(JSON, wrapperUnderTest.post(baseUri + "/echo", JSON).asString());
+    }
+
+    @Test
+    public void testGet_errorStatus() throws IOException {
+        try {
+            wrapperUnderTest.get(baseUri + "/missing", objectMapper.readerFor(Map.class));
+            fail("Expected HttpResponseException");
+        } catch (HttpResponseException e) {
+            assertEquals(404, e.getStatusCode());
+        }
+        // The failed call must not leak its connection.
+        for (int i = 0; i < 10; i++) {
+            wrapperUnderTest.get(baseUri + "/json", objectMapper.readerFor(Map.class));
+        }
+    }
+
+    @Test
+    public void testGetEach_ndjson() throws IOException {
+        List<Map<String, Object>> values = new ArrayList<>();
+        wrapperUnderTest.getEach(baseUri + "/ndjson", Collections.emptyMap(), objectMapper.readerFor(Map.class), values::add);
+        assertEquals(2, values.size());
+        assertEquals(42, values.get(1).get("value"));
+    }
+
+    @Test
+    public void testGetEach_jsonArray() throws IOException {
+        List<Map<String, Object>> values = new ArrayList<>();
+        wrapperUnderTest.getEach(baseUri + "/array", Collections.emptyMap(), objectMapper.readerFor(Map.class), values::add);
+        assertEquals(2, values.size());
+        assertEquals("some-name", values.get(0).get("name"));
+    }
+
+    @Test
+    public void testGetEach_errorStatus() throws IOException {
+        try {
+            wrapperUnderTest.getEach(baseUri + "/missing", Collections.emptyMap(), objectMapper.readerFor(Map.class),
+                    value -> fail("Expected no values"));
+            fail("Expected HttpResponseException");
+        } catch (HttpResponseException e) {
+            assertEquals(404, e.getStatusCode());
+        }
+    }
+
+    @Test(expected = JsonParseException.class)
+    public void testGetEach_jsonNotArray() throws IOException {
+        wrapperUnderTest.getEach(baseUri + "/json", Collections.emptyMap(), objectMapper.readerFor(Map.class), value -> {
+        });
+    }
+
+    @Test
+    public void testGetIfNoneMatch() throws IOException {
+        ConditionalResponse<Map<String, Object>> response =
+                wrapperUnderTest.getIfNoneMatch(baseUri + "/etag", null, objectMapper.readerFor(Map.class));
+        assertFalse(response.isNotModified());
+        assertEquals("some-name", response.getValue().get("name"));
+        assertEquals(ETAG, response.getETag());
+    }
+
+    @Test
+    public void testGetIfNoneMatch_notModified() throws IOException {
+        // More calls than pooled connections, so 304 responses must return their connections too.
+        for (int i = 0; i < 10; i++) {
+            ConditionalResponse<Map<String, Object>> response =
+                    wrapperUnderTest.getIfNoneMatch(baseUri + "/etag", ETAG, objectMapper.readerFor(Map.class));
+            assertTrue(response.isNotModified());
+            assertNull(response.getValue());
+            assertEquals(ETAG, response.getETag());
+        }
+    }
+
+    @Test
+    public void testGetIfNoneMatch_noETag() throws IOException {
+        ConditionalResponse<Map<String, Object>> response =
+                wrapperUnderTest.getIfNoneMatch(baseUri + "/json", ETAG, objectMapper.readerFor(Map.class));
+        assertFalse(response.isNotModified());
+        assertEquals(42, response.getValue().get("value"));
+        assertNull(response.getETag());
+    }
+
+    @Test
+    public void testAsync() throws Exception {
+        Map<String, Object> getResult = wrapperUnderTest.<Map<String, Object>>getAsync(
+                baseUri + "/json", Collections.emptyMap(), objectMapper.readerFor(Map.class)).get();
+        assertEquals("some-name", getResult.get("name"));
+
+        Map<String, Object> postResult = wrapperUnderTest.<Map<String, Object>>postAsync(
+                baseUri + "/echo", JSON, objectMapper.readerFor(Map.class)).get();
+        assertEquals(42, postResult.get("value"));
+
+        ConditionalResponse<Map<String, Object>> conditionalResult = wrapperUnderTest
+                .<Map<String, Object>>getIfNoneMatchAsync(baseUri + "/etag", ETAG, objectMapper.readerFor(Map.class))
+                .get();
+        assertTrue(conditionalResult.isNotModified());
+    }
+
+    @Test
+    public void testAsync_errorStatus() throws Exception {
+        try {
+            wrapperUnderTest.getAsync(baseUri + "/missing", Collections.emptyMap(), objectMapper.readerFor(Map.class)).get();
+            fail("Expected ExecutionException");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof HttpResponseException);
+        }
+    }
+
+    @Test
+    public void testConfig_from() {
+        val config = ConfigFactory.parseString("http-client { max-connections = 100, socket-timeout-ms = 100 }");
+        val clientConfig = HttpClientConfig.from(config, "http-client");
+        assertEquals(100, clientConfig.getMaxConnections());
+        assertEquals(100, clientConfig.getSocketTimeoutMs());
+        assertEquals(new HttpClientConfig().getMaxConnectionsPerRoute(), clientConfig.getMaxConnectionsPerRoute());
+        assertEquals(new HttpClientConfig().getMaxConnections(),
+                HttpClientConfig.from(config, "no-such-path").getMaxConnections());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConfig_invalid() {
+        new HttpClientConfig(1, 2, 1000, 1000, 1000, 60000, 1);
+    }
+
+    private static void respond(HttpExchange exchange, int status, byte[] body, boolean gzip) throws IOException {
+        respond(exchange, status, body, gzip, "application/json");
+    }
+
+    private static void respond(HttpExchange exchange, int status, byte[] body, boolean gzip, String contentType)
+            throws IOException {
+        if (gzip) {
+            exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+        }
+        exchange.getResponseHeaders().add("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static byte[] readBody(HttpExchange exchange) throws IOException {
+        val out = new ByteArrayOutputStream();
+        val buffer = new byte[1024];
+        int read;
+        while ((read = exchange.getRequestBody().read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] gzip(String text) throws IOException {
+        val out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzipOut = new GZIPOutputStream(out)) {
+            gzipOut.write(text.getBytes(StandardCharsets.UTF_8));
+        }
+        return out.toByteArray();
+    }
+}
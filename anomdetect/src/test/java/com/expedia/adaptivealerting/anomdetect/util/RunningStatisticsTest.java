@@ -0,0 +1,64 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.util;
+
+import lombok.val;
+import org.apache.commons.math3.stat.descriptive.SummaryStatistics;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RunningStatisticsTest {
+    private static final double TOLERANCE = 1e-9;
+
+    @Test
+    public void testAddValue_matchesSummaryStatistics() {
+        val random = new Random(42);
+        val expected = new SummaryStatistics();
+        val actual = new RunningStatistics();
+        for (int i = 0; i < 1000; i++) {
+            val value = 100.0 + 15.0 * random.nextGaussian();
+            expected.addValue(value);
+            actual.addValue(value);
+            assertEquals(expected.getN(), actual.getN());
+            assertEquals(expected.getMean(), actual.getMean(), TOLERANCE);
+            assertEquals(expected.getStandardDeviation(), actual.getStandardDeviation(), TOLERANCE);
+        }
+    }
+
+    @Test
+    public void testGetStandardDeviation_fewValues() {
+        val stats = new RunningStatistics();
+        assertTrue(Double.isNaN(stats.getStandardDeviation()));
+        stats.addValue(3.0);
+        assertEquals(0.0, stats.getStandardDeviation(), TOLERANCE);
+    }
+
+    @Test
+    public void testConstructor_restoresState() {
+        val original = new RunningStatistics();
+        original.addValue(1.0);
+        original.addValue(4.0);
+        val restored = new RunningStatistics(original.getN(), original.getMean(), original.getM2());
+        original.addValue(7.0);
+        restored.addValue(7.0);
+        assertEquals(original.getMean(), restored.getMean(), TOLERANCE);
+        assertEquals(original.getStandardDeviation(), restored.getStandardDeviation(), TOLERANCE);
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.util;
+
+import lombok.val;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public final class SlidingWindowQuantileTest {
+    private static final double TOLERANCE = 1e-9;
+    private static final long RANDOM_SEED = 314159;
+
+    private Random random;
+
+    @Before
+    public void setUp() {
+        this.random = new Random(RANDOM_SEED);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructor_invalidWindowSize() {
+        new SlidingWindowQuantile(0, 0.5);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructor_invalidQuantile() {
+        new SlidingWindowQuantile(10, 1.5);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testGetQuantile_empty() {
+        SlidingWindowQuantile.median(10).getQuantile();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testRemoveOldest_empty() {
+        SlidingWindowQuantile.median(10).removeOldest();
+    }
+
+    @Test
+    public void testMedian_slidingWindow() {
+        val median = SlidingWindowQuantile.median(3);
+        median.add(10.0);
+        assertEquals(10.0, median.getQuantile(), TOLERANCE);
+        median.add(12.0);
+        assertEquals(11.0, median.getQuantile(), TOLERANCE);
+        median.add(8.0);
+        assertEquals(10.0, median.getQuantile(), TOLERANCE);
+        assertTrue(median.isFull());
+
+        // Evicts 10.0
+        median.add(6.0);
+        assertEquals(8.0, median.getQuantile(), TOLERANCE);
+        assertEquals(3, median.size());
+
+        assertEquals(12.0, median.removeOldest(), TOLERANCE);
+        assertEquals(7.0, median.getQuantile(), TOLERANCE);
+        assertFalse(median.isFull());
+    }
+
+    @Test
+    public void testClear() {
+        val median = SlidingWindowQuantile.median(3);
+        median.add(10.0);
+        median.add(12.0);
+        median.clear();
+        assertEquals(0, median.size());
+
+        median.add(-3.0);
+        assertEquals(-3.0, median.getQuantile(), TOLERANCE);
+    }
+
+    @Test
+    public void testMatchesRunningMedian() {
+        val windowUnderTest = SlidingWindowQuantile.median(1000);
+        val reference = new RunningMedian();
+
+        for (int i = 0; i < 1000; i++) {
+            val value = random.nextGaussian();
+            windowUnderTest.add(value);
+            reference.add(value);
+            assertEquals(reference.getMedian(), windowUnderTest.getQuantile(), 0.0);
+        }
+    }
+
+    @Test
+    public void testMatchesSortedWindow() {
+        val quantiles = new double[]{0.0, 0.1, 0.25, 0.5, 0.9, 1.0};
+        val windowSizes = new int[]{1, 2, 7, 50};
+
+        for (val quantile : quantiles) {
+            for (val windowSize : windowSizes) {
+                testMatchesSortedWindow(windowSize, quantile);
+            }
+        }
+    }
+
+    private void testMatchesSortedWindow(int windowSize, double quantile) {
+        val windowUnderTest = new SlidingWindowQuantile(windowSize, quantile);
+        val reference = new ArrayDeque<Double>();
+
+        for (int i = 0; i < 500; i++) {
+            // Round to get plenty of ties.
+            val value = Math.round(random.nextGaussian() * 4.0) / 4.0;
+            windowUnderTest.add(value);
+            reference.addLast(value);
+            if (reference.size() > windowSize) {
+                reference.removeFirst();
+            }
+
+            // Occasionally shrink the window from the old end.
+            if (i % 17 == 16 && reference.size() > 1) {
+                assertEquals(reference.removeFirst(), windowUnderTest.removeOldest(), 0.0);
+            }
+
+            assertEquals(reference.size(), windowUnderTest.size());
+            assertEquals(sortedQuantile(reference, quantile), windowUnderTest.getQuantile(), TOLERANCE);
+        }
+    }
+
+    private static double sortedQuantile(ArrayDeque<Double> window, double quantile) {
+        val sorted = window.stream().mapToDouble(Double::doubleValue).sorted().toArray();
+        val rank = quantile * (sorted.length - 1);
+        val lowerRank = (int) Math.floor(rank);
+        val frac = rank - lowerRank;
+        return frac == 0.0 ? sorted[lowerRank] : (1.0 - frac) * sorted[lowerRank] + frac * sorted[lowerRank + 1];
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.detect.breakout.algo.edmx;
+
+import com.expedia.adaptivealerting.benchmarks.BenchmarkData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link EdmxEstimator} against {@link FastEdmxEstimator} on a window of the white noise dataset that
+ * straddles its breakout, so both run the full permutation test.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EdmxEstimatorBenchmark {
+    private static final int BREAKOUT_ROW = 600;
+    private static final int DELTA = 6;
+    private static final int NUM_PERMS = 99;
+
+    @Param({"60", "240"})
+    private int bufferSize;
+
+    private double[] data;
+    private FastEdmxEstimator fastEstimator;
+
+    @Setup
+    public void setUp() {
+        int from = BREAKOUT_ROW - bufferSize / 2;
+        this.data = Arrays.copyOfRange(BenchmarkData.whiteNoiseWithBreakout(), from, from + bufferSize);
+        this.fastEstimator = new FastEdmxEstimator(new EdmxHyperparams()
+                .setDelta(DELTA)
+                .setBufferSize(bufferSize)
+                .setNumPerms(NUM_PERMS)
+                .setEstimatorType(EdmxEstimatorType.FAST)
+                .setRandomSeed(314159L));
+    }
+
+    @Benchmark
+    public EdmxEstimate estimate() {
+        return EdmxEstimator.estimate(data, DELTA, NUM_PERMS);
+    }
+
+    @Benchmark
+    public EdmxEstimate estimateFast() {
+        return fastEstimator.estimate(data);
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.detect.outlier.algo.forecasting;
+
+import com.expedia.adaptivealerting.anomdetect.detect.AnomalyType;
+import com.expedia.adaptivealerting.anomdetect.detect.outlier.BatchOutlierDetector;
+import com.expedia.adaptivealerting.anomdetect.detect.outlier.OutlierDetectorBatchResult;
+import com.expedia.adaptivealerting.anomdetect.forecast.interval.algo.multiplicative.MultiplicativeIntervalForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.interval.algo.multiplicative.MultiplicativeIntervalForecasterParams;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.PointForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.algo.ewma.EwmaPointForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.algo.ewma.EwmaPointForecasterParams;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.algo.pewma.PewmaPointForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.algo.pewma.PewmaPointForecasterParams;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.algo.seasonalnaive.SeasonalNaivePointForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.algo.seasonalnaive.SeasonalNaivePointForecasterParams;
+import com.expedia.adaptivealerting.benchmarks.BenchmarkData;
+import com.expedia.metrics.MetricData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link ForecastingDetector} over the cal-inflow dataset, one observation at a time through
+ * {@link ForecastingDetector#detect(MetricData)} and all at once through the {@link BatchOutlierDetector} path.
+ * Each invocation runs a fresh detector over the whole series.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ForecastingDetectorBenchmark {
+    private static final int SEASONAL_CYCLE_LENGTH = 7 * 24 * 2;
+
+    @Param({"ewma", "pewma", "seasonalnaive"})
+    private String pointForecaster;
+
+    private List<MetricData> metricData;
+    private double[] values;
+    private long[] epochSeconds;
+    private OutlierDetectorBatchResult results;
+    private ForecastingDetector detector;
+
+    @Setup
+    public void setUp() {
+        this.metricData = BenchmarkData.calInflow().getMetricData();
+        int size = metricData.size();
+        this.values = new double[size];
+        this.epochSeconds = new long[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = metricData.get(i).getValue();
+            epochSeconds[i] = metricData.get(i).getTimestamp();
+        }
+        this.results = new OutlierDetectorBatchResult(size);
+    }
+
+    @Setup(Level.Invocation)
+    public void newDetector() {
+        this.detector = new ForecastingDetector(
+                UUID.randomUUID(),
+                newPointForecaster(),
+                new MultiplicativeIntervalForecaster(new MultiplicativeIntervalForecasterParams()
+                        .setWeakMultiplier(1.2)
+                        .setStrongMultiplier(1.5)),
+                AnomalyType.TWO_TAILED,
+                true,
+                "benchmark");
+    }
+
+    @Benchmark
+    public void detect(Blackhole blackhole) {
+        for (MetricData observation : metricData) {
+            blackhole.consume(detector.detect(observation));
+        }
+    }
+
+    @Benchmark
+    public OutlierDetectorBatchResult detectBatch() {
+        detector.detect(values, epochSeconds, values.length, results);
+        return results;
+    }
+
+    private PointForecaster newPointForecaster() {
+        switch (pointForecaster) {
+            case "ewma":
+                return new EwmaPointForecaster(new EwmaPointForecasterParams());
+            case "pewma":
+                return new PewmaPointForecaster(new PewmaPointForecasterParams());
+            case "seasonalnaive":
+                return new SeasonalNaivePointForecaster(new SeasonalNaivePointForecasterParams()
+                        .setCycleLength(SEASONAL_CYCLE_LENGTH)
+                        .setIntervalLength(BenchmarkData.CAL_INFLOW_INTERVAL));
+            default:
+                throw new IllegalArgumentException("Unknown point forecaster: " + pointForecaster);
+        }
+    }
+}
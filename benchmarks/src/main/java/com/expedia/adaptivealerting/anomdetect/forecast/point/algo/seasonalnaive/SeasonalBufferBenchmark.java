@@ -0,0 +1,89 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.forecast.point.algo.seasonalnaive;
+
+import com.expedia.adaptivealerting.benchmarks.BenchmarkData;
+import com.expedia.metrics.MetricData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Measures {@link SeasonalBuffer#updateWhilePadding(MetricData)} against the primitive
+ * {@link SeasonalBuffer#updateWhilePadding(long, double)} over the cal-inflow dataset, with every tenth observation
+ * dropped so that the buffer pads the gaps.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SeasonalBufferBenchmark {
+    private static final int CYCLE_LENGTH = 7 * 24 * 2;
+
+    private MetricData[] metricData;
+    private long[] epochSeconds;
+    private double[] values;
+
+    @Setup
+    public void setUp() {
+        List<MetricData> all = BenchmarkData.calInflow().getMetricData();
+        this.metricData = IntStream.range(0, all.size()).filter(i -> i % 10 != 9).mapToObj(all::get).toArray(MetricData[]::new);
+        this.epochSeconds = new long[metricData.length];
+        this.values = new double[metricData.length];
+        for (int i = 0; i < metricData.length; i++) {
+            epochSeconds[i] = metricData[i].getTimestamp();
+            values[i] = metricData[i].getValue();
+        }
+    }
+
+    @Benchmark
+    public double updateWhilePadding_metricData() {
+        SeasonalBuffer buffer = newBuffer();
+        double sum = 0.0;
+        for (MetricData data : metricData) {
+            sum += buffer.updateWhilePadding(data);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double updateWhilePadding_primitive() {
+        SeasonalBuffer buffer = newBuffer();
+        double sum = 0.0;
+        for (int i = 0; i < values.length; i++) {
+            sum += buffer.updateWhilePadding(epochSeconds[i], values[i]);
+        }
+        return sum;
+    }
+
+    private static SeasonalBuffer newBuffer() {
+        return new SeasonalBuffer(CYCLE_LENGTH, BenchmarkData.CAL_INFLOW_INTERVAL,
+                SeasonalNaivePointForecasterParams.DEFAULT_MISSING_VALUE_PLACEHOLDER);
+    }
+}
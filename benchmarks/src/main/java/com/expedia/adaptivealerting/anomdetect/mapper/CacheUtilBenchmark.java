@@ -0,0 +1,69 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.mapper;
+
+import com.expedia.adaptivealerting.benchmarks.BenchmarkData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the string cache key built by {@link CacheUtil#getKey(Map)} against the hashed {@link TagSetKey}, for
+ * the tag sets of distinct metrics.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CacheUtilBenchmark {
+    private static final int NUM_METRICS = 10_000;
+
+    private Map<String, String>[] metricTags;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        this.metricTags = BenchmarkData.tagSets(NUM_METRICS, 314159);
+    }
+
+    @Benchmark
+    public String getKey() {
+        return CacheUtil.getKey(nextTags());
+    }
+
+    @Benchmark
+    public TagSetKey tagSetKey() {
+        return TagSetKey.of(nextTags());
+    }
+
+    private Map<String, String> nextTags() {
+        Map<String, String> tags = metricTags[next];
+        next = next + 1 == NUM_METRICS ? 0 : next + 1;
+        return tags;
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.mapper;
+
+import com.codahale.metrics.MetricRegistry;
+import com.expedia.adaptivealerting.benchmarks.BenchmarkData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures mapper cache hits per second, i.e. the records per second the ad-mapper can push through
+ * {@link DetectorMapperCache} for metrics whose mappings are already cached. {@link #get()} looks up by tags, and
+ * {@link #getByKey()} by a precomputed {@link TagSetKey}, as the mapper does when it hashes tags straight from the
+ * serialized record.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DetectorMapperCacheBenchmark {
+    private static final int NUM_METRICS = 10_000;
+
+    @Param({"STRING", "BINARY"})
+    private DetectorMapperCacheMode mode;
+
+    private DetectorMapperCache cache;
+    private Map<String, String>[] metricTags;
+    private TagSetKey[] keys;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        this.cache = new DetectorMapperCache(new MetricRegistry(), mode);
+        this.metricTags = BenchmarkData.tagSets(NUM_METRICS, 314159);
+        this.keys = new TagSetKey[NUM_METRICS];
+        for (int i = 0; i < NUM_METRICS; i++) {
+            keys[i] = TagSetKey.of(metricTags[i]);
+            List<Detector> detectors = Arrays.asList(
+                    new Detector("ad-manager", UUID.randomUUID()),
+                    new Detector("external-detector", UUID.randomUUID()));
+            cache.put(metricTags[i], detectors);
+        }
+    }
+
+    @Benchmark
+    public List<Detector> get() {
+        Map<String, String> tags = metricTags[next];
+        next = next + 1 == NUM_METRICS ? 0 : next + 1;
+        return cache.get(tags);
+    }
+
+    @Benchmark
+    public List<Detector> getByKey() {
+        int i = next;
+        next = next + 1 == NUM_METRICS ? 0 : next + 1;
+        return cache.get(keys[i], () -> metricTags[i]);
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link RunningMedian} against {@link DoubleRunningMedian} and {@link SlidingWindowQuantile}. Each
+ * benchmark computes a median per point of a series.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RunningMedianBenchmark {
+    private static final int SERIES_LENGTH = 4096;
+
+    @Param({"16", "256", "1024"})
+    private int windowSize;
+
+    private double[] series;
+    private DoubleRunningMedian doubleRunningMedian;
+    private SlidingWindowQuantile slidingWindowMedian;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(314159);
+        this.series = new double[SERIES_LENGTH];
+        for (int i = 0; i < SERIES_LENGTH; i++) {
+            series[i] = random.nextGaussian();
+        }
+        this.doubleRunningMedian = new DoubleRunningMedian(windowSize);
+        this.slidingWindowMedian = SlidingWindowQuantile.median(windowSize);
+    }
+
+    /**
+     * Growing median over the first windowSize points. Baseline for the add-only case.
+     */
+    @Benchmark
+    public double addOnly_runningMedian() {
+        RunningMedian median = new RunningMedian();
+        double sum = 0.0;
+        for (int i = 0; i < windowSize; i++) {
+            median.add(series[i]);
+            sum += median.getMedian();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double addOnly_doubleRunningMedian() {
+        doubleRunningMedian.clear();
+        double sum = 0.0;
+        for (int i = 0; i < windowSize; i++) {
+            doubleRunningMedian.add(series[i]);
+            sum += doubleRunningMedian.getMedian();
+        }
+        return sum;
+    }
+
+    /**
+     * Sliding median over the whole series. {@link RunningMedian} can't remove values, so it has to rebuild the
+     * window for each point.
+     */
+    @Benchmark
+    public double slidingWindow_runningMedian() {
+        double sum = 0.0;
+        for (int i = windowSize; i <= SERIES_LENGTH; i++) {
+            RunningMedian median = new RunningMedian();
+            for (int j = i - windowSize; j < i; j++) {
+                median.add(series[j]);
+            }
+            sum += median.getMedian();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double slidingWindow_slidingWindowQuantile() {
+        slidingWindowMedian.clear();
+        double sum = 0.0;
+        for (int i = 0; i < SERIES_LENGTH; i++) {
+            slidingWindowMedian.add(series[i]);
+            if (slidingWindowMedian.isFull()) {
+                sum += slidingWindowMedian.getQuantile();
+            }
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Value;
+import lombok.val;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.isTrue;
+
+/**
+ * Compares JMH JSON results against a stored baseline. A benchmark regresses when its score gets worse by more than
+ * the tolerance (lower throughput, or higher time per operation), or when it allocates more than the tolerance plus
+ * a few bytes more per operation, as reported by the GC profiler.
+ */
+public class BaselineComparison {
+    static final String ALLOC_RATE_NORM = "·gc.alloc.rate.norm";
+
+    /**
+     * Allocation slack in bytes per operation, so that benchmarks that allocate almost nothing don't flap.
+     */
+    private static final double ALLOC_SLACK_BYTES = 16.0;
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final double tolerance;
+
+    /**
+     * @param tolerance Relative change treated as noise, e.g. 0.1 for 10%.
+     */
+    public BaselineComparison(double tolerance) {
+        isTrue(tolerance >= 0.0, "Required: tolerance >= 0.0");
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * Compares two JMH JSON result files. Benchmarks missing from either file are skipped.
+     *
+     * @param baseline Baseline results.
+     * @param current  Current results.
+     * @return One line per benchmark, flagged where it regressed.
+     * @throws IOException if a file can't be read.
+     */
+    public List<Comparison> compare(File baseline, File current) throws IOException {
+        return compare(read(baseline), read(current));
+    }
+
+    List<Comparison> compare(Map<String, Score> baseline, Map<String, Score> current) {
+        val comparisons = new ArrayList<Comparison>();
+        for (val entry : current.entrySet()) {
+            val before = baseline.get(entry.getKey());
+            if (before == null) {
+                continue;
+            }
+            val after = entry.getValue();
+            val scoreChange = after.score / before.score - 1.0;
+            val slower = after.higherIsBetter ? -scoreChange > tolerance : scoreChange > tolerance;
+            val allocates = !Double.isNaN(before.allocNorm) && !Double.isNaN(after.allocNorm)
+                    && after.allocNorm > before.allocNorm * (1.0 + tolerance) + ALLOC_SLACK_BYTES;
+            comparisons.add(new Comparison(entry.getKey(), before, after, scoreChange, slower || allocates));
+        }
+        return comparisons;
+    }
+
+    static Map<String, Score> read(File file) throws IOException {
+        val scores = new LinkedHashMap<String, Score>();
+        for (JsonNode result : OBJECT_MAPPER.readTree(file)) {
+            val primary = result.path("primaryMetric");
+            val alloc = result.path("secondaryMetrics").path(ALLOC_RATE_NORM);
+            val score = new Score(
+                    primary.path("score").asDouble(),
+                    primary.path("scoreUnit").asText(),
+                    "thrpt".equals(result.path("mode").asText()),
+                    alloc.isMissingNode() ? Double.NaN : alloc.path("score").asDouble());
+            scores.put(key(result), score);
+        }
+        return scores;
+    }
+
+    /**
+     * Identifies a result by benchmark, mode and parameters, as JMH reports them.
+     */
+    private static String key(JsonNode result) {
+        val params = new TreeMap<String, String>();
+        Iterator<Map.Entry<String, JsonNode>> fields = result.path("params").fields();
+        while (fields.hasNext()) {
+            val field = fields.next();
+            params.put(field.getKey(), field.getValue().asText());
+        }
+        val key = result.path("benchmark").asText() + " (" + result.path("mode").asText() + ")";
+        return params.isEmpty() ? key : key + " " + params;
+    }
+
+    @Value
+    static class Score {
+        double score;
+        String unit;
+        boolean higherIsBetter;
+        double allocNorm;
+    }
+
+    @Value
+    public static class Comparison {
+        String benchmark;
+        Score baseline;
+        Score current;
+        double scoreChange;
+        boolean regressed;
+
+        @Override
+        public String toString() {
+            String line = String.format("%s %-100s %12.3f -> %12.3f %s (%+.1f%%)",
+                    regressed ? "REGRESSED" : "ok       ",
+                    benchmark, baseline.score, current.score, current.unit, 100.0 * scoreChange);
+            if (!Double.isNaN(baseline.allocNorm) && !Double.isNaN(current.allocNorm)) {
+                line += String.format(", %.1f -> %.1f B/op", baseline.allocNorm, current.allocNorm);
+            }
+            return line;
+        }
+    }
+}
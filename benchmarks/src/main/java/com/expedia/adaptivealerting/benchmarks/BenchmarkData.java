@@ -0,0 +1,110 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.benchmarks;
+
+import com.expedia.adaptivealerting.anomdetect.util.MetricFrame;
+import com.expedia.adaptivealerting.anomdetect.util.MetricFrameLoader;
+import com.expedia.metrics.MetricDefinition;
+import com.expedia.metrics.jackson.MetricsJavaModule;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.experimental.UtilityClass;
+import lombok.val;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Inputs shared by the benchmarks: generated tag sets shaped like the ones Metrictank and Haystack send, and the
+ * series from the anomdetect test datasets.
+ */
+@UtilityClass
+public class BenchmarkData {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper().registerModule(new MetricsJavaModule());
+
+    /**
+     * Observation interval of {@link #calInflow()}, in seconds.
+     */
+    public static final int CAL_INFLOW_INTERVAL = 30 * 60;
+
+    /**
+     * Generates tag sets for distinct metrics. A few tags have small value sets shared by many metrics, as
+     * organisation, unit and region tags do, and the metric name is unique.
+     *
+     * @param count Number of tag sets.
+     * @param seed  Random seed, so that runs compare like with like.
+     * @return Tag sets.
+     */
+    @SuppressWarnings("unchecked")
+    public static Map<String, String>[] tagSets(int count, long seed) {
+        val random = new Random(seed);
+        val tagSets = new Map[count];
+        for (int i = 0; i < count; i++) {
+            Map<String, String> tags = new HashMap<>();
+            tags.put("org_id", "1");
+            tags.put("mtype", "count");
+            tags.put("unit", "count");
+            tags.put("interval", "60");
+            tags.put("lob", "lob-" + random.nextInt(10));
+            tags.put("region", "us-west-" + random.nextInt(4));
+            tags.put("what", "bookings.metric-" + i);
+            tags.put("service", "service-" + random.nextInt(500));
+            tagSets[i] = tags;
+        }
+        return tagSets;
+    }
+
+    /**
+     * Loads the cal-inflow dataset: 5040 half-hourly observations with daily and weekly seasonality.
+     *
+     * @return Cal-inflow metric frame.
+     */
+    public static MetricFrame calInflow() {
+        try {
+            val metricDef = OBJECT_MAPPER.readValue(
+                    resource("datasets/cal-inflow-metric-def.json"), MetricDefinition.class);
+            return MetricFrameLoader.loadCsv(metricDef, resource("datasets/cal-inflow-2.csv"), true);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Loads the white noise dataset, which has a breakout at row 600.
+     *
+     * @return White noise values.
+     */
+    public static double[] whiteNoiseWithBreakout() {
+        try {
+            val frame = MetricFrameLoader.loadCsv(
+                    new MetricDefinition("white-noise"), resource("datasets/white-noise-with-breakout-at-row-600.csv"), false);
+            return frame.getMetricData().stream().mapToDouble(metricData -> metricData.getValue()).toArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static InputStream resource(String name) {
+        val in = BenchmarkData.class.getClassLoader().getResourceAsStream(name);
+        if (in == null) {
+            throw new IllegalStateException("Missing resource: " + name);
+        }
+        return in;
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.benchmarks;
+
+import lombok.val;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+
+/**
+ * <p>
+ * Runs the benchmarks with the GC profiler, so that every result includes the bytes allocated per operation, and
+ * writes the results as JSON. Takes the usual JMH command line, e.g. a benchmark name regex:
+ * </p>
+ * <pre>
+ * java -jar benchmarks/target/benchmarks.jar ForecastingDetector
+ * </pre>
+ * <p>
+ * With {@code -Dbaseline=<file>}, compares the results against earlier JSON results and exits with status 2 if any
+ * benchmark regressed by more than {@code -Dbaseline.tolerance} (default 0.1, i.e. 10%). To record a baseline, keep
+ * the JSON results of a run on the release to compare against.
+ * </p>
+ */
+public class BenchmarkRunner {
+    private static final String DEFAULT_RESULT_FILE = "jmh-result.json";
+
+    public static void main(String[] args) throws Exception {
+        val commandLineOptions = new CommandLineOptions(args);
+        if (commandLineOptions.shouldHelp() || commandLineOptions.shouldList() || commandLineOptions.shouldListProfilers()) {
+            // Let JMH print help and listings.
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+
+        val resultFile = commandLineOptions.getResult().orElse(DEFAULT_RESULT_FILE);
+        val options = new OptionsBuilder()
+                .parent(commandLineOptions)
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result(resultFile)
+                .build();
+        new Runner(options).run();
+
+        val baseline = System.getProperty("baseline");
+        if (baseline != null) {
+            val tolerance = Double.parseDouble(System.getProperty("baseline.tolerance", "0.1"));
+            val comparisons = new BaselineComparison(tolerance).compare(new File(baseline), new File(resultFile));
+            boolean regressed = false;
+            System.out.println();
+            System.out.println("Comparison against " + baseline + ":");
+            for (val comparison : comparisons) {
+                System.out.println(comparison);
+                regressed |= comparison.isRegressed();
+            }
+            if (regressed) {
+                System.exit(2);
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.kafka.serde;
+
+import com.expedia.adaptivealerting.anomdetect.mapper.TagSetKey;
+import com.expedia.adaptivealerting.benchmarks.BenchmarkData;
+import com.expedia.metrics.MetricData;
+import com.expedia.metrics.MetricDefinition;
+import com.expedia.metrics.TagCollection;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.serialization.Serializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the {@link MetricData} serdes the Kafka apps can be configured with. {@link #deserialize()} reads only
+ * the value and timestamp, as the detector manager does, and {@link #deserializeTagSetKey()} also keys the metric by
+ * its tags, as the mapper does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetricDataSerdeBenchmark {
+    private static final String TOPIC = "metrics";
+    private static final int NUM_METRICS = 1_000;
+
+    @Param({"json", "messagepack", "metrictank", "lazy"})
+    private String format;
+
+    private MetricData[] metricData;
+    private byte[][] records;
+    private Serializer<MetricData> serializer;
+    private Deserializer<MetricData> deserializer;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Serde<MetricData> serde = newSerde();
+        this.serializer = serde.serializer();
+        this.deserializer = serde.deserializer();
+
+        Map<String, String>[] tagSets = BenchmarkData.tagSets(NUM_METRICS, 314159);
+        long epochSecond = 1_577_836_800L;
+        this.metricData = new MetricData[NUM_METRICS];
+        this.records = new byte[NUM_METRICS][];
+        for (int i = 0; i < NUM_METRICS; i++) {
+            MetricDefinition definition = new MetricDefinition(
+                    tagSets[i].get("what"), new TagCollection(tagSets[i]), TagCollection.EMPTY);
+            metricData[i] = new MetricData(definition, i * 0.5, epochSecond + i);
+            records[i] = serializer.serialize(TOPIC, metricData[i]);
+        }
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        return serializer.serialize(TOPIC, metricData[nextIndex()]);
+    }
+
+    @Benchmark
+    public double deserialize() {
+        MetricData data = deserializer.deserialize(TOPIC, records[nextIndex()]);
+        return data.getValue() + data.getTimestamp();
+    }
+
+    @Benchmark
+    public TagSetKey deserializeTagSetKey() {
+        MetricData data = deserializer.deserialize(TOPIC, records[nextIndex()]);
+        if (data instanceof LazyMetricTankMetricData) {
+            return ((LazyMetricTankMetricData) data).getTagSetKey();
+        }
+        return TagSetKey.of(data.getMetricDefinition().getTags().getKv());
+    }
+
+    private int nextIndex() {
+        int i = next;
+        next = next + 1 == NUM_METRICS ? 0 : next + 1;
+        return i;
+    }
+
+    private Serde<MetricData> newSerde() {
+        switch (format) {
+            case "json":
+                return new MetricDataJsonSerde();
+            case "messagepack":
+                return new MetricDataMessagePackSerde();
+            case "metrictank":
+                return new MetricTankMetricDataMessagePackSerde();
+            case "lazy":
+                return new LazyMetricDataMessagePackSerde();
+            default:
+                throw new IllegalArgumentException("Unknown format: " + format);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.benchmarks;
+
+import com.expedia.adaptivealerting.benchmarks.BaselineComparison.Score;
+import lombok.val;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public final class BaselineComparisonTest {
+    private static final String BENCHMARK = "com.example.SomeBenchmark.run (avgt)";
+
+    private BaselineComparison comparisonUnderTest;
+
+    @Before
+    public void setUp() {
+        this.comparisonUnderTest = new BaselineComparison(0.1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructor_negativeTolerance() {
+        new BaselineComparison(-0.1);
+    }
+
+    @Test
+    public void testCompare_withinTolerance() {
+        val comparisons = comparisonUnderTest.compare(
+                scores(new Score(100.0, "us/op", false, 1000.0)),
+                scores(new Score(109.0, "us/op", false, 1050.0)));
+        assertEquals(1, comparisons.size());
+        assertFalse(comparisons.get(0).isRegressed());
+        assertEquals(0.09, comparisons.get(0).getScoreChange(), 1e-9);
+    }
+
+    @Test
+    public void testCompare_slowerAverageTime() {
+        val comparisons = comparisonUnderTest.compare(
+                scores(new Score(100.0, "us/op", false, Double.NaN)),
+                scores(new Score(120.0, "us/op", false, Double.NaN)));
+        assertTrue(comparisons.get(0).isRegressed());
+    }
+
+    @Test
+    public void testCompare_lowerThroughput() {
+        val comparisons = comparisonUnderTest.compare(
+                scores(new Score(1000.0, "ops/s", true, Double.NaN)),
+                scores(new Score(800.0, "ops/s", true, Double.NaN)));
+        assertTrue(comparisons.get(0).isRegressed());
+    }
+
+    @Test
+    public void testCompare_moreAllocation() {
+        val comparisons = comparisonUnderTest.compare(
+                scores(new Score(100.0, "us/op", false, 0.0)),
+                scores(new Score(100.0, "us/op", false, 48.0)));
+        assertTrue(comparisons.get(0).isRegressed());
+    }
+
+    @Test
+    public void testCompare_allocationWithinSlack() {
+        val comparisons = comparisonUnderTest.compare(
+                scores(new Score(100.0, "us/op", false, 0.0)),
+                scores(new Score(100.0, "us/op", false, 8.0)));
+        assertFalse(comparisons.get(0).isRegressed());
+    }
+
+    @Test
+    public void testCompare_skipsMissingBenchmarks() {
+        val comparisons = comparisonUnderTest.compare(
+                Collections.emptyMap(),
+                scores(new Score(100.0, "us/op", false, Double.NaN)));
+        assertTrue(comparisons.isEmpty());
+    }
+
+    private static Map<String, Score> scores(Score score) {
+        val scores = new HashMap<String, Score>();
+        scores.put(BENCHMARK, score);
+        return scores;
+    }
+}
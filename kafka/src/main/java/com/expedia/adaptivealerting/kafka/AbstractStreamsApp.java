@@ -56,10 +56,20 @@ public abstract class AbstractStreamsApp {
 
     public void start() {
         val streams = new KafkaStreams(buildTopology(), config.getStreamsConfig());
-        Runtime.getRuntime().addShutdownHook(new Thread(streams::close));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            streams.close();
+            onClose();
+        }));
         jmxReporter.start();
         streams.start();
     }
 
     protected abstract Topology buildTopology();
+
+    /**
+     * Called on shutdown once the streams have closed, to release anything the app's tasks share. Does nothing by
+     * default.
+     */
+    protected void onClose() {
+    }
 }
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.kafka;
+
+import com.typesafe.config.Config;
+import lombok.Getter;
+import lombok.ToString;
+
+import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.isTrue;
+import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.notNull;
+
+/**
+ * Consume-detect-produce settings for {@link KafkaDetectorManager}. All settings are optional.
+ */
+@Getter
+@ToString
+public class DetectorPipelineConfig {
+
+    /**
+     * Number of threads detection runs on. With one, detection runs on the polling thread.
+     */
+    private static final String CK_WORKER_THREADS = "detector-worker-threads";
+
+    /**
+     * Maximum number of anomaly sends awaiting acknowledgement. Processing blocks once this many are in flight.
+     */
+    private static final String CK_MAX_IN_FLIGHT_SENDS = "anomaly-max-in-flight-sends";
+
+    /**
+     * Transactional ID of the anomaly producer. When set, each batch's anomalies and consumer offsets are committed in
+     * one transaction.
+     */
+    private static final String CK_TRANSACTIONAL_ID = "anomaly-producer.transactional.id";
+
+    /**
+     * Consumer group the offsets are committed for.
+     */
+    private static final String CK_CONSUMER_GROUP_ID = "metric-consumer.group.id";
+
+    private static final int DEFAULT_WORKER_THREADS = 1;
+    private static final int DEFAULT_MAX_IN_FLIGHT_SENDS = 10000;
+
+    private final int workerThreads;
+    private final int maxInFlightSends;
+    private final String transactionalId;
+    private final String consumerGroupId;
+
+    public DetectorPipelineConfig() {
+        this(DEFAULT_WORKER_THREADS, DEFAULT_MAX_IN_FLIGHT_SENDS, null, null);
+    }
+
+    /**
+     * @param workerThreads    number of threads detection runs on
+     * @param maxInFlightSends maximum number of anomaly sends awaiting acknowledgement
+     * @param transactionalId  transactional ID of the anomaly producer, or null to commit offsets from the consumer
+     * @param consumerGroupId  consumer group ID, required for transactions
+     */
+    public DetectorPipelineConfig(int workerThreads, int maxInFlightSends, String transactionalId, String consumerGroupId) {
+        isTrue(workerThreads > 0, "Required: workerThreads > 0");
+        isTrue(maxInFlightSends > 0, "Required: maxInFlightSends > 0");
+        if (transactionalId != null) {
+            notNull(consumerGroupId, "consumerGroupId can't be null when transactionalId is set");
+        }
+        this.workerThreads = workerThreads;
+        this.maxInFlightSends = maxInFlightSends;
+        this.transactionalId = transactionalId;
+        this.consumerGroupId = consumerGroupId;
+    }
+
+    /**
+     * Reads the pipeline configuration from the detector manager configuration, falling back to defaults for missing
+     * settings.
+     *
+     * @param config detector manager configuration
+     * @return pipeline configuration
+     */
+    public static DetectorPipelineConfig from(Config config) {
+        notNull(config, "config can't be null");
+        return new DetectorPipelineConfig(
+                config.hasPath(CK_WORKER_THREADS) ? config.getInt(CK_WORKER_THREADS) : DEFAULT_WORKER_THREADS,
+                config.hasPath(CK_MAX_IN_FLIGHT_SENDS) ? config.getInt(CK_MAX_IN_FLIGHT_SENDS) : DEFAULT_MAX_IN_FLIGHT_SENDS,
+                config.hasPath(CK_TRANSACTIONAL_ID) ? config.getString(CK_TRANSACTIONAL_ID) : null,
+                config.hasPath(CK_CONSUMER_GROUP_ID) ? config.getString(CK_CONSUMER_GROUP_ID) : null);
+    }
+
+    public boolean isTransactional() {
+        return transactionalId != null;
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.kafka;
+
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.isTrue;
+import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.notNull;
+
+/**
+ * Processes batches of records on a fixed number of single-threaded lanes. Records are assigned to lanes by detector
+ * UUID, so each detector's records are processed by one thread in the order they arrived in, while different
+ * detectors are processed in parallel.
+ */
+@Slf4j
+class DetectorWorkerPool {
+    private static final long SHUTDOWN_TIMEOUT_MS = 10000L;
+
+    private final ExecutorService[] lanes;
+
+    DetectorWorkerPool(int numLanes) {
+        isTrue(numLanes > 0, "Required: numLanes > 0");
+        this.lanes = new ExecutorService[numLanes];
+        for (int i = 0; i < numLanes; i++) {
+            val threadName = "detector-worker-" + i;
+            lanes[i] = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, threadName);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    int getNumLanes() {
+        return lanes.length;
+    }
+
+    /**
+     * Processes the given records and waits for the whole batch to finish. If any record fails, its lane skips the rest
+     * of its records, and the first failure is rethrown once all lanes have finished.
+     *
+     * @param records      records to process
+     * @param detectorUuid function giving the UUID of the detector a record is for
+     * @param action       processes a record
+     * @param <T>          record type
+     */
+    <T> void processAll(Iterable<T> records, Function<T, UUID> detectorUuid, Consumer<T> action) {
+        notNull(records, "records can't be null");
+        notNull(detectorUuid, "detectorUuid can't be null");
+        notNull(action, "action can't be null");
+
+        List<List<T>> laneRecords = new ArrayList<>(lanes.length);
+        for (int i = 0; i < lanes.length; i++) {
+            laneRecords.add(new ArrayList<>());
+        }
+        for (T record : records) {
+            laneRecords.get(laneFor(detectorUuid.apply(record))).add(record);
+        }
+
+        List<Future<?>> futures = new ArrayList<>(lanes.length);
+        for (int i = 0; i < lanes.length; i++) {
+            List<T> batch = laneRecords.get(i);
+            if (!batch.isEmpty()) {
+                futures.add(lanes[i].submit(() -> batch.forEach(action)));
+            }
+        }
+
+        RuntimeException failure = null;
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = new RuntimeException("Error processing records", e.getCause());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while processing records", e);
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Stops the lanes, waiting for the records they're processing to finish.
+     */
+    void close() {
+        for (ExecutorService lane : lanes) {
+            lane.shutdown();
+        }
+        try {
+            for (ExecutorService lane : lanes) {
+                if (!lane.awaitTermination(SHUTDOWN_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                    log.warn("Timed out waiting for detector worker to stop");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    int laneFor(UUID detectorUuid) {
+        return detectorUuid == null ? 0 : Math.floorMod(detectorUuid.hashCode(), lanes.length);
+    }
+}
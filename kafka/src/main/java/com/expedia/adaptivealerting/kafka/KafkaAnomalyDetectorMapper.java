@@ -15,16 +15,19 @@
  */
 package com.expedia.adaptivealerting.kafka;
 
+import com.codahale.metrics.MetricRegistry;
 import com.expedia.adaptivealerting.anomdetect.detect.MappedMetricData;
 import com.expedia.adaptivealerting.anomdetect.mapper.DetectorMapper;
 import com.expedia.adaptivealerting.anomdetect.mapper.MapperResult;
 import com.expedia.adaptivealerting.anomdetect.util.AssertUtil;
 import com.expedia.adaptivealerting.anomdetect.util.JmxReporterFactory;
+import com.expedia.adaptivealerting.kafka.processor.MetricDataBatchConfig;
 import com.expedia.adaptivealerting.kafka.processor.MetricDataTransformerSupplier;
-import com.expedia.adaptivealerting.kafka.serde.MappedMetricDataJsonSerde;
+import com.expedia.adaptivealerting.kafka.serde.MappedMetricDataSerdes;
 import com.expedia.adaptivealerting.kafka.serde.MetricDataJsonSerde;
 import com.expedia.adaptivealerting.kafka.util.DetectorUtil;
 import com.expedia.metrics.MetricData;
+import com.typesafe.config.Config;
 import lombok.Generated;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
@@ -55,11 +58,13 @@ public final class KafkaAnomalyDetectorMapper extends AbstractStreamsApp {
     private static final String CK_AD_MAPPER = "ad-mapper";
     private static final String STATE_STORE_NAME = "es-request-buffer";
     private static final String DEFAULT_CONSUMER_ID = "ad-manager";
+    private static final String CK_DETECTOR_MAPPING_BATCH = "detector-mapping-batch";
+    private static final String CK_MAPPED_METRIC_DATA_FORMAT = "mapped-metric-data-format";
     private final DetectorMapper mapper;
+    private final MetricRegistry metricRegistry;
 
-    // TODO Make these configurable. [WLW]
+    // TODO Make this configurable. [WLW]
     private Serde<String> outputKeySerde = new Serdes.StringSerde();
-    private Serde<MappedMetricData> outputValueSerde = new MappedMetricDataJsonSerde();
 
     // Cleaned code coverage
     // https://reflectoring.io/100-percent-test-coverage/
@@ -70,6 +75,7 @@ public final class KafkaAnomalyDetectorMapper extends AbstractStreamsApp {
         val detectorSource = DetectorUtil.buildDetectorSource(config);
         val jmxReporterFactory = new JmxReporterFactory();
         val mapper = new DetectorMapper(detectorSource, config, jmxReporterFactory.getMetricRegistry());
+        ModelChangeFeedConsumer.startIfEnabled(config, mapper);
         new KafkaAnomalyDetectorMapper(saConfig, mapper, jmxReporterFactory).start();
     }
 
@@ -84,6 +90,7 @@ public final class KafkaAnomalyDetectorMapper extends AbstractStreamsApp {
         super(config, jmxReporterFactory.getJmxReporter());
         notNull(mapper, "mapper can't be null");
         this.mapper = mapper;
+        this.metricRegistry = jmxReporterFactory.getMetricRegistry();
     }
 
     @Override
@@ -91,7 +98,11 @@ public final class KafkaAnomalyDetectorMapper extends AbstractStreamsApp {
         val config = getConfig();
         val inputTopic = config.getInputTopic();
         val defaultOutputTopic = config.getOutputTopic();
-        log.info("Initializing: inputTopic={}, defaultOutputTopic={}", inputTopic, defaultOutputTopic);
+        val batchConfig = batchConfig(config.getTypesafeConfig());
+        val outputFormat = outputFormat(config.getTypesafeConfig());
+        val outputValueSerde = MappedMetricDataSerdes.forFormat(outputFormat);
+        log.info("Initializing: inputTopic={}, defaultOutputTopic={}, outputFormat={}, batchConfig={}",
+                inputTopic, defaultOutputTopic, outputFormat, batchConfig);
 
         val builder = new StreamsBuilder();
 
@@ -116,12 +127,25 @@ public final class KafkaAnomalyDetectorMapper extends AbstractStreamsApp {
         final KStream<String, MetricData> stream = builder.stream(inputTopic);
         stream
                 .filter((key, md) -> md != null)
-                .transform(new MetricDataTransformerSupplier(mapper, STATE_STORE_NAME), STATE_STORE_NAME)
+                .transform(new MetricDataTransformerSupplier(mapper, STATE_STORE_NAME, batchConfig, metricRegistry), STATE_STORE_NAME)
                 .flatMap(this::metricsByDetector)
                 .to(kafkaTopicNameExtractor, Produced.with(outputKeySerde, outputValueSerde));
         return builder.build();
     }
 
+    private MetricDataBatchConfig batchConfig(Config config) {
+        if (!config.hasPath(CK_DETECTOR_MAPPING_BATCH)) {
+            return new MetricDataBatchConfig();
+        }
+        return MetricDataBatchConfig.from(config.getConfig(CK_DETECTOR_MAPPING_BATCH));
+    }
+
+    private String outputFormat(Config config) {
+        return config.hasPath(CK_MAPPED_METRIC_DATA_FORMAT)
+                ? config.getString(CK_MAPPED_METRIC_DATA_FORMAT)
+                : MappedMetricDataSerdes.JSON;
+    }
+
     private Iterable<? extends KeyValue<String, MappedMetricData>> metricsByDetector(String key, MapperResult mmRes) {
         AssertUtil.notNull(mmRes, "MapperResult mmRes can't be null");
         return mmRes.getMatchingDetectors().stream()
@@ -15,14 +15,20 @@
  */
 package com.expedia.adaptivealerting.kafka;
 
+import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.expedia.adaptivealerting.anomdetect.DetectorManager;
 import com.expedia.adaptivealerting.anomdetect.detect.breakout.BreakoutDetectorResult;
 import com.expedia.adaptivealerting.anomdetect.detect.DetectorResult;
 import com.expedia.adaptivealerting.anomdetect.detect.MappedMetricData;
 import com.expedia.adaptivealerting.anomdetect.detect.outlier.OutlierDetectorResult;
+import com.expedia.adaptivealerting.anomdetect.instrument.LatencySnapshotServer;
+import com.expedia.adaptivealerting.anomdetect.instrument.PipelineInstruments;
+import com.expedia.adaptivealerting.anomdetect.instrument.Stage;
 import com.expedia.adaptivealerting.anomdetect.source.data.initializer.DataInitializerFactory;
 import com.expedia.adaptivealerting.anomdetect.util.JmxReporterFactory;
+import com.expedia.adaptivealerting.kafka.serde.MappedMetricDataSerdes;
 import com.expedia.adaptivealerting.kafka.util.ConfigUtil;
 import com.expedia.adaptivealerting.kafka.util.DetectorUtil;
 import com.typesafe.config.Config;
@@ -37,17 +43,32 @@ import lombok.extern.slf4j.Slf4j;
 import lombok.val;
 import org.apache.kafka.clients.consumer.Consumer;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.ProducerFencedException;
+import org.apache.kafka.common.errors.SerializationException;
 import org.apache.kafka.common.errors.WakeupException;
+import org.apache.kafka.common.utils.Utils;
 import io.opentracing.util.GlobalTracer;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 import com.expedia.adaptivealerting.kafka.util.TracingUtil;
 
 import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.notNull;
@@ -56,6 +77,31 @@ import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.notNull;
  * Kafka app to connect a {@link DetectorManager} to an input metric topic and output anomaly
  * topics. This is a consumer/producer app instead of a Kafka Streams app since we need to
  * send messages to multiple output topics, which isn't possible with a Kafka Streams app.
+ * <p>
+ * By default detection runs on the polling thread. With more than one detector worker thread, each polled batch is
+ * split by detector UUID across that many single-threaded lanes (see {@link DetectorWorkerPool}), so detectors run in
+ * parallel while each detector still sees its metrics in order.
+ * <p>
+ * Anomalies are sent asynchronously, with a bound on the number of sends awaiting acknowledgement, so that processing
+ * the next batch overlaps with producing the last one. Offsets are committed by the manager rather than automatically:
+ * a batch's offsets are committed once all the anomalies produced from it have been acknowledged. If a send fails, the
+ * consumer seeks back to the first uncommitted offsets and the records are processed again, so anomalies are produced
+ * at least once. With a transactional anomaly producer, each batch's anomalies and offsets are committed in one
+ * transaction instead, so that read-committed consumers see each anomaly exactly once. Detector state isn't part of the
+ * transaction, so detectors may still see reprocessed metrics again.
+ * <p>
+ * Metrics whose detection fails, e.g. because their detector can't be found, are logged and skipped rather than
+ * processed again, as processing them again would most likely fail the same way.
+ * <p>
+ * Metrics parked while their detectors load asynchronously hold their batch open until they've been replayed and their
+ * anomalies acknowledged, so their offsets aren't committed before then. Parked metrics of batches that are rewound
+ * are dropped when they're replayed, since they'll be processed again anyway.
+ * <p>
+ * The time from sending each anomaly to its acknowledgement is recorded as the produce stage of the detector manager's
+ * {@link PipelineInstruments}. Setting {@code instrumentation-http-port} serves the latencies of all stages over HTTP.
+ * <p>
+ * With detector preloading enabled, the detectors the manager has stored state for are fetched in bulk whenever
+ * partitions are assigned, before their metrics are consumed.
  */
 @Slf4j
 public class KafkaDetectorManager implements Runnable {
@@ -71,6 +117,7 @@ public class KafkaDetectorManager implements Runnable {
     private static final String DM_TRACING = "tracing";
     private static final String TRACING_STATUS_STRING = "tracingStatus";
     private static final String TRACING_STATUS_CHECK_STRING = "enabled";
+    private static final String CK_MAPPED_METRIC_DATA_FORMAT = "mapped-metric-data-format";
     private static final long POLL_PERIOD = 1000L;
 
     @Getter
@@ -94,13 +141,53 @@ public class KafkaDetectorManager implements Runnable {
     @Getter
     private final String tracingEnabled;
 
+    @Getter
+    private final DetectorPipelineConfig pipelineConfig;
+
+    /**
+     * Worker lanes for detection, or null to run detection on the polling thread.
+     */
+    @Getter
+    private final DetectorWorkerPool workerPool;
+
+    private final PendingOffsets pendingOffsets = new PendingOffsets();
+
+    // Batches of the metrics parked on the detector manager, which each hold a pending send until they're replayed.
+    private final Map<MappedMetricData, PendingOffsets.Batch> parkedBatches =
+            Collections.synchronizedMap(new IdentityHashMap<>());
+
+    // Parked metrics of rewound batches, whose results are dropped when they're replayed.
+    private final Set<MappedMetricData> rewoundParkedMetrics = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Semaphore inFlightSends;
+    private final Meter consumedMeter;
+    private final Meter failedMeter;
+    private final Meter sentMeter;
+    private final Meter sendFailureMeter;
+    private final Meter rewindMeter;
+    private final Timer batchTimer;
+    private final PipelineInstruments instruments;
+
     // Cleaned code coverage
     // https://reflectoring.io/100-percent-test-coverage/
     @Generated
     public static void main(String[] args) {
         val config = new TypesafeConfigLoader(APP_ID).loadMergedConfig();
         val manager = buildManager(config);
-        manager.run();
+
+        // Wakes the poll loop on shutdown, so that the manager closes cleanly and checkpoints its detectors.
+        val mainThread = Thread.currentThread();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            manager.getMetricConsumer().wakeup();
+            try {
+                mainThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        try (val snapshotServer = LatencySnapshotServer.startIfEnabled(config, manager.getDetectorManager().getInstruments());
+             val changeFeed = ModelChangeFeedConsumer.startIfEnabled(config, manager.getDetectorManager())) {
+            manager.run();
+        }
     }
 
     // Extracted for unit testing
@@ -112,9 +199,19 @@ public class KafkaDetectorManager implements Runnable {
 
         val metricConsumerConfig = config.getConfig(METRIC_CONSUMER);
         val metricConsumerProps = ConfigUtil.toConsumerConfig(metricConsumerConfig);
+        metricConsumerProps.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+        if (config.hasPath(CK_MAPPED_METRIC_DATA_FORMAT)) {
+            val format = config.getString(CK_MAPPED_METRIC_DATA_FORMAT);
+            metricConsumerProps.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, MappedMetricDataSerdes.deserializerFor(format).getName());
+        }
 
         val anomalyProducerConfig = config.getConfig(ANOMALY_PRODUCER);
         val anomalyProducerProps = ConfigUtil.toProducerConfig(anomalyProducerConfig);
+        val pipelineConfig = DetectorPipelineConfig.from(config);
+        if (pipelineConfig.isTransactional()) {
+            anomalyProducerProps.put(ProducerConfig.TRANSACTIONAL_ID_CONFIG, pipelineConfig.getTransactionalId());
+            anomalyProducerProps.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, "true");
+        }
         val tracingDetectorManagerConfig = config.getConfig(DM_TRACING);
         val tracingEnabled = tracingDetectorManagerConfig.getString(TRACING_STATUS_STRING);
         if (tracingEnabled.equals(TRACING_STATUS_CHECK_STRING)){
@@ -139,7 +236,9 @@ public class KafkaDetectorManager implements Runnable {
                 metricConsumerTopic,
                 anomalyProducerOutlierTopic,
                 anomalyProducerBreakoutTopic,
-                tracingEnabled);
+                tracingEnabled,
+                pipelineConfig,
+                metricRegistry);
     }
 
     private static MetricRegistry getMetricRegistry() {
@@ -156,6 +255,25 @@ public class KafkaDetectorManager implements Runnable {
             String outlierTopic,
             String breakoutTopic,
             String tracingEnabled) {
+        this(detectorManager, metricConsumer, anomalyProducer, metricTopic, outlierTopic, breakoutTopic, tracingEnabled,
+                new DetectorPipelineConfig(), new MetricRegistry());
+    }
+
+    /**
+     * @param pipelineConfig consume-detect-produce settings. The consumer should have auto commit turned off, since
+     *                       offsets are committed once their anomalies have been acknowledged.
+     * @param metricRegistry registry for throughput metrics
+     */
+    public KafkaDetectorManager(
+            DetectorManager detectorManager,
+            Consumer<String, MappedMetricData> metricConsumer,
+            Producer<String, MappedMetricData> anomalyProducer,
+            String metricTopic,
+            String outlierTopic,
+            String breakoutTopic,
+            String tracingEnabled,
+            DetectorPipelineConfig pipelineConfig,
+            MetricRegistry metricRegistry) {
 
         notNull(detectorManager, "detectorManager can't be null");
         notNull(metricConsumer, "metricConsumer can't be null");
@@ -164,6 +282,8 @@ public class KafkaDetectorManager implements Runnable {
         notNull(outlierTopic, "outlierTopic can't be null");
         notNull(breakoutTopic, "breakoutTopic can't be null");
         notNull(tracingEnabled, "tracingEnabled can't be null");
+        notNull(pipelineConfig, "pipelineConfig can't be null");
+        notNull(metricRegistry, "metricRegistry can't be null");
 
         this.detectorManager = detectorManager;
         this.metricConsumer = metricConsumer;
@@ -172,12 +292,35 @@ public class KafkaDetectorManager implements Runnable {
         this.outlierTopic = outlierTopic;
         this.breakoutTopic = breakoutTopic;
         this.tracingEnabled = tracingEnabled;
+        this.pipelineConfig = pipelineConfig;
+        this.workerPool = pipelineConfig.getWorkerThreads() > 1 ? new DetectorWorkerPool(pipelineConfig.getWorkerThreads()) : null;
+        this.inFlightSends = new Semaphore(pipelineConfig.getMaxInFlightSends());
+        this.consumedMeter = metricRegistry.meter("ad-manager.metrics.consumed");
+        this.failedMeter = metricRegistry.meter("ad-manager.metrics.failed");
+        this.sentMeter = metricRegistry.meter("ad-manager.anomalies.sent");
+        this.sendFailureMeter = metricRegistry.meter("ad-manager.anomalies.send-failures");
+        this.rewindMeter = metricRegistry.meter("ad-manager.rewinds");
+        this.batchTimer = metricRegistry.timer("ad-manager.batch");
+        this.instruments = detectorManager.getInstruments();
     }
 
     @Override
     public void run() {
-        log.info("Starting KafkaDetectorManager");
-        metricConsumer.subscribe(Collections.singletonList(metricTopic));
+        log.info("Starting KafkaDetectorManager: pipelineConfig={}", pipelineConfig);
+        if (pipelineConfig.isTransactional()) {
+            anomalyProducer.initTransactions();
+        }
+        metricConsumer.subscribe(Collections.singletonList(metricTopic), new ConsumerRebalanceListener() {
+            @Override
+            public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+                commitBeforeRebalance();
+            }
+
+            @Override
+            public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+                preloadDetectors(partitions);
+            }
+        });
         boolean continueProcessing = true;
 
         // See Kafka: The Definitive Guide, pp. 86 ff.
@@ -186,9 +329,11 @@ public class KafkaDetectorManager implements Runnable {
                 processMetrics();
             } catch (WakeupException e) {
                 log.info("Stopping KafkaDetectorManager");
-                metricConsumer.close();
-                anomalyProducer.flush();
-                anomalyProducer.close();
+                shutdown(true);
+                continueProcessing = false;
+            } catch (ProducerFencedException e) {
+                log.error("Anomaly producer was fenced by another instance. Stopping KafkaDetectorManager", e);
+                shutdown(false);
                 continueProcessing = false;
             } catch (Exception e) {
                 log.error("Error processing records", e);
@@ -196,25 +341,260 @@ public class KafkaDetectorManager implements Runnable {
         }
     }
 
+    /**
+     * Preloads the detectors with stored state that belong to the given partitions, before any of their metrics are
+     * consumed. Metrics are keyed by detector UUID, so each detector's partition is known without asking modelservice.
+     */
+    void preloadDetectors(Collection<TopicPartition> partitions) {
+        if (!detectorManager.isPreloadEnabled() || partitions.isEmpty()) {
+            return;
+        }
+        try {
+            val storedDetectorUuids = detectorManager.getStoredDetectorUuids();
+            if (storedDetectorUuids.isEmpty()) {
+                return;
+            }
+            val numPartitions = metricConsumer.partitionsFor(metricTopic).size();
+            val assignedPartitions = partitions.stream()
+                    .filter(partition -> metricTopic.equals(partition.topic()))
+                    .map(TopicPartition::partition)
+                    .collect(Collectors.toSet());
+            val detectorUuids = storedDetectorUuids.stream()
+                    .filter(detectorUuid -> assignedPartitions.contains(partitionOf(detectorUuid, numPartitions)))
+                    .collect(Collectors.toList());
+            log.info("Preloading {} detectors for partitions {}", detectorUuids.size(), assignedPartitions);
+            detectorManager.preload(detectorUuids);
+        } catch (Exception e) {
+            log.error("Error preloading detectors. They'll be loaded as their metrics arrive", e);
+        }
+    }
+
+    /**
+     * Returns the partition that metrics for the given detector go to. Same as Kafka's default partitioner for the
+     * string keys {@link KafkaAnomalyDetectorMapper} writes.
+     */
+    static int partitionOf(UUID detectorUuid, int numPartitions) {
+        val keyBytes = detectorUuid.toString().getBytes(StandardCharsets.UTF_8);
+        return Utils.toPositive(Utils.murmur2(keyBytes)) % numPartitions;
+    }
+
+    private void shutdown(boolean commitPending) {
+        if (workerPool != null) {
+            workerPool.close();
+        }
+        if (commitPending && !pipelineConfig.isTransactional()) {
+            anomalyProducer.flush();
+            commitCompleted(true);
+        }
+        metricConsumer.close();
+        anomalyProducer.close();
+        detectorManager.close();
+    }
+
     private void processMetrics() {
         val metricRecords = metricConsumer.poll(POLL_PERIOD);
         val numConsumed = metricRecords.count();
 
         log.trace("Read {} metric records from topic={}", numConsumed, metricTopic);
+        consumedMeter.mark(numConsumed);
+
+        try (Timer.Context autoClosable = batchTimer.time()) {
+            if (pipelineConfig.isTransactional()) {
+                processTransactionally(metricRecords);
+            } else {
+                val batch = pendingOffsets.startBatch(metricRecords);
+                try {
+                    processBatch(metricRecords, batch);
+                } catch (RuntimeException e) {
+                    // Detection failures are skipped record by record, so this is a failed send.
+                    log.error("Error producing anomalies", e);
+                    batch.fail();
+                } finally {
+                    batch.close();
+                }
+                commitCompleted(false);
+            }
+        }
+        detectorManager.checkpointIfDue();
+    }
+
+    private void processTransactionally(ConsumerRecords<String, MappedMetricData> metricRecords) {
+        anomalyProducer.beginTransaction();
+        val batch = pendingOffsets.startBatch(metricRecords);
+        try {
+            try {
+                processBatch(metricRecords, batch);
+            } finally {
+                batch.close();
+            }
+            // Batches with parked metrics are still pending, so their offsets go in the transaction they're replayed in.
+            anomalyProducer.flush();
+            val offsets = pendingOffsets.takeCompleted();
+            if (!offsets.isEmpty()) {
+                anomalyProducer.sendOffsetsToTransaction(offsets, pipelineConfig.getConsumerGroupId());
+            }
+            anomalyProducer.commitTransaction();
+        } catch (ProducerFencedException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            // Detection failures are skipped record by record, so this is a failed send or commit.
+            log.error("Error producing anomalies. Aborting transaction", e);
+            anomalyProducer.abortTransaction();
+            rewind();
+        }
+    }
 
-        int numProduced = 0;
-        for (val metricRecord : metricRecords) {
-            val anomalyRecord = toAnomalyRecord(metricRecord);
-            anomalyProducer.send(anomalyRecord);
-            log.info("Sent: anomalyRecord={}", anomalyRecord);
-            numProduced++;
+    private void processBatch(ConsumerRecords<String, MappedMetricData> metricRecords, PendingOffsets.Batch batch) {
+        val numProduced = new AtomicInteger();
+        if (workerPool == null) {
+            metricRecords.forEach(metricRecord -> processRecord(metricRecord, batch, numProduced));
+        } else {
+            workerPool.processAll(metricRecords, KafkaDetectorManager::detectorUuidOf, metricRecord -> processRecord(metricRecord, batch, numProduced));
         }
+        detectorManager.replayLoadedDetectors((metricMMD, detectorResult) -> {
+            if (rewoundParkedMetrics.remove(metricMMD)) {
+                return;
+            }
+            // Anomalies for parked metrics count against their own batch, which stays pending until they're acknowledged.
+            val parkedBatch = parkedBatches.remove(metricMMD);
+            try {
+                val anomalyRecord = detectorResult == null ? null : toAnomalyRecord(metricMMD, detectorResult);
+                if (anomalyRecord != null) {
+                    send(anomalyRecord, parkedBatch == null ? batch : parkedBatch);
+                    numProduced.incrementAndGet();
+                }
+            } finally {
+                if (parkedBatch != null) {
+                    parkedBatch.sendCompleted(null);
+                }
+            }
+        });
 
         // We write to both the outlier and the breakout topics, so we don't report a
         // single topic name here. If we want to break counts up by topic we can do that.
         // [WLW]
-        log.trace("Wrote {} anomaly records", numProduced);
+        log.trace("Wrote {} anomaly records", numProduced.get());
+    }
+
+    private void processRecord(ConsumerRecord<String, MappedMetricData> metricRecord, PendingOffsets.Batch batch,
+                               AtomicInteger numProduced) {
+        if (metricRecord.value() == null) {
+            // The deserializer couldn't read the record.
+            return;
+        }
+        ProducerRecord<String, MappedMetricData> anomalyRecord;
+        try {
+            anomalyRecord = toAnomalyRecord(metricRecord);
+        } catch (RuntimeException e) {
+            failedMeter.mark();
+            log.error("Error detecting anomalies, skipping metric at partition={}, offset={}",
+                    metricRecord.partition(), metricRecord.offset(), e);
+            return;
+        }
+        if (anomalyRecord != null) {
+            send(anomalyRecord, batch);
+            numProduced.incrementAndGet();
+        } else if (detectorManager.isParked(metricRecord.value())) {
+            batch.sendStarted();
+            parkedBatches.put(metricRecord.value(), batch);
+        }
+    }
 
+    /**
+     * Sends the anomaly without waiting for it to be acknowledged, blocking while the maximum number of sends are in
+     * flight. Anomalies that can't be serialized are dropped, since sending them again would fail the same way.
+     */
+    private void send(ProducerRecord<String, MappedMetricData> anomalyRecord, PendingOffsets.Batch batch) {
+        try {
+            inFlightSends.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting to send anomaly", e);
+        }
+        batch.sendStarted();
+        long startNanos = System.nanoTime();
+        try {
+            anomalyProducer.send(anomalyRecord, (metadata, exception) -> {
+                instruments.record(Stage.PRODUCE, System.nanoTime() - startNanos);
+                inFlightSends.release();
+                if (exception == null) {
+                    sentMeter.mark();
+                } else {
+                    sendFailureMeter.mark();
+                    log.error("Error sending anomaly to topic={}", anomalyRecord.topic(), exception);
+                }
+                batch.sendCompleted(exception);
+            });
+        } catch (SerializationException e) {
+            inFlightSends.release();
+            sendFailureMeter.mark();
+            log.error("Dropping anomaly that can't be serialized: anomalyRecord={}", anomalyRecord, e);
+            batch.sendCompleted(null);
+        } catch (RuntimeException e) {
+            inFlightSends.release();
+            sendFailureMeter.mark();
+            batch.sendCompleted(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Commits the offsets of batches whose anomalies have all been acknowledged, or rewinds if a send has failed.
+     */
+    private void commitCompleted(boolean sync) {
+        if (pendingOffsets.hasFailure()) {
+            rewind();
+            return;
+        }
+        val offsets = pendingOffsets.takeCompleted();
+        if (offsets.isEmpty()) {
+            return;
+        }
+        if (sync) {
+            metricConsumer.commitSync(offsets);
+        } else {
+            metricConsumer.commitAsync(offsets, (committedOffsets, exception) -> {
+                if (exception != null) {
+                    log.warn("Error committing offsets={}", committedOffsets, exception);
+                }
+            });
+        }
+    }
+
+    /**
+     * Seeks back to the first uncommitted offsets, so that all records whose anomalies haven't been acknowledged are
+     * processed again.
+     */
+    private void rewind() {
+        val assignment = metricConsumer.assignment();
+        val offsets = pendingOffsets.rewind();
+        synchronized (parkedBatches) {
+            rewoundParkedMetrics.addAll(parkedBatches.keySet());
+            parkedBatches.clear();
+        }
+        offsets.forEach((partition, offset) -> {
+            if (assignment.contains(partition)) {
+                metricConsumer.seek(partition, offset);
+            }
+        });
+        rewindMeter.mark();
+        log.warn("Rewound to the first uncommitted offsets={}", offsets);
+    }
+
+    /**
+     * Waits for the anomalies in flight and commits their offsets before partitions are reassigned, so that the new
+     * owners don't process them again.
+     */
+    private void commitBeforeRebalance() {
+        if (pipelineConfig.isTransactional()) {
+            return;
+        }
+        anomalyProducer.flush();
+        commitCompleted(true);
+    }
+
+    private static UUID detectorUuidOf(ConsumerRecord<String, MappedMetricData> metricRecord) {
+        return metricRecord.value() == null ? null : metricRecord.value().getDetectorUuid();
     }
 
     private ProducerRecord<String, MappedMetricData> toAnomalyRecord(
@@ -242,6 +622,28 @@ public class KafkaDetectorManager implements Runnable {
         return anomalyRecord;
     }
 
+    /**
+     * Builds the anomaly record for a metric replayed after its detector loaded asynchronously. Its consumer record is
+     * long gone, so the record is keyed by detector UUID as the mapper keys it, and isn't traced. Returns null if the
+     * record can't be built, which is logged.
+     */
+    private ProducerRecord<String, MappedMetricData> toAnomalyRecord(MappedMetricData metricMMD, DetectorResult detectorResult) {
+        MappedMetricData anomalyMMD;
+        String outputTopic;
+        try {
+            anomalyMMD = new MappedMetricData(metricMMD, detectorResult);
+            outputTopic = getOutputTopic(detectorResult);
+        } catch (RuntimeException e) {
+            failedMeter.mark();
+            log.error("Error building anomaly for replayed metric, skipping it: detectorUuid={}",
+                    metricMMD.getDetectorUuid(), e);
+            return null;
+        }
+        val timestampMillis = anomalyMMD.getMetricData().getTimestamp() * 1000L;
+        val key = anomalyMMD.getDetectorUuid().toString();
+        return new ProducerRecord<>(outputTopic, null, timestampMillis, key, anomalyMMD);
+    }
+
     private String getOutputTopic(DetectorResult result) {
 
         // TODO Right now I'm violating the open-closed principle here. As we currently
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.kafka;
+
+import com.codahale.metrics.MetricRegistry;
+import com.expedia.adaptivealerting.anomdetect.DetectorContainerCache;
+import com.expedia.adaptivealerting.anomdetect.DetectorManager;
+import com.expedia.adaptivealerting.anomdetect.DetectorStateStore;
+import com.expedia.adaptivealerting.anomdetect.detect.DetectorContainer;
+import com.expedia.adaptivealerting.anomdetect.detect.DetectorResult;
+import com.expedia.adaptivealerting.anomdetect.detect.MappedMetricData;
+import com.expedia.adaptivealerting.anomdetect.detect.breakout.BreakoutDetectorResult;
+import com.expedia.adaptivealerting.anomdetect.detect.outlier.OutlierDetectorResult;
+import com.expedia.adaptivealerting.anomdetect.source.data.initializer.DataInitializerFactory;
+import com.expedia.adaptivealerting.anomdetect.util.JmxReporterFactory;
+import com.expedia.adaptivealerting.kafka.processor.DetectorStateTransformerSupplier;
+import com.expedia.adaptivealerting.kafka.serde.MappedMetricDataJsonSerde;
+import com.expedia.adaptivealerting.kafka.util.DetectorUtil;
+import com.typesafe.config.ConfigValueFactory;
+import lombok.Generated;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.apache.kafka.common.config.TopicConfig;
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.Topology;
+import org.apache.kafka.streams.kstream.KStream;
+import org.apache.kafka.streams.kstream.Produced;
+import org.apache.kafka.streams.processor.TopicNameExtractor;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.StoreBuilder;
+import org.apache.kafka.streams.state.Stores;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+
+import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.isTrue;
+import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.notNull;
+
+/**
+ * Kafka Streams alternative to {@link KafkaDetectorManager}. Reads mapped metrics from the inbound topic, runs their
+ * detectors, and publishes outliers to the outbound topic and breakouts to the breakout topic.
+ * <p>
+ * Detector state is kept in a persistent state store keyed by detector UUID and backed by a compacted changelog topic.
+ * When a partition moves to another instance, e.g. while scaling out or rolling a deployment, its detectors are
+ * restored from the changelog, or straight away from a standby replica (see {@code num.standby.replicas}), instead of
+ * warming up from scratch. This relies on the inbound metrics being keyed by detector UUID, as
+ * {@link KafkaAnomalyDetectorMapper} keys them, so that each detector belongs to one partition.
+ * <p>
+ * The stream tasks share one {@link DetectorManager}, and with it one detector cache and one modelservice poller.
+ */
+@Slf4j
+public final class KafkaStreamsDetectorManager extends AbstractStreamsApp {
+    private static final String APP_ID = "ad-manager";
+    static final String STATE_STORE_NAME = "detector-state";
+
+    /**
+     * Topic for breakouts. Outliers go to the outbound topic.
+     */
+    private static final String CK_BREAKOUT_TOPIC = "breakout-topic";
+
+    /**
+     * Milliseconds between writes of detector state to the state store.
+     */
+    private static final String CK_CHECKPOINT_INTERVAL_MS = "detector-state-checkpoint-interval-ms";
+
+    /**
+     * Detectors are restored from the state store on the stream thread, so they can't be loaded asynchronously.
+     */
+    private static final String CK_DETECTOR_LOADING_ASYNC_ENABLED = "detector-loading-async-enabled";
+
+    private static final String DEFAULT_BREAKOUT_TOPIC = "breakouts";
+    private static final long DEFAULT_CHECKPOINT_INTERVAL_MS = 30_000;
+
+    private final Function<DetectorStateStore, DetectorManager> detectorManagerFactory;
+    private final Map<UUID, DetectorContainer> cachedDetectors;
+    private final MetricRegistry metricRegistry;
+
+    private DetectorStateTransformerSupplier transformerSupplier;
+
+    private Serde<String> outputKeySerde = new Serdes.StringSerde();
+    private Serde<MappedMetricData> outputValueSerde = new MappedMetricDataJsonSerde();
+
+    // Cleaned code coverage
+    // https://reflectoring.io/100-percent-test-coverage/
+    @Generated
+    public static void main(String[] args) {
+        val config = new TypesafeConfigLoader(APP_ID).loadMergedConfig()
+                .withValue(CK_DETECTOR_LOADING_ASYNC_ENABLED, ConfigValueFactory.fromAnyRef(false));
+        val saConfig = new StreamsAppConfig(config);
+        val jmxReporterFactory = new JmxReporterFactory();
+        val metricRegistry = jmxReporterFactory.getMetricRegistry();
+        val detectorSource = DetectorUtil.buildDetectorSource(config);
+        val dataInitializer = DataInitializerFactory.buildDataInitializer(config);
+        val cachedDetectors = new DetectorContainerCache(config, metricRegistry).asMap();
+        Function<DetectorStateStore, DetectorManager> detectorManagerFactory = stateStore ->
+                new DetectorManager(detectorSource, dataInitializer, config, cachedDetectors, metricRegistry, stateStore);
+        new KafkaStreamsDetectorManager(saConfig, detectorManagerFactory, cachedDetectors, jmxReporterFactory).start();
+    }
+
+    /**
+     * Creates a new Kafka Streams detector manager.
+     *
+     * @param config                 Streams app configuration.
+     * @param detectorManagerFactory Builds the detector manager shared by the stream tasks around the given state store,
+     *                               which routes each detector to its task's state store.
+     * @param cachedDetectors        Detector cache of the shared detector manager.
+     * @param jmxReporterFactory     JMX reporter factory.
+     */
+    public KafkaStreamsDetectorManager(StreamsAppConfig config,
+                                       Function<DetectorStateStore, DetectorManager> detectorManagerFactory,
+                                       Map<UUID, DetectorContainer> cachedDetectors,
+                                       JmxReporterFactory jmxReporterFactory) {
+        super(config, jmxReporterFactory.getJmxReporter());
+        notNull(detectorManagerFactory, "detectorManagerFactory can't be null");
+        notNull(cachedDetectors, "cachedDetectors can't be null");
+        this.detectorManagerFactory = detectorManagerFactory;
+        this.cachedDetectors = cachedDetectors;
+        this.metricRegistry = jmxReporterFactory.getMetricRegistry();
+    }
+
+    @Override
+    protected Topology buildTopology() {
+        val config = getConfig();
+        val tsConfig = config.getTypesafeConfig();
+        val inputTopic = config.getInputTopic();
+        val outlierTopic = config.getOutputTopic();
+        val breakoutTopic = tsConfig.hasPath(CK_BREAKOUT_TOPIC)
+                ? tsConfig.getString(CK_BREAKOUT_TOPIC)
+                : DEFAULT_BREAKOUT_TOPIC;
+        val checkpointIntervalMs = tsConfig.hasPath(CK_CHECKPOINT_INTERVAL_MS)
+                ? tsConfig.getLong(CK_CHECKPOINT_INTERVAL_MS)
+                : DEFAULT_CHECKPOINT_INTERVAL_MS;
+        isTrue(checkpointIntervalMs > 0, "Required: " + CK_CHECKPOINT_INTERVAL_MS + " > 0");
+        log.info("Initializing: inputTopic={}, outlierTopic={}, breakoutTopic={}, checkpointIntervalMs={}, standbyReplicas={}",
+                inputTopic, outlierTopic, breakoutTopic, checkpointIntervalMs,
+                config.getStreamsConfig().getInt(StreamsConfig.NUM_STANDBY_REPLICAS_CONFIG));
+
+        val builder = new StreamsBuilder();
+
+        StoreBuilder<KeyValueStore<String, byte[]>> stateStoreBuilder =
+                Stores.keyValueStoreBuilder(Stores.persistentKeyValueStore(STATE_STORE_NAME),
+                        Serdes.String(),
+                        Serdes.ByteArray())
+                        .withLoggingEnabled(Collections.singletonMap(
+                                TopicConfig.CLEANUP_POLICY_CONFIG, TopicConfig.CLEANUP_POLICY_COMPACT));
+        builder.addStateStore(stateStoreBuilder);
+
+        final TopicNameExtractor<String, MappedMetricData> topicNameExtractor = (key, anomalyMMD, recordContext) ->
+                outputTopic(anomalyMMD.getAnomalyResult(), outlierTopic, breakoutTopic);
+
+        if (transformerSupplier != null) {
+            transformerSupplier.close();
+        }
+        this.transformerSupplier = new DetectorStateTransformerSupplier(
+                detectorManagerFactory, cachedDetectors, STATE_STORE_NAME, checkpointIntervalMs, metricRegistry);
+        final KStream<String, MappedMetricData> stream = builder.stream(inputTopic);
+        stream
+                .filter((key, mmd) -> mmd != null)
+                .transform(transformerSupplier, STATE_STORE_NAME)
+                .to(topicNameExtractor, Produced.with(outputKeySerde, outputValueSerde));
+        return builder.build();
+    }
+
+    @Override
+    protected void onClose() {
+        if (transformerSupplier != null) {
+            transformerSupplier.close();
+        }
+    }
+
+    private static String outputTopic(DetectorResult result, String outlierTopic, String breakoutTopic) {
+        val resultClass = result.getClass();
+        if (OutlierDetectorResult.class.isAssignableFrom(resultClass)) {
+            return outlierTopic;
+        } else if (BreakoutDetectorResult.class.isAssignableFrom(resultClass)) {
+            return breakoutTopic;
+        } else {
+            throw new RuntimeException("Unknown DetectorResult class: " + resultClass);
+        }
+    }
+}
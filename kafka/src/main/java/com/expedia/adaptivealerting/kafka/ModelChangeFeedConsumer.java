@@ -0,0 +1,262 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.kafka;
+
+import com.expedia.adaptivealerting.anomdetect.source.ModelChangeEvent;
+import com.expedia.adaptivealerting.anomdetect.source.ModelChangeFeed;
+import com.expedia.adaptivealerting.anomdetect.source.ModelChangeListener;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.typesafe.config.Config;
+import lombok.Generated;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+import org.apache.kafka.common.serialization.StringDeserializer;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Collectors;
+
+import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.isTrue;
+import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.notNull;
+
+/**
+ * Consumes the model change topic that modelservice publishes detector and mapping changes to, and applies them to a
+ * {@link ModelChangeListener} as they arrive.
+ * <p>
+ * Every instance needs every change, so the consumer is assigned all the topic's partitions rather than joining a
+ * consumer group, and starts from the end of the topic: changes made before it started are left to the listener's
+ * poll. The feed is live once it has found the end of the topic, and stays live for as long as the broker answers the
+ * periodic check for the latest offsets.
+ */
+@Slf4j
+public class ModelChangeFeedConsumer implements ModelChangeFeed, Runnable, AutoCloseable {
+    private static final String CK_MODEL_CHANGE_FEED = "model-change-feed";
+    private static final String CK_ENABLED = "enabled";
+    private static final String CK_TOPIC = "topic";
+    private static final String CK_LIVENESS_CHECK_INTERVAL_MS = "liveness-check-interval-ms";
+    private static final String CK_CATCH_UP_PERIOD_MS = "catch-up-period-ms";
+    private static final long POLL_PERIOD = 1000L;
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final Consumer<String, String> consumer;
+    private final String topic;
+    private final ModelChangeListener listener;
+    private final long livenessCheckIntervalMs;
+    private final long catchUpPeriodMs;
+
+    private volatile long liveSince = -1L;
+    private volatile long lastLivenessCheck = -1L;
+    private volatile boolean closed;
+    private Thread thread;
+
+    /**
+     * @param consumer                consumer without a group, reading string keys and values
+     * @param topic                   model change topic
+     * @param listener                listener to apply the changes to
+     * @param livenessCheckIntervalMs how often to check that the broker is reachable. The feed stops being live if a
+     *                                check fails, or if it goes two intervals without one.
+     */
+    public ModelChangeFeedConsumer(Consumer<String, String> consumer,
+                                   String topic,
+                                   ModelChangeListener listener,
+                                   long livenessCheckIntervalMs) {
+        this(consumer, topic, listener, livenessCheckIntervalMs, DEFAULT_CATCH_UP_PERIOD_MILLIS);
+    }
+
+    /**
+     * @param catchUpPeriodMs how long the listener may go without polling while the feed is live
+     */
+    public ModelChangeFeedConsumer(Consumer<String, String> consumer,
+                                   String topic,
+                                   ModelChangeListener listener,
+                                   long livenessCheckIntervalMs,
+                                   long catchUpPeriodMs) {
+        notNull(consumer, "consumer can't be null");
+        notNull(topic, "topic can't be null");
+        notNull(listener, "listener can't be null");
+        isTrue(livenessCheckIntervalMs > 0, "livenessCheckIntervalMs must be > 0");
+        isTrue(catchUpPeriodMs > 0, "catchUpPeriodMs must be > 0");
+        this.consumer = consumer;
+        this.topic = topic;
+        this.listener = listener;
+        this.livenessCheckIntervalMs = livenessCheckIntervalMs;
+        this.catchUpPeriodMs = catchUpPeriodMs;
+    }
+
+    /**
+     * Starts consuming model changes for the given listener on a background thread, if the app's
+     * {@code model-change-feed} is enabled.
+     *
+     * @param config   app config
+     * @param listener listener to apply the changes to
+     * @return the started feed, or null if it isn't enabled
+     */
+    @Generated
+    public static ModelChangeFeedConsumer startIfEnabled(Config config, ModelChangeListener listener) {
+        if (!config.hasPath(CK_MODEL_CHANGE_FEED) || !config.getBoolean(CK_MODEL_CHANGE_FEED + "." + CK_ENABLED)) {
+            return null;
+        }
+        val feedConfig = config.getConfig(CK_MODEL_CHANGE_FEED);
+        val props = new Properties();
+        props.setProperty(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, feedConfig.getString(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG));
+        props.setProperty(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+        props.setProperty(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());
+        props.setProperty(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());
+        val feed = new ModelChangeFeedConsumer(
+                new KafkaConsumer<>(props),
+                feedConfig.getString(CK_TOPIC),
+                listener,
+                feedConfig.getLong(CK_LIVENESS_CHECK_INTERVAL_MS),
+                feedConfig.hasPath(CK_CATCH_UP_PERIOD_MS)
+                        ? feedConfig.getLong(CK_CATCH_UP_PERIOD_MS)
+                        : DEFAULT_CATCH_UP_PERIOD_MILLIS);
+        listener.setModelChangeFeed(feed);
+        feed.start();
+        return feed;
+    }
+
+    public synchronized void start() {
+        thread = new Thread(this, "model-change-feed");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void run() {
+        log.info("Starting model change feed: topic={}", topic);
+        try {
+            while (!closed) {
+                try {
+                    if (consumer.assignment().isEmpty()) {
+                        assignAllPartitions();
+                    }
+                    pollOnce(System.currentTimeMillis());
+                } catch (WakeupException e) {
+                    throw e;
+                } catch (Exception e) {
+                    log.error("Error consuming model changes. Falling back to polling until the feed recovers", e);
+                    liveSince = -1L;
+                    Thread.sleep(POLL_PERIOD);
+                }
+            }
+        } catch (WakeupException e) {
+            if (!closed) {
+                throw e;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            liveSince = -1L;
+            consumer.close();
+        }
+    }
+
+    @Override
+    public long getLiveSince() {
+        if (lastLivenessCheck < 0 || System.currentTimeMillis() - lastLivenessCheck > 2 * livenessCheckIntervalMs) {
+            return -1L;
+        }
+        return liveSince;
+    }
+
+    @Override
+    public long getCatchUpPeriodMillis() {
+        return catchUpPeriodMs;
+    }
+
+    /**
+     * Stops consuming and waits for the feed's thread to finish.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        consumer.wakeup();
+        if (thread != null) {
+            try {
+                thread.join(POLL_PERIOD * 5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Assigns all the topic's partitions and moves to the end of each. The feed is live from then on.
+     */
+    void assignAllPartitions() {
+        val partitions = partitions();
+        consumer.assign(partitions);
+        consumer.seekToEnd(partitions);
+        // Resolve the end offsets now, so that changes published from here on aren't skipped.
+        partitions.forEach(consumer::position);
+        markLive(System.currentTimeMillis());
+        log.info("Consuming model changes from the end of partitions: {}", partitions);
+    }
+
+    /**
+     * Checks the feed is still live if a check is due, and applies the next batch of changes.
+     *
+     * @param now current epoch millis
+     */
+    void pollOnce(long now) {
+        if (now - lastLivenessCheck >= livenessCheckIntervalMs) {
+            consumer.endOffsets(consumer.assignment(), Duration.ofMillis(livenessCheckIntervalMs));
+            markLive(now);
+        }
+        for (val record : consumer.poll(Duration.ofMillis(POLL_PERIOD))) {
+            apply(record);
+        }
+    }
+
+    private List<TopicPartition> partitions() {
+        val partitionInfos = consumer.partitionsFor(topic);
+        if (partitionInfos == null || partitionInfos.isEmpty()) {
+            throw new KafkaException("No partitions found for model change topic " + topic);
+        }
+        return partitionInfos.stream()
+                .map(partitionInfo -> new TopicPartition(partitionInfo.topic(), partitionInfo.partition()))
+                .collect(Collectors.toList());
+    }
+
+    private void markLive(long now) {
+        if (liveSince < 0) {
+            liveSince = now;
+        }
+        lastLivenessCheck = now;
+    }
+
+    private void apply(ConsumerRecord<String, String> record) {
+        if (record.value() == null) {
+            return;
+        }
+        try {
+            val event = OBJECT_MAPPER.readValue(record.value(), ModelChangeEvent.class);
+            log.debug("Applying model change: key={}, changeType={}", record.key(), event.getChangeType());
+            listener.onModelChange(event);
+        } catch (IOException | RuntimeException e) {
+            log.error("Skipping model change that couldn't be applied: key={}", record.key(), e);
+        }
+    }
+}
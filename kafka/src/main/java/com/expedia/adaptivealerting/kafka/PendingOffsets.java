@@ -0,0 +1,157 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.kafka;
+
+import lombok.Getter;
+import lombok.ToString;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.notNull;
+
+/**
+ * Tracks polled batches until every anomaly produced from them has been acknowledged, so that offsets are only
+ * committed for fully produced batches. Batches may complete in any order, but their offsets are committed in the order
+ * they were polled in. Besides {@link KafkaDetectorManager}, the anomaly visualizer uses it to commit offsets once the
+ * anomalies have been indexed.
+ * <p>
+ * Batches are started, closed and taken from the polling thread. Sends may complete on any thread.
+ */
+public class PendingOffsets {
+    private final Deque<Batch> batches = new ArrayDeque<>();
+
+    /**
+     * Starts tracking a polled batch. The batch stays open until {@link Batch#close()} is called, so that it can't
+     * complete while its records are still being processed.
+     *
+     * @param records polled records
+     * @return the batch
+     */
+    public Batch startBatch(Iterable<? extends ConsumerRecord<?, ?>> records) {
+        notNull(records, "records can't be null");
+        Batch batch = new Batch(records);
+        batches.addLast(batch);
+        return batch;
+    }
+
+    int size() {
+        return batches.size();
+    }
+
+    /**
+     * @return whether a produce has failed for any of the pending batches
+     */
+    public boolean hasFailure() {
+        return batches.stream().anyMatch(Batch::isFailed);
+    }
+
+    /**
+     * Stops tracking the completed batches at the head of the queue and returns the offsets to commit for them. Stops
+     * at the first batch that is still open, has sends in flight or has failed.
+     *
+     * @return offsets to commit, empty if no batch has completed
+     */
+    public Map<TopicPartition, OffsetAndMetadata> takeCompleted() {
+        Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+        while (!batches.isEmpty() && batches.peekFirst().isComplete()) {
+            offsets.putAll(batches.removeFirst().getNextOffsets());
+        }
+        return offsets;
+    }
+
+    /**
+     * Stops tracking all batches and returns the offset of the first record of each partition that hasn't been committed,
+     * so that the consumer can seek back to it and process the records again.
+     *
+     * @return first uncommitted offset by partition
+     */
+    public Map<TopicPartition, Long> rewind() {
+        Map<TopicPartition, Long> offsets = new HashMap<>();
+        for (Batch batch : batches) {
+            batch.getFirstOffsets().forEach(offsets::putIfAbsent);
+        }
+        batches.clear();
+        return offsets;
+    }
+
+    /**
+     * A polled batch and the count of its anomaly sends that haven't been acknowledged yet.
+     */
+    @ToString(of = {"nextOffsets", "pending", "failed"})
+    public static final class Batch {
+
+        @Getter
+        private final Map<TopicPartition, Long> firstOffsets = new HashMap<>();
+
+        private final Map<TopicPartition, OffsetAndMetadata> nextOffsets = new HashMap<>();
+
+        // Sends in flight, plus one while the batch is open.
+        private final AtomicInteger pending = new AtomicInteger(1);
+
+        @Getter
+        private volatile boolean failed;
+
+        private Batch(Iterable<? extends ConsumerRecord<?, ?>> records) {
+            for (ConsumerRecord<?, ?> record : records) {
+                TopicPartition partition = new TopicPartition(record.topic(), record.partition());
+                firstOffsets.putIfAbsent(partition, record.offset());
+                nextOffsets.put(partition, new OffsetAndMetadata(record.offset() + 1));
+            }
+        }
+
+        public void sendStarted() {
+            pending.incrementAndGet();
+        }
+
+        public void sendCompleted(Exception exception) {
+            if (exception != null) {
+                failed = true;
+            }
+            pending.decrementAndGet();
+        }
+
+        /**
+         * Marks the batch as failed without a send, e.g. when processing its records threw part-way, so that its records
+         * are processed again rather than committed.
+         */
+        public void fail() {
+            failed = true;
+        }
+
+        /**
+         * Marks all the batch's records as processed.
+         */
+        public void close() {
+            pending.decrementAndGet();
+        }
+
+        boolean isComplete() {
+            return pending.get() == 0 && !failed;
+        }
+
+        Map<TopicPartition, OffsetAndMetadata> getNextOffsets() {
+            return Collections.unmodifiableMap(nextOffsets);
+        }
+    }
+}
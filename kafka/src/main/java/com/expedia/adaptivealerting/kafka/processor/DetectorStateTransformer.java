@@ -0,0 +1,115 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.kafka.processor;
+
+import com.codahale.metrics.MetricRegistry;
+import com.expedia.adaptivealerting.anomdetect.DetectorManager;
+import com.expedia.adaptivealerting.anomdetect.detect.DetectorContainer;
+import com.expedia.adaptivealerting.anomdetect.detect.DetectorResult;
+import com.expedia.adaptivealerting.anomdetect.detect.MappedMetricData;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.kstream.Transformer;
+import org.apache.kafka.streams.processor.ProcessorContext;
+import org.apache.kafka.streams.processor.PunctuationType;
+import org.apache.kafka.streams.state.KeyValueStore;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * A stateful KStream transformer that runs detectors on {@link MappedMetricData}, keeping the detectors' state in a
+ * key-value store keyed by detector UUID.
+ * <p>
+ * All of an instance's stream tasks share one {@link DetectorManager}, so that there's one detector cache and one
+ * modelservice poller however many tasks the instance runs. Each task wraps its own store in a
+ * {@link KeyValueDetectorStateStore} and claims its detectors in the manager's {@link TaskDetectorStateStores}.
+ * Detectors are restored from the task's store when they're loaded, and the state of the task's detectors used since
+ * the last punctuation is written back to the store every checkpoint interval, and once more when the task closes. When
+ * the store is backed by a changelog topic, a task that moves to another instance carries its detectors' state with it.
+ * <p>
+ * Since metrics are keyed by detector UUID, each detector belongs to exactly one task. When a task closes, e.g. because
+ * its partition was reassigned, its detectors are evicted so that they're restored from the store if the partition
+ * comes back.
+ * <p>
+ * Metrics whose detection fails, e.g. because modelservice is down, are logged and skipped, so that one bad detector
+ * doesn't stop the stream thread.
+ */
+@Slf4j
+class DetectorStateTransformer implements Transformer<String, MappedMetricData, KeyValue<String, MappedMetricData>> {
+    private final DetectorManager detectorManager;
+    private final TaskDetectorStateStores stateStores;
+    private final Map<UUID, DetectorContainer> cachedDetectors;
+    private final String stateStoreName;
+    private final long checkpointIntervalMs;
+    private final MetricRegistry metricRegistry;
+
+    private KeyValueDetectorStateStore taskStore;
+    private final Set<UUID> taskDetectors = new HashSet<>();
+
+    DetectorStateTransformer(DetectorManager detectorManager,
+                             TaskDetectorStateStores stateStores,
+                             Map<UUID, DetectorContainer> cachedDetectors,
+                             String stateStoreName,
+                             long checkpointIntervalMs,
+                             MetricRegistry metricRegistry) {
+        this.detectorManager = detectorManager;
+        this.stateStores = stateStores;
+        this.cachedDetectors = cachedDetectors;
+        this.stateStoreName = stateStoreName;
+        this.checkpointIntervalMs = checkpointIntervalMs;
+        this.metricRegistry = metricRegistry;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void init(ProcessorContext context) {
+        val store = (KeyValueStore<String, byte[]>) context.getStateStore(stateStoreName);
+        this.taskStore = new KeyValueDetectorStateStore(store, metricRegistry);
+        stateStores.register(taskStore);
+        context.schedule(checkpointIntervalMs, PunctuationType.WALL_CLOCK_TIME,
+                timestamp -> taskStore.checkpoint(cachedDetectors, timestamp));
+        log.info("Initialized detector state for task {}", context.taskId());
+    }
+
+    @Override
+    public KeyValue<String, MappedMetricData> transform(String key, MappedMetricData mappedMetricData) {
+        if (taskDetectors.add(mappedMetricData.getDetectorUuid())) {
+            stateStores.claim(mappedMetricData.getDetectorUuid(), taskStore);
+        }
+        DetectorResult detectorResult;
+        try {
+            detectorResult = detectorManager.detect(mappedMetricData);
+        } catch (Exception e) {
+            log.error("Error detecting anomalies, skipping metric for detector {}", mappedMetricData.getDetectorUuid(), e);
+            return null;
+        }
+        if (detectorResult == null) {
+            return null;
+        }
+        return KeyValue.pair(key, new MappedMetricData(mappedMetricData, detectorResult));
+    }
+
+    @Override
+    public void close() {
+        taskStore.checkpoint(cachedDetectors, System.currentTimeMillis());
+        stateStores.unregister(taskStore, taskDetectors);
+        taskDetectors.forEach(cachedDetectors::remove);
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.kafka.processor;
+
+import com.codahale.metrics.MetricRegistry;
+import com.expedia.adaptivealerting.anomdetect.DetectorManager;
+import com.expedia.adaptivealerting.anomdetect.DetectorStateStore;
+import com.expedia.adaptivealerting.anomdetect.detect.DetectorContainer;
+import com.expedia.adaptivealerting.anomdetect.detect.MappedMetricData;
+import lombok.Data;
+import lombok.NonNull;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.kstream.Transformer;
+import org.apache.kafka.streams.kstream.TransformerSupplier;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * an instance of {@link TransformerSupplier} that generates a {@link DetectorStateTransformer}
+ * <p>
+ * The supplier builds the one {@link DetectorManager} its transformers share, around a {@link TaskDetectorStateStores}
+ * that routes each detector to its task's state store. Close it once the streams have closed.
+ */
+@Data
+public class DetectorStateTransformerSupplier
+        implements TransformerSupplier<String, MappedMetricData, KeyValue<String, MappedMetricData>>, AutoCloseable {
+
+    /**
+     * Detector manager shared by the transformers.
+     */
+    private final DetectorManager detectorManager;
+
+    private final TaskDetectorStateStores stateStores = new TaskDetectorStateStores();
+
+    /**
+     * Detector cache of the shared detector manager.
+     */
+    private final Map<UUID, DetectorContainer> cachedDetectors;
+
+    private final String stateStoreName;
+
+    private final long checkpointIntervalMs;
+
+    private final MetricRegistry metricRegistry;
+
+    /**
+     * @param detectorManagerFactory builds the shared detector manager around the given state store
+     * @param cachedDetectors        detector cache of the shared detector manager
+     * @param stateStoreName         name of the tasks' detector state store
+     * @param checkpointIntervalMs   milliseconds between writes of detector state to the tasks' stores
+     * @param metricRegistry         metric registry
+     */
+    public DetectorStateTransformerSupplier(@NonNull Function<DetectorStateStore, DetectorManager> detectorManagerFactory,
+                                            @NonNull Map<UUID, DetectorContainer> cachedDetectors,
+                                            @NonNull String stateStoreName,
+                                            long checkpointIntervalMs,
+                                            @NonNull MetricRegistry metricRegistry) {
+        this.detectorManager = detectorManagerFactory.apply(stateStores);
+        this.cachedDetectors = cachedDetectors;
+        this.stateStoreName = stateStoreName;
+        this.checkpointIntervalMs = checkpointIntervalMs;
+        this.metricRegistry = metricRegistry;
+    }
+
+    @Override
+    public Transformer<String, MappedMetricData, KeyValue<String, MappedMetricData>> get() {
+        return new DetectorStateTransformer(
+                detectorManager, stateStores, cachedDetectors, stateStoreName, checkpointIntervalMs, metricRegistry);
+    }
+
+    /**
+     * Closes the shared detector manager.
+     */
+    @Override
+    public void close() {
+        detectorManager.close();
+    }
+}
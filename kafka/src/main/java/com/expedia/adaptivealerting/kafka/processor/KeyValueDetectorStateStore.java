@@ -0,0 +1,143 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.kafka.processor;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.expedia.adaptivealerting.anomdetect.DetectorStateStore;
+import com.expedia.adaptivealerting.anomdetect.detect.DetectorContainer;
+import com.expedia.adaptivealerting.anomdetect.snapshot.DetectorSnapshotCodec;
+import com.expedia.adaptivealerting.anomdetect.snapshot.DetectorSnapshotException;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.streams.state.KeyValueStore;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.notNull;
+
+/**
+ * {@link DetectorStateStore} backed by a Kafka Streams key-value store of detector snapshots, keyed by detector UUID.
+ * <p>
+ * The store belongs to a single stream task, so apart from {@link #discard(UUID)}, it must only be used from the task's
+ * stream thread. Discards may come from any thread, so they're queued and applied on the stream thread before the store
+ * is next read or written. Every call to {@link #checkpointIfDue(Map, long)} writes a checkpoint; how often that
+ * happens is up to the caller.
+ */
+@Slf4j
+class KeyValueDetectorStateStore implements DetectorStateStore {
+    private final KeyValueStore<String, byte[]> store;
+
+    private final Set<UUID> dirtyDetectors = new HashSet<>();
+    private final Queue<UUID> discardedDetectors = new ConcurrentLinkedQueue<>();
+
+    private final Meter restoredMeter;
+    private final Meter restoreFailureMeter;
+    private final Meter writtenMeter;
+
+    KeyValueDetectorStateStore(KeyValueStore<String, byte[]> store, MetricRegistry metricRegistry) {
+        notNull(store, "store can't be null");
+        notNull(metricRegistry, "metricRegistry can't be null");
+        this.store = store;
+        this.restoredMeter = metricRegistry.meter("detector.state.restored");
+        this.restoreFailureMeter = metricRegistry.meter("detector.state.restoreFailure");
+        this.writtenMeter = metricRegistry.meter("detector.state.written");
+    }
+
+    @Override
+    public boolean hasState(UUID detectorUuid) {
+        applyDiscards();
+        return store.get(detectorUuid.toString()) != null;
+    }
+
+    @Override
+    public boolean restore(DetectorContainer container) {
+        notNull(container, "container can't be null");
+        applyDiscards();
+        String key = container.getDetector().getUuid().toString();
+        byte[] snapshot = store.get(key);
+        if (snapshot == null || !DetectorSnapshotCodec.isSupported(container.getDetector())) {
+            return false;
+        }
+        try {
+            DetectorSnapshotCodec.restore(container.getDetector(), snapshot);
+            restoredMeter.mark();
+            return true;
+        } catch (DetectorSnapshotException e) {
+            log.warn("Couldn't restore detector from its stored state, initializing it instead", e);
+            restoreFailureMeter.mark();
+            store.delete(key);
+            return false;
+        }
+    }
+
+    @Override
+    public void markDirty(UUID detectorUuid) {
+        dirtyDetectors.add(detectorUuid);
+    }
+
+    @Override
+    public void discard(UUID detectorUuid) {
+        discardedDetectors.add(detectorUuid);
+    }
+
+    @Override
+    public void checkpointIfDue(Map<UUID, DetectorContainer> detectors, long currentTime) {
+        checkpoint(detectors, currentTime);
+    }
+
+    @Override
+    public void checkpoint(Map<UUID, DetectorContainer> detectors, long currentTime) {
+        applyDiscards();
+        int written = 0;
+        for (UUID detectorUuid : dirtyDetectors) {
+            DetectorContainer container = detectors.get(detectorUuid);
+            if (container == null || !DetectorSnapshotCodec.isSupported(container.getDetector())) {
+                continue;
+            }
+            try {
+                store.put(detectorUuid.toString(), DetectorSnapshotCodec.snapshot(container.getDetector()));
+                written++;
+            } catch (DetectorSnapshotException e) {
+                log.warn("Couldn't snapshot detector {}", detectorUuid, e);
+            }
+        }
+        dirtyDetectors.clear();
+        writtenMeter.mark(written);
+    }
+
+    private void applyDiscards() {
+        UUID discarded;
+        while ((discarded = discardedDetectors.poll()) != null) {
+            dirtyDetectors.remove(discarded);
+            // Every task hears about every updated detector, so this only deletes state the task actually has.
+            if (store.get(discarded.toString()) != null) {
+                store.delete(discarded.toString());
+            }
+        }
+    }
+
+    /**
+     * Does nothing, as the store belongs to Kafka Streams.
+     */
+    @Override
+    public void close() {
+    }
+}
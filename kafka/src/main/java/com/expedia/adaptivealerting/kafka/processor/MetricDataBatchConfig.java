@@ -0,0 +1,92 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.kafka.processor;
+
+import com.typesafe.config.Config;
+import lombok.Getter;
+import lombok.ToString;
+
+import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.isTrue;
+import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.notNull;
+
+/**
+ * Batching configuration for the detector mapping lookups that {@link MetricDataTransformer} issues on cache misses.
+ * All settings are optional.
+ */
+@Getter
+@ToString
+public class MetricDataBatchConfig {
+
+    /**
+     * Maximum number of distinct metrics per detector mapping lookup.
+     */
+    private static final String CK_MAX_BATCH_SIZE = "max-batch-size";
+
+    /**
+     * Maximum time in milliseconds a cache-missed metric waits for its batch to fill.
+     */
+    private static final String CK_MAX_LINGER_MS = "max-linger-ms";
+
+    /**
+     * Maximum number of lookups in flight at once. Each flush drains at most this many batches.
+     */
+    private static final String CK_MAX_CONCURRENT_LOOKUPS = "max-concurrent-lookups";
+
+    /**
+     * How often in milliseconds the buffer is checked.
+     */
+    private static final String CK_PUNCTUATION_INTERVAL_MS = "punctuation-interval-ms";
+
+    private static final int DEFAULT_MAX_BATCH_SIZE = 80;
+    private static final long DEFAULT_MAX_LINGER_MS = 1000;
+    private static final int DEFAULT_MAX_CONCURRENT_LOOKUPS = 2;
+    private static final long DEFAULT_PUNCTUATION_INTERVAL_MS = 200;
+
+    private final int maxBatchSize;
+    private final long maxLingerMs;
+    private final int maxConcurrentLookups;
+    private final long punctuationIntervalMs;
+
+    public MetricDataBatchConfig() {
+        this(DEFAULT_MAX_BATCH_SIZE, DEFAULT_MAX_LINGER_MS, DEFAULT_MAX_CONCURRENT_LOOKUPS, DEFAULT_PUNCTUATION_INTERVAL_MS);
+    }
+
+    public MetricDataBatchConfig(int maxBatchSize, long maxLingerMs, int maxConcurrentLookups, long punctuationIntervalMs) {
+        isTrue(maxBatchSize > 0, "Required: maxBatchSize > 0");
+        isTrue(maxLingerMs >= 0, "Required: maxLingerMs >= 0");
+        isTrue(maxConcurrentLookups > 0, "Required: maxConcurrentLookups > 0");
+        isTrue(punctuationIntervalMs > 0, "Required: punctuationIntervalMs > 0");
+        this.maxBatchSize = maxBatchSize;
+        this.maxLingerMs = maxLingerMs;
+        this.maxConcurrentLookups = maxConcurrentLookups;
+        this.punctuationIntervalMs = punctuationIntervalMs;
+    }
+
+    /**
+     * Reads the batching configuration, falling back to defaults for missing settings.
+     *
+     * @param config batching configuration
+     * @return batching configuration
+     */
+    public static MetricDataBatchConfig from(Config config) {
+        notNull(config, "config can't be null");
+        return new MetricDataBatchConfig(
+                config.hasPath(CK_MAX_BATCH_SIZE) ? config.getInt(CK_MAX_BATCH_SIZE) : DEFAULT_MAX_BATCH_SIZE,
+                config.hasPath(CK_MAX_LINGER_MS) ? config.getLong(CK_MAX_LINGER_MS) : DEFAULT_MAX_LINGER_MS,
+                config.hasPath(CK_MAX_CONCURRENT_LOOKUPS) ? config.getInt(CK_MAX_CONCURRENT_LOOKUPS) : DEFAULT_MAX_CONCURRENT_LOOKUPS,
+                config.hasPath(CK_PUNCTUATION_INTERVAL_MS) ? config.getLong(CK_PUNCTUATION_INTERVAL_MS) : DEFAULT_PUNCTUATION_INTERVAL_MS);
+    }
+}
@@ -15,9 +15,14 @@
  */
 package com.expedia.adaptivealerting.kafka.processor;
 
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
 import com.expedia.adaptivealerting.anomdetect.mapper.Detector;
 import com.expedia.adaptivealerting.anomdetect.mapper.DetectorMapper;
 import com.expedia.adaptivealerting.anomdetect.mapper.MapperResult;
+import com.expedia.adaptivealerting.anomdetect.mapper.TagSetKey;
+import com.expedia.adaptivealerting.kafka.serde.LazyMetricTankMetricData;
 import com.expedia.metrics.MetricData;
 import lombok.Data;
 import lombok.NonNull;
@@ -31,19 +36,32 @@ import org.apache.kafka.streams.processor.PunctuationType;
 import org.apache.kafka.streams.state.KeyValueIterator;
 import org.apache.kafka.streams.state.KeyValueStore;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
-import java.util.stream.Collectors;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * A custom stateful KStream transformer that converts {@link MetricData} to {@link MapperResult}.
  * For each incoming record, {@link #transform(String key, MetricData metricData) , matching detectors are fetched from cache
  * in case of cache miss, record in pushed into a in-memory state store, for batching.
  * <p>
- * {@link #init(ProcessorContext context), registers a scheduled a periodic operation that determines if the batch size is appropriate
- * and issues a down stream call to fetch matching detectors.
+ * {@link #init(ProcessorContext context), registers a scheduled a periodic operation that flushes the buffer once it holds
+ * a full batch (the smaller of {@link DetectorMapper#optimalBatchSize()} and the configured maximum) or once its oldest
+ * metric has waited longer than the configured linger. A flush
+ * <ul>
+ * <li>groups the buffered metrics by tags, so each distinct metric is looked up once,</li>
+ * <li>drains at most {@link MetricDataBatchConfig#getMaxConcurrentLookups()} batches, leaving the rest buffered for the
+ * next punctuation, and</li>
+ * <li>issues those lookups concurrently, forwarding the results once they've all completed.</li>
+ * </ul>
+ * So a cold start or a slow detector source leads to a deeper buffer and steady, bounded lookups rather than a single
+ * giant request.
  * <p>
  * <p>
  * While pushing records into state store, using {@code key} can cause overriding metric of same {@code  metricDefinition} as state store is a Map.
@@ -57,6 +75,7 @@ import java.util.stream.Collectors;
 @Data
 @RequiredArgsConstructor
 class MetricDataTransformer implements Transformer<String, MetricData, KeyValue<String, MapperResult>> {
+    private static final long NOT_BUFFERING = -1L;
 
     private ProcessorContext context;
     private KeyValueStore<String, MetricData> metricDataKeyValueStore;
@@ -65,7 +84,23 @@ class MetricDataTransformer implements Transformer<String, MetricData, KeyValue<
     private DetectorMapper detectorMapper;
     @NonNull
     private final String stateStoreName;
+    @NonNull
+    private final MetricDataBatchConfig batchConfig;
+    @NonNull
+    private final MetricRegistry metricRegistry;
+
+    // Runs all but one of a flush's lookups; the stream thread runs the other. Null if lookups aren't concurrent.
+    private ExecutorService lookupExecutor;
 
+    // Wall clock time of the punctuation that first saw the oldest buffered metric.
+    private long bufferedSince = NOT_BUFFERING;
+
+    private Histogram bufferDepth;
+    private Histogram bufferAge;
+    private Histogram lookupBatchSize;
+    private Counter duplicateMetrics;
+    private Counter failedLookups;
+    private Counter droppedMetrics;
 
     private String addSalt(String key) {
         return key.concat(":").concat(UUID.randomUUID().toString());
@@ -84,44 +119,136 @@ class MetricDataTransformer implements Transformer<String, MetricData, KeyValue<
         this.context = context;
         this.metricDataKeyValueStore = (KeyValueStore<String, MetricData>) context.getStateStore(stateStoreName);
 
+        this.bufferDepth = metricRegistry.histogram("ad-mapper.buffer.depth");
+        this.bufferAge = metricRegistry.histogram("ad-mapper.buffer.age");
+        this.lookupBatchSize = metricRegistry.histogram("ad-mapper.lookup.batch-size");
+        this.duplicateMetrics = metricRegistry.counter("ad-mapper.lookup.duplicates");
+        this.failedLookups = metricRegistry.counter("ad-mapper.lookup.failures");
+        this.droppedMetrics = metricRegistry.counter("ad-mapper.lookup.dropped-metrics");
+
+        if (batchConfig.getMaxConcurrentLookups() > 1) {
+            this.lookupExecutor = Executors.newFixedThreadPool(batchConfig.getMaxConcurrentLookups() - 1, runnable -> {
+                Thread thread = new Thread(runnable, "ad-mapper-lookup");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
         /*
          *  Requests to model-service to fetch detectors for metrics are throttled
          *  This is done by buffering them in kafka KV store and periodically clearing that buffer
          * */
-        //TODO decide PUNCTUATION time
-        this.context.schedule(200, PunctuationType.WALL_CLOCK_TIME, (timestamp) -> {
+        this.context.schedule(batchConfig.getPunctuationIntervalMs(), PunctuationType.WALL_CLOCK_TIME, (timestamp) -> {
+            punctuate(timestamp);
+
+            // commit the current processing progress
+            context.commit();
+        });
 
-            if (metricDataKeyValueStore.approximateNumEntries() >= detectorMapper.optimalBatchSize()) {
-                KeyValueIterator<String, MetricData> iter = this.metricDataKeyValueStore.all();
-                Map<String, MetricData> cacheMissedMetrics = new HashMap<>();
+    }
 
-                while (iter.hasNext()) {
-                    KeyValue<String, MetricData> entry = iter.next();
-                    cacheMissedMetrics.put(entry.key, entry.value);
-                    metricDataKeyValueStore.delete(entry.key);
-                }
-                iter.close();
+    private void punctuate(long timestamp) {
+        long depth = metricDataKeyValueStore.approximateNumEntries();
+        bufferDepth.update(depth);
+        if (depth == 0) {
+            bufferedSince = NOT_BUFFERING;
+            return;
+        }
+        if (bufferedSince == NOT_BUFFERING) {
+            bufferedSince = timestamp;
+        }
 
-                List<Map<String, String>> cacheMissedMetricTags = cacheMissedMetrics.values().stream().map(value -> value.getMetricDefinition().getTags().getKv()).collect(Collectors.toList());
+        long age = timestamp - bufferedSince;
+        int batchSize = Math.min(detectorMapper.optimalBatchSize(), batchConfig.getMaxBatchSize());
+        if (depth < batchSize && age < batchConfig.getMaxLingerMs()) {
+            log.trace("ES lookup skipped, as batch size is not optimum");
+            return;
+        }
+        bufferAge.update(age);
 
-                if (detectorMapper.isSuccessfulDetectorMappingLookup(cacheMissedMetricTags)) {
+        Map<Map<String, String>, List<KeyValue<String, MetricData>>> metricsByTags = drain();
+        if (metricDataKeyValueStore.approximateNumEntries() == 0) {
+            bufferedSince = NOT_BUFFERING;
+        }
+        lookUpAndForward(metricsByTags);
+    }
 
-                    cacheMissedMetrics.forEach((originalKey, metricData) -> {
-                        List<Detector> detectors = detectorMapper.getDetectorsFromCache(metricData.getMetricDefinition());
-                        if (!detectors.isEmpty()) {
-                            context.forward(removeSalt(originalKey), new MapperResult(metricData, detectors));
-                        }
-                    });
+    /*
+     * Removes up to one flush worth of distinct metrics from the buffer, grouped by tags.
+     */
+    private Map<Map<String, String>, List<KeyValue<String, MetricData>>> drain() {
+        int maxDistinctMetrics = batchConfig.getMaxBatchSize() * batchConfig.getMaxConcurrentLookups();
+        Map<Map<String, String>, List<KeyValue<String, MetricData>>> metricsByTags = new LinkedHashMap<>();
+        List<String> drainedKeys = new ArrayList<>();
+
+        try (KeyValueIterator<String, MetricData> iter = this.metricDataKeyValueStore.all()) {
+            while (iter.hasNext()) {
+                KeyValue<String, MetricData> entry = iter.next();
+                Map<String, String> tags = entry.value.getMetricDefinition().getTags().getKv();
+                List<KeyValue<String, MetricData>> metrics = metricsByTags.get(tags);
+                if (metrics == null) {
+                    if (metricsByTags.size() == maxDistinctMetrics) {
+                        continue;
+                    }
+                    metrics = new ArrayList<>();
+                    metricsByTags.put(tags, metrics);
+                } else {
+                    duplicateMetrics.inc();
                 }
+                metrics.add(entry);
+                drainedKeys.add(entry.key);
+            }
+        }
+        drainedKeys.forEach(metricDataKeyValueStore::delete);
+        return metricsByTags;
+    }
+
+    private void lookUpAndForward(Map<Map<String, String>, List<KeyValue<String, MetricData>>> metricsByTags) {
+        List<List<Map<String, String>>> batches = new ArrayList<>();
+        List<Map<String, String>> batch = null;
+        for (Map<String, String> tags : metricsByTags.keySet()) {
+            if (batch == null || batch.size() == batchConfig.getMaxBatchSize()) {
+                batch = new ArrayList<>();
+                batches.add(batch);
+            }
+            batch.add(tags);
+        }
 
+        List<Future<Boolean>> lookups = new ArrayList<>();
+        for (int i = 1; i < batches.size(); i++) {
+            List<Map<String, String>> otherBatch = batches.get(i);
+            lookups.add(lookupExecutor.submit(() -> detectorMapper.isSuccessfulDetectorMappingLookup(otherBatch)));
+        }
+
+        for (int i = 0; i < batches.size(); i++) {
+            List<Map<String, String>> cacheMissedMetricTags = batches.get(i);
+            lookupBatchSize.update(cacheMissedMetricTags.size());
+            if (isSuccessful(i == 0 ? null : lookups.get(i - 1), cacheMissedMetricTags)) {
+                cacheMissedMetricTags.forEach(tags -> forward(metricsByTags.get(tags)));
             } else {
-                log.trace("ES lookup skipped, as batch size is not optimum");
+                failedLookups.inc();
+                cacheMissedMetricTags.forEach(tags -> droppedMetrics.inc(metricsByTags.get(tags).size()));
             }
+        }
+    }
 
-            // commit the current processing progress
-            context.commit();
-        });
+    private boolean isSuccessful(Future<Boolean> lookup, List<Map<String, String>> cacheMissedMetricTags) {
+        try {
+            return lookup == null ? detectorMapper.isSuccessfulDetectorMappingLookup(cacheMissedMetricTags) : lookup.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException | RuntimeException e) {
+            log.error("Error looking up detector mappings", e);
+            return false;
+        }
+    }
 
+    private void forward(List<KeyValue<String, MetricData>> metrics) {
+        List<Detector> detectors = detectorMapper.getDetectorsFromCache(metrics.get(0).value.getMetricDefinition());
+        if (!detectors.isEmpty()) {
+            metrics.forEach(entry -> context.forward(removeSalt(entry.key), new MapperResult(entry.value, detectors)));
+        }
     }
 
     @Override
@@ -131,7 +258,7 @@ class MetricDataTransformer implements Transformer<String, MetricData, KeyValue<
             key = "place-holder-key";
         }
 
-        List<Detector> detectors = detectorMapper.getDetectorsFromCache(metricData.getMetricDefinition());
+        List<Detector> detectors = getDetectorsFromCache(metricData);
 
         if (detectors.isEmpty()) {
             //adding salt to key to prevent incoming records with same key being over-ridden
@@ -143,7 +270,21 @@ class MetricDataTransformer implements Transformer<String, MetricData, KeyValue<
 
     }
 
+    /*
+     * Metric data read lazily from MessagePack already has its tag set key, so it's looked up without decoding its tags.
+     */
+    private List<Detector> getDetectorsFromCache(MetricData metricData) {
+        if (metricData instanceof LazyMetricTankMetricData) {
+            TagSetKey tagSetKey = ((LazyMetricTankMetricData) metricData).getTagSetKey();
+            return detectorMapper.getDetectorsFromCache(tagSetKey, () -> metricData.getMetricDefinition().getTags().getKv());
+        }
+        return detectorMapper.getDetectorsFromCache(metricData.getMetricDefinition());
+    }
+
     @Override
     public void close() {
+        if (lookupExecutor != null) {
+            lookupExecutor.shutdownNow();
+        }
     }
 }
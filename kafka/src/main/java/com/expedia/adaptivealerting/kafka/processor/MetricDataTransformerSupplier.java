@@ -15,6 +15,7 @@
  */
 package com.expedia.adaptivealerting.kafka.processor;
 
+import com.codahale.metrics.MetricRegistry;
 import com.expedia.adaptivealerting.anomdetect.mapper.DetectorMapper;
 import com.expedia.adaptivealerting.anomdetect.mapper.MapperResult;
 import com.expedia.metrics.MetricData;
@@ -38,8 +39,14 @@ public class MetricDataTransformerSupplier implements TransformerSupplier<String
     @NonNull
     private final String stateStoreName;
 
+    @NonNull
+    private final MetricDataBatchConfig batchConfig;
+
+    @NonNull
+    private final MetricRegistry metricRegistry;
+
     @Override
     public Transformer<String, MetricData, KeyValue<String, MapperResult>> get() {
-        return new MetricDataTransformer(detectorMapper, stateStoreName);
+        return new MetricDataTransformer(detectorMapper, stateStoreName, batchConfig, metricRegistry);
     }
 }
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.kafka.processor;
+
+import com.expedia.adaptivealerting.anomdetect.DetectorManager;
+import com.expedia.adaptivealerting.anomdetect.DetectorStateStore;
+import com.expedia.adaptivealerting.anomdetect.detect.DetectorContainer;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.notNull;
+
+/**
+ * {@link DetectorStateStore} for the one {@link DetectorManager} shared by an instance's stream tasks, which routes
+ * each detector to the {@link KeyValueDetectorStateStore} of the task it belongs to.
+ * <p>
+ * Tasks claim their detectors as their metrics arrive, and checkpoint their own stores from their own stream threads,
+ * so the manager's checkpoint calls do nothing here. Discards go to every task's store, which only deletes state the
+ * task actually has.
+ */
+class TaskDetectorStateStores implements DetectorStateStore {
+    private final Set<KeyValueDetectorStateStore> taskStores = ConcurrentHashMap.newKeySet();
+    private final Map<UUID, KeyValueDetectorStateStore> storesByDetector = new ConcurrentHashMap<>();
+
+    void register(KeyValueDetectorStateStore taskStore) {
+        notNull(taskStore, "taskStore can't be null");
+        taskStores.add(taskStore);
+    }
+
+    /**
+     * Routes the detector to the given task's store, from the task's stream thread.
+     */
+    void claim(UUID detectorUuid, KeyValueDetectorStateStore taskStore) {
+        storesByDetector.put(detectorUuid, taskStore);
+    }
+
+    void unregister(KeyValueDetectorStateStore taskStore, Collection<UUID> taskDetectors) {
+        taskStores.remove(taskStore);
+        taskDetectors.forEach(detectorUuid -> storesByDetector.remove(detectorUuid, taskStore));
+    }
+
+    @Override
+    public boolean hasState(UUID detectorUuid) {
+        KeyValueDetectorStateStore taskStore = storesByDetector.get(detectorUuid);
+        return taskStore != null && taskStore.hasState(detectorUuid);
+    }
+
+    @Override
+    public boolean restore(DetectorContainer container) {
+        notNull(container, "container can't be null");
+        KeyValueDetectorStateStore taskStore = storesByDetector.get(container.getDetector().getUuid());
+        return taskStore != null && taskStore.restore(container);
+    }
+
+    @Override
+    public void markDirty(UUID detectorUuid) {
+        KeyValueDetectorStateStore taskStore = storesByDetector.get(detectorUuid);
+        if (taskStore != null) {
+            taskStore.markDirty(detectorUuid);
+        }
+    }
+
+    @Override
+    public void discard(UUID detectorUuid) {
+        taskStores.forEach(taskStore -> taskStore.discard(detectorUuid));
+    }
+
+    /**
+     * Does nothing, as each task checkpoints its own store.
+     */
+    @Override
+    public void checkpointIfDue(Map<UUID, DetectorContainer> detectors, long currentTime) {
+    }
+
+    /**
+     * Does nothing, as each task checkpoints its own store.
+     */
+    @Override
+    public void checkpoint(Map<UUID, DetectorContainer> detectors, long currentTime) {
+    }
+
+    /**
+     * Does nothing, as the task stores belong to Kafka Streams.
+     */
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.kafka.serde;
+
+import com.expedia.metrics.MetricData;
+import com.expedia.metrics.MetricDefinition;
+
+/**
+ * {@link MetricData} whose metric definition is decoded from the serialized record the first time it's accessed. The
+ * value and timestamp are decoded up front.
+ * <p>
+ * This compares equal to plain metric data with the same contents, though plain metric data doesn't compare equal to
+ * this, since {@link MetricData#equals(Object)} requires the same class.
+ */
+abstract class LazyMetricData extends MetricData {
+
+    // The superclass requires a definition, but it's only ever read through getMetricDefinition(), which is overridden.
+    private static final MetricDefinition UNDECODED = new MetricDefinition("undecoded");
+
+    private volatile MetricDefinition metricDefinition;
+
+    LazyMetricData(double value, long timestamp) {
+        super(UNDECODED, value, timestamp);
+    }
+
+    /**
+     * Decodes the metric definition from the serialized record.
+     *
+     * @return the metric definition
+     */
+    abstract MetricDefinition decodeMetricDefinition();
+
+    @Override
+    public MetricDefinition getMetricDefinition() {
+        MetricDefinition definition = metricDefinition;
+        if (definition == null) {
+            // Decoding is idempotent, so concurrent first accesses may both decode.
+            definition = decodeMetricDefinition();
+            metricDefinition = definition;
+        }
+        return definition;
+    }
+
+    boolean isDecoded() {
+        return metricDefinition != null;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof MetricData)) {
+            return false;
+        }
+        MetricData that = (MetricData) o;
+        return getValue() == that.getValue()
+                && getTimestamp() == that.getTimestamp()
+                && getMetricDefinition().equals(that.getMetricDefinition());
+    }
+
+    @Override
+    public int hashCode() {
+        return getMetricDefinition().hashCode()
+                ^ 31 * Double.hashCode(getValue())
+                ^ 17 * Long.hashCode(getTimestamp());
+    }
+
+    @Override
+    public String toString() {
+        return new MetricData(getMetricDefinition(), getValue(), getTimestamp()).toString();
+    }
+}
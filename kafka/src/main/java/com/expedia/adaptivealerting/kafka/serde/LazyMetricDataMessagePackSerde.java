@@ -0,0 +1,81 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.kafka.serde;
+
+import com.expedia.metrics.MetricData;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Drop-in replacement for {@link MetricDataMessagePackSerde} whose deserializer reads records with a
+ * {@link MetricTankMessagePackReader} instead of materializing them. The records it returns are
+ * {@link LazyMetricTankMetricData}, which decode their metric definition on first access, so a stage that only looks
+ * metrics up by {@link LazyMetricTankMetricData#getTagSetKey()} doesn't pay for decoding them.
+ */
+@Slf4j
+public class LazyMetricDataMessagePackSerde implements Serde<MetricData> {
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public Serializer<MetricData> serializer() {
+        return new MetricDataMessagePackSerde.Ser();
+    }
+
+    @Override
+    public Deserializer<MetricData> deserializer() {
+        return new Deser();
+    }
+
+    /**
+     * Deserializer that reuses a reader across records, so an instance mustn't be shared between threads.
+     */
+    public static class Deser implements Deserializer<MetricData> {
+        private final MetricTankMessagePackReader reader = new MetricTankMessagePackReader();
+
+        @Override
+        public void configure(Map<String, ?> configs, boolean isKey) {
+        }
+
+        @Override
+        public MetricData deserialize(String topic, byte[] metricDataBytes) {
+            if (metricDataBytes == null) {
+                return null;
+            }
+            try {
+                return reader.read(metricDataBytes);
+            } catch (IOException e) {
+                log.error("Deserialization error", e);
+                return null;
+            }
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
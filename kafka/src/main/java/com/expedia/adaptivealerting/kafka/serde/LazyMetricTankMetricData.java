@@ -0,0 +1,91 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.kafka.serde;
+
+import com.expedia.adaptivealerting.anomdetect.mapper.TagSetKey;
+import com.expedia.metrics.MetricDefinition;
+import com.expedia.metrics.TagCollection;
+import com.expedia.metrics.metrictank.MetricTankMetricDefinition;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Metric data read by {@link MetricTankMessagePackReader}. Its {@link MetricTankMetricDefinition} is decoded the first
+ * time it's accessed, but its {@link TagSetKey} is available up front, so stages that only look metrics up by their
+ * tags don't need the definition.
+ */
+public final class LazyMetricTankMetricData extends LazyMetricData {
+    private static final int NAME = 0;
+    private static final int UNIT = 2;
+    private static final int MTYPE = 4;
+
+    private final byte[] data;
+
+    // Offset and length of the name, unit and mtype.
+    private final int[] positions;
+
+    // Key offset, key length, value offset and value length of each tag.
+    private final int[] tags;
+
+    private final int orgId;
+    private final int interval;
+    private volatile TagSetKey tagSetKey;
+
+    LazyMetricTankMetricData(byte[] data, int[] positions, int[] tags, int orgId, int interval, TagSetKey tagSetKey,
+                             double value, long timestamp) {
+        super(value, timestamp);
+        this.data = data;
+        this.positions = positions;
+        this.tags = tags;
+        this.orgId = orgId;
+        this.interval = interval;
+        this.tagSetKey = tagSetKey;
+    }
+
+    /**
+     * @return the key of the metric's tags, as {@link TagSetKey#of(Map)} would build it
+     */
+    public TagSetKey getTagSetKey() {
+        TagSetKey key = tagSetKey;
+        if (key == null) {
+            key = TagSetKey.of(getMetricDefinition().getTags().getKv());
+            tagSetKey = key;
+        }
+        return key;
+    }
+
+    @Override
+    MetricDefinition decodeMetricDefinition() {
+        Map<String, String> kv = new HashMap<>(tags.length / 2);
+        for (int i = 0; i < tags.length; i += 4) {
+            kv.put(string(tags[i], tags[i + 1]), string(tags[i + 2], tags[i + 3]));
+        }
+        return new MetricTankMetricDefinition(
+                string(positions[NAME], positions[NAME + 1]),
+                new TagCollection(kv),
+                TagCollection.EMPTY,
+                orgId,
+                interval,
+                string(positions[UNIT], positions[UNIT + 1]),
+                string(positions[MTYPE], positions[MTYPE + 1]));
+    }
+
+    private String string(int offset, int length) {
+        return new String(data, offset, length, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,354 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.kafka.serde;
+
+import com.expedia.adaptivealerting.anomdetect.detect.MappedMetricData;
+import com.expedia.metrics.MetricDefinition;
+import com.expedia.metrics.TagCollection;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Compact binary serde for the mapped metrics the mapper sends to the detector manager. Compared to
+ * {@link MappedMetricDataJsonSerde}, the detector UUID is two longs, the timestamp and lengths are varints, and each
+ * distinct string in the metric definition (key, tag keys and values) is written once, in a per-record string table
+ * that the tags refer to by index.
+ * <p>
+ * Layout (version 1):
+ * <pre>
+ * byte     format version
+ * byte     flags (1 = has consumer ID)
+ * long     detector UUID, most significant bits
+ * long     detector UUID, least significant bits
+ * string   consumer ID, if flagged
+ * double   value
+ * varlong  timestamp
+ * varint   length of the metric definition, in bytes
+ * varint   number of strings, followed by the strings
+ * varint   key string index + 1, or 0 if there's no key
+ * tags     tags: varint count and key/value string index pairs, then varint count and value string indexes
+ * tags     meta, as above
+ * </pre>
+ * Strings are a varint byte length followed by UTF-8 bytes.
+ * <p>
+ * The deserializer decodes the metric definition only when it's first accessed (see {@link LazyMetricData}), as
+ * detection itself only needs the value and timestamp. It also reads JSON written by {@link MappedMetricDataJsonSerde},
+ * so consumers can be switched to this serde before producers are.
+ * <p>
+ * Anomaly results aren't supported. Anomalies should keep using the JSON serde, since downstream consumers expect it.
+ */
+@Slf4j
+public final class MappedMetricDataBinarySerde implements Serde<MappedMetricData> {
+    static final byte FORMAT_VERSION = 1;
+    private static final byte JSON_OBJECT_START = '{';
+    private static final int FLAG_CONSUMER_ID = 1;
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public Serializer<MappedMetricData> serializer() {
+        return new Ser();
+    }
+
+    @Override
+    public Deserializer<MappedMetricData> deserializer() {
+        return new Deser();
+    }
+
+    public static class Ser implements Serializer<MappedMetricData> {
+
+        @Override
+        public void configure(Map<String, ?> configs, boolean isKey) {
+        }
+
+        @Override
+        public byte[] serialize(String topic, MappedMetricData mappedMetricData) {
+            if (mappedMetricData == null) {
+                return null;
+            }
+            if (mappedMetricData.getAnomalyResult() != null) {
+                throw new SerializationException("Anomaly results can't be serialized in the binary format");
+            }
+            val metricData = mappedMetricData.getMetricData();
+            val consumerId = mappedMetricData.getConsumerId();
+            val detectorUuid = mappedMetricData.getDetectorUuid();
+            val definition = encodeDefinition(metricData.getMetricDefinition());
+
+            val out = new Output(40 + definition.length);
+            out.write(FORMAT_VERSION);
+            out.write(consumerId == null ? 0 : FLAG_CONSUMER_ID);
+            out.writeLong(detectorUuid.getMostSignificantBits());
+            out.writeLong(detectorUuid.getLeastSignificantBits());
+            if (consumerId != null) {
+                out.writeString(consumerId);
+            }
+            out.writeLong(Double.doubleToLongBits(metricData.getValue()));
+            out.writeVarLong(metricData.getTimestamp());
+            out.writeVarInt(definition.length);
+            out.write(definition, 0, definition.length);
+            return out.toByteArray();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    public static class Deser implements Deserializer<MappedMetricData> {
+        private final MappedMetricDataJsonSerde.Deser jsonDeser = new MappedMetricDataJsonSerde.Deser();
+
+        @Override
+        public void configure(Map<String, ?> configs, boolean isKey) {
+        }
+
+        @Override
+        public MappedMetricData deserialize(String topic, byte[] data) {
+            if (data == null) {
+                return null;
+            }
+            if (data.length > 0 && data[0] == JSON_OBJECT_START) {
+                return jsonDeser.deserialize(topic, data);
+            }
+            try {
+                val in = ByteBuffer.wrap(data);
+                val version = in.get();
+                if (version != FORMAT_VERSION) {
+                    throw new SerializationException("Unsupported format version: " + version);
+                }
+                val flags = in.get();
+                val detectorUuid = new UUID(in.getLong(), in.getLong());
+                val consumerId = (flags & FLAG_CONSUMER_ID) != 0 ? readString(in) : null;
+                val value = in.getDouble();
+                val timestamp = readVarLong(in);
+                val definitionLength = readVarInt(in);
+                if (definitionLength > in.remaining()) {
+                    throw new SerializationException("Truncated metric definition");
+                }
+                val metricData = new LazyBinaryMetricData(data, in.position(), definitionLength, value, timestamp);
+                return new MappedMetricData(metricData, consumerId, detectorUuid);
+            } catch (RuntimeException e) {
+                // Returning null like the other deserializers, so that the record is skipped.
+                log.error("Deserialization error", e);
+                return null;
+            }
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static final class LazyBinaryMetricData extends LazyMetricData {
+        private final byte[] data;
+        private final int definitionOffset;
+        private final int definitionLength;
+
+        LazyBinaryMetricData(byte[] data, int definitionOffset, int definitionLength, double value, long timestamp) {
+            super(value, timestamp);
+            this.data = data;
+            this.definitionOffset = definitionOffset;
+            this.definitionLength = definitionLength;
+        }
+
+        @Override
+        MetricDefinition decodeMetricDefinition() {
+            return decodeDefinition(data, definitionOffset, definitionLength);
+        }
+    }
+
+    private static byte[] encodeDefinition(MetricDefinition definition) {
+        Map<String, Integer> strings = new LinkedHashMap<>();
+        val body = new Output(64);
+        body.writeVarInt(definition.getKey() == null ? 0 : indexOf(strings, definition.getKey()) + 1);
+        encodeTags(definition.getTags(), strings, body);
+        encodeTags(definition.getMeta(), strings, body);
+
+        val out = new Output(body.size() + 16 * strings.size());
+        out.writeVarInt(strings.size());
+        for (String string : strings.keySet()) {
+            out.writeString(string);
+        }
+        out.write(body.buffer(), 0, body.size());
+        return out.toByteArray();
+    }
+
+    private static void encodeTags(TagCollection tags, Map<String, Integer> strings, Output out) {
+        val kv = tags == null ? null : tags.getKv();
+        val v = tags == null ? null : tags.getV();
+        out.writeVarInt(kv == null ? 0 : kv.size());
+        if (kv != null) {
+            for (Map.Entry<String, String> tag : kv.entrySet()) {
+                out.writeVarInt(indexOf(strings, tag.getKey()));
+                out.writeVarInt(indexOf(strings, tag.getValue()));
+            }
+        }
+        out.writeVarInt(v == null ? 0 : v.size());
+        if (v != null) {
+            for (String value : v) {
+                out.writeVarInt(indexOf(strings, value));
+            }
+        }
+    }
+
+    private static int indexOf(Map<String, Integer> strings, String string) {
+        Integer index = strings.get(string);
+        if (index == null) {
+            index = strings.size();
+            strings.put(string, index);
+        }
+        return index;
+    }
+
+    /**
+     * Decodes a metric definition written by {@link Ser}.
+     */
+    static MetricDefinition decodeDefinition(byte[] data, int offset, int length) {
+        val in = ByteBuffer.wrap(data, offset, length);
+        val numStrings = readVarInt(in);
+        checkCount(numStrings, in);
+        List<String> strings = new ArrayList<>(numStrings);
+        for (int i = 0; i < numStrings; i++) {
+            strings.add(readString(in));
+        }
+        val keyIndex = readVarInt(in);
+        val key = keyIndex == 0 ? null : stringAt(strings, keyIndex - 1);
+        val tags = decodeTags(in, strings);
+        val meta = decodeTags(in, strings);
+        return new MetricDefinition(key, tags, meta);
+    }
+
+    private static TagCollection decodeTags(ByteBuffer in, List<String> strings) {
+        val numKv = readVarInt(in);
+        checkCount(numKv, in);
+        Map<String, String> kv = new HashMap<>(numKv * 2);
+        for (int i = 0; i < numKv; i++) {
+            kv.put(stringAt(strings, readVarInt(in)), stringAt(strings, readVarInt(in)));
+        }
+        val numV = readVarInt(in);
+        checkCount(numV, in);
+        Set<String> v = new HashSet<>(numV * 2);
+        for (int i = 0; i < numV; i++) {
+            v.add(stringAt(strings, readVarInt(in)));
+        }
+        return kv.isEmpty() && v.isEmpty() ? TagCollection.EMPTY : new TagCollection(kv, v);
+    }
+
+    private static String stringAt(List<String> strings, int index) {
+        if (index < 0 || index >= strings.size()) {
+            throw new SerializationException("Invalid string index: " + index);
+        }
+        return strings.get(index);
+    }
+
+    /**
+     * Every counted item takes at least one byte, so a larger count means corrupt data.
+     */
+    private static void checkCount(int count, ByteBuffer in) {
+        if (count < 0 || count > in.remaining()) {
+            throw new SerializationException("Invalid count: " + count);
+        }
+    }
+
+    private static String readString(ByteBuffer in) {
+        val length = readVarInt(in);
+        if (length < 0 || length > in.remaining()) {
+            throw new SerializationException("Invalid string length: " + length);
+        }
+        val string = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return string;
+    }
+
+    private static int readVarInt(ByteBuffer in) {
+        val value = readVarLong(in);
+        if (value > Integer.MAX_VALUE) {
+            throw new SerializationException("Varint out of range: " + value);
+        }
+        return (int) value;
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            val b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new SerializationException("Malformed varint");
+    }
+
+    /**
+     * Growable output buffer with varint support.
+     */
+    private static final class Output extends ByteArrayOutputStream {
+
+        Output(int size) {
+            super(size);
+        }
+
+        byte[] buffer() {
+            return buf;
+        }
+
+        void writeLong(long value) {
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                write((int) (value >>> shift));
+            }
+        }
+
+        void writeVarInt(int value) {
+            writeVarLong(value & 0xFFFFFFFFL);
+        }
+
+        void writeVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+
+        void writeString(String string) {
+            val bytes = string.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(bytes.length);
+            write(bytes, 0, bytes.length);
+        }
+    }
+}
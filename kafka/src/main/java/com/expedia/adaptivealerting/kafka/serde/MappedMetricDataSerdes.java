@@ -0,0 +1,53 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.kafka.serde;
+
+import com.expedia.adaptivealerting.anomdetect.detect.MappedMetricData;
+import lombok.experimental.UtilityClass;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serde;
+
+/**
+ * Picks the serde for mapped metric data by format name, as configured for the mapper and the detector manager.
+ */
+@UtilityClass
+public class MappedMetricDataSerdes {
+    public static final String JSON = "json";
+    public static final String BINARY = "binary";
+
+    /**
+     * @param format {@value #JSON} or {@value #BINARY}
+     * @return serde for the format
+     */
+    public static Serde<MappedMetricData> forFormat(String format) {
+        return BINARY.equals(checkFormat(format)) ? new MappedMetricDataBinarySerde() : new MappedMetricDataJsonSerde();
+    }
+
+    /**
+     * @param format {@value #JSON} or {@value #BINARY}
+     * @return deserializer class for the format, e.g. for a consumer's value.deserializer
+     */
+    public static Class<? extends Deserializer<MappedMetricData>> deserializerFor(String format) {
+        return BINARY.equals(checkFormat(format)) ? MappedMetricDataBinarySerde.Deser.class : MappedMetricDataJsonSerde.Deser.class;
+    }
+
+    private static String checkFormat(String format) {
+        if (!JSON.equals(format) && !BINARY.equals(format)) {
+            throw new IllegalArgumentException("Unknown mapped metric data format: " + format);
+        }
+        return format;
+    }
+}
@@ -0,0 +1,452 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.kafka.serde;
+
+import com.expedia.adaptivealerting.anomdetect.mapper.TagSetKey;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Streaming reader for metric data written by Metrictank's {@link com.expedia.metrics.metrictank.MessagePackSerializer}.
+ * <p>
+ * The reader walks the MessagePack map in place: it decodes the value, timestamp, org id and interval, and only notes
+ * where the name, unit, mtype and tags are, so that {@link LazyMetricTankMetricData} can decode them if asked. While
+ * walking the tags it also computes their {@link TagSetKey} straight from the bytes. It validates records the same way
+ * as the Metrictank serializer, so a record it accepts decodes to the same metric data.
+ * <p>
+ * A reader reuses its scratch buffers from one record to the next, so it isn't thread safe.
+ */
+final class MetricTankMessagePackReader {
+    private static final byte[] ID = bytes("Id");
+    private static final byte[] ORG_ID = bytes("OrgId");
+    private static final byte[] NAME = bytes("Name");
+    private static final byte[] INTERVAL = bytes("Interval");
+    private static final byte[] VALUE = bytes("Value");
+    private static final byte[] UNIT = bytes("Unit");
+    private static final byte[] TIME = bytes("Time");
+    private static final byte[] MTYPE = bytes("Mtype");
+    private static final byte[] TAGS = bytes("Tags");
+    private static final byte TAG_SEPARATOR = '=';
+
+    private final TagSetKey.Hasher hasher = TagSetKey.hasher();
+
+    // Key offset, key length, value offset and value length of each tag.
+    private int[] tags = new int[64];
+
+    private byte[] data;
+    private int pos;
+
+    // Offset and length of the last string read.
+    private int stringOffset;
+    private int stringLength;
+
+    /**
+     * Reads a serialized metric data.
+     *
+     * @param data serialized metric data
+     * @return metric data whose metric definition is decoded on first access
+     * @throws IOException if the record is malformed or misses a required field
+     */
+    LazyMetricTankMetricData read(byte[] data) throws IOException {
+        this.data = data;
+        this.pos = 0;
+        try {
+            return readMetricData();
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Unable to deserialize MetricData", e);
+        } finally {
+            this.data = null;
+        }
+    }
+
+    private LazyMetricTankMetricData readMetricData() throws IOException {
+        int orgId = 0;
+        int interval = 0;
+        double value = 0.0;
+        long time = 0L;
+        int nameOffset = 0;
+        int nameLength = 0;
+        int unitOffset = 0;
+        int unitLength = 0;
+        int mtypeOffset = 0;
+        int mtypeLength = 0;
+        int numTags = 0;
+        boolean distinctTagKeys = true;
+        hasher.reset();
+
+        for (int numFields = readMapHeader(); numFields > 0; numFields--) {
+            readString();
+            int fieldOffset = stringOffset;
+            int fieldLength = stringLength;
+            if (isField(ID, fieldOffset, fieldLength)) {
+                readString();
+            } else if (isField(ORG_ID, fieldOffset, fieldLength)) {
+                orgId = readInt();
+            } else if (isField(NAME, fieldOffset, fieldLength)) {
+                readString();
+                nameOffset = stringOffset;
+                nameLength = stringLength;
+            } else if (isField(INTERVAL, fieldOffset, fieldLength)) {
+                interval = readInt();
+            } else if (isField(VALUE, fieldOffset, fieldLength)) {
+                value = readDouble();
+            } else if (isField(UNIT, fieldOffset, fieldLength)) {
+                readString();
+                unitOffset = stringOffset;
+                unitLength = stringLength;
+            } else if (isField(TIME, fieldOffset, fieldLength)) {
+                time = readLong();
+            } else if (isField(MTYPE, fieldOffset, fieldLength)) {
+                readString();
+                mtypeOffset = stringOffset;
+                mtypeLength = stringLength;
+            } else if (isField(TAGS, fieldOffset, fieldLength)) {
+                // Like the serializer, a repeated field replaces the earlier one.
+                numTags = 0;
+                distinctTagKeys = true;
+                hasher.reset();
+                for (int numStrings = readArrayHeader(); numStrings > 0; numStrings--) {
+                    readString();
+                    distinctTagKeys &= addTag(numTags++);
+                }
+            } else {
+                skipValue();
+            }
+        }
+
+        throwIfMissing("OrgId", orgId == 0);
+        throwIfMissing("Name", nameLength == 0);
+        throwIfMissing("Interval", interval == 0);
+        throwIfMissing("Mtype", mtypeLength == 0);
+
+        int[] positions = {nameOffset, nameLength, unitOffset, unitLength, mtypeOffset, mtypeLength};
+        // With a repeated tag key the last value wins, which the hasher can't account for.
+        TagSetKey tagSetKey = distinctTagKeys ? hasher.build() : null;
+        return new LazyMetricTankMetricData(data, positions, Arrays.copyOf(tags, numTags * 4), orgId, interval,
+                tagSetKey, value, time);
+    }
+
+    /**
+     * Splits the last string read into a tag key and value, returning whether the key is distinct from the ones before.
+     */
+    private boolean addTag(int index) throws IOException {
+        int separator = -1;
+        for (int i = stringOffset; i < stringOffset + stringLength; i++) {
+            if (data[i] == TAG_SEPARATOR) {
+                separator = i;
+                break;
+            }
+        }
+        if (separator < 0) {
+            throw new IOException("Read a tag with no '=': "
+                    + new String(data, stringOffset, stringLength, StandardCharsets.UTF_8));
+        }
+
+        int base = index * 4;
+        if (base + 4 > tags.length) {
+            tags = Arrays.copyOf(tags, tags.length * 2);
+        }
+        int keyLength = separator - stringOffset;
+        int valueLength = stringOffset + stringLength - separator - 1;
+        tags[base] = stringOffset;
+        tags[base + 1] = keyLength;
+        tags[base + 2] = separator + 1;
+        tags[base + 3] = valueLength;
+        hasher.addTag(data, stringOffset, keyLength, separator + 1, valueLength);
+
+        for (int other = 0; other < base; other += 4) {
+            if (tags[other + 1] == keyLength && rangeEquals(tags[other], stringOffset, keyLength)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int readMapHeader() throws IOException {
+        int b = data[pos++] & 0xFF;
+        if (b >= 0x80 && b <= 0x8F) {
+            return b & 0x0F;
+        }
+        switch (b) {
+            case 0xDE:
+                return readUint16();
+            case 0xDF:
+                return readLength32();
+            default:
+                throw unexpected("map", b);
+        }
+    }
+
+    private int readArrayHeader() throws IOException {
+        int b = data[pos++] & 0xFF;
+        if (b >= 0x90 && b <= 0x9F) {
+            return b & 0x0F;
+        }
+        switch (b) {
+            case 0xDC:
+                return readUint16();
+            case 0xDD:
+                return readLength32();
+            default:
+                throw unexpected("array", b);
+        }
+    }
+
+    /**
+     * Reads a string or binary header and skips the payload, leaving its position in stringOffset and stringLength.
+     */
+    private void readString() throws IOException {
+        int b = data[pos++] & 0xFF;
+        int length;
+        if (b >= 0xA0 && b <= 0xBF) {
+            length = b & 0x1F;
+        } else {
+            switch (b) {
+                case 0xC4:
+                case 0xD9:
+                    length = data[pos++] & 0xFF;
+                    break;
+                case 0xC5:
+                case 0xDA:
+                    length = readUint16();
+                    break;
+                case 0xC6:
+                case 0xDB:
+                    length = readLength32();
+                    break;
+                default:
+                    throw unexpected("string", b);
+            }
+        }
+        stringOffset = pos;
+        stringLength = length;
+        skip(length);
+    }
+
+    private int readInt() throws IOException {
+        long value = readLong();
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new IOException("Integer overflow: " + value);
+        }
+        return (int) value;
+    }
+
+    private long readLong() throws IOException {
+        int b = data[pos++] & 0xFF;
+        if (b <= 0x7F) {
+            return b;
+        }
+        if (b >= 0xE0) {
+            return (byte) b;
+        }
+        switch (b) {
+            case 0xCC:
+                return data[pos++] & 0xFF;
+            case 0xCD:
+                return readUint16();
+            case 0xCE:
+                return readInt32() & 0xFFFFFFFFL;
+            case 0xCF:
+                long unsigned = readInt64();
+                if (unsigned < 0) {
+                    throw new IOException("Integer overflow: " + Long.toUnsignedString(unsigned));
+                }
+                return unsigned;
+            case 0xD0:
+                return data[pos++];
+            case 0xD1:
+                return (short) readUint16();
+            case 0xD2:
+                return readInt32();
+            case 0xD3:
+                return readInt64();
+            default:
+                throw unexpected("integer", b);
+        }
+    }
+
+    private double readDouble() throws IOException {
+        int b = data[pos++] & 0xFF;
+        switch (b) {
+            case 0xCA:
+                return Float.intBitsToFloat(readInt32());
+            case 0xCB:
+                return Double.longBitsToDouble(readInt64());
+            default:
+                throw unexpected("float", b);
+        }
+    }
+
+    private void skipValue() throws IOException {
+        for (int remaining = 1; remaining > 0; remaining--) {
+            int b = data[pos++] & 0xFF;
+            if (b <= 0x7F || b >= 0xE0 || (b >= 0xC0 && b <= 0xC3)) {
+                continue;
+            }
+            if (b >= 0x80 && b <= 0x8F) {
+                remaining += 2 * (b & 0x0F);
+            } else if (b >= 0x90 && b <= 0x9F) {
+                remaining += b & 0x0F;
+            } else if (b >= 0xA0 && b <= 0xBF) {
+                skip(b & 0x1F);
+            } else {
+                switch (b) {
+                    case 0xC4:
+                    case 0xD9:
+                        skip(data[pos++] & 0xFF);
+                        break;
+                    case 0xC5:
+                    case 0xDA:
+                        skip(readUint16());
+                        break;
+                    case 0xC6:
+                    case 0xDB:
+                        skip(readLength32());
+                        break;
+                    case 0xC7:
+                        skip((data[pos++] & 0xFF) + 1);
+                        break;
+                    case 0xC8:
+                        skip(readUint16() + 1);
+                        break;
+                    case 0xC9:
+                        skip(readLength32() + 1);
+                        break;
+                    case 0xCC:
+                    case 0xD0:
+                        skip(1);
+                        break;
+                    case 0xCD:
+                    case 0xD1:
+                        skip(2);
+                        break;
+                    case 0xCA:
+                    case 0xCE:
+                    case 0xD2:
+                        skip(4);
+                        break;
+                    case 0xCB:
+                    case 0xCF:
+                    case 0xD3:
+                        skip(8);
+                        break;
+                    case 0xD4:
+                        skip(2);
+                        break;
+                    case 0xD5:
+                        skip(3);
+                        break;
+                    case 0xD6:
+                        skip(5);
+                        break;
+                    case 0xD7:
+                        skip(9);
+                        break;
+                    case 0xD8:
+                        skip(17);
+                        break;
+                    case 0xDC:
+                        remaining += readUint16();
+                        break;
+                    case 0xDD:
+                        remaining += readLength32();
+                        break;
+                    case 0xDE:
+                        remaining += 2 * readUint16();
+                        break;
+                    case 0xDF:
+                        remaining += 2 * readLength32();
+                        break;
+                    default:
+                        throw unexpected("value", b);
+                }
+            }
+        }
+    }
+
+    private int readUint16() {
+        int value = ((data[pos] & 0xFF) << 8) | (data[pos + 1] & 0xFF);
+        pos += 2;
+        return value;
+    }
+
+    private int readInt32() {
+        int value = ((data[pos] & 0xFF) << 24)
+                | ((data[pos + 1] & 0xFF) << 16)
+                | ((data[pos + 2] & 0xFF) << 8)
+                | (data[pos + 3] & 0xFF);
+        pos += 4;
+        return value;
+    }
+
+    private long readInt64() {
+        long high = readInt32();
+        long low = readInt32() & 0xFFFFFFFFL;
+        return (high << 32) | low;
+    }
+
+    private int readLength32() throws IOException {
+        int length = readInt32();
+        if (length < 0) {
+            throw new IOException("Length overflow: " + (length & 0xFFFFFFFFL));
+        }
+        return length;
+    }
+
+    private void skip(int length) throws IOException {
+        if (length > data.length - pos) {
+            throw new IOException("Truncated MetricData");
+        }
+        pos += length;
+    }
+
+    private boolean isField(byte[] field, int offset, int length) {
+        if (field.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (data[offset + i] != field[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean rangeEquals(int offset1, int offset2, int length) {
+        for (int i = 0; i < length; i++) {
+            if (data[offset1 + i] != data[offset2 + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void throwIfMissing(String field, boolean missing) throws IOException {
+        if (missing) {
+            throw new IOException("Missing required field: " + field);
+        }
+    }
+
+    private static IOException unexpected(String expected, int formatByte) {
+        return new IOException("Expected " + expected + ", but got format 0x" + Integer.toHexString(formatByte));
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -19,6 +19,7 @@ import com.expedia.adaptivealerting.anomdetect.source.DefaultDetectorSource;
 import com.expedia.adaptivealerting.anomdetect.source.DetectorClient;
 import com.expedia.adaptivealerting.anomdetect.source.DetectorFactory;
 import com.expedia.adaptivealerting.anomdetect.source.DetectorSource;
+import com.expedia.adaptivealerting.anomdetect.util.HttpClientConfig;
 import com.expedia.adaptivealerting.anomdetect.util.HttpClientWrapper;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.typesafe.config.Config;
@@ -33,11 +34,18 @@ import lombok.val;
 @Slf4j
 public class DetectorUtil {
     private static final String CK_MODEL_SERVICE_URI_TEMPLATE = "model-service-base-uri";
+    private static final String CK_MODEL_SERVICE_HTTP_CLIENT = "model-service-http-client";
 
     public static DetectorSource buildDetectorSource(Config config) {
         val uriTemplate = config.getString(CK_MODEL_SERVICE_URI_TEMPLATE);
-        val client = new DetectorClient(new HttpClientWrapper(), uriTemplate, new ObjectMapper());
+        val client = new DetectorClient(buildHttpClient(config), uriTemplate, new ObjectMapper());
         val registry = new DetectorFactory();
         return new DefaultDetectorSource(client, registry);
     }
+
+    private static HttpClientWrapper buildHttpClient(Config config) {
+        val httpClientConfig = HttpClientConfig.from(config, CK_MODEL_SERVICE_HTTP_CLIENT);
+        log.info("Using modelservice HTTP client config: {}", httpClientConfig);
+        return new HttpClientWrapper(httpClientConfig);
+    }
 }
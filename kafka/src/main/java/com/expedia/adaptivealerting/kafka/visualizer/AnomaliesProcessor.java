@@ -25,7 +25,6 @@ import org.apache.kafka.clients.consumer.ConsumerRecords;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
 
 @Slf4j
 public class AnomaliesProcessor {
@@ -33,7 +32,10 @@ public class AnomaliesProcessor {
     public AnomaliesProcessor() {
     }
 
-    public List<AnomalyModel> processMetrics(ConsumerRecords<String, MappedMetricData> metricRecords, ExecutorService executorService) {
+    /**
+     * Builds the anomalies to index from the polled records, skipping normal results.
+     */
+    public List<AnomalyModel> processMetrics(ConsumerRecords<String, MappedMetricData> metricRecords) {
 
         List<AnomalyModel> anomalyModels = new ArrayList();
         for (ConsumerRecord<String, MappedMetricData> consumerRecord : metricRecords) {
@@ -63,11 +65,6 @@ public class AnomaliesProcessor {
                 }
             }
         }
-        if (anomalyModels.size() > 0) {
-            ElasticSearchBulkService elasticSearchBulkService = new ElasticSearchBulkService(anomalyModels);
-            executorService.submit(elasticSearchBulkService);
-            log.info("sending anomaly records to elasticsearch: {}", anomalyModels.size());
-        }
         return anomalyModels;
     }
 }
@@ -17,42 +17,65 @@
 package com.expedia.adaptivealerting.kafka.visualizer;
 
 import com.expedia.adaptivealerting.anomdetect.detect.MappedMetricData;
+import com.expedia.adaptivealerting.kafka.PendingOffsets;
 import com.typesafe.config.Config;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
 import org.apache.kafka.common.errors.WakeupException;
 import org.msgpack.core.annotations.VisibleForTesting;
 
+import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
-
+import java.util.Set;
 
+/**
+ * Consumes anomalies and indexes them into Elasticsearch with a shared {@link ElasticSearchBulkService}.
+ * <p>
+ * Offsets are committed by hand once all the anomalies polled before them have been acknowledged by Elasticsearch. If a
+ * bulk request fails, the consumer seeks back to the first uncommitted offsets and indexes the anomalies again.
+ */
 @Slf4j
 public class AnomalyConsumer {
 
     private KafkaConsumer<String, MappedMetricData> kafkaConsumer;
     private static String TOPIC = "topic";
     private static String METRIC_CONSUMER = "metric-consumer";
+    private static String BULK_PROCESSOR = "bulk-processor";
     private static long POLL_INTERVAL = 1000L;
     private AnomaliesProcessor anomaliesProcessor;
-    private ExecutorService executorService;
+    private ElasticSearchBulkService bulkService;
+    private final PendingOffsets pendingOffsets = new PendingOffsets();
     public Config consumerConfig = VisualizerUtility.getConfig(METRIC_CONSUMER);
     public Properties metricProps = VisualizerUtility.getMetricConsumerProps(consumerConfig);
 
     public AnomalyConsumer() {
+        // Offsets are committed once their anomalies are indexed.
+        metricProps.setProperty(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
         kafkaConsumer = new KafkaConsumer(metricProps);
         anomaliesProcessor = new AnomaliesProcessor();
-        executorService = new ThreadPoolExecutor(10, 50, 0L, TimeUnit.MILLISECONDS,
-                new LinkedBlockingQueue<Runnable>());
+        bulkService = new ElasticSearchBulkService(new ElasticSearchClient(),
+                VisualizerUtility.getConfig(BULK_PROCESSOR));
     }
 
     public void listen() {
-        kafkaConsumer.subscribe(Collections.singletonList(consumerConfig.getString(TOPIC)));
+        kafkaConsumer.subscribe(Collections.singletonList(consumerConfig.getString(TOPIC)), new ConsumerRebalanceListener() {
+            @Override
+            public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+                commitBeforeRebalance(kafkaConsumer);
+            }
+
+            @Override
+            public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+            }
+        });
         boolean continueProcessing = true;
         // See Kafka: The Definitive Guide, pp. 86 ff.
         while (continueProcessing) {
@@ -64,9 +87,16 @@ public class AnomalyConsumer {
         try {
             ConsumerRecords<String, MappedMetricData> metricRecords = kafkaConsumer.poll(POLL_INTERVAL);
             log.trace("Read {} metric records from topic={}", metricRecords.count(), consumerConfig.getString(TOPIC));
-            anomaliesProcessor.processMetrics(metricRecords, executorService);
+            PendingOffsets.Batch batch = pendingOffsets.startBatch(metricRecords);
+            try {
+                List<AnomalyModel> anomalyModels = anomaliesProcessor.processMetrics(metricRecords);
+                bulkService.index(anomalyModels, batch);
+            } finally {
+                batch.close();
+            }
+            commitCompleted(kafkaConsumer, false);
         } catch (WakeupException e) {
-            kafkaConsumer.close();
+            shutdown(kafkaConsumer);
             continueProcessing = false;
         } catch (Exception e) {
             log.error(e.getLocalizedMessage());
@@ -76,14 +106,72 @@ public class AnomalyConsumer {
         return continueProcessing;
     }
 
+    /**
+     * Commits the offsets of batches whose anomalies have all been indexed, or rewinds if a bulk request has failed.
+     */
+    private void commitCompleted(KafkaConsumer<?, ?> kafkaConsumer, boolean sync) {
+        if (pendingOffsets.hasFailure()) {
+            rewind(kafkaConsumer);
+            return;
+        }
+        Map<TopicPartition, OffsetAndMetadata> offsets = pendingOffsets.takeCompleted();
+        if (offsets.isEmpty()) {
+            return;
+        }
+        if (sync) {
+            kafkaConsumer.commitSync(offsets);
+        } else {
+            kafkaConsumer.commitAsync(offsets, (committedOffsets, exception) -> {
+                if (exception != null) {
+                    log.warn("Error committing offsets={}", committedOffsets, exception);
+                }
+            });
+        }
+    }
+
+    /**
+     * Seeks back to the first uncommitted offsets, so that all anomalies that haven't been indexed are consumed again.
+     */
+    private void rewind(KafkaConsumer<?, ?> kafkaConsumer) {
+        Set<TopicPartition> assignment = kafkaConsumer.assignment();
+        Map<TopicPartition, Long> offsets = pendingOffsets.rewind();
+        offsets.forEach((partition, offset) -> {
+            if (assignment.contains(partition)) {
+                kafkaConsumer.seek(partition, offset);
+            }
+        });
+        log.warn("Rewound to the first uncommitted offsets={}", offsets);
+    }
+
+    /**
+     * Sends the buffered anomalies and commits what has been indexed before partitions are reassigned. Batches still in
+     * flight are dropped: the partitions' new owners consume them again from the committed offsets.
+     */
+    private void commitBeforeRebalance(KafkaConsumer<?, ?> kafkaConsumer) {
+        bulkService.flush();
+        commitCompleted(kafkaConsumer, true);
+        pendingOffsets.rewind();
+    }
+
+    private void shutdown(KafkaConsumer<?, ?> kafkaConsumer) {
+        try {
+            bulkService.close();
+            commitCompleted(kafkaConsumer, true);
+        } catch (Exception e) {
+            log.error("Error committing offsets on shutdown", e);
+        } finally {
+            kafkaConsumer.close();
+        }
+    }
+
     @VisibleForTesting
     public void setKafkaConsumer(KafkaConsumer<String, MappedMetricData> kafkaConsumer) {
         this.kafkaConsumer = kafkaConsumer;
     }
 
     @VisibleForTesting
-    public void setExecutorService(ExecutorService executorService) {
-        this.executorService = executorService;
+    public void setBulkService(ElasticSearchBulkService bulkService) {
+        this.bulkService = bulkService;
     }
 
     public AnomaliesProcessor getAnomaliesProcessor() {
@@ -16,55 +16,127 @@
 
 package com.expedia.adaptivealerting.kafka.visualizer;
 
+import com.expedia.adaptivealerting.kafka.PendingOffsets;
+import com.typesafe.config.Config;
 import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.bulk.BackoffPolicy;
+import org.elasticsearch.action.bulk.BulkProcessor;
 import org.elasticsearch.action.bulk.BulkRequest;
 import org.elasticsearch.action.bulk.BulkResponse;
 import org.elasticsearch.action.index.IndexRequest;
-
-import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.xcontent.XContentType;
-import org.msgpack.core.annotations.VisibleForTesting;
 
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Indexes anomalies into Elasticsearch through a single long-lived {@link BulkProcessor}, which flushes whenever enough
+ * anomalies or bytes are buffered, or the flush interval has passed.
+ * <p>
+ * At most {@code concurrent-requests} bulk requests are in flight. Beyond that, {@link #index(List, PendingOffsets.Batch)}
+ * blocks until one completes, which holds back the consumer's poll loop instead of buffering without bound. Rejected
+ * requests are retried with exponential backoff.
+ * <p>
+ * Each indexed anomaly counts as a send of its polled batch, completed when its bulk request is acknowledged, so that
+ * the batch's offsets are only committed once its anomalies are in Elasticsearch. Anomalies Elasticsearch fails to
+ * index are logged and dropped, as indexing them again would fail the same way. Bulk requests that fail outright fail
+ * their batches.
+ */
 @Slf4j
-public class ElasticSearchBulkService implements Runnable{
+public class ElasticSearchBulkService implements Closeable {
 
     private static String INDEX = "anomalies";
     private static String TYPE = "doc";
 
-    private List<AnomalyModel> anomalyModels;
-    private ElasticSearchClient elasticSearchClient;
-    private BulkResponse bulkResponse;
+    private static String BULK_ACTIONS = "bulk-actions";
+    private static String BULK_SIZE_MB = "bulk-size-mb";
+    private static String FLUSH_INTERVAL_MS = "flush-interval-ms";
+    private static String CONCURRENT_REQUESTS = "concurrent-requests";
+    private static String BACKOFF_DELAY_MS = "backoff-delay-ms";
+    private static String BACKOFF_MAX_RETRIES = "backoff-max-retries";
+    private static String CLOSE_TIMEOUT_MS = "close-timeout-ms";
+
+    private static int DEFAULT_BULK_ACTIONS = 1000;
+    private static long DEFAULT_BULK_SIZE_MB = 5L;
+    private static long DEFAULT_FLUSH_INTERVAL_MS = 5000L;
+    private static int DEFAULT_CONCURRENT_REQUESTS = 2;
+    private static long DEFAULT_BACKOFF_DELAY_MS = 100L;
+    private static int DEFAULT_BACKOFF_MAX_RETRIES = 3;
+    private static long DEFAULT_CLOSE_TIMEOUT_MS = 30000L;
+
+    private final ElasticSearchClient elasticSearchClient;
+    private final BulkProcessor bulkProcessor;
+    private final long closeTimeoutMs;
 
+    // Batch of each anomaly that's waiting to be acknowledged.
+    private final Map<DocWriteRequest<?>, PendingOffsets.Batch> pendingRequests =
+            Collections.synchronizedMap(new IdentityHashMap<>());
 
-    public ElasticSearchBulkService(List<AnomalyModel> anomalyModels) {
-        this.anomalyModels = anomalyModels;
-        this.elasticSearchClient = new ElasticSearchClient();
+    public ElasticSearchBulkService(ElasticSearchClient elasticSearchClient, Config bulkConfig) {
+        this.elasticSearchClient = elasticSearchClient;
+        this.closeTimeoutMs = getLong(bulkConfig, CLOSE_TIMEOUT_MS, DEFAULT_CLOSE_TIMEOUT_MS);
+        this.bulkProcessor = BulkProcessor.builder(elasticSearchClient::bulkAsync, new BulkListener())
+                .setBulkActions(getInt(bulkConfig, BULK_ACTIONS, DEFAULT_BULK_ACTIONS))
+                .setBulkSize(new ByteSizeValue(getLong(bulkConfig, BULK_SIZE_MB, DEFAULT_BULK_SIZE_MB), ByteSizeUnit.MB))
+                .setFlushInterval(TimeValue.timeValueMillis(
+                        getLong(bulkConfig, FLUSH_INTERVAL_MS, DEFAULT_FLUSH_INTERVAL_MS)))
+                .setConcurrentRequests(getInt(bulkConfig, CONCURRENT_REQUESTS, DEFAULT_CONCURRENT_REQUESTS))
+                .setBackoffPolicy(BackoffPolicy.exponentialBackoff(
+                        TimeValue.timeValueMillis(getLong(bulkConfig, BACKOFF_DELAY_MS, DEFAULT_BACKOFF_DELAY_MS)),
+                        getInt(bulkConfig, BACKOFF_MAX_RETRIES, DEFAULT_BACKOFF_MAX_RETRIES)))
+                .build();
     }
 
-    private void execute() {
-        BulkRequest bulkRequest = buildBulkRequest(this.anomalyModels);
-        try {
-            bulkResponse = elasticSearchClient.bulk(bulkRequest, RequestOptions.DEFAULT);
-            if (bulkResponse.hasFailures()) {
-                log.error(bulkResponse.buildFailureMessage());
+    /**
+     * Adds the anomalies to the bulk processor, blocking while the maximum number of bulk requests are in flight.
+     *
+     * @param anomalyModels anomalies to index
+     * @param batch         polled batch the anomalies come from
+     */
+    public void index(List<AnomalyModel> anomalyModels, PendingOffsets.Batch batch) {
+        for (AnomalyModel anomalyModel : anomalyModels) {
+            IndexRequest request = buildIndexRequest(VisualizerUtility.convertToJson(anomalyModel));
+            batch.sendStarted();
+            pendingRequests.put(request, batch);
+            try {
+                bulkProcessor.add(request);
+            } catch (RuntimeException e) {
+                pendingRequests.remove(request);
+                batch.sendCompleted(e);
+                throw e;
             }
-        } catch (Exception e) {
-            e.printStackTrace();
-            log.error(e.getMessage(),e);
-        } finally {
-            elasticSearchClient.close();
         }
     }
 
-    private BulkRequest buildBulkRequest(List<AnomalyModel> anomalyModels){
-        BulkRequest bulkRequest = new BulkRequest();
-        for (AnomalyModel anomalyModel : anomalyModels) {
-            String json = VisualizerUtility.convertToJson(anomalyModel);
-            bulkRequest.add(buildIndexRequest(json));
+    /**
+     * Sends the buffered anomalies without waiting for the flush interval.
+     */
+    public void flush() {
+        bulkProcessor.flush();
+    }
+
+    /**
+     * Sends the buffered anomalies and waits for the bulk requests in flight, then closes the client.
+     */
+    @Override
+    public void close() {
+        try {
+            if (!bulkProcessor.awaitClose(closeTimeoutMs, TimeUnit.MILLISECONDS)) {
+                log.warn("Timed out waiting for bulk requests to complete");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            elasticSearchClient.close();
         }
-        return bulkRequest;
     }
 
     private IndexRequest buildIndexRequest(String json) {
@@ -73,16 +145,42 @@ public class ElasticSearchBulkService implements Runnable{
         return request;
     }
 
-    public void run(){
-        execute();
+    private void completeAll(BulkRequest bulkRequest, Exception exception) {
+        for (DocWriteRequest<?> request : bulkRequest.requests()) {
+            PendingOffsets.Batch batch = pendingRequests.remove(request);
+            if (batch != null) {
+                batch.sendCompleted(exception);
+            }
+        }
     }
 
-    @VisibleForTesting
-    public void setElasticSearchClient(ElasticSearchClient elasticSearchClient) {
-        this.elasticSearchClient = elasticSearchClient;
+    private static int getInt(Config config, String path, int defaultValue) {
+        return config.hasPath(path) ? config.getInt(path) : defaultValue;
+    }
+
+    private static long getLong(Config config, String path, long defaultValue) {
+        return config.hasPath(path) ? config.getLong(path) : defaultValue;
     }
 
-    public ElasticSearchClient getElasticSearchClient() {
-        return elasticSearchClient;
+    private class BulkListener implements BulkProcessor.Listener {
+
+        @Override
+        public void beforeBulk(long executionId, BulkRequest request) {
+            log.info("sending anomaly records to elasticsearch: {}", request.numberOfActions());
+        }
+
+        @Override
+        public void afterBulk(long executionId, BulkRequest request, BulkResponse response) {
+            if (response.hasFailures()) {
+                log.error(response.buildFailureMessage());
+            }
+            completeAll(request, null);
+        }
+
+        @Override
+        public void afterBulk(long executionId, BulkRequest request, Throwable failure) {
+            log.error("Error indexing {} anomaly records", request.numberOfActions(), failure);
+            completeAll(request, failure instanceof Exception ? (Exception) failure : new RuntimeException(failure));
+        }
     }
 }
@@ -18,6 +18,7 @@ package com.expedia.adaptivealerting.kafka.visualizer;
 import com.typesafe.config.Config;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.http.HttpHost;
+import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.bulk.BulkRequest;
 import org.elasticsearch.action.bulk.BulkResponse;
 import org.elasticsearch.client.RequestOptions;
@@ -47,6 +48,10 @@ public class ElasticSearchClient {
         return client.bulk(bulkRequest, requestOptions);
     }
 
+    public void bulkAsync(BulkRequest bulkRequest, ActionListener<BulkResponse> listener) {
+        client.bulkAsync(bulkRequest, RequestOptions.DEFAULT, listener);
+    }
+
     protected RestHighLevelClient restClientBuilder(Config elasticSearchConfig) {
         RestHighLevelClient client = null;
         try {
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.kafka;
+
+import lombok.val;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DetectorWorkerPoolTest {
+    private static final int NUM_LANES = 4;
+
+    private DetectorWorkerPool poolUnderTest;
+
+    @Before
+    public void setUp() {
+        this.poolUnderTest = new DetectorWorkerPool(NUM_LANES);
+    }
+
+    @After
+    public void tearDown() {
+        poolUnderTest.close();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructor_illegalNumLanes() {
+        new DetectorWorkerPool(0);
+    }
+
+    @Test
+    public void testProcessAll_keepsOrderPerDetector() {
+        List<Record> records = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            for (int d = 0; d < 20; d++) {
+                records.add(new Record(new UUID(0L, d), i));
+            }
+        }
+        Map<UUID, List<Integer>> seen = new ConcurrentHashMap<>();
+        Map<UUID, Set<String>> threads = new ConcurrentHashMap<>();
+
+        poolUnderTest.processAll(records, Record::getDetectorUuid, record -> {
+            seen.computeIfAbsent(record.getDetectorUuid(), uuid -> Collections.synchronizedList(new ArrayList<>()))
+                    .add(record.getSequence());
+            threads.computeIfAbsent(record.getDetectorUuid(), uuid -> ConcurrentHashMap.newKeySet())
+                    .add(Thread.currentThread().getName());
+        });
+
+        assertEquals(20, seen.size());
+        for (val entry : seen.entrySet()) {
+            val sequences = entry.getValue();
+            assertEquals(1000, sequences.size());
+            for (int i = 0; i < sequences.size(); i++) {
+                assertEquals(i, (int) sequences.get(i));
+            }
+            assertEquals(1, threads.get(entry.getKey()).size());
+        }
+    }
+
+    @Test
+    public void testProcessAll_runsLanesInParallel() {
+        // Each lane waits for all the others to start, so this only finishes if the lanes run at the same time.
+        val latch = new CountDownLatch(NUM_LANES);
+        List<Record> records = new ArrayList<>();
+        for (int lane = 0; lane < NUM_LANES; lane++) {
+            records.add(new Record(uuidForLane(lane), 0));
+        }
+
+        poolUnderTest.processAll(records, Record::getDetectorUuid, record -> {
+            latch.countDown();
+            try {
+                assertTrue(latch.await(5, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    @Test
+    public void testProcessAll_waitsForAllLanesBeforeFailing() {
+        val failingUuid = uuidForLane(0);
+        val processed = new AtomicInteger();
+        List<Record> records = new ArrayList<>();
+        records.add(new Record(failingUuid, 0));
+        records.add(new Record(failingUuid, 1));
+        for (int i = 0; i < 100; i++) {
+            records.add(new Record(uuidForLane(1), i));
+        }
+
+        try {
+            poolUnderTest.processAll(records, Record::getDetectorUuid, record -> {
+                if (failingUuid.equals(record.getDetectorUuid())) {
+                    throw new IllegalStateException("Failed");
+                }
+                processed.incrementAndGet();
+            });
+            fail("Expected RuntimeException");
+        } catch (RuntimeException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        assertEquals(100, processed.get());
+    }
+
+    @Test
+    public void testProcessAll_nullDetectorUuid() {
+        val processed = new AtomicInteger();
+        poolUnderTest.processAll(Collections.singletonList(new Record(null, 0)), Record::getDetectorUuid,
+                record -> processed.incrementAndGet());
+        assertEquals(1, processed.get());
+    }
+
+    private UUID uuidForLane(int lane) {
+        for (long i = 0; ; i++) {
+            val uuid = new UUID(lane, i);
+            if (poolUnderTest.laneFor(uuid) == lane) {
+                return uuid;
+            }
+        }
+    }
+
+    private static final class Record {
+        private final UUID detectorUuid;
+        private final int sequence;
+
+        Record(UUID detectorUuid, int sequence) {
+            this.detectorUuid = detectorUuid;
+            this.sequence = sequence;
+        }
+
+        UUID getDetectorUuid() {
+            return detectorUuid;
+        }
+
+        int getSequence() {
+            return sequence;
+        }
+    }
+}
@@ -19,12 +19,16 @@ import com.expedia.adaptivealerting.anomdetect.util.JmxReporterFactory;
 import com.expedia.adaptivealerting.anomdetect.detect.MappedMetricData;
 import com.expedia.adaptivealerting.anomdetect.mapper.Detector;
 import com.expedia.adaptivealerting.anomdetect.mapper.DetectorMapper;
+import com.expedia.adaptivealerting.kafka.serde.MappedMetricDataBinarySerde;
 import com.expedia.adaptivealerting.kafka.serde.MappedMetricDataJsonSerde;
 import com.expedia.adaptivealerting.kafka.serde.MetricDataJsonSerde;
 import com.expedia.adaptivealerting.kafka.util.TestObjectMother;
 import com.expedia.metrics.MetricData;
 import com.expedia.metrics.MetricDefinition;
+import com.expedia.metrics.TagCollection;
+import com.google.common.collect.ImmutableMap;
 import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
 import org.apache.kafka.common.serialization.Deserializer;
@@ -43,7 +47,12 @@ import java.util.Collections;
 import java.util.UUID;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -110,6 +119,25 @@ public final class KafkaAnomalyDetectorMapperTest {
         logAndFailDriver.close();
     }
 
+    @Test
+    public void testMetricDataToBinaryMappedMetricData() {
+        when(tsConfig.hasPath("mapped-metric-data-format")).thenReturn(true);
+        when(tsConfig.getString("mapped-metric-data-format")).thenReturn("binary");
+        initLogAndFail();
+        when(mapper.getDetectorsFromCache(any(MetricDefinition.class)))
+                .thenReturn(Collections.singletonList(detector));
+
+        logAndFailDriver.pipeInput(metricDataFactory.create(INPUT_TOPIC, KAFKA_KEY, metricData));
+
+        val outputRecord = logAndFailDriver.readOutput(DEFAULT_OUTPUT_TOPIC, stringDeser, new MappedMetricDataBinarySerde.Deser());
+        val outputValue = outputRecord.value();
+        assertEquals(mappedMetricData.getDetectorUuid().toString(), outputRecord.key());
+        assertEquals(mappedMetricData.getDetectorUuid(), outputValue.getDetectorUuid());
+        assertEquals(mappedMetricData.getConsumerId(), outputValue.getConsumerId());
+        assertTrue(outputValue.getMetricData().equals(metricData));
+        logAndFailDriver.close();
+    }
+
     @Test
     public void testMetricDataToExternalDetectorMappedMetricData() {
         initLogAndFail();
@@ -193,6 +221,57 @@ public final class KafkaAnomalyDetectorMapperTest {
         logAndContinueDriver.close();
     }
 
+    @Test
+    public void shouldLookUpBufferedMetricsOnceLingerExpires() {
+        when(mapper.optimalBatchSize()).thenReturn(80);
+        initLogAndContinue();
+
+        logAndContinueDriver.pipeInput(metricDataFactory.create(INPUT_TOPIC, "key-1", metricData));
+        logAndContinueDriver.pipeInput(metricDataFactory.create(INPUT_TOPIC, "key-2", metricData));
+        logAndContinueDriver.advanceWallClockTime(200);
+        verify(mapper, never()).isSuccessfulDetectorMappingLookup(anyList());
+
+        when(mapper.isSuccessfulDetectorMappingLookup(anyList())).thenReturn(true);
+        when(mapper.getDetectorsFromCache(any(MetricDefinition.class)))
+                .thenReturn(Collections.singletonList(detector));
+        logAndContinueDriver.advanceWallClockTime(1000);
+
+        // Both records have the same tags, so they're looked up once.
+        verify(mapper).isSuccessfulDetectorMappingLookup(
+                Collections.singletonList(metricData.getMetricDefinition().getTags().getKv()));
+        val outputKafkaKey = detector.getUuid().toString();
+        OutputVerifier.compareKeyValue(logAndContinueDriver.readOutput(DEFAULT_OUTPUT_TOPIC, stringDeser, mmdDeser), outputKafkaKey, mappedMetricData);
+        OutputVerifier.compareKeyValue(logAndContinueDriver.readOutput(DEFAULT_OUTPUT_TOPIC, stringDeser, mmdDeser), outputKafkaKey, mappedMetricData);
+        kvStore = logAndContinueDriver.getKeyValueStore(STATE_STORE_NAME);
+        assertEquals(0, kvStore.approximateNumEntries());
+        logAndContinueDriver.close();
+    }
+
+    @Test
+    public void shouldBoundLookupsPerFlush() {
+        when(tsConfig.hasPath("detector-mapping-batch")).thenReturn(true);
+        when(tsConfig.getConfig("detector-mapping-batch")).thenReturn(ConfigFactory.parseMap(ImmutableMap.of(
+                "max-batch-size", 1,
+                "max-linger-ms", 0,
+                "max-concurrent-lookups", 2)));
+        when(mapper.isSuccessfulDetectorMappingLookup(anyList())).thenReturn(true);
+        initLogAndContinue();
+
+        for (int i = 0; i < 3; i++) {
+            val metricDef = new MetricDefinition(new TagCollection(ImmutableMap.of("name", "metric-" + i)));
+            logAndContinueDriver.pipeInput(metricDataFactory.create(INPUT_TOPIC, "key-" + i, TestObjectMother.metricData(metricDef, 1.0)));
+        }
+        kvStore = logAndContinueDriver.getKeyValueStore(STATE_STORE_NAME);
+
+        logAndContinueDriver.advanceWallClockTime(200);
+        verify(mapper, times(2)).isSuccessfulDetectorMappingLookup(anyList());
+        assertEquals(1, kvStore.approximateNumEntries());
+
+        logAndContinueDriver.advanceWallClockTime(200);
+        verify(mapper, times(3)).isSuccessfulDetectorMappingLookup(anyList());
+        assertEquals(0, kvStore.approximateNumEntries());
+        logAndContinueDriver.close();
+    }
 
     private void initConfig() {
         when(saConfig.getTypesafeConfig()).thenReturn(tsConfig);
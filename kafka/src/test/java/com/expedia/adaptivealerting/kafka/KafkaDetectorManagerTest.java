@@ -15,11 +15,17 @@
  */
 package com.expedia.adaptivealerting.kafka;
 
+import com.codahale.metrics.MetricRegistry;
 import com.expedia.adaptivealerting.anomdetect.DetectorManager;
+import com.expedia.adaptivealerting.anomdetect.detect.DetectorResult;
 import com.expedia.adaptivealerting.anomdetect.detect.MappedMetricData;
 import com.expedia.adaptivealerting.anomdetect.detect.breakout.BreakoutDetectorResult;
 import com.expedia.adaptivealerting.anomdetect.detect.breakout.algo.edmx.EdmxDetectorResult;
 import com.expedia.adaptivealerting.anomdetect.detect.outlier.OutlierDetectorResult;
+import com.expedia.adaptivealerting.anomdetect.instrument.PipelineInstruments;
+import com.expedia.adaptivealerting.anomdetect.instrument.Stage;
+import com.expedia.adaptivealerting.anomdetect.source.DetectorException;
+import com.expedia.adaptivealerting.kafka.serde.MappedMetricDataJsonSerde;
 import com.expedia.adaptivealerting.kafka.util.TestObjectMother;
 import com.expedia.metrics.jackson.MetricsJavaModule;
 import com.fasterxml.jackson.databind.DeserializationFeature;
@@ -28,20 +34,46 @@ import com.fasterxml.jackson.databind.SerializationFeature;
 import com.github.charithe.kafka.EphemeralKafkaBroker;
 import com.github.charithe.kafka.KafkaJunitRule;
 import com.typesafe.config.ConfigFactory;
+import com.typesafe.config.ConfigValueFactory;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
 import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.MockProducer;
 import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.TimeoutException;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.apache.kafka.common.utils.Utils;
 import org.junit.Before;
 import org.junit.ClassRule;
 import org.junit.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @Slf4j
@@ -64,6 +96,8 @@ public class KafkaDetectorManagerTest {
     private static final int NUM_OUTLIER_METRICS = 10;
     private static final int NUM_BREAKOUT_METRICS = 5;
     private static final long THREAD_JOIN_MILLIS = 5000L;
+    private static final TopicPartition METRIC_PARTITION = new TopicPartition(METRIC_TOPIC, 0);
+    private static final String CONSUMER_GROUP_ID = "ad-manager";
 
     @ClassRule
     public static KafkaJunitRule kafka = new KafkaJunitRule(EphemeralKafkaBroker.create()).waitForStartup();
@@ -112,6 +146,16 @@ public class KafkaDetectorManagerTest {
         assertEquals(OUTLIER_TOPIC, manager.getOutlierTopic());
         assertEquals(BREAKOUT_TOPIC, manager.getBreakoutTopic());
         assertEquals(TRACING_ENABLED, manager.getTracingEnabled());
+        assertNull(manager.getWorkerPool());
+    }
+
+    @Test
+    public void testBuildManager_workerThreads() {
+        val config = ConfigFactory.load("detector-manager.conf")
+                .withValue("detector-worker-threads", ConfigValueFactory.fromAnyRef(4));
+        val manager = KafkaDetectorManager.buildManager(config);
+        assertNotNull(manager.getWorkerPool());
+        assertEquals(4, manager.getWorkerPool().getNumLanes());
     }
 
     @Test
@@ -146,6 +190,235 @@ public class KafkaDetectorManagerTest {
         }
     }
 
+    @Test
+    public void testRun_commitsOffsetsOnceAnomaliesAreAcknowledged() throws Exception {
+        val metricConsumer = new MockConsumer<String, MappedMetricData>(OffsetResetStrategy.EARLIEST);
+        val anomalyProducer = mockAnomalyProducer(false);
+        val metricRegistry = new MetricRegistry();
+        val manager = mockedManager(metricConsumer, anomalyProducer, new DetectorPipelineConfig(2, 10, null, null), metricRegistry);
+        val noDetectorMMD = new MappedMetricData(TestObjectMother.metricData(), UUID.randomUUID());
+        scheduleRecords(metricConsumer, outlierMMD, noDetectorMMD, breakoutMMD);
+
+        val managerThread = new Thread(manager);
+        managerThread.start();
+
+        // The metric without a detector result produces nothing.
+        awaitTrue(() -> anomalyProducer.history().size() == 2);
+        assertNull(metricConsumer.committed(METRIC_PARTITION));
+
+        anomalyProducer.completeNext();
+        anomalyProducer.completeNext();
+        awaitTrue(() -> metricConsumer.committed(METRIC_PARTITION) != null);
+        assertEquals(3L, metricConsumer.committed(METRIC_PARTITION).offset());
+        assertEquals(3, metricRegistry.meter("ad-manager.metrics.consumed").getCount());
+        assertEquals(2, metricRegistry.meter("ad-manager.anomalies.sent").getCount());
+        assertEquals(2, detectorManager.getInstruments().snapshot().get(Stage.PRODUCE.getLabel()).getCount());
+
+        metricConsumer.wakeup();
+        managerThread.join(THREAD_JOIN_MILLIS);
+        assertTrue(anomalyProducer.closed());
+    }
+
+    @Test
+    public void testRun_rewindsWhenSendFails() throws Exception {
+        val metricConsumer = new MockConsumer<String, MappedMetricData>(OffsetResetStrategy.EARLIEST);
+        val anomalyProducer = mockAnomalyProducer(false);
+        val metricRegistry = new MetricRegistry();
+        val manager = mockedManager(metricConsumer, anomalyProducer, new DetectorPipelineConfig(), metricRegistry);
+        scheduleRecords(metricConsumer, outlierMMD, breakoutMMD);
+
+        val managerThread = new Thread(manager);
+        managerThread.start();
+
+        awaitTrue(() -> anomalyProducer.history().size() == 2);
+        anomalyProducer.errorNext(new TimeoutException("Timed out"));
+        anomalyProducer.completeNext();
+        awaitTrue(() -> metricRegistry.meter("ad-manager.rewinds").getCount() == 1);
+        assertEquals(0L, metricConsumer.position(METRIC_PARTITION));
+        assertNull(metricConsumer.committed(METRIC_PARTITION));
+        assertEquals(1, metricRegistry.meter("ad-manager.anomalies.send-failures").getCount());
+
+        metricConsumer.wakeup();
+        managerThread.join(THREAD_JOIN_MILLIS);
+    }
+
+    @Test
+    public void testRun_holdsOffsetsOfParkedMetricsUntilReplayed() throws Exception {
+        val metricConsumer = new MockConsumer<String, MappedMetricData>(OffsetResetStrategy.EARLIEST);
+        val anomalyProducer = mockAnomalyProducer(true);
+        val manager = mockedManager(metricConsumer, anomalyProducer, new DetectorPipelineConfig(), new MetricRegistry());
+        val loaded = new AtomicBoolean();
+        when(detectorManager.detect(outlierMMD)).thenReturn(null);
+        when(detectorManager.isParked(outlierMMD)).thenReturn(true);
+        doAnswer(invocation -> {
+            if (loaded.getAndSet(false)) {
+                BiConsumer<MappedMetricData, DetectorResult> replayed = invocation.getArgument(0);
+                replayed.accept(outlierMMD, outlierDetectorResult);
+            }
+            return null;
+        }).when(detectorManager).replayLoadedDetectors(any(BiConsumer.class));
+        scheduleRecords(metricConsumer, outlierMMD, breakoutMMD);
+
+        val managerThread = new Thread(manager);
+        managerThread.start();
+
+        awaitTrue(() -> anomalyProducer.history().size() == 1);
+        Thread.sleep(100L);
+        assertNull(metricConsumer.committed(METRIC_PARTITION));
+
+        loaded.set(true);
+        awaitTrue(() -> metricConsumer.committed(METRIC_PARTITION) != null);
+        assertEquals(2L, metricConsumer.committed(METRIC_PARTITION).offset());
+        assertEquals(2, anomalyProducer.history().size());
+        assertEquals(OUTLIER_TOPIC, anomalyProducer.history().get(1).topic());
+
+        metricConsumer.wakeup();
+        managerThread.join(THREAD_JOIN_MILLIS);
+    }
+
+    @Test
+    public void testRun_dropsParkedMetricsOfRewoundBatches() throws Exception {
+        val metricConsumer = new MockConsumer<String, MappedMetricData>(OffsetResetStrategy.EARLIEST);
+        val anomalyProducer = mockAnomalyProducer(false);
+        val metricRegistry = new MetricRegistry();
+        val manager = mockedManager(metricConsumer, anomalyProducer, new DetectorPipelineConfig(), metricRegistry);
+        val loaded = new AtomicBoolean();
+        val replayed = new AtomicBoolean();
+        when(detectorManager.detect(outlierMMD)).thenReturn(null);
+        when(detectorManager.isParked(outlierMMD)).thenReturn(true);
+        doAnswer(invocation -> {
+            if (loaded.getAndSet(false)) {
+                BiConsumer<MappedMetricData, DetectorResult> consumer = invocation.getArgument(0);
+                consumer.accept(outlierMMD, outlierDetectorResult);
+                replayed.set(true);
+            }
+            return null;
+        }).when(detectorManager).replayLoadedDetectors(any(BiConsumer.class));
+        scheduleRecords(metricConsumer, outlierMMD, breakoutMMD);
+
+        val managerThread = new Thread(manager);
+        managerThread.start();
+
+        awaitTrue(() -> anomalyProducer.history().size() == 1);
+        anomalyProducer.errorNext(new TimeoutException("Timed out"));
+        awaitTrue(() -> metricRegistry.meter("ad-manager.rewinds").getCount() == 1);
+
+        // The parked metric's batch was rewound, so its anomaly isn't sent when it's replayed.
+        loaded.set(true);
+        awaitTrue(replayed::get);
+        Thread.sleep(100L);
+        assertEquals(1, anomalyProducer.history().size());
+        assertNull(metricConsumer.committed(METRIC_PARTITION));
+
+        metricConsumer.wakeup();
+        managerThread.join(THREAD_JOIN_MILLIS);
+    }
+
+    @Test
+    public void testRun_skipsMetricsWhoseDetectionThrows() throws Exception {
+        val metricConsumer = new MockConsumer<String, MappedMetricData>(OffsetResetStrategy.EARLIEST);
+        val anomalyProducer = mockAnomalyProducer(true);
+        val metricRegistry = new MetricRegistry();
+        val manager = mockedManager(metricConsumer, anomalyProducer, new DetectorPipelineConfig(), metricRegistry);
+        when(detectorManager.detect(breakoutMMD)).thenThrow(new DetectorException("Detector not found"));
+        scheduleRecords(metricConsumer, breakoutMMD, outlierMMD);
+
+        val managerThread = new Thread(manager);
+        managerThread.start();
+
+        awaitTrue(() -> metricConsumer.committed(METRIC_PARTITION) != null);
+        assertEquals(2L, metricConsumer.committed(METRIC_PARTITION).offset());
+        assertEquals(1, anomalyProducer.history().size());
+        assertEquals(OUTLIER_TOPIC, anomalyProducer.history().get(0).topic());
+        assertEquals(1, metricRegistry.meter("ad-manager.metrics.failed").getCount());
+        assertEquals(0, metricRegistry.meter("ad-manager.rewinds").getCount());
+
+        metricConsumer.wakeup();
+        managerThread.join(THREAD_JOIN_MILLIS);
+    }
+
+    @Test
+    public void testRun_transactional() throws Exception {
+        val metricConsumer = new MockConsumer<String, MappedMetricData>(OffsetResetStrategy.EARLIEST);
+        val anomalyProducer = mockAnomalyProducer(true);
+        val manager = mockedManager(metricConsumer, anomalyProducer,
+                new DetectorPipelineConfig(1, 10, "ad-manager-1", CONSUMER_GROUP_ID), new MetricRegistry());
+        scheduleRecords(metricConsumer, outlierMMD, breakoutMMD);
+
+        val managerThread = new Thread(manager);
+        managerThread.start();
+
+        awaitTrue(() -> !anomalyProducer.consumerGroupOffsetsHistory().isEmpty());
+        val groupOffsets = anomalyProducer.consumerGroupOffsetsHistory().get(0).get(CONSUMER_GROUP_ID);
+        assertEquals(2L, groupOffsets.get(METRIC_PARTITION).offset());
+        assertEquals(2, anomalyProducer.history().size());
+        assertNull(metricConsumer.committed(METRIC_PARTITION));
+
+        metricConsumer.wakeup();
+        managerThread.join(THREAD_JOIN_MILLIS);
+        assertTrue(anomalyProducer.transactionInitialized());
+    }
+
+    @Test
+    public void testRun_transactionalSkipsMetricsWhoseDetectionThrows() throws Exception {
+        val metricConsumer = new MockConsumer<String, MappedMetricData>(OffsetResetStrategy.EARLIEST);
+        val anomalyProducer = mockAnomalyProducer(true);
+        val metricRegistry = new MetricRegistry();
+        val manager = mockedManager(metricConsumer, anomalyProducer,
+                new DetectorPipelineConfig(1, 10, "ad-manager-1", CONSUMER_GROUP_ID), metricRegistry);
+        when(detectorManager.detect(breakoutMMD)).thenThrow(new IllegalArgumentException("Bad metric"));
+        scheduleRecords(metricConsumer, outlierMMD, breakoutMMD);
+
+        val managerThread = new Thread(manager);
+        managerThread.start();
+
+        awaitTrue(() -> !anomalyProducer.consumerGroupOffsetsHistory().isEmpty());
+        val groupOffsets = anomalyProducer.consumerGroupOffsetsHistory().get(0).get(CONSUMER_GROUP_ID);
+        assertEquals(2L, groupOffsets.get(METRIC_PARTITION).offset());
+        assertEquals(1, anomalyProducer.history().size());
+        assertTrue(anomalyProducer.transactionCommitted());
+        assertEquals(0, metricRegistry.meter("ad-manager.rewinds").getCount());
+
+        metricConsumer.wakeup();
+        managerThread.join(THREAD_JOIN_MILLIS);
+    }
+
+    @Test
+    public void testPreloadDetectors() {
+        val metricConsumer = new MockConsumer<String, MappedMetricData>(OffsetResetStrategy.EARLIEST);
+        metricConsumer.updatePartitions(METRIC_TOPIC, Arrays.asList(
+                new PartitionInfo(METRIC_TOPIC, 0, null, null, null),
+                new PartitionInfo(METRIC_TOPIC, 1, null, null, null)));
+        val manager = mockedManager(metricConsumer, mockAnomalyProducer(true), new DetectorPipelineConfig(), new MetricRegistry());
+        val storedDetectorUuids = new HashSet<UUID>();
+        for (int i = 0; i < 20; i++) {
+            storedDetectorUuids.add(UUID.randomUUID());
+        }
+        val expectedUuids = storedDetectorUuids.stream()
+                .filter(uuid -> KafkaDetectorManager.partitionOf(uuid, 2) == 0)
+                .collect(Collectors.toSet());
+        when(detectorManager.isPreloadEnabled()).thenReturn(true);
+        when(detectorManager.getStoredDetectorUuids()).thenReturn(storedDetectorUuids);
+
+        manager.preloadDetectors(Collections.singletonList(METRIC_PARTITION));
+        verify(detectorManager).preload(argThat(uuids -> new HashSet<>(uuids).equals(expectedUuids)));
+    }
+
+    @Test
+    public void testPreloadDetectors_disabled() {
+        val manager = mockedManager(new MockConsumer<>(OffsetResetStrategy.EARLIEST), mockAnomalyProducer(true),
+                new DetectorPipelineConfig(), new MetricRegistry());
+        manager.preloadDetectors(Collections.singletonList(METRIC_PARTITION));
+        verify(detectorManager, never()).preload(any());
+    }
+
+    @Test
+    public void testPartitionOf_matchesDefaultPartitioner() {
+        val detectorUuid = UUID.fromString("7629c28a-5958-4ca7-9aaa-49b95d3481ff");
+        val keyBytes = new StringSerializer().serialize(METRIC_TOPIC, detectorUuid.toString());
+        assertEquals(Utils.toPositive(Utils.murmur2(keyBytes)) % 6, KafkaDetectorManager.partitionOf(detectorUuid, 6));
+    }
+
     @Test
     public void testRun_unmappedAnomalies() throws Exception {
         // TODO
@@ -159,10 +432,51 @@ public class KafkaDetectorManagerTest {
     }
 
     private void initDependencies() {
+        when(detectorManager.getInstruments()).thenReturn(new PipelineInstruments(new MetricRegistry()));
         when(detectorManager.detect(outlierMMD)).thenReturn(outlierDetectorResult);
         when(detectorManager.detect(breakoutMMD)).thenReturn(breakoutDetectorResult);
     }
 
+    private KafkaDetectorManager mockedManager(
+            MockConsumer<String, MappedMetricData> metricConsumer,
+            MockProducer<String, MappedMetricData> anomalyProducer,
+            DetectorPipelineConfig pipelineConfig,
+            MetricRegistry metricRegistry) {
+        return new KafkaDetectorManager(
+                detectorManager,
+                metricConsumer,
+                anomalyProducer,
+                METRIC_TOPIC,
+                OUTLIER_TOPIC,
+                BREAKOUT_TOPIC,
+                TRACING_ENABLED,
+                pipelineConfig,
+                metricRegistry);
+    }
+
+    private MockProducer<String, MappedMetricData> mockAnomalyProducer(boolean autoComplete) {
+        return new MockProducer<>(autoComplete, new StringSerializer(), new MappedMetricDataJsonSerde.Ser());
+    }
+
+    private void scheduleRecords(MockConsumer<String, MappedMetricData> metricConsumer, MappedMetricData... mmds) {
+        metricConsumer.updateBeginningOffsets(Collections.singletonMap(METRIC_PARTITION, 0L));
+        metricConsumer.schedulePollTask(() -> {
+            metricConsumer.rebalance(Collections.singletonList(METRIC_PARTITION));
+            for (int i = 0; i < mmds.length; i++) {
+                val key = mmds[i].getDetectorUuid().toString();
+                metricConsumer.addRecord(new ConsumerRecord<>(METRIC_TOPIC, 0, i, key, mmds[i]));
+            }
+        });
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        val deadline = System.currentTimeMillis() + THREAD_JOIN_MILLIS;
+        while (!condition.getAsBoolean()) {
+            assertTrue("Timed out waiting for condition", System.currentTimeMillis() < deadline);
+            Thread.sleep(10L);
+        }
+    }
+
     private KafkaConsumer<String, MappedMetricData> buildMetricConsumer() {
         val config = kafka.helper().consumerConfig();
         config.setProperty(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, STRING_DESER);
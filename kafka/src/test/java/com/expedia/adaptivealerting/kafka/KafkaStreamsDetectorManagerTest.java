@@ -0,0 +1,222 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.kafka;
+
+import com.expedia.adaptivealerting.anomdetect.DetectorManager;
+import com.expedia.adaptivealerting.anomdetect.DetectorStateStore;
+import com.expedia.adaptivealerting.anomdetect.detect.AnomalyType;
+import com.expedia.adaptivealerting.anomdetect.detect.DetectorContainer;
+import com.expedia.adaptivealerting.anomdetect.detect.MappedMetricData;
+import com.expedia.adaptivealerting.anomdetect.detect.outlier.OutlierDetectorResult;
+import com.expedia.adaptivealerting.anomdetect.detect.outlier.algo.forecasting.ForecastingDetector;
+import com.expedia.adaptivealerting.anomdetect.forecast.interval.algo.expwelford.ExponentialWelfordIntervalForecaster;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.algo.ewma.EwmaPointForecaster;
+import com.expedia.adaptivealerting.anomdetect.snapshot.DetectorSnapshotCodec;
+import com.expedia.adaptivealerting.anomdetect.source.DetectorException;
+import com.expedia.adaptivealerting.anomdetect.source.DetectorSource;
+import com.expedia.adaptivealerting.anomdetect.source.data.initializer.DataInitializer;
+import com.expedia.adaptivealerting.anomdetect.util.JmxReporterFactory;
+import com.expedia.adaptivealerting.kafka.serde.MappedMetricDataJsonSerde;
+import com.expedia.adaptivealerting.kafka.util.TestObjectMother;
+import com.typesafe.config.ConfigFactory;
+import lombok.val;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.TopologyTestDriver;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.test.ConsumerRecordFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit test for {@link KafkaStreamsDetectorManager}.
+ */
+public final class KafkaStreamsDetectorManagerTest {
+    private static final String INPUT_TOPIC = "mapped-metrics";
+    private static final String OUTLIER_TOPIC = "anomalies";
+    private static final long CHECKPOINT_INTERVAL_MS = 1000;
+
+    @Mock
+    private StreamsAppConfig saConfig;
+
+    @Mock
+    private DetectorSource detectorSource;
+
+    @Mock
+    private DataInitializer dataInitializer;
+
+    private UUID detectorUuid;
+    private Map<UUID, DetectorContainer> cachedDetectors;
+    private JmxReporterFactory jmxReporterFactory;
+    private AtomicInteger detectorManagersBuilt;
+
+    private TopologyTestDriver driver;
+    private ConsumerRecordFactory<String, MappedMetricData> mappedMetricDataFactory;
+    private StringDeserializer stringDeserializer;
+    private Deserializer<MappedMetricData> mappedMetricDataDeserializer;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        this.detectorUuid = UUID.randomUUID();
+        this.cachedDetectors = new HashMap<>();
+        this.jmxReporterFactory = new JmxReporterFactory();
+        this.detectorManagersBuilt = new AtomicInteger();
+        initConfig();
+        when(detectorSource.findDetector(detectorUuid))
+                .thenAnswer(invocation -> new DetectorContainer(ewmaDetector(), Collections.emptyList()));
+        initTestMachinery();
+    }
+
+    @After
+    public void tearDown() {
+        if (driver != null) {
+            driver.close();
+        }
+    }
+
+    @Test
+    public void testTransform() {
+        pipe(100.0);
+
+        val outputRecord = driver.readOutput(OUTLIER_TOPIC, stringDeserializer, mappedMetricDataDeserializer);
+        assertEquals(detectorUuid.toString(), outputRecord.key());
+        assertEquals(detectorUuid, outputRecord.value().getDetectorUuid());
+        assertTrue(outputRecord.value().getAnomalyResult() instanceof OutlierDetectorResult);
+        verify(dataInitializer, times(1)).initializeDetector(any(), any(), any());
+    }
+
+    @Test
+    public void testTransform_savesDetectorState() {
+        KeyValueStore<String, byte[]> store = driver.getKeyValueStore(KafkaStreamsDetectorManager.STATE_STORE_NAME);
+        pipe(100.0);
+        pipe(110.0);
+        assertNull(store.get(detectorUuid.toString()));
+
+        driver.advanceWallClockTime(CHECKPOINT_INTERVAL_MS);
+        val snapshot = store.get(detectorUuid.toString());
+        assertNotNull(snapshot);
+        assertArrayEquals(DetectorSnapshotCodec.snapshot(cachedDetectors.get(detectorUuid).getDetector()), snapshot);
+    }
+
+    @Test
+    public void testTransform_restoresDetectorState() {
+        val trained = ewmaDetector();
+        trained.detect(TestObjectMother.metricData(100.0));
+        trained.detect(TestObjectMother.metricData(120.0));
+        KeyValueStore<String, byte[]> store = driver.getKeyValueStore(KafkaStreamsDetectorManager.STATE_STORE_NAME);
+        store.put(detectorUuid.toString(), DetectorSnapshotCodec.snapshot(trained));
+
+        pipe(130.0);
+
+        verify(dataInitializer, never()).initializeDetector(any(), any(), any());
+        trained.detect(TestObjectMother.metricData(130.0));
+        assertArrayEquals(DetectorSnapshotCodec.snapshot(trained),
+                DetectorSnapshotCodec.snapshot(cachedDetectors.get(detectorUuid).getDetector()));
+        assertEquals(1, jmxReporterFactory.getMetricRegistry().meter("detector.state.restored").getCount());
+    }
+
+    @Test
+    public void testTransform_skipsMetricWhenDetectorLookupFails() {
+        val missingDetectorUuid = UUID.randomUUID();
+        when(detectorSource.findDetector(missingDetectorUuid)).thenThrow(new DetectorException("Detector not found"));
+        val mmd = new MappedMetricData(TestObjectMother.metricData(100.0), missingDetectorUuid);
+        driver.pipeInput(mappedMetricDataFactory.create(INPUT_TOPIC, missingDetectorUuid.toString(), mmd));
+        assertNull(driver.readOutput(OUTLIER_TOPIC, stringDeserializer, mappedMetricDataDeserializer));
+
+        pipe(100.0);
+        val outputRecord = driver.readOutput(OUTLIER_TOPIC, stringDeserializer, mappedMetricDataDeserializer);
+        assertEquals(detectorUuid, outputRecord.value().getDetectorUuid());
+    }
+
+    @Test
+    public void testTransform_sharesDetectorManager() {
+        pipe(100.0);
+        pipe(110.0);
+        assertEquals(1, detectorManagersBuilt.get());
+    }
+
+    @Test
+    public void testClose_evictsTaskDetectors() {
+        pipe(100.0);
+        assertTrue(cachedDetectors.containsKey(detectorUuid));
+
+        driver.close();
+        driver = null;
+        assertFalse(cachedDetectors.containsKey(detectorUuid));
+    }
+
+    private void pipe(double value) {
+        val mmd = new MappedMetricData(TestObjectMother.metricData(value), detectorUuid);
+        driver.pipeInput(mappedMetricDataFactory.create(INPUT_TOPIC, detectorUuid.toString(), mmd));
+    }
+
+    private ForecastingDetector ewmaDetector() {
+        return new ForecastingDetector(detectorUuid, new EwmaPointForecaster(), new ExponentialWelfordIntervalForecaster(),
+                AnomalyType.TWO_TAILED, true, "ewma");
+    }
+
+    private void initConfig() {
+        val tsConfig = ConfigFactory.parseString("detector-refresh-period = 1\n"
+                + "detector-state-checkpoint-interval-ms = " + CHECKPOINT_INTERVAL_MS);
+        val streamsProps = new Properties();
+        streamsProps.put(StreamsConfig.APPLICATION_ID_CONFIG, "test");
+        streamsProps.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "dummy:1234");
+        when(saConfig.getTypesafeConfig()).thenReturn(tsConfig);
+        when(saConfig.getStreamsConfig()).thenReturn(new StreamsConfig(streamsProps));
+        when(saConfig.getInputTopic()).thenReturn(INPUT_TOPIC);
+        when(saConfig.getOutputTopic()).thenReturn(OUTLIER_TOPIC);
+    }
+
+    private void initTestMachinery() {
+        val managerConfig = saConfig.getTypesafeConfig();
+        val metricRegistry = jmxReporterFactory.getMetricRegistry();
+        Function<DetectorStateStore, DetectorManager> detectorManagerFactory = stateStore -> {
+            detectorManagersBuilt.incrementAndGet();
+            return new DetectorManager(detectorSource, dataInitializer, managerConfig, cachedDetectors, metricRegistry, stateStore);
+        };
+        val topology = new KafkaStreamsDetectorManager(
+                saConfig, detectorManagerFactory, cachedDetectors, jmxReporterFactory).buildTopology();
+        this.driver = TestObjectMother.topologyTestDriver(topology, MappedMetricDataJsonSerde.class, false);
+        this.mappedMetricDataFactory = TestObjectMother.mappedMetricDataFactory();
+        this.stringDeserializer = new StringDeserializer();
+        this.mappedMetricDataDeserializer = new MappedMetricDataJsonSerde.Deser();
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.kafka;
+
+import com.expedia.adaptivealerting.anomdetect.source.ModelChangeEvent;
+import com.expedia.adaptivealerting.anomdetect.source.ModelChangeListener;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.val;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class ModelChangeFeedConsumerTest {
+    private static final String TOPIC = "model-changes";
+    private static final TopicPartition PARTITION_0 = new TopicPartition(TOPIC, 0);
+    private static final long END_OFFSET = 5L;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private MockConsumer<String, String> consumer;
+    private ModelChangeListener listener;
+    private ModelChangeFeedConsumer feedUnderTest;
+
+    @Before
+    public void setUp() {
+        this.consumer = new MockConsumer<>(OffsetResetStrategy.LATEST);
+        consumer.updatePartitions(TOPIC, Collections.singletonList(new PartitionInfo(TOPIC, 0, null, null, null)));
+        consumer.updateBeginningOffsets(Collections.singletonMap(PARTITION_0, 0L));
+        consumer.updateEndOffsets(Collections.singletonMap(PARTITION_0, END_OFFSET));
+        this.listener = mock(ModelChangeListener.class);
+        this.feedUnderTest = new ModelChangeFeedConsumer(consumer, TOPIC, listener, 60000L);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructor_nullTopic() {
+        new ModelChangeFeedConsumer(consumer, null, listener, 60000L);
+    }
+
+    @Test
+    public void testNotLiveUntilAssigned() {
+        assertEquals(-1L, feedUnderTest.getLiveSince());
+        assertFalse(feedUnderTest.isLiveSince(System.currentTimeMillis()));
+    }
+
+    @Test
+    public void testAssignAllPartitions_startsFromEnd() {
+        val start = System.currentTimeMillis();
+        feedUnderTest.assignAllPartitions();
+
+        assertEquals(Collections.singleton(PARTITION_0), consumer.assignment());
+        assertEquals(END_OFFSET, consumer.position(PARTITION_0));
+        assertTrue(feedUnderTest.getLiveSince() >= start);
+        assertFalse(feedUnderTest.isLiveSince(start - 1));
+    }
+
+    @Test
+    public void testPollOnce_appliesChanges() throws Exception {
+        val event = new ModelChangeEvent()
+                .setEntityType(ModelChangeEvent.EntityType.MAPPING)
+                .setChangeType(ModelChangeEvent.ChangeType.CREATED)
+                .setId("mapping-id")
+                .setTimestamp(1000L)
+                .setDocument(objectMapper.createObjectNode().put("id", "mapping-id"));
+        feedUnderTest.assignAllPartitions();
+        addRecord(END_OFFSET, objectMapper.writeValueAsString(event));
+
+        feedUnderTest.pollOnce(System.currentTimeMillis());
+
+        verify(listener).onModelChange(event);
+    }
+
+    @Test
+    public void testPollOnce_skipsTombstonesAndUnreadableChanges() throws Exception {
+        feedUnderTest.assignAllPartitions();
+        addRecord(END_OFFSET, null);
+        addRecord(END_OFFSET + 1, "not a change");
+        addRecord(END_OFFSET + 2, objectMapper.writeValueAsString(detectorChange()));
+
+        feedUnderTest.pollOnce(System.currentTimeMillis());
+
+        verify(listener).onModelChange(detectorChange());
+    }
+
+    @Test
+    public void testPollOnce_continuesAfterListenerError() throws Exception {
+        doThrow(new RuntimeException()).doNothing().when(listener).onModelChange(any(ModelChangeEvent.class));
+        feedUnderTest.assignAllPartitions();
+        addRecord(END_OFFSET, objectMapper.writeValueAsString(detectorChange()));
+        addRecord(END_OFFSET + 1, objectMapper.writeValueAsString(detectorChange()));
+
+        feedUnderTest.pollOnce(System.currentTimeMillis());
+
+        verify(listener, times(2)).onModelChange(detectorChange());
+    }
+
+    @Test
+    public void testClose_stopsFeed() throws Exception {
+        feedUnderTest.start();
+        feedUnderTest.close();
+
+        assertTrue(consumer.closed());
+        assertEquals(-1L, feedUnderTest.getLiveSince());
+    }
+
+    private void addRecord(long offset, String value) {
+        consumer.addRecord(new ConsumerRecord<>(TOPIC, 0, offset, "key", value));
+    }
+
+    private ModelChangeEvent detectorChange() {
+        return new ModelChangeEvent()
+                .setEntityType(ModelChangeEvent.EntityType.DETECTOR)
+                .setChangeType(ModelChangeEvent.ChangeType.DELETED)
+                .setId("2c49ba26-1a7d-43f4-b70c-c6644a2c1689");
+    }
+}
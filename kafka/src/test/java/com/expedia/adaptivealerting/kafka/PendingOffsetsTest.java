@@ -0,0 +1,104 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.kafka;
+
+import lombok.val;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PendingOffsetsTest {
+    private static final String TOPIC = "mapped-metrics";
+    private static final TopicPartition PARTITION_0 = new TopicPartition(TOPIC, 0);
+    private static final TopicPartition PARTITION_1 = new TopicPartition(TOPIC, 1);
+
+    private PendingOffsets offsetsUnderTest;
+
+    @Before
+    public void setUp() {
+        this.offsetsUnderTest = new PendingOffsets();
+    }
+
+    @Test
+    public void testTakeCompleted() {
+        val batch = offsetsUnderTest.startBatch(Arrays.asList(record(0, 5), record(0, 6), record(1, 2)));
+        batch.sendStarted();
+        batch.close();
+        assertTrue(offsetsUnderTest.takeCompleted().isEmpty());
+
+        batch.sendCompleted(null);
+        val offsets = offsetsUnderTest.takeCompleted();
+        assertEquals(7L, offsets.get(PARTITION_0).offset());
+        assertEquals(3L, offsets.get(PARTITION_1).offset());
+        assertEquals(0, offsetsUnderTest.size());
+    }
+
+    @Test
+    public void testTakeCompleted_keepsPollOrder() {
+        val first = offsetsUnderTest.startBatch(Collections.singletonList(record(0, 1)));
+        val second = offsetsUnderTest.startBatch(Collections.singletonList(record(0, 2)));
+        first.sendStarted();
+        first.close();
+        second.close();
+
+        // The second batch has completed, but the first one hasn't.
+        assertTrue(offsetsUnderTest.takeCompleted().isEmpty());
+
+        first.sendCompleted(null);
+        assertEquals(3L, offsetsUnderTest.takeCompleted().get(PARTITION_0).offset());
+    }
+
+    @Test
+    public void testFail() {
+        val batch = offsetsUnderTest.startBatch(Collections.singletonList(record(0, 1)));
+        batch.fail();
+        batch.close();
+
+        assertTrue(offsetsUnderTest.hasFailure());
+        assertTrue(offsetsUnderTest.takeCompleted().isEmpty());
+    }
+
+    @Test
+    public void testRewind() {
+        val first = offsetsUnderTest.startBatch(Collections.singletonList(record(0, 1)));
+        val second = offsetsUnderTest.startBatch(Arrays.asList(record(0, 2), record(1, 8)));
+        first.sendStarted();
+        first.close();
+        second.close();
+        assertFalse(offsetsUnderTest.hasFailure());
+
+        first.sendCompleted(new RuntimeException("Failed"));
+        assertTrue(offsetsUnderTest.hasFailure());
+        assertTrue(offsetsUnderTest.takeCompleted().isEmpty());
+
+        val offsets = offsetsUnderTest.rewind();
+        assertEquals(1L, (long) offsets.get(PARTITION_0));
+        assertEquals(8L, (long) offsets.get(PARTITION_1));
+        assertEquals(0, offsetsUnderTest.size());
+    }
+
+    private static ConsumerRecord<String, String> record(int partition, long offset) {
+        return new ConsumerRecord<>(TOPIC, partition, offset, "key", "value");
+    }
+}
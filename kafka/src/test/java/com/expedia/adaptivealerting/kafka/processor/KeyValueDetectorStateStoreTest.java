@@ -0,0 +1,76 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.kafka.processor;
+
+import com.codahale.metrics.MetricRegistry;
+import com.expedia.adaptivealerting.anomdetect.detect.Detector;
+import com.expedia.adaptivealerting.anomdetect.detect.DetectorContainer;
+import lombok.val;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public final class KeyValueDetectorStateStoreTest {
+    private final UUID detectorUuid = UUID.randomUUID();
+    private final Map<String, byte[]> entries = new HashMap<>();
+
+    private KeyValueDetectorStateStore storeUnderTest;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        KeyValueStore<String, byte[]> store = mock(KeyValueStore.class);
+        when(store.get(anyString())).thenAnswer(invocation -> entries.get(invocation.<String>getArgument(0)));
+        doAnswer(invocation -> entries.put(invocation.getArgument(0), invocation.getArgument(1)))
+                .when(store).put(anyString(), any());
+        when(store.delete(anyString())).thenAnswer(invocation -> entries.remove(invocation.<String>getArgument(0)));
+        this.storeUnderTest = new KeyValueDetectorStateStore(store, new MetricRegistry());
+        entries.put(detectorUuid.toString(), new byte[]{1, 2, 3});
+    }
+
+    @Test
+    public void testHasState_afterDiscard() {
+        assertTrue(storeUnderTest.hasState(detectorUuid));
+
+        storeUnderTest.discard(detectorUuid);
+        assertFalse(storeUnderTest.hasState(detectorUuid));
+        assertFalse(entries.containsKey(detectorUuid.toString()));
+    }
+
+    @Test
+    public void testRestore_afterDiscard() {
+        val detector = mock(Detector.class);
+        when(detector.getUuid()).thenReturn(detectorUuid);
+        val container = mock(DetectorContainer.class);
+        when(container.getDetector()).thenReturn(detector);
+
+        storeUnderTest.discard(detectorUuid);
+        assertFalse(storeUnderTest.restore(container));
+        assertFalse(entries.containsKey(detectorUuid.toString()));
+    }
+}
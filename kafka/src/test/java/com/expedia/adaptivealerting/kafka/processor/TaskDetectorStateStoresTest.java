@@ -0,0 +1,77 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.kafka.processor;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.UUID;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public final class TaskDetectorStateStoresTest {
+    private final UUID detectorUuid = UUID.randomUUID();
+
+    private KeyValueDetectorStateStore firstTaskStore;
+    private KeyValueDetectorStateStore secondTaskStore;
+    private TaskDetectorStateStores storesUnderTest;
+
+    @Before
+    public void setUp() {
+        this.firstTaskStore = mock(KeyValueDetectorStateStore.class);
+        this.secondTaskStore = mock(KeyValueDetectorStateStore.class);
+        this.storesUnderTest = new TaskDetectorStateStores();
+        storesUnderTest.register(firstTaskStore);
+        storesUnderTest.register(secondTaskStore);
+    }
+
+    @Test
+    public void testRoutesToClaimingTask() {
+        when(secondTaskStore.hasState(detectorUuid)).thenReturn(true);
+        assertFalse(storesUnderTest.hasState(detectorUuid));
+
+        storesUnderTest.claim(detectorUuid, secondTaskStore);
+        storesUnderTest.markDirty(detectorUuid);
+
+        assertTrue(storesUnderTest.hasState(detectorUuid));
+        verify(secondTaskStore).markDirty(detectorUuid);
+        verify(firstTaskStore, never()).hasState(detectorUuid);
+    }
+
+    @Test
+    public void testDiscard_goesToEveryTask() {
+        storesUnderTest.discard(detectorUuid);
+        verify(firstTaskStore).discard(detectorUuid);
+        verify(secondTaskStore).discard(detectorUuid);
+    }
+
+    @Test
+    public void testUnregister() {
+        storesUnderTest.claim(detectorUuid, firstTaskStore);
+        storesUnderTest.unregister(firstTaskStore, Collections.singleton(detectorUuid));
+
+        storesUnderTest.markDirty(detectorUuid);
+        storesUnderTest.discard(detectorUuid);
+        verify(firstTaskStore, never()).markDirty(detectorUuid);
+        verify(firstTaskStore, never()).discard(detectorUuid);
+    }
+}
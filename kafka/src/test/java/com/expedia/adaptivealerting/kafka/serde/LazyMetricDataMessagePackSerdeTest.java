@@ -0,0 +1,178 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.kafka.serde;
+
+import com.expedia.adaptivealerting.anomdetect.mapper.TagSetKey;
+import com.expedia.adaptivealerting.kafka.util.TestObjectMother;
+import com.expedia.metrics.MetricData;
+import com.expedia.metrics.metrictank.MessagePackSerializer;
+import com.google.common.collect.ImmutableMap;
+import lombok.val;
+import org.junit.Before;
+import org.junit.Test;
+import org.msgpack.core.MessageBufferPacker;
+import org.msgpack.core.MessagePack;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public final class LazyMetricDataMessagePackSerdeTest {
+    private static final String TOPIC = "some-topic";
+
+    private LazyMetricDataMessagePackSerde serdeUnderTest;
+    private MessagePackSerializer metrictankSerializer;
+
+    @Before
+    public void setUp() {
+        this.serdeUnderTest = new LazyMetricDataMessagePackSerde();
+        this.metrictankSerializer = new MessagePackSerializer();
+    }
+
+    @Test
+    public void coverageOnly() {
+        serdeUnderTest.configure(null, false);
+        serdeUnderTest.close();
+
+        val deserializer = new LazyMetricDataMessagePackSerde.Deser();
+        deserializer.configure(null, false);
+        deserializer.close();
+    }
+
+    @Test
+    public void testSerializeAndDeserialize() throws Exception {
+        val bytes = serdeUnderTest.serializer().serialize(TOPIC, TestObjectMother.metricData());
+        val expected = metrictankSerializer.deserialize(bytes);
+
+        val actual = (LazyMetricTankMetricData) serdeUnderTest.deserializer().deserialize(TOPIC, bytes);
+        assertEquals(expected.getValue(), actual.getValue(), 0.0);
+        assertEquals(expected.getTimestamp(), actual.getTimestamp());
+        assertEquals(TagSetKey.of(expected.getMetricDefinition().getTags().getKv()), actual.getTagSetKey());
+        assertFalse(actual.isDecoded());
+
+        assertEquals(expected.getMetricDefinition(), actual.getMetricDefinition());
+        assertEquals(actual, expected);
+        assertEquals(expected.hashCode(), actual.hashCode());
+        assertTrue(actual.isDecoded());
+    }
+
+    @Test
+    public void testDeserialize_reusesReader() throws Exception {
+        val deserializer = serdeUnderTest.deserializer();
+        val first = record("metric-1", "a=1", "b=2");
+        val second = record("metric-2", "c=3");
+
+        val firstResult = (LazyMetricTankMetricData) deserializer.deserialize(TOPIC, first);
+        val secondResult = (LazyMetricTankMetricData) deserializer.deserialize(TOPIC, second);
+
+        assertEquals(metrictankSerializer.deserialize(first).getMetricDefinition(), firstResult.getMetricDefinition());
+        assertEquals(metrictankSerializer.deserialize(second).getMetricDefinition(), secondResult.getMetricDefinition());
+        assertEquals(TagSetKey.of(ImmutableMap.of("a", "1", "b", "2")), firstResult.getTagSetKey());
+        assertEquals(TagSetKey.of(ImmutableMap.of("c", "3")), secondResult.getTagSetKey());
+    }
+
+    @Test
+    public void testDeserialize_manyNonAsciiTags() throws Exception {
+        val tags = new String[40];
+        for (int i = 0; i < tags.length; i++) {
+            tags[i] = "tag-" + i + "=Zürich-東京-😀-" + i;
+        }
+        tags[0] = "empty=";
+        tags[1] = "equals=a=b";
+        val bytes = record("some-metric", tags);
+        val expected = metrictankSerializer.deserialize(bytes);
+
+        val actual = (LazyMetricTankMetricData) serdeUnderTest.deserializer().deserialize(TOPIC, bytes);
+        assertEquals(expected.getMetricDefinition(), actual.getMetricDefinition());
+        assertEquals(TagSetKey.of(expected.getMetricDefinition().getTags().getKv()), actual.getTagSetKey());
+    }
+
+    @Test
+    public void testDeserialize_skipsUnknownFields() throws Exception {
+        val packer = MessagePack.newDefaultBufferPacker();
+        packer.packMapHeader(10);
+        packer.packString("Extra");
+        packer.packMapHeader(2);
+        packer.packString("nested").packArrayHeader(3).packNil().packBoolean(true).packLong(Long.MIN_VALUE);
+        packer.packString("ext").packExtensionTypeHeader((byte) 1, 3).writePayload(new byte[3]);
+        packer.packString("Id").packString("1.0123456789abcdef");
+        packer.packString("OrgId").packInt(1);
+        packer.packString("Name").packString("some-metric");
+        packer.packString("Interval").packInt(60);
+        packer.packString("Value").packFloat(1.5f);
+        packer.packString("Unit").packString("ms");
+        packer.packString("Time").packInt(1_500_000_000);
+        packer.packString("Mtype").packString("gauge");
+        packer.packString("Tags").packArrayHeader(1).packString("what=bookings");
+        val bytes = bytes(packer);
+        val expected = metrictankSerializer.deserialize(bytes);
+
+        val actual = serdeUnderTest.deserializer().deserialize(TOPIC, bytes);
+        assertEquals(actual, expected);
+        assertEquals(1_500_000_000L, actual.getTimestamp());
+    }
+
+    @Test
+    public void testDeserialize_repeatedTagKey() throws Exception {
+        val bytes = record("some-metric", "k=1", "other=x", "k=2");
+        val expected = metrictankSerializer.deserialize(bytes);
+
+        val actual = (LazyMetricTankMetricData) serdeUnderTest.deserializer().deserialize(TOPIC, bytes);
+        assertEquals(expected.getMetricDefinition(), actual.getMetricDefinition());
+        assertEquals(TagSetKey.of(ImmutableMap.of("k", "2", "other", "x")), actual.getTagSetKey());
+    }
+
+    @Test
+    public void testDeserialize_invalidRecords() throws Exception {
+        val deserializer = serdeUnderTest.deserializer();
+        assertNull(deserializer.deserialize(TOPIC, null));
+        assertNull(deserializer.deserialize(TOPIC, "hey".getBytes()));
+        assertNull(deserializer.deserialize(TOPIC, record("some-metric", "no-separator")));
+        assertNull(deserializer.deserialize(TOPIC, record("", "k=v")));
+
+        val bytes = record("some-metric", "k=v");
+        for (int length = 0; length < bytes.length; length++) {
+            assertNull(deserializer.deserialize(TOPIC, Arrays.copyOf(bytes, length)));
+        }
+        assertEquals(deserializer.deserialize(TOPIC, bytes), metrictankSerializer.deserialize(bytes));
+    }
+
+    private static byte[] record(String name, String... tags) throws IOException {
+        val packer = MessagePack.newDefaultBufferPacker();
+        packer.packMapHeader(8);
+        packer.packString("OrgId").packInt(1);
+        packer.packString("Name").packString(name);
+        packer.packString("Interval").packInt(60);
+        packer.packString("Value").packDouble(42.0);
+        packer.packString("Unit").packString("");
+        packer.packString("Time").packLong(1_500_000_000_000L);
+        packer.packString("Mtype").packString("count");
+        packer.packString("Tags").packArrayHeader(tags.length);
+        for (String tag : tags) {
+            packer.packString(tag);
+        }
+        return bytes(packer);
+    }
+
+    private static byte[] bytes(MessageBufferPacker packer) throws IOException {
+        packer.close();
+        return packer.toByteArray();
+    }
+}
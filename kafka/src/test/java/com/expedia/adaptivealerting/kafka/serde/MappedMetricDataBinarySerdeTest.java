@@ -0,0 +1,176 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.kafka.serde;
+
+import com.expedia.adaptivealerting.anomdetect.detect.MappedMetricData;
+import com.expedia.adaptivealerting.kafka.util.TestObjectMother;
+import com.expedia.metrics.MetricData;
+import com.expedia.metrics.MetricDefinition;
+import com.expedia.metrics.TagCollection;
+import com.expedia.metrics.jackson.MetricsJavaModule;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.val;
+import org.apache.kafka.common.errors.SerializationException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public final class MappedMetricDataBinarySerdeTest {
+    private static final String TOPIC = "mapped-metrics";
+
+    private MappedMetricDataBinarySerde serdeUnderTest;
+    private MappedMetricData mappedMetricData;
+
+    @Before
+    public void setUp() {
+        this.serdeUnderTest = new MappedMetricDataBinarySerde();
+        this.mappedMetricData = TestObjectMother.mappedMetricData(TestObjectMother.metricData(), "ad-manager", UUID.randomUUID());
+    }
+
+    @Test
+    public void coverageOnly() {
+        serdeUnderTest.configure(null, false);
+        serdeUnderTest.close();
+        serdeUnderTest.serializer().configure(null, false);
+        serdeUnderTest.serializer().close();
+        serdeUnderTest.deserializer().configure(null, false);
+        serdeUnderTest.deserializer().close();
+    }
+
+    @Test
+    public void testRoundTrip() {
+        val actual = roundTrip(mappedMetricData);
+        assertEquals(mappedMetricData.getDetectorUuid(), actual.getDetectorUuid());
+        assertEquals(mappedMetricData.getConsumerId(), actual.getConsumerId());
+        assertMetricDataEquals(mappedMetricData.getMetricData(), actual.getMetricData());
+        assertNull(actual.getAnomalyResult());
+    }
+
+    @Test
+    public void testRoundTrip_noConsumerId() {
+        val mmd = TestObjectMother.mappedMetricData();
+        val actual = roundTrip(mmd);
+        assertNull(actual.getConsumerId());
+        assertMetricDataEquals(mmd.getMetricData(), actual.getMetricData());
+    }
+
+    @Test
+    public void testRoundTrip_keyAndValueTags() {
+        val kv = new HashMap<String, String>();
+        kv.put("unit", "count");
+        kv.put("mtype", "count");
+        kv.put("region", "us-west-2");
+        val meta = new TagCollection(Collections.singletonMap("unit", "count"), new HashSet<>(Arrays.asList("ü", "")));
+        val definition = new MetricDefinition("some.metric.key", new TagCollection(kv), meta);
+        val metricData = new MetricData(definition, -1.5, 1234567890L);
+
+        val actual = roundTrip(new MappedMetricData(metricData, UUID.randomUUID()));
+        assertMetricDataEquals(metricData, actual.getMetricData());
+    }
+
+    @Test
+    public void testRoundTrip_noKey() {
+        val definition = new MetricDefinition(new TagCollection(Collections.singletonMap("what", "bookings")));
+        val metricData = new MetricData(definition, 3.0, 0L);
+
+        val actual = roundTrip(new MappedMetricData(metricData, UUID.randomUUID()));
+        assertMetricDataEquals(metricData, actual.getMetricData());
+    }
+
+    @Test
+    public void testSerialize_isSmallerThanJson() {
+        val binary = serdeUnderTest.serializer().serialize(TOPIC, mappedMetricData);
+        val json = new MappedMetricDataJsonSerde().serializer().serialize(TOPIC, mappedMetricData);
+        assertTrue(binary.length < json.length / 2);
+    }
+
+    @Test
+    public void testSerialize_null() {
+        assertNull(serdeUnderTest.serializer().serialize(TOPIC, null));
+    }
+
+    @Test(expected = SerializationException.class)
+    public void testSerialize_anomalyResult() {
+        serdeUnderTest.serializer().serialize(TOPIC, TestObjectMother.mappedMetricDataWithAnomalyResult());
+    }
+
+    @Test
+    public void testDeserialize_decodesDefinitionLazily() {
+        val bytes = serdeUnderTest.serializer().serialize(TOPIC, mappedMetricData);
+        val metricData = (LazyMetricData) serdeUnderTest.deserializer().deserialize(TOPIC, bytes).getMetricData();
+
+        assertEquals(mappedMetricData.getMetricData().getValue(), metricData.getValue(), 0.0);
+        assertEquals(mappedMetricData.getMetricData().getTimestamp(), metricData.getTimestamp());
+        assertFalse(metricData.isDecoded());
+
+        assertEquals(mappedMetricData.getMetricData().getMetricDefinition(), metricData.getMetricDefinition());
+        assertTrue(metricData.isDecoded());
+    }
+
+    @Test
+    public void testDeserialize_json() {
+        val json = new MappedMetricDataJsonSerde().serializer().serialize(TOPIC, mappedMetricData);
+        assertEquals(mappedMetricData, serdeUnderTest.deserializer().deserialize(TOPIC, json));
+    }
+
+    @Test
+    public void testDeserialize_null() {
+        assertNull(serdeUnderTest.deserializer().deserialize(TOPIC, null));
+    }
+
+    @Test
+    public void testDeserialize_unsupportedVersion() {
+        val bytes = serdeUnderTest.serializer().serialize(TOPIC, mappedMetricData);
+        bytes[0] = MappedMetricDataBinarySerde.FORMAT_VERSION + 1;
+        assertNull(serdeUnderTest.deserializer().deserialize(TOPIC, bytes));
+    }
+
+    @Test
+    public void testDeserialize_truncated() {
+        val bytes = serdeUnderTest.serializer().serialize(TOPIC, mappedMetricData);
+        assertNull(serdeUnderTest.deserializer().deserialize(TOPIC, Arrays.copyOf(bytes, bytes.length - 1)));
+        assertNull(serdeUnderTest.deserializer().deserialize(TOPIC, Arrays.copyOf(bytes, 10)));
+    }
+
+    @Test
+    public void testLazyMetricData_serializesAsJson() throws Exception {
+        val objectMapper = new ObjectMapper().registerModule(new MetricsJavaModule());
+        val actual = roundTrip(mappedMetricData);
+        assertEquals(objectMapper.writeValueAsString(mappedMetricData), objectMapper.writeValueAsString(actual));
+        assertEquals(mappedMetricData.getMetricData().toString(), actual.getMetricData().toString());
+    }
+
+    private MappedMetricData roundTrip(MappedMetricData mmd) {
+        val bytes = serdeUnderTest.serializer().serialize(TOPIC, mmd);
+        return serdeUnderTest.deserializer().deserialize(TOPIC, bytes);
+    }
+
+    private static void assertMetricDataEquals(MetricData expected, MetricData actual) {
+        assertTrue(actual.equals(expected));
+        assertEquals(expected.hashCode(), actual.hashCode());
+        assertEquals(expected.getMetricDefinition(), actual.getMetricDefinition());
+    }
+}
@@ -18,30 +18,23 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.ExecutorService;
 
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
-import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.when;
 
 public class AnomaliesProcessorTest {
 
-    private ExecutorService executorService;
     private AnomaliesProcessor anomaliesProcessor;
 
     @Before
     public void setUp() {
-        executorService = mock(ExecutorService.class);
-        when(executorService.submit(any(ElasticSearchBulkService.class))).thenReturn(null);
         anomaliesProcessor = new AnomaliesProcessor();
     }
 
     @Test
     public void testProcessMetrics() {
         ConsumerRecords<String, MappedMetricData> metricDataConsumerRecords = buildMetricRecords(2, AnomalyLevel.STRONG);
-        List<AnomalyModel> anomalyModels = anomaliesProcessor.processMetrics(metricDataConsumerRecords, executorService);
+        List<AnomalyModel> anomalyModels = anomaliesProcessor.processMetrics(metricDataConsumerRecords);
         assertNotNull(anomalyModels);
         assertTrue(anomalyModels.size() == 2);
     }
@@ -49,7 +42,7 @@ public class AnomaliesProcessorTest {
     @Test
     public void testProcessZeroMetrics() {
         ConsumerRecords<String, MappedMetricData> metricDataConsumerRecords = buildMetricRecords(0, AnomalyLevel.WEAK);
-        List<AnomalyModel> anomalyModels = anomaliesProcessor.processMetrics(metricDataConsumerRecords, executorService);
+        List<AnomalyModel> anomalyModels = anomaliesProcessor.processMetrics(metricDataConsumerRecords);
         assertNotNull(anomalyModels);
         assertTrue(anomalyModels.size() == 0);
     }
@@ -57,7 +50,7 @@ public class AnomaliesProcessorTest {
     @Test
     public void testProcessZeroMetricsForNormalAnomalies() {
         ConsumerRecords<String, MappedMetricData> metricDataConsumerRecords = buildMetricRecords(4, AnomalyLevel.NORMAL);
-        List<AnomalyModel> anomalyModels = anomaliesProcessor.processMetrics(metricDataConsumerRecords, executorService);
+        List<AnomalyModel> anomalyModels = anomaliesProcessor.processMetrics(metricDataConsumerRecords);
         assertNotNull(anomalyModels);
         assertTrue(anomalyModels.size() == 0);
     }
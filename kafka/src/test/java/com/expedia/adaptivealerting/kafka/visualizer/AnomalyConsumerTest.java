@@ -2,19 +2,28 @@ package com.expedia.adaptivealerting.kafka.visualizer;
 
 import com.expedia.adaptivealerting.anomdetect.detect.AnomalyLevel;
 import com.expedia.adaptivealerting.anomdetect.detect.MappedMetricData;
+import com.expedia.adaptivealerting.kafka.PendingOffsets;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.TopicPartition;
 import org.apache.kafka.common.errors.WakeupException;
 import org.junit.Before;
 import org.junit.Test;
 
-import java.util.concurrent.ExecutorService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 import static junit.framework.TestCase.assertFalse;
 import static junit.framework.TestCase.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -22,18 +31,25 @@ import static org.mockito.Mockito.when;
 public class AnomalyConsumerTest {
 
     private KafkaConsumer<String, MappedMetricData> kafkaConsumer;
-    private ExecutorService executorService;
+    private ElasticSearchBulkService bulkService;
     private AnomalyConsumer anomalyConsumer;
+    private List<PendingOffsets.Batch> indexedBatches;
 
 
     @Before
     public void setUp() {
         kafkaConsumer = mock(KafkaConsumer.class);
-        executorService = mock(ExecutorService.class);
-        when(executorService.submit(any(ElasticSearchBulkService.class))).thenReturn(null);
+        bulkService = mock(ElasticSearchBulkService.class);
+        indexedBatches = new ArrayList<>();
+        doAnswer(invocation -> {
+            PendingOffsets.Batch batch = invocation.getArgument(1);
+            batch.sendStarted();
+            indexedBatches.add(batch);
+            return null;
+        }).when(bulkService).index(any(), any());
         anomalyConsumer = new AnomalyConsumer();
         anomalyConsumer.setKafkaConsumer(kafkaConsumer);
-        anomalyConsumer.setExecutorService(executorService);
+        anomalyConsumer.setBulkService(bulkService);
     }
 
     @Test
@@ -42,6 +58,37 @@ public class AnomalyConsumerTest {
                 AnomalyLevel.STRONG);
         when(kafkaConsumer.poll(anyLong())).thenReturn(metricRecords);
         assertTrue(anomalyConsumer.process(kafkaConsumer, true));
+        verify(bulkService, times(1)).index(any(), any());
+    }
+
+    @Test
+    public void testProcess_commitsOnceIndexed() {
+        ConsumerRecords<String, MappedMetricData> metricRecords = AnomaliesProcessorTest.buildMetricRecords(2,
+                AnomalyLevel.STRONG);
+        when(kafkaConsumer.poll(anyLong())).thenReturn(metricRecords, ConsumerRecords.empty());
+
+        anomalyConsumer.process(kafkaConsumer, true);
+        verify(kafkaConsumer, never()).commitAsync(anyMap(), any());
+
+        indexedBatches.get(0).sendCompleted(null);
+        anomalyConsumer.process(kafkaConsumer, true);
+        verify(kafkaConsumer, times(1)).commitAsync(anyMap(), any());
+    }
+
+    @Test
+    public void testProcess_rewindsWhenIndexingFails() {
+        ConsumerRecords<String, MappedMetricData> metricRecords = AnomaliesProcessorTest.buildMetricRecords(2,
+                AnomalyLevel.STRONG);
+        ConsumerRecord<String, MappedMetricData> record = metricRecords.iterator().next();
+        TopicPartition partition = new TopicPartition(record.topic(), record.partition());
+        when(kafkaConsumer.poll(anyLong())).thenReturn(metricRecords, ConsumerRecords.empty());
+        when(kafkaConsumer.assignment()).thenReturn(Collections.singleton(partition));
+
+        anomalyConsumer.process(kafkaConsumer, true);
+        indexedBatches.get(0).sendCompleted(new RuntimeException("Bulk request failed"));
+        anomalyConsumer.process(kafkaConsumer, true);
+        verify(kafkaConsumer, times(1)).seek(eq(partition), anyLong());
+        verify(kafkaConsumer, never()).commitAsync(anyMap(), any());
     }
 
     @Test
@@ -57,6 +104,7 @@ public class AnomalyConsumerTest {
     public void testProcessWakeException() {
         when(kafkaConsumer.poll(anyLong())).thenThrow(WakeupException.class);
         assertFalse(anomalyConsumer.process(kafkaConsumer, true));
+        verify(bulkService, times(1)).close();
         verify(kafkaConsumer, times(1)).close();
 
     }
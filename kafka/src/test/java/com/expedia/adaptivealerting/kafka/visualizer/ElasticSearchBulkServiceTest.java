@@ -15,94 +15,128 @@
  */
 package com.expedia.adaptivealerting.kafka.visualizer;
 
+import com.expedia.adaptivealerting.anomdetect.detect.AnomalyLevel;
+import com.expedia.adaptivealerting.kafka.PendingOffsets;
+import com.google.common.collect.ImmutableMap;
+import com.typesafe.config.ConfigFactory;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.bulk.BulkItemResponse;
 import org.elasticsearch.action.bulk.BulkRequest;
 import org.elasticsearch.action.bulk.BulkResponse;
-import org.elasticsearch.client.RequestOptions;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.function.Consumer;
 
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
-import static org.mockito.Mockito.when;
 
 public class ElasticSearchBulkServiceTest {
 
     private ElasticSearchClient client;
+    private PendingOffsets pendingOffsets;
+    private ElasticSearchBulkService elasticSearchBulkService;
 
     @Before
     public void setUp() {
         client = mock(ElasticSearchClient.class);
+        pendingOffsets = new PendingOffsets();
+        // Sends each anomaly on its own, on the calling thread.
+        elasticSearchBulkService = new ElasticSearchBulkService(client, ConfigFactory.parseMap(ImmutableMap.of(
+                "bulk-actions", 1,
+                "concurrent-requests", 0)));
     }
 
-    @Test
-    public void testRun() throws IOException {
-        AnomalyModel anomalyModel = AnomalyModel.newBuilder()
-                .key("key")
-                .value(100)
-                .level("NORMAL")
-                .uuid("test")
-                .timestamp("date")
-                .anomalyThresholds(null)
-                .tags(null)
-                .build();
-        anomalyModel = AnomalyModel.newBuilder(anomalyModel).build();
-        List<AnomalyModel> anomalyModels = new ArrayList<>();
-        anomalyModels.add(anomalyModel);
-        BulkResponse bulkResponse = buildBulkResponseHappy();
+    @After
+    public void tearDown() {
+        elasticSearchBulkService.close();
+        verify(client, times(1)).close();
+    }
 
-        when(client.bulk(any(BulkRequest.class), any(RequestOptions.class))).thenReturn(bulkResponse);
-        when(client.close()).thenReturn(true);
-        ElasticSearchBulkService elasticSearchBulkService = new ElasticSearchBulkService(anomalyModels);
-        elasticSearchBulkService.setElasticSearchClient(client);
-        elasticSearchBulkService.run();
-        verify(elasticSearchBulkService.getElasticSearchClient(), times(1))
-                .bulk(any(BulkRequest.class), any(RequestOptions.class));
+    @Test
+    public void testIndex() {
+        respondWith(listener -> listener.onResponse(new BulkResponse(new BulkItemResponse[0], 1L)));
+        PendingOffsets.Batch batch = startBatch();
+        elasticSearchBulkService.index(buildAnomalyModels(2), batch);
+        batch.close();
+
+        verify(client, times(2)).bulkAsync(any(BulkRequest.class), any());
+        assertFalse(pendingOffsets.takeCompleted().isEmpty());
+    }
 
+    @Test
+    public void testIndexWithItemFailures() {
+        BulkItemResponse.Failure failure = new BulkItemResponse.Failure("anomalies", "doc", null,
+                new IllegalArgumentException("Can't parse anomaly"));
+        BulkItemResponse itemResponse = new BulkItemResponse(0, DocWriteRequest.OpType.INDEX, failure);
+        respondWith(listener -> listener.onResponse(new BulkResponse(new BulkItemResponse[]{itemResponse}, 1L)));
+        PendingOffsets.Batch batch = startBatch();
+        elasticSearchBulkService.index(buildAnomalyModels(1), batch);
+        batch.close();
+
+        // Anomalies Elasticsearch can't index are dropped rather than indexed again.
+        assertFalse(pendingOffsets.hasFailure());
+        assertFalse(pendingOffsets.takeCompleted().isEmpty());
     }
 
     @Test
-    public void testRunError() throws IOException {
-        AnomalyModel anomalyModel = AnomalyModel.newBuilder()
-                .key("key")
-                .value(100)
-                .level("NORMAL")
-                .uuid("test")
-                .timestamp("date")
-                .anomalyThresholds(null)
-                .tags(null)
-                .build();
-        List<AnomalyModel> anomalyModels = new ArrayList<>();
-        anomalyModels.add(anomalyModel);
-        BulkResponse bulkResponse = buildBulkResponseError();
-
-        when(client.bulk(any(BulkRequest.class), any(RequestOptions.class))).thenReturn(bulkResponse);
-        when(client.close()).thenReturn(true);
-        ElasticSearchBulkService elasticSearchBulkService = new ElasticSearchBulkService(anomalyModels);
-        elasticSearchBulkService.setElasticSearchClient(client);
-        elasticSearchBulkService.run();
-        verify(elasticSearchBulkService.getElasticSearchClient(), times(1))
-                .bulk(any(BulkRequest.class), any(RequestOptions.class));
-        verify(bulkResponse,times(1)).buildFailureMessage();
+    public void testIndexError() {
+        respondWith(listener -> listener.onFailure(new IOException("Connection refused")));
+        PendingOffsets.Batch batch = startBatch();
+        elasticSearchBulkService.index(buildAnomalyModels(1), batch);
+        batch.close();
+
+        assertTrue(pendingOffsets.hasFailure());
+        assertTrue(pendingOffsets.takeCompleted().isEmpty());
     }
 
-    public BulkResponse buildBulkResponseHappy() {
+    @Test
+    public void testIndexNothing() {
+        PendingOffsets.Batch batch = startBatch();
+        elasticSearchBulkService.index(Collections.emptyList(), batch);
+        batch.close();
 
-        BulkResponse bulkResponse = mock(BulkResponse.class);
-        when(bulkResponse.hasFailures()).thenReturn(false);
-        return bulkResponse;
+        verify(client, times(0)).bulkAsync(any(BulkRequest.class), any());
+        assertFalse(pendingOffsets.takeCompleted().isEmpty());
     }
 
-    public BulkResponse buildBulkResponseError() {
+    private void respondWith(Consumer<ActionListener<BulkResponse>> response) {
+        doAnswer(invocation -> {
+            ActionListener<BulkResponse> listener = invocation.getArgument(1);
+            response.accept(listener);
+            return null;
+        }).when(client).bulkAsync(any(BulkRequest.class), any());
+    }
 
-        BulkResponse bulkResponse = mock(BulkResponse.class);
-        when(bulkResponse.hasFailures()).thenReturn(true);
-        return bulkResponse;
+    private PendingOffsets.Batch startBatch() {
+        return pendingOffsets.startBatch(
+                Collections.singletonList(AnomaliesProcessorTest.buildConsumerRecord(AnomalyLevel.STRONG)));
     }
 
+    private static List<AnomalyModel> buildAnomalyModels(int no) {
+        List<AnomalyModel> anomalyModels = new ArrayList<>();
+        for (int i = 0; i < no; i++) {
+            anomalyModels.add(AnomalyModel.newBuilder()
+                    .key("key")
+                    .value(100)
+                    .level("STRONG")
+                    .uuid("test")
+                    .timestamp("date")
+                    .anomalyThresholds(null)
+                    .tags(null)
+                    .build());
+        }
+        return anomalyModels;
+    }
 }
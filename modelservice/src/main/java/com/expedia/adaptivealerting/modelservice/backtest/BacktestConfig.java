@@ -0,0 +1,30 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.modelservice.backtest;
+
+import com.expedia.adaptivealerting.anomdetect.backtest.BacktestEngine;
+import com.expedia.adaptivealerting.anomdetect.source.DetectorFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class BacktestConfig {
+
+    @Bean(destroyMethod = "close")
+    public BacktestEngine backtestEngine(DetectorFactory detectorFactory, BacktestProperties properties) {
+        return new BacktestEngine(detectorFactory, properties.getThreads());
+    }
+}
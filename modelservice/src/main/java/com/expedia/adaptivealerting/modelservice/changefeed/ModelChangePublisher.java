@@ -0,0 +1,124 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.modelservice.changefeed;
+
+import com.expedia.adaptivealerting.anomdetect.source.ModelChangeEvent;
+import com.expedia.adaptivealerting.anomdetect.source.ModelChangeEvent.ChangeType;
+import com.expedia.adaptivealerting.anomdetect.source.ModelChangeEvent.EntityType;
+import com.expedia.adaptivealerting.modelservice.domain.mapping.DetectorMapping;
+import com.expedia.adaptivealerting.modelservice.entity.Detector;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+
+import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.notNull;
+
+/**
+ * Publishes detector and mapping changes to the model change topic, from which the ad-mapper and ad-manager apply them
+ * to their caches without waiting for their next poll.
+ * <p>
+ * Publishing is best-effort: a change that fails to publish is logged and left for the consumers' catch-up poll, which
+ * they run periodically even while the feed is live, rather than failing the request that made it.
+ */
+@Slf4j
+public class ModelChangePublisher implements AutoCloseable {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final Producer<String, String> producer;
+    private final String topic;
+
+    /**
+     * @param producer producer with string keys and values, or null to publish nothing
+     * @param topic    model change topic
+     */
+    public ModelChangePublisher(Producer<String, String> producer, String topic) {
+        this.producer = producer;
+        this.topic = topic;
+    }
+
+    public static ModelChangePublisher disabled() {
+        return new ModelChangePublisher(null, null);
+    }
+
+    public boolean isEnabled() {
+        return producer != null;
+    }
+
+    /**
+     * Publishes a detector change.
+     *
+     * @param changeType change type
+     * @param uuid       detector UUID
+     * @param detector   detector as of the change, or null if it was deleted
+     */
+    public void publishDetectorChange(ChangeType changeType, String uuid, Detector detector) {
+        notNull(uuid, "uuid can't be null");
+        publish(EntityType.DETECTOR, changeType, uuid, detector);
+    }
+
+    /**
+     * Publishes a mapping change. Deleted mappings are published with their last document, marked disabled.
+     *
+     * @param changeType      change type
+     * @param detectorMapping mapping as of the change
+     */
+    public void publishMappingChange(ChangeType changeType, DetectorMapping detectorMapping) {
+        notNull(detectorMapping, "detectorMapping can't be null");
+        if (changeType == ChangeType.DELETED) {
+            detectorMapping.setEnabled(false);
+        }
+        publish(EntityType.MAPPING, changeType, detectorMapping.getId(), detectorMapping);
+    }
+
+    @Override
+    public void close() {
+        if (producer != null) {
+            producer.close();
+        }
+    }
+
+    private void publish(EntityType entityType, ChangeType changeType, String id, Object document) {
+        if (producer == null) {
+            return;
+        }
+        val key = ModelChangeEvent.keyOf(entityType, id);
+        val event = new ModelChangeEvent()
+                .setEntityType(entityType)
+                .setChangeType(changeType)
+                .setId(id)
+                .setTimestamp(System.currentTimeMillis())
+                .setDocument(document == null ? null : OBJECT_MAPPER.valueToTree(document));
+        final String value;
+        try {
+            value = OBJECT_MAPPER.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            log.error("Can't serialize model change: key={}", key, e);
+            return;
+        }
+        try {
+            producer.send(new ProducerRecord<>(topic, key, value), (metadata, e) -> {
+                if (e != null) {
+                    log.error("Failed to publish model change. Consumers will pick it up on their next catch-up poll: key={}", key, e);
+                }
+            });
+        } catch (RuntimeException e) {
+            log.error("Failed to publish model change. Consumers will pick it up on their next catch-up poll: key={}", key, e);
+        }
+    }
+}
@@ -28,6 +28,7 @@ import lombok.experimental.Accessors;
 public class PercolatorDetectorMapping {
     // Prefixing variable names with 'aa_' to reserve these fields to be used in ES mappings.
     public static final String AA_PREFIX = "aa_";
+    public static final String ID_KEYWORD = AA_PREFIX + "id";
     public static final String USER_KEYWORD = AA_PREFIX + "user";
     public static final String USER_ID_KEYWORD = "id";
     public static final String DETECTOR_KEYWORD = AA_PREFIX + "detector";
@@ -43,6 +44,9 @@ public class PercolatorDetectorMapping {
     public static final String DETECTOR_CREATED_BY = "createdBy";
     public static final String DETECTOR_CONFIG = "detectorConfig";
 
+    // Copy of the document ID as a keyword, so searches can sort on it without loading _id into fielddata.
+    @JsonProperty(ID_KEYWORD)
+    private String id;
     @JsonProperty(USER_KEYWORD)
     private User user;
     @JsonProperty(DETECTOR_KEYWORD)
@@ -29,6 +29,8 @@ import org.elasticsearch.action.update.UpdateResponse;
 import org.elasticsearch.client.IndicesClient;
 import org.elasticsearch.client.RequestOptions;
 import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.index.reindex.BulkByScrollResponse;
+import org.elasticsearch.index.reindex.UpdateByQueryRequest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
@@ -74,6 +76,10 @@ public class LegacyElasticSearchClient {
         return client.update(updateRequest, options);
     }
 
+    public BulkByScrollResponse updateByQuery(UpdateByQueryRequest updateByQueryRequest, RequestOptions options) throws IOException {
+        return client.updateByQuery(updateByQueryRequest, options);
+    }
+
     public SearchResponse search(SearchRequest searchRequest, RequestOptions options) throws IOException {
         return client.search(searchRequest, options);
     }
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.modelservice.elasticsearch;
+
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.sort.SortOrder;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.isTrue;
+import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.notNull;
+
+/**
+ * Pages through search results with {@code search_after}, fetching the next page only once the previous one has been
+ * consumed. Unlike a plain search this isn't capped at a fixed result size, and unlike a scroll it holds no search
+ * context open on the cluster, so abandoning a stream part-way is harmless.
+ * <p>
+ * {@code search_after} needs a sort key unique per document to never skip or repeat a hit across pages. Callers pass
+ * it as a keyword field with doc values, since sorting on {@code _id} loads it into fielddata.
+ */
+@Slf4j
+public final class SearchAfterPaging {
+
+    /**
+     * Number of hits fetched per round trip.
+     */
+    public static final int DEFAULT_PAGE_SIZE = 500;
+
+    private SearchAfterPaging() {
+    }
+
+    /**
+     * Streams every hit of the given search.
+     *
+     * @param client          Elasticsearch client
+     * @param searchRequest   search request, which gets the tiebreaker field appended to its sort
+     * @param pageSize        number of hits per page
+     * @param tiebreakerField keyword field unique per document
+     * @return stream of all hits
+     */
+    public static Stream<SearchHit> hits(LegacyElasticSearchClient client, SearchRequest searchRequest, int pageSize,
+                                         String tiebreakerField) {
+        return pages(client, searchRequest, pageSize, tiebreakerField).flatMap(response -> Arrays.stream(response.getHits().getHits()));
+    }
+
+    /**
+     * Streams the result pages of the given search, for callers that need per-page response metadata such as how long
+     * each page took.
+     *
+     * @param client          Elasticsearch client
+     * @param searchRequest   search request, which gets the tiebreaker field appended to its sort
+     * @param pageSize        number of hits per page
+     * @param tiebreakerField keyword field unique per document
+     * @return stream of non-empty result pages
+     */
+    public static Stream<SearchResponse> pages(LegacyElasticSearchClient client, SearchRequest searchRequest, int pageSize,
+                                               String tiebreakerField) {
+        notNull(client, "client can't be null");
+        notNull(searchRequest, "searchRequest can't be null");
+        isTrue(pageSize > 0, "Required: pageSize > 0");
+        notNull(tiebreakerField, "tiebreakerField can't be null");
+        if (searchRequest.source() == null) {
+            searchRequest.source(new SearchSourceBuilder());
+        }
+        searchRequest.source()
+                .size(pageSize)
+                .sort(tiebreakerField, SortOrder.ASC);
+        return StreamSupport.stream(new PageSpliterator(client, searchRequest, pageSize), false);
+    }
+
+    private static class PageSpliterator extends Spliterators.AbstractSpliterator<SearchResponse> {
+        private final LegacyElasticSearchClient client;
+        private final SearchRequest searchRequest;
+        private final int pageSize;
+        private boolean lastPage;
+
+        PageSpliterator(LegacyElasticSearchClient client, SearchRequest searchRequest, int pageSize) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.client = client;
+            this.searchRequest = searchRequest;
+            this.pageSize = pageSize;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super SearchResponse> action) {
+            if (lastPage) {
+                return false;
+            }
+            SearchResponse response;
+            try {
+                response = client.search(searchRequest, RequestOptions.DEFAULT);
+            } catch (IOException e) {
+                log.error("Search failed", e);
+                throw new RuntimeException("Search failed", e);
+            }
+            val hits = response.getHits().getHits();
+            lastPage = hits.length < pageSize;
+            if (hits.length == 0) {
+                return false;
+            }
+            if (!lastPage) {
+                searchRequest.source().searchAfter(hits[hits.length - 1].getSortValues());
+            }
+            action.accept(response);
+            return true;
+        }
+    }
+}
@@ -23,6 +23,7 @@ import com.expedia.adaptivealerting.modelservice.web.response.MatchingDetectorsR
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 public interface DetectorMappingRepository {
 
@@ -40,6 +41,15 @@ public interface DetectorMappingRepository {
 
     List<DetectorMapping> findLastUpdated(int timeInSeconds);
 
+    /**
+     * Streaming variant of {@link #findLastUpdated(int)}, which pages through the matching mappings as the stream is
+     * consumed rather than loading them all at once.
+     *
+     * @param timeInSeconds look-back period in seconds
+     * @return stream of mappings modified within the period
+     */
+    Stream<DetectorMapping> streamLastUpdated(int timeInSeconds);
+
     List<DetectorMapping> search(SearchMappingsRequest request);
 
     void disableDetectorMapping(String id);
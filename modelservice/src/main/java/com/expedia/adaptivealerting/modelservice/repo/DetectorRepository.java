@@ -19,8 +19,9 @@ import com.expedia.adaptivealerting.modelservice.entity.Detector;
 import org.springframework.data.elasticsearch.repository.ElasticsearchRepository;
 
 import java.util.List;
+import java.util.stream.Stream;
 
-public interface DetectorRepository extends ElasticsearchRepository<Detector, String> {
+public interface DetectorRepository extends ElasticsearchRepository<Detector, String>, DetectorRepositoryCustom {
 
     Detector save(Detector detector);
 
@@ -36,6 +37,14 @@ public interface DetectorRepository extends ElasticsearchRepository<Detector, St
 
     List<Detector> findByDetectorConfig_TrainingMetaData_DateTrainingNextRunLessThan(String date);
 
+    // Streaming variants of the above. Spring Data backs these with a scroll, so callers must close the stream.
+
+    Stream<Detector> streamByMeta_DateLastUpdatedGreaterThan(String date);
+
+    Stream<Detector> streamByMeta_DateLastAccessedLessThan(String date);
+
+    Stream<Detector> streamByDetectorConfig_TrainingMetaData_DateTrainingNextRunLessThan(String date);
+
     void deleteByUuid(String uuid);
 
     boolean existsById(String primaryKey);
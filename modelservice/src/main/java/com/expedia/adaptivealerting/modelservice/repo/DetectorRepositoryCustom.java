@@ -0,0 +1,33 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.modelservice.repo;
+
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * Detector repository operations that Spring Data can't derive, implemented directly against Elasticsearch.
+ */
+public interface DetectorRepositoryCustom {
+
+    /**
+     * Sets the last used date of several detectors in a single bulk request. Detectors that no longer exist are
+     * skipped.
+     *
+     * @param lastUsedDates detector UUIDs and the dates they were last used at
+     */
+    void updateDetectorsLastUsed(Map<String, Date> lastUsedDates);
+}
@@ -19,6 +19,7 @@ import com.expedia.adaptivealerting.anomdetect.source.DetectorDocument;
 
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 @Deprecated
 public interface LegacyDetectorRepository {
@@ -47,4 +48,13 @@ public interface LegacyDetectorRepository {
     List<DetectorDocument> getLastUpdatedDetectors(long interval);
 
     List<DetectorDocument> getLastUpdatedDetectors(String fromDate, String toDate);
+
+    /**
+     * Streaming variant of {@link #getLastUpdatedDetectors(long)}, which pages through the matching detectors as the
+     * stream is consumed rather than loading them all at once.
+     *
+     * @param interval look-back period in seconds
+     * @return stream of detectors updated within the period
+     */
+    Stream<DetectorDocument> streamLastUpdatedDetectors(long interval);
 }
@@ -16,10 +16,10 @@
 package com.expedia.adaptivealerting.modelservice.repo.impl;
 
 import com.expedia.adaptivealerting.anomdetect.detect.Detector;
+import com.expedia.adaptivealerting.anomdetect.detect.outlier.BatchOutlierDetector;
 import com.expedia.adaptivealerting.anomdetect.detect.outlier.OutlierDetectorResult;
 import com.expedia.adaptivealerting.anomdetect.source.DetectorDocument;
 import com.expedia.adaptivealerting.anomdetect.source.DetectorFactory;
-import com.expedia.adaptivealerting.anomdetect.util.MetricUtil;
 import com.expedia.adaptivealerting.modelservice.metricsource.MetricSource;
 import com.expedia.adaptivealerting.modelservice.repo.AnomalyRepository;
 import com.expedia.adaptivealerting.modelservice.web.request.AnomalyRequest;
@@ -48,16 +48,21 @@ public class AnomalyRepositoryImpl implements AnomalyRepository {
 
     @Override
     public List<OutlierDetectorResult> getAnomalies(AnomalyRequest request) {
-        val metricDef = MetricUtil.metricDefinition();
         val detector = buildDetector(request);
 
         val anomalyResults = new ArrayList<OutlierDetectorResult>();
         metricSources.forEach(metricSource -> {
             val results = metricSource.getMetricData(request.getMetricTags());
-            for (val result : results) {
-                val metricData = MetricUtil.metricData(metricDef, result.getDataPoint(), result.getEpochSecond());
-                val anomalyResult = (OutlierDetectorResult) detector.detect(metricData);
-                anomalyResults.add(anomalyResult);
+            val size = results.size();
+            val values = new double[size];
+            val epochSeconds = new long[size];
+            for (int i = 0; i < size; i++) {
+                values[i] = results.get(i).getDataPoint();
+                epochSeconds[i] = results.get(i).getEpochSecond();
+            }
+            val batchResult = BatchOutlierDetector.detectAll(detector, values, epochSeconds);
+            for (int i = 0; i < size; i++) {
+                anomalyResults.add(batchResult.toOutlierDetectorResult(i));
             }
         });
         return anomalyResults;
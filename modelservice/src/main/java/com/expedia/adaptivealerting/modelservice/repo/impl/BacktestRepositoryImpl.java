@@ -0,0 +1,64 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.modelservice.repo.impl;
+
+import com.expedia.adaptivealerting.anomdetect.backtest.BacktestEngine;
+import com.expedia.adaptivealerting.anomdetect.backtest.BacktestResult;
+import com.expedia.adaptivealerting.anomdetect.backtest.BacktestSeries;
+import com.expedia.adaptivealerting.modelservice.metricsource.MetricSource;
+import com.expedia.adaptivealerting.modelservice.repo.BacktestRepository;
+import com.expedia.adaptivealerting.modelservice.web.request.BacktestRequest;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Service to backtest detector documents against metrics fetched from the metric sources.
+ */
+@Service
+@Slf4j
+public class BacktestRepositoryImpl implements BacktestRepository {
+
+    @Autowired
+    private List<? extends MetricSource> metricSources;
+
+    @Autowired
+    private BacktestEngine backtestEngine;
+
+    @Override
+    public List<BacktestResult> backtest(BacktestRequest request) {
+        val series = new ArrayList<BacktestSeries>();
+        for (val metricTags : request.getMetricTags()) {
+            for (val metricSource : metricSources) {
+                val results = metricSource.getMetricData(metricTags);
+                val size = results.size();
+                val values = new double[size];
+                val epochSeconds = new long[size];
+                for (int i = 0; i < size; i++) {
+                    values[i] = results.get(i).getDataPoint();
+                    epochSeconds[i] = results.get(i).getEpochSecond();
+                }
+                series.add(new BacktestSeries(metricTags, values, epochSeconds));
+            }
+        }
+        log.info("Backtesting {} detectors against {} series", request.getDetectors().size(), series.size());
+        return backtestEngine.run(request.getDetectors(), series);
+    }
+}
@@ -18,11 +18,14 @@ package com.expedia.adaptivealerting.modelservice.repo.impl;
 import com.codahale.metrics.Counter;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.Timer;
+import com.expedia.adaptivealerting.anomdetect.source.ModelChangeEvent.ChangeType;
+import com.expedia.adaptivealerting.modelservice.changefeed.ModelChangePublisher;
 import com.expedia.adaptivealerting.modelservice.domain.mapping.ConsumerDetectorMapping;
 import com.expedia.adaptivealerting.modelservice.exception.RecordNotFoundException;
 import com.expedia.adaptivealerting.modelservice.domain.percolator.PercolatorDetectorMapping;
 import com.expedia.adaptivealerting.modelservice.elasticsearch.LegacyElasticSearchClient;
 import com.expedia.adaptivealerting.modelservice.elasticsearch.ElasticSearchProperties;
+import com.expedia.adaptivealerting.modelservice.elasticsearch.SearchAfterPaging;
 import com.expedia.adaptivealerting.modelservice.domain.mapping.DetectorMapping;
 import com.expedia.adaptivealerting.modelservice.repo.DetectorMappingRepository;
 import com.expedia.adaptivealerting.modelservice.web.request.CreateDetectorMappingRequest;
@@ -39,6 +42,7 @@ import org.elasticsearch.action.delete.DeleteRequest;
 import org.elasticsearch.action.get.GetRequest;
 import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.client.RequestOptions;
 import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.document.DocumentField;
@@ -57,16 +61,19 @@ import org.springframework.stereotype.Service;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.util.UUID;
 
+import static com.expedia.adaptivealerting.modelservice.domain.percolator.PercolatorDetectorMapping.ID_KEYWORD;
 import static com.expedia.adaptivealerting.modelservice.domain.percolator.PercolatorDetectorMapping.LAST_MOD_TIME_KEYWORD;
+import static com.expedia.adaptivealerting.modelservice.elasticsearch.SearchAfterPaging.DEFAULT_PAGE_SIZE;
 
 @Service
 @Slf4j
@@ -86,6 +93,9 @@ public class DetectorMappingRepositoryImpl implements DetectorMappingRepository
     @Autowired
     private ObjectMapperUtil objectMapperUtil;
 
+    @Autowired
+    private ModelChangePublisher modelChangePublisher;
+
     private final Timer delayTimer;
     private final Counter exceptionCount;
 
@@ -106,9 +116,11 @@ public class DetectorMappingRepositoryImpl implements DetectorMappingRepository
         elasticsearchUtil.updateIndexMappings(newFieldMappings, indexName, docType);
 
         // Index
-        val indexRequest = new IndexRequest(indexName, docType);
+        val id = UUID.randomUUID().toString();
+        val indexRequest = new IndexRequest(indexName, docType, id);
         val now = System.currentTimeMillis();
         val mapping = new PercolatorDetectorMapping()
+                .setId(id)
                 .setUser(request.getUser())
                 .setConsumerDetectorMapping(request.getConsumerDetectorMapping())
                 .setQuery(QueryUtil.buildQuery(request.getExpression()))
@@ -116,7 +128,11 @@ public class DetectorMappingRepositoryImpl implements DetectorMappingRepository
                 .setLastModifiedTimeInMillis(now)
                 .setCreatedTimeInMillis(now);
         val mappingJson = objectMapperUtil.convertToString(mapping);
-        return elasticsearchUtil.index(indexRequest, mappingJson).getId();
+        elasticsearchUtil.index(indexRequest, mappingJson);
+        if (modelChangePublisher.isEnabled()) {
+            modelChangePublisher.publishMappingChange(ChangeType.CREATED, getDetectorMapping(mappingJson, id, Optional.empty()));
+        }
+        return id;
     }
 
     @Override
@@ -138,9 +154,6 @@ public class DetectorMappingRepositoryImpl implements DetectorMappingRepository
 
             SearchSourceBuilder searchSourceBuilder = elasticsearchUtil.getSourceBuilder(boolQueryBuilder);
             searchSourceBuilder.timeout(new TimeValue(elasticSearchProperties.getConfig().getConnectionTimeout()));
-            //FIXME setting default result set size to 500.
-            // This is for returning detectors matching for set of metrics
-            searchSourceBuilder.size(500);
             return getDetectorMappings(searchSourceBuilder, tagsList);
         } catch (IOException e) {
             log.error("Error ES lookup", e);
@@ -163,19 +176,22 @@ public class DetectorMappingRepositoryImpl implements DetectorMappingRepository
 
     @Override
     public List<DetectorMapping> findLastUpdated(int timeInSeconds) {
+        return streamLastUpdated(timeInSeconds).collect(Collectors.toList());
+    }
+
+    @Override
+    public Stream<DetectorMapping> streamLastUpdated(int timeInSeconds) {
         val sourceBuilder = new SearchSourceBuilder();
         val boolQuery = QueryBuilders.boolQuery();
-        val fromTime = System.currentTimeMillis() - timeInSeconds * 1000;
+        val fromTime = System.currentTimeMillis() - timeInSeconds * 1000L;
         boolQuery.must(new RangeQueryBuilder(LAST_MOD_TIME_KEYWORD).gt(fromTime));
         sourceBuilder.query(boolQuery);
-        //FIXME setting default result set size to 500.
-        sourceBuilder.size(500);
         val searchRequest =
                 new SearchRequest()
                         .source(sourceBuilder)
                         .indices(elasticSearchProperties.getIndexName())
                         .types(elasticSearchProperties.getDocType());
-        return getDetectorMappings(searchRequest);
+        return streamDetectorMappings(searchRequest);
     }
 
     @Override
@@ -189,12 +205,11 @@ public class DetectorMappingRepositoryImpl implements DetectorMappingRepository
         }
 
         val searchSourceBuilder = elasticsearchUtil.getSourceBuilder(query);
-        //FIXME setting default result set size to 500 until we have pagination.
-        searchSourceBuilder.size(500);
         SearchRequest searchRequest = elasticsearchUtil.getSearchRequest(searchSourceBuilder, elasticSearchProperties.getIndexName(), elasticSearchProperties.getDocType());
-        List<DetectorMapping> result = getDetectorMappings(searchRequest);
         //FIXME - move this condition to search query.
-        return result.stream().filter(detectorMapping -> detectorMapping.isEnabled()).collect(Collectors.toList());
+        return streamDetectorMappings(searchRequest)
+                .filter(detectorMapping -> detectorMapping.isEnabled())
+                .collect(Collectors.toList());
     }
 
     @Override
@@ -202,6 +217,7 @@ public class DetectorMappingRepositoryImpl implements DetectorMappingRepository
         val detectorMapping = findDetectorMapping(id);
         if (detectorMapping.isEnabled()) {
             final PercolatorDetectorMapping percolatorDetectorMapping = new PercolatorDetectorMapping()
+                    .setId(id)
                     .setUser(detectorMapping.getUser())
                     .setConsumerDetectorMapping(detectorMapping.getDetector())
                     .setQuery(QueryUtil.buildQuery(detectorMapping.getExpression()))
@@ -209,11 +225,16 @@ public class DetectorMappingRepositoryImpl implements DetectorMappingRepository
                     .setLastModifiedTimeInMillis(System.currentTimeMillis())
                     .setCreatedTimeInMillis(detectorMapping.getCreatedTimeInMillis());
             updateDetectorMapping(id, percolatorDetectorMapping);
+            modelChangePublisher.publishMappingChange(ChangeType.DISABLED, detectorMapping
+                    .setEnabled(false)
+                    .setLastModifiedTimeInMillis(percolatorDetectorMapping.getLastModifiedTimeInMillis()));
         }
     }
 
     @Override
     public void deleteDetectorMapping(String id) {
+        // Deleted mappings are published with their last document, so it has to be read before it's gone.
+        val lastDetectorMapping = modelChangePublisher.isEnabled() ? findExistingDetectorMapping(id) : null;
         val deleteRequest = new DeleteRequest(elasticSearchProperties.getIndexName(), elasticSearchProperties.getDocType(), id);
         try {
             val deleteResponse = legacyElasticSearchClient.delete(deleteRequest, RequestOptions.DEFAULT);
@@ -224,6 +245,9 @@ public class DetectorMappingRepositoryImpl implements DetectorMappingRepository
             log.error(String.format("Deleting mapping %s failed", id), e);
             throw new RuntimeException(e);
         }
+        if (lastDetectorMapping != null) {
+            modelChangePublisher.publishMappingChange(ChangeType.DELETED, lastDetectorMapping);
+        }
     }
 
     @Override
@@ -240,19 +264,26 @@ public class DetectorMappingRepositoryImpl implements DetectorMappingRepository
         }
     }
 
-    private List<DetectorMapping> getDetectorMappings(SearchRequest searchRequest) {
+    private DetectorMapping findExistingDetectorMapping(String id) {
+        val getRequest = new GetRequest(elasticSearchProperties.getIndexName(),
+                elasticSearchProperties.getDocType(), id);
         try {
-            val searchResponse = legacyElasticSearchClient.search(searchRequest, RequestOptions.DEFAULT);
-            val hits = searchResponse.getHits();
-            return Arrays.asList(hits.getHits()).stream()
-                    .map(hit -> getDetectorMapping(hit.getSourceAsString(), hit.getId(), Optional.empty()))
-                    .collect(Collectors.toList());
+            val response = legacyElasticSearchClient.get(getRequest, RequestOptions.DEFAULT);
+            if (!response.isExists()) {
+                throw new RecordNotFoundException("Invalid request: " + id);
+            }
+            return getDetectorMapping(response.getSourceAsString(), response.getId(), Optional.empty());
         } catch (IOException e) {
-            log.error("Search failed", e);
-            throw new RuntimeException("Search failed", e);
+            log.error(String.format("Get mapping %s failed", id), e);
+            throw new RuntimeException(e);
         }
     }
 
+    private Stream<DetectorMapping> streamDetectorMappings(SearchRequest searchRequest) {
+        return SearchAfterPaging.hits(legacyElasticSearchClient, searchRequest, DEFAULT_PAGE_SIZE, ID_KEYWORD)
+                .map(hit -> getDetectorMapping(hit.getSourceAsString(), hit.getId(), Optional.empty()));
+    }
+
     private NestedQueryBuilder detectorIdQuery(SearchMappingsRequest searchMappingsRequest) {
         return QueryBuilders.nestedQuery(PercolatorDetectorMapping.DETECTOR_KEYWORD,
                 QueryBuilders.boolQuery().must(QueryBuilders.matchPhraseQuery(
@@ -270,21 +301,25 @@ public class DetectorMappingRepositoryImpl implements DetectorMappingRepository
     }
 
     private MatchingDetectorsResponse getDetectorMappings(SearchSourceBuilder searchSourceBuilder,
-                                                          List<Map<String, String>> tagsList) throws IOException {
+                                                          List<Map<String, String>> tagsList) {
         val searchRequest = new SearchRequest()
                 .source(searchSourceBuilder)
                 .indices(elasticSearchProperties.getIndexName());
 
-        val searchResponse = legacyElasticSearchClient.search(searchRequest, RequestOptions.DEFAULT);
-        delayTimer.update(searchResponse.getTook().getMillis(), TimeUnit.MILLISECONDS);
-        val hits = searchResponse.getHits().getHits();
-
-        List<DetectorMapping> detectorMappings = Arrays.asList(hits).stream()
-                .map(hit -> getDetectorMapping(hit.getSourceAsString(), hit.getId(), Optional.of(hit.getFields())))
-                // .filter(detectorMapping -> detectorMapping.isEnabled()) //FIXME - move this condition into search query
-                .collect(Collectors.toList());
-        return convertToMatchingDetectorsResponse(new DetectorMatchResponse(detectorMappings,
-                searchResponse.getTook().getMillis()));
+        // A large batch of metrics can match more mappings than fit in one page, so page through all of them.
+        List<DetectorMapping> detectorMappings = new ArrayList<>();
+        long tookMillis = 0L;
+        Iterator<SearchResponse> pages =
+                SearchAfterPaging.pages(legacyElasticSearchClient, searchRequest, DEFAULT_PAGE_SIZE, ID_KEYWORD).iterator();
+        while (pages.hasNext()) {
+            val searchResponse = pages.next();
+            tookMillis += searchResponse.getTook().getMillis();
+            for (val hit : searchResponse.getHits().getHits()) {
+                detectorMappings.add(getDetectorMapping(hit.getSourceAsString(), hit.getId(), Optional.of(hit.getFields())));
+            }
+        }
+        delayTimer.update(tookMillis, TimeUnit.MILLISECONDS);
+        return convertToMatchingDetectorsResponse(new DetectorMatchResponse(detectorMappings, tookMillis));
     }
 
     private DetectorMapping getDetectorMapping(String json, String id, Optional<Map<String, DocumentField>> documentFieldMap) {
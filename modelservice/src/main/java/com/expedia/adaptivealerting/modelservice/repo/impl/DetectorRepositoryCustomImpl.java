@@ -0,0 +1,72 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.modelservice.repo.impl;
+
+import com.expedia.adaptivealerting.modelservice.entity.Detector;
+import com.expedia.adaptivealerting.modelservice.repo.DetectorRepositoryCustom;
+import com.expedia.adaptivealerting.modelservice.util.DateUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.action.update.UpdateRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.elasticsearch.ElasticsearchException;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.query.UpdateQuery;
+import org.springframework.data.elasticsearch.core.query.UpdateQueryBuilder;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Picked up by Spring Data as the implementation of {@link DetectorRepositoryCustom}, which
+ * {@link com.expedia.adaptivealerting.modelservice.repo.DetectorRepository} extends.
+ */
+@Slf4j
+public class DetectorRepositoryCustomImpl implements DetectorRepositoryCustom {
+
+    @Autowired
+    private ElasticsearchOperations elasticsearchOperations;
+
+    @Override
+    public void updateDetectorsLastUsed(Map<String, Date> lastUsedDates) {
+        if (lastUsedDates.isEmpty()) {
+            return;
+        }
+
+        // Detector documents are indexed by their UUID, so partial updates can address them directly.
+        List<UpdateQuery> updateQueries = lastUsedDates.entrySet().stream()
+                .map(entry -> new UpdateQueryBuilder()
+                        .withId(entry.getKey())
+                        .withClass(Detector.class)
+                        .withUpdateRequest(new UpdateRequest().doc(lastUsedDoc(entry.getValue())))
+                        .build())
+                .collect(Collectors.toList());
+        try {
+            elasticsearchOperations.bulkUpdate(updateQueries);
+        } catch (ElasticsearchException e) {
+            // Typically detectors deleted since they were last used. The other updates still went through.
+            log.warn("Couldn't update last used date of {} out of {} detectors: {}",
+                    e.getFailedDocuments().size(), lastUsedDates.size(), e.getFailedDocuments());
+        }
+    }
+
+    private static Map<String, Object> lastUsedDoc(Date lastUsedDate) {
+        String dateLastAccessed = DateUtil.toUtcDateString(lastUsedDate.toInstant());
+        return Collections.singletonMap("meta", Collections.singletonMap("dateLastAccessed", dateLastAccessed));
+    }
+}
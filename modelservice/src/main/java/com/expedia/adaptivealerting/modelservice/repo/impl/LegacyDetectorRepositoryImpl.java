@@ -20,6 +20,7 @@ import com.expedia.adaptivealerting.modelservice.exception.RecordNotFoundExcepti
 import com.expedia.adaptivealerting.modelservice.repo.LegacyDetectorRepository;
 import com.expedia.adaptivealerting.modelservice.elasticsearch.LegacyElasticSearchClient;
 import com.expedia.adaptivealerting.modelservice.elasticsearch.ElasticsearchUtil;
+import com.expedia.adaptivealerting.modelservice.elasticsearch.SearchAfterPaging;
 import com.expedia.adaptivealerting.modelservice.util.DateUtil;
 import com.expedia.adaptivealerting.modelservice.util.ObjectMapperUtil;
 import com.expedia.adaptivealerting.modelservice.util.RequestValidator;
@@ -30,12 +31,10 @@ import lombok.val;
 import org.elasticsearch.action.delete.DeleteRequest;
 import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.search.SearchRequest;
-import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.action.update.UpdateRequest;
 import org.elasticsearch.client.RequestOptions;
 import org.elasticsearch.common.xcontent.XContentType;
 import org.elasticsearch.index.query.QueryBuilders;
-import org.elasticsearch.search.SearchHit;
 import org.slf4j.MDC;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -45,15 +44,17 @@ import java.io.IOException;
 import java.lang.reflect.Field;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
-import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.isNull;
 import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.notNull;
+import static com.expedia.adaptivealerting.modelservice.domain.percolator.PercolatorDetectorMapping.DETECTOR_ID_KEYWORD;
 
 @Slf4j
 @Service
@@ -61,7 +62,6 @@ import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.notNull;
 public class LegacyDetectorRepositoryImpl implements LegacyDetectorRepository {
     private static final String DETECTOR_INDEX = "detectors";
     private static final String DETECTOR_DOC_TYPE = "detector";
-    private static final int DEFAULT_ES_RESULTS_SIZE = 500;
 
     @Autowired
     private LegacyElasticSearchClient legacyElasticSearchClient;
@@ -193,19 +193,19 @@ public class LegacyDetectorRepositoryImpl implements LegacyDetectorRepository {
     public DetectorDocument findByUuid(String uuid) {
         MDC.put("DetectorUuid", uuid);
         val queryBuilder = QueryBuilders.termQuery("uuid", uuid);
-        val searchSourceBuilder = elasticsearchUtil.getSourceBuilder(queryBuilder).size(DEFAULT_ES_RESULTS_SIZE);
+        val searchSourceBuilder = elasticsearchUtil.getSourceBuilder(queryBuilder);
         val searchRequest = elasticsearchUtil.getSearchRequest(searchSourceBuilder, DETECTOR_INDEX, DETECTOR_DOC_TYPE);
-        val detectors = getDetectorsFromElasticSearch(searchRequest);
+        val detector = streamDetectorsFromElasticSearch(searchRequest).findFirst();
         MDC.remove("DetectorUuid");
-        return detectors.isEmpty() ? null : detectors.get(0);
+        return detector.orElse(null);
     }
 
     @Override
     public List<DetectorDocument> findByCreatedBy(String user) {
         val queryBuilder = QueryBuilders.termQuery("createdBy", user);
-        val searchSourceBuilder = elasticsearchUtil.getSourceBuilder(queryBuilder).size(DEFAULT_ES_RESULTS_SIZE);
+        val searchSourceBuilder = elasticsearchUtil.getSourceBuilder(queryBuilder);
         val searchRequest = elasticsearchUtil.getSearchRequest(searchSourceBuilder, DETECTOR_INDEX, DETECTOR_DOC_TYPE);
-        return getDetectorsFromElasticSearch(searchRequest);
+        return streamDetectorsFromElasticSearch(searchRequest).collect(Collectors.toList());
     }
 
     @Override
@@ -264,41 +264,39 @@ public class LegacyDetectorRepositoryImpl implements LegacyDetectorRepository {
 
     @Override
     public List<DetectorDocument> getLastUpdatedDetectors(long interval) {
+        return streamLastUpdatedDetectors(interval).collect(Collectors.toList());
+    }
+
+    @Override
+    public List<DetectorDocument> getLastUpdatedDetectors(String fromDate, String toDate) {
+        return streamLastUpdatedDetectors(fromDate, toDate).collect(Collectors.toList());
+    }
+
+    @Override
+    public Stream<DetectorDocument> streamLastUpdatedDetectors(long interval) {
         // Replaced Lombok val with explicit types here because the Maven compiler plugin was breaking under
         // OpenJDK 12. Not sure what the issue was but this fixed it. [WLW]
         Instant now = DateUtil.now().toInstant();
         String fromDate = DateUtil.toUtcDateString((now.minus(interval, ChronoUnit.SECONDS)));
         String toDate = DateUtil.toUtcDateString(now);
-        return getLastUpdatedDetectors(fromDate, toDate);
+        return streamLastUpdatedDetectors(fromDate, toDate);
     }
 
-    @Override
-    public List<DetectorDocument> getLastUpdatedDetectors(String fromDate, String toDate) {
+    private Stream<DetectorDocument> streamLastUpdatedDetectors(String fromDate, String toDate) {
         val queryBuilder = QueryBuilders.rangeQuery("lastUpdateTimestamp").from(fromDate).to(toDate);
-        val searchSourceBuilder = elasticsearchUtil.getSourceBuilder(queryBuilder).size(DEFAULT_ES_RESULTS_SIZE);
+        val searchSourceBuilder = elasticsearchUtil.getSourceBuilder(queryBuilder);
         val searchRequest = elasticsearchUtil.getSearchRequest(searchSourceBuilder, DETECTOR_INDEX, DETECTOR_DOC_TYPE);
-        return getDetectorsFromElasticSearch(searchRequest);
+        return streamDetectorsFromElasticSearch(searchRequest);
     }
 
-    private List<DetectorDocument> getDetectorsFromElasticSearch(SearchRequest searchRequest) {
-        SearchResponse response;
-        try {
-            response = legacyElasticSearchClient.search(searchRequest, RequestOptions.DEFAULT);
-        } catch (IOException e) {
-            log.error("Error ES lookup", e);
-            throw new RuntimeException(e);
-        }
-
-        SearchHit[] hits = response.getHits().getHits();
-        List<DetectorDocument> detectors = new ArrayList<>();
-        for (val hit : hits) {
-
-            val detector = (DetectorDocument) objectMapperUtil.convertToObject(hit.getSourceAsString(), new TypeReference<DetectorDocument>() {
-            });
-            val newElasticsearchDetector = getElasticSearchDetector(detector);
-            detectors.add(newElasticsearchDetector);
-        }
-        return detectors;
+    private Stream<DetectorDocument> streamDetectorsFromElasticSearch(SearchRequest searchRequest) {
+        return SearchAfterPaging.hits(legacyElasticSearchClient, searchRequest, SearchAfterPaging.DEFAULT_PAGE_SIZE,
+                DETECTOR_ID_KEYWORD)
+                .map(hit -> {
+                    val detector = (DetectorDocument) objectMapperUtil.convertToObject(hit.getSourceAsString(), new TypeReference<DetectorDocument>() {
+                    });
+                    return getElasticSearchDetector(detector);
+                });
     }
 
     private DetectorDocument getElasticSearchDetector(DetectorDocument detector) {
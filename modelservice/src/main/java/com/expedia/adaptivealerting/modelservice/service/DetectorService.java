@@ -18,7 +18,9 @@ package com.expedia.adaptivealerting.modelservice.service;
 import com.expedia.adaptivealerting.modelservice.entity.Detector;
 
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 public interface DetectorService {
 
@@ -33,6 +35,14 @@ public interface DetectorService {
 
     Detector findByUuid(String uuid);
 
+    /**
+     * Finds several detectors in one lookup. UUIDs without a detector are skipped.
+     *
+     * @param uuids detector UUIDs
+     * @return the detectors found, in no particular order
+     */
+    List<Detector> findByUuids(List<String> uuids);
+
     List<Detector> findByCreatedBy(String user);
 
     void toggleDetector(String uuid, Boolean enabled);
@@ -45,10 +55,25 @@ public interface DetectorService {
 
     List<Detector> getDetectorsToBeTrained(long timestampMs);
 
+    // The stream* variants fetch detectors in batches as the stream is consumed. Callers must close the stream.
+
+    Stream<Detector> streamLastUpdatedDetectors(long interval);
+
+    Stream<Detector> streamLastUsedDetectors(int noOfDays);
+
+    Stream<Detector> streamDetectorsToBeTrained(long timestampMs);
+
     void updateDetector(String uuid, Detector detector);
 
     void updateDetectorLastUsed(String uuid);
 
+    /**
+     * Sets the last used time of several detectors at once.
+     *
+     * @param lastUsedTimes detector UUIDs and the epoch milliseconds they were last used at
+     */
+    void updateDetectorsLastUsed(Map<String, Long> lastUsedTimes);
+
     void updateDetectorTrainingTime(String uuid, long nextRun);
 
     void deleteDetector(String uuid);
@@ -15,6 +15,8 @@
  */
 package com.expedia.adaptivealerting.modelservice.service;
 
+import com.expedia.adaptivealerting.anomdetect.source.ModelChangeEvent.ChangeType;
+import com.expedia.adaptivealerting.modelservice.changefeed.ModelChangePublisher;
 import com.expedia.adaptivealerting.modelservice.entity.Detector;
 import com.expedia.adaptivealerting.modelservice.entity.Detector.DetectorConfig;
 import com.expedia.adaptivealerting.modelservice.entity.Detector.TrainingMetaData;
@@ -30,19 +32,30 @@ import org.springframework.stereotype.Service;
 
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.isNull;
+import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.isTrue;
 import static com.expedia.adaptivealerting.anomdetect.util.AssertUtil.notNull;
 
 @Service
 public class DetectorServiceImpl implements DetectorService {
+    static final int MAX_FIND_BY_UUIDS = 1000;
 
     @Autowired
     private DetectorRepository repository;
 
+    @Autowired
+    private ModelChangePublisher modelChangePublisher;
+
     @Override
     public UUID createDetector(Detector detector) {
         notNull(detector, "detectorDto can't be null");
@@ -54,6 +67,7 @@ public class DetectorServiceImpl implements DetectorService {
         detector.setMeta(DetectorDataUtil.buildNewDetectorMeta(detector));
         RequestValidator.validateDetector(detector);
         repository.save(detector);
+        modelChangePublisher.publishDetectorChange(ChangeType.CREATED, uuid.toString(), detector);
         return uuid;
     }
 
@@ -66,6 +80,20 @@ public class DetectorServiceImpl implements DetectorService {
         return detector;
     }
 
+    @Override
+    public List<Detector> findByUuids(List<String> uuids) {
+        notNull(uuids, "uuids can't be null");
+        isTrue(uuids.size() <= MAX_FIND_BY_UUIDS, "Required: uuids.size() <= " + MAX_FIND_BY_UUIDS);
+        // Detectors are indexed under their UUID, so this is a single multi-get rather than a search.
+        List<String> ids = uuids.stream()
+            .map(uuid -> UUID.fromString(uuid).toString())
+            .distinct()
+            .collect(Collectors.toList());
+        List<Detector> detectors = new ArrayList<>(ids.size());
+        repository.findAllById(ids).forEach(detectors::add);
+        return detectors;
+    }
+
     @Override
     public List<Detector> findByCreatedBy(String user) {
         List<Detector> detectors = repository.findByMeta_CreatedBy(user);
@@ -80,6 +108,8 @@ public class DetectorServiceImpl implements DetectorService {
         Detector detector = repository.findByUuid(uuid);
         detector.setEnabled(enabled);
         repository.save(detector);
+        modelChangePublisher.publishDetectorChange(
+            Boolean.TRUE.equals(enabled) ? ChangeType.UPDATED : ChangeType.DISABLED, uuid, detector);
     }
 
     @Override
@@ -87,27 +117,37 @@ public class DetectorServiceImpl implements DetectorService {
         Detector detector = repository.findByUuid(uuid);
         detector.setTrusted(trusted);
         repository.save(detector);
+        modelChangePublisher.publishDetectorChange(ChangeType.UPDATED, uuid, detector);
     }
 
     @Override
     public List<Detector> getLastUpdatedDetectors(long interval) {
-        val now = DateUtil.now().toInstant();
-        val fromDate = DateUtil.toUtcDateString((now.minus(interval, ChronoUnit.SECONDS)));
-        return repository.findByMeta_DateLastUpdatedGreaterThan(fromDate);
+        return repository.findByMeta_DateLastUpdatedGreaterThan(lastUpdatedFromDate(interval));
     }
 
     @Override
     public List<Detector> getLastUsedDetectors(int noOfDays) {
-        val now = DateUtil.now().toInstant();
-        val fromDate = DateUtil.toUtcDateString((now.minus(noOfDays, ChronoUnit.DAYS)));
-        return repository.findByMeta_DateLastAccessedLessThan(fromDate);
+        return repository.findByMeta_DateLastAccessedLessThan(lastUsedFromDate(noOfDays));
     }
 
     @Override
     public List<Detector> getDetectorsToBeTrained(long timestampMs) {
-        val trainInstant = Instant.ofEpochMilli(timestampMs);
-        val date = DateUtil.toUtcDateString(trainInstant);
-        return repository.findByDetectorConfig_TrainingMetaData_DateTrainingNextRunLessThan(date);
+        return repository.findByDetectorConfig_TrainingMetaData_DateTrainingNextRunLessThan(trainingDate(timestampMs));
+    }
+
+    @Override
+    public Stream<Detector> streamLastUpdatedDetectors(long interval) {
+        return repository.streamByMeta_DateLastUpdatedGreaterThan(lastUpdatedFromDate(interval));
+    }
+
+    @Override
+    public Stream<Detector> streamLastUsedDetectors(int noOfDays) {
+        return repository.streamByMeta_DateLastAccessedLessThan(lastUsedFromDate(noOfDays));
+    }
+
+    @Override
+    public Stream<Detector> streamDetectorsToBeTrained(long timestampMs) {
+        return repository.streamByDetectorConfig_TrainingMetaData_DateTrainingNextRunLessThan(trainingDate(timestampMs));
     }
 
     @Override
@@ -123,6 +163,7 @@ public class DetectorServiceImpl implements DetectorService {
         detectorToBeUpdated.setMeta(DetectorDataUtil.buildLastUpdatedDetectorMeta(detector));
         RequestValidator.validateDetector(detectorToBeUpdated);
         repository.save(detectorToBeUpdated);
+        modelChangePublisher.publishDetectorChange(ChangeType.UPDATED, uuid, detectorToBeUpdated);
     }
 
     @Override
@@ -136,6 +177,17 @@ public class DetectorServiceImpl implements DetectorService {
         repository.save(detectorToBeUpdated);
     }
 
+    @Override
+    public void updateDetectorsLastUsed(Map<String, Long> lastUsedTimes) {
+        notNull(lastUsedTimes, "lastUsedTimes can't be null");
+        Map<String, Date> lastUsedDates = new HashMap<>();
+        lastUsedTimes.forEach((uuid, lastUsedTime) -> {
+            notNull(lastUsedTime, "lastUsedTime can't be null");
+            lastUsedDates.put(UUID.fromString(uuid).toString(), new Date(lastUsedTime));
+        });
+        repository.updateDetectorsLastUsed(lastUsedDates);
+    }
+
     @Override
     public void updateDetectorTrainingTime(String uuid, long nextRun) {
         notNull(uuid, "uuid can't be null");
@@ -150,6 +202,21 @@ public class DetectorServiceImpl implements DetectorService {
     @Override
     public void deleteDetector(String uuid) {
         repository.deleteByUuid(uuid);
+        modelChangePublisher.publishDetectorChange(ChangeType.DELETED, uuid, null);
+    }
+
+    private static String lastUpdatedFromDate(long interval) {
+        val now = DateUtil.now().toInstant();
+        return DateUtil.toUtcDateString((now.minus(interval, ChronoUnit.SECONDS)));
+    }
+
+    private static String lastUsedFromDate(int noOfDays) {
+        val now = DateUtil.now().toInstant();
+        return DateUtil.toUtcDateString((now.minus(noOfDays, ChronoUnit.DAYS)));
+    }
+
+    private static String trainingDate(long timestampMs) {
+        return DateUtil.toUtcDateString(Instant.ofEpochMilli(timestampMs));
     }
 
 }
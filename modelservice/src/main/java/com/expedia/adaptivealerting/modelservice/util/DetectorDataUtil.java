@@ -23,6 +23,7 @@ import lombok.val;
 
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Objects;
 import java.util.Optional;
 
 public class DetectorDataUtil {
@@ -54,6 +55,25 @@ public class DetectorDataUtil {
         return (metaBlock == null) ? new Meta() : detector.getMeta();
     }
 
+    /**
+     * Builds a weak entity tag for the detector's configuration. Detectors built from documents with equal tags are
+     * equivalent, so it leaves out the last accessed date, which changes whenever the detector is used.
+     */
+    public static String buildDetectorETag(Detector detector) {
+        val meta = detector.getMeta();
+        val dateLastUpdated = meta == null ? null : meta.getDateLastUpdated();
+        val hash = Objects.hash(
+            detector.getUuid(),
+            detector.getType(),
+            detector.isEnabled(),
+            detector.isTrusted(),
+            detector.getDetectorConfig(),
+            meta == null ? null : meta.getCreatedBy(),
+            dateLastUpdated);
+        val lastUpdated = dateLastUpdated == null ? 0L : dateLastUpdated.getTime();
+        return "W/\"" + Long.toHexString(lastUpdated) + "-" + Integer.toHexString(hash) + "\"";
+    }
+
     public static TrainingMetaData buildDetectorTrainingMeta(Detector detector) {
         TrainingMetaData metaBlock = detector.getDetectorConfig().getTrainingMetaData();
         return (metaBlock == null) ? new TrainingMetaData() : metaBlock;
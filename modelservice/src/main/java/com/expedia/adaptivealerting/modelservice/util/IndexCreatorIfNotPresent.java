@@ -17,6 +17,7 @@ package com.expedia.adaptivealerting.modelservice.util;
 
 import com.expedia.adaptivealerting.modelservice.elasticsearch.LegacyElasticSearchClient;
 import com.expedia.adaptivealerting.modelservice.elasticsearch.ElasticSearchProperties;
+import com.expedia.adaptivealerting.modelservice.elasticsearch.ElasticsearchUtil;
 import com.google.gson.JsonObject;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
@@ -25,16 +26,21 @@ import org.elasticsearch.action.admin.indices.get.GetIndexRequest;
 import org.elasticsearch.client.RequestOptions;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.index.reindex.UpdateByQueryRequest;
+import org.elasticsearch.script.Script;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.ApplicationListener;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
+import java.util.Collections;
 
 import static com.expedia.adaptivealerting.modelservice.domain.percolator.PercolatorDetectorMapping.CREATE_TIME_KEYWORD;
 import static com.expedia.adaptivealerting.modelservice.domain.percolator.PercolatorDetectorMapping.DETECTOR_KEYWORD;
 import static com.expedia.adaptivealerting.modelservice.domain.percolator.PercolatorDetectorMapping.ENABLED;
+import static com.expedia.adaptivealerting.modelservice.domain.percolator.PercolatorDetectorMapping.ID_KEYWORD;
 import static com.expedia.adaptivealerting.modelservice.domain.percolator.PercolatorDetectorMapping.LAST_MOD_TIME_KEYWORD;
 import static com.expedia.adaptivealerting.modelservice.domain.percolator.PercolatorDetectorMapping.QUERY_KEYWORD;
 import static com.expedia.adaptivealerting.modelservice.domain.percolator.PercolatorDetectorMapping.USER_KEYWORD;
@@ -52,6 +58,9 @@ public class IndexCreatorIfNotPresent implements ApplicationListener<Application
     @Autowired
     private LegacyElasticSearchClient client;
 
+    @Autowired
+    private ElasticsearchUtil elasticsearchUtil;
+
     @Override
     public void onApplicationEvent(ApplicationReadyEvent applicationReadyEvent) {
         if (properties.isCreateIndexIfNotFound()) {
@@ -63,6 +72,8 @@ public class IndexCreatorIfNotPresent implements ApplicationListener<Application
                         throw new RuntimeException("Index creation failed");
                     }
                     log.info("Successfully created index: {}", properties.getIndexName());
+                } else {
+                    addIdField();
                 }
             } catch (IOException e) {
                 log.error("Index creation failed", e);
@@ -71,6 +82,28 @@ public class IndexCreatorIfNotPresent implements ApplicationListener<Application
         }
     }
 
+    /**
+     * Maps the {@code aa_id} paging tiebreaker on an index created before it existed,
+     * and copies the document ID into it for mappings that don't have it yet.
+     */
+    private void addIdField() throws IOException {
+        val indexName = properties.getIndexName();
+        elasticsearchUtil.updateIndexMappings(Collections.singleton(ID_KEYWORD), indexName, properties.getDocType());
+
+        val request = new UpdateByQueryRequest(indexName);
+        request.setQuery(QueryBuilders.boolQuery().mustNot(QueryBuilders.existsQuery(ID_KEYWORD)));
+        request.setScript(new Script("ctx._source['" + ID_KEYWORD + "'] = ctx._id"));
+        request.setConflicts("proceed");
+        request.setRefresh(true);
+        val response = client.updateByQuery(request, RequestOptions.DEFAULT);
+        if (!response.getBulkFailures().isEmpty()) {
+            throw new RuntimeException("Adding " + ID_KEYWORD + " failed: " + response.getBulkFailures());
+        }
+        if (response.getUpdated() > 0) {
+            log.info("Added {} to {} mappings in index: {}", ID_KEYWORD, response.getUpdated(), indexName);
+        }
+    }
+
     private GetIndexRequest getIndexRequest() {
         val request = new GetIndexRequest();
         request.indices(properties.getIndexName());
@@ -111,7 +144,11 @@ public class IndexCreatorIfNotPresent implements ApplicationListener<Application
         val boolType = new JsonObject();
         boolType.addProperty("type", "boolean");
 
+        val keywordType = new JsonObject();
+        keywordType.addProperty("type", "keyword");
+
         val propObject = new JsonObject();
+        propObject.add(ID_KEYWORD, keywordType);
         propObject.add(USER_KEYWORD, dynamicType);
         propObject.add(DETECTOR_KEYWORD, dynamicType);
         propObject.add(QUERY_KEYWORD, queryType);
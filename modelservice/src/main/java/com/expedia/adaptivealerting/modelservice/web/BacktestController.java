@@ -0,0 +1,52 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.modelservice.web;
+
+import com.expedia.adaptivealerting.anomdetect.backtest.BacktestResult;
+import com.expedia.adaptivealerting.modelservice.repo.BacktestRepository;
+import com.expedia.adaptivealerting.modelservice.web.request.BacktestRequest;
+import com.expedia.adaptivealerting.anomdetect.util.AssertUtil;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping(path = "/api")
+public class BacktestController {
+
+    /**
+     * Maximum number of detector and metric pairs a request can backtest.
+     */
+    static final int MAX_BACKTEST_RUNS = 1000;
+
+    @Autowired
+    private BacktestRepository backtestRepository;
+
+    @PostMapping(path = "/backtest", consumes = "application/json", produces = "application/json")
+    public List<BacktestResult> backtest(@RequestBody BacktestRequest request) {
+        if (request.getDetectors() == null || request.getDetectors().isEmpty()
+                || request.getMetricTags() == null || request.getMetricTags().isEmpty()) {
+            throw new IllegalArgumentException("Invalid request: " + request);
+        }
+        long numRuns = (long) request.getDetectors().size() * request.getMetricTags().size();
+        AssertUtil.isTrue(numRuns <= MAX_BACKTEST_RUNS, "Required: detectors.size() * metricTags.size() <= " + MAX_BACKTEST_RUNS);
+        return backtestRepository.backtest(request);
+    }
+}
@@ -19,6 +19,7 @@ import com.expedia.adaptivealerting.modelservice.entity.Detector;
 import com.expedia.adaptivealerting.modelservice.exception.RecordNotFoundException;
 import com.expedia.adaptivealerting.modelservice.service.DetectorService;
 import com.expedia.adaptivealerting.modelservice.tracing.Trace;
+import com.expedia.adaptivealerting.modelservice.util.DetectorDataUtil;
 import com.expedia.www.haystack.client.Span;
 import io.opentracing.SpanContext;
 import lombok.extern.slf4j.Slf4j;
@@ -26,6 +27,7 @@ import lombok.val;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.util.Assert;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -37,6 +39,7 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
 import java.util.List;
@@ -53,6 +56,9 @@ public class DetectorController {
     @Autowired
     private Trace trace;
 
+    @Autowired
+    private NdjsonWriter ndjsonWriter;
+
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
     public String createDetector(@Valid @RequestBody Detector detector, @RequestHeader HttpHeaders headers) {
@@ -63,9 +69,12 @@ public class DetectorController {
         return uuid.toString();
     }
 
+    /**
+     * Finds a detector, tagged with an ETag for its configuration. Requests whose If-None-Match header matches the
+     * tag get a 304 Not Modified without a body, so clients can reuse the detector they already have.
+     */
     @GetMapping(path = "/findByUuid", produces = "application/json")
-    @ResponseStatus(HttpStatus.OK)
-    public Detector findByUuid(@RequestParam String uuid, @RequestHeader HttpHeaders headers) {
+    public ResponseEntity<Detector> findByUuid(@RequestParam String uuid, @RequestHeader HttpHeaders headers) {
         SpanContext parentSpanContext = trace.extractParentSpan(headers);
         Span span = trace.startSpan("find-detector-by-uuid", parentSpanContext);
         Detector detector = service.findByUuid(uuid);
@@ -75,7 +84,20 @@ public class DetectorController {
             throw new RecordNotFoundException("Invalid UUID: " + uuid);
         }
         span.finish();
-        return detector;
+        // Spring checks the ETag against If-None-Match and skips writing the body when it matches.
+        return ResponseEntity.ok()
+                .eTag(DetectorDataUtil.buildDetectorETag(detector))
+                .body(detector);
+    }
+
+    @PostMapping(path = "/findByUuids", consumes = "application/json", produces = "application/json")
+    @ResponseStatus(HttpStatus.OK)
+    public List<Detector> findByUuids(@RequestBody List<String> uuids, @RequestHeader HttpHeaders headers) {
+        SpanContext parentSpanContext = trace.extractParentSpan(headers);
+        Span span = trace.startSpan("find-detectors-by-uuids", parentSpanContext);
+        List<Detector> detectors = service.findByUuids(uuids);
+        span.finish();
+        return detectors;
     }
 
     @GetMapping(path = "/findByCreatedBy", produces = "application/json")
@@ -111,12 +133,24 @@ public class DetectorController {
         return service.getLastUpdatedDetectors(interval);
     }
 
+    @GetMapping(path = "/getLastUpdatedDetectors", produces = NdjsonWriter.APPLICATION_NDJSON_VALUE)
+    @ResponseStatus(HttpStatus.OK)
+    public StreamingResponseBody streamLastUpdatedDetectors(@RequestParam long interval) {
+        return ndjsonWriter.write(() -> service.streamLastUpdatedDetectors(interval));
+    }
+
     @GetMapping(path = "/getLastUsedDetectors", produces = "application/json")
     @ResponseStatus(HttpStatus.OK)
     public List<Detector> getLastUsedDetectors(@RequestParam int noOfDays) {
         return service.getLastUsedDetectors(noOfDays);
     }
 
+    @GetMapping(path = "/getLastUsedDetectors", produces = NdjsonWriter.APPLICATION_NDJSON_VALUE)
+    @ResponseStatus(HttpStatus.OK)
+    public StreamingResponseBody streamLastUsedDetectors(@RequestParam int noOfDays) {
+        return ndjsonWriter.write(() -> service.streamLastUsedDetectors(noOfDays));
+    }
+
     @PutMapping
     @ResponseStatus(HttpStatus.OK)
     public void updateDetector(@RequestParam String uuid, @RequestBody Detector detector) {
@@ -129,6 +163,17 @@ public class DetectorController {
         service.updateDetectorLastUsed(params.get("detectorUuid"));
     }
 
+    /**
+     * Sets the last used time of several detectors at once.
+     *
+     * @param lastUsedTimes detector UUIDs and the epoch milliseconds they were last used at
+     */
+    @PostMapping(path = "/updateDetectorsLastUsed", consumes = "application/json")
+    @ResponseStatus(HttpStatus.OK)
+    public void updateDetectorsLastUsed(@RequestBody Map<String, Long> lastUsedTimes) {
+        service.updateDetectorsLastUsed(lastUsedTimes);
+    }
+
     @DeleteMapping
     @ResponseStatus(HttpStatus.OK)
     public void deleteDetector(@RequestParam String uuid) {
@@ -146,6 +191,14 @@ public class DetectorController {
         return detectorList;
     }
 
+    @GetMapping(path = "/getDetectorsToTrain", produces = NdjsonWriter.APPLICATION_NDJSON_VALUE)
+    @ResponseStatus(HttpStatus.OK)
+    public StreamingResponseBody streamDetectorsToTrain(@RequestParam Long timestampMs, @RequestHeader HttpHeaders headers) {
+        SpanContext parentSpanContext = trace.extractParentSpan(headers);
+        Span span = trace.startSpan("find-detectors-to-train-next", parentSpanContext);
+        return ndjsonWriter.write(() -> service.streamDetectorsToBeTrained(timestampMs).onClose(span::finish));
+    }
+
     @PostMapping(path = "/updateDetectorTrainingTime")
     public void updateDetectorTrainingTime(@RequestParam String uuid,
                                            @RequestParam Long nextRun,
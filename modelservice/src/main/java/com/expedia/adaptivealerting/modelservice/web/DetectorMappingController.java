@@ -36,6 +36,7 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 import java.util.Map;
@@ -52,6 +53,9 @@ public class DetectorMappingController {
     @Autowired
     private Trace trace;
 
+    @Autowired
+    private NdjsonWriter ndjsonWriter;
+
     @RequestMapping(produces = "application/json", method = RequestMethod.GET)
     public DetectorMapping getDetectorMapping(@RequestParam String id) {
         DetectorMapping detectorMapping = detectorMappingRepo.findDetectorMapping(id);
@@ -104,6 +108,11 @@ public class DetectorMappingController {
         return detectorMappingRepo.findLastUpdated(timeInSecs);
     }
 
+    @RequestMapping(value = "/lastUpdated", method = RequestMethod.GET, produces = NdjsonWriter.APPLICATION_NDJSON_VALUE)
+    public StreamingResponseBody streamLastUpdated(@RequestParam int timeInSecs) {
+        return ndjsonWriter.write(() -> detectorMappingRepo.streamLastUpdated(timeInSecs));
+    }
+
     @RequestMapping(value = "/findMatchingByTags", method = RequestMethod.POST)
     public MatchingDetectorsResponse searchDetectorMapping(@RequestBody List<Map<String, String>> tagsList) {
         MatchingDetectorsResponse matchingDetectorMappings = detectorMappingRepo.findMatchingDetectorMappings(tagsList);
@@ -31,6 +31,7 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
 import java.util.List;
@@ -43,6 +44,9 @@ public class LegacyDetectorController {
     @Autowired
     private LegacyDetectorRepository detectorRepo;
 
+    @Autowired
+    private NdjsonWriter ndjsonWriter;
+
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
     public String createDetector(@Valid @RequestBody DetectorDocument document) {
@@ -93,6 +97,12 @@ public class LegacyDetectorController {
         return detectorRepo.getLastUpdatedDetectors(interval);
     }
 
+    @GetMapping(path = "/getLastUpdatedDetectors", produces = NdjsonWriter.APPLICATION_NDJSON_VALUE)
+    @ResponseStatus(HttpStatus.OK)
+    public StreamingResponseBody streamLastUpdatedDetectors(@RequestParam long interval) {
+        return ndjsonWriter.write(() -> detectorRepo.streamLastUpdatedDetectors(interval));
+    }
+
     @PutMapping
     @ResponseStatus(HttpStatus.OK)
     public void updateDetector(@RequestParam String uuid, @RequestBody DetectorDocument document) {
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.modelservice.web;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.Iterator;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Writes a stream of items as newline-delimited JSON (one JSON document per line), so large results go out as they're
+ * read from the store instead of being collected into one response. Endpoints offer this alongside their JSON array
+ * response, selected by {@code Accept: application/x-ndjson}.
+ */
+@Component
+public class NdjsonWriter {
+    public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+    private final ObjectWriter objectWriter;
+
+    @Autowired
+    public NdjsonWriter(ObjectMapper objectMapper) {
+        // Leave flushing to the servlet container's buffer rather than sending a chunk per item.
+        this.objectWriter = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    /**
+     * Returns a response body writing the supplied items. The stream is opened only once the response is being written
+     * and is always closed afterwards. If it fails part-way the response is aborted rather than ended cleanly, so
+     * clients can't mistake a partial result for a complete one.
+     *
+     * @param items supplies the items to write
+     * @param <T>   item type
+     * @return response body
+     */
+    public <T> StreamingResponseBody write(Supplier<Stream<T>> items) {
+        return out -> {
+            try (Stream<T> stream = items.get()) {
+                JsonGenerator generator = objectWriter.getFactory().createGenerator(out);
+                generator.setRootValueSeparator(null);
+                Iterator<T> iterator = stream.iterator();
+                while (iterator.hasNext()) {
+                    objectWriter.writeValue(generator, iterator.next());
+                    generator.writeRaw('\n');
+                }
+                generator.flush();
+            }
+        };
+    }
+}
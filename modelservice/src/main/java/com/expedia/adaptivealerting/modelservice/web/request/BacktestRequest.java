@@ -0,0 +1,37 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.modelservice.web.request;
+
+import com.expedia.adaptivealerting.anomdetect.source.DetectorDocument;
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+import java.util.List;
+
+@Data
+@Accessors(chain = true)
+public class BacktestRequest {
+
+    /**
+     * Detector documents to backtest. They needn't be saved detectors.
+     */
+    private List<DetectorDocument> detectors;
+
+    /**
+     * Metrics to backtest the detectors against, in the form the metric sources accept.
+     */
+    private List<String> metricTags;
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.modelservice.changefeed;
+
+import com.expedia.adaptivealerting.anomdetect.source.ModelChangeEvent;
+import com.expedia.adaptivealerting.anomdetect.source.ModelChangeEvent.ChangeType;
+import com.expedia.adaptivealerting.anomdetect.source.ModelChangeEvent.EntityType;
+import com.expedia.adaptivealerting.modelservice.domain.mapping.ConsumerDetectorMapping;
+import com.expedia.adaptivealerting.modelservice.domain.mapping.DetectorMapping;
+import com.expedia.adaptivealerting.modelservice.test.ObjectMother;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.val;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ModelChangePublisherTest {
+    private static final String TOPIC = "model-changes";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private MockProducer<String, String> producer;
+    private ModelChangePublisher publisherUnderTest;
+
+    @Before
+    public void setUp() {
+        this.producer = new MockProducer<>(true, new StringSerializer(), new StringSerializer());
+        this.publisherUnderTest = new ModelChangePublisher(producer, TOPIC);
+    }
+
+    @Test
+    public void testPublishDetectorChange() throws Exception {
+        val detector = ObjectMother.instance().buildDetector().setUuid(UUID.randomUUID());
+        val uuid = detector.getUuid().toString();
+        publisherUnderTest.publishDetectorChange(ChangeType.UPDATED, uuid, detector);
+
+        assertEquals(1, producer.history().size());
+        val record = producer.history().get(0);
+        assertEquals(TOPIC, record.topic());
+        assertEquals(ModelChangeEvent.keyOf(EntityType.DETECTOR, uuid), record.key());
+        val event = objectMapper.readValue(record.value(), ModelChangeEvent.class);
+        assertEquals(EntityType.DETECTOR, event.getEntityType());
+        assertEquals(ChangeType.UPDATED, event.getChangeType());
+        assertEquals(uuid, event.getId());
+        assertEquals(uuid, event.getDocument().get("uuid").asText());
+    }
+
+    @Test
+    public void testPublishDetectorChange_deleted() throws Exception {
+        val uuid = UUID.randomUUID().toString();
+        publisherUnderTest.publishDetectorChange(ChangeType.DELETED, uuid, null);
+
+        val event = objectMapper.readValue(producer.history().get(0).value(), ModelChangeEvent.class);
+        assertEquals(ChangeType.DELETED, event.getChangeType());
+        assertNull(event.getDocument());
+    }
+
+    @Test
+    public void testPublishMappingChange_deletedIsDisabled() throws Exception {
+        val detectorMapping = new DetectorMapping()
+                .setId("mapping-id")
+                .setDetector(new ConsumerDetectorMapping("cid", UUID.randomUUID()))
+                .setEnabled(true);
+        publisherUnderTest.publishMappingChange(ChangeType.DELETED, detectorMapping);
+
+        val record = producer.history().get(0);
+        assertEquals(ModelChangeEvent.keyOf(EntityType.MAPPING, "mapping-id"), record.key());
+        val event = objectMapper.readValue(record.value(), ModelChangeEvent.class);
+        assertEquals(EntityType.MAPPING, event.getEntityType());
+        assertFalse(event.getDocument().get("enabled").asBoolean());
+    }
+
+    @Test
+    public void testPublishFailureIsSwallowed() {
+        this.producer = new MockProducer<>(false, new StringSerializer(), new StringSerializer());
+        this.publisherUnderTest = new ModelChangePublisher(producer, TOPIC);
+        publisherUnderTest.publishDetectorChange(ChangeType.DELETED, UUID.randomUUID().toString(), null);
+        assertTrue(producer.errorNext(new RuntimeException()));
+    }
+
+    @Test
+    public void testDisabled() {
+        val publisher = ModelChangePublisher.disabled();
+        assertFalse(publisher.isEnabled());
+        publisher.publishDetectorChange(ChangeType.DELETED, UUID.randomUUID().toString(), null);
+        publisher.close();
+    }
+
+    @Test
+    public void testClose() {
+        assertTrue(publisherUnderTest.isEnabled());
+        publisherUnderTest.close();
+        assertTrue(producer.closed());
+    }
+}
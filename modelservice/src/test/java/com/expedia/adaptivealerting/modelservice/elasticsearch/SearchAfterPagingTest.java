@@ -0,0 +1,147 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.modelservice.elasticsearch;
+
+import lombok.val;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.search.DocValueFormat;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.SearchHits;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.sort.FieldSortBuilder;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+public class SearchAfterPagingTest {
+    private static final int PAGE_SIZE = 2;
+    private static final String TIEBREAKER_FIELD = "uuid";
+
+    @Mock
+    private LegacyElasticSearchClient client;
+
+    // Every page reuses the same request object, so record each page's search_after as it's sent.
+    private List<Object[]> searchAfters;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        this.searchAfters = new ArrayList<>();
+    }
+
+    @Test
+    public void testHits_multiplePages() throws IOException {
+        stubPages(page("a", "b"), page("c", "d"), page("e"));
+        val request = new SearchRequest().source(new SearchSourceBuilder());
+        val ids = SearchAfterPaging.hits(client, request, PAGE_SIZE, TIEBREAKER_FIELD)
+                .map(SearchHit::getId)
+                .collect(Collectors.toList());
+
+        assertEquals(5, ids.size());
+        assertEquals("e", ids.get(4));
+        verify(client, times(3)).search(any(SearchRequest.class), eq(RequestOptions.DEFAULT));
+        assertNull(searchAfters.get(0));
+        assertArrayEquals(new Object[]{"b"}, searchAfters.get(1));
+        assertArrayEquals(new Object[]{"d"}, searchAfters.get(2));
+    }
+
+    @Test
+    public void testHits_fullLastPage() throws IOException {
+        stubPages(page("a", "b"), page());
+        val count = SearchAfterPaging.hits(client, new SearchRequest(), PAGE_SIZE, TIEBREAKER_FIELD).count();
+        assertEquals(2, count);
+        verify(client, times(2)).search(any(SearchRequest.class), eq(RequestOptions.DEFAULT));
+    }
+
+    @Test
+    public void testPages_setsSizeAndSort() throws IOException {
+        stubPages(page("a"));
+        val request = new SearchRequest().source(new SearchSourceBuilder());
+        assertEquals(1, SearchAfterPaging.pages(client, request, PAGE_SIZE, TIEBREAKER_FIELD).count());
+        assertEquals(PAGE_SIZE, request.source().size());
+        assertEquals(1, request.source().sorts().size());
+        assertEquals(TIEBREAKER_FIELD, ((FieldSortBuilder) request.source().sorts().get(0)).getFieldName());
+    }
+
+    @Test
+    public void testPages_lazy() throws IOException {
+        stubPages(page("a", "b"), page("c"));
+        val first = SearchAfterPaging.hits(client, new SearchRequest(), PAGE_SIZE, TIEBREAKER_FIELD).findFirst();
+        assertEquals("a", first.get().getId());
+        verify(client, times(1)).search(any(SearchRequest.class), eq(RequestOptions.DEFAULT));
+    }
+
+    @Test
+    public void testPages_notConsumed() {
+        SearchAfterPaging.pages(client, new SearchRequest(), PAGE_SIZE, TIEBREAKER_FIELD);
+        verifyZeroInteractions(client);
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testPages_searchFails() throws IOException {
+        when(client.search(any(SearchRequest.class), eq(RequestOptions.DEFAULT))).thenThrow(new IOException());
+        SearchAfterPaging.hits(client, new SearchRequest(), PAGE_SIZE, TIEBREAKER_FIELD).count();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPages_nullTiebreakerField() {
+        SearchAfterPaging.pages(client, new SearchRequest(), PAGE_SIZE, null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPages_invalidPageSize() {
+        SearchAfterPaging.pages(client, new SearchRequest(), 0, TIEBREAKER_FIELD);
+    }
+
+    private void stubPages(SearchResponse first, SearchResponse... rest) throws IOException {
+        when(client.search(any(SearchRequest.class), eq(RequestOptions.DEFAULT))).thenAnswer(invocation -> {
+            SearchRequest request = invocation.getArgument(0);
+            searchAfters.add(request.source().searchAfter());
+            int page = searchAfters.size() - 1;
+            return page == 0 ? first : rest[page - 1];
+        });
+    }
+
+    private static SearchResponse page(String... ids) {
+        val hits = new SearchHit[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            hits[i] = new SearchHit(i, ids[i], null, null);
+            hits[i].sortValues(new Object[]{ids[i]}, new DocValueFormat[]{DocValueFormat.RAW});
+        }
+        val response = mock(SearchResponse.class);
+        when(response.getHits()).thenReturn(new SearchHits(hits, ids.length, 1.0f));
+        return response;
+    }
+}
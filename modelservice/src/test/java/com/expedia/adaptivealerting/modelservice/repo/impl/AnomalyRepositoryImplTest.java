@@ -24,6 +24,7 @@ import com.expedia.adaptivealerting.modelservice.metricsource.MetricSource;
 import com.expedia.adaptivealerting.modelservice.metricsource.MetricSourceResult;
 import com.expedia.adaptivealerting.modelservice.web.request.AnomalyRequest;
 import com.expedia.adaptivealerting.modelservice.test.ObjectMother;
+import com.expedia.metrics.MetricData;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
 import org.junit.Before;
@@ -106,5 +107,6 @@ public class AnomalyRepositoryImplTest {
         when(graphiteMetricSource.getMetricData(anyString())).thenReturn(metricSourceResults);
         metricSources.add(graphiteMetricSource);
         when(detectorFactory.buildDetector(any(DetectorDocument.class))).thenReturn(detector);
+        when(detector.detect(any(MetricData.class))).thenReturn(outlierDetectorResult);
     }
 }
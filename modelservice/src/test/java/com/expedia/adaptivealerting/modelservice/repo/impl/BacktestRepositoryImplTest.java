@@ -0,0 +1,96 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.modelservice.repo.impl;
+
+import com.expedia.adaptivealerting.anomdetect.backtest.BacktestEngine;
+import com.expedia.adaptivealerting.anomdetect.backtest.BacktestResult;
+import com.expedia.adaptivealerting.anomdetect.backtest.BacktestSeries;
+import com.expedia.adaptivealerting.anomdetect.source.DetectorDocument;
+import com.expedia.adaptivealerting.modelservice.metricsource.MetricSource;
+import com.expedia.adaptivealerting.modelservice.metricsource.MetricSourceResult;
+import com.expedia.adaptivealerting.modelservice.metricsource.graphite.GraphiteMetricSource;
+import com.expedia.adaptivealerting.modelservice.web.request.BacktestRequest;
+import lombok.val;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class BacktestRepositoryImplTest {
+
+    @InjectMocks
+    private BacktestRepositoryImpl repoUnderTest;
+
+    @Spy
+    private List<MetricSource> metricSources = new ArrayList<>();
+
+    @Mock
+    private GraphiteMetricSource graphiteMetricSource;
+
+    @Mock
+    private BacktestEngine backtestEngine;
+
+    @Mock
+    private List<BacktestResult> results;
+
+    private List<DetectorDocument> documents;
+
+    @Before
+    public void setUp() {
+        this.repoUnderTest = new BacktestRepositoryImpl();
+        MockitoAnnotations.initMocks(this);
+        this.documents = Collections.singletonList(new DetectorDocument());
+        metricSources.add(graphiteMetricSource);
+        when(graphiteMetricSource.getMetricData("what=bookings")).thenReturn(Arrays.asList(
+                new MetricSourceResult(78.0, 1548830400L),
+                new MetricSourceResult(80.0, 1548830460L)));
+    }
+
+    @Test
+    public void testBacktest() {
+        val request = new BacktestRequest()
+                .setDetectors(documents)
+                .setMetricTags(Collections.singletonList("what=bookings"));
+        when(backtestEngine.run(eq(documents), any())).thenReturn(results);
+
+        assertSame(results, repoUnderTest.backtest(request));
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<BacktestSeries>> captor = ArgumentCaptor.forClass(List.class);
+        verify(backtestEngine).run(eq(documents), captor.capture());
+        assertEquals(1, captor.getValue().size());
+        val series = captor.getValue().get(0);
+        assertEquals("what=bookings", series.getName());
+        assertArrayEquals(new double[]{78.0, 80.0}, series.getValues(), 0.0);
+        assertArrayEquals(new long[]{1548830400L, 1548830460L}, series.getEpochSeconds());
+    }
+}
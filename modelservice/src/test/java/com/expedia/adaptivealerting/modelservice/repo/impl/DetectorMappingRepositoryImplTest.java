@@ -18,6 +18,8 @@ package com.expedia.adaptivealerting.modelservice.repo.impl;
 import com.codahale.metrics.Counter;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.Timer;
+import com.expedia.adaptivealerting.anomdetect.source.ModelChangeEvent.ChangeType;
+import com.expedia.adaptivealerting.modelservice.changefeed.ModelChangePublisher;
 import com.expedia.adaptivealerting.modelservice.domain.mapping.*;
 import com.expedia.adaptivealerting.modelservice.domain.percolator.*;
 import com.expedia.adaptivealerting.modelservice.exception.RecordNotFoundException;
@@ -53,6 +55,7 @@ import org.elasticsearch.search.builder.SearchSourceBuilder;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.MockitoJUnitRunner;
@@ -96,6 +99,9 @@ public class DetectorMappingRepositoryImplTest {
     @Mock
     private ElasticsearchUtil elasticsearchUtil;
 
+    @Mock
+    private ModelChangePublisher modelChangePublisher;
+
     private DetectorMappingRepositoryImpl repoUnderTest;
 
     private PercolatorDetectorMapping percolatorDetectorMapping;
@@ -117,6 +123,7 @@ public class DetectorMappingRepositoryImplTest {
         ReflectionTestUtils.setField(repoUnderTest, "elasticSearchProperties", elasticSearchProperties);
         ReflectionTestUtils.setField(repoUnderTest, "elasticsearchUtil", elasticsearchUtil);
         ReflectionTestUtils.setField(repoUnderTest, "objectMapperUtil", objectMapperUtil);
+        ReflectionTestUtils.setField(repoUnderTest, "modelChangePublisher", modelChangePublisher);
 
         when(elasticsearchUtil.getSourceBuilder(any(QueryBuilder.class))).thenReturn(new SearchSourceBuilder());
         when(elasticsearchUtil.getSearchRequest(any(SearchSourceBuilder.class), anyString(), anyString())).thenReturn(new SearchRequest());
@@ -137,6 +144,31 @@ public class DetectorMappingRepositoryImplTest {
         repoUnderTest.createDetectorMapping(request);
     }
 
+    @Test
+    public void testCreateDetectorMapping_storesIdAsField() {
+        val mom = ObjectMother.instance();
+        val request = new CreateDetectorMappingRequest(mom.getExpression(),
+                new ConsumerDetectorMapping("cid", UUID.randomUUID()), new User("yoda"));
+        val id = repoUnderTest.createDetectorMapping(request);
+
+        val indexRequestCaptor = ArgumentCaptor.forClass(IndexRequest.class);
+        verify(elasticsearchUtil).index(indexRequestCaptor.capture(), anyString());
+        assertEquals(id, indexRequestCaptor.getValue().id());
+        val mappingCaptor = ArgumentCaptor.forClass(PercolatorDetectorMapping.class);
+        verify(objectMapperUtil).convertToString(mappingCaptor.capture());
+        assertEquals(id, mappingCaptor.getValue().getId());
+    }
+
+    @Test
+    public void testCreateDetectorMapping_publishesChange() {
+        val mom = ObjectMother.instance();
+        val request = new CreateDetectorMappingRequest(mom.getExpression(),
+                new ConsumerDetectorMapping("cid", UUID.randomUUID()), new User("yoda"));
+        when(modelChangePublisher.isEnabled()).thenReturn(true);
+        repoUnderTest.createDetectorMapping(request);
+        verify(modelChangePublisher).publishMappingChange(eq(ChangeType.CREATED), any(DetectorMapping.class));
+    }
+
     @Test
     public void findMatchingDetectorMappings_successful() throws IOException {
         List<Map<String, String>> tagsList = new ArrayList<>();
@@ -280,6 +312,7 @@ public class DetectorMappingRepositoryImplTest {
         when(legacyElasticSearchClient.get(any(GetRequest.class), eq(RequestOptions.DEFAULT))).thenReturn(getResponse);
         repoUnderTest.disableDetectorMapping(id);
         verify(legacyElasticSearchClient, atLeastOnce()).get(any(GetRequest.class), eq(RequestOptions.DEFAULT));
+        verify(modelChangePublisher).publishMappingChange(eq(ChangeType.DISABLED), any(DetectorMapping.class));
     }
 
     @Test
@@ -294,6 +327,18 @@ public class DetectorMappingRepositoryImplTest {
         assertEquals("DELETED", deleteResponse.getResult().toString());
     }
 
+    @Test
+    public void deleteDetectorMapping_publishesChange() throws Exception {
+        val id = "adsvade8^szx";
+        GetResponse getResponse = mockGetResponse(id);
+        when(getResponse.isExists()).thenReturn(true);
+        when(legacyElasticSearchClient.get(any(GetRequest.class), eq(RequestOptions.DEFAULT))).thenReturn(getResponse);
+        when(legacyElasticSearchClient.delete(any(DeleteRequest.class), eq(RequestOptions.DEFAULT))).thenReturn(new DeleteResponse());
+        when(modelChangePublisher.isEnabled()).thenReturn(true);
+        repoUnderTest.deleteDetectorMapping(id);
+        verify(modelChangePublisher).publishMappingChange(eq(ChangeType.DELETED), any(DetectorMapping.class));
+    }
+
     @Test(expected = RuntimeException.class)
     public void deleteDetectorMapping_fail() throws IOException {
         val id = "adsvade8^szx";
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.modelservice.repo.impl;
+
+import org.elasticsearch.common.xcontent.XContentType;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.elasticsearch.ElasticsearchException;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.query.UpdateQuery;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class DetectorRepositoryCustomImplTest {
+    private static final String DETECTOR_UUID = "aeb4d849-847a-45c0-8312-dc0fcf22b639";
+
+    @InjectMocks
+    private DetectorRepositoryCustomImpl repositoryUnderTest;
+
+    @Mock
+    private ElasticsearchOperations elasticsearchOperations;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testUpdateDetectorsLastUsed() {
+        repositoryUnderTest.updateDetectorsLastUsed(Collections.singletonMap(DETECTOR_UUID, new Date(0L)));
+
+        ArgumentCaptor<List<UpdateQuery>> captor = ArgumentCaptor.forClass(List.class);
+        verify(elasticsearchOperations).bulkUpdate(captor.capture());
+        List<UpdateQuery> updateQueries = captor.getValue();
+        assertEquals(1, updateQueries.size());
+        assertEquals(DETECTOR_UUID, updateQueries.get(0).getId());
+        Map<String, Object> doc = updateQueries.get(0).getUpdateRequest().doc().sourceAsMap();
+        assertEquals(Collections.singletonMap("dateLastAccessed", "1970-01-01 00:00:00"), doc.get("meta"));
+        assertEquals(XContentType.JSON, updateQueries.get(0).getUpdateRequest().doc().getContentType());
+    }
+
+    @Test
+    public void testUpdateDetectorsLastUsed_empty() {
+        repositoryUnderTest.updateDetectorsLastUsed(Collections.emptyMap());
+        verify(elasticsearchOperations, never()).bulkUpdate(anyList());
+    }
+
+    @Test
+    public void testUpdateDetectorsLastUsed_partialFailure() {
+        Map<String, String> failures = Collections.singletonMap(DETECTOR_UUID, "document_missing_exception");
+        doThrow(new ElasticsearchException("Bulk operation has failures", failures))
+                .when(elasticsearchOperations).bulkUpdate(anyList());
+
+        // Asserting that no exception is thrown
+        repositoryUnderTest.updateDetectorsLastUsed(Collections.singletonMap(DETECTOR_UUID, new Date()));
+    }
+}
@@ -1,5 +1,7 @@
 package com.expedia.adaptivealerting.modelservice.service;
 
+import com.expedia.adaptivealerting.anomdetect.source.ModelChangeEvent.ChangeType;
+import com.expedia.adaptivealerting.modelservice.changefeed.ModelChangePublisher;
 import com.expedia.adaptivealerting.modelservice.entity.Detector;
 import com.expedia.adaptivealerting.modelservice.entity.Detector.TrainingMetaData;
 import com.expedia.adaptivealerting.modelservice.exception.RecordNotFoundException;
@@ -13,10 +15,17 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertSame;
 import static org.mockito.ArgumentMatchers.any;
@@ -33,6 +42,9 @@ public class DetectorServiceImplTest {
     @Mock
     private DetectorRepository repository;
 
+    @Mock
+    private ModelChangePublisher modelChangePublisher;
+
     @Mock
     private List<Detector> detectors;
 
@@ -66,6 +78,29 @@ public class DetectorServiceImplTest {
         serviceUnderTest.createDetector(legalParamsDetector);
     }
 
+    @Test
+    public void testFindByUuids() {
+        val otherUuid = UUID.randomUUID().toString();
+        when(repository.findAllById(Arrays.asList(someUuid.toString(), otherUuid)))
+            .thenReturn(Collections.singletonList(legalParamsDetector));
+        val actualDetectors = serviceUnderTest.findByUuids(Arrays.asList(someUuid.toString(), otherUuid, someUuid.toString()));
+        assertEquals(Collections.singletonList(legalParamsDetector), actualDetectors);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFindByUuids_illegal_uuid() {
+        serviceUnderTest.findByUuids(Collections.singletonList("not-a-uuid"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFindByUuids_too_many_uuids() {
+        List<String> uuids = new ArrayList<>();
+        for (int i = 0; i <= DetectorServiceImpl.MAX_FIND_BY_UUIDS; i++) {
+            uuids.add(UUID.randomUUID().toString());
+        }
+        serviceUnderTest.findByUuids(uuids);
+    }
+
     @Test
     public void testFindByUuid() {
         val actualDetector = serviceUnderTest.findByUuid(someUuid.toString());
@@ -96,6 +131,13 @@ public class DetectorServiceImplTest {
         serviceUnderTest.toggleDetector(someUuid.toString(), true);
         verify(repository, times(1)).findByUuid(someUuid.toString());
         verify(repository, times(1)).save(legalParamsDetector);
+        verify(modelChangePublisher).publishDetectorChange(ChangeType.UPDATED, someUuid.toString(), legalParamsDetector);
+    }
+
+    @Test
+    public void testToggleDetector_disabled() {
+        serviceUnderTest.toggleDetector(someUuid.toString(), false);
+        verify(modelChangePublisher).publishDetectorChange(ChangeType.DISABLED, someUuid.toString(), legalParamsDetector);
     }
 
     @Test
@@ -119,6 +161,29 @@ public class DetectorServiceImplTest {
         assertSame(detectors, actualDetectors);
     }
 
+    @Test
+    public void testStreamLastUpdatedDetectors() {
+        val stream = Stream.of(legalParamsDetector);
+        when(repository.streamByMeta_DateLastUpdatedGreaterThan(anyString())).thenReturn(stream);
+        assertSame(stream, serviceUnderTest.streamLastUpdatedDetectors(5));
+    }
+
+    @Test
+    public void testStreamLastUsedDetectors() {
+        val stream = Stream.of(legalParamsDetector);
+        when(repository.streamByMeta_DateLastAccessedLessThan(anyString())).thenReturn(stream);
+        assertSame(stream, serviceUnderTest.streamLastUsedDetectors(4));
+    }
+
+    @Test
+    public void testStreamDetectorsToBeTrained() {
+        val timestampMs = 1595152176000L;
+        val date = DateUtil.toUtcDateString(Instant.ofEpochMilli(timestampMs));
+        val stream = Stream.of(legalParamsDetector);
+        when(repository.streamByDetectorConfig_TrainingMetaData_DateTrainingNextRunLessThan(date)).thenReturn(stream);
+        assertSame(stream, serviceUnderTest.streamDetectorsToBeTrained(timestampMs));
+    }
+
     @Test
     public void testUpdateDetector() {
         serviceUnderTest.updateDetector(someUuid.toString(), legalParamsDetector);
@@ -152,11 +217,24 @@ public class DetectorServiceImplTest {
         verify(repository, times(1)).save(legalParamsDetector);
     }
 
+    @Test
+    public void testUpdateDetectorsLastUsed() {
+        serviceUnderTest.updateDetectorsLastUsed(Collections.singletonMap(someUuid.toString(), 1000L));
+        verify(repository, times(1)).updateDetectorsLastUsed(
+                Collections.singletonMap(someUuid.toString(), new Date(1000L)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUpdateDetectorsLastUsed_invalidUuid() {
+        serviceUnderTest.updateDetectorsLastUsed(Collections.singletonMap("not-a-uuid", 1000L));
+    }
+
     @Test
     public void testDeleteDetector() {
         val someUuidStr = someUuid.toString();
         serviceUnderTest.deleteDetector(someUuidStr);
         verify(repository, times(1)).deleteByUuid(someUuidStr);
+        verify(modelChangePublisher).publishDetectorChange(ChangeType.DELETED, someUuidStr, null);
     }
 
     @Test
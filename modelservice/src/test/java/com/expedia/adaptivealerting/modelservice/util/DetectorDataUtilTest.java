@@ -0,0 +1,60 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.modelservice.util;
+
+import com.expedia.adaptivealerting.modelservice.entity.Detector;
+import com.expedia.adaptivealerting.modelservice.test.ObjectMother;
+import lombok.val;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Date;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DetectorDataUtilTest {
+    private Detector detector;
+
+    @Before
+    public void setUp() {
+        this.detector = ObjectMother.instance().buildDetector().setUuid(UUID.randomUUID());
+        detector.setMeta(DetectorDataUtil.buildNewDetectorMeta(detector));
+    }
+
+    @Test
+    public void testBuildDetectorETag() {
+        val eTag = DetectorDataUtil.buildDetectorETag(detector);
+        assertTrue(eTag.startsWith("W/\""));
+        assertEquals(eTag, DetectorDataUtil.buildDetectorETag(detector));
+    }
+
+    @Test
+    public void testBuildDetectorETag_ignoresLastAccessed() {
+        val eTag = DetectorDataUtil.buildDetectorETag(detector);
+        detector.getMeta().setDateLastAccessed(new Date(detector.getMeta().getDateLastAccessed().getTime() + 60_000L));
+        assertEquals(eTag, DetectorDataUtil.buildDetectorETag(detector));
+    }
+
+    @Test
+    public void testBuildDetectorETag_changesWithConfig() {
+        val eTag = DetectorDataUtil.buildDetectorETag(detector);
+        detector.setEnabled(!detector.isEnabled());
+        assertNotEquals(eTag, DetectorDataUtil.buildDetectorETag(detector));
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.modelservice.web;
+
+import com.expedia.adaptivealerting.anomdetect.backtest.BacktestResult;
+import com.expedia.adaptivealerting.anomdetect.source.DetectorDocument;
+import com.expedia.adaptivealerting.modelservice.repo.BacktestRepository;
+import com.expedia.adaptivealerting.modelservice.web.request.BacktestRequest;
+import lombok.val;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.when;
+
+public class BacktestControllerTest {
+
+    // Class under test
+    @InjectMocks
+    private BacktestController controller;
+
+    // Dependencies
+    @Mock
+    private BacktestRepository backtestRepository;
+
+    // Test objects
+    @Mock
+    private List<BacktestResult> results;
+
+    private BacktestRequest request;
+
+    @Before
+    public void setUp() {
+        this.controller = new BacktestController();
+        MockitoAnnotations.initMocks(this);
+        this.request = new BacktestRequest()
+                .setDetectors(Collections.singletonList(new DetectorDocument()))
+                .setMetricTags(Collections.singletonList("what=bookings"));
+        when(backtestRepository.backtest(request)).thenReturn(results);
+    }
+
+    @Test
+    public void testBacktest() {
+        assertSame(results, controller.backtest(request));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBacktest_noDetectors() {
+        controller.backtest(request.setDetectors(Collections.emptyList()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBacktest_noMetricTags() {
+        controller.backtest(request.setMetricTags(null));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBacktest_tooManyRuns() {
+        val detectors = Collections.nCopies(BacktestController.MAX_BACKTEST_RUNS / 2 + 1, new DetectorDocument());
+        controller.backtest(request.setDetectors(detectors).setMetricTags(Arrays.asList("what=bookings", "what=searches")));
+    }
+}
@@ -25,6 +25,7 @@ import com.expedia.www.haystack.client.SpanContext;
 import com.expedia.www.haystack.client.Tracer;
 import com.expedia.www.haystack.client.dispatchers.NoopDispatcher;
 import com.expedia.www.haystack.client.metrics.NoopMetricsRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
 import org.junit.Before;
@@ -39,22 +40,30 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.web.servlet.mvc.method.annotation.ExceptionHandlerExceptionResolver;
 
+import java.io.ByteArrayOutputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.stream.Stream;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertSame;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @Slf4j
@@ -71,6 +80,9 @@ public class DetectorControllerTest {
     @Mock
     private DetectorService detectorService;
 
+    @Spy
+    private NdjsonWriter ndjsonWriter = new NdjsonWriter(new ObjectMapper());
+
     @Mock
     private Detector detector;
 
@@ -116,10 +128,41 @@ public class DetectorControllerTest {
         val testChildSpan = noOpsTracer.buildSpan("find-detector-by-uuid").asChildOf(testDetectorMappingSpanContext).start();
         when(trace.extractParentSpan(httpHeaders)).thenReturn(testDetectorMappingSpanContext);
         when(trace.startSpan("find-detector-by-uuid", testDetectorMappingSpanContext)).thenReturn(testChildSpan);
-        val actualDetector = controllerUnderTest.findByUuid(someUuid.toString(), httpHeaders);
-        assertNotNull(actualDetector);
+        val response = controllerUnderTest.findByUuid(someUuid.toString(), httpHeaders);
+        assertSame(detector, response.getBody());
+        assertNotNull(response.getHeaders().getETag());
+    }
+
+    @Test
+    public void testFindByUuid_notModified() throws Exception {
+        val testChildSpan = noOpsTracer.buildSpan("find-detector-by-uuid").start();
+        when(trace.startSpan(eq("find-detector-by-uuid"), any())).thenReturn(testChildSpan);
+        when(detectorService.findByUuid(legalParamsDetector.getUuid().toString())).thenReturn(legalParamsDetector);
+        val uri = "/api/v3/detectors/findByUuid?uuid=" + legalParamsDetector.getUuid();
+
+        val eTag = mockMvc.perform(get(uri).accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotNull(eTag);
+
+        val body = mockMvc.perform(get(uri).accept(MediaType.APPLICATION_JSON).header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified())
+                .andReturn().getResponse().getContentAsString();
+        assertEquals("", body);
     }
 
+    @Test
+    public void testFindByUuids() {
+        val testDetectorMappingSpanContext = new SpanContext(UUID.randomUUID(), UUID.randomUUID(),
+                UUID.randomUUID());
+        val testChildSpan = noOpsTracer.buildSpan("find-detectors-by-uuids").asChildOf(testDetectorMappingSpanContext).start();
+        val uuids = Collections.singletonList(someUuid.toString());
+        when(trace.extractParentSpan(httpHeaders)).thenReturn(testDetectorMappingSpanContext);
+        when(trace.startSpan("find-detectors-by-uuids", testDetectorMappingSpanContext)).thenReturn(testChildSpan);
+        when(detectorService.findByUuids(uuids)).thenReturn(detectors);
+        val actualDetectors = controllerUnderTest.findByUuids(uuids, httpHeaders);
+        assertSame(detectors, actualDetectors);
+    }
 
     @Test(expected = RecordNotFoundException.class)
     public void testFindByUuid_record_not_found_null_response() {
@@ -183,6 +226,41 @@ public class DetectorControllerTest {
         assertSame(detectors, actualDetectors);
     }
 
+    @Test
+    public void testGetLastUpdatedDetectors_json() throws Exception {
+        when(detectorService.getLastUpdatedDetectors(5)).thenReturn(Collections.singletonList(legalParamsDetector));
+        mockMvc.perform(get("/api/v3/detectors/getLastUpdatedDetectors?interval=5"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON));
+        verify(detectorService, times(1)).getLastUpdatedDetectors(5);
+    }
+
+    @Test
+    public void testStreamLastUpdatedDetectors() throws Exception {
+        when(detectorService.streamLastUpdatedDetectors(5)).thenReturn(Stream.of(legalParamsDetector, legalParamsDetector));
+        val result = mockMvc.perform(get("/api/v3/detectors/getLastUpdatedDetectors?interval=5")
+                .accept(NdjsonWriter.APPLICATION_NDJSON_VALUE))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        val body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        val lines = body.split("\n");
+        assertEquals(2, lines.length);
+        for (val line : lines) {
+            assertEquals(someUuid, new ObjectMapper().readValue(line, Detector.class).getUuid());
+        }
+    }
+
+    @Test
+    public void testStreamLastUsedDetectors() throws Exception {
+        when(detectorService.streamLastUsedDetectors(5)).thenReturn(Stream.of(legalParamsDetector));
+        val out = new ByteArrayOutputStream();
+        controllerUnderTest.streamLastUsedDetectors(5).writeTo(out);
+        assertEquals(1, out.toString("UTF-8").split("\n").length);
+    }
+
     @Test
     public void testUpdateDetector() {
         controllerUnderTest.updateDetector(someUuid.toString(), legalParamsDetector);
@@ -196,6 +274,13 @@ public class DetectorControllerTest {
         verify(detectorService, times(1)).updateDetectorLastUsed(someUuid.toString());
     }
 
+    @Test
+    public void testUpdateDetectorsLastUsed() {
+        Map<String, Long> requestBody = Collections.singletonMap(someUuid.toString(), 1000L);
+        controllerUnderTest.updateDetectorsLastUsed(requestBody);
+        verify(detectorService, times(1)).updateDetectorsLastUsed(requestBody);
+    }
+
     @Test
     public void testDeleteDetector() {
         val someUuidStr = someUuid.toString();
@@ -215,6 +300,21 @@ public class DetectorControllerTest {
         verify(detectorService, times(1)).getDetectorsToBeTrained(1595152176000L);
     }
 
+    @Test
+    public void testStreamDetectorsToTrain() throws Exception {
+        val testDetectorMappingSpanContext = new SpanContext(UUID.randomUUID(), UUID.randomUUID(),
+            UUID.randomUUID());
+        val testChildSpan = noOpsTracer.buildSpan("find-detectors-to-train-next").asChildOf(testDetectorMappingSpanContext).start();
+        when(trace.extractParentSpan(httpHeaders)).thenReturn(testDetectorMappingSpanContext);
+        when(trace.startSpan("find-detectors-to-train-next", testDetectorMappingSpanContext)).thenReturn(testChildSpan);
+        when(detectorService.streamDetectorsToBeTrained(1595152176000L)).thenReturn(Stream.of(legalParamsDetector));
+
+        val body = controllerUnderTest.streamDetectorsToTrain(1595152176000L, httpHeaders);
+        verify(detectorService, never()).streamDetectorsToBeTrained(anyLong());
+        body.writeTo(new ByteArrayOutputStream());
+        verify(detectorService, times(1)).streamDetectorsToBeTrained(1595152176000L);
+    }
+
     @Test
     public void testUpdateDetectorTrainingTime() {
         val timestamp = DateUtil.toUtcDate("2020-07-15 20:00:00").toInstant().toEpochMilli();
@@ -28,6 +28,7 @@ import com.expedia.www.haystack.client.SpanContext;
 import com.expedia.www.haystack.client.Tracer;
 import com.expedia.www.haystack.client.dispatchers.NoopDispatcher;
 import com.expedia.www.haystack.client.metrics.NoopMetricsRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.opentracing.propagation.Format;
 import io.opentracing.propagation.TextMapAdapter;
 import lombok.val;
@@ -45,12 +46,14 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.ResponseStatus;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 import static junit.framework.TestCase.assertEquals;
 import static org.junit.Assert.assertNotNull;
@@ -65,6 +68,9 @@ public class DetectorMappingControllerTest {
     @Mock
     private DetectorMappingRepository detectorMappingRepo;
 
+    @Spy
+    private NdjsonWriter ndjsonWriter = new NdjsonWriter(new ObjectMapper());
+
     private String id = "adsvade8^szx";
     private String detectorUuid = "aeb4d849-847a-45c0-8312-dc0fcf22b639";
     private String userVal = "test-user";
@@ -194,6 +200,22 @@ public class DetectorMappingControllerTest {
         assertEquals(id, detectorMappings.get(0).getId());
     }
 
+    @Test
+    public void testStreamLastUpdated() throws Exception {
+        val timeInSecs = 60;
+        val detectorMapping = new DetectorMapping()
+                .setId(id)
+                .setDetector(new ConsumerDetectorMapping("cid", UUID.fromString(detectorUuid)))
+                .setEnabled(true);
+        when(detectorMappingRepo.streamLastUpdated(timeInSecs)).thenReturn(Stream.of(detectorMapping));
+        val out = new ByteArrayOutputStream();
+        controllerUnderTest.streamLastUpdated(timeInSecs).writeTo(out);
+
+        val lines = out.toString("UTF-8").split("\n");
+        assertEquals(1, lines.length);
+        assertEquals(id, new ObjectMapper().readTree(lines[0]).get("id").asText());
+    }
+
     @Test(expected = RuntimeException.class)
     public void testGetLastUpdated_fail() {
         val timeInSecs = 60;
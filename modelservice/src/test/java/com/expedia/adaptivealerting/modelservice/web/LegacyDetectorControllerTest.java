@@ -19,6 +19,7 @@ import com.expedia.adaptivealerting.anomdetect.source.DetectorDocument;
 import com.expedia.adaptivealerting.modelservice.exception.RecordNotFoundException;
 import com.expedia.adaptivealerting.modelservice.repo.LegacyDetectorRepository;
 import com.expedia.adaptivealerting.modelservice.test.ObjectMother;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
 import org.junit.Before;
@@ -27,6 +28,7 @@ import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
@@ -34,10 +36,13 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.web.servlet.mvc.method.annotation.ExceptionHandlerExceptionResolver;
 
+import java.io.ByteArrayOutputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertSame;
 import static org.mockito.ArgumentMatchers.any;
@@ -62,6 +67,9 @@ public class LegacyDetectorControllerTest {
     @Mock
     private LegacyDetectorRepository detectorRepo;
 
+    @Spy
+    private NdjsonWriter ndjsonWriter = new NdjsonWriter(new ObjectMapper());
+
     @Mock
     private DetectorDocument detector;
 
@@ -132,6 +140,17 @@ public class LegacyDetectorControllerTest {
         assertSame(detectors, actualDetectors);
     }
 
+    @Test
+    public void testStreamLastUpdatedDetectors() throws Exception {
+        when(detectorRepo.streamLastUpdatedDetectors(5)).thenReturn(Stream.of(legalParamsDetector, legalParamsDetector));
+        val out = new ByteArrayOutputStream();
+        controllerUnderTest.streamLastUpdatedDetectors(5).writeTo(out);
+
+        val lines = out.toString("UTF-8").split("\n");
+        assertEquals(2, lines.length);
+        assertEquals(legalParamsDetector.getUuid(), new ObjectMapper().readValue(lines[0], DetectorDocument.class).getUuid());
+    }
+
     @Test
     public void testUpdateDetector() {
         controllerUnderTest.updateDetector(someUuid.toString(), legalParamsDetector);
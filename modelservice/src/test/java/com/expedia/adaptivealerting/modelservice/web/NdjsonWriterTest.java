@@ -0,0 +1,77 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.modelservice.web;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.val;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class NdjsonWriterTest {
+    private NdjsonWriter writerUnderTest;
+
+    @Before
+    public void setUp() {
+        this.writerUnderTest = new NdjsonWriter(new ObjectMapper());
+    }
+
+    @Test
+    public void testWrite() throws Exception {
+        val out = new ByteArrayOutputStream();
+        writerUnderTest.write(() -> Stream.of(Collections.singletonMap("a", 1), Collections.singletonMap("b", 2)))
+                .writeTo(out);
+        assertEquals("{\"a\":1}\n{\"b\":2}\n", out.toString("UTF-8"));
+    }
+
+    @Test
+    public void testWrite_empty() throws Exception {
+        val out = new ByteArrayOutputStream();
+        writerUnderTest.write(Stream::empty).writeTo(out);
+        assertEquals("", out.toString("UTF-8"));
+    }
+
+    @Test
+    public void testWrite_closesStream() throws Exception {
+        val closed = new AtomicBoolean();
+        writerUnderTest.write(() -> Stream.of("a").onClose(() -> closed.set(true))).writeTo(new ByteArrayOutputStream());
+        assertTrue(closed.get());
+    }
+
+    @Test
+    public void testWrite_closesStreamOnFailure() throws Exception {
+        val closed = new AtomicBoolean();
+        val body = writerUnderTest.write(() -> Stream.of("a", "b")
+                .<String>map(item -> {
+                    throw new RuntimeException("Search failed");
+                })
+                .onClose(() -> closed.set(true)));
+        try {
+            body.writeTo(new ByteArrayOutputStream());
+            fail("Expected RuntimeException");
+        } catch (RuntimeException e) {
+            assertTrue(closed.get());
+        }
+    }
+}